@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.fao.geonet.kernel.search.EsSearchManager;
+import org.fao.geonet.kernel.search.IndexDocumentBuilder;
+import org.fao.geonet.utils.SaxonDocument;
+import org.fao.geonet.utils.TransformerFactoryFactory;
+import org.fao.geonet.utils.Xml;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.output.SAXOutputter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the JDOM based index document generation (index XSLT result as a JDOM tree,
+ * fields cloned in a second tree, converted with {@link EsSearchManager#documentToJson}
+ * and serialized by an {@link ObjectMapper}) with {@link IndexDocumentBuilder}
+ * receiving the XSLT result as SAX events and writing JSON directly.
+ * <p>
+ * Records are the iso19139 sample data. The {@code transform*} benchmarks include the
+ * index XSLT, the {@code convert*} benchmarks only the conversion of its result. The
+ * {@code parse*} benchmarks start from the stored XML and compare parsing it as a JDOM
+ * tree with parsing it as a {@link SaxonDocument} read by the index XSLT as is.
+ * Run from the project root directory (or set the geonetwork.root system property).
+ * Use {@code -prof gc} to compare allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexDocumentBenchmark {
+    private static final String SAMPLE_DATA = "schemas/iso19139/src/main/plugin/iso19139/sample-data";
+
+    @Param({"basins_in_africa", "locality_polygons_comprehensive",
+        "photographic_session", "physiographic", "z3950_server"})
+    public String record;
+
+    private final EsSearchManager searchManager = new EsSearchManager();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, Object> indexParams = new HashMap<>();
+    private Path styleSheet;
+    private Element metadata;
+    private String metadataXml;
+    private Document indexDocument;
+
+    @Setup
+    public void setup() throws Exception {
+        TransformerFactoryFactory.init("de.fzi.dbs.xml.transform.CachingTransformerFactory");
+        indexParams.put("fastIndexMode", false);
+
+        styleSheet = Files.createTempFile("iso19139-index", ".xsl");
+        try (InputStream in = IndexDocumentBenchmark.class.getResourceAsStream("iso19139-index.xsl")) {
+            Files.copy(in, styleSheet, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        Path root = Paths.get(System.getProperty("geonetwork.root", "."));
+        metadata = Xml.loadFile(root.resolve(SAMPLE_DATA).resolve(record).resolve("metadata.xml"));
+        metadataXml = Xml.getString(metadata);
+        indexDocument = new Document(Xml.transform((Element) metadata.clone(), styleSheet, indexParams));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(styleSheet);
+    }
+
+    @Benchmark
+    public String transformWithJdom() throws Exception {
+        Element fields = Xml.transform((Element) metadata.clone(), styleSheet, indexParams);
+        return toJsonWithJdom(fields);
+    }
+
+    @Benchmark
+    public String transformWithBuilder() throws Exception {
+        IndexDocumentBuilder doc = new IndexDocumentBuilder();
+        Xml.transform((Element) metadata.clone(), styleSheet, doc.asResult(), indexParams);
+        return doc.toJson();
+    }
+
+    @Benchmark
+    public String parseAndTransformWithJdom() throws Exception {
+        IndexDocumentBuilder doc = new IndexDocumentBuilder();
+        Xml.transform(Xml.loadString(metadataXml, false), styleSheet, doc.asResult(), indexParams);
+        return doc.toJson();
+    }
+
+    @Benchmark
+    public String parseAndTransformWithSaxonDocument() throws Exception {
+        IndexDocumentBuilder doc = new IndexDocumentBuilder();
+        Xml.transform(SaxonDocument.parse(metadataXml), styleSheet, doc.asResult(), indexParams);
+        return doc.toJson();
+    }
+
+    @Benchmark
+    public String convertWithJdom() throws Exception {
+        return toJsonWithJdom(indexDocument.getRootElement());
+    }
+
+    @Benchmark
+    public String convertWithBuilder() throws Exception {
+        IndexDocumentBuilder doc = new IndexDocumentBuilder();
+        new SAXOutputter(doc).output(indexDocument);
+        return doc.toJson();
+    }
+
+    private String toJsonWithJdom(Element fields) throws Exception {
+        Element doc = new Element("doc");
+        for (Element field : (List<Element>) fields.getChildren()) {
+            doc.addContent((Element) field.clone());
+        }
+        return mapper.writeValueAsString(searchManager.documentToJson(doc));
+    }
+}
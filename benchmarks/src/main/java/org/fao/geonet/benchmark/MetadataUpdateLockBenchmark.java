@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.benchmark;
+
+import jeeves.server.context.ServiceContext;
+import org.fao.geonet.domain.AbstractMetadata;
+import org.fao.geonet.domain.Metadata;
+import org.fao.geonet.domain.MetadataType;
+import org.fao.geonet.kernel.SchemaManager;
+import org.fao.geonet.kernel.XmlSerializer;
+import org.fao.geonet.kernel.datamanager.IMetadataIndexer;
+import org.fao.geonet.kernel.datamanager.IMetadataSchemaUtils;
+import org.fao.geonet.kernel.datamanager.IMetadataUtils;
+import org.fao.geonet.kernel.datamanager.IMetadataValidator;
+import org.fao.geonet.kernel.datamanager.base.BaseMetadataManager;
+import org.fao.geonet.kernel.schema.MetadataSchema;
+import org.fao.geonet.kernel.search.IndexingMode;
+import org.fao.geonet.utils.TransformerFactoryFactory;
+import org.fao.geonet.utils.Xml;
+import org.jdom.Element;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+
+/**
+ * Throughput of concurrent {@link BaseMetadataManager#updateMetadata} calls, as run by batch
+ * edits, harvesters and editors saving different records. The manager runs against a test
+ * context without database: its repositories and services are stubs, and the database write
+ * transforms the iso19139 sample record with a stylesheet and serializes it, standing for the
+ * update-fixed-info step and the write of a real update.
+ * <p>
+ * The {@code synchronized*} benchmarks hold the manager monitor around each update, as the
+ * former synchronized method did: the total throughput stays flat as threads are added. The
+ * {@code recordLock*} benchmarks call the manager as is, updates of different records run in
+ * parallel. The same record benchmark shows that updates of one record are still serialized.
+ * <p>
+ * Run from the project root directory (or set the geonetwork.root system property).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadataUpdateLockBenchmark {
+    private static final String RECORD = "schemas/iso19139/src/main/plugin/iso19139/sample-data/physiographic/metadata.xml";
+    private static final String STYLESHEET = "schemas/iso19139/src/main/plugin/iso19139/formatter/oai_dc/view.xsl";
+    private static final String SCHEMA = "iso19139";
+    private static final int RECORDS = 10000;
+
+    private BaseMetadataManager metadataManager;
+    private ServiceContext context;
+    private Element metadata;
+
+    @Setup
+    public void setup() throws Exception {
+        TransformerFactoryFactory.init("de.fzi.dbs.xml.transform.CachingTransformerFactory");
+        Path root = Paths.get(System.getProperty("geonetwork.root", "."));
+        metadata = Xml.loadFile(root.resolve(RECORD));
+
+        // Stubs do not record their calls, which would grow for the whole run
+        IMetadataUtils metadataUtils = stub(IMetadataUtils.class);
+        Metadata record = new Metadata();
+        record.getDataInfo().setSchemaId(SCHEMA).setType(MetadataType.METADATA);
+        Mockito.when(metadataUtils.findOne(anyString())).thenReturn(record);
+        Mockito.when(metadataUtils.extractUUID(anyString(), any(Element.class))).thenReturn("uuid");
+        Mockito.when(metadataUtils.checkMetadataWithSameUuidExist(anyString(), anyInt())).thenReturn(false);
+
+        IMetadataSchemaUtils metadataSchemaUtils = stub(IMetadataSchemaUtils.class);
+        Mockito.when(metadataSchemaUtils.getMetadataSchema(anyString())).thenReturn(SCHEMA);
+        MetadataSchema schema = stub(MetadataSchema.class);
+        Mockito.when(schema.isReadwriteUUID()).thenReturn(true);
+        SchemaManager schemaManager = stub(SchemaManager.class);
+        Mockito.when(schemaManager.getSchema(SCHEMA)).thenReturn(schema);
+
+        metadataManager = new BaseMetadataManager();
+        inject(metadataManager, "metadataUtils", metadataUtils);
+        inject(metadataManager, "metadataSchemaUtils", metadataSchemaUtils);
+        inject(metadataManager, "schemaManager", schemaManager);
+        inject(metadataManager, "metadataValidator", stub(IMetadataValidator.class));
+        inject(metadataManager, "metadataIndexer", stub(IMetadataIndexer.class));
+        inject(metadataManager, "xmlSerializer", new TransformingXmlSerializer(root.resolve(STYLESHEET).toAbsolutePath()));
+        metadataManager.init();
+
+        context = stub(ServiceContext.class);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public AbstractMetadata synchronized1Thread() throws Exception {
+        return updateSynchronized(randomRecord());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public AbstractMetadata synchronized4Threads() throws Exception {
+        return updateSynchronized(randomRecord());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public AbstractMetadata synchronized8Threads() throws Exception {
+        return updateSynchronized(randomRecord());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public AbstractMetadata recordLock1Thread() throws Exception {
+        return update(randomRecord());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public AbstractMetadata recordLock4Threads() throws Exception {
+        return update(randomRecord());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public AbstractMetadata recordLock8Threads() throws Exception {
+        return update(randomRecord());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public AbstractMetadata sameRecordLock8Threads() throws Exception {
+        return update("1");
+    }
+
+    private static String randomRecord() {
+        return String.valueOf(ThreadLocalRandom.current().nextInt(RECORDS));
+    }
+
+    private AbstractMetadata updateSynchronized(String id) throws Exception {
+        synchronized (metadataManager) {
+            return update(id);
+        }
+    }
+
+    private AbstractMetadata update(String id) throws Exception {
+        return metadataManager.updateMetadata(context, id, (Element) metadata.clone(), false, false, "eng",
+            null, false, IndexingMode.none);
+    }
+
+    private static <T> T stub(Class<T> type) {
+        return Mockito.mock(type, Mockito.withSettings().stubOnly());
+    }
+
+    private static void inject(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+
+    /**
+     * Stands for the database: transforms the record and serializes it.
+     */
+    private static class TransformingXmlSerializer extends XmlSerializer {
+        private final Path styleSheet;
+
+        TransformingXmlSerializer(Path styleSheet) {
+            this.styleSheet = styleSheet;
+        }
+
+        @Override
+        public void update(String id, Element xml, String changeDate, boolean updateDateStamp, String uuid,
+                           ServiceContext context) throws Exception {
+            Xml.getString(Xml.transform(xml, styleSheet));
+        }
+
+        @Override
+        public void delete(String id, ServiceContext context) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public AbstractMetadata insert(AbstractMetadata metadata, Element dataXml, ServiceContext context) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Element select(ServiceContext context, String id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Element selectNoXLinkResolver(String id, boolean isIndexingTask, boolean applyOperationsFilters) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.benchmark;
+
+import org.apache.commons.lang.StringUtils;
+import org.fao.geonet.kernel.KeywordBean;
+import org.fao.geonet.kernel.Thesaurus;
+import org.fao.geonet.kernel.ThesaurusConceptIndex;
+import org.fao.geonet.kernel.rdf.Query;
+import org.fao.geonet.kernel.rdf.QueryBuilder;
+import org.fao.geonet.kernel.search.keyword.KeywordSearchType;
+import org.fao.geonet.languages.IsoLanguagesMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Throughput of concurrent thesaurus read queries, as run by keyword autocompletion
+ * and by the indexing of keyword hierarchies: a label lookup followed by a broader
+ * concept lookup, on a random concept of the regions thesaurus. The same operation
+ * runs with 1, 2, 4 and 8 threads; with queries serialized on the thesaurus the total
+ * throughput stays flat as threads are added. The prefix search is the autocompletion
+ * of the first letters of a random label.
+ * <p>
+ * The thesaurus search cache is disabled so that every call queries the repository.
+ * Run from the project root directory (or set the geonetwork.root system property).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThesaurusQueryBenchmark {
+    private static final String THESAURUS = "web/src/main/webapp/WEB-INF/data/config/codelist/external/thesauri/place/regions.rdf";
+    private static final String LANG = "eng";
+
+    private Path thesaurusFile;
+    private Thesaurus thesaurus;
+    private List<KeywordBean> keywords;
+
+    @Setup
+    public void setup() throws Exception {
+        IsoLanguagesMapper isoLanguagesMapper = new IsoLanguagesMapper() {
+            {
+                _isoLanguagesMap639.put("en", "eng");
+                _isoLanguagesMap639.put("fr", "fre");
+                _isoLanguagesMap639.put("de", "ger");
+            }
+        };
+
+        Path root = Paths.get(System.getProperty("geonetwork.root", "."));
+        thesaurusFile = Files.createTempFile("regions", ".rdf");
+        Files.copy(root.resolve(THESAURUS), thesaurusFile, StandardCopyOption.REPLACE_EXISTING);
+
+        thesaurus = new Thesaurus(isoLanguagesMapper, "regions.rdf", "external", "place",
+            thesaurusFile, "http://localhost:8080/geonetwork/srv/", 0);
+        thesaurus.initRepository();
+
+        Query<KeywordBean> all = QueryBuilder.keywordQueryBuilder(isoLanguagesMapper, LANG).build();
+        keywords = all.execute(thesaurus).stream()
+            .filter(k -> StringUtils.isNotEmpty(k.getValues().get(LANG)) && !k.getValues().get(LANG).contains("\""))
+            .collect(Collectors.toList());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        thesaurus.getRepository().shutDown();
+        Files.deleteIfExists(thesaurusFile);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<KeywordBean> lookup1Thread() {
+        return lookup();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public List<KeywordBean> lookup2Threads() {
+        return lookup();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<KeywordBean> lookup4Threads() {
+        return lookup();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public List<KeywordBean> lookup8Threads() {
+        return lookup();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<KeywordBean> prefixSearch4Threads() {
+        KeywordBean keyword = keywords.get(ThreadLocalRandom.current().nextInt(keywords.size()));
+        String label = keyword.getPreferredLabel(LANG);
+        return thesaurus.searchConcepts(new ThesaurusConceptIndex.ConceptQuery(Collections.singletonList(LANG), false)
+            .label(KeywordSearchType.STARTS_WITH, label.substring(0, Math.min(3, label.length())), true), 20);
+    }
+
+    private List<KeywordBean> lookup() {
+        KeywordBean keyword = keywords.get(ThreadLocalRandom.current().nextInt(keywords.size()));
+        KeywordBean found = thesaurus.getKeywordWithLabel(keyword.getPreferredLabel(LANG), LANG);
+        return thesaurus.getBroader(found.getUriCode(), LANG);
+    }
+}
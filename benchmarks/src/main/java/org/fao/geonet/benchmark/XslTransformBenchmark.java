@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.benchmark;
+
+import org.fao.geonet.utils.TransformerFactoryFactory;
+import org.fao.geonet.utils.Xml;
+import org.jdom.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of concurrent {@link Xml#transform} calls on the same stylesheets, as run
+ * by parallel indexing and by formatters serving several requests: the iso19139 index
+ * stylesheet and the oai_dc formatter applied to an iso19139 sample record. The same
+ * operation runs with 1, 2, 4 and 8 threads; with stylesheets compiled once and shared
+ * the total throughput grows with the number of threads.
+ * <p>
+ * Run from the project root directory (or set the geonetwork.root system property).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XslTransformBenchmark {
+    private static final String RECORD = "schemas/iso19139/src/main/plugin/iso19139/sample-data/physiographic/metadata.xml";
+    private static final String FORMATTER = "schemas/iso19139/src/main/plugin/iso19139/formatter/oai_dc/view.xsl";
+
+    private final Map<String, Object> indexParams = new HashMap<>();
+    private Path indexStyleSheet;
+    private Path formatterStyleSheet;
+    private Element metadata;
+
+    @Setup
+    public void setup() throws Exception {
+        TransformerFactoryFactory.init("de.fzi.dbs.xml.transform.CachingTransformerFactory");
+        indexParams.put("fastIndexMode", false);
+
+        indexStyleSheet = Files.createTempFile("iso19139-index", ".xsl");
+        try (InputStream in = XslTransformBenchmark.class.getResourceAsStream("iso19139-index.xsl")) {
+            Files.copy(in, indexStyleSheet, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        Path root = Paths.get(System.getProperty("geonetwork.root", "."));
+        formatterStyleSheet = root.resolve(FORMATTER).toAbsolutePath();
+        metadata = Xml.loadFile(root.resolve(RECORD));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(indexStyleSheet);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Element index1Thread() throws Exception {
+        return index();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public Element index2Threads() throws Exception {
+        return index();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Element index4Threads() throws Exception {
+        return index();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Element index8Threads() throws Exception {
+        return index();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Element format1Thread() throws Exception {
+        return Xml.transform((Element) metadata.clone(), formatterStyleSheet);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Element format8Threads() throws Exception {
+        return Xml.transform((Element) metadata.clone(), formatterStyleSheet);
+    }
+
+    private Element index() throws Exception {
+        return Xml.transform((Element) metadata.clone(), indexStyleSheet, indexParams);
+    }
+}
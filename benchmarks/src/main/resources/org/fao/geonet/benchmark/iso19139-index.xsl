@@ -0,0 +1,148 @@
+<?xml version="1.0" encoding="UTF-8"?>
+<!--
+  ~ Copyright (C) 2001-2026 Food and Agriculture Organization of the
+  ~ United Nations (FAO-UN), United Nations World Food Programme (WFP)
+  ~ and United Nations Environment Programme (UNEP)
+  ~
+  ~ This program is free software; you can redistribute it and/or modify
+  ~ it under the terms of the GNU General Public License as published by
+  ~ the Free Software Foundation; either version 2 of the License, or (at
+  ~ your option) any later version.
+  ~
+  ~ This program is distributed in the hope that it will be useful, but
+  ~ WITHOUT ANY WARRANTY; without even the implied warranty of
+  ~ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  ~ General Public License for more details.
+  ~
+  ~ You should have received a copy of the GNU General Public License
+  ~ along with this program; if not, write to the Free Software
+  ~ Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+  ~
+  ~ Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+  ~ Rome - Italy. email: geonetwork@osgeo.org
+<!--
+  Subset of the iso19139 index-fields/index.xsl producing the same kind of
+  fields (text, repeated, boolean and JSON object fields) without the
+  XslUtil extension functions which require a running catalogue.
+  -->
+<xsl:stylesheet xmlns:xsl="http://www.w3.org/1999/XSL/Transform"
+                xmlns:xs="http://www.w3.org/2001/XMLSchema"
+                xmlns:gmd="http://www.isotc211.org/2005/gmd"
+                xmlns:gco="http://www.isotc211.org/2005/gco"
+                xmlns:srv="http://www.isotc211.org/2005/srv"
+                xmlns:bench="http://geonetwork-opensource.org/xsl/functions/benchmark"
+                exclude-result-prefixes="#all"
+                version="2.0">
+
+  <xsl:param name="fastIndexMode" select="false()"/>
+
+  <xsl:function name="bench:json" as="xs:string">
+    <xsl:param name="value"/>
+    <xsl:value-of select="replace(replace(replace(replace(string($value),
+                            '\\', '\\\\'),
+                            '&quot;', '\\&quot;'),
+                            '&#10;', '\\n'),
+                            '[&#9;&#13;]', ' ')"/>
+  </xsl:function>
+
+  <xsl:template match="/">
+    <xsl:apply-templates select="gmd:MD_Metadata"/>
+  </xsl:template>
+
+  <xsl:template match="gmd:MD_Metadata">
+    <xsl:variable name="identification"
+                  select="gmd:identificationInfo/*"/>
+    <doc>
+      <docType>metadata</docType>
+      <metadataIdentifier>
+        <xsl:value-of select="gmd:fileIdentifier/gco:CharacterString"/>
+      </metadataIdentifier>
+      <mainLanguage>
+        <xsl:value-of select="gmd:language/*/@codeListValue|gmd:language/gco:CharacterString"/>
+      </mainLanguage>
+      <resourceType>
+        <xsl:value-of select="gmd:hierarchyLevel/*/@codeListValue"/>
+      </resourceType>
+      <dateStamp>
+        <xsl:value-of select="gmd:dateStamp/*"/>
+      </dateStamp>
+
+      <xsl:for-each select="$identification/gmd:citation/*/gmd:title">
+        <resourceTitleObject type="object">{"default": "<xsl:value-of select="bench:json(.)"/>"}</resourceTitleObject>
+      </xsl:for-each>
+      <xsl:for-each select="$identification/gmd:abstract">
+        <resourceAbstractObject type="object">{"default": "<xsl:value-of select="bench:json(.)"/>"}</resourceAbstractObject>
+      </xsl:for-each>
+
+      <xsl:for-each select="$identification/gmd:citation/*/gmd:date/*">
+        <xsl:variable name="type" select="gmd:dateType/*/@codeListValue"/>
+        <xsl:element name="{$type}DateForResource">
+          <xsl:value-of select="gmd:date/*"/>
+        </xsl:element>
+        <resourceDate type="object">{"type": "<xsl:value-of select="$type"/>", "date": "<xsl:value-of select="gmd:date/*"/>"}</resourceDate>
+      </xsl:for-each>
+
+      <xsl:for-each select="$identification/gmd:topicCategory/*">
+        <cl_topic><xsl:value-of select="."/></cl_topic>
+      </xsl:for-each>
+
+      <xsl:for-each select="$identification/gmd:descriptiveKeywords/*/gmd:keyword">
+        <tag type="object">{"default": "<xsl:value-of select="bench:json(.)"/>"}</tag>
+        <keyword><xsl:value-of select="."/></keyword>
+      </xsl:for-each>
+
+      <xsl:for-each select=".//gmd:CI_ResponsibleParty">
+        <contact type="object">{
+          "organisation": "<xsl:value-of select="bench:json(gmd:organisationName)"/>",
+          "role": "<xsl:value-of select="gmd:role/*/@codeListValue"/>",
+          "email": "<xsl:value-of select="bench:json((.//gmd:electronicMailAddress)[1])"/>",
+          "individual": "<xsl:value-of select="bench:json(gmd:individualName)"/>",
+          "position": "<xsl:value-of select="bench:json(gmd:positionName)"/>"
+          }</contact>
+      </xsl:for-each>
+
+      <xsl:for-each select=".//gmd:EX_GeographicBoundingBox">
+        <xsl:variable name="w" select="gmd:westBoundLongitude/gco:Decimal"/>
+        <xsl:variable name="e" select="gmd:eastBoundLongitude/gco:Decimal"/>
+        <xsl:variable name="s" select="gmd:southBoundLatitude/gco:Decimal"/>
+        <xsl:variable name="n" select="gmd:northBoundLatitude/gco:Decimal"/>
+        <geom type="object">{"type": "Polygon", "coordinates": [[[<xsl:value-of select="$w"/>, <xsl:value-of select="$s"/>], [<xsl:value-of select="$e"/>, <xsl:value-of select="$s"/>], [<xsl:value-of select="$e"/>, <xsl:value-of select="$n"/>], [<xsl:value-of select="$w"/>, <xsl:value-of select="$n"/>], [<xsl:value-of select="$w"/>, <xsl:value-of select="$s"/>]]]}</geom>
+      </xsl:for-each>
+
+      <xsl:for-each select="gmd:referenceSystemInfo/*/gmd:referenceSystemIdentifier/*/gmd:code">
+        <coordinateSystem><xsl:value-of select="."/></coordinateSystem>
+      </xsl:for-each>
+
+      <xsl:for-each select="gmd:distributionInfo//gmd:distributionFormat/*/gmd:name">
+        <format><xsl:value-of select="."/></format>
+      </xsl:for-each>
+
+      <xsl:for-each select="gmd:distributionInfo//gmd:onLine/*">
+        <linkProtocol><xsl:value-of select="gmd:protocol/*"/></linkProtocol>
+        <linkUrl><xsl:value-of select="gmd:linkage/gmd:URL"/></linkUrl>
+        <link type="object">{
+          "protocol": "<xsl:value-of select="bench:json(gmd:protocol/*)"/>",
+          "url": "<xsl:value-of select="bench:json(gmd:linkage/gmd:URL)"/>",
+          "name": "<xsl:value-of select="bench:json(gmd:name/*)"/>",
+          "description": "<xsl:value-of select="bench:json(gmd:description/*)"/>",
+          "function": "<xsl:value-of select="gmd:function/*/@codeListValue"/>"
+          }</link>
+      </xsl:for-each>
+
+      <xsl:for-each select="$identification/gmd:graphicOverview/*">
+        <overview type="object">{"url": "<xsl:value-of select="bench:json(gmd:fileName/*)"/>"}</overview>
+      </xsl:for-each>
+      <hasOverview>
+        <xsl:value-of select="if ($identification/gmd:graphicOverview) then 'true' else 'false'"/>
+      </hasOverview>
+
+      <xsl:for-each select="$identification/gmd:resourceConstraints/*/gmd:useLimitation">
+        <MD_ConstraintsUseLimitationObject type="object">{"default": "<xsl:value-of select="bench:json(.)"/>"}</MD_ConstraintsUseLimitationObject>
+      </xsl:for-each>
+
+      <xsl:if test="not($fastIndexMode)">
+        <anyObject type="object">{"default": "<xsl:value-of select="bench:json(string-join(.//gco:CharacterString, ' '))"/>"}</anyObject>
+      </xsl:if>
+    </doc>
+  </xsl:template>
+</xsl:stylesheet>
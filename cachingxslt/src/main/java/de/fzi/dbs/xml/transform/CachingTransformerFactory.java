@@ -9,8 +9,8 @@ import org.fao.geonet.utils.CachedTransformer;
 import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.transform.Source;
 import javax.xml.transform.Templates;
@@ -31,17 +31,9 @@ public class CachingTransformerFactory extends TransformerFactoryImpl implements
     protected static final Logger logger =
         LogManager.getLogger(CachingTransformerFactory.class);
     /**
-     * Active readers count.
+     * Map to hold templates cache. Lookups do not lock.
      */
-    static int activeReaders = 0;
-    /**
-     * Active writers count.
-     */
-    static int activeWriters = 0;
-    /**
-     * Map to hold templates cache.
-     */
-    private static Map<String, TemplatesCacheEntry> templatesCache = new HashMap<String, TemplatesCacheEntry>();
+    private static final Map<String, TemplatesCacheEntry> templatesCache = new ConcurrentHashMap<String, TemplatesCacheEntry>();
 
     /**
      * Clear the stylesheet cache. This is not part of the JAXP TransformerFactoryImpl so users
@@ -49,9 +41,7 @@ public class CachingTransformerFactory extends TransformerFactoryImpl implements
      * broken.
      */
     public void clearCache() {
-        beforeWrite();
         templatesCache.clear();
-        afterWrite();
     }
 
     /**
@@ -135,10 +125,7 @@ public class CachingTransformerFactory extends TransformerFactoryImpl implements
      * @return Templates cache entry for the specified path.
      */
     protected TemplatesCacheEntry read(String absolutePath) {
-        beforeRead();
-        final TemplatesCacheEntry templatesCacheEntry = templatesCache.get(absolutePath);
-        afterRead();
-        return templatesCacheEntry;
+        return templatesCache.get(absolutePath);
     }
 
     /**
@@ -148,49 +135,7 @@ public class CachingTransformerFactory extends TransformerFactoryImpl implements
      * @param templatesCacheEntry templates cache entry to save.
      */
     protected void write(String absolutePath, TemplatesCacheEntry templatesCacheEntry) {
-        beforeWrite();
         templatesCache.put(absolutePath, templatesCacheEntry);
-        afterWrite();
-    }
-
-    /**
-     * Invoked just before reading, waits until reading is allowed.
-     */
-    protected synchronized void beforeRead() {
-        while (activeWriters > 0)
-            try {
-                wait();
-            } catch (InterruptedException iex) {
-            }
-        ++activeReaders;
-    }
-
-    /**
-     * Invoked just after reading.
-     */
-    protected synchronized void afterRead() {
-        --activeReaders;
-        notifyAll();
-    }
-
-    /**
-     * Invoked just before writing, waits until writing is allowed.
-     */
-    protected synchronized void beforeWrite() {
-        while (activeReaders > 0 || activeWriters > 0)
-            try {
-                wait();
-            } catch (InterruptedException iex) {
-            }
-        ++activeWriters;
-    }
-
-    /**
-     * Invoked just after writing.
-     */
-    protected synchronized void afterWrite() {
-        --activeWriters;
-        notifyAll();
     }
 
     /**
@@ -200,17 +145,17 @@ public class CachingTransformerFactory extends TransformerFactoryImpl implements
         /**
          * When was the cached entry last modified.
          */
-        private long lastModified;
+        private final long lastModified;
 
         /**
          * Cached templates object.
          */
-        private Templates templates;
+        private final Templates templates;
 
         /**
          * Templates file object.
          */
-        private File templatesFile;
+        private final File templatesFile;
 
         /**
          * Constructs a new cache entry.
@@ -23,6 +23,7 @@
 
 package org.fao.geonet.utils;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 
 import org.apache.commons.io.IOUtils;
@@ -52,6 +53,11 @@ import org.springframework.http.client.ClientHttpResponse;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
@@ -68,6 +74,10 @@ public class GeonetHttpRequestFactory {
     private int numberOfConcurrentRequests = 20;
     private PoolingHttpClientConnectionManager connectionManager;
     private volatile HttpClientConnectionManager nonShutdownableConnectionManager;
+    /**
+     * Connections allowed to a host by each of its users, see {@link #allowConnectionsPerHost(String, int)}.
+     */
+    private final Map<String, List<Integer>> connectionsPerHost = new ConcurrentHashMap<>();
 
     @PreDestroy
     public synchronized void shutdown() {
@@ -82,6 +92,54 @@ public class GeonetHttpRequestFactory {
         this.numberOfConcurrentRequests = numberOfConcurrentRequests;
     }
 
+    /**
+     * Allows more connections to a host than the default of the HTTP client (2 per route), eg.
+     * for a harvester downloading records from a server with several threads. Other hosts keep
+     * the default. Must be followed by a call to {@link #releaseConnectionsPerHost(String, int)}.
+     *
+     * @param host           the host name.
+     * @param maxConnections the maximum number of connections to the host, up to the
+     *                       number of concurrent requests of the factory.
+     */
+    public void allowConnectionsPerHost(String host, int maxConnections) {
+        connectionsPerHost.compute(host.toLowerCase(), (h, limits) -> {
+            List<Integer> newLimits = limits == null ? new ArrayList<>() : new ArrayList<>(limits);
+            newLimits.add(maxConnections);
+            return newLimits;
+        });
+    }
+
+    /**
+     * Removes a limit added by {@link #allowConnectionsPerHost(String, int)}.
+     */
+    public void releaseConnectionsPerHost(String host, int maxConnections) {
+        connectionsPerHost.computeIfPresent(host.toLowerCase(), (h, limits) -> {
+            List<Integer> newLimits = new ArrayList<>(limits);
+            newLimits.remove(Integer.valueOf(maxConnections));
+            return newLimits.isEmpty() ? null : newLimits;
+        });
+    }
+
+    /**
+     * @return the maximum number of connections for a route: the highest limit allowed for its
+     * host or the default of the pool.
+     */
+    @VisibleForTesting
+    int getMaxPerRoute(HttpRoute route, int defaultMaxPerRoute) {
+        List<Integer> limits = connectionsPerHost.get(route.getTargetHost().getHostName().toLowerCase());
+        if (limits == null) {
+            return defaultMaxPerRoute;
+        }
+        return Math.min(numberOfConcurrentRequests, Math.max(defaultMaxPerRoute, Collections.max(limits)));
+    }
+
+    private void updateMaxPerRoute(PoolingHttpClientConnectionManager manager, HttpRoute route) {
+        int maxPerRoute = getMaxPerRoute(route, manager.getDefaultMaxPerRoute());
+        if (manager.getMaxPerRoute(route) != maxPerRoute) {
+            manager.setMaxPerRoute(route, maxPerRoute);
+        }
+    }
+
     /**
      * Create a default XmlRequest.
      */
@@ -212,6 +270,7 @@ public class GeonetHttpRequestFactory {
                     }
 
                     public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+                        updateMaxPerRoute(connectionManager, route);
                         return connectionManager.requestConnection(route, state);
                     }
 
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.utils;
+
+import net.sf.saxon.om.NodeInfo;
+import org.jdom.Element;
+import org.jdom.transform.JDOMResult;
+import org.jdom.transform.JDOMSource;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.sax.SAXSource;
+import java.io.StringReader;
+
+/**
+ * An XML document held in the Saxon tree model so that it can be transformed several times
+ * without being converted again.
+ * <p>
+ * {@link Xml#transform(Element, java.nio.file.Path, java.util.Map)} receives a JDOM tree which
+ * Saxon rebuilds in its own model on each call. A record which goes through several stylesheets
+ * (eg. CSW ElementSetName and post-processing) can instead be parsed once from its stored XML and
+ * passed to {@link Xml#transform(SaxonDocument, java.nio.file.Path, java.util.Map)} or chained with
+ * {@link Xml#transformToDocument(SaxonDocument, java.nio.file.Path, java.util.Map)}. The document
+ * is immutable and can be used by several threads. A JDOM tree is only built when requested with
+ * {@link #toElement()}.
+ */
+public final class SaxonDocument {
+    /**
+     * Parses with the same protections as {@link Xml#getSAXBuilder(boolean)}: secure processing
+     * and no external entities or DTDs.
+     */
+    private static final SAXParserFactory PARSER_FACTORY = createParserFactory();
+
+    private final NodeInfo document;
+
+    SaxonDocument(NodeInfo document) {
+        this.document = document;
+    }
+
+    /**
+     * Parses a document.
+     */
+    public static SaxonDocument parse(String xml) throws TransformerException {
+        return build(new SAXSource(newXMLReader(), new InputSource(new StringReader(xml))));
+    }
+
+    /**
+     * Builds a document from a JDOM element. The element is not modified.
+     */
+    public static SaxonDocument of(Element xml) throws TransformerException {
+        return build(new JDOMSource(xml));
+    }
+
+    private static SaxonDocument build(Source source) throws TransformerException {
+        return new SaxonDocument(TemplatesRegistry.getConfiguration().buildDocument(source));
+    }
+
+    private static XMLReader newXMLReader() throws TransformerException {
+        try {
+            XMLReader reader = PARSER_FACTORY.newSAXParser().getXMLReader();
+            reader.setEntityResolver(new NoOpEntityResolver());
+            return reader;
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new TransformerException(e);
+        }
+    }
+
+    private static SAXParserFactory createParserFactory() {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IllegalStateException("XML parser does not support secure processing", e);
+        }
+        return factory;
+    }
+
+    /**
+     * @return the document, to use as the source of a transformation.
+     */
+    public Source asSource() {
+        return document;
+    }
+
+    /**
+     * Builds a new JDOM tree of the document on each call.
+     */
+    public Element toElement() throws TransformerException {
+        JDOMResult result = new JDOMResult();
+        TemplatesRegistry.newIdentityTransformer().transform(document, result);
+        return (Element) result.getDocument().getRootElement().detach();
+    }
+}
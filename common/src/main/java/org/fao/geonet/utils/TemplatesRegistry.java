@@ -0,0 +1,420 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.utils;
+
+import net.sf.saxon.Configuration;
+import net.sf.saxon.FeatureKeys;
+import net.sf.saxon.TransformerFactoryImpl;
+import org.fao.geonet.utils.nio.NioPathHolder;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Registry of compiled stylesheets shared by all threads.
+ * <p>
+ * Stylesheets are compiled once per file and set of compilation options, with a factory configured
+ * once, and looked up without locking. The files included or imported while compiling a stylesheet
+ * are watched: any change to one of them removes the compiled stylesheet from the registry so that
+ * it is compiled again on next use. Stylesheets which are not on the default file system are not
+ * cached.
+ */
+public final class TemplatesRegistry {
+    private static final ConcurrentHashMap<Key, Templates> TEMPLATES = new ConcurrentHashMap<>();
+    /**
+     * The compiled stylesheets using a file.
+     */
+    private static final ConcurrentHashMap<Path, Set<Key>> DEPENDENTS = new ConcurrentHashMap<>();
+    private static final Set<Path> WATCHED_DIRECTORIES = ConcurrentHashMap.newKeySet();
+    private static final RecordingURIResolver URI_RESOLVER = new RecordingURIResolver(new Xml.JeevesURIResolver());
+    private static final ConcurrentHashMap<Boolean, TransformerFactory> FACTORIES = new ConcurrentHashMap<>();
+    private static WatchService watchService;
+    /**
+     * Number of times a stylesheet is compiled when its files change while it is compiled.
+     */
+    private static final int MAX_COMPILATIONS = 3;
+
+    private TemplatesRegistry() {
+    }
+
+    /**
+     * Creates a transformer for a stylesheet on disk.
+     *
+     * @param styleSheet             the stylesheet.
+     * @param preEvaluateDocFunction true to evaluate the document() calls with literal arguments at compile time.
+     */
+    public static Transformer newTransformer(Path styleSheet, boolean preEvaluateDocFunction) throws TransformerConfigurationException {
+        return getTemplates(styleSheet, preEvaluateDocFunction).newTransformer();
+    }
+
+    /**
+     * Creates a transformer for a stylesheet source. Only stylesheets read from a file are cached.
+     */
+    public static Transformer newTransformer(Source source, boolean preEvaluateDocFunction) throws TransformerConfigurationException {
+        if (source instanceof StreamSource
+            && ((StreamSource) source).getInputStream() == null
+            && ((StreamSource) source).getReader() == null
+            && source.getSystemId() != null
+            && source.getSystemId().startsWith("file:")) {
+            return newTransformer(Paths.get(URI.create(source.getSystemId())), preEvaluateDocFunction);
+        }
+        return getFactory(preEvaluateDocFunction).newTransformer(source);
+    }
+
+    /**
+     * Creates a transformer copying its source to its result.
+     */
+    static Transformer newIdentityTransformer() throws TransformerConfigurationException {
+        return getFactory(false).newTransformer();
+    }
+
+    /**
+     * Gets the Saxon configuration used to compile stylesheets, to build documents which can be
+     * transformed without being converted.
+     */
+    static Configuration getConfiguration() {
+        TransformerFactory factory = getFactory(false);
+        if (!(factory instanceof TransformerFactoryImpl)) {
+            throw new IllegalStateException("Saxon documents require a Saxon transformer factory. Configured factory is "
+                + factory.getClass().getName() + ".");
+        }
+        return ((TransformerFactoryImpl) factory).getConfiguration();
+    }
+
+    /**
+     * Gets the compiled stylesheet, compiling it if needed.
+     */
+    public static Templates getTemplates(Path styleSheet, boolean preEvaluateDocFunction) throws TransformerConfigurationException {
+        if (styleSheet.getFileSystem() != FileSystems.getDefault()) {
+            return compile(styleSheet, preEvaluateDocFunction, null);
+        }
+        Key key = new Key(styleSheet.toAbsolutePath().normalize(), preEvaluateDocFunction);
+        Templates templates = TEMPLATES.get(key);
+        if (templates != null) {
+            return templates;
+        }
+        try {
+            return TEMPLATES.computeIfAbsent(key, TemplatesRegistry::compile);
+        } catch (CompilationException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Compiles a stylesheet in advance, eg. when a schema is loaded.
+     */
+    public static void compile(Path styleSheet) throws TransformerConfigurationException {
+        NioPathHolder.setBase(styleSheet);
+        getTemplates(styleSheet, false);
+    }
+
+    /**
+     * Removes the stylesheets using a file from the registry.
+     */
+    public static void invalidate(Path file) {
+        Set<Key> keys = DEPENDENTS.remove(file.toAbsolutePath().normalize());
+        if (keys != null) {
+            for (Key key : keys) {
+                if (TEMPLATES.remove(key) != null) {
+                    Log.debug(Log.TRANSFORMER_FACTORY, "Stylesheet " + key.path + " changed. Compiled stylesheet removed.");
+                }
+            }
+        }
+    }
+
+    public static void clear() {
+        TEMPLATES.clear();
+        DEPENDENTS.clear();
+    }
+
+    /**
+     * Clears the registry and the factories, eg. when another transformer factory implementation
+     * is configured.
+     */
+    static void reset() {
+        FACTORIES.clear();
+        clear();
+    }
+
+    public static int size() {
+        return TEMPLATES.size();
+    }
+
+    private static Templates compile(Key key) {
+        try {
+            for (int attempt = 1; ; attempt++) {
+                Map<Path, FileTime> dependencies = new HashMap<>();
+                dependencies.put(key.path, getLastModifiedTime(key.path));
+                Templates templates = compile(key.path, key.preEvaluateDocFunction, dependencies);
+                for (Path dependency : dependencies.keySet()) {
+                    DEPENDENTS.computeIfAbsent(dependency, p -> ConcurrentHashMap.newKeySet()).add(key);
+                    watch(dependency.getParent());
+                }
+                // The files are watched from now on. A file changed while the stylesheet was
+                // compiled is not notified, compile it again.
+                Path changed = getChangedFile(dependencies);
+                if (changed == null) {
+                    return templates;
+                }
+                if (attempt == MAX_COMPILATIONS) {
+                    Log.warning(Log.TRANSFORMER_FACTORY, "Stylesheet " + key.path + " dependency " + changed
+                        + " keeps changing while it is compiled. The compiled stylesheet may be out of date.");
+                    return templates;
+                }
+                Log.debug(Log.TRANSFORMER_FACTORY, "Stylesheet " + key.path + " dependency " + changed
+                    + " changed while it was compiled. Compiling it again.");
+            }
+        } catch (TransformerConfigurationException e) {
+            throw new CompilationException(e);
+        }
+    }
+
+    private static Path getChangedFile(Map<Path, FileTime> dependencies) {
+        for (Map.Entry<Path, FileTime> dependency : dependencies.entrySet()) {
+            if (!Objects.equals(dependency.getValue(), getLastModifiedTime(dependency.getKey()))) {
+                return dependency.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the last modification time of a file, or null if it does not exist.
+     */
+    private static FileTime getLastModifiedTime(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static Templates compile(Path styleSheet, boolean preEvaluateDocFunction, Map<Path, FileTime> dependencies)
+        throws TransformerConfigurationException {
+        URI_RESOLVER.record(dependencies);
+        try (InputStream in = IO.newInputStream(styleSheet)) {
+            return getFactory(preEvaluateDocFunction).newTemplates(
+                new StreamSource(in, styleSheet.toUri().toASCIIString()));
+        } catch (IOException e) {
+            throw new TransformerConfigurationException(
+                "Requested transformation [" + styleSheet + "] can not be read.", e);
+        } finally {
+            URI_RESOLVER.record(null);
+        }
+    }
+
+    /**
+     * Gets a factory configured once for a set of compilation options. The factory is never
+     * changed afterwards so it can be used concurrently.
+     */
+    private static TransformerFactory getFactory(boolean preEvaluateDocFunction) {
+        return FACTORIES.computeIfAbsent(preEvaluateDocFunction, TemplatesRegistry::newFactory);
+    }
+
+    private static TransformerFactory newFactory(boolean preEvaluateDocFunction) {
+        TransformerFactory factory;
+        try {
+            factory = TransformerFactoryFactory.getTransformerFactory().getClass().getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | TransformerConfigurationException | RuntimeException e) {
+            factory = TransformerFactory.newInstance();
+        }
+        factory.setURIResolver(URI_RESOLVER);
+
+        // Dear old saxon likes to yell loudly about each and every XSLT 1.0
+        // stylesheet so switch it off but trap any exceptions because this
+        // code is run on transformers other than saxon
+        try {
+            factory.setAttribute(FeatureKeys.VERSION_WARNING, false);
+            factory.setAttribute(FeatureKeys.LINE_NUMBERING, true);
+            factory.setAttribute(FeatureKeys.PRE_EVALUATE_DOC_FUNCTION, preEvaluateDocFunction);
+            factory.setAttribute(FeatureKeys.RECOVERY_POLICY, Configuration.RECOVER_SILENTLY);
+            factory.setAttribute(FeatureKeys.TREE_MODEL, Xml.SAXON_TREE_MODEL);
+        } catch (IllegalArgumentException e) {
+            Log.warning(Log.ENGINE, "WARNING: transformerfactory doesnt like saxon attributes!", e);
+        }
+        return factory;
+    }
+
+    private static synchronized void watch(Path directory) {
+        if (directory == null || WATCHED_DIRECTORIES.contains(directory)) {
+            return;
+        }
+        try {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                Thread watcher = new Thread(TemplatesRegistry::processEvents, "xslt-templates-watcher");
+                watcher.setDaemon(true);
+                watcher.start();
+            }
+            directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            WATCHED_DIRECTORIES.add(directory);
+        } catch (IOException e) {
+            Log.warning(Log.TRANSFORMER_FACTORY, "Failed to watch stylesheet directory " + directory
+                + ". Changes to its stylesheets will not be reloaded. Error is: " + e.getMessage());
+        }
+    }
+
+    private static void processEvents() {
+        while (true) {
+            WatchKey watchKey;
+            try {
+                watchKey = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = (Path) watchKey.watchable();
+            for (WatchEvent<?> event : watchKey.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    Log.info(Log.TRANSFORMER_FACTORY, "Too many changes in stylesheet directory " + directory
+                        + " to know which files changed. All compiled stylesheets are removed.");
+                    clear();
+                } else {
+                    invalidate(directory.resolve((Path) event.context()));
+                }
+            }
+            if (!watchKey.reset()) {
+                WATCHED_DIRECTORIES.remove(directory);
+            }
+        }
+    }
+
+    private static final class Key {
+        private final Path path;
+        private final boolean preEvaluateDocFunction;
+
+        private Key(Path path, boolean preEvaluateDocFunction) {
+            this.path = path;
+            this.preEvaluateDocFunction = preEvaluateDocFunction;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return preEvaluateDocFunction == key.preEvaluateDocFunction && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, preEvaluateDocFunction);
+        }
+    }
+
+    /**
+     * Keeps track of the files resolved by the thread compiling a stylesheet, with their last
+     * modification time when they were resolved.
+     */
+    private static final class RecordingURIResolver implements URIResolver {
+        private final URIResolver delegate;
+        private final ThreadLocal<Map<Path, FileTime>> resolved = new ThreadLocal<>();
+
+        private RecordingURIResolver(URIResolver delegate) {
+            this.delegate = delegate;
+        }
+
+        private void record(Map<Path, FileTime> files) {
+            if (files == null) {
+                resolved.remove();
+            } else {
+                resolved.set(files);
+            }
+        }
+
+        @Override
+        public Source resolve(String href, String base) throws TransformerException {
+            Map<Path, FileTime> files = resolved.get();
+            FileTime lastModified = null;
+            Path file = null;
+            if (files != null) {
+                try {
+                    URI uri = base != null ? new URI(base).resolve(href) : new URI(href);
+                    if ("file".equals(uri.getScheme())) {
+                        file = Paths.get(uri).toAbsolutePath().normalize();
+                        // Before the file is read
+                        lastModified = getLastModifiedTime(file);
+                    }
+                } catch (Exception e) {
+                    // Resolved by the delegate
+                }
+            }
+            Source source = delegate.resolve(href, base);
+            if (files != null) {
+                try {
+                    URI uri = source != null && source.getSystemId() != null
+                        ? new URI(source.getSystemId())
+                        : base != null ? new URI(base).resolve(href) : new URI(href);
+                    if ("file".equals(uri.getScheme())) {
+                        Path resolvedFile = Paths.get(uri).toAbsolutePath().normalize();
+                        files.putIfAbsent(resolvedFile, resolvedFile.equals(file)
+                            ? lastModified : getLastModifiedTime(resolvedFile));
+                    }
+                } catch (Exception e) {
+                    // Not a file, it will not be watched
+                }
+            }
+            return source;
+        }
+    }
+
+    private static final class CompilationException extends RuntimeException {
+        private CompilationException(TransformerConfigurationException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized TransformerConfigurationException getCause() {
+            return (TransformerConfigurationException) super.getCause();
+        }
+    }
+}
@@ -52,6 +52,7 @@ public class TransformerFactoryFactory {
         } else {
             factory = TransformerFactory.newInstance();
         }
+        TemplatesRegistry.reset();
     }
 
     public static TransformerFactory getTransformerFactory() throws TransformerConfigurationException {
@@ -59,16 +60,19 @@ public class TransformerFactoryFactory {
             debug("TransformerFactoryFactory is null. Initializing ...");
             init(null);
         }
-        debug("TransformerFactoryFactory: "
-            + factory.getClass().getName()
-            + " produces transformer implementation "
-            + factory.newTransformer().getClass().getName());
+        if (Log.isDebugEnabled(Log.TRANSFORMER_FACTORY)) {
+            debug("TransformerFactoryFactory: "
+                + factory.getClass().getName()
+                + " produces transformer implementation "
+                + factory.newTransformer().getClass().getName());
+        }
         return factory;
     }
 
     // used for JUnit testing into Eclipse (which selects an incompatible TransformerFactory)
     public static void setTransformerFactory(TransformerFactory _factory) {
         factory = _factory;
+        TemplatesRegistry.reset();
     }
 
     private static void debug(String message) {
@@ -27,11 +27,14 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.ByteStreams;
 import net.sf.json.JSON;
 import net.sf.json.xml.XMLSerializer;
 import net.sf.saxon.Configuration;
 import net.sf.saxon.Controller;
 import net.sf.saxon.FeatureKeys;
+import net.sf.saxon.tinytree.TinyBuilder;
+import org.apache.commons.io.input.CloseShieldInputStream;
 import org.apache.fop.apps.Fop;
 import org.apache.fop.apps.FopFactory;
 import org.apache.fop.apps.MimeConstants;
@@ -58,6 +61,7 @@ import org.springframework.util.StringUtils;
 import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
+import javax.annotation.Nullable;
 import javax.xml.XMLConstants;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Unmarshaller;
@@ -84,6 +88,8 @@ import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -219,6 +225,16 @@ public final class Xml {
     //--------------------------------------------------------------------------
 
     public static Element loadFile(Path file) throws JDOMException, NoSuchFileException {
+        return loadFile(file, null);
+    }
+
+    /**
+     * Loads an xml file and returns its root node.
+     *
+     * @param digest if not null, updated with the whole content of the file as it is read, eg. to
+     *               hash the file without reading it twice.
+     */
+    public static Element loadFile(Path file, @Nullable MessageDigest digest) throws JDOMException, NoSuchFileException {
         try {
             SAXBuilder builder = getSAXBuilderWithPathXMLResolver(false, file); //new SAXBuilder();
 
@@ -227,12 +243,20 @@ public final class Xml {
             // detect charset and convert if required
             if (convert.equals("enabled")) {
                 byte[] content = convertFileToUTF8ByteArray(file);
+                if (digest != null) {
+                    digest.update(content);
+                }
                 return loadStream(new ByteArrayInputStream(content));
 
                 // no charset detection and conversion allowed
             } else {
-                try (InputStream in = IO.newInputStream(file); PushbackInputStream f = processBOMMarker(in, file.getFileName().toString())) {
-                    Document jdoc = builder.build(f);
+                try (InputStream in = digest == null ? IO.newInputStream(file) : new DigestInputStream(IO.newInputStream(file), digest);
+                     PushbackInputStream f = processBOMMarker(in, file.getFileName().toString())) {
+                    Document jdoc = builder.build(CloseShieldInputStream.wrap(f));
+                    if (digest != null) {
+                        // The parser may stop before the end of the file
+                        ByteStreams.exhaust(f);
+                    }
                     return (Element) jdoc.getRootElement().detach();
                 }
             }
@@ -456,29 +480,11 @@ public final class Xml {
                                              String xmlParamName, String xmlParam) throws Exception {
         Source srcXml = new JDOMSource(new Document((Element) xml.detach()));
 
-        // Dear old saxon likes to yell loudly about each and every XSLT 1.0
-        // stylesheet so switch it off but trap any exceptions because this
-        // code is run on transformers other than saxon
-        TransformerFactory transFact;
-        transFact = TransformerFactoryFactory.getTransformerFactory();
-
-        try {
-            transFact.setAttribute(FeatureKeys.VERSION_WARNING, false);
-            transFact.setAttribute(FeatureKeys.LINE_NUMBERING, true);
-            transFact.setAttribute(FeatureKeys.PRE_EVALUATE_DOC_FUNCTION, true);
-            transFact.setAttribute(FeatureKeys.RECOVERY_POLICY, Configuration.RECOVER_SILENTLY);
-            transFact.setAttribute(FeatureKeys.TREE_MODEL, SAXON_TREE_MODEL);
-            // Add the following to get timing info on xslt transformations
-            //transFact.setAttribute(FeatureKeys.TIMING,true);
-        } catch (IllegalArgumentException e) {
-            Log.warning(Log.ENGINE, "WARNING: transformerfactory doesnt like saxon attributes!", e);
-        } finally {
-            Transformer t = transFact.newTransformer(xslt);
-            if (xmlParam != null) {
-                t.setParameter(xmlParamName, new StreamSource(new StringReader(xmlParam)));
-            }
-            t.transform(srcXml, result);
+        Transformer t = TemplatesRegistry.newTransformer(xslt, true);
+        if (xmlParam != null) {
+            t.setParameter(xmlParamName, new StreamSource(new StringReader(xmlParam)));
         }
+        t.transform(srcXml, result);
     }
 
     //--------------------------------------------------------------------------
@@ -502,55 +508,64 @@ public final class Xml {
      */
     public static void
     transform(Element xml, Path styleSheetPath, Result result, Map<String, Object> params) throws Exception {
+        transform(new JDOMSource(new Document((Element) xml.detach())), styleSheetPath, result, params);
+    }
+
+    /**
+     * Transforms a document already in the Saxon tree model using a stylesheet on disk.
+     */
+    public static Element transform(SaxonDocument xml, Path styleSheetPath, Map<String, Object> params) throws Exception {
+        JDOMResult resXml = new JDOMResult();
+        transform(xml, styleSheetPath, resXml, params);
+        return (Element) resXml.getDocument().getRootElement().detach();
+    }
+
+    /**
+     * Transforms a document already in the Saxon tree model putting the result to a stream
+     * with optional parameters. The document is not modified and can be transformed again.
+     */
+    public static void transform(SaxonDocument xml, Path styleSheetPath, Result result, Map<String, Object> params) throws Exception {
+        transform(xml.asSource(), styleSheetPath, result, params);
+    }
+
+    /**
+     * Transforms a document already in the Saxon tree model into another one, so that the
+     * result can go through another stylesheet without any conversion.
+     */
+    public static SaxonDocument transformToDocument(SaxonDocument xml, Path styleSheetPath, Map<String, Object> params) throws Exception {
+        TinyBuilder builder = new TinyBuilder();
+        transform(xml.asSource(), styleSheetPath, builder, params);
+        return new SaxonDocument(builder.getCurrentRoot());
+    }
+
+    private static void transform(Source srcXml, Path styleSheetPath, Result result, Map<String, Object> params) throws Exception {
         NioPathHolder.setBase(styleSheetPath);
-        Source srcXml = new JDOMSource(new Document((Element) xml.detach()));
-        try (InputStream in = IO.newInputStream(styleSheetPath)) {
-            Source srcSheet = new StreamSource(in, styleSheetPath.toUri().toASCIIString());
-
-            // Dear old saxon likes to yell loudly about each and every XSLT 1.0
-            // stylesheet so switch it off but trap any exceptions because this
-            // code is run on transformers other than saxon
-            TransformerFactory transFact = TransformerFactoryFactory.getTransformerFactory();
-            transFact.setURIResolver(new JeevesURIResolver());
-            try {
-                transFact.setAttribute(FeatureKeys.VERSION_WARNING, false);
-                transFact.setAttribute(FeatureKeys.LINE_NUMBERING, true);
-                transFact.setAttribute(FeatureKeys.PRE_EVALUATE_DOC_FUNCTION, false);
-                transFact.setAttribute(FeatureKeys.RECOVERY_POLICY, Configuration.RECOVER_SILENTLY);
-                transFact.setAttribute(FeatureKeys.TREE_MODEL, SAXON_TREE_MODEL);
-
-                // Add the following to get timing info on xslt transformations
-                //transFact.setAttribute(FeatureKeys.TIMING,true);
-            } catch (IllegalArgumentException e) {
-                Log.warning(Log.ENGINE, "WARNING: transformerfactory doesnt like saxon attributes!", e);
-            } finally {
-                transFact.setURIResolver(new JeevesURIResolver());
-                Transformer t = transFact.newTransformer(srcSheet);
-                if (params != null) {
-                    for (Map.Entry<String, Object> param : params.entrySet()) {
-                        t.setParameter(param.getKey(), param.getValue());
-                    }
 
-                    if (params.containsKey("geonet-force-xml")) {
-                        ((Controller) t).setOutputProperty("indent", "yes");
-                        ((Controller) t).setOutputProperty("method", "xml");
-                        ((Controller) t).setOutputProperty("{http://saxon.sf.net/}indent-spaces", "2");
-                    }
-                }
+        // The stylesheet is compiled once and shared by all threads
+        Transformer t = TemplatesRegistry.newTransformer(styleSheetPath, false);
+        if (params != null) {
+            for (Map.Entry<String, Object> param : params.entrySet()) {
+                t.setParameter(param.getKey(), param.getValue());
+            }
 
-                t.transform(srcXml, result);
+            if (params.containsKey("geonet-force-xml")) {
+                ((Controller) t).setOutputProperty("indent", "yes");
+                ((Controller) t).setOutputProperty("method", "xml");
+                ((Controller) t).setOutputProperty("{http://saxon.sf.net/}indent-spaces", "2");
             }
         }
+
+        t.transform(srcXml, result);
     }
 
     //--------------------------------------------------------------------------
 
     /**
-     * Clears the cache used in the stylesheet transformer factory. This will only work for the
-     * GeoNetwork Caching stylesheet transformer factory. This is a no-op for other transformer
-     * factories.
+     * Clears the compiled stylesheets registry and the cache used in the stylesheet transformer
+     * factory. The latter will only work for the GeoNetwork Caching stylesheet transformer factory.
      */
     public static void clearTransformerFactoryStylesheetCache() {
+        TemplatesRegistry.clear();
         TransformerFactory transFact = TransformerFactory.newInstance();
         if (transFact instanceof CachedTransformer) {
             ((CachedTransformer) transFact).clearCache();
@@ -1216,7 +1231,7 @@ public final class Xml {
     }
 
 
-    private static class JeevesURIResolver implements URIResolver {
+    static class JeevesURIResolver implements URIResolver {
 
         /**
          *
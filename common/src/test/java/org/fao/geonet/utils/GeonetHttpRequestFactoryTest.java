@@ -28,7 +28,9 @@ import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.HttpHost;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.conn.routing.HttpRoute;
 import org.jdom.Element;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -161,6 +163,28 @@ public class GeonetHttpRequestFactoryTest {
         }
     }
 
+    @Test
+    public void testConnectionsAllowedPerHost() {
+        GeonetHttpRequestFactory factory = new GeonetHttpRequestFactory();
+        HttpRoute harvested = new HttpRoute(new HttpHost("csw.example.org", 443, "https"));
+        HttpRoute other = new HttpRoute(new HttpHost("www.example.org", 80, "http"));
+        assertEquals(2, factory.getMaxPerRoute(harvested, 2));
+
+        factory.allowConnectionsPerHost("CSW.example.org", 4);
+        factory.allowConnectionsPerHost("csw.example.org", 8);
+        assertEquals(8, factory.getMaxPerRoute(harvested, 2));
+        assertEquals(2, factory.getMaxPerRoute(other, 2));
+
+        factory.releaseConnectionsPerHost("csw.example.org", 8);
+        assertEquals(4, factory.getMaxPerRoute(harvested, 2));
+        factory.releaseConnectionsPerHost("csw.example.org", 4);
+        assertEquals(2, factory.getMaxPerRoute(harvested, 2));
+
+        // Never more than the connections of the pool
+        factory.allowConnectionsPerHost("csw.example.org", 100);
+        assertEquals(20, factory.getMaxPerRoute(harvested, 2));
+    }
+
     @Test
     public void testCreateXmlRequestURL() throws Exception {
         final XmlRequest xmlRequest = new GeonetHttpRequestFactory().createXmlRequest(new URL
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.utils;
+
+import org.fao.geonet.ApplicationContextHolder;
+import org.fao.geonet.SystemInfo;
+import org.jdom.Element;
+import org.jdom.Namespace;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SaxonDocumentTest {
+    private static final String RECORD = "<gmd:MD_Metadata xmlns:gmd=\"http://www.isotc211.org/2005/gmd\">" +
+        "<gmd:title>Title</gmd:title><gmd:abstract>Abstract</gmd:abstract></gmd:MD_Metadata>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path brief;
+    private Path upperCase;
+
+    @Before
+    public void setUp() throws Exception {
+        final GenericApplicationContext applicationContext = new GenericApplicationContext();
+        applicationContext.refresh();
+        applicationContext.getBeanFactory().registerSingleton("systemInfo", SystemInfo.createForTesting(SystemInfo.STAGE_DEVELOPMENT));
+        ApplicationContextHolder.set(applicationContext);
+        TransformerFactoryFactory.init("net.sf.saxon.TransformerFactoryImpl");
+
+        brief = write("brief.xsl", "<xsl:stylesheet xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" " +
+            "xmlns:gmd=\"http://www.isotc211.org/2005/gmd\" version=\"2.0\">\n" +
+            "  <xsl:param name=\"lang\"/>\n" +
+            "  <xsl:template match=\"/\"><brief lang=\"{$lang}\"><xsl:value-of select=\"*/gmd:title\"/></brief></xsl:template>\n" +
+            "</xsl:stylesheet>");
+        upperCase = write("upper-case.xsl", "<xsl:stylesheet xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" version=\"2.0\">\n" +
+            "  <xsl:template match=\"/*\"><xsl:copy><xsl:copy-of select=\"@*\"/><xsl:value-of select=\"upper-case(.)\"/></xsl:copy></xsl:template>\n" +
+            "</xsl:stylesheet>");
+    }
+
+    @Test
+    public void testTransformedSeveralTimes() throws Exception {
+        SaxonDocument document = SaxonDocument.parse(RECORD);
+
+        Element first = Xml.transform(document, brief, Collections.singletonMap("lang", "eng"));
+        Element second = Xml.transform(document, brief, Collections.singletonMap("lang", "fre"));
+
+        assertEquals("Title", first.getText());
+        assertEquals("eng", first.getAttributeValue("lang"));
+        assertEquals("Title", second.getText());
+        assertEquals("fre", second.getAttributeValue("lang"));
+    }
+
+    @Test
+    public void testChainedTransforms() throws Exception {
+        SaxonDocument document = SaxonDocument.of(Xml.loadString(RECORD, false));
+
+        SaxonDocument result = Xml.transformToDocument(document, brief, Collections.singletonMap("lang", "eng"));
+        Element element = Xml.transform(result, upperCase, null);
+
+        assertEquals("brief", element.getName());
+        assertEquals("eng", element.getAttributeValue("lang"));
+        assertEquals("TITLE", element.getText());
+    }
+
+    @Test
+    public void testToElement() throws Exception {
+        Element original = Xml.loadString(RECORD, false);
+        SaxonDocument document = SaxonDocument.of(original);
+
+        Element element = document.toElement();
+        assertEquals(Xml.getString(original), Xml.getString(element));
+        assertEquals("Abstract", element.getChildText("abstract", Namespace.getNamespace("http://www.isotc211.org/2005/gmd")));
+
+        // A new tree is built on each call
+        element.removeContent();
+        assertEquals(Xml.getString(original), Xml.getString(document.toElement()));
+    }
+
+    @Test
+    public void testExternalEntitiesAreNotResolved() throws Exception {
+        Path secret = write("secret.txt", "SECRET");
+        String xml = "<?xml version=\"1.0\"?>\n" +
+            "<!DOCTYPE gmd:MD_Metadata [<!ENTITY xxe SYSTEM \"" + secret.toUri() + "\">]>\n" +
+            "<gmd:MD_Metadata xmlns:gmd=\"http://www.isotc211.org/2005/gmd\">" +
+            "<gmd:title>Title &xxe;</gmd:title></gmd:MD_Metadata>";
+
+        Element element = SaxonDocument.parse(xml).toElement();
+
+        String title = element.getChildText("title", Namespace.getNamespace("http://www.isotc211.org/2005/gmd"));
+        assertFalse(title.contains("SECRET"));
+        assertTrue(title.startsWith("Title"));
+    }
+
+    private Path write(String name, String content) throws Exception {
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
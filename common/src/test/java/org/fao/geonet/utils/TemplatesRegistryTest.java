@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.utils;
+
+import org.fao.geonet.ApplicationContextHolder;
+import org.fao.geonet.SystemInfo;
+import org.jdom.Element;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.support.GenericApplicationContext;
+
+import javax.xml.transform.Templates;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TemplatesRegistryTest {
+    private static final String STYLESHEET = "<xsl:stylesheet xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" version=\"1.0\">\n" +
+        "  <xsl:include href=\"included.xsl\"/>\n" +
+        "  <xsl:template match=\"/\"><root><xsl:call-template name=\"value\"/></root></xsl:template>\n" +
+        "</xsl:stylesheet>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path styleSheet;
+    private Path included;
+
+    @Before
+    public void setUp() throws Exception {
+        final GenericApplicationContext applicationContext = new GenericApplicationContext();
+        applicationContext.refresh();
+        applicationContext.getBeanFactory().registerSingleton("systemInfo", SystemInfo.createForTesting(SystemInfo.STAGE_DEVELOPMENT));
+        ApplicationContextHolder.set(applicationContext);
+        TransformerFactoryFactory.init("net.sf.saxon.TransformerFactoryImpl");
+
+        styleSheet = folder.getRoot().toPath().resolve("main.xsl");
+        included = folder.getRoot().toPath().resolve("included.xsl");
+        Files.write(styleSheet, STYLESHEET.getBytes(StandardCharsets.UTF_8));
+        writeIncluded("first");
+    }
+
+    @Test
+    public void testCompiledOnce() throws Exception {
+        Templates templates = TemplatesRegistry.getTemplates(styleSheet, false);
+        assertSame(templates, TemplatesRegistry.getTemplates(styleSheet, false));
+        assertNotSame(templates, TemplatesRegistry.getTemplates(styleSheet, true));
+        assertEquals("first", Xml.transform(new Element("el"), styleSheet).getText());
+    }
+
+    @Test
+    public void testIncludedFileChangeIsReloaded() throws Exception {
+        assertEquals("first", Xml.transform(new Element("el"), styleSheet).getText());
+
+        writeIncluded("second");
+
+        // Changes are detected by a file watcher
+        String value = null;
+        for (int i = 0; i < 100 && !"second".equals(value); i++) {
+            Thread.sleep(100);
+            value = Xml.transform(new Element("el"), styleSheet).getText();
+        }
+        assertEquals("second", value);
+    }
+
+    private void writeIncluded(String value) throws Exception {
+        Files.write(included, ("<xsl:stylesheet xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" version=\"1.0\">\n" +
+            "  <xsl:template name=\"value\">" + value + "</xsl:template>\n" +
+            "</xsl:stylesheet>").getBytes(StandardCharsets.UTF_8));
+    }
+}
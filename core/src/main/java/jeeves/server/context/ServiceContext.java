@@ -121,6 +121,14 @@ public class ServiceContext extends BasicContext {
         ApplicationContextHolder.set(this.getApplicationContext());
     }
 
+    /**
+     * Called to remove the Service context of this thread, for example by a pooled thread once it is
+     * done with the context set by {@link #setAsThreadLocal()}.
+     */
+    public static void clearAsThreadLocal() {
+        THREAD_LOCAL_INSTANCE.remove();
+    }
+
     //--------------------------------------------------------------------------
     //---
     //--- API methods
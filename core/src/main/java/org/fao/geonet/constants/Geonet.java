@@ -211,6 +211,7 @@ public final class Geonet {
         public static final String SELECTED_RESULT = "selected.result";
         public static final String FILE_DISCLAIMER = "file.disclaimer";
         public static final String BATCH_PROCESSING_REPORT = "BATCH_PROCESSING_REPORT";
+        public static final String USER_GROUPS = "user.groups";
 
         /**
          * Contains the uuids of metadatas that have to be shown
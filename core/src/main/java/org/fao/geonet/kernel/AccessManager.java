@@ -1,5 +1,5 @@
 //=============================================================================
-//===	Copyright (C) 2001-2007 Food and Agriculture Organization of the
+//===	Copyright (C) 2001-2026 Food and Agriculture Organization of the
 //===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
 //===	and United Nations Environment Programme (UNEP)
 //===
@@ -29,6 +29,9 @@ import org.apache.commons.lang.StringUtils;
 import org.fao.geonet.ApplicationContextHolder;
 import org.fao.geonet.constants.Geonet;
 import org.fao.geonet.domain.*;
+import org.fao.geonet.events.group.GroupCreated;
+import org.fao.geonet.events.group.GroupRemoved;
+import org.fao.geonet.events.user.UserEvent;
 import org.fao.geonet.kernel.datamanager.IMetadataUtils;
 import org.fao.geonet.kernel.security.ViewMdGrantedAuthority;
 import org.fao.geonet.kernel.setting.SettingManager;
@@ -38,13 +41,19 @@ import org.fao.geonet.repository.specification.UserGroupSpecs;
 import org.fao.geonet.utils.Log;
 import org.jdom.Element;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
-import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
 import static org.fao.geonet.kernel.setting.Settings.SYSTEM_INTRANET_IP_SEPARATOR;
@@ -55,15 +64,17 @@ import static org.springframework.data.jpa.domain.Specification.where;
 
 /**
  * Handles the access to a metadata depending on the metadata/group.
+ *
+ * The groups of an authenticated user are resolved once and kept in the user session (see
+ * {@link UserSessionGroups}). They are resolved again when a user or group membership changes, or
+ * after accessManager.userGroups.cacheSeconds for changes made without entity events (eg. bulk
+ * deletes).
  */
-public class AccessManager {
+public class AccessManager implements ApplicationListener<ApplicationEvent> {
 
     @Autowired
     SettingManager settingManager;
 
-    @Autowired
-    SettingRepository settingRepository;
-
     @Autowired
     IMetadataUtils metadataUtils;
 
@@ -82,6 +93,15 @@ public class AccessManager {
     @Autowired
     UserRepository userRepository;
 
+    @Value("${accessManager.userGroups.cacheSeconds:60}")
+    long userGroupsCacheSeconds = 60;
+
+    /**
+     * Incremented on each user or group membership change, invalidating the groups kept in the
+     * user sessions.
+     */
+    private final AtomicLong userGroupsVersion = new AtomicLong();
+
     public static Stream<AnonymousAccessLink> anonymousAccessLinkStreamFromSecurityContext() {
         return SecurityContextHolder.getContext().getAuthentication().getAuthorities().stream()
                 .filter(ViewMdGrantedAuthority.class::isInstance)
@@ -156,8 +176,6 @@ public class AccessManager {
      * @param editingGroupsOnly TODO
      */
     public Set<Integer> getUserGroups(UserSession usrSess, String ip, boolean editingGroupsOnly) throws Exception {
-        final ConfigurableApplicationContext applicationContext = ApplicationContextHolder.get();
-
         Set<Integer> hs = new HashSet<Integer>();
 
         // add All (1) network group
@@ -171,20 +189,70 @@ public class AccessManager {
             // add (-1) GUEST group
             hs.add(ReservedGroup.guest.getId());
 
-            if (Profile.Administrator == usrSess.getProfile()) {
-                List<Integer> allGroupIds = groupRepository.findIds();
+            UserSessionGroups sessionGroups = getSessionGroups(usrSess);
+            // an administrator can edit in all groups
+            hs.addAll(editingGroupsOnly && Profile.Administrator != usrSess.getProfile()
+                ? sessionGroups.getEditingGroups() : sessionGroups.getGroups());
+        }
+        return hs;
+    }
 
-                hs.addAll(allGroupIds);
-            } else {
-                Specification<UserGroup> spec = UserGroupSpecs.hasUserId(usrSess.getUserIdAsInt());
-                if (editingGroupsOnly) {
-                    spec = Specification.where(spec).and(UserGroupSpecs.hasProfile(Profile.Editor));
-                }
+    /**
+     * Returns the groups of the authenticated user of the session, resolving them if they are
+     * not in the session yet or if they changed since they were resolved.
+     */
+    public UserSessionGroups getSessionGroups(UserSession usrSess) {
+        final int userId = usrSess.getUserIdAsInt();
+        final Profile profile = usrSess.getProfile();
+        final long version = userGroupsVersion.get();
+        final long now = System.currentTimeMillis();
+
+        Object cached = usrSess.getProperty(Geonet.Session.USER_GROUPS);
+        if (cached instanceof UserSessionGroups
+            && ((UserSessionGroups) cached).isValid(userId, profile, version, now)) {
+            return (UserSessionGroups) cached;
+        }
+
+        Set<Integer> groups = new HashSet<>();
+        Set<Integer> editingGroups = new HashSet<>();
+        Set<Integer> reviewerGroups = new HashSet<>();
+        for (UserGroup userGroup : userGroupRepository.findAll(UserGroupSpecs.hasUserId(userId))) {
+            int groupId = userGroup.getId().getGroupId();
+            groups.add(groupId);
+            if (userGroup.getProfile() == Profile.Editor) {
+                editingGroups.add(groupId);
+            } else if (userGroup.getProfile() == Profile.Reviewer) {
+                reviewerGroups.add(groupId);
+            }
+        }
+        if (Profile.Administrator == profile) {
+            groups = new HashSet<>(groupRepository.findIds());
+        }
+
+        UserSessionGroups sessionGroups = new UserSessionGroups(userId, profile, version,
+            now + TimeUnit.SECONDS.toMillis(userGroupsCacheSeconds), groups, editingGroups, reviewerGroups);
+        usrSess.setProperty(Geonet.Session.USER_GROUPS, sessionGroups);
+        return sessionGroups;
+    }
 
-                hs.addAll(userGroupRepository.findGroupIds(spec));
+    /**
+     * Invalidates the groups kept in the user sessions when a user or a group membership changes.
+     * Membership events are published before the change is flushed, so the groups are invalidated
+     * again once the transaction completes.
+     */
+    @Override
+    public void onApplicationEvent(ApplicationEvent event) {
+        if (event instanceof UserEvent || event instanceof GroupCreated || event instanceof GroupRemoved) {
+            userGroupsVersion.incrementAndGet();
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        userGroupsVersion.incrementAndGet();
+                    }
+                });
             }
         }
-        return hs;
     }
 
     /**
@@ -209,13 +277,7 @@ public class AccessManager {
 
         // get other groups
         if ((usrSess != null) && usrSess.isAuthenticated()) {
-            Specification<UserGroup> spec =
-                UserGroupSpecs.hasUserId(usrSess.getUserIdAsInt());
-            spec = Specification
-                .where(spec)
-                .and(UserGroupSpecs.hasProfile(Profile.Reviewer));
-
-            hs.addAll(userGroupRepository.findGroupIds(spec));
+            hs.addAll(getSessionGroups(usrSess).getReviewerGroups());
         }
         return hs;
     }
@@ -472,13 +534,9 @@ public class AccessManager {
         }
 
         // Check if the user is a reviewer in the metadata owners group.
-        Specification<UserGroup> hasUserIdAndGroupAndProfile = where(UserGroupSpecs.hasProfile(Profile.Reviewer))
-            .and(UserGroupSpecs.hasGroupId(metadata.getSourceInfo().getGroupOwner()))
-            .and(UserGroupSpecs.hasUserId(us.getUserIdAsInt()));
-
-        UserGroupRepository userGroupRepo = context.getBean(UserGroupRepository.class);
-        boolean userIsReviewerOfOwnerGroup =
-            !userGroupRepo.findAll(hasUserIdAndGroupAndProfile).isEmpty();
+        Integer groupOwner = metadata.getSourceInfo().getGroupOwner();
+        boolean userIsReviewerOfOwnerGroup = groupOwner != null
+            && getSessionGroups(us).getReviewerGroups().contains(groupOwner);
 
         if (settingManager.getValueAsBool(
                 SYSTEM_METADATAPRIVS_PUBLICATIONBYGROUPOWNERONLY, true)) {
@@ -509,16 +567,22 @@ public class AccessManager {
             return false;
         }
 
-        Specification spec = where(UserGroupSpecs.hasProfile(profile)).and(UserGroupSpecs.hasUserId(us.getUserIdAsInt()));
+        final Set<Integer> profileGroups;
+        if (profile == Profile.Editor || profile == Profile.Reviewer) {
+            UserSessionGroups sessionGroups = getSessionGroups(us);
+            profileGroups = profile == Profile.Editor
+                ? sessionGroups.getEditingGroups() : sessionGroups.getReviewerGroups();
+        } else {
+            profileGroups = new HashSet<>(userGroupRepository.findGroupIds(
+                where(UserGroupSpecs.hasProfile(profile)).and(UserGroupSpecs.hasUserId(us.getUserIdAsInt()))));
+        }
 
-        List<Integer> opAlloweds = new ArrayList<Integer>();
         for (OperationAllowed opAllowed : allOpAlloweds) {
-            opAlloweds.add(opAllowed.getId().getGroupId());
+            if (profileGroups.contains(opAllowed.getId().getGroupId())) {
+                return true;
+            }
         }
-        spec = spec.and(UserGroupSpecs.hasGroupIds(opAlloweds));
-
-        return (!userGroupRepository.findAll(spec).isEmpty());
-
+        return false;
     }
 
     /**
@@ -625,19 +689,15 @@ public class AccessManager {
         }
 
         // IPv4
-        Optional<Setting> network = settingRepository.findById(Settings.SYSTEM_INTRANET_NETWORK);
-        Optional<Setting> netmask = settingRepository.findById(Settings.SYSTEM_INTRANET_NETMASK);
+        String network = settingManager.getValue(Settings.SYSTEM_INTRANET_NETWORK, true);
+        String netmask = settingManager.getValue(Settings.SYSTEM_INTRANET_NETMASK, true);
 
         try {
-            if (network.isPresent()
-                && netmask.isPresent()
-                && StringUtils.isNotEmpty(network.get().getValue())
-                && StringUtils.isNotEmpty(netmask.get().getValue())) {
+            if (StringUtils.isNotEmpty(network)
+                && StringUtils.isNotEmpty(netmask)) {
                 long lAddress = getAddress(ip.split(",")[0]);
-                String[] networkArray = network
-                    .get().getValue().split(SYSTEM_INTRANET_IP_SEPARATOR);
-                String[] netmaskArray = netmask
-                    .get().getValue().split(SYSTEM_INTRANET_IP_SEPARATOR);
+                String[] networkArray = network.split(SYSTEM_INTRANET_IP_SEPARATOR);
+                String[] netmaskArray = netmask.split(SYSTEM_INTRANET_IP_SEPARATOR);
 
                 if (isValidIntranetSettings(networkArray, netmaskArray)) {
                     for (int i = 0; i < networkArray.length; i++) {
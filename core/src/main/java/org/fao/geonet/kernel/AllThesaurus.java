@@ -168,23 +168,23 @@ public class AllThesaurus extends Thesaurus {
     }
 
     @Override
-    public synchronized LocalRepository getRepository() {
+    public LocalRepository getRepository() {
         throw new UnsupportedOperationException();
     }
 
     @Override
-    public synchronized Thesaurus setRepository(LocalRepository repository) {
+    public Thesaurus setRepository(LocalRepository repository) {
         throw new UnsupportedOperationException();
     }
 
     @Override
-    public synchronized Thesaurus initRepository() throws ConfigurationException, IOException {
+    public Thesaurus initRepository() throws ConfigurationException, IOException {
         // do nothing
         return this;
     }
 
     @Override
-    public synchronized QueryResultsTable performRequest(final String query) throws IOException, MalformedQueryException,
+    public QueryResultsTable performRequest(final String query) throws IOException, MalformedQueryException,
         QueryEvaluationException, AccessDeniedException {
         final Map<Thesaurus, QueryResultsTable> allResults = Maps.newIdentityHashMap();
         onThesauri(null, new Function<Thesaurus, Void>() {
@@ -207,38 +207,67 @@ public class AllThesaurus extends Thesaurus {
         return new AllQueryResultsTable(allResults);
     }
 
+    /**
+     * Search the concept index of each thesaurus. Searches by URI are not supported, the URIs of this
+     * thesaurus embed the key of the thesaurus of the keyword.
+     */
+    @Override
+    public List<KeywordBean> searchConcepts(final ThesaurusConceptIndex.ConceptQuery query, final int limit) {
+        if (query.hasUris()) {
+            return null;
+        }
+        final List<KeywordBean> keywords = new ArrayList<>();
+        onThesauri(null, new Function<Thesaurus, Void>() {
+            @Nullable
+            @Override
+            public Void apply(@Nonnull Thesaurus input) {
+                if (limit > -1 && keywords.size() >= limit) {
+                    return null;
+                }
+                for (KeywordBean keyword : input.searchConcepts(query, limit > -1 ? limit - keywords.size() : -1)) {
+                    updateKeywordBeanThesaurusInfo(keyword)
+                        .setDownloadUrl(getDownloadUrl())
+                        .setKeywordUrl(getKeywordUrl());
+                    keywords.add(keyword);
+                }
+                return null;
+            }
+        });
+        return keywords;
+    }
+
     @Override
     public boolean hasConceptScheme(String uri) {
         return false;
     }
 
     @Override
-    public synchronized URI addElement(KeywordBean keyword) throws IOException, AccessDeniedException, GraphException {
+    public URI addElement(KeywordBean keyword) throws IOException, AccessDeniedException, GraphException {
         throw new UnsupportedOperationException();
     }
 
     @Override
-    public synchronized Thesaurus removeElement(KeywordBean keyword) throws AccessDeniedException {
+    public Thesaurus removeElement(KeywordBean keyword) throws AccessDeniedException {
         throw new UnsupportedOperationException();
     }
 
     @Override
-    public synchronized Thesaurus removeElement(String namespace, String code) throws AccessDeniedException {
+    public Thesaurus removeElement(String namespace, String code) throws AccessDeniedException {
         throw new UnsupportedOperationException();
     }
 
     @Override
-    public synchronized Thesaurus removeElement(String uri) throws AccessDeniedException {
+    public Thesaurus removeElement(String uri) throws AccessDeniedException {
         throw new UnsupportedOperationException();
     }
 
     @Override
-    public synchronized URI updateElement(KeywordBean keyword, boolean replace) throws AccessDeniedException {
+    public URI updateElement(KeywordBean keyword, boolean replace) throws AccessDeniedException {
         throw new UnsupportedOperationException();
     }
 
     @Override
-    public synchronized boolean isFreeCode(final String namespace, final String code) throws AccessDeniedException {
+    public boolean isFreeCode(final String namespace, final String code) throws AccessDeniedException {
         return onThesauri(true, new Function<Thesaurus, Boolean>() {
             @Nullable
             @Override
@@ -261,12 +290,12 @@ public class AllThesaurus extends Thesaurus {
     }
 
     @Override
-    public synchronized Thesaurus updateCode(String namespace, String oldcode, String newcode) throws AccessDeniedException {
+    public Thesaurus updateCode(String namespace, String oldcode, String newcode) throws AccessDeniedException {
         throw new UnsupportedOperationException();
     }
 
     @Override
-    public synchronized Thesaurus updateCodeByURI(String olduri, String newuri) throws AccessDeniedException {
+    public Thesaurus updateCodeByURI(String olduri, String newuri) throws AccessDeniedException {
         throw new UnsupportedOperationException();
     }
 
@@ -282,7 +311,7 @@ public class AllThesaurus extends Thesaurus {
     }
 
     @Override
-    public synchronized void addRelation(String subject, KeywordRelation related, String relatedSubject) throws AccessDeniedException {
+    public void addRelation(String subject, KeywordRelation related, String relatedSubject) throws AccessDeniedException {
         throw new UnsupportedOperationException();
     }
 
@@ -379,7 +408,7 @@ public class AllThesaurus extends Thesaurus {
     }
 
     @Override
-    public synchronized void clear() throws IOException, AccessDeniedException {
+    public void clear() throws IOException, AccessDeniedException {
         throw new UnsupportedOperationException();
     }
 
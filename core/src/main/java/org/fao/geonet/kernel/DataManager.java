@@ -55,6 +55,7 @@ import org.fao.geonet.kernel.datamanager.IMetadataUtils;
 import org.fao.geonet.kernel.datamanager.IMetadataValidator;
 import org.fao.geonet.kernel.schema.MetadataSchema;
 import org.fao.geonet.kernel.search.IndexingMode;
+import org.fao.geonet.kernel.search.index.BatchIndexingListener;
 import org.fao.geonet.repository.UserGroupRepository;
 import org.jdom.Element;
 import org.slf4j.Logger;
@@ -168,6 +169,11 @@ public class DataManager {
         metadataIndexer.indexMetadata(metadataId, forceRefreshReaders, IndexingMode.full);
     }
 
+    @Deprecated
+    public void indexMetadataInBatch(final List<?> metadataIds, BatchIndexingListener listener) throws Exception {
+        metadataIndexer.indexMetadataInBatch(metadataIds, IndexingMode.full, listener);
+    }
+
     @Deprecated
     public MetadataSchema getSchema(String name) {
         return metadataSchemaUtils.getSchema(name);
@@ -415,6 +421,14 @@ public class DataManager {
             updateDateStamp, indexingMode);
     }
 
+    public AbstractMetadata updateMetadata(final ServiceContext context, final String metadataId, final Element md,
+                                           final boolean validate, final boolean ufo,  final String lang, final String changeDate,
+                                           final boolean updateDateStamp, final IndexingMode indexingMode,
+                                           final String expectedVersion) throws Exception {
+        return metadataManager.updateMetadata(context, metadataId, md, validate, ufo, lang, changeDate,
+            updateDateStamp, indexingMode, expectedVersion);
+    }
+
     @Deprecated
     public boolean validate(Element xml) {
         return metadataValidator.validate(xml);
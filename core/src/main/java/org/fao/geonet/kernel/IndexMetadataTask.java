@@ -28,7 +28,10 @@ import jeeves.server.context.ServiceContext;
 import org.fao.geonet.Util;
 import org.fao.geonet.constants.Geonet;
 import org.fao.geonet.domain.User;
+import org.fao.geonet.kernel.datamanager.IMetadataIndexer;
 import org.fao.geonet.kernel.search.EsSearchManager;
+import org.fao.geonet.kernel.search.IndexingMode;
+import org.fao.geonet.kernel.search.index.BatchIndexingListener;
 import org.fao.geonet.utils.Log;
 import org.springframework.transaction.TransactionStatus;
 
@@ -98,20 +101,21 @@ public final class IndexMetadataTask implements Runnable {
                 }
             }
 
-            DataManager dataManager = _context.getBean(DataManager.class);
+            IMetadataIndexer metadataIndexer = _context.getBean(IMetadataIndexer.class);
             // servlet up so safe to index all metadata that needs indexing
-            for (Object metadataId : _metadataIds) {
-                this.indexed.incrementAndGet();
-                if (this.indexed.compareAndSet(500, 0)) {
-                    searchManager.forceIndexChanges();
-                }
-
-                try {
-                    dataManager.indexMetadata(metadataId.toString(), false);
-                } catch (Exception e) {
-                    Log.error(Geonet.INDEX_ENGINE, "Error indexing metadata '" + metadataId + "': " + e.getMessage()
-                        + "\n" + Util.getStackTrace(e));
-                }
+            try {
+                metadataIndexer.indexMetadataInBatch(_metadataIds, IndexingMode.full, new BatchIndexingListener() {
+                    @Override
+                    public void onIndexed(String metadataId) {
+                        // The counter is shared by all tasks of the batch
+                        if (indexed.incrementAndGet() % 500 == 0) {
+                            searchManager.forceIndexChanges();
+                        }
+                    }
+                });
+            } catch (Exception e) {
+                Log.error(Geonet.INDEX_ENGINE, "Error indexing metadata: " + e.getMessage()
+                    + "\n" + Util.getStackTrace(e));
             }
             if (_user != null && _context.getUserSession().getUserId() == null) {
                 _context.getUserSession().loginAs(_user);
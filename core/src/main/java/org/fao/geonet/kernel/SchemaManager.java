@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2001-2024 Food and Agriculture Organization of the
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
  * United Nations (FAO-UN), United Nations World Food Programme (WFP)
  * and United Nations Environment Programme (UNEP)
  *
@@ -41,6 +41,7 @@ import org.fao.geonet.kernel.schema.MetadataSchema;
 import org.fao.geonet.kernel.schema.MetadataSchemaOperationFilter;
 import org.fao.geonet.kernel.schema.SchemaLoader;
 import org.fao.geonet.kernel.schema.SchemaPlugin;
+import org.fao.geonet.kernel.search.EsSearchManager;
 import org.fao.geonet.kernel.setting.SettingInfo;
 import org.fao.geonet.repository.SchematronCriteriaGroupRepository;
 import org.fao.geonet.repository.SchematronRepository;
@@ -49,6 +50,7 @@ import org.fao.geonet.utils.IO;
 import org.fao.geonet.utils.Log;
 import org.fao.geonet.utils.PrefixUrlRewrite;
 import org.fao.geonet.utils.ResolverWrapper;
+import org.fao.geonet.utils.TemplatesRegistry;
 import org.fao.geonet.utils.Version;
 import org.fao.geonet.utils.Xml;
 import org.fao.geonet.utils.nio.NioPathAwareCatalogResolver;
@@ -59,7 +61,9 @@ import org.jdom.Element;
 import org.jdom.JDOMException;
 import org.jdom.Namespace;
 import org.jdom.filter.ElementFilter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -69,12 +73,19 @@ import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -97,6 +108,7 @@ public class SchemaManager {
     private static final String GEONET_SCHEMA_URI = "http://geonetwork-opensource.org/schemas/schema-ident";
     private static final Namespace GEONET_SCHEMA_PREFIX_NS = Namespace.getNamespace("gns", GEONET_SCHEMA_URI);
     private static final Namespace GEONET_SCHEMA_NS = Namespace.getNamespace(GEONET_SCHEMA_URI);
+    private static final String SCHEMATRON_CACHE_DIR = "schematron";
     /**
      * Active readers count
      */
@@ -118,6 +130,16 @@ public class SchemaManager {
     private Path resourcePath;
     private Path schemaPublicationDir;
     private int numberOfCoreSchemasAdded = 0;
+    /**
+     * Directory of the compiled schematron rules, by content hash.
+     */
+    private Path schematronCacheDir;
+
+    /**
+     * Number of schemas loaded at the same time on startup.
+     */
+    @Value("${schema.load.threads:4}")
+    private int loadThreads = 4;
 
     public static Path registerXmlCatalogFiles(Path webappDir, Path schemapluginUriCatalog) {
         Path webInf = webappDir.resolve("WEB-INF");
@@ -185,6 +207,7 @@ public class SchemaManager {
         this.createOrUpdateSchemaCatalog = schemaManager.createOrUpdateSchemaCatalog;
 
         addResolverRewriteDirectives(dataDir);
+        this.schematronCacheDir = schemaManager.schematronCacheDir;
 
         this.hmSchemas.clear();
         this.hmSchemas.putAll(schemaManager.hmSchemas);
@@ -196,6 +219,10 @@ public class SchemaManager {
 
     }
 
+    private static Path getSchematronCacheDir(GeonetworkDataDirectory dataDir) {
+        return dataDir.getHtmlCacheDir() == null ? null : dataDir.getHtmlCacheDir().resolve(SCHEMATRON_CACHE_DIR);
+    }
+
     private void addResolverRewriteDirectives(GeonetworkDataDirectory dataDir) {
         NioPathAwareCatalogResolver.addRewriteDirective(new PrefixUrlRewrite("sharedFormatterDir/",
             dataDir.getFormatterDir().toAbsolutePath().toUri() + "/"));
@@ -235,18 +262,21 @@ public class SchemaManager {
 
         Element schemaPluginCatRoot = getSchemaPluginCatalogTemplate();
 
-        addResolverRewriteDirectives(applicationContext.getBean(GeonetworkDataDirectory.class));
+        GeonetworkDataDirectory dataDirectory = applicationContext.getBean(GeonetworkDataDirectory.class);
+        addResolverRewriteDirectives(dataDirectory);
+        this.schematronCacheDir = getSchematronCacheDir(dataDirectory);
 
         // -- check the plugin directory and add any schemas already in there
         try (DirectoryStream<Path> saSchemas = Files.newDirectoryStream(this.schemaPluginsDir)) {
+            List<Path> schemaDirs = new ArrayList<>();
             for (Path schemaDir : saSchemas) {
                 if (!schemaDir.getFileName().toString().equals("CVS") && !schemaDir.getFileName().startsWith(".")) {
                     if (Files.isDirectory(schemaDir)) {
-                        Log.info(Geonet.SCHEMA_MANAGER, "Loading schema " + schemaDir.getFileName() + "...");
-                        processSchema(applicationContext, schemaDir, schemaPluginCatRoot);
+                        schemaDirs.add(schemaDir);
                     }
                 }
             }
+            processSchemas(applicationContext, schemaDirs, schemaPluginCatRoot);
 
             checkAppSupported(schemaPluginCatRoot);
 
@@ -255,6 +285,35 @@ public class SchemaManager {
 
         writeSchemaPluginCatalog(schemaPluginCatRoot);
 
+        compileStylesheets(hmSchemas.keySet());
+    }
+
+    /**
+     * Compiles the index stylesheets of the schemas in the background so that they are ready
+     * when the first records are indexed.
+     */
+    private void compileStylesheets(Set<String> schemaNames) {
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "schema-stylesheets-compilation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (String name : new ArrayList<>(schemaNames)) {
+            final Path styleSheet = getSchemaDir(name)
+                .resolve(EsSearchManager.SCHEMA_INDEX_XSLT_FOLDER)
+                .resolve(EsSearchManager.SCHEMA_INDEX_XSTL_FILENAME);
+            if (Files.exists(styleSheet)) {
+                executor.execute(() -> {
+                    try {
+                        TemplatesRegistry.compile(styleSheet);
+                    } catch (Exception e) {
+                        Log.warning(Geonet.SCHEMA_MANAGER, "Failed to compile stylesheet " + styleSheet
+                            + ". Error is: " + e.getMessage());
+                    }
+                });
+            }
+        }
+        executor.shutdown();
     }
 
     //--------------------------------------------------------------------------
@@ -912,6 +971,7 @@ public class SchemaManager {
             checkDepends(name, schema.getDependElements());
 
             writeSchemaPluginCatalog(schemaPluginCatRoot);
+            compileStylesheets(Collections.singleton(name));
         } catch (Exception e) {
             Log.error(Geonet.SCHEMA_MANAGER, e.getMessage(), e);
             hmSchemas.remove(name);
@@ -933,10 +993,19 @@ public class SchemaManager {
     private void addSchema(ApplicationContext applicationContext, Path schemaDir, Element schemaPluginCatRoot, Path xmlSchemaFile,
                            Path xmlSuggestFile, Path xmlSubstitutionsFile, Path xmlIdFile, Path oasisCatFile, Path conversionsFile)
         throws Exception {
-        Path path = schemaDir;
+        addOasisCatalog(oasisCatFile);
+
+        LoadedSchema schema = loadSchema(applicationContext, schemaDir, xmlSchemaFile, xmlSuggestFile,
+            xmlSubstitutionsFile, xmlIdFile, conversionsFile);
+
+        registerSchema(schema, schemaPluginCatRoot);
+    }
 
-        // -- add any oasis catalog files to Jeeves.XML_CATALOG_FILES system
-        // -- property for resolver to pick up
+    /**
+     * Add the OASIS catalog file of a schema to the Jeeves.XML_CATALOG_FILES system property for
+     * the resolver to pick up.
+     */
+    private void addOasisCatalog(Path oasisCatFile) {
         if (Files.exists(oasisCatFile)) {
             String catalogProp = System.getProperty(Constants.XML_CATALOG_FILES);
             if (catalogProp == null)
@@ -949,6 +1018,17 @@ public class SchemaManager {
             System.setProperty(Constants.XML_CATALOG_FILES, catalogProp);
             Xml.resetResolver();
         }
+    }
+
+    /**
+     * Loads the metadata schema from disk: parse the XSDs, compile the schematron rules and read
+     * the schema information files. This does not change the state of the schema manager, so
+     * schemas can be loaded in parallel.
+     */
+    private LoadedSchema loadSchema(ApplicationContext applicationContext, Path schemaDir, Path xmlSchemaFile,
+                                    Path xmlSuggestFile, Path xmlSubstitutionsFile, Path xmlIdFile, Path conversionsFile)
+        throws Exception {
+        Path path = schemaDir;
 
         SchematronRepository schemaRepo = applicationContext.getBean(SchematronRepository.class);
         SchematronCriteriaGroupRepository criteriaGroupRepository = applicationContext.getBean(SchematronCriteriaGroupRepository.class);
@@ -956,12 +1036,7 @@ public class SchemaManager {
 
         mds.setName(path.getFileName().toString());
         mds.setSchemaDir(path);
-        mds.loadSchematronRules(basePath);
-
-        if (mds.getSchemaPlugin() != null && mds.getSchemaPlugin().getCswTypeNames() != null) {
-            hmSchemasTypenames.putAll(mds.getSchemaPlugin().getCswTypeNames());
-            cswOutputSchemas.putAll(mds.getSchemaPlugin().getOutputSchemas());
-        }
+        mds.loadSchematronRules(basePath, schematronCacheDir);
 
         // -- add cached xml files (schema codelists and label files)
         // -- as Jeeves XmlFile objects (they need not exist)
@@ -999,19 +1074,44 @@ public class SchemaManager {
 
         Log.debug(Geonet.SCHEMA_MANAGER, "  UUID is read/write mode: " + mds.isReadwriteUUID());
 
+        LoadedSchema schema = new LoadedSchema();
+        schema.name = schemaName;
+        schema.id = idInfo.one(); // uuid of schema
+        schema.version = idInfo.two(); // version of schema
+        schema.mds = mds;
+        schema.dir = path;
+        schema.suggestions = new SchemaSuggestions(xmlSuggestFile);
+        schema.autodetectElements = extractADElements(xmlIdFile);
+        schema.info = xfMap;
+        schema.schemaLocation = extractSchemaLocation(xmlIdFile);
+        schema.conversionElements = extractConvElements(conversionsFile);
+        schema.dependElements = extractDepends(xmlIdFile);
+        return schema;
+    }
+
+    /**
+     * Adds a loaded schema to the pool and to the schema plugins catalog.
+     */
+    private void registerSchema(LoadedSchema schema, Element schemaPluginCatRoot) throws Exception {
+        MetadataSchema mds = schema.mds;
+        if (mds.getSchemaPlugin() != null && mds.getSchemaPlugin().getCswTypeNames() != null) {
+            hmSchemasTypenames.putAll(mds.getSchemaPlugin().getCswTypeNames());
+            cswOutputSchemas.putAll(mds.getSchemaPlugin().getOutputSchemas());
+        }
+
         putSchemaInfo(
-            schemaName,
-            idInfo.one(), // uuid of schema
-            idInfo.two(), // version of schema
+            schema.name,
+            schema.id,
+            schema.version,
             mds,
-            path,
-            new SchemaSuggestions(xmlSuggestFile),
-            extractADElements(xmlIdFile),
-            xfMap,
+            schema.dir,
+            schema.suggestions,
+            schema.autodetectElements,
+            schema.info,
             true, // all schemas are plugin schemas now
-            extractSchemaLocation(xmlIdFile),
-            extractConvElements(conversionsFile),
-            extractDepends(xmlIdFile));
+            schema.schemaLocation,
+            schema.conversionElements,
+            schema.dependElements);
 
         if (Log.isDebugEnabled(Geonet.SCHEMA_MANAGER)) {
             Log.debug(Geonet.SCHEMA_MANAGER, "Property " + Constants.XML_CATALOG_FILES + " is " + System.getProperty(Constants.XML_CATALOG_FILES));
@@ -1019,16 +1119,16 @@ public class SchemaManager {
 
         // -- Add entry for presentation xslt to schemaPlugins catalog
         // -- if this schema is a plugin schema
-        int baseNrInt = getHighestSchemaPluginCatalogId(schemaName, schemaPluginCatRoot);
+        int baseNrInt = getHighestSchemaPluginCatalogId(schema.name, schemaPluginCatRoot);
         if (baseNrInt == 0)
             baseNrInt = numberOfCoreSchemasAdded;
         if (baseNrInt != -1) {
-            createUriEntryInSchemaPluginCatalog(schemaName, baseNrInt, schemaPluginCatRoot);
+            createUriEntryInSchemaPluginCatalog(schema.name, baseNrInt, schemaPluginCatRoot);
         }
 
         // -- copy schema.xsd and schema directory from schema to
         // -- <web_app_dir>/xml/schemas/<schema_name>
-        copySchemaXSDsToWebApp(schemaName, path);
+        copySchemaXSDsToWebApp(schema.name, schema.dir);
 
     }
 
@@ -1041,7 +1141,7 @@ public class SchemaManager {
      */
     public void reloadSchema(String schemaIdentifier) {
         MetadataSchema metadataSchema = this.getSchema(schemaIdentifier);
-        metadataSchema.loadSchematronRules(basePath);
+        metadataSchema.loadSchematronRules(basePath, schematronCacheDir);
     }
 
 
@@ -1328,6 +1428,161 @@ public class SchemaManager {
 
     }
 
+    /**
+     * Processes the schemas of the schema plugin directory. The schemas are loaded in parallel,
+     * each one once the schemas it depends on are loaded, and are then added to the pool in the
+     * directory order.
+     *
+     * @param schemaDirs the schema directories
+     */
+    private void processSchemas(ApplicationContext applicationContext, List<Path> schemaDirs, Element schemaPluginCatRoot) throws OperationAbortedEx {
+        // Read the schema-ident files and register the OASIS catalogs of all schemas before loading
+        // any of them, so that XSDs imported from other schemas are resolved whatever the loading order.
+        Map<String, Path> toLoad = new LinkedHashMap<>();
+        Map<String, List<String>> dependencies = new HashMap<>();
+        for (Path schemasDir : schemaDirs) {
+            Log.info(Geonet.SCHEMA_MANAGER, "Loading schema " + schemasDir.getFileName() + "...");
+
+            Path idFile = schemasDir.resolve(Geonet.File.SCHEMA_ID);
+            if (!Files.exists(idFile)) {
+                Log.error(Geonet.SCHEMA_MANAGER, "    Skipping : " + schemasDir.getFileName() + " as it doesn't have " +
+                    Geonet.File.SCHEMA_ID);
+                continue;
+            }
+
+            Log.info(Geonet.SCHEMA_MANAGER, "    Adding xml schema : " + schemasDir.getFileName());
+
+            String stage = "";
+            try {
+                // validate the schema-ident file before reading it
+                stage = "reading schema-ident file " + idFile;
+                Element root = Xml.loadFile(idFile);
+                stage = "validating schema-ident file " + idFile;
+                Xml.validate(root);
+
+                final String schemaName = schemasDir.getFileName().toString();
+                if (hmSchemas.containsKey(schemaName) || toLoad.containsKey(schemaName)) { // exists so ignore it
+                    Log.error(Geonet.SCHEMA_MANAGER, "Schema " + schemaName + " already exists - cannot add!");
+                } else {
+                    toLoad.put(schemaName, schemasDir);
+                    dependencies.put(schemaName, extractDepends(idFile).stream()
+                        .map(Element::getText)
+                        .collect(Collectors.toList()));
+                    addOasisCatalog(schemasDir.resolve(Geonet.File.SCHEMA_OASIS));
+                }
+            } catch (Exception e) {
+                String errStr = "Failed whilst " + stage + ". Exception message if any is " + e.getMessage();
+                Log.error(Geonet.SCHEMA_MANAGER, errStr, e);
+                throw new OperationAbortedEx(errStr, e);
+            }
+        }
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("schema-loading-");
+        threadFactory.setDaemon(true);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, loadThreads), threadFactory);
+        try {
+            Map<String, CompletableFuture<LoadedSchema>> loading = scheduleLoading(dependencies, schemaName -> {
+                Path schemasDir = toLoad.get(schemaName);
+                try {
+                    return loadSchema(applicationContext, schemasDir,
+                        schemasDir.resolve(Geonet.File.SCHEMA),
+                        schemasDir.resolve(Geonet.File.SCHEMA_SUGGESTIONS),
+                        schemasDir.resolve(Geonet.File.SCHEMA_SUBSTITUTES),
+                        schemasDir.resolve(Geonet.File.SCHEMA_ID),
+                        schemasDir.resolve(Geonet.File.SCHEMA_CONVERSIONS));
+                } catch (Exception e) {
+                    String errStr = "Failed whilst adding the schema information. Exception message if any is " + e.getMessage();
+                    Log.error(Geonet.SCHEMA_MANAGER, errStr, e);
+                    throw new OperationAbortedEx(errStr, e);
+                }
+            }, executor);
+
+            for (Map.Entry<String, Path> schema : toLoad.entrySet()) {
+                try {
+                    registerSchema(loading.get(schema.getKey()).join(), schemaPluginCatRoot);
+                    ResolverWrapper.createResolverForSchema(schema.getKey(),
+                        schema.getValue().resolve(Geonet.File.SCHEMA_OASIS));
+                } catch (CompletionException e) {
+                    if (e.getCause() instanceof OperationAbortedEx) {
+                        throw (OperationAbortedEx) e.getCause();
+                    }
+                    throw e;
+                } catch (Exception e) {
+                    String errStr = "Failed whilst adding the schema information. Exception message if any is " + e.getMessage();
+                    Log.error(Geonet.SCHEMA_MANAGER, errStr, e);
+                    throw new OperationAbortedEx(errStr, e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Loads one schema.
+     */
+    @VisibleForTesting
+    interface SchemaLoadingTask<T> {
+        T load(String schemaName) throws Exception;
+    }
+
+    /**
+     * Schedule the loading of schemas, each one once the schemas it depends on are loaded.
+     * Dependencies on schemas which are not in the map are ignored (they are reported once all
+     * schemas are loaded) and so are the dependencies closing a cycle. A schema whose dependency
+     * failed to load is not loaded and its future fails with the same error.
+     *
+     * @param dependencies the names of the schemas to load and the names of the schemas they depend on
+     * @return the loading of each schema, by name
+     */
+    @VisibleForTesting
+    static <T> Map<String, CompletableFuture<T>> scheduleLoading(Map<String, List<String>> dependencies,
+                                                                  SchemaLoadingTask<T> loader, Executor executor) {
+        Map<String, CompletableFuture<T>> loading = new HashMap<>();
+        for (String schemaName : dependencies.keySet()) {
+            scheduleLoading(schemaName, dependencies, loader, loading, new HashSet<>(), executor);
+        }
+        return loading;
+    }
+
+    /**
+     * @param visiting the schemas whose dependencies are being scheduled, to detect dependency cycles
+     */
+    private static <T> CompletableFuture<T> scheduleLoading(String schemaName, Map<String, List<String>> dependencies,
+                                                            SchemaLoadingTask<T> loader, Map<String, CompletableFuture<T>> loading,
+                                                            Set<String> visiting, Executor executor) {
+        CompletableFuture<T> future = loading.get(schemaName);
+        if (future != null) {
+            return future;
+        }
+
+        visiting.add(schemaName);
+        List<CompletableFuture<T>> dependenciesLoading = new ArrayList<>();
+        for (String dependency : dependencies.get(schemaName)) {
+            // Missing dependencies are reported once all schemas are loaded
+            if (dependencies.containsKey(dependency)) {
+                if (visiting.contains(dependency)) {
+                    Log.warning(Geonet.SCHEMA_MANAGER, "Schema " + schemaName + " and " + dependency
+                        + " depend on each other.");
+                } else {
+                    dependenciesLoading.add(scheduleLoading(dependency, dependencies, loader, loading, visiting, executor));
+                }
+            }
+        }
+        visiting.remove(schemaName);
+
+        future = CompletableFuture.allOf(dependenciesLoading.toArray(new CompletableFuture[0]))
+            .thenApplyAsync(v -> {
+                try {
+                    return loader.load(schemaName);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        loading.put(schemaName, future);
+        return future;
+    }
+
     /**
      * Check dependencies for all schemas - remove those that fail.
      */
@@ -1953,4 +2208,21 @@ public class SchemaManager {
         }
         return listOfTypenames;
     }
+
+    /**
+     * A schema loaded from disk and not yet added to the pool.
+     */
+    private static final class LoadedSchema {
+        private String name;
+        private String id;
+        private String version;
+        private MetadataSchema mds;
+        private Path dir;
+        private SchemaSuggestions suggestions;
+        private List<Element> autodetectElements;
+        private Map<String, XmlFile> info;
+        private String schemaLocation;
+        private List<Element> conversionElements;
+        private List<Element> dependElements;
+    }
 }
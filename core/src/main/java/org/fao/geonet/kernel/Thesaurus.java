@@ -33,6 +33,7 @@ import org.fao.geonet.kernel.rdf.QueryBuilder;
 import org.fao.geonet.kernel.rdf.Selectors;
 import org.fao.geonet.kernel.rdf.Wheres;
 import org.fao.geonet.kernel.search.keyword.KeywordRelation;
+import org.fao.geonet.kernel.search.keyword.KeywordSearchType;
 import org.fao.geonet.languages.IsoLanguagesMapper;
 import org.fao.geonet.util.LangUtils;
 import org.fao.geonet.utils.DateUtil;
@@ -60,17 +61,37 @@ import org.springframework.context.ApplicationContext;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.FileTime;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
+/**
+ * A SKOS thesaurus backed by a Sesame in memory repository.
+ * <p>
+ * Queries take the read lock and run concurrently, the repository synchronizes
+ * its own reads and writes. Imports and edits take the write lock so that queries
+ * never see a partially applied change.
+ * <p>
+ * Keyword searches, lookups by URI and relation navigation are answered by a
+ * {@link ThesaurusConceptIndex} built from the repository on first use and kept
+ * up to date by the edits.
+ * <p>
+ * The repository can be loaded from an N-Triples snapshot of its content stored
+ * next to the RDF file (see {@link #getSnapshotFile()}), which is much faster to
+ * parse than RDF/XML. The repository then saves its changes to the snapshot and
+ * the RDF file is written from the repository content after each edit.
+ */
 public class Thesaurus {
 
     private static final String DEFAULT_THESAURUS_NAMESPACE = "http://custom.shared.obj.ch/concept#";
@@ -84,6 +105,8 @@ public class Thesaurus {
 
     private static final String DC_NAMESPACE = "http://purl.org/dc/elements/1.1/";
 
+    public static final String SNAPSHOT_EXTENSION = ".snapshot";
+
     private String fname;
 
     private String type;
@@ -92,7 +115,22 @@ public class Thesaurus {
 
     private Path thesaurusFile;
 
-    private LocalRepository repository;
+    private volatile LocalRepository repository;
+
+    private volatile boolean loadedFromSnapshot = false;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * True when the repository was changed and the RDF file was not written yet.
+     */
+    private final AtomicBoolean rdfFileOutdated = new AtomicBoolean(false);
+
+    private final Object rdfFileWriteLock = new Object();
+
+    private volatile ThesaurusConceptIndex conceptIndex;
+
+    private final Object conceptIndexBuildLock = new Object();
 
     private String title;
 
@@ -318,37 +356,213 @@ public class Thesaurus {
         // needs to have term/concept id tacked onto the end
     }
 
-    public synchronized LocalRepository getRepository() {
+    public LocalRepository getRepository() {
         return repository;
     }
 
-    public synchronized Thesaurus setRepository(LocalRepository repository) {
-        this.repository = repository;
+    public Thesaurus setRepository(LocalRepository repository) {
+        return setRepository(repository, false);
+    }
+
+    /**
+     * @param loadedFromSnapshot true if the repository was configured with {@link #buildRepositoryConfig(boolean)}
+     *                           to load the snapshot.
+     */
+    public Thesaurus setRepository(LocalRepository repository, boolean loadedFromSnapshot) {
+        lock.writeLock().lock();
+        try {
+            this.repository = repository;
+            this.loadedFromSnapshot = loadedFromSnapshot;
+            this.conceptIndex = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
         return this;
     }
 
-    public synchronized Thesaurus initRepository() throws ConfigurationException, IOException {
+    public Thesaurus initRepository() throws ConfigurationException, IOException {
+        lock.writeLock().lock();
+        try {
+            LocalRepository thesaurusRepository = Sesame.getService().createRepository(buildRepositoryConfig(false));
+            setRepository(thesaurusRepository);
+            return this;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Builds the configuration of the in memory repository of the thesaurus. The repository
+     * is loaded from the RDF file or from the snapshot, and saves its changes to the same file.
+     *
+     * @param fromSnapshot load the snapshot, see {@link #hasUpToDateSnapshot()}.
+     */
+    public RepositoryConfig buildRepositoryConfig(boolean fromSnapshot) {
         RepositoryConfig repConfig = new RepositoryConfig(getKey());
 
         SailConfig syncSail = new SailConfig("org.openrdf.sesame.sailimpl.sync.SyncRdfSchemaRepository");
-        SailConfig memSail = new org.openrdf.sesame.sailimpl.memory.RdfSchemaRepositoryConfig(getFile().toString(),
-                RDFFormat.RDFXML);
+        SailConfig memSail;
+        if (fromSnapshot) {
+            memSail = new org.openrdf.sesame.sailimpl.memory.RdfSchemaRepositoryConfig(
+                getSnapshotFile().toAbsolutePath().toString(), RDFFormat.NTRIPLES);
+        } else {
+            memSail = new org.openrdf.sesame.sailimpl.memory.RdfSchemaRepositoryConfig(
+                getFile().toAbsolutePath().toString(), RDFFormat.RDFXML);
+        }
         repConfig.addSail(syncSail);
         repConfig.addSail(memSail);
         repConfig.setWorldReadable(true);
         repConfig.setWorldWriteable(true);
+        return repConfig;
+    }
 
-        LocalRepository thesaurusRepository = Sesame.getService().createRepository(repConfig);
-        setRepository(thesaurusRepository);
-        return this;
+    /**
+     * @return the N-Triples snapshot of the repository content.
+     */
+    public Path getSnapshotFile() {
+        return thesaurusFile.resolveSibling(thesaurusFile.getFileName() + SNAPSHOT_EXTENSION);
+    }
+
+    /**
+     * @return true if the snapshot exists and was written for the current version of the RDF file,
+     * ie. it has the same last modification time.
+     */
+    public boolean hasUpToDateSnapshot() {
+        Path snapshotFile = getSnapshotFile();
+        try {
+            return Files.isRegularFile(snapshotFile)
+                && Files.getLastModifiedTime(snapshotFile).equals(Files.getLastModifiedTime(thesaurusFile));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the snapshot of the repository content. The snapshot gets the last modification
+     * time of the RDF file it was loaded from.
+     */
+    public void writeSnapshot() throws IOException, AccessDeniedException {
+        lock.readLock().lock();
+        try {
+            Path snapshotFile = getSnapshotFile();
+            FileTime lastModified = Files.getLastModifiedTime(thesaurusFile);
+            writeRepositoryContent(snapshotFile, RDFFormat.NTRIPLES);
+            Files.setLastModifiedTime(snapshotFile, lastModified);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Releases the write lock taken by an edit. When the repository was loaded from the snapshot,
+     * the repository saved the change to the snapshot and the RDF file is written once the write
+     * lock is released, see {@link #writeRdfFile()}.
+     */
+    private void releaseWriteLock() {
+        if (loadedFromSnapshot) {
+            rdfFileOutdated.set(true);
+        }
+        lock.writeLock().unlock();
+        if (loadedFromSnapshot && !lock.isWriteLockedByCurrentThread()) {
+            writeRdfFile();
+        }
     }
 
-    public synchronized QueryResultsTable performRequest(String query) throws IOException, MalformedQueryException,
+    /**
+     * Writes the RDF file if the repository changed since it was last written. The file is written
+     * under the read lock, so that searches go on while it is serialized. When several edits are
+     * done at the same time, the file written for one of them includes the others.
+     */
+    private void writeRdfFile() {
+        synchronized (rdfFileWriteLock) {
+            if (!rdfFileOutdated.getAndSet(false)) {
+                return;
+            }
+            lock.readLock().lock();
+            try {
+                writeRepositoryContent(thesaurusFile, RDFFormat.RDFXML);
+                Files.setLastModifiedTime(getSnapshotFile(), Files.getLastModifiedTime(thesaurusFile));
+            } catch (IOException | AccessDeniedException e) {
+                Log.error(Geonet.THESAURUS, "Error writing thesaurus file " + thesaurusFile + ": " + e.getMessage(), e);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    private void writeRepositoryContent(Path file, RDFFormat format) throws IOException, AccessDeniedException {
+        Path tmpFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (InputStream content = repository.extractRDF(format, true, true, true, false)) {
+                Files.copy(content, tmpFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    public QueryResultsTable performRequest(String query) throws IOException, MalformedQueryException,
             QueryEvaluationException, AccessDeniedException {
         if (Log.isDebugEnabled(Geonet.THESAURUS))
             Log.debug(Geonet.THESAURUS, "Query : " + query);
 
-        return repository.performTableQuery(QueryLanguage.SERQL, query);
+        lock.readLock().lock();
+        try {
+            return repository.performTableQuery(QueryLanguage.SERQL, query);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the concept index, building it on first use. The caller holds the read or the write lock.
+     */
+    private ThesaurusConceptIndex getConceptIndex() {
+        ThesaurusConceptIndex index = conceptIndex;
+        if (index == null) {
+            synchronized (conceptIndexBuildLock) {
+                index = conceptIndex;
+                if (index == null) {
+                    long start = System.currentTimeMillis();
+                    index = ThesaurusConceptIndex.build(repository.getGraph());
+                    if (Log.isDebugEnabled(Geonet.THESAURUS)) {
+                        Log.debug(Geonet.THESAURUS, String.format("Concept index of thesaurus %s with %d concepts built in %dms.",
+                            getKey(), index.size(), System.currentTimeMillis() - start));
+                    }
+                    conceptIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Update the concept index after changes of concepts, if it is already built. The caller holds the write lock.
+     */
+    private void refreshConceptIndex(String... uris) {
+        ThesaurusConceptIndex index = conceptIndex;
+        if (index != null) {
+            for (String uri : uris) {
+                index.refresh(repository.getGraph(), uri);
+            }
+        }
+    }
+
+    /**
+     * Search keywords on the concept index.
+     *
+     * @param limit the maximum number of keywords to return, all of them if negative
+     * @return the keywords in the order of the thesaurus or null if the thesaurus cannot run this
+     * search on an index, the SeRQL query must be used instead.
+     */
+    public List<KeywordBean> searchConcepts(ThesaurusConceptIndex.ConceptQuery query, int limit) {
+        lock.readLock().lock();
+        try {
+            return getConceptIndex().search(this, query, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public boolean hasConceptScheme(String uri) {
@@ -393,80 +607,86 @@ public class Thesaurus {
      *
      * @param keyword The keyword to add
      */
-    public synchronized URI addElement(KeywordBean keyword) throws IOException, AccessDeniedException, GraphException {
-        THESAURUS_SEARCH_CACHE.invalidateAll();
-        Graph myGraph = new org.openrdf.model.impl.GraphImpl();
+    public URI addElement(KeywordBean keyword) throws IOException, AccessDeniedException, GraphException {
+        lock.writeLock().lock();
+        try {
+            THESAURUS_SEARCH_CACHE.invalidateAll();
+            Graph myGraph = new org.openrdf.model.impl.GraphImpl();
 
-        ValueFactory myFactory = myGraph.getValueFactory();
+            ValueFactory myFactory = myGraph.getValueFactory();
 
-        // Define namespace
-        String namespaceGml = "http://www.opengis.net/gml#";
+            // Define namespace
+            String namespaceGml = "http://www.opengis.net/gml#";
 
-        // Create subject
-        URI mySubject = myFactory.createURI(keyword.getUriCode());
+            // Create subject
+            URI mySubject = myFactory.createURI(keyword.getUriCode());
 
-        URI skosClass = myFactory.createURI(SKOS_NAMESPACE, "Concept");
+            URI skosClass = myFactory.createURI(SKOS_NAMESPACE, "Concept");
 
-        URI rdfType = myFactory.createURI(org.openrdf.vocabulary.RDF.TYPE);
-        mySubject.addProperty(rdfType, skosClass);
+            URI rdfType = myFactory.createURI(org.openrdf.vocabulary.RDF.TYPE);
+            mySubject.addProperty(rdfType, skosClass);
 
-        URI predicatePrefLabel = myFactory
-                .createURI(SKOS_NAMESPACE, "prefLabel");
-        URI predicateScopeNote = myFactory
-                .createURI(SKOS_NAMESPACE, "scopeNote");
+            URI predicatePrefLabel = myFactory
+                    .createURI(SKOS_NAMESPACE, "prefLabel");
+            URI predicateScopeNote = myFactory
+                    .createURI(SKOS_NAMESPACE, "scopeNote");
 
-        URI predicateInScheme = myFactory
-                .createURI(SKOS_NAMESPACE, "inScheme");
-        myGraph.add(mySubject,
-                predicateInScheme,
-                myFactory.createURI(this.getDefaultNamespace()));
+            URI predicateInScheme = myFactory
+                    .createURI(SKOS_NAMESPACE, "inScheme");
+            myGraph.add(mySubject,
+                    predicateInScheme,
+                    myFactory.createURI(this.getDefaultNamespace()));
 
-        Set<Entry<String, String>> values = keyword.getValues().entrySet();
-        for (Entry<String, String> entry : values) {
-            String language = toiso639_1_Lang(entry.getKey());
-            Value valueObj = myFactory.createLiteral(entry.getValue(), language);
-            myGraph.add(mySubject, predicatePrefLabel, valueObj);
-        }
+            Set<Entry<String, String>> values = keyword.getValues().entrySet();
+            for (Entry<String, String> entry : values) {
+                String language = toiso639_1_Lang(entry.getKey());
+                Value valueObj = myFactory.createLiteral(entry.getValue(), language);
+                myGraph.add(mySubject, predicatePrefLabel, valueObj);
+            }
 
-        Set<Entry<String, String>> definitions = keyword.getDefinitions().entrySet();
-        for (Entry<String, String> entry : definitions) {
-            String language = toiso639_1_Lang(entry.getKey());
-            Value definitionObj = myFactory.createLiteral(entry.getValue(), language);
-            myGraph.add(mySubject, predicateScopeNote, definitionObj);
+            Set<Entry<String, String>> definitions = keyword.getDefinitions().entrySet();
+            for (Entry<String, String> entry : definitions) {
+                String language = toiso639_1_Lang(entry.getKey());
+                Value definitionObj = myFactory.createLiteral(entry.getValue(), language);
+                myGraph.add(mySubject, predicateScopeNote, definitionObj);
 
-        }
+            }
 
-        if (!(keyword.getCoordEast() + keyword.getCoordNorth() + keyword.getCoordWest() + keyword.getCoordSouth()).trim().isEmpty()) {
-            URI predicateBoundedBy = myFactory.createURI(namespaceGml, "BoundedBy");
-            URI predicateEnvelope = myFactory.createURI(namespaceGml, "Envelope");
-            URI predicateSrsName = myFactory.createURI(namespaceGml, "srsName");
-            URI srsNameURI = myFactory
-                    .createURI("http://www.opengis.net/gml/srs/epsg.xml#epsg:4326");
-            BNode gmlNode = myFactory.createBNode();
-            URI predicateLowerCorner = myFactory.createURI(namespaceGml,
-                    "lowerCorner");
-            URI predicateUpperCorner = myFactory.createURI(namespaceGml,
-                    "upperCorner");
+            if (!(keyword.getCoordEast() + keyword.getCoordNorth() + keyword.getCoordWest() + keyword.getCoordSouth()).trim().isEmpty()) {
+                URI predicateBoundedBy = myFactory.createURI(namespaceGml, "BoundedBy");
+                URI predicateEnvelope = myFactory.createURI(namespaceGml, "Envelope");
+                URI predicateSrsName = myFactory.createURI(namespaceGml, "srsName");
+                URI srsNameURI = myFactory
+                        .createURI("http://www.opengis.net/gml/srs/epsg.xml#epsg:4326");
+                BNode gmlNode = myFactory.createBNode();
+                URI predicateLowerCorner = myFactory.createURI(namespaceGml,
+                        "lowerCorner");
+                URI predicateUpperCorner = myFactory.createURI(namespaceGml,
+                        "upperCorner");
 
-            Literal lowerCorner = myFactory.createLiteral(keyword.getCoordWest() + " " + keyword.getCoordSouth());
-            Literal upperCorner = myFactory.createLiteral(keyword.getCoordEast() + " " + keyword.getCoordNorth());
+                Literal lowerCorner = myFactory.createLiteral(keyword.getCoordWest() + " " + keyword.getCoordSouth());
+                Literal upperCorner = myFactory.createLiteral(keyword.getCoordEast() + " " + keyword.getCoordNorth());
 
-            myGraph.add(mySubject, predicateBoundedBy, gmlNode);
+                myGraph.add(mySubject, predicateBoundedBy, gmlNode);
 
-            gmlNode.addProperty(rdfType, predicateEnvelope);
-            myGraph.add(gmlNode, predicateLowerCorner, lowerCorner);
-            myGraph.add(gmlNode, predicateUpperCorner, upperCorner);
-            myGraph.add(gmlNode, predicateSrsName, srsNameURI);
-        }
+                gmlNode.addProperty(rdfType, predicateEnvelope);
+                myGraph.add(gmlNode, predicateLowerCorner, lowerCorner);
+                myGraph.add(gmlNode, predicateUpperCorner, upperCorner);
+                myGraph.add(gmlNode, predicateSrsName, srsNameURI);
+            }
 
-        repository.addGraph(myGraph);
-        return mySubject;
+            repository.addGraph(myGraph);
+            refreshConceptIndex(mySubject.toString());
+            return mySubject;
+        } finally {
+            releaseWriteLock();
+        }
     }
 
     /**
      * Remove keyword from thesaurus.
      */
-    public synchronized Thesaurus removeElement(KeywordBean keyword) throws AccessDeniedException {
+    public Thesaurus removeElement(KeywordBean keyword) throws AccessDeniedException {
         String namespace = keyword.getNameSpaceCode();
         String code = keyword.getRelativeCode();
 
@@ -476,27 +696,38 @@ public class Thesaurus {
     /**
      * Remove keyword from thesaurus.
      */
-    public synchronized Thesaurus removeElement(String namespace, String code) throws AccessDeniedException {
-        Graph myGraph = repository.getGraph();
-        ValueFactory myFactory = myGraph.getValueFactory();
-        URI subject = myFactory.createURI(namespace, code);
+    public Thesaurus removeElement(String namespace, String code) throws AccessDeniedException {
+        lock.writeLock().lock();
+        try {
+            Graph myGraph = repository.getGraph();
+            ValueFactory myFactory = myGraph.getValueFactory();
+            URI subject = myFactory.createURI(namespace, code);
 
-        return removeElement(myGraph, subject);
+            return removeElement(myGraph, subject);
+        } finally {
+            releaseWriteLock();
+        }
     }
 
     /**
      * Remove keyword from thesaurus.
      */
-    public synchronized Thesaurus removeElement(String uri) throws AccessDeniedException {
-        Graph myGraph = repository.getGraph();
-        ValueFactory myFactory = myGraph.getValueFactory();
-        URI subject = myFactory.createURI(uri);
+    public Thesaurus removeElement(String uri) throws AccessDeniedException {
+        lock.writeLock().lock();
+        try {
+            Graph myGraph = repository.getGraph();
+            ValueFactory myFactory = myGraph.getValueFactory();
+            URI subject = myFactory.createURI(uri);
 
-        return removeElement(myGraph, subject);
+            return removeElement(myGraph, subject);
+        } finally {
+            releaseWriteLock();
+        }
     }
 
     private Thesaurus removeElement(Graph myGraph, URI subject)
             throws AccessDeniedException {
+        THESAURUS_SEARCH_CACHE.invalidateAll();
         StatementIterator iter = myGraph.getStatements(subject, null, null);
         while (iter.hasNext()) {
             AtomicReference<Statement> st = new AtomicReference<Statement>(iter.next());
@@ -506,6 +737,7 @@ public class Thesaurus {
             }
         }
         int removedItems = myGraph.remove(subject, null, null);
+        refreshConceptIndex(subject.toString());
         if (Log.isDebugEnabled(Geonet.THESAURUS)) {
             String msg = "Removed " + removedItems + " elements from thesaurus " + this.title + " with uri: " + subject;
             Log.debug(Geonet.THESAURUS, msg);
@@ -531,91 +763,97 @@ public class Thesaurus {
      *                languages) and the coordinates will only be updated if they are non-empty
      *                strings.
      */
-    public synchronized URI updateElement(KeywordBean keyword, boolean replace) throws AccessDeniedException {
-        THESAURUS_SEARCH_CACHE.invalidateAll();
+    public URI updateElement(KeywordBean keyword, boolean replace) throws AccessDeniedException {
+        lock.writeLock().lock();
+        try {
+            THESAURUS_SEARCH_CACHE.invalidateAll();
 
-        // Get thesaurus graph
-        Graph myGraph = repository.getGraph();
+            // Get thesaurus graph
+            Graph myGraph = repository.getGraph();
 
-        // Set namespace skos and predicates
-        ValueFactory myFactory = myGraph.getValueFactory();
-        URI predicatePrefLabel = myFactory.createURI(SKOS_NAMESPACE, "prefLabel");
-        URI predicateScopeNote = myFactory.createURI(SKOS_NAMESPACE, "scopeNote");
+            // Set namespace skos and predicates
+            ValueFactory myFactory = myGraph.getValueFactory();
+            URI predicatePrefLabel = myFactory.createURI(SKOS_NAMESPACE, "prefLabel");
+            URI predicateScopeNote = myFactory.createURI(SKOS_NAMESPACE, "scopeNote");
 
-        // Get subject (URI)
-        URI subject = myFactory.createURI(keyword.getUriCode());
+            // Get subject (URI)
+            URI subject = myFactory.createURI(keyword.getUriCode());
 
-        // Remove old labels
-        StatementIterator iter = myGraph.getStatements(subject, predicatePrefLabel, null);
-        removeMatchingLiterals(replace, myGraph, iter, keyword.getValues().keySet());
+            // Remove old labels
+            StatementIterator iter = myGraph.getStatements(subject, predicatePrefLabel, null);
+            removeMatchingLiterals(replace, myGraph, iter, keyword.getValues().keySet());
 
-        // remove old scopeNote
-        iter = myGraph.getStatements(subject, predicateScopeNote, null);
-        removeMatchingLiterals(replace, myGraph, iter, keyword.getDefinitions().keySet());
+            // remove old scopeNote
+            iter = myGraph.getStatements(subject, predicateScopeNote, null);
+            removeMatchingLiterals(replace, myGraph, iter, keyword.getDefinitions().keySet());
 
-        // add updated Labels
-        Set<Entry<String, String>> values = keyword.getValues().entrySet();
-        for (Entry<String, String> entry : values) {
-            String language = toiso639_1_Lang(entry.getKey());
-            Value valueObj = myFactory.createLiteral(entry.getValue(), language);
-            myGraph.add(subject, predicatePrefLabel, valueObj);
-        }
+            // add updated Labels
+            Set<Entry<String, String>> values = keyword.getValues().entrySet();
+            for (Entry<String, String> entry : values) {
+                String language = toiso639_1_Lang(entry.getKey());
+                Value valueObj = myFactory.createLiteral(entry.getValue(), language);
+                myGraph.add(subject, predicatePrefLabel, valueObj);
+            }
 
-        // add updated Definitions/Notes
-        Set<Entry<String, String>> definitions = keyword.getDefinitions().entrySet();
-        for (Entry<String, String> entry : definitions) {
-            String language = toiso639_1_Lang(entry.getKey());
-            Value definitionObj = myFactory.createLiteral(entry.getValue(), language);
-            myGraph.add(subject, predicateScopeNote, definitionObj);
-        }
+            // add updated Definitions/Notes
+            Set<Entry<String, String>> definitions = keyword.getDefinitions().entrySet();
+            for (Entry<String, String> entry : definitions) {
+                String language = toiso639_1_Lang(entry.getKey());
+                Value definitionObj = myFactory.createLiteral(entry.getValue(), language);
+                myGraph.add(subject, predicateScopeNote, definitionObj);
+            }
 
-        // update bbox
-        if (replace || !(keyword.getCoordEast() + keyword.getCoordNorth() + keyword.getCoordWest() + keyword.getCoordSouth()).trim().isEmpty()) {
-            String namespaceGml = "http://www.opengis.net/gml#";
-            URI predicateBoundedBy = myFactory.createURI(namespaceGml, "BoundedBy");
-            URI predicateLowerCorner = myFactory.createURI(namespaceGml, "lowerCorner");
-            URI predicateUpperCorner = myFactory.createURI(namespaceGml, "upperCorner");
+            // update bbox
+            if (replace || !(keyword.getCoordEast() + keyword.getCoordNorth() + keyword.getCoordWest() + keyword.getCoordSouth()).trim().isEmpty()) {
+                String namespaceGml = "http://www.opengis.net/gml#";
+                URI predicateBoundedBy = myFactory.createURI(namespaceGml, "BoundedBy");
+                URI predicateLowerCorner = myFactory.createURI(namespaceGml, "lowerCorner");
+                URI predicateUpperCorner = myFactory.createURI(namespaceGml, "upperCorner");
 
-            BNode subjectGml = null;
-            iter = myGraph.getStatements(subject, predicateBoundedBy, null);
-            while (iter.hasNext()) {
-                AtomicReference<Statement> st = new AtomicReference<>(iter.next());
-                if (st.get().getObject() instanceof BNode) {
-                    subjectGml = (BNode) st.get().getObject();
+                BNode subjectGml = null;
+                iter = myGraph.getStatements(subject, predicateBoundedBy, null);
+                while (iter.hasNext()) {
+                    AtomicReference<Statement> st = new AtomicReference<>(iter.next());
+                    if (st.get().getObject() instanceof BNode) {
+                        subjectGml = (BNode) st.get().getObject();
+                    }
                 }
-            }
-            if (subjectGml != null) {
-                // lowerCorner
-                iter = myGraph.getStatements(subjectGml, predicateLowerCorner, null);
-                while (true) {
-                    if (!(iter.hasNext())) {
+                if (subjectGml != null) {
+                    // lowerCorner
+                    iter = myGraph.getStatements(subjectGml, predicateLowerCorner, null);
+                    while (true) {
+                        if (!(iter.hasNext())) {
+                            break;
+                        }
+                        AtomicReference<Statement> st = new AtomicReference<>(iter.next());
+                        myGraph.remove(st.get());
                         break;
                     }
-                    AtomicReference<Statement> st = new AtomicReference<>(iter.next());
-                    myGraph.remove(st.get());
-                    break;
-                }
-                // upperCorner
-                iter = myGraph.getStatements(subjectGml, predicateUpperCorner, null);
-                while (true) {
-                    if (!(iter.hasNext())) {
+                    // upperCorner
+                    iter = myGraph.getStatements(subjectGml, predicateUpperCorner, null);
+                    while (true) {
+                        if (!(iter.hasNext())) {
+                            break;
+                        }
+                        AtomicReference<Statement> st = new AtomicReference<>(iter.next());
+                        myGraph.remove(st.get());
                         break;
                     }
-                    AtomicReference<Statement> st = new AtomicReference<>(iter.next());
-                    myGraph.remove(st.get());
-                    break;
-                }
-                // create the new statements
-                Literal lowerCorner = myFactory.createLiteral(keyword.getCoordWest() + " " + keyword.getCoordSouth());
-                Literal upperCorner = myFactory.createLiteral(keyword.getCoordEast() + " " + keyword.getCoordNorth());
+                    // create the new statements
+                    Literal lowerCorner = myFactory.createLiteral(keyword.getCoordWest() + " " + keyword.getCoordSouth());
+                    Literal upperCorner = myFactory.createLiteral(keyword.getCoordEast() + " " + keyword.getCoordNorth());
 
-                // Add the new statements
-                myGraph.add(subjectGml, predicateLowerCorner, lowerCorner);
-                myGraph.add(subjectGml, predicateUpperCorner, upperCorner);
+                    // Add the new statements
+                    myGraph.add(subjectGml, predicateLowerCorner, lowerCorner);
+                    myGraph.add(subjectGml, predicateUpperCorner, upperCorner);
+                }
             }
-        }
 
-        return subject;
+            refreshConceptIndex(subject.toString());
+            return subject;
+        } finally {
+            releaseWriteLock();
+        }
     }
 
 
@@ -648,20 +886,25 @@ public class Thesaurus {
      * @param namespace Use null, to check a concept identifier not based on thesaurus namespace
      * @param code      The concept identifier
      */
-    public synchronized boolean isFreeCode(String namespace, String code) throws AccessDeniedException {
-        boolean res = true;
-        Graph myGraph = repository.getGraph();
-        ValueFactory myFactory = myGraph.getValueFactory();
-        URI obj = namespace == null ? myFactory.createURI(code) : myFactory.createURI(namespace, code);
-        Collection<?> statementsCollection = myGraph.getStatementCollection(obj, null, null);
-        if (statementsCollection != null && !statementsCollection.isEmpty()) {
-            res = false;
-        }
-        statementsCollection = myGraph.getStatementCollection(null, null, obj);
-        if (statementsCollection != null && !statementsCollection.isEmpty()) {
-            res = false;
+    public boolean isFreeCode(String namespace, String code) throws AccessDeniedException {
+        lock.readLock().lock();
+        try {
+            boolean res = true;
+            Graph myGraph = repository.getGraph();
+            ValueFactory myFactory = myGraph.getValueFactory();
+            URI obj = namespace == null ? myFactory.createURI(code) : myFactory.createURI(namespace, code);
+            Collection<?> statementsCollection = myGraph.getStatementCollection(obj, null, null);
+            if (statementsCollection != null && !statementsCollection.isEmpty()) {
+                res = false;
+            }
+            statementsCollection = myGraph.getStatementCollection(null, null, obj);
+            if (statementsCollection != null && !statementsCollection.isEmpty()) {
+                res = false;
+            }
+            return res;
+        } finally {
+            lock.readLock().unlock();
         }
-        return res;
     }
 
     public Thesaurus updateCode(KeywordBean bean, String newcode) throws AccessDeniedException, IOException {
@@ -672,16 +915,20 @@ public class Thesaurus {
      * Update concept code by creating URI from namespace and code. This is recommended when
      * thesaurus concept identifiers contains # eg. http://vocab.nerc.ac.uk/collection/P07/current#CFV13N44
      */
-    public synchronized Thesaurus updateCode(String namespace, String oldcode, String newcode) throws AccessDeniedException {
-        Graph myGraph = repository.getGraph();
-
-        ValueFactory myFactory = myGraph.getValueFactory();
+    public Thesaurus updateCode(String namespace, String oldcode, String newcode) throws AccessDeniedException {
+        lock.writeLock().lock();
+        try {
+            Graph myGraph = repository.getGraph();
 
-        URI oldobj = myFactory.createURI(namespace, oldcode);
-        URI newobj = myFactory.createURI(namespace, newcode);
+            ValueFactory myFactory = myGraph.getValueFactory();
 
-        return updateElementCode(myGraph, oldobj, newobj);
+            URI oldobj = myFactory.createURI(namespace, oldcode);
+            URI newobj = myFactory.createURI(namespace, newcode);
 
+            return updateElementCode(myGraph, oldobj, newobj);
+        } finally {
+            releaseWriteLock();
+        }
     }
 
     /**
@@ -690,18 +937,24 @@ public class Thesaurus {
      * <p>
      * eg. http://vocab.nerc.ac.uk/collection/P07/current/CFV13N44/
      */
-    public synchronized Thesaurus updateCodeByURI(String olduri, String newuri) throws AccessDeniedException {
-        Graph myGraph = repository.getGraph();
+    public Thesaurus updateCodeByURI(String olduri, String newuri) throws AccessDeniedException {
+        lock.writeLock().lock();
+        try {
+            Graph myGraph = repository.getGraph();
 
-        ValueFactory myFactory = myGraph.getValueFactory();
+            ValueFactory myFactory = myGraph.getValueFactory();
 
-        URI oldobj = myFactory.createURI(olduri);
-        URI newobj = myFactory.createURI(newuri);
+            URI oldobj = myFactory.createURI(olduri);
+            URI newobj = myFactory.createURI(newuri);
 
-        return updateElementCode(myGraph, oldobj, newobj);
+            return updateElementCode(myGraph, oldobj, newobj);
+        } finally {
+            releaseWriteLock();
+        }
     }
 
     private Thesaurus updateElementCode(Graph myGraph, URI oldobj, URI newobj) {
+        THESAURUS_SEARCH_CACHE.invalidateAll();
         StatementIterator iterStSubject = myGraph.getStatements(oldobj, null, null);
         while (iterStSubject.hasNext()) {
             AtomicReference<Statement> st = new AtomicReference<>(iterStSubject.next());
@@ -715,14 +968,21 @@ public class Thesaurus {
         }
         myGraph.remove(oldobj, null, null);
         myGraph.remove(null, null, oldobj);
+        // Relations of other concepts point to the new code
+        conceptIndex = null;
         return this;
     }
 
 
     public void writeConceptScheme(String thesaurusTitle, String namespace) throws IOException, AccessDeniedException, GraphException {
-        Graph myGraph = new org.openrdf.model.impl.GraphImpl();
-        writeConceptScheme(myGraph, thesaurusTitle, null, null, null, null, null, namespace);
-        repository.addGraph(myGraph);
+        lock.writeLock().lock();
+        try {
+            Graph myGraph = new org.openrdf.model.impl.GraphImpl();
+            writeConceptScheme(myGraph, thesaurusTitle, null, null, null, null, null, namespace);
+            repository.addGraph(myGraph);
+        } finally {
+            releaseWriteLock();
+        }
     }
 
     /**
@@ -736,18 +996,23 @@ public class Thesaurus {
                                     String identifier,
                                     String type,
                                     String namespace) throws IOException, AccessDeniedException, GraphException {
-        Graph myGraph = new org.openrdf.model.impl.GraphImpl();
-
-        writeConceptScheme(myGraph,
-                thesaurusTitle,
-                multilingualTitles,
-                thesaurusDescription,
-                multilingualDescriptions,
-                identifier,
-                type,
-                namespace);
-
-        repository.addGraph(myGraph);
+        lock.writeLock().lock();
+        try {
+            Graph myGraph = new org.openrdf.model.impl.GraphImpl();
+
+            writeConceptScheme(myGraph,
+                    thesaurusTitle,
+                    multilingualTitles,
+                    thesaurusDescription,
+                    multilingualDescriptions,
+                    identifier,
+                    type,
+                    namespace);
+
+            repository.addGraph(myGraph);
+        } finally {
+            releaseWriteLock();
+        }
     }
 
 
@@ -761,17 +1026,22 @@ public class Thesaurus {
                                     String identifier,
                                     String type,
                                     String namespace) throws AccessDeniedException, GraphException {
-        Graph myGraph = repository.getGraph();
-        removeElement(getConceptSchemes().get(0));
-
-        writeConceptScheme(myGraph,
-                thesaurusTitle,
-                multilingualTitles,
-                thesaurusDescription,
-                multilingualDescriptions,
-                identifier,
-                type,
-                namespace);
+        lock.writeLock().lock();
+        try {
+            Graph myGraph = repository.getGraph();
+            removeElement(getConceptSchemes().get(0));
+
+            writeConceptScheme(myGraph,
+                    thesaurusTitle,
+                    multilingualTitles,
+                    thesaurusDescription,
+                    multilingualDescriptions,
+                    identifier,
+                    type,
+                    namespace);
+        } finally {
+            releaseWriteLock();
+        }
     }
 
     public void writeConceptScheme(Graph myGraph, String thesaurusTitle,
@@ -1111,20 +1381,26 @@ public class Thesaurus {
      * @param subject the keyword that is related to the other keyword
      * @param related the relation between the two keywords
      */
-    public synchronized void addRelation(String subject, KeywordRelation related, String relatedSubject) throws AccessDeniedException {
-        THESAURUS_SEARCH_CACHE.invalidateAll();
+    public void addRelation(String subject, KeywordRelation related, String relatedSubject) throws AccessDeniedException {
+        lock.writeLock().lock();
+        try {
+            THESAURUS_SEARCH_CACHE.invalidateAll();
 
-        Graph myGraph = repository.getGraph();
+            Graph myGraph = repository.getGraph();
 
-        // Set namespace skos and predicates
-        ValueFactory myFactory = myGraph.getValueFactory();
-        URI relationURI = myFactory.createURI(SKOS_NAMESPACE, related.name);
-        URI opposteRelationURI = myFactory.createURI(SKOS_NAMESPACE, related.opposite().name);
-        URI subjectURI = myFactory.createURI(subject);
-        URI relatedSubjectURI = myFactory.createURI(relatedSubject);
+            // Set namespace skos and predicates
+            ValueFactory myFactory = myGraph.getValueFactory();
+            URI relationURI = myFactory.createURI(SKOS_NAMESPACE, related.name);
+            URI opposteRelationURI = myFactory.createURI(SKOS_NAMESPACE, related.opposite().name);
+            URI subjectURI = myFactory.createURI(subject);
+            URI relatedSubjectURI = myFactory.createURI(relatedSubject);
 
-        myGraph.add(subjectURI, relationURI, relatedSubjectURI);
-        myGraph.add(relatedSubjectURI, opposteRelationURI, subjectURI);
+            myGraph.add(subjectURI, relationURI, relatedSubjectURI);
+            myGraph.add(relatedSubjectURI, opposteRelationURI, subjectURI);
+            refreshConceptIndex(subject, relatedSubject);
+        } finally {
+            releaseWriteLock();
+        }
     }
 
     /**
@@ -1134,32 +1410,18 @@ public class Thesaurus {
      * @return keyword
      */
     public KeywordBean getKeyword(String uri, String... languages) {
-        String cacheKey = "getKeyword" + uri + String.join("", languages);
-        Object cacheValue = THESAURUS_SEARCH_CACHE.getIfPresent(cacheKey);
-        if (cacheValue != null) {
-            return new KeywordBean((KeywordBean) cacheValue);
-        }
-
-        List<KeywordBean> keywords;
-
+        KeywordBean keyword;
+        lock.readLock().lock();
         try {
-            Query<KeywordBean> query = QueryBuilder
-                    .keywordQueryBuilder(getIsoLanguageMapper(), languages)
-                    .where(Wheres.ID(uri))
-                    .build();
-
-            keywords = query.execute(this);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+            keyword = getConceptIndex().getKeyword(this, uri, Arrays.asList(languages));
+        } finally {
+            lock.readLock().unlock();
         }
 
-        if (keywords.isEmpty()) {
+        if (keyword == null) {
             throw new TermNotFoundException(getTermNotFoundMessage(uri));
         }
-
-        KeywordBean keywordBean = keywords.get(0);
-        THESAURUS_SEARCH_CACHE.put(cacheKey, keywordBean);
-        return new KeywordBean(keywordBean);
+        return keyword;
     }
 
     /**
@@ -1241,15 +1503,11 @@ public class Thesaurus {
      * @return keyword
      */
     public List<KeywordBean> getRelated(String uri, KeywordRelation request, String... languages) {
-        Query<KeywordBean> query = QueryBuilder
-                .keywordQueryBuilder(getIsoLanguageMapper(), languages)
-                .select(Selectors.related(uri, request), true)
-                .build();
-
+        lock.readLock().lock();
         try {
-            return query.execute(this);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+            return getConceptIndex().getRelated(this, uri, request, Arrays.asList(languages));
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
@@ -1278,17 +1536,21 @@ public class Thesaurus {
      * @return keyword
      */
     public KeywordBean getKeywordWithLabel(String label, String langCode) {
-        Query<KeywordBean> query = QueryBuilder
-                .keywordQueryBuilder(getIsoLanguageMapper(), langCode)
-                .where(Wheres.prefLabel(langCode, label))
-                .build();
+        List<KeywordBean> matchingKeywords = searchConcepts(
+            new ThesaurusConceptIndex.ConceptQuery(Collections.singletonList(langCode), false)
+                .label(KeywordSearchType.MATCH, label, false), 1);
 
-        List<KeywordBean> matchingKeywords;
+        if (matchingKeywords == null) {
+            Query<KeywordBean> query = QueryBuilder
+                    .keywordQueryBuilder(getIsoLanguageMapper(), langCode)
+                    .where(Wheres.prefLabel(langCode, label))
+                    .build();
 
-        try {
-            matchingKeywords = query.execute(this);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+            try {
+                matchingKeywords = query.execute(this);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
         }
 
         if (matchingKeywords.isEmpty()) {
@@ -1298,9 +1560,15 @@ public class Thesaurus {
         return matchingKeywords.get(0);
     }
 
-    public synchronized void clear() throws IOException, AccessDeniedException {
-        AdminListener listener = new DummyAdminListener();
-        repository.clear(listener);
+    public void clear() throws IOException, AccessDeniedException {
+        lock.writeLock().lock();
+        try {
+            AdminListener listener = new DummyAdminListener();
+            repository.clear(listener);
+            conceptIndex = null;
+        } finally {
+            releaseWriteLock();
+        }
     }
 
     public String getDefaultNamespace() {
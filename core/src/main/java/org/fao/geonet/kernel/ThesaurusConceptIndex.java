@@ -0,0 +1,540 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel;
+
+import org.fao.geonet.kernel.search.keyword.KeywordRelation;
+import org.fao.geonet.kernel.search.keyword.KeywordSearchType;
+import org.fao.geonet.languages.IsoLanguagesMapper;
+import org.openrdf.model.Graph;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.sesame.sail.StatementIterator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * In memory index of the concepts of a {@link Thesaurus}, used to answer keyword searches, lookups
+ * by URI and broader/narrower/related navigation without running SeRQL queries on the repository.
+ * <p>
+ * Labels are indexed per language in sorted maps of lower cased labels: a prefix search is a sub map
+ * range (the sorted map is used as a trie), an exact match is a single lookup, and contains and fuzzy
+ * searches only scan the distinct labels of one language. Relations are stored in both directions.
+ * <p>
+ * The repository remains the reference. The index is built from its graph and the thesaurus
+ * refreshes the concepts it changes. This class is not thread safe: the thesaurus reads it under its
+ * read lock and changes it under its write lock.
+ */
+public class ThesaurusConceptIndex {
+    private static final String RDF_TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+    private static final String SKOS_NAMESPACE = "http://www.w3.org/2004/02/skos/core#";
+    private static final String SKOS_CONCEPT = SKOS_NAMESPACE + "Concept";
+    private static final String SKOS_PREF_LABEL = SKOS_NAMESPACE + "prefLabel";
+    private static final String SKOS_SCOPE_NOTE = SKOS_NAMESPACE + "scopeNote";
+    private static final String GML_NAMESPACE = "http://www.opengis.net/gml#";
+    private static final String GML_BOUNDED_BY = GML_NAMESPACE + "BoundedBy";
+    private static final String GML_LOWER_CORNER = GML_NAMESPACE + "lowerCorner";
+    private static final String GML_UPPER_CORNER = GML_NAMESPACE + "upperCorner";
+
+    private static final Comparator<Concept> THESAURUS_ORDER = Comparator.comparingInt(c -> c.order);
+
+    private final Map<String, Concept> concepts = new HashMap<>();
+    /**
+     * Language (two letter code) to lower cased label to the URIs of the concepts with that label.
+     */
+    private final Map<String, TreeMap<String, Set<String>>> labels = new HashMap<>();
+    /**
+     * Relation to target URI to the URIs of the concepts having this relation to the target.
+     */
+    private final Map<KeywordRelation, Map<String, Set<String>>> incoming = new EnumMap<>(KeywordRelation.class);
+    private int nextOrder;
+
+    /**
+     * Build the index of all concepts of a thesaurus graph.
+     */
+    public static ThesaurusConceptIndex build(Graph graph) {
+        Map<Resource, List<Statement>> statementsBySubject = new LinkedHashMap<>();
+        StatementIterator iterator = graph.getStatements(null, null, null);
+        try {
+            while (iterator.hasNext()) {
+                Statement statement = iterator.next();
+                statementsBySubject.computeIfAbsent(statement.getSubject(), s -> new ArrayList<>()).add(statement);
+            }
+        } finally {
+            iterator.close();
+        }
+
+        ThesaurusConceptIndex index = new ThesaurusConceptIndex();
+        Function<Resource, List<Statement>> statements =
+            subject -> statementsBySubject.getOrDefault(subject, Collections.emptyList());
+        for (Map.Entry<Resource, List<Statement>> entry : statementsBySubject.entrySet()) {
+            Concept concept = readConcept(entry.getKey(), entry.getValue(), statements, index.nextOrder);
+            if (concept != null) {
+                index.nextOrder++;
+                index.add(concept);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Read again a concept from the graph after it was added, changed or removed.
+     */
+    public void refresh(Graph graph, String uri) {
+        Concept previous = remove(uri);
+        URI subject = graph.getValueFactory().createURI(uri);
+        int order = previous != null ? previous.order : nextOrder;
+        Concept concept = readConcept(subject, statements(graph, subject), s -> statements(graph, s), order);
+        if (concept != null) {
+            if (previous == null) {
+                nextOrder++;
+            }
+            add(concept);
+        }
+    }
+
+    public int size() {
+        return concepts.size();
+    }
+
+    /**
+     * Get a concept.
+     *
+     * @param languages the three letter codes of the languages to load
+     * @return the keyword or null if there is no concept with this URI
+     */
+    public KeywordBean getKeyword(Thesaurus thesaurus, String uri, Collection<String> languages) {
+        Concept concept = concepts.get(uri);
+        return concept == null ? null : toKeyword(thesaurus, concept, languages, 0);
+    }
+
+    /**
+     * Get the concepts having a relation to a concept. For example concepts having a
+     * {@link KeywordRelation#NARROWER} relation to a concept are its broader concepts.
+     */
+    public List<KeywordBean> getRelated(Thesaurus thesaurus, String uri, KeywordRelation relation, Collection<String> languages) {
+        Set<String> uris = incoming.getOrDefault(relation, Collections.emptyMap()).getOrDefault(uri, Collections.emptySet());
+        List<Concept> related = new ArrayList<>(uris.size());
+        for (String relatedUri : uris) {
+            Concept concept = concepts.get(relatedUri);
+            if (concept != null) {
+                related.add(concept);
+            }
+        }
+        related.sort(THESAURUS_ORDER);
+        return toKeywords(thesaurus, related, languages, -1);
+    }
+
+    /**
+     * Search the concepts matching any of the clauses of the query.
+     *
+     * @param limit the maximum number of keywords to return, all of them if negative
+     * @return the keywords in the order of the thesaurus
+     */
+    public List<KeywordBean> search(Thesaurus thesaurus, ConceptQuery query, int limit) {
+        Collection<Concept> matches;
+        if (query.labelClauses.isEmpty() && query.uris.isEmpty()) {
+            matches = concepts.values();
+        } else {
+            Set<Concept> found = new HashSet<>();
+            for (String uri : query.uris) {
+                Concept concept = concepts.get(uri);
+                if (concept != null) {
+                    found.add(concept);
+                }
+            }
+            IsoLanguagesMapper mapper = thesaurus.getIsoLanguageMapper();
+            for (LabelClause clause : query.labelClauses) {
+                for (String lang : query.languages) {
+                    collectLabelMatches(clause, toLabelLanguage(mapper, lang), found);
+                }
+            }
+            matches = found;
+        }
+
+        List<Concept> ordered = new ArrayList<>(matches.size());
+        for (Concept concept : matches) {
+            if (!query.requireBoundedBy || concept.isBounded()) {
+                ordered.add(concept);
+            }
+        }
+        ordered.sort(THESAURUS_ORDER);
+        return toKeywords(thesaurus, ordered, query.languages, limit);
+    }
+
+    private void collectLabelMatches(LabelClause clause, String lang, Set<Concept> found) {
+        TreeMap<String, Set<String>> byLabel = labels.get(lang);
+        if (byLabel == null) {
+            return;
+        }
+
+        String text = clause.text.toLowerCase(Locale.ROOT);
+        Map<String, Set<String>> candidates;
+        switch (clause.type) {
+            case MATCH:
+                Set<String> uris = byLabel.get(text);
+                candidates = uris == null ? Collections.emptyMap() : Collections.singletonMap(text, uris);
+                break;
+            case STARTS_WITH:
+                candidates = byLabel.subMap(text, true, text + Character.MAX_VALUE, true);
+                break;
+            default:
+                candidates = new HashMap<>();
+                for (Map.Entry<String, Set<String>> entry : byLabel.entrySet()) {
+                    if (clause.type == KeywordSearchType.FUZZY
+                        ? isFuzzyMatch(entry.getKey(), text)
+                        : entry.getKey().contains(text)) {
+                        candidates.put(entry.getKey(), entry.getValue());
+                    }
+                }
+        }
+
+        for (Set<String> uris : candidates.values()) {
+            for (String uri : uris) {
+                Concept concept = concepts.get(uri);
+                if (clause.ignoreCase || clause.type == KeywordSearchType.FUZZY) {
+                    found.add(concept);
+                } else {
+                    // The label keys are lower cased, check the case of the actual labels
+                    for (String label : concept.labels.getOrDefault(lang, Collections.emptyList())) {
+                        if (clause.accepts(label)) {
+                            found.add(concept);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A label matches a fuzzy search when it contains the text, or when the label or one of its
+     * words is at most 1 edit (2 for texts of 8 characters or more) away from the text. Texts
+     * shorter than 4 characters must be contained in the label.
+     */
+    static boolean isFuzzyMatch(String label, String text) {
+        if (label.contains(text)) {
+            return true;
+        }
+        int maxEdits = text.length() < 4 ? 0 : text.length() < 8 ? 1 : 2;
+        if (maxEdits == 0) {
+            return false;
+        }
+        if (editDistance(label, text, maxEdits) <= maxEdits) {
+            return true;
+        }
+        for (String word : label.split("[\\s\\p{Punct}]+")) {
+            if (!word.isEmpty() && editDistance(word, text, maxEdits) <= maxEdits) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Levenshtein distance between two strings, or max + 1 as soon as it is known to be greater
+     * than max.
+     */
+    static int editDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private List<KeywordBean> toKeywords(Thesaurus thesaurus, List<Concept> concepts, Collection<String> languages, int limit) {
+        int size = limit > -1 ? Math.min(limit, concepts.size()) : concepts.size();
+        List<KeywordBean> keywords = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            keywords.add(toKeyword(thesaurus, concepts.get(i), languages, i));
+        }
+        return keywords;
+    }
+
+    /**
+     * Create the keyword of a concept, as {@link org.fao.geonet.kernel.rdf.QueryBuilder#keywordQueryBuilder}
+     * queries do.
+     */
+    private KeywordBean toKeyword(Thesaurus thesaurus, Concept concept, Collection<String> languages, int id) {
+        String[] lowerCorner = splitCorner(concept.lowerCorner);
+        String[] upperCorner = splitCorner(concept.upperCorner);
+        KeywordBean keyword = new KeywordBean(thesaurus.getIsoLanguageMapper())
+            .setThesaurusInfo(thesaurus)
+            .setId(id)
+            .setUriCode(concept.uri)
+            .setCoordEast(upperCorner[0])
+            .setCoordNorth(upperCorner[1])
+            .setCoordSouth(lowerCorner[1])
+            .setCoordWest(lowerCorner[0])
+            .setDownloadUrl(thesaurus.getDownloadUrl())
+            .setKeywordUrl(thesaurus.getKeywordUrl());
+
+        IsoLanguagesMapper mapper = thesaurus.getIsoLanguageMapper();
+        for (String lang : languages) {
+            String labelLanguage = toLabelLanguage(mapper, lang);
+            List<String> values = concept.labels.get(labelLanguage);
+            keyword.setValue(values == null ? "" : values.get(0), lang);
+            keyword.setDefinition(concept.notes.getOrDefault(labelLanguage, ""), lang);
+        }
+        return keyword;
+    }
+
+    private static String[] splitCorner(String corner) {
+        String[] parts = corner == null ? new String[0] : corner.split(" ");
+        return parts.length == 2 ? parts : new String[]{"", ""};
+    }
+
+    private static String toLabelLanguage(IsoLanguagesMapper mapper, String lang) {
+        return mapper.iso639_2_to_iso639_1(lang, lang.substring(0, 2)).toLowerCase(Locale.ROOT);
+    }
+
+    private void add(Concept concept) {
+        concepts.put(concept.uri, concept);
+        for (Map.Entry<String, List<String>> entry : concept.labels.entrySet()) {
+            TreeMap<String, Set<String>> byLabel = labels.computeIfAbsent(entry.getKey(), l -> new TreeMap<>());
+            for (String label : entry.getValue()) {
+                byLabel.computeIfAbsent(label.toLowerCase(Locale.ROOT), l -> new HashSet<>()).add(concept.uri);
+            }
+        }
+        for (Map.Entry<KeywordRelation, Set<String>> entry : concept.relations.entrySet()) {
+            Map<String, Set<String>> byTarget = incoming.computeIfAbsent(entry.getKey(), r -> new HashMap<>());
+            for (String target : entry.getValue()) {
+                byTarget.computeIfAbsent(target, t -> new LinkedHashSet<>()).add(concept.uri);
+            }
+        }
+    }
+
+    private Concept remove(String uri) {
+        Concept concept = concepts.remove(uri);
+        if (concept == null) {
+            return null;
+        }
+        for (Map.Entry<String, List<String>> entry : concept.labels.entrySet()) {
+            SortedMap<String, Set<String>> byLabel = labels.get(entry.getKey());
+            for (String label : entry.getValue()) {
+                String key = label.toLowerCase(Locale.ROOT);
+                Set<String> uris = byLabel.get(key);
+                if (uris != null && uris.remove(uri) && uris.isEmpty()) {
+                    byLabel.remove(key);
+                }
+            }
+        }
+        for (Map.Entry<KeywordRelation, Set<String>> entry : concept.relations.entrySet()) {
+            Map<String, Set<String>> byTarget = incoming.get(entry.getKey());
+            for (String target : entry.getValue()) {
+                Set<String> uris = byTarget.get(target);
+                if (uris != null && uris.remove(uri) && uris.isEmpty()) {
+                    byTarget.remove(target);
+                }
+            }
+        }
+        return concept;
+    }
+
+    private static List<Statement> statements(Graph graph, Resource subject) {
+        List<Statement> statements = new ArrayList<>();
+        StatementIterator iterator = graph.getStatements(subject, null, null);
+        try {
+            while (iterator.hasNext()) {
+                statements.add(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
+        return statements;
+    }
+
+    /**
+     * @return the concept described by the statements or null if the subject is not a skos:Concept
+     */
+    private static Concept readConcept(Resource subject, List<Statement> statements,
+                                       Function<Resource, List<Statement>> otherStatements, int order) {
+        if (!(subject instanceof URI)) {
+            return null;
+        }
+        boolean isConcept = false;
+        for (Statement statement : statements) {
+            if (RDF_TYPE.equals(statement.getPredicate().toString())
+                && SKOS_CONCEPT.equals(statement.getObject().toString())) {
+                isConcept = true;
+                break;
+            }
+        }
+        if (!isConcept) {
+            return null;
+        }
+
+        Concept concept = new Concept(subject.toString(), order);
+        for (Statement statement : statements) {
+            String predicate = statement.getPredicate().toString();
+            Value object = statement.getObject();
+            if (SKOS_PREF_LABEL.equals(predicate) || SKOS_SCOPE_NOTE.equals(predicate)) {
+                if (!(object instanceof Literal) || ((Literal) object).getLanguage() == null) {
+                    continue;
+                }
+                Literal literal = (Literal) object;
+                String lang = literal.getLanguage().toLowerCase(Locale.ROOT);
+                if (SKOS_PREF_LABEL.equals(predicate)) {
+                    concept.labels.computeIfAbsent(lang, l -> new ArrayList<>(1)).add(literal.getLabel());
+                } else {
+                    concept.notes.putIfAbsent(lang, literal.getLabel());
+                }
+            } else if (GML_BOUNDED_BY.equals(predicate) && object instanceof Resource) {
+                for (Statement envelope : otherStatements.apply((Resource) object)) {
+                    String envelopePredicate = envelope.getPredicate().toString();
+                    if (GML_LOWER_CORNER.equals(envelopePredicate) && envelope.getObject() instanceof Literal) {
+                        concept.lowerCorner = ((Literal) envelope.getObject()).getLabel();
+                    } else if (GML_UPPER_CORNER.equals(envelopePredicate) && envelope.getObject() instanceof Literal) {
+                        concept.upperCorner = ((Literal) envelope.getObject()).getLabel();
+                    }
+                }
+            } else if (predicate.startsWith(SKOS_NAMESPACE)) {
+                String name = predicate.substring(SKOS_NAMESPACE.length());
+                for (KeywordRelation relation : KeywordRelation.values()) {
+                    if (relation.name.equals(name)) {
+                        concept.relations.computeIfAbsent(relation, r -> new LinkedHashSet<>()).add(object.toString());
+                    }
+                }
+            }
+        }
+        return concept;
+    }
+
+    private static final class Concept {
+        final String uri;
+        final int order;
+        /**
+         * Language (two letter code) to labels, the first one is the label of the keyword.
+         */
+        final Map<String, List<String>> labels = new HashMap<>();
+        final Map<String, String> notes = new HashMap<>();
+        final Map<KeywordRelation, Set<String>> relations = new EnumMap<>(KeywordRelation.class);
+        String lowerCorner;
+        String upperCorner;
+
+        Concept(String uri, int order) {
+            this.uri = uri;
+            this.order = order;
+        }
+
+        boolean isBounded() {
+            return lowerCorner != null && upperCorner != null;
+        }
+    }
+
+    private static final class LabelClause {
+        final KeywordSearchType type;
+        final String text;
+        final boolean ignoreCase;
+
+        LabelClause(KeywordSearchType type, String text, boolean ignoreCase) {
+            this.type = type;
+            this.text = text;
+            this.ignoreCase = ignoreCase;
+        }
+
+        boolean accepts(String label) {
+            switch (type) {
+                case MATCH:
+                    return label.equals(text);
+                case STARTS_WITH:
+                    return label.startsWith(text);
+                default:
+                    return label.contains(text);
+            }
+        }
+    }
+
+    /**
+     * A keyword search run on the index. A concept matches if one of its labels in one of the
+     * languages matches one of the label clauses, or if its URI is one of the URIs. A query
+     * without clause matches all concepts.
+     */
+    public static final class ConceptQuery {
+        private final List<String> languages;
+        private final boolean requireBoundedBy;
+        private final List<LabelClause> labelClauses = new ArrayList<>();
+        private final List<String> uris = new ArrayList<>();
+
+        /**
+         * @param languages        the three letter codes of the languages to search and load
+         * @param requireBoundedBy only return concepts having a bounding box
+         */
+        public ConceptQuery(Collection<String> languages, boolean requireBoundedBy) {
+            this.languages = new ArrayList<>(languages);
+            this.requireBoundedBy = requireBoundedBy;
+        }
+
+        public ConceptQuery label(KeywordSearchType type, String text, boolean ignoreCase) {
+            labelClauses.add(new LabelClause(type, text, ignoreCase));
+            return this;
+        }
+
+        public ConceptQuery uri(String uri) {
+            uris.add(uri);
+            return this;
+        }
+
+        public boolean hasUris() {
+            return !uris.isEmpty();
+        }
+    }
+}
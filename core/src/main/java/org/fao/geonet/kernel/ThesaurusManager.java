@@ -26,17 +26,23 @@ import static com.google.common.io.Files.getNameWithoutExtension;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -58,12 +64,10 @@ import org.jdom.Element;
 import org.jdom.JDOMException;
 import org.openrdf.sesame.Sesame;
 import org.openrdf.sesame.config.ConfigurationException;
-import org.openrdf.sesame.config.RepositoryConfig;
-import org.openrdf.sesame.config.SailConfig;
-import org.openrdf.sesame.constants.RDFFormat;
 import org.openrdf.sesame.repository.local.LocalRepository;
 import org.openrdf.sesame.repository.local.LocalService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import com.google.common.collect.Maps;
 
 import jeeves.server.context.ServiceContext;
@@ -109,6 +113,19 @@ public class ThesaurusManager implements ThesaurusFinder {
         this.thesaurusCacheMaxSize = thesaurusCacheMaxSize;
     }
 
+    /**
+     * Number of threads loading the thesauri on startup.
+     */
+    @Value("${thesaurus.load.threads:4}")
+    private int loadThreads = 4;
+
+    /**
+     * Load the thesauri from the N-Triples snapshot written next to their RDF file when
+     * the RDF file was not modified since.
+     */
+    @Value("${thesaurus.snapshot.enabled:true}")
+    private boolean snapshotEnabled = true;
+
     /**
      * Initialize ThesaurusManager.
      *
@@ -165,6 +182,8 @@ public class ThesaurusManager implements ThesaurusFinder {
     }
 
     /**
+     * Loads the thesauri of all types in parallel and logs the time spent and the memory
+     * allocated for each of them.
      *
      * @param thesauriDirectory
      */
@@ -174,65 +193,116 @@ public class ThesaurusManager implements ThesaurusFinder {
         Log.info(Geonet.THESAURUS_MAN, "Scanning " + thesauriDirectory);
 
         if (thesauriDirectory != null && Files.isDirectory(thesauriDirectory)) {
-            String[] types = {Geonet.CodeList.EXTERNAL, Geonet.CodeList.LOCAL, Geonet.CodeList.REGISTER};
-            for (String type : types) {
-                // init of external repositories
-                Path externalThesauriDirectory = thesauriDirectory.resolve(type).resolve(Geonet.CodeList.THESAURUS);
-                if (Files.isDirectory(externalThesauriDirectory)) {
-                    try (DirectoryStream<Path> paths = Files.newDirectoryStream(externalThesauriDirectory, IO.DIRECTORIES_FILTER)) {
-                        for (Path aRdfDataDirectory : paths) {
-                            loadRepositories(aRdfDataDirectory, type, context);
+            final String siteURL = settingManager.getSiteURL(context);
+            long start = System.currentTimeMillis();
+            List<Future<?>> tasks = new ArrayList<>();
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("thesaurus-loading-");
+            threadFactory.setDaemon(true);
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, loadThreads), threadFactory);
+            try {
+                String[] types = {Geonet.CodeList.EXTERNAL, Geonet.CodeList.LOCAL, Geonet.CodeList.REGISTER};
+                for (String type : types) {
+                    // init of external repositories
+                    Path externalThesauriDirectory = thesauriDirectory.resolve(type).resolve(Geonet.CodeList.THESAURUS);
+                    if (Files.isDirectory(externalThesauriDirectory)) {
+                        try (DirectoryStream<Path> paths = Files.newDirectoryStream(externalThesauriDirectory, IO.DIRECTORIES_FILTER)) {
+                            for (Path aRdfDataDirectory : paths) {
+                                try (DirectoryStream<Path> rdfFiles = Files.newDirectoryStream(aRdfDataDirectory, "*.rdf")) {
+                                    for (Path aRdfDataFile : rdfFiles) {
+                                        tasks.add(executor.submit(() -> {
+                                            context.setAsThreadLocal();
+                                            loadRepository(aRdfDataDirectory, aRdfDataFile, type, siteURL, context);
+                                        }));
+                                    }
+                                }
+                            }
                         }
                     }
                 }
+
+                for (Future<?> task : tasks) {
+                    try {
+                        task.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while loading thesauri", e);
+                    } catch (ExecutionException e) {
+                        Log.error(Geonet.THESAURUS_MAN, "Error loading thesaurus: " + e.getCause().getMessage(), e.getCause());
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
             }
+
+            Runtime runtime = Runtime.getRuntime();
+            Log.info(Geonet.THESAURUS_MAN, String.format(
+                "%d thesauri loaded in %d ms with %d threads. Heap used: %d MB.",
+                thesauriMap.size(), System.currentTimeMillis() - start, Math.max(1, loadThreads),
+                (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024)));
         }
     }
 
     /**
+     * Creates and registers the thesaurus of a RDF file.
      *
-     * @param thesauriDirectory
+     * @param thesauriDirectory directory of the RDF file
      */
-    private void loadRepositories(Path thesauriDirectory, String root, ServiceContext context) throws IOException {
+    private void loadRepository(Path thesauriDirectory, Path aRdfDataFile, String root, String siteURL, ServiceContext context) {
+        long start = System.currentTimeMillis();
+        long allocatedBefore = getAllocatedBytes();
 
-        final String siteURL = settingManager.getSiteURL(context);
+        final String rdfFileName = aRdfDataFile.getFileName().toString();
+        final String thesaurusDirName = thesauriDirectory.getFileName().toString();
 
-        try (DirectoryStream<Path> paths = Files.newDirectoryStream(thesauriDirectory, "*.rdf")) {
-            for (Path aRdfDataFile : paths) {
+        final Thesaurus gst;
+        if (root.equals(Geonet.CodeList.REGISTER)) {
+            if (Log.isDebugEnabled(Geonet.THESAURUS_MAN)) {
+                Log.debug(Geonet.THESAURUS_MAN, "Creating thesaurus : " + aRdfDataFile);
+            }
 
-                final String rdfFileName = aRdfDataFile.getFileName().toString();
-                final String thesaurusDirName = thesauriDirectory.getFileName().toString();
+            Path outputRdf = thesauriDirectory.resolve(aRdfDataFile);
+            String uuid = getNameWithoutExtension(rdfFileName);
+            try (OutputStream outputRdfStream = Files.newOutputStream(outputRdf)) {
+                getRegisterMetadataAsRdf(uuid, outputRdfStream, context);
+            } catch (Exception e) {
+                Log.error(Geonet.THESAURUS_MAN, "Register thesaurus " + aRdfDataFile + " could not be read/converted from ISO19135 "
+                    + "record in catalog - skipping", e);
+                return;
+            }
 
-                final Thesaurus gst;
-                if (root.equals(Geonet.CodeList.REGISTER)) {
-                    if (Log.isDebugEnabled(Geonet.THESAURUS_MAN)) {
-                        Log.debug(Geonet.THESAURUS_MAN, "Creating thesaurus : " + aRdfDataFile);
-                    }
+            gst = new Thesaurus(isoLanguagesMapper, rdfFileName, root, thesaurusDirName, outputRdf, siteURL, thesaurusCacheMaxSize);
 
-                    Path outputRdf = thesauriDirectory.resolve(aRdfDataFile);
-                    String uuid = getNameWithoutExtension(rdfFileName);
-                    try (OutputStream outputRdfStream = Files.newOutputStream(outputRdf)) {
-                        getRegisterMetadataAsRdf(uuid, outputRdfStream, context);
-                    } catch (Exception e) {
-                        Log.error(Geonet.THESAURUS_MAN, "Register thesaurus " + aRdfDataFile + " could not be read/converted from ISO19135 "
-                            + "record in catalog - skipping", e);
-                        continue;
-                    }
+        } else {
+            gst = new Thesaurus(isoLanguagesMapper, rdfFileName, root, thesaurusDirName, thesauriDirectory.resolve(aRdfDataFile), siteURL, thesaurusCacheMaxSize);
+        }
 
-                    gst = new Thesaurus(isoLanguagesMapper, rdfFileName, root, thesaurusDirName, outputRdf, siteURL, thesaurusCacheMaxSize);
+        try {
+            boolean fromSnapshot = addThesaurus(gst);
 
-                } else {
-                    gst = new Thesaurus(isoLanguagesMapper, rdfFileName, root, thesaurusDirName, thesauriDirectory.resolve(aRdfDataFile), siteURL, thesaurusCacheMaxSize);
-                }
+            long allocatedBytes = getAllocatedBytes() - allocatedBefore;
+            Log.info(Geonet.THESAURUS_MAN, String.format(
+                "Thesaurus %s loaded from %s in %d ms%s.",
+                gst.getKey(), fromSnapshot ? "snapshot" : "RDF file", System.currentTimeMillis() - start,
+                allocatedBefore < 0 ? "" : String.format(", %d MB allocated", allocatedBytes / (1024 * 1024))));
+        } catch (Exception e) {
+            Log.error(Geonet.THESAURUS_MAN, "Error adding thesaurus " + aRdfDataFile + ": " + e.getMessage(), e);
+            // continue loading
+        }
+    }
 
-                try {
-                    addThesaurus(gst, false);
-                } catch (Exception e) {
-                    Log.error(Geonet.THESAURUS_MAN, "Error adding thesaurus " + aRdfDataFile + ": " + e.getMessage(), e);
-                    // continue loading
-                }
+    /**
+     * @return the number of bytes allocated by the current thread so far, or -1 if the JVM
+     * does not measure it.
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (allocationMXBean.isThreadAllocatedMemorySupported() && allocationMXBean.isThreadAllocatedMemoryEnabled()) {
+                return allocationMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
             }
         }
+        return -1;
     }
 
     /**
@@ -279,7 +349,24 @@ public class ThesaurusManager implements ThesaurusFinder {
      *                           Used when creating local thesaurus.
      */
     public void addThesaurus(Thesaurus gst, boolean writeConceptScheme) throws Exception {
+        addThesaurus(gst);
 
+        if (writeConceptScheme) {
+            gst.createConceptScheme(
+                gst.getTitle(),
+                gst.getMultilingualTitles(),
+                gst.getDescription(),
+                gst.getMultilingualDescriptions(),
+                gst.getFname(),
+                gst.getDname(),
+                gst.getDefaultNamespace());
+        }
+    }
+
+    /**
+     * @return true if the thesaurus was loaded from its snapshot.
+     */
+    private boolean addThesaurus(Thesaurus gst) throws Exception {
         String thesaurusName = gst.getKey();
 
         if (Log.isDebugEnabled(Geonet.THESAURUS_MAN)) {
@@ -290,24 +377,16 @@ public class ThesaurusManager implements ThesaurusFinder {
             throw new Exception("A thesaurus exists with code " + thesaurusName);
         }
 
-        createThesaurusRepository(gst);
+        boolean fromSnapshot = createThesaurusRepository(gst);
         thesauriMap.put(thesaurusName, gst);
-
-        if (writeConceptScheme) {
-            gst.createConceptScheme(
-                gst.getTitle(),
-                gst.getMultilingualTitles(),
-                gst.getDescription(),
-                gst.getMultilingualDescriptions(),
-                gst.getFname(),
-                gst.getDname(),
-                gst.getDefaultNamespace());
-        }
+        return fromSnapshot;
     }
 
     public void addOrReloadThesaurus(Thesaurus gst) throws Exception {
         if (thesauriMap.replace(gst.getKey(), gst) != null) {
-            service.removeRepository(gst.getKey());
+            synchronized (service) {
+                service.removeRepository(gst.getKey());
+            }
         }
 
         createThesaurusRepository(gst);
@@ -323,34 +402,52 @@ public class ThesaurusManager implements ThesaurusFinder {
      * @param name
      */
     public void remove(String name) {
-        service.removeRepository(name);
-        thesauriMap.remove(name);
+        synchronized (service) {
+            service.removeRepository(name);
+        }
+        Thesaurus thesaurus = thesauriMap.remove(name);
+        if (thesaurus != null) {
+            try {
+                Files.deleteIfExists(thesaurus.getSnapshotFile());
+            } catch (IOException e) {
+                Log.warning(Geonet.THESAURUS_MAN, "Could not delete snapshot of thesaurus " + name + ": " + e.getMessage());
+            }
+        }
     }
 
     /**
+     * Creates the repository of the thesaurus, from its snapshot if it is up to date. Otherwise
+     * the RDF file is loaded and the snapshot written for the next time. Register thesauri are
+     * regenerated on each startup and have no snapshot.
+     * <p>
+     * The creation of the repositories is serialized on the Sesame service, which keeps
+     * them in a registry.
      *
      * @param gst
+     * @return true if the repository was loaded from the snapshot.
      */
-    private void createThesaurusRepository(Thesaurus gst) throws Exception {
+    private boolean createThesaurusRepository(Thesaurus gst) throws Exception {
+        boolean useSnapshot = snapshotEnabled && !Geonet.CodeList.REGISTER.equals(gst.getType());
+        boolean fromSnapshot = useSnapshot && gst.hasUpToDateSnapshot();
         LocalRepository thesaurusRepository;
         try {
-            RepositoryConfig repConfig = new RepositoryConfig(gst.getKey());
-
-            SailConfig syncSail = new SailConfig("org.openrdf.sesame.sailimpl.sync.SyncRdfSchemaRepository");
-            SailConfig memSail = new org.openrdf.sesame.sailimpl.memory.RdfSchemaRepositoryConfig(
-                gst.getFile().toAbsolutePath().toString(), RDFFormat.RDFXML);
-            repConfig.addSail(syncSail);
-            repConfig.addSail(memSail);
-            repConfig.setWorldReadable(true);
-            repConfig.setWorldWriteable(true);
-
-            thesaurusRepository = service.createRepository(repConfig);
-
-            gst.setRepository(thesaurusRepository);
+            synchronized (service) {
+                thesaurusRepository = service.createRepository(gst.buildRepositoryConfig(fromSnapshot));
+            }
+            gst.setRepository(thesaurusRepository, fromSnapshot);
         } catch (ConfigurationException e) {
             Log.error(Geonet.THESAURUS_MAN, "Create Thesaurus Repository error", e);
             throw e;
         }
+
+        if (useSnapshot && !fromSnapshot) {
+            try {
+                gst.writeSnapshot();
+            } catch (Exception e) {
+                Log.warning(Geonet.THESAURUS_MAN, "Could not write snapshot of thesaurus " + gst.getKey() + ": " + e.getMessage());
+            }
+        }
+        return fromSnapshot;
     }
 
     public Path getThesauriDirectory() {
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel;
+
+import org.fao.geonet.domain.Profile;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The groups of an authenticated user, as resolved by {@link AccessManager} and kept in the user
+ * session. The groups are only valid for the user and profile they were resolved for, and until the
+ * user and group memberships change.
+ */
+public final class UserSessionGroups {
+    private final int userId;
+    private final Profile profile;
+    private final long version;
+    private final long expires;
+    private final Set<Integer> groups;
+    private final Set<Integer> editingGroups;
+    private final Set<Integer> reviewerGroups;
+
+    UserSessionGroups(int userId, Profile profile, long version, long expires,
+                      Set<Integer> groups, Set<Integer> editingGroups, Set<Integer> reviewerGroups) {
+        this.userId = userId;
+        this.profile = profile;
+        this.version = version;
+        this.expires = expires;
+        this.groups = Collections.unmodifiableSet(groups);
+        this.editingGroups = Collections.unmodifiableSet(editingGroups);
+        this.reviewerGroups = Collections.unmodifiableSet(reviewerGroups);
+    }
+
+    boolean isValid(int userId, Profile profile, long version, long now) {
+        return this.userId == userId && this.profile == profile && this.version == version && now < expires;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return all the groups of the user, or all the groups for an administrator.
+     */
+    public Set<Integer> getGroups() {
+        return groups;
+    }
+
+    /**
+     * @return the groups where the user has the editor profile.
+     */
+    public Set<Integer> getEditingGroups() {
+        return editingGroups;
+    }
+
+    /**
+     * @return the groups where the user has the reviewer profile.
+     */
+    public Set<Integer> getReviewerGroups() {
+        return reviewerGroups;
+    }
+}
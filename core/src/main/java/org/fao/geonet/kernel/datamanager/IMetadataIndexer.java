@@ -28,6 +28,7 @@ import java.util.List;
 
 import org.fao.geonet.domain.AbstractMetadata;
 import org.fao.geonet.kernel.search.IndexingMode;
+import org.fao.geonet.kernel.search.index.BatchIndexingListener;
 import org.jdom.Element;
 import org.springframework.data.jpa.domain.Specification;
 
@@ -105,6 +106,21 @@ public interface IMetadataIndexer {
 
     void indexMetadata(String metadataId, boolean forceRefreshReaders, IndexingMode indexingMode) throws Exception;
 
+    /**
+     * Index a list of records in the current thread using the batch indexing pipeline.
+     * Database information is loaded by chunk of records in a few set-based queries while
+     * the previous records are transformed by a pool of worker threads. Documents are sent
+     * to the index using the index commit buffer.
+     *
+     * Returns once all records are in the commit buffer. Call {@link #forceIndexChanges()}
+     * to flush it.
+     *
+     * @param metadataIds the metadata ids to index (either integers or strings)
+     * @param indexingMode the indexing mode
+     * @param listener notified for each record indexed or in error
+     */
+    void indexMetadataInBatch(List<?> metadataIds, IndexingMode indexingMode, BatchIndexingListener listener) throws Exception;
+
     void indexMetadataPrivileges(String uuid, int id) throws Exception;
 
     /**
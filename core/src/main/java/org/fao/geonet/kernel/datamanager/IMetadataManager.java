@@ -174,6 +174,15 @@ public interface IMetadataManager {
                         boolean forEditing, boolean applyOperationsFilters,
                         boolean withEditorValidationErrors, boolean keepXlinkAttributes) throws Exception;
 
+    /**
+     * Retrieves a metadata (in xml) already loaded from the database, with the operation filters applied and the
+     * information element added, like {@link #getMetadata(ServiceContext, String, boolean, boolean, boolean, boolean)}
+     * does when not editing. Use it when the records are loaded in batch.
+     *
+     * @param keepXlinkAttributes When XLinks are resolved, do not remove XLink attributes.
+     */
+    Element getMetadata(ServiceContext srvContext, AbstractMetadata metadata, boolean keepXlinkAttributes) throws Exception;
+
     /**
      * Update of owner info.
      */
@@ -188,6 +197,18 @@ public interface IMetadataManager {
     AbstractMetadata updateMetadata(ServiceContext context, String metadataId, Element md, boolean validate, boolean ufo,
                                     String lang, String changeDate, boolean updateDateStamp, IndexingMode indexingMode) throws Exception;
 
+    /**
+     * Updates a metadata record edited in the editing session of the given version. The version is checked
+     * and the record updated while no other change of the record runs.
+     *
+     * @param expectedVersion the version of the editing session, see {@link EditLib#getVersion(String)}. null to
+     *                        update the record whatever the version.
+     * @return the updated metadata, or null if the record was opened for editing again since.
+     */
+    AbstractMetadata updateMetadata(ServiceContext context, String metadataId, Element md, boolean validate, boolean ufo,
+                                    String lang, String changeDate, boolean updateDateStamp, IndexingMode indexingMode,
+                                    String expectedVersion) throws Exception;
+
     /**
      * Add privileges information about metadata record which depends on context and usually could not be stored in db or Lucene index
      * because depending on the current user or current client IP address.
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.kernel.datamanager;
+
+import com.google.common.util.concurrent.Striped;
+
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Locks of the metadata records, by record id. The changes of one record are serialized, the
+ * changes of different records run in parallel.
+ * <p>
+ * The locks are striped: two records may share a lock, which only means one waits for the
+ * other. A thread should not hold the lock of a record while taking the lock of another one.
+ */
+public final class MetadataLocks {
+    private static final int STRIPES = 1024;
+    private static final Striped<Lock> LOCKS = Striped.lazyWeakLock(STRIPES);
+
+    private MetadataLocks() {
+    }
+
+    public static Lock get(int metadataId) {
+        return LOCKS.get(metadataId);
+    }
+
+    public static Lock get(String metadataId) {
+        return get(Integer.parseInt(metadataId));
+    }
+}
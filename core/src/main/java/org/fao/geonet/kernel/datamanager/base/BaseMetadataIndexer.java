@@ -58,17 +58,21 @@ import org.fao.geonet.kernel.datamanager.draft.DraftMetadataIndexer;
 import org.fao.geonet.kernel.search.EsSearchManager;
 import org.fao.geonet.kernel.search.IndexFields;
 import org.fao.geonet.kernel.search.IndexingMode;
+import org.fao.geonet.kernel.search.index.BatchIndexingListener;
 import org.fao.geonet.kernel.setting.SettingManager;
 import org.fao.geonet.kernel.setting.Settings;
 import org.fao.geonet.repository.*;
+import org.fao.geonet.repository.specification.OperationAllowedSpecs;
 import org.fao.geonet.repository.userfeedback.UserFeedbackRepository;
 import org.fao.geonet.resources.Resources;
 import org.fao.geonet.util.ThreadUtils;
 import org.fao.geonet.utils.Log;
+import org.fao.geonet.utils.SaxonDocument;
 import org.jdom.Attribute;
 import org.jdom.Element;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.context.annotation.Lazy;
@@ -85,6 +89,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import static org.fao.geonet.resources.Resources.DEFAULT_LOGO_EXTENSION;
 
@@ -137,6 +142,18 @@ public class BaseMetadataIndexer implements IMetadataIndexer, ApplicationEventPu
     @Autowired
     private UserSavedSelectionRepository userSavedSelectionRepository;
 
+    /**
+     * Number of records for which database information is loaded at once in batch indexing.
+     */
+    @Value("${es.index.records.batchSize:200}")
+    private int batchSize = 200;
+
+    /**
+     * Number of records loaded from the database waiting for the index transformation in batch indexing.
+     */
+    @Value("${es.index.records.pipelineQueueSize:400}")
+    private int pipelineQueueSize = 400;
+
     public BaseMetadataIndexer() {
         indexObjectMapper = new ObjectMapper();
         indexObjectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
@@ -288,42 +305,16 @@ public class BaseMetadataIndexer implements IMetadataIndexer, ApplicationEventPu
                 // not in a transaction so we can go ahead.
             }
         }
-        // split reindexing task according to number of processors we can assign
-        int threadCount = ThreadUtils.getNumberOfThreads();
-        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
-
-        int perThread;
-        if (metadataIds.size() < threadCount)
-            perThread = metadataIds.size();
-        else
-            perThread = metadataIds.size() / threadCount;
-        int index = 0;
         if (Log.isDebugEnabled(Geonet.INDEX_ENGINE)) {
             Log.debug(Geonet.INDEX_ENGINE, "Indexing " + metadataIds.size() + " records.");
             Log.debug(Geonet.INDEX_ENGINE, metadataIds.toString());
         }
-        AtomicInteger numIndexedTracker = new AtomicInteger();
-        while (index < metadataIds.size()) {
-            int start = index;
-            int count = Math.min(perThread, metadataIds.size() - start);
-            int nbRecords = start + count;
-
-            if (Log.isDebugEnabled(Geonet.INDEX_ENGINE)) {
-                Log.debug(Geonet.INDEX_ENGINE, "Indexing records from " + start + " to " + nbRecords);
-            }
-
-            List<?> subList = metadataIds.subList(start, nbRecords);
-
-            if (Log.isDebugEnabled(Geonet.INDEX_ENGINE)) {
-                Log.debug(Geonet.INDEX_ENGINE, subList.toString());
-            }
-
-            // create threads to process this chunk of ids
-            Runnable worker = new IndexMetadataTask(context, subList, batchIndex, transactionStatus, numIndexedTracker);
-            executor.execute(worker);
-            index += count;
-        }
 
+        // The indexing pipeline takes care of running database loading,
+        // transformations and index requests in parallel.
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Runnable worker = new IndexMetadataTask(context, metadataIds, batchIndex, transactionStatus, new AtomicInteger());
+        executor.execute(worker);
         executor.shutdown();
     }
 
@@ -344,246 +335,448 @@ public class BaseMetadataIndexer implements IMetadataIndexer, ApplicationEventPu
                               final boolean forceRefreshReaders,
                               final IndexingMode indexingMode)
         throws Exception {
-        AbstractMetadata fullMd;
+        AbstractMetadata fullMd = null;
         monitorManager.getMeter(IndexingRecordMeter.class).mark();
         TimerContext timerContext = monitorManager.getTimer(IndexingRecordTimer.class).time();
         long start = System.currentTimeMillis();
         try {
-            Multimap<String, Object> fields = ArrayListMultimap.create();
             int id$ = Integer.parseInt(metadataId);
+            IndexingBatch batch = loadRecord(id$);
+            fullMd = batch.metadata.get(id$);
+            if (fullMd == null) {
+                throw new IllegalArgumentException(String.format("Record %s not found", metadataId));
+            }
+            indexPreparedRecord(prepareRecord(fullMd, batch), forceRefreshReaders, indexingMode);
+        } catch (Exception x) {
+            Log.error(Geonet.DATA_MANAGER, "The metadata document index with id=" + metadataId
+                + " is corrupt/invalid - ignoring it. Error: " + x.getMessage(), x);
+            fullMd = null;
+        } finally {
+            timerContext.stop();
+        }
+        if (fullMd != null) {
+            this.publisher.publishEvent(new MetadataIndexCompleted(fullMd));
+        }
+        Log.warning(Geonet.INDEX_ENGINE, String.format("Record #%s (mode: %s) indexed in %dms",
+            metadataId, indexingMode, System.currentTimeMillis() - start));
+    }
 
-            // get metadata, extracting and indexing any xlinks
-            Element md = getXmlSerializer().selectNoXLinkResolver(metadataId, true, false);
-            final ServiceContext serviceContext = getServiceContext();
-            if (getXmlSerializer().resolveXLinks()) {
-                List<Attribute> xlinks = Processor.getXLinks(md);
-                if (xlinks.size() > 0) {
-                    fields.put(Geonet.IndexFieldNames.HASXLINKS, true);
-                    for (Attribute xlink : xlinks) {
-                        fields.put(Geonet.IndexFieldNames.XLINK, xlink.getValue());
-                        fields.put(Geonet.IndexFieldNames.XLINK, xlink.getValue().replaceAll("local://srv/api/registries/entries/(.*)\\?.*", "$1"));
-                    }
-                    Processor.detachXLink(md, getServiceContext());
-                } else {
-                    fields.put(Geonet.IndexFieldNames.HASXLINKS, false);
-                }
-            } else {
-                fields.put(Geonet.IndexFieldNames.HASXLINKS, false);
+    @Override
+    public void indexMetadataInBatch(List<?> metadataIds, IndexingMode indexingMode,
+                                     BatchIndexingListener listener) throws Exception {
+        new MetadataIndexingPipeline(this, getServiceContext(),
+            batchSize, ThreadUtils.getNumberOfThreads(), pipelineQueueSize)
+            .run(metadataIds, indexingMode, listener);
+    }
+
+    /**
+     * Load the database information required to index one record, looking up each related
+     * entity directly instead of building the set-based queries of {@link #loadBatch(Collection)}.
+     */
+    IndexingBatch loadRecord(int metadataId) {
+        IndexingBatch batch = new IndexingBatch();
+        AbstractMetadata md = metadataUtils.findOne(metadataId);
+        if (md == null) {
+            return batch;
+        }
+        batch.metadata.put(metadataId, md);
+
+        Integer owner = md.getSourceInfo().getOwner();
+        if (owner != null) {
+            userRepository.findById(owner).ifPresent(u -> batch.users.put(u.getId(), u));
+        }
+        Integer groupOwner = md.getSourceInfo().getGroupOwner();
+        if (groupOwner != null) {
+            groupRepository.findById(groupOwner).ifPresent(g -> batch.groups.put(g.getId(), g));
+        }
+        String source = md.getSourceInfo().getSourceId();
+        if (source != null) {
+            Source sourceCatalogue = sourceRepository.findOneByUuid(source);
+            if (sourceCatalogue != null) {
+                batch.sources.put(source, sourceCatalogue);
             }
+        }
 
-            fullMd = metadataUtils.findOne(id$);
-
-            final String schema = fullMd.getDataInfo().getSchemaId();
-            final String createDate = fullMd.getDataInfo().getCreateDate().getDateAndTime();
-            final String changeDate = fullMd.getDataInfo().getChangeDate().getDateAndTime();
-            final String source = fullMd.getSourceInfo().getSourceId();
-            final MetadataType metadataType = fullMd.getDataInfo().getType();
-            final String uuid = fullMd.getUuid();
-            String indexKey = uuid;
-            if (fullMd instanceof MetadataDraft) {
-                indexKey += "-draft";
+        for (OperationAllowed operationAllowed : operationAllowedRepository.findAllById_MetadataId(metadataId)) {
+            IndexingBatch.addTo(batch.operations, metadataId, operationAllowed);
+            int groupId = operationAllowed.getId().getGroupId();
+            if (operationAllowed.getId().getOperationId() == ReservedOperation.view.getId()
+                && !batch.groups.containsKey(groupId)) {
+                groupRepository.findById(groupId).ifPresent(g -> batch.groups.put(g.getId(), g));
             }
+        }
+
+        Sort statusSort = Sort.by(Sort.Direction.DESC,
+            MetadataStatus_.changeDate.getName());
+        List<MetadataStatus> statuses = statusRepository.findAllByMetadataIdAndByType(metadataId, StatusValueType.workflow, statusSort);
+        if (!statuses.isEmpty()) {
+            batch.lastWorkflowStatus.put(metadataId, statuses.get(0));
+        }
+
+        for (MetadataValidation validation : metadataValidationRepository.findAllById_MetadataId(metadataId)) {
+            IndexingBatch.addTo(batch.validations, metadataId, validation);
+        }
+
+        InspireAtomFeed feed = inspireAtomFeedRepository.findByMetadataId(metadataId);
+        if (feed != null) {
+            batch.atomFeeds.put(metadataId, feed);
+        }
+
+        batch.ratingsEnabled = RatingsSetting.ADVANCED.equals(settingManager.getValue(Settings.SYSTEM_LOCALRATING_ENABLE));
+        if (batch.ratingsEnabled) {
+            batch.feedbackCounts.put(md.getUuid(), userFeedbackRepository.findByMetadata_Uuid(md.getUuid()).size());
+        }
+        batch.savedCounts.put(md.getUuid(), userSavedSelectionRepository.countTimesUserSavedMetadata(md.getUuid(), 0));
+
+        batch.preferGroupLogo = settingManager.getValueAsBool(Settings.SYSTEM_PREFER_GROUP_LOGO, true);
+        return batch;
+    }
+
+    /**
+     * Load all database information required to index a set of records.
+     */
+    IndexingBatch loadBatch(Collection<Integer> metadataIds) {
+        IndexingBatch batch = new IndexingBatch();
+        Set<Integer> ids = new LinkedHashSet<>(metadataIds);
 
-            final String extra = fullMd.getDataInfo().getExtra();
-            final boolean isHarvested = fullMd.getHarvestInfo().isHarvested();
-            final String owner = String.valueOf(fullMd.getSourceInfo().getOwner());
-            final Integer groupOwner = fullMd.getSourceInfo().getGroupOwner();
-            final String popularity = String.valueOf(fullMd.getDataInfo().getPopularity());
-            final String rating = String.valueOf(fullMd.getDataInfo().getRating());
-            final String displayOrder = fullMd.getDataInfo().getDisplayOrder() == null ? null
-                : String.valueOf(fullMd.getDataInfo().getDisplayOrder());
-
-            if (Log.isDebugEnabled(Geonet.DATA_MANAGER)) {
-                Log.debug(Geonet.DATA_MANAGER, "record schema (" + schema + ")"); // DEBUG
-                Log.debug(Geonet.DATA_MANAGER, "record createDate (" + createDate + ")"); // DEBUG
+        Map<Integer, AbstractMetadata> records = new HashMap<>();
+        for (AbstractMetadata md : metadataUtils.findAll(ids)) {
+            records.putIfAbsent(md.getId(), md);
+        }
+        for (Integer id : ids) {
+            AbstractMetadata md = records.get(id);
+            if (md != null) {
+                batch.metadata.put(id, md);
+            }
+        }
+        if (batch.metadata.isEmpty()) {
+            return batch;
+        }
+        ids = batch.metadata.keySet();
+
+        Set<Integer> ownerIds = new HashSet<>();
+        Set<Integer> groupIds = new HashSet<>();
+        Set<String> sourceIds = new HashSet<>();
+        Set<String> uuids = new HashSet<>();
+        for (AbstractMetadata md : batch.metadata.values()) {
+            if (md.getSourceInfo().getOwner() != null) {
+                ownerIds.add(md.getSourceInfo().getOwner());
             }
+            if (md.getSourceInfo().getGroupOwner() != null) {
+                groupIds.add(md.getSourceInfo().getGroupOwner());
+            }
+            if (md.getSourceInfo().getSourceId() != null) {
+                sourceIds.add(md.getSourceInfo().getSourceId());
+            }
+            uuids.add(md.getUuid());
+        }
 
-            fields.put(Geonet.IndexFieldNames.SCHEMA, schema);
-            fields.put(Geonet.IndexFieldNames.RECORDLINKFLAG, "record");
-            fields.put(Geonet.IndexFieldNames.DATABASE_CREATE_DATE, createDate);
-            fields.put(Geonet.IndexFieldNames.DATABASE_CHANGE_DATE, changeDate);
-            fields.put(Geonet.IndexFieldNames.SOURCE, source);
-            fields.put(Geonet.IndexFieldNames.IS_TEMPLATE, metadataType.codeString);
-            fields.put(Geonet.IndexFieldNames.UUID, uuid);
-            fields.put(Geonet.IndexFieldNames.ID, metadataId);
-            fields.put(Geonet.IndexFieldNames.FEATUREOFRECORD, "record");
-            fields.put(Geonet.IndexFieldNames.IS_HARVESTED, isHarvested);
-            if (isHarvested) {
-                fields.put(Geonet.IndexFieldNames.HARVESTUUID, fullMd.getHarvestInfo().getUuid());
+        for (OperationAllowed operationAllowed : operationAllowedRepository.findAll(OperationAllowedSpecs.hasMetadataIdIn(ids))) {
+            OperationAllowedId operationAllowedId = operationAllowed.getId();
+            IndexingBatch.addTo(batch.operations, operationAllowedId.getMetadataId(), operationAllowed);
+            if (operationAllowedId.getOperationId() == ReservedOperation.view.getId()) {
+                groupIds.add(operationAllowedId.getGroupId());
             }
-            fields.put(Geonet.IndexFieldNames.OWNER, owner);
-
-
-            if (!schemaManager.existsSchema(schema)) {
-                fields.put(IndexFields.DRAFT, "n");
-                fields.put(IndexFields.INDEXING_ERROR_FIELD, true);
-                fields.put(IndexFields.INDEXING_ERROR_MSG,
-                    searchManager.createIndexingErrorMsgObject("indexingErrorMsg-schemaNotRegistered",
-                        "error",
-                        Map.of("record", metadataId, "schema", schema)));
-                searchManager.index(null, md, indexKey, fields, metadataType,
-                    forceRefreshReaders, indexingMode);
-                Log.error(Geonet.DATA_MANAGER, String.format(
-                    "Record %s / Schema '%s' is not registered in this catalog. Install it or remove those records. Record is indexed indexing error flag.",
-                    metadataId, schema));
-            } else {
+        }
 
-                fields.put(Geonet.IndexFieldNames.POPULARITY, popularity);
-                fields.put(Geonet.IndexFieldNames.RATING, rating);
+        userRepository.findAllById(ownerIds).forEach(u -> batch.users.put(u.getId(), u));
+        groupRepository.findAllById(groupIds).forEach(g -> batch.groups.put(g.getId(), g));
+        sourceRepository.findAllById(sourceIds).forEach(s -> batch.sources.put(s.getUuid(), s));
 
-                if (RatingsSetting.ADVANCED.equals(settingManager.getValue(Settings.SYSTEM_LOCALRATING_ENABLE))) {
-                    int nbOfFeedback = userFeedbackRepository.findByMetadata_Uuid(uuid).size();
-                    fields.put(Geonet.IndexFieldNames.FEEDBACKCOUNT, nbOfFeedback);
-                }
+        Sort statusSort = Sort.by(Sort.Direction.DESC,
+            MetadataStatus_.changeDate.getName());
+        for (MetadataStatus status : statusRepository.findAllByMetadataIdInAndByType(ids, StatusValueType.workflow, statusSort)) {
+            batch.lastWorkflowStatus.putIfAbsent(status.getMetadataId(), status);
+        }
 
-                fields.put(Geonet.IndexFieldNames.DISPLAY_ORDER, displayOrder);
-                fields.put(Geonet.IndexFieldNames.EXTRA, extra);
+        for (MetadataValidation validation : metadataValidationRepository.findAllById_MetadataIdIn(ids)) {
+            IndexingBatch.addTo(batch.validations, validation.getId().getMetadataId(), validation);
+        }
 
-                // If the metadata has an atom document, index related information
-                InspireAtomFeed feed = inspireAtomFeedRepository.findByMetadataId(id$);
+        for (InspireAtomFeed feed : inspireAtomFeedRepository.findAllByMetadataIdIn(ids)) {
+            batch.atomFeeds.put(feed.getMetadataId(), feed);
+        }
 
-                if ((feed != null) && StringUtils.isNotEmpty(feed.getAtom())) {
-                    fields.put("atomfeed", feed.getAtom());
-                }
+        batch.ratingsEnabled = RatingsSetting.ADVANCED.equals(settingManager.getValue(Settings.SYSTEM_LOCALRATING_ENABLE));
+        if (batch.ratingsEnabled) {
+            for (Object[] count : userFeedbackRepository.countByMetadataUuidIn(uuids)) {
+                batch.feedbackCounts.put((String) count[0], ((Number) count[1]).intValue());
+            }
+        }
 
-                if (owner != null) {
-                    Optional<User> userOpt = userRepository.findById(fullMd.getSourceInfo().getOwner());
-                    if (userOpt.isPresent()) {
-                        User user = userOpt.get();
-                        fields.put(Geonet.IndexFieldNames.USERINFO, user.getUsername() + "|" + user.getSurname() + "|" + user
-                            .getName() + "|" + user.getProfile());
-                        fields.put(Geonet.IndexFieldNames.OWNERNAME, user.getName() + " " + user.getSurname());
-                    }
-                }
+        // the amount of users that have saved the records in the "Preferred Records" list (id=0)
+        for (Object[] count : userSavedSelectionRepository.countTimesUserSavedMetadata(uuids, 0)) {
+            batch.savedCounts.put((String) count[0], ((Number) count[1]).intValue());
+        }
 
-                String logoUUID = null;
-                if (groupOwner != null) {
-                    final Optional<Group> groupOpt = groupRepository.findById(groupOwner);
-                    if (groupOpt.isPresent()) {
-                        Group group = groupOpt.get();
-                        fields.put(Geonet.IndexFieldNames.GROUP_OWNER, String.valueOf(groupOwner));
-                        final boolean preferGroup = settingManager.getValueAsBool(Settings.SYSTEM_PREFER_GROUP_LOGO, true);
-                        if (group.getWebsite() != null && !group.getWebsite().isEmpty() && preferGroup) {
-                            fields.put(Geonet.IndexFieldNames.GROUP_WEBSITE, group.getWebsite());
-                        }
-                        if (group.getLogo() != null && preferGroup) {
-                            logoUUID = group.getLogo();
-                        }
-                    }
-                }
+        batch.preferGroupLogo = settingManager.getValueAsBool(Settings.SYSTEM_PREFER_GROUP_LOGO, true);
+        return batch;
+    }
 
-                // Group logo are in the harvester folder and contains extension in file name
-                boolean added = false;
-                if (StringUtils.isNotEmpty(logoUUID)) {
-                    final Path harvesterLogosDir = resources.locateHarvesterLogosDir(getServiceContext());
-                    try (Resources.ResourceHolder logo = resources.getImage(getServiceContext(), logoUUID, harvesterLogosDir)) {
-                        if (logo != null) {
-                            added = true;
-                            fields.put(Geonet.IndexFieldNames.LOGO,
-                                "/images/harvesting/" + logo.getPath().getFileName());
-                        }
-                    }
-                }
+    /**
+     * Build the database index fields of a record using the information loaded in the batch.
+     * The record XML is not parsed yet, see {@link #indexPreparedRecord(PreparedRecord, boolean, IndexingMode)}.
+     */
+    PreparedRecord prepareRecord(AbstractMetadata fullMd, IndexingBatch batch) throws Exception {
+        Multimap<String, Object> fields = ArrayListMultimap.create();
+        final int id$ = fullMd.getId();
+        final String metadataId = String.valueOf(id$);
+
+        final String schema = fullMd.getDataInfo().getSchemaId();
+        final String createDate = fullMd.getDataInfo().getCreateDate().getDateAndTime();
+        final String changeDate = fullMd.getDataInfo().getChangeDate().getDateAndTime();
+        final String source = fullMd.getSourceInfo().getSourceId();
+        final MetadataType metadataType = fullMd.getDataInfo().getType();
+        final String uuid = fullMd.getUuid();
+        String indexKey = uuid;
+        if (fullMd instanceof MetadataDraft) {
+            indexKey += "-draft";
+        }
 
-                // If not available, use the local catalog logo
-                if (!added) {
-                    Source sourceCatalogue = sourceRepository.findOneByUuid(source);
-                    logoUUID =
-                        sourceCatalogue != null
-                            && StringUtils.isNotEmpty(sourceCatalogue.getLogo())
-                        ? sourceCatalogue.getLogo() : source + DEFAULT_LOGO_EXTENSION;
-                    final Path logosDir = resources.locateLogosDir(getServiceContext());
-                    try (Resources.ResourceHolder image = resources.getImage(getServiceContext(), logoUUID, logosDir)) {
-                        if (image != null) {
-                            fields.put(Geonet.IndexFieldNames.LOGO,
-                                "/images/logos/" + logoUUID);
-                        }
-                    }
-                }
+        final String extra = fullMd.getDataInfo().getExtra();
+        final boolean isHarvested = fullMd.getHarvestInfo().isHarvested();
+        final String owner = String.valueOf(fullMd.getSourceInfo().getOwner());
+        final Integer groupOwner = fullMd.getSourceInfo().getGroupOwner();
+        final String popularity = String.valueOf(fullMd.getDataInfo().getPopularity());
+        final String rating = String.valueOf(fullMd.getDataInfo().getRating());
+        final String displayOrder = fullMd.getDataInfo().getDisplayOrder() == null ? null
+            : String.valueOf(fullMd.getDataInfo().getDisplayOrder());
 
-                fields.putAll(buildFieldsForPrivileges(id$));
+        if (Log.isDebugEnabled(Geonet.DATA_MANAGER)) {
+            Log.debug(Geonet.DATA_MANAGER, "record schema (" + schema + ")"); // DEBUG
+            Log.debug(Geonet.DATA_MANAGER, "record createDate (" + createDate + ")"); // DEBUG
+        }
 
-                for (MetadataCategory category : fullMd.getCategories()) {
-                    fields.put(Geonet.IndexFieldNames.CAT, category.getName());
-                }
+        fields.put(Geonet.IndexFieldNames.SCHEMA, schema);
+        fields.put(Geonet.IndexFieldNames.RECORDLINKFLAG, "record");
+        fields.put(Geonet.IndexFieldNames.DATABASE_CREATE_DATE, createDate);
+        fields.put(Geonet.IndexFieldNames.DATABASE_CHANGE_DATE, changeDate);
+        fields.put(Geonet.IndexFieldNames.SOURCE, source);
+        fields.put(Geonet.IndexFieldNames.IS_TEMPLATE, metadataType.codeString);
+        fields.put(Geonet.IndexFieldNames.UUID, uuid);
+        fields.put(Geonet.IndexFieldNames.ID, metadataId);
+        fields.put(Geonet.IndexFieldNames.FEATUREOFRECORD, "record");
+        fields.put(Geonet.IndexFieldNames.IS_HARVESTED, isHarvested);
+        if (isHarvested) {
+            fields.put(Geonet.IndexFieldNames.HARVESTUUID, fullMd.getHarvestInfo().getUuid());
+        }
+        fields.put(Geonet.IndexFieldNames.OWNER, owner);
+
+        if (!schemaManager.existsSchema(schema)) {
+            fields.put(IndexFields.DRAFT, "n");
+            fields.put(IndexFields.INDEXING_ERROR_FIELD, true);
+            fields.put(IndexFields.INDEXING_ERROR_MSG,
+                searchManager.createIndexingErrorMsgObject("indexingErrorMsg-schemaNotRegistered",
+                    "error",
+                    Map.of("record", metadataId, "schema", schema)));
+            return new PreparedRecord(fullMd, indexKey, fields, false);
+        }
 
-                // get status
-                Sort statusSort = Sort.by(Sort.Direction.DESC,
-                    MetadataStatus_.changeDate.getName());
-                List<MetadataStatus> statuses = statusRepository.findAllByMetadataIdAndByType(id$, StatusValueType.workflow, statusSort);
-                if (!statuses.isEmpty()) {
-                    MetadataStatus stat = statuses.get(0);
-                    String status = String.valueOf(stat.getStatusValue().getId());
-                    fields.put(Geonet.IndexFieldNames.STATUS, status);
-                    String statusChangeDate = stat.getChangeDate().getDateAndTime();
-                    fields.put(Geonet.IndexFieldNames.STATUS_CHANGE_DATE, statusChangeDate);
+        fields.put(Geonet.IndexFieldNames.POPULARITY, popularity);
+        fields.put(Geonet.IndexFieldNames.RATING, rating);
+
+        if (batch.ratingsEnabled) {
+            fields.put(Geonet.IndexFieldNames.FEEDBACKCOUNT, batch.getFeedbackCount(uuid));
+        }
+
+        fields.put(Geonet.IndexFieldNames.DISPLAY_ORDER, displayOrder);
+        fields.put(Geonet.IndexFieldNames.EXTRA, extra);
+
+        // If the metadata has an atom document, index related information
+        InspireAtomFeed feed = batch.atomFeeds.get(id$);
+
+        if ((feed != null) && StringUtils.isNotEmpty(feed.getAtom())) {
+            fields.put("atomfeed", feed.getAtom());
+        }
+
+        User user = batch.users.get(fullMd.getSourceInfo().getOwner());
+        if (user != null) {
+            fields.put(Geonet.IndexFieldNames.USERINFO, user.getUsername() + "|" + user.getSurname() + "|" + user
+                .getName() + "|" + user.getProfile());
+            fields.put(Geonet.IndexFieldNames.OWNERNAME, user.getName() + " " + user.getSurname());
+        }
+
+        String logoUUID = null;
+        if (groupOwner != null) {
+            Group group = batch.groups.get(groupOwner);
+            if (group != null) {
+                fields.put(Geonet.IndexFieldNames.GROUP_OWNER, String.valueOf(groupOwner));
+                final boolean preferGroup = batch.preferGroupLogo;
+                if (group.getWebsite() != null && !group.getWebsite().isEmpty() && preferGroup) {
+                    fields.put(Geonet.IndexFieldNames.GROUP_WEBSITE, group.getWebsite());
+                }
+                if (group.getLogo() != null && preferGroup) {
+                    logoUUID = group.getLogo();
                 }
+            }
+        }
 
-                // getValidationInfo
-                // -1 : not evaluated
-                // 0 : invalid
-                // 1 : valid
-                List<MetadataValidation> validationInfo = metadataValidationRepository.findAllById_MetadataId(id$);
-                if (validationInfo.isEmpty()) {
-                    fields.put(Geonet.IndexFieldNames.VALID, "-1");
-                } else {
-                    String isValid = "1";
-                    boolean hasInspireValidation = false;
-                    for (MetadataValidation vi : validationInfo) {
-                        String type = vi.getId().getValidationType();
-                        MetadataValidationStatus status = vi.getStatus();
-
-                        // TODO: Check if ignore INSPIRE validation?
-                        if (!type.equalsIgnoreCase("inspire")) {
-                            // If never validated and required then set status to never validated.
-                            if (status == MetadataValidationStatus.NEVER_CALCULATED && vi.isRequired()) {
-                                isValid = "-1";
-                            }
-                            if (status == MetadataValidationStatus.INVALID && vi.isRequired() && isValid != "-1") {
-                                isValid = "0";
-                            }
-                        } else {
-                            hasInspireValidation = true;
-                            fields.put(Geonet.IndexFieldNames.INSPIRE_REPORT_URL, vi.getReportUrl());
-                            fields.put(Geonet.IndexFieldNames.INSPIRE_VALIDATION_DATE, vi.getValidationDate().getDateAndTime());
-                        }
-                        fields.put(Geonet.IndexFieldNames.VALID + "_" + type, status.getCode());
-                    }
-                    fields.put(Geonet.IndexFieldNames.VALID, isValid);
+        // Group logo are in the harvester folder and contains extension in file name
+        String logo = null;
+        if (StringUtils.isNotEmpty(logoUUID)) {
+            logo = batch.getLogo("group:" + logoUUID, this::locateGroupLogo);
+        }
+
+        // If not available, use the local catalog logo
+        if (logo == null) {
+            Source sourceCatalogue = batch.sources.get(source);
+            logoUUID =
+                sourceCatalogue != null
+                    && StringUtils.isNotEmpty(sourceCatalogue.getLogo())
+                    ? sourceCatalogue.getLogo() : source + DEFAULT_LOGO_EXTENSION;
+            logo = batch.getLogo("source:" + logoUUID, this::locateSourceLogo);
+        }
+        if (logo != null) {
+            fields.put(Geonet.IndexFieldNames.LOGO, logo);
+        }
+
+        fields.putAll(buildFieldsForPrivileges(batch.getOperations(id$), batch.groups::get));
+
+        for (MetadataCategory category : fullMd.getCategories()) {
+            fields.put(Geonet.IndexFieldNames.CAT, category.getName());
+        }
+
+        // get status
+        MetadataStatus stat = batch.lastWorkflowStatus.get(id$);
+        if (stat != null) {
+            String status = String.valueOf(stat.getStatusValue().getId());
+            fields.put(Geonet.IndexFieldNames.STATUS, status);
+            String statusChangeDate = stat.getChangeDate().getDateAndTime();
+            fields.put(Geonet.IndexFieldNames.STATUS_CHANGE_DATE, statusChangeDate);
+        }
 
-                    if (!hasInspireValidation) {
-                        fields.put(Geonet.IndexFieldNames.VALID_INSPIRE, "-1");
+        // getValidationInfo
+        // -1 : not evaluated
+        // 0 : invalid
+        // 1 : valid
+        List<MetadataValidation> validationInfo = batch.getValidations(id$);
+        if (validationInfo.isEmpty()) {
+            fields.put(Geonet.IndexFieldNames.VALID, "-1");
+        } else {
+            String isValid = "1";
+            boolean hasInspireValidation = false;
+            for (MetadataValidation vi : validationInfo) {
+                String type = vi.getId().getValidationType();
+                MetadataValidationStatus status = vi.getStatus();
+
+                // TODO: Check if ignore INSPIRE validation?
+                if (!type.equalsIgnoreCase("inspire")) {
+                    // If never validated and required then set status to never validated.
+                    if (status == MetadataValidationStatus.NEVER_CALCULATED && vi.isRequired()) {
+                        isValid = "-1";
+                    }
+                    if (status == MetadataValidationStatus.INVALID && vi.isRequired() && isValid != "-1") {
+                        isValid = "0";
                     }
+                } else {
+                    hasInspireValidation = true;
+                    fields.put(Geonet.IndexFieldNames.INSPIRE_REPORT_URL, vi.getReportUrl());
+                    fields.put(Geonet.IndexFieldNames.INSPIRE_VALIDATION_DATE, vi.getValidationDate().getDateAndTime());
                 }
+                fields.put(Geonet.IndexFieldNames.VALID + "_" + type, status.getCode());
+            }
+            fields.put(Geonet.IndexFieldNames.VALID, isValid);
+
+            if (!hasInspireValidation) {
+                fields.put(Geonet.IndexFieldNames.VALID_INSPIRE, "-1");
+            }
+        }
 
-                // index the amount of users that have saved this record in the "Preferred Records" list (id=0)
-                int savedCount = userSavedSelectionRepository.countTimesUserSavedMetadata(uuid, 0);
-                fields.put(Geonet.IndexFieldNames.USER_SAVED_COUNT, savedCount);
+        // index the amount of users that have saved this record in the "Preferred Records" list (id=0)
+        fields.put(Geonet.IndexFieldNames.USER_SAVED_COUNT, batch.getSavedCount(uuid));
 
-                // Add metadata file store information
-                fields.putAll(indexMetadataFileStore(fullMd));
+        // Add metadata file store information
+        fields.putAll(indexMetadataFileStore(fullMd));
 
-                fields.putAll(addExtraFields(fullMd));
+        fields.putAll(addExtraFields(fullMd));
 
-                if (fullMd != null) {
-                    this.publisher.publishEvent(new MetadataIndexStarted(fullMd, fields));
+        return new PreparedRecord(fullMd, indexKey, fields, true);
+    }
+
+    /**
+     * Resolve XLinks, run the index transformation and queue the document
+     * for the index (or send it immediately if forceRefreshReaders is set).
+     * <p>
+     * The record XML is parsed straight into the tree model read by the index
+     * stylesheet. A JDOM tree is only built when XLinks have to be resolved.
+     */
+    void indexPreparedRecord(PreparedRecord record,
+                             boolean forceRefreshReaders,
+                             IndexingMode indexingMode) throws Exception {
+        final AbstractMetadata fullMd = record.metadata;
+        final Multimap<String, Object> fields = record.fields;
+        final String schema = fullMd.getDataInfo().getSchemaId();
+        final MetadataType metadataType = fullMd.getDataInfo().getType();
+
+        // extracting and indexing any xlinks
+        SaxonDocument md = null;
+        if (getXmlSerializer().resolveXLinks()) {
+            Element xml = getXmlSerializer().removeHiddenElements(true, fullMd, false);
+            List<Attribute> xlinks = Processor.getXLinks(xml);
+            if (xlinks.size() > 0) {
+                fields.put(Geonet.IndexFieldNames.HASXLINKS, true);
+                for (Attribute xlink : xlinks) {
+                    fields.put(Geonet.IndexFieldNames.XLINK, xlink.getValue());
+                    fields.put(Geonet.IndexFieldNames.XLINK, xlink.getValue().replaceAll("local://srv/api/registries/entries/(.*)\\?.*", "$1"));
                 }
+                Processor.detachXLink(xml, getServiceContext());
+            } else {
+                fields.put(Geonet.IndexFieldNames.HASXLINKS, false);
+            }
+            if (record.schemaRegistered) {
+                md = SaxonDocument.of(xml);
+            }
+        } else {
+            fields.put(Geonet.IndexFieldNames.HASXLINKS, false);
+            if (record.schemaRegistered) {
+                md = SaxonDocument.parse(fullMd.getData());
+            }
+        }
+
+        if (!record.schemaRegistered) {
+            searchManager.index(null, md, record.indexKey, fields, metadataType,
+                forceRefreshReaders, indexingMode);
+            Log.error(Geonet.DATA_MANAGER, String.format(
+                "Record %s / Schema '%s' is not registered in this catalog. Install it or remove those records. Record is indexed indexing error flag.",
+                fullMd.getId(), schema));
+        } else {
+            this.publisher.publishEvent(new MetadataIndexStarted(fullMd, fields));
+
+            searchManager.index(schemaManager.getSchemaDir(schema), md, record.indexKey, fields, metadataType,
+                forceRefreshReaders, indexingMode);
+        }
+    }
+
+    void publishIndexCompleted(AbstractMetadata fullMd) {
+        this.publisher.publishEvent(new MetadataIndexCompleted(fullMd));
+    }
 
-                searchManager.index(schemaManager.getSchemaDir(schema), md, indexKey, fields, metadataType,
-                    forceRefreshReaders, indexingMode);
+    private String locateGroupLogo(String key) {
+        final String logoUUID = key.substring("group:".length());
+        final Path harvesterLogosDir = resources.locateHarvesterLogosDir(getServiceContext());
+        try (Resources.ResourceHolder logo = resources.getImage(getServiceContext(), logoUUID, harvesterLogosDir)) {
+            if (logo != null) {
+                return "/images/harvesting/" + logo.getPath().getFileName();
             }
-        } catch (Exception x) {
-            Log.error(Geonet.DATA_MANAGER, "The metadata document index with id=" + metadataId
-                + " is corrupt/invalid - ignoring it. Error: " + x.getMessage(), x);
-            fullMd = null;
-        } finally {
-            timerContext.stop();
+        } catch (IOException e) {
+            Log.warning(Geonet.INDEX_ENGINE, String.format(
+                "Group logo '%s' is not accessible. Error is: %s", logoUUID, e.getMessage()));
         }
-        if (fullMd != null) {
-            this.publisher.publishEvent(new MetadataIndexCompleted(fullMd));
+        return null;
+    }
+
+    private String locateSourceLogo(String key) {
+        final String logoUUID = key.substring("source:".length());
+        final Path logosDir = resources.locateLogosDir(getServiceContext());
+        try (Resources.ResourceHolder image = resources.getImage(getServiceContext(), logoUUID, logosDir)) {
+            if (image != null) {
+                return "/images/logos/" + logoUUID;
+            }
+        } catch (IOException e) {
+            Log.warning(Geonet.INDEX_ENGINE, String.format(
+                "Catalogue logo '%s' is not accessible. Error is: %s", logoUUID, e.getMessage()));
         }
-        Log.warning(Geonet.INDEX_ENGINE, String.format("Record #%s (mode: %s) indexed in %dms",
-            metadataId, indexingMode, System.currentTimeMillis() - start));
+        return null;
     }
 
 
@@ -599,6 +792,12 @@ public class BaseMetadataIndexer implements IMetadataIndexer, ApplicationEventPu
 
     private Multimap<String, Object> buildFieldsForPrivileges(int recordId) {
         List<OperationAllowed> operationsAllowed = operationAllowedRepository.findAllById_MetadataId(recordId);
+        return buildFieldsForPrivileges(operationsAllowed,
+            groupId -> groupRepository.findById(groupId).orElse(null));
+    }
+
+    private Multimap<String, Object> buildFieldsForPrivileges(List<OperationAllowed> operationsAllowed,
+                                                              Function<Integer, Group> groupLookup) {
         Multimap<String, Object> privilegesFields = ArrayListMultimap.create();
         boolean isPublishedToAll = false;
         boolean isPublishedToIntranet = false;
@@ -611,17 +810,17 @@ public class BaseMetadataIndexer implements IMetadataIndexer, ApplicationEventPu
 
             privilegesFields.put(Geonet.IndexFieldNames.OP_PREFIX + operationId, String.valueOf(groupId));
             if (operationId == ReservedOperation.view.getId()) {
-                Optional<Group> g = groupRepository.findById(groupId);
-                if (g.isPresent()) {
-                    privilegesFields.put(Geonet.IndexFieldNames.GROUP_PUBLISHED, g.get().getName());
-                    privilegesFields.put(Geonet.IndexFieldNames.GROUP_PUBLISHED + "Id", g.get().getId());
+                Group g = groupLookup.apply(groupId);
+                if (g != null) {
+                    privilegesFields.put(Geonet.IndexFieldNames.GROUP_PUBLISHED, g.getName());
+                    privilegesFields.put(Geonet.IndexFieldNames.GROUP_PUBLISHED + "Id", g.getId());
 
 
-                    if (g.get().getId() == ReservedGroup.all.getId()) {
+                    if (g.getId() == ReservedGroup.all.getId()) {
                         isPublishedToAll = true;
-                    } else if (g.get().getId() == ReservedGroup.intranet.getId()) {
+                    } else if (g.getId() == ReservedGroup.intranet.getId()) {
                         isPublishedToIntranet = true;
-                    } else if (g.get().getId() == ReservedGroup.guest.getId()) {
+                    } else if (g.getId() == ReservedGroup.guest.getId()) {
                         isPublishedToGuest = true;
                     }
                 }
@@ -666,6 +865,24 @@ public class BaseMetadataIndexer implements IMetadataIndexer, ApplicationEventPu
         return extraFields;
     }
 
+    /**
+     * A record with its database index fields, waiting for the index transformation.
+     */
+    static final class PreparedRecord {
+        final AbstractMetadata metadata;
+        final String indexKey;
+        final Multimap<String, Object> fields;
+        final boolean schemaRegistered;
+
+        PreparedRecord(AbstractMetadata metadata, String indexKey,
+                       Multimap<String, Object> fields, boolean schemaRegistered) {
+            this.metadata = metadata;
+            this.indexKey = indexKey;
+            this.fields = fields;
+            this.schemaRegistered = schemaRegistered;
+        }
+    }
+
     private XmlSerializer getXmlSerializer() {
         return xmlSerializer;
     }
@@ -93,6 +93,7 @@ import java.nio.file.Path;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -693,6 +694,24 @@ public class BaseMetadataManager implements IMetadataManager {
         return metadataXml;
     }
 
+    @Override
+    public Element getMetadata(ServiceContext srvContext, AbstractMetadata metadata, boolean keepXlinkAttributes) throws Exception {
+        Element metadataXml = getXmlSerializer().removeHiddenElements(false, metadata, true);
+        if (getXmlSerializer().resolveXLinks()) {
+            if (keepXlinkAttributes) {
+                Processor.processXLink(metadataXml, srvContext);
+            } else {
+                Processor.detachXLink(metadataXml, srvContext);
+            }
+        }
+
+        metadataXml.addNamespaceDeclaration(Edit.NAMESPACE);
+        metadataXml.addContent(buildInfoElem(srvContext, metadata, null));
+
+        metadataXml.detach();
+        return metadataXml;
+    }
+
     /**
      * Retrieves a metadata (in xml) given its id. Use this method when you must
      * retrieve a metadata in the same transaction.
@@ -710,27 +729,60 @@ public class BaseMetadataManager implements IMetadataManager {
      * For update of owner info.
      */
     @Override
-    public synchronized void updateMetadataOwner(final int id, final String owner, final String groupOwner) throws Exception {
-        metadataRepository.update(id, new Updater<Metadata>() {
-            @Override
-            public void apply(@Nonnull Metadata entity) {
-                entity.getSourceInfo().setGroupOwner(Integer.valueOf(groupOwner));
-                entity.getSourceInfo().setOwner(Integer.valueOf(owner));
-            }
-        });
+    public void updateMetadataOwner(final int id, final String owner, final String groupOwner) throws Exception {
+        Lock lock = MetadataLocks.get(id);
+        lock.lock();
+        try {
+            metadataRepository.update(id, new Updater<Metadata>() {
+                @Override
+                public void apply(@Nonnull Metadata entity) {
+                    entity.getSourceInfo().setGroupOwner(Integer.valueOf(groupOwner));
+                    entity.getSourceInfo().setOwner(Integer.valueOf(owner));
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
      * Updates a metadata record. Deletes validation report currently in session (if
      * any). If user asks for validation the validation report will be (re-)created
      * then.
+     * <p>
+     * Updates of the same record are serialized, updates of different records run in parallel.
      *
      * @return metadata if the that was updated
      */
     @Override
-    public synchronized AbstractMetadata updateMetadata(final ServiceContext context, final String metadataId, final Element md,
-                                                        final boolean validate, final boolean ufo, final String lang, String changeDate,
-                                                        final boolean updateDateStamp, final IndexingMode indexingMode) throws Exception {
+    public AbstractMetadata updateMetadata(final ServiceContext context, final String metadataId, final Element md,
+                                           final boolean validate, final boolean ufo, final String lang, String changeDate,
+                                           final boolean updateDateStamp, final IndexingMode indexingMode) throws Exception {
+        return updateMetadata(context, metadataId, md, validate, ufo, lang, changeDate, updateDateStamp, indexingMode, null);
+    }
+
+    @Override
+    public AbstractMetadata updateMetadata(final ServiceContext context, final String metadataId, final Element md,
+                                           final boolean validate, final boolean ufo, final String lang, String changeDate,
+                                           final boolean updateDateStamp, final IndexingMode indexingMode,
+                                           final String expectedVersion) throws Exception {
+        Lock lock = MetadataLocks.get(metadataId);
+        lock.lock();
+        try {
+            if (expectedVersion != null && !editLib.getVersion(metadataId).equals(expectedVersion)) {
+                Log.debug(Geonet.DATA_MANAGER, "Record with id " + metadataId + " not updated. It was opened for editing again since version "
+                    + expectedVersion);
+                return null;
+            }
+            return doUpdateMetadata(context, metadataId, md, validate, ufo, lang, changeDate, updateDateStamp, indexingMode);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private AbstractMetadata doUpdateMetadata(final ServiceContext context, final String metadataId, final Element md,
+                                              final boolean validate, final boolean ufo, final String lang, String changeDate,
+                                              final boolean updateDateStamp, final IndexingMode indexingMode) throws Exception {
         Log.trace(Geonet.DATA_MANAGER, "Update record with id " + metadataId);
 
         Element metadataXml = md;
@@ -810,7 +862,11 @@ public class BaseMetadataManager implements IMetadataManager {
      * buildInfoElem contains similar portion of code with indexMetadata
      */
     private Element buildInfoElem(ServiceContext context, String id, String version) throws Exception {
-        AbstractMetadata metadata = metadataUtils.findOne(id);
+        return buildInfoElem(context, metadataUtils.findOne(id), version);
+    }
+
+    private Element buildInfoElem(ServiceContext context, AbstractMetadata metadata, String version) throws Exception {
+        String id = String.valueOf(metadata.getId());
         final MetadataDataInfo dataInfo = metadata.getDataInfo();
         String schema = dataInfo.getSchemaId();
         String createDate = dataInfo.getCreateDate().getDateAndTime();
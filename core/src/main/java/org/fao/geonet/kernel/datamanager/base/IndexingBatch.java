@@ -0,0 +1,104 @@
+//=============================================================================
+//===	Copyright (C) 2001-2026 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+package org.fao.geonet.kernel.datamanager.base;
+
+import org.fao.geonet.domain.AbstractMetadata;
+import org.fao.geonet.domain.Group;
+import org.fao.geonet.domain.InspireAtomFeed;
+import org.fao.geonet.domain.MetadataStatus;
+import org.fao.geonet.domain.MetadataValidation;
+import org.fao.geonet.domain.OperationAllowed;
+import org.fao.geonet.domain.Source;
+import org.fao.geonet.domain.User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Database information required to index a chunk of records.
+ * <p>
+ * Everything the indexer needs besides the record XML (owner, group, source, workflow status,
+ * validation, privileges, atom feed, feedback and saved selection counts) is loaded
+ * by {@link BaseMetadataIndexer#loadBatch(java.util.Collection)} with one set-based
+ * query per table instead of one query per record and per table. A single record is indexed
+ * from a batch filled by {@link BaseMetadataIndexer#loadRecord(int)} with direct lookups.
+ * <p>
+ * A batch is built and read by a single thread.
+ */
+final class IndexingBatch {
+    final Map<Integer, AbstractMetadata> metadata = new LinkedHashMap<>();
+    final Map<Integer, User> users = new HashMap<>();
+    final Map<Integer, Group> groups = new HashMap<>();
+    final Map<String, Source> sources = new HashMap<>();
+    final Map<Integer, MetadataStatus> lastWorkflowStatus = new HashMap<>();
+    final Map<Integer, List<MetadataValidation>> validations = new HashMap<>();
+    final Map<Integer, List<OperationAllowed>> operations = new HashMap<>();
+    final Map<Integer, InspireAtomFeed> atomFeeds = new HashMap<>();
+    final Map<String, Integer> feedbackCounts = new HashMap<>();
+    final Map<String, Integer> savedCounts = new HashMap<>();
+
+    /**
+     * Logo index field value by logo identifier. Resolving a logo means a file system lookup,
+     * and most records of a batch share a handful of logos.
+     */
+    final Map<String, String> logos = new HashMap<>();
+
+    boolean ratingsEnabled;
+    boolean preferGroupLogo;
+
+    List<MetadataValidation> getValidations(int metadataId) {
+        return validations.getOrDefault(metadataId, Collections.emptyList());
+    }
+
+    List<OperationAllowed> getOperations(int metadataId) {
+        return operations.getOrDefault(metadataId, Collections.emptyList());
+    }
+
+    int getFeedbackCount(String uuid) {
+        return feedbackCounts.getOrDefault(uuid, 0);
+    }
+
+    int getSavedCount(String uuid) {
+        return savedCounts.getOrDefault(uuid, 0);
+    }
+
+    /**
+     * @return the cached logo, or resolve it. Logos not found are cached too.
+     */
+    String getLogo(String key, Function<String, String> resolver) {
+        if (!logos.containsKey(key)) {
+            logos.put(key, resolver.apply(key));
+        }
+        return logos.get(key);
+    }
+
+    static <K, V> void addTo(Map<K, List<V>> map, K key, V value) {
+        map.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+    }
+}
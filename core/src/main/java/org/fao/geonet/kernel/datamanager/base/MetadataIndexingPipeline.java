@@ -0,0 +1,190 @@
+//=============================================================================
+//===	Copyright (C) 2001-2026 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+package org.fao.geonet.kernel.datamanager.base;
+
+import com.google.common.collect.Lists;
+import com.yammer.metrics.core.TimerContext;
+import jeeves.monitor.MonitorManager;
+import jeeves.monitor.timer.IndexingRecordMeter;
+import jeeves.monitor.timer.IndexingRecordTimer;
+import jeeves.server.context.ServiceContext;
+import org.fao.geonet.constants.Geonet;
+import org.fao.geonet.domain.AbstractMetadata;
+import org.fao.geonet.kernel.search.IndexingMode;
+import org.fao.geonet.kernel.search.index.BatchIndexingListener;
+import org.fao.geonet.utils.Log;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Staged indexing of a list of records.
+ * <p>
+ * The calling thread loads records by chunk ({@link BaseMetadataIndexer#loadBatch}), builds their
+ * database index fields and puts them in a bounded queue. Worker threads take them from the queue,
+ * resolve XLinks, run the index XSLT, convert to JSON and add the document to the index commit buffer
+ * which sends them in bulk. Database, CPU and index I/O overlap instead of running in lockstep,
+ * and the bounded queue keeps the database stage from loading the whole catalogue in memory when
+ * transformations are slower.
+ */
+final class MetadataIndexingPipeline {
+    private static final BaseMetadataIndexer.PreparedRecord END_OF_QUEUE =
+        new BaseMetadataIndexer.PreparedRecord(null, null, null, false);
+
+    private final BaseMetadataIndexer indexer;
+    private final ServiceContext context;
+    private final int batchSize;
+    private final int workers;
+    private final BlockingQueue<BaseMetadataIndexer.PreparedRecord> queue;
+    private final MonitorManager monitorManager;
+
+    MetadataIndexingPipeline(BaseMetadataIndexer indexer, ServiceContext context,
+                             int batchSize, int workers, int queueSize) {
+        this.indexer = indexer;
+        this.context = context;
+        this.batchSize = Math.max(1, batchSize);
+        this.workers = Math.max(1, workers);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        this.monitorManager = indexer.monitorManager;
+    }
+
+    void run(List<?> metadataIds, IndexingMode indexingMode, BatchIndexingListener listener)
+        throws InterruptedException {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory();
+        threadFactory.setDaemon(true);
+        threadFactory.setThreadNamePrefix("IndexingPipeline-");
+        ExecutorService executor = Executors.newFixedThreadPool(workers, threadFactory);
+        for (int i = 0; i < workers; i++) {
+            executor.execute(() -> transform(indexingMode, listener));
+        }
+
+        long start = System.currentTimeMillis();
+        boolean completed = false;
+        try {
+            load(metadataIds, listener);
+            completed = true;
+        } finally {
+            if (completed) {
+                for (int i = 0; i < workers; i++) {
+                    queue.put(END_OF_QUEUE);
+                }
+                executor.shutdown();
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } else {
+                queue.clear();
+                executor.shutdownNow();
+            }
+        }
+        Log.info(Geonet.INDEX_ENGINE, String.format(
+            "Batch indexing of %d records with %d worker(s) completed in %dms.",
+            metadataIds.size(), workers, System.currentTimeMillis() - start));
+    }
+
+    /**
+     * Database stage. Runs in the calling thread.
+     */
+    private void load(List<?> metadataIds, BatchIndexingListener listener) throws InterruptedException {
+        for (List<?> chunk : Lists.partition(metadataIds, batchSize)) {
+            List<Integer> ids = new ArrayList<>(chunk.size());
+            for (Object metadataId : chunk) {
+                try {
+                    ids.add(Integer.valueOf(metadataId.toString()));
+                } catch (NumberFormatException e) {
+                    Log.error(Geonet.INDEX_ENGINE, "Error indexing metadata '" + metadataId + "': not a record identifier.");
+                    listener.onError(String.valueOf(metadataId), e);
+                }
+            }
+
+            IndexingBatch batch;
+            try {
+                batch = indexer.loadBatch(ids);
+            } catch (Exception e) {
+                Log.error(Geonet.INDEX_ENGINE, "Error loading records " + ids + " for indexing: " + e.getMessage(), e);
+                ids.forEach(id -> listener.onError(String.valueOf(id), e));
+                continue;
+            }
+
+            for (Integer id : ids) {
+                AbstractMetadata fullMd = batch.metadata.get(id);
+                if (fullMd == null) {
+                    Log.error(Geonet.INDEX_ENGINE, "Error indexing metadata '" + id + "': record not found.");
+                    listener.onError(String.valueOf(id), new IllegalArgumentException(String.format("Record %s not found", id)));
+                    continue;
+                }
+                BaseMetadataIndexer.PreparedRecord record;
+                try {
+                    record = indexer.prepareRecord(fullMd, batch);
+                } catch (Exception e) {
+                    Log.error(Geonet.INDEX_ENGINE, "The metadata document index with id=" + id
+                        + " is corrupt/invalid - ignoring it. Error: " + e.getMessage(), e);
+                    listener.onError(String.valueOf(id), e);
+                    continue;
+                }
+                queue.put(record);
+            }
+        }
+    }
+
+    /**
+     * XLink, index XSLT and JSON stage. Runs in the worker threads.
+     */
+    private void transform(IndexingMode indexingMode, BatchIndexingListener listener) {
+        if (context != null) {
+            context.setAsThreadLocal();
+        }
+        while (true) {
+            BaseMetadataIndexer.PreparedRecord record;
+            try {
+                record = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (record == END_OF_QUEUE) {
+                return;
+            }
+
+            String metadataId = String.valueOf(record.metadata.getId());
+            monitorManager.getMeter(IndexingRecordMeter.class).mark();
+            TimerContext timerContext = monitorManager.getTimer(IndexingRecordTimer.class).time();
+            try {
+                indexer.indexPreparedRecord(record, false, indexingMode);
+                indexer.publishIndexCompleted(record.metadata);
+                listener.onIndexed(metadataId);
+            } catch (Exception e) {
+                Log.error(Geonet.INDEX_ENGINE, "The metadata document index with id=" + metadataId
+                    + " is corrupt/invalid - ignoring it. Error: " + e.getMessage(), e);
+                listener.onError(metadataId, e);
+            } finally {
+                timerContext.stop();
+            }
+        }
+    }
+}
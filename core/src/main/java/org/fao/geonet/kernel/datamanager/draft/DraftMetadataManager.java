@@ -31,6 +31,7 @@ import org.fao.geonet.domain.MetadataDraft;
 import org.fao.geonet.domain.MetadataSourceInfo;
 import org.fao.geonet.domain.MetadataType;
 import org.fao.geonet.kernel.datamanager.IMetadataManager;
+import org.fao.geonet.kernel.datamanager.MetadataLocks;
 import org.fao.geonet.kernel.datamanager.base.BaseMetadataManager;
 import org.fao.geonet.repository.MetadataDraftRepository;
 import org.fao.geonet.repository.PathSpec;
@@ -44,6 +45,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.PostConstruct;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.locks.Lock;
 
 public class DraftMetadataManager extends BaseMetadataManager implements IMetadataManager {
 
@@ -98,17 +100,23 @@ public class DraftMetadataManager extends BaseMetadataManager implements IMetada
      * For update of owner info.
      */
     @Override
-    public synchronized void updateMetadataOwner(final int id, final String owner, final String groupOwner)
+    public void updateMetadataOwner(final int id, final String owner, final String groupOwner)
         throws Exception {
 
         if (metadataDraftRepository.existsById(id)) {
-            metadataDraftRepository.update(id, new Updater<MetadataDraft>() {
-                @Override
-                public void apply(@Nonnull MetadataDraft entity) {
-                    entity.getSourceInfo().setGroupOwner(Integer.valueOf(groupOwner));
-                    entity.getSourceInfo().setOwner(Integer.valueOf(owner));
-                }
-            });
+            Lock lock = MetadataLocks.get(id);
+            lock.lock();
+            try {
+                metadataDraftRepository.update(id, new Updater<MetadataDraft>() {
+                    @Override
+                    public void apply(@Nonnull MetadataDraft entity) {
+                        entity.getSourceInfo().setGroupOwner(Integer.valueOf(groupOwner));
+                        entity.getSourceInfo().setOwner(Integer.valueOf(owner));
+                    }
+                });
+            } finally {
+                lock.unlock();
+            }
         } else {
             super.updateMetadataOwner(id, owner, groupOwner);
         }
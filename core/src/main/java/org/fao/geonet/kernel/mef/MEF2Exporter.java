@@ -26,40 +26,94 @@ package org.fao.geonet.kernel.mef;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import jeeves.server.context.ServiceContext;
+import jeeves.server.dispatchers.ServiceManager;
+import jeeves.transaction.TransactionManager;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.fao.geonet.Constants;
 import org.fao.geonet.GeonetContext;
-import org.fao.geonet.ZipUtil;
 import org.fao.geonet.api.records.attachments.Store;
 import org.fao.geonet.api.records.attachments.StoreUtils;
 import org.fao.geonet.constants.Geonet;
 import org.fao.geonet.domain.*;
+import org.fao.geonet.exceptions.MetadataNotFoundEx;
 import org.fao.geonet.kernel.DataManager;
 import org.fao.geonet.kernel.datamanager.IMetadataUtils;
 import org.fao.geonet.kernel.mef.MEFLib.Format;
 import org.fao.geonet.kernel.mef.MEFLib.Version;
 import org.fao.geonet.kernel.search.EsSearchManager;
-import org.fao.geonet.kernel.setting.SettingInfo;
 import org.fao.geonet.lib.Lib;
 import org.fao.geonet.repository.MetadataRelationRepository;
 import org.fao.geonet.repository.MetadataRepository;
+import org.fao.geonet.utils.Log;
 import org.fao.geonet.utils.Xml;
 import org.jdom.Element;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextCallable;
 
-import java.nio.file.FileSystem;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static com.google.common.xml.XmlEscapers.xmlContentEscaper;
 import static org.fao.geonet.Constants.CHARSET;
 import static org.fao.geonet.kernel.mef.MEFConstants.*;
 
 class MEF2Exporter {
+    /**
+     * Number of records exported in parallel when the export is written to a file.
+     */
+    static final int DEFAULT_THREADS = 4;
+
+    /**
+     * Number of records whose index summary is loaded by one query.
+     */
+    private static final int SUMMARY_BATCH_SIZE = 1000;
+
+    /**
+     * Threads building the record folders, shared by all the exports. Each export has at most
+     * twice its number of threads records waiting to be added to its ZIP.
+     */
+    @VisibleForTesting
+    static final ExecutorService EXECUTOR = createExecutor();
+
+    private static ExecutorService createExecutor() {
+        int threads = Math.max(DEFAULT_THREADS, Runtime.getRuntime().availableProcessors());
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("mef-export-");
+        threadFactory.setDaemon(true);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES,
+            new LinkedBlockingQueue<>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /**
      * Create a MEF2 file in ZIP format.
      *
@@ -90,36 +144,70 @@ class MEF2Exporter {
                                 boolean approved, boolean includeAttachments) throws Exception {
 
         Path file = Files.createTempFile("mef-", ".mef");
-        EsSearchManager searchManager = context.getBean(EsSearchManager.class);
-        String contextLang = context.getLanguage() == null ? Geonet.DEFAULT_LANGUAGE : context.getLanguage();
-        try (
-            FileSystem zipFs = ZipUtil.createZipFs(file)
-        ) {
-            StringBuilder csvBuilder = new StringBuilder("\"schema\";\"uuid\";\"id\";\"type\";\"isHarvested\";\"title\";\"abstract\"\n");
-            Element html = new Element("html").addContent(new Element("head").addContent(Arrays.asList(
-                new Element("title").setText("Export Index"),
-                new Element("link").setAttribute("rel", "stylesheet").
-                    setAttribute("href", "https://maxcdn.bootstrapcdn.com/bootstrap/3.3.4/css/bootstrap.min.css"),
-                new Element("style").setText("body {\n"
-                    + "  padding-left: 10px;\n"
-                    + "}\n"
-                    + "p.abstract {\n"
-                    + "  font-style: italic;\n"
-                    + "}\n"
-                    + ".entry {\n"
-                    + "  padding: 20px;\n"
-                    + "  margin: 20px 0;\n"
-                    + "  border: 1px solid #eee;\n"
-                    + "  border-left-width: 5px;\n"
-                    + "  border-radius: 3px;\n"
-                    + "  border-left-color: #1b809e;\n"
-                    + "}\n"
-                    + ".entry:hover {\n"
-                    + "  background-color: #f5f5f5;\n"
-                    + "}\n")
-            )));
-            Element body = new Element("body");
-            html.addContent(body);
+        try (OutputStream output = Files.newOutputStream(file)) {
+            doExport(context, uuids, format, skipUUID, stylePath, resolveXlink, removeXlinkAttribute,
+                skipError, addSchemaLocation, approved, includeAttachments, DEFAULT_THREADS, output);
+        } catch (Exception e) {
+            FileUtils.deleteQuietly(file.toFile());
+            throw e;
+        }
+        return file;
+    }
+
+    /**
+     * Write a MEF2 file in ZIP format to a stream.
+     * <p>
+     * The index summary of the records is loaded with one query for the whole selection. Record
+     * folders are built in parallel in temporary directories and added to the ZIP in the order of
+     * the selection as soon as they are complete, so the first entries are written while the next
+     * records are exported and only a few record folders exist at a time.
+     *
+     * @param uuids   List of records to export.
+     * @param format  {@link Format} to export.
+     * @param includeAttachments If true, include attachments according to the export format and permissions.
+     *                        If false, no attachments are included.
+     * @param threads Number of records exported in parallel, with the threads shared by all exports.
+     * @param output  Stream to write the ZIP to. The stream is not closed.
+     */
+    public static void doExport(ServiceContext context, Set<String> uuids,
+                                Format format, boolean skipUUID, Path stylePath, boolean resolveXlink,
+                                boolean removeXlinkAttribute, boolean skipError, boolean addSchemaLocation,
+                                boolean approved, boolean includeAttachments,
+                                int threads, OutputStream output) throws Exception {
+
+        Map<String, Map<String, Object>> summaries = getSummaries(context, uuids);
+
+        StringBuilder csvBuilder = new StringBuilder("\"schema\";\"uuid\";\"id\";\"type\";\"isHarvested\";\"title\";\"abstract\"\n");
+        Element html = new Element("html").addContent(new Element("head").addContent(Arrays.asList(
+            new Element("title").setText("Export Index"),
+            new Element("link").setAttribute("rel", "stylesheet").
+                setAttribute("href", "https://maxcdn.bootstrapcdn.com/bootstrap/3.3.4/css/bootstrap.min.css"),
+            new Element("style").setText("body {\n"
+                + "  padding-left: 10px;\n"
+                + "}\n"
+                + "p.abstract {\n"
+                + "  font-style: italic;\n"
+                + "}\n"
+                + ".entry {\n"
+                + "  padding: 20px;\n"
+                + "  margin: 20px 0;\n"
+                + "  border: 1px solid #eee;\n"
+                + "  border-left-width: 5px;\n"
+                + "  border-radius: 3px;\n"
+                + "  border-left-color: #1b809e;\n"
+                + "}\n"
+                + ".entry:hover {\n"
+                + "  background-color: #f5f5f5;\n"
+                + "}\n")
+        )));
+        Element body = new Element("body");
+        html.addContent(body);
+
+        int maxPending = 2 * Math.max(1, threads);
+        // Record folders being built, in the order of the selection
+        Deque<RecordFolder> pending = new ArrayDeque<>();
+        // Closing the ZIP releases its deflater, the output stream stays open
+        try (ZipOutputStream zip = new ZipOutputStream(CloseShieldOutputStream.wrap(output), CHARSET)) {
             for (String uuid : uuids) {
                 final String cleanUUID = cleanForCsv(uuid);
 
@@ -131,25 +219,24 @@ class MEF2Exporter {
                 if (approved) {
                     md = context.getBean(MetadataRepository.class).findOneByUuid(uuid);
                 }
+                if (md == null) {
+                    Log.warning(Geonet.MEF, String.format(
+                        "Record '%s' not found. It is not added to the export.", uuid));
+                    continue;
+                }
                 String id = String.valueOf(md.getId());
 
-                int from = 0;
-                SettingInfo si = context.getBean(SettingInfo.class);
-                int size = Integer.parseInt(si.getSelectionMaxRecords());
-
-                final SearchResponse result = searchManager.query("+id:" + id, null, from, size);
-
                 String mdSchema = null, mdTitle = null, mdAbstract = null, isHarvested = null;
-                MetadataType mdType = null;
-
-                List<Hit> hits = result.hits().hits();
-                ObjectMapper objectMapper = new ObjectMapper();
-                final Map<String, Object> source = objectMapper.convertValue(hits.get(0).source(), Map.class);
-                mdSchema = (String) source.get(Geonet.IndexFieldNames.SCHEMA);
-                mdTitle = (String) source.get(Geonet.IndexFieldNames.RESOURCETITLE);
-                mdAbstract = (String) source.get(Geonet.IndexFieldNames.RESOURCEABSTRACT);
-                isHarvested = (String) source.get(Geonet.IndexFieldNames.IS_HARVESTED);
-                mdType = MetadataType.lookup(((String) source.get(Geonet.IndexFieldNames.IS_TEMPLATE)).charAt(0));
+                MetadataType mdType = md.getDataInfo().getType();
+
+                Map<String, Object> source = summaries.get(id);
+                if (source != null) {
+                    mdSchema = (String) source.get(Geonet.IndexFieldNames.SCHEMA);
+                    mdTitle = (String) source.get(Geonet.IndexFieldNames.RESOURCETITLE);
+                    mdAbstract = (String) source.get(Geonet.IndexFieldNames.RESOURCEABSTRACT);
+                    isHarvested = (String) source.get(Geonet.IndexFieldNames.IS_HARVESTED);
+                    mdType = MetadataType.lookup(((String) source.get(Geonet.IndexFieldNames.IS_TEMPLATE)).charAt(0));
+                }
 
                 csvBuilder.append('"').
                     append(cleanForCsv(mdSchema)).append("\";\"").
@@ -183,16 +270,189 @@ class MEF2Exporter {
                     ))
                 )));
 
-                createMetadataFolder(context, md, zipFs, skipUUID, stylePath,
-                    format, resolveXlink, removeXlinkAttribute, addSchemaLocation, includeAttachments);
+                RecordFolder folder = new RecordFolder(Files.createTempDirectory("mef-record-"));
+                pending.add(folder);
+                folder.submit(context, md.getId(), skipUUID, stylePath, format, resolveXlink, removeXlinkAttribute,
+                    addSchemaLocation, includeAttachments);
+
+                // Keep a bounded number of folders ahead of the ZIP
+                if (pending.size() > maxPending) {
+                    addRecordFolder(zip, pending.poll());
+                }
+            }
+            while (!pending.isEmpty()) {
+                addRecordFolder(zip, pending.poll());
+            }
+
+            addEntry(zip, "index.csv", csvBuilder.toString().getBytes(Constants.CHARSET));
+            addEntry(zip, "index.html", Xml.getString(html).getBytes(Constants.CHARSET));
+            zip.finish();
+            zip.flush();
+        } finally {
+            for (RecordFolder folder : pending) {
+                folder.discard();
             }
-            Files.write(zipFs.getPath("/index.csv"), csvBuilder.toString().getBytes(Constants.CHARSET));
-            Files.write(zipFs.getPath("/index.html"), Xml.getString(html).getBytes(Constants.CHARSET));
-        } catch (Exception e) {
-            FileUtils.deleteQuietly(file.toFile());
-            throw e;
         }
-        return file;
+    }
+
+    /**
+     * A record folder built in its own temporary directory by the shared threads.
+     */
+    private static final class RecordFolder {
+        private final Path dir;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private Future<Void> future;
+
+        private RecordFolder(Path dir) {
+            this.dir = dir;
+        }
+
+        /**
+         * Build the folder of a record. Only the id of the record is passed to the thread, which
+         * loads the record in its own read-only transaction with its own copy of the service
+         * context and the security context of the caller (the user privileges are checked for).
+         */
+        private void submit(ServiceContext context, int id, boolean skipUUID, Path stylePath, Format format,
+                            boolean resolveXlink, boolean removeXlinkAttribute, boolean addSchemaLocation,
+                            boolean includeAttachments) {
+            ServiceContext exportContext = createExportContext(context);
+            future = EXECUTOR.submit(new DelegatingSecurityContextCallable<Void>(() -> {
+                if (!started.compareAndSet(false, true)) {
+                    // Discarded before it started
+                    return null;
+                }
+                exportContext.setAsThreadLocal();
+                try {
+                    Exception[] failure = new Exception[1];
+                    TransactionManager.runInTransaction("MEF2 export record folder", exportContext.getApplicationContext(),
+                        TransactionManager.TransactionRequirement.CREATE_NEW,
+                        TransactionManager.CommitBehavior.ONLY_COMMIT_NEWLY_CREATED_TRANSACTIONS, true, transaction -> {
+                            try {
+                                AbstractMetadata metadata = exportContext.getBean(IMetadataUtils.class).findOne(id);
+                                if (metadata == null) {
+                                    throw new MetadataNotFoundEx("id=" + id);
+                                }
+                                createMetadataFolder(exportContext, metadata, dir, skipUUID, stylePath,
+                                    format, resolveXlink, removeXlinkAttribute, addSchemaLocation, includeAttachments);
+                            } catch (Exception e) {
+                                failure[0] = e;
+                            }
+                            return null;
+                        });
+                    if (failure[0] != null) {
+                        throw failure[0];
+                    }
+                    return null;
+                } finally {
+                    ServiceContext.clearAsThreadLocal();
+                    finished.countDown();
+                }
+            }));
+        }
+
+        /**
+         * Stop building the folder and delete it, once the thread building it is done with it.
+         */
+        private void discard() throws InterruptedException {
+            if (future != null) {
+                if (started.compareAndSet(false, true)) {
+                    future.cancel(false);
+                } else {
+                    future.cancel(true);
+                    finished.await(1, TimeUnit.MINUTES);
+                }
+            }
+            FileUtils.deleteQuietly(dir.toFile());
+        }
+    }
+
+    private static ServiceContext createExportContext(ServiceContext context) {
+        ServiceContext exportContext = context.getBean(ServiceManager.class)
+            .createServiceContext(context.getService(), context.getApplicationContext());
+        exportContext.setLanguage(context.getLanguage());
+        exportContext.setUserSession(context.getUserSession());
+        exportContext.setIpAddress(context.getIpAddress());
+        return exportContext;
+    }
+
+    /**
+     * Load the index summary of the records (by record id) with one query per
+     * {@link #SUMMARY_BATCH_SIZE} records.
+     */
+    private static Map<String, Map<String, Object>> getSummaries(ServiceContext context, Set<String> uuids) throws Exception {
+        EsSearchManager searchManager = context.getBean(EsSearchManager.class);
+        Set<String> includedFields = Set.of(
+            Geonet.IndexFieldNames.SCHEMA,
+            Geonet.IndexFieldNames.RESOURCETITLE,
+            Geonet.IndexFieldNames.RESOURCEABSTRACT,
+            Geonet.IndexFieldNames.IS_HARVESTED,
+            Geonet.IndexFieldNames.IS_TEMPLATE);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, Map<String, Object>> summaries = new HashMap<>();
+        List<String> batch = new ArrayList<>(SUMMARY_BATCH_SIZE);
+        Iterator<String> iterator = uuids.iterator();
+        while (iterator.hasNext()) {
+            batch.add(iterator.next());
+            if (batch.size() == SUMMARY_BATCH_SIZE || !iterator.hasNext()) {
+                ObjectNode query = objectMapper.createObjectNode();
+                ArrayNode values = query.putObject("terms").putArray(Geonet.IndexFieldNames.UUID);
+                batch.forEach(values::add);
+
+                // A record may have a draft and an approved copy
+                final SearchResponse result = searchManager.query(query, includedFields, 0, 2 * batch.size());
+                for (Hit hit : (List<Hit>) result.hits().hits()) {
+                    summaries.put(hit.id(), objectMapper.convertValue(hit.source(), Map.class));
+                }
+                batch.clear();
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * Wait for a record folder to be built and add its files to the ZIP.
+     */
+    private static void addRecordFolder(ZipOutputStream zip, RecordFolder folder) throws Exception {
+        Path recordDir = folder.dir;
+        try {
+            try {
+                folder.future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+
+            try (Stream<Path> paths = Files.walk(recordDir)) {
+                for (Path path : (Iterable<Path>) paths.sorted()::iterator) {
+                    if (path.equals(recordDir)) {
+                        continue;
+                    }
+                    String name = StreamSupport.stream(recordDir.relativize(path).spliterator(), false)
+                        .map(Path::toString)
+                        .collect(Collectors.joining("/"));
+                    if (Files.isDirectory(path)) {
+                        zip.putNextEntry(new ZipEntry(name + "/"));
+                    } else {
+                        zip.putNextEntry(new ZipEntry(name));
+                        Files.copy(path, zip);
+                    }
+                    zip.closeEntry();
+                }
+            }
+            zip.flush();
+        } finally {
+            FileUtils.deleteQuietly(recordDir.toFile());
+        }
+    }
+
+    private static void addEntry(ZipOutputStream zip, String name, byte[] data) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(data);
+        zip.closeEntry();
     }
 
     private static String cleanXml(String xmlTextContent) {
@@ -214,17 +474,17 @@ class MEF2Exporter {
      * is based on an ISO profil, the stylesheet /convert/to19139.xsl is used to map to ISO. Both
      * files are included in MEF file. Export relevant information according to format parameter.
      *
-     * @param zipFs Zip file to add new record
+     * @param rootDir Directory to add the record folder to
      * @param includeAttachments If true, include attachments according to the export format and permissions.
      *                        If false, no attachments are included.
      */
     private static void createMetadataFolder(ServiceContext context,
-                                             AbstractMetadata metadata, FileSystem zipFs, boolean skipUUID,
+                                             AbstractMetadata metadata, Path rootDir, boolean skipUUID,
                                              Path stylePath, Format format, boolean resolveXlink,
                                              boolean removeXlinkAttribute,
                                              boolean addSchemaLocation, boolean includeAttachments) throws Exception {
 
-        final Path metadataRootDir = zipFs.getPath(metadata.getUuid());
+        final Path metadataRootDir = rootDir.resolve(metadata.getUuid());
         Files.createDirectories(metadataRootDir);
 
         Pair<AbstractMetadata, String> recordAndMetadataForExport =
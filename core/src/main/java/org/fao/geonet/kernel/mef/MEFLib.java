@@ -144,6 +144,22 @@ public class MEFLib {
 
     // --------------------------------------------------------------------------
 
+    /**
+     * Write a MEF2 file to a stream, exporting {@code threads} records in parallel. The stream is
+     * not closed.
+     */
+    public static void doMEF2Export(ServiceContext context,
+                                    Set<String> uuids, String format, boolean skipUUID, Path stylePath, boolean resolveXlink,
+                                    boolean removeXlinkAttribute, boolean skipError, boolean addSchemaLocation,
+                                    boolean approved, boolean includeAttachments, int threads, OutputStream output)
+        throws Exception {
+        MEF2Exporter.doExport(context, uuids, Format.parse(format),
+            skipUUID, stylePath, resolveXlink, removeXlinkAttribute,
+            skipError, addSchemaLocation, approved, includeAttachments, threads, output);
+    }
+
+    // --------------------------------------------------------------------------
+
     public static void visit(Path mefFile, IVisitor visitor, IMEFVisitor v)
         throws Exception {
         visitor.visit(mefFile, v);
@@ -23,14 +23,20 @@
 
 package org.fao.geonet.kernel.oaipmh;
 
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOptions;
+import co.elastic.clients.elasticsearch._types.SortOrder;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -42,6 +48,7 @@ import static org.fao.geonet.kernel.search.EsSearchManager.FIELDLIST_CORE;
 import org.fao.geonet.utils.Log;
 import org.fao.geonet.utils.Xml;
 import org.fao.oaipmh.exceptions.OaiPmhException;
+import org.fao.oaipmh.util.SearchResult;
 import org.jdom.Element;
 
 public class Lib {
@@ -107,31 +114,47 @@ public class Lib {
         return Xml.transform(root, styleSheet);
     }
 
-    public static List<Integer> search(ServiceContext context, Element params) throws Exception {
+    /**
+     * Search a page of records, sorted by id.
+     *
+     * @param schemas     the schemas of the records to return
+     * @param searchAfter the id of the last record of the previous page, or null for the first page
+     * @param size        the page size
+     * @return the ids of the page, the number of records matching and the value to search the next page after.
+     */
+    public static SearchResult search(ServiceContext context, Element params, List<String> schemas,
+                                      String searchAfter, int size) throws Exception {
         EsSearchManager searchMan = context.getBean(EsSearchManager.class);
 
-        JsonNode esJsonQuery = createSearchQuery(params);
-
-        // Get results count
-        SearchResponse queryResult = searchMan.query(
-            esJsonQuery,
-            FIELDLIST_CORE,
-            0, 1);
+        ObjectNode esJsonQuery = (ObjectNode) createSearchQuery(params);
+        ArrayNode schemaFilter = ((ObjectNode) esJsonQuery.get("bool"))
+            .putArray("filter").addObject()
+            .putObject("terms").putArray(Geonet.IndexFieldNames.SCHEMA);
+        schemas.forEach(schemaFilter::add);
 
-        long total = queryResult.hits().total().value();
+        List<SortOptions> sort = Collections.singletonList(SortOptions.of(
+            so -> so.field(f -> f.field(Geonet.IndexFieldNames.ID).order(SortOrder.Asc))));
+        List<FieldValue> after = searchAfter == null || searchAfter.isEmpty()
+            ? null : Collections.singletonList(FieldValue.of(searchAfter));
 
-        queryResult = searchMan.query(
+        SearchResponse queryResult = searchMan.query(
             esJsonQuery,
             FIELDLIST_CORE,
-            0, (int) total);
+            size, sort, after);
 
-        List<Integer> result;
+        List<Hit> hits = (List<Hit>) queryResult.hits().hits();
 
         ObjectMapper objectMapper = new ObjectMapper();
-        result = ((List<Hit>) queryResult.hits().hits())
+        SearchResult result = new SearchResult(null);
+        result.setTotal(queryResult.hits().total().value());
+        result.setIds(hits
             .stream()
             .map(h -> Integer.parseInt(objectMapper.convertValue(h.source(), Map.class)
-                .get(Geonet.IndexFieldNames.ID).toString())).collect(Collectors.toList());
+                .get(Geonet.IndexFieldNames.ID).toString())).collect(Collectors.toList()));
+        if (!hits.isEmpty()) {
+            List<FieldValue> lastSort = hits.get(hits.size() - 1).sort();
+            result.setSearchAfter(lastSort.get(0).stringValue());
+        }
         return result;
     }
 
@@ -29,12 +29,19 @@ import org.fao.geonet.kernel.setting.SettingManager;
 import org.fao.geonet.utils.Log;
 import org.fao.oaipmh.responses.GeonetworkResumptionToken;
 
-import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.TimeZone;
 
+/**
+ * Bounded cache of the resumption tokens issued, to track their expiration date.
+ * <p>
+ * Tokens only carry the search cursor of a list request (see {@link GeonetworkResumptionToken}),
+ * not the result set, so the cache stays small and a token missing from it can still be resumed.
+ * Tokens are kept in the order they were last stored, the oldest one is evicted when the cache is full.
+ */
 public class ResumptionTokenCache extends Thread {
     public static final int CACHE_EXPUNGE_DELAY = 10 * 1000; // 10 seconds
 
@@ -52,7 +59,7 @@ public class ResumptionTokenCache extends Thread {
         if (Log.isDebugEnabled(Geonet.OAI_HARVESTER))
             Log.debug(Geonet.OAI_HARVESTER, "OAI cache ::init timout:" + getTimeout());
 
-        map = Collections.synchronizedMap(new HashMap<String, GeonetworkResumptionToken>());
+        map = new LinkedHashMap<>();
 
         this.setDaemon(true);
         this.setName("Cached Search Session Expiry Thread");
@@ -112,9 +119,11 @@ public class ResumptionTokenCache extends Thread {
 
         Date now = getUTCTime();
 
-        for (Map.Entry<String, GeonetworkResumptionToken> entry : map.entrySet()) {
+        Iterator<Map.Entry<String, GeonetworkResumptionToken>> iterator = map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, GeonetworkResumptionToken> entry = iterator.next();
             if (entry.getValue().getExpirDate().toDate().getTime() / 1000 < (now.getTime() / 1000)) {
-                map.remove(entry.getKey());
+                iterator.remove();
                 if (Log.isDebugEnabled(Geonet.OAI_HARVESTER))
                     Log.debug(Geonet.OAI_HARVESTER, "OAI cache ::expunge removing:" + entry.getKey());
             }
@@ -123,26 +132,13 @@ public class ResumptionTokenCache extends Thread {
 
     // remove oldest token from cache
     private void removeLast() {
-        if (Log.isDebugEnabled(Geonet.OAI_HARVESTER))
-            Log.debug(Geonet.OAI_HARVESTER, "OAI cache ::removeLast");
-
-
-        long oldest = Long.MAX_VALUE;
-        Object oldkey = "";
-
-        for (Map.Entry<String, GeonetworkResumptionToken> entry : map.entrySet()) {
-
-            if (entry.getValue().getExpirDate().getSeconds() < oldest) {
-                oldkey = entry.getKey();
-                oldest = entry.getValue().getExpirDate().getSeconds();
-            }
+        Iterator<String> iterator = map.keySet().iterator();
+        if (iterator.hasNext()) {
+            String oldkey = iterator.next();
+            iterator.remove();
+            if (Log.isDebugEnabled(Geonet.OAI_HARVESTER))
+                Log.debug(Geonet.OAI_HARVESTER, "OAI cache ::removeLast removing:" + oldkey);
         }
-
-        map.remove(oldkey);
-        if (Log.isDebugEnabled(Geonet.OAI_HARVESTER))
-            Log.debug(Geonet.OAI_HARVESTER, "OAI cache ::removeLast removing:" + oldkey);
-
-
     }
 
     public synchronized GeonetworkResumptionToken getResumptionToken(String str) {
@@ -153,7 +149,9 @@ public class ResumptionTokenCache extends Thread {
         if (Log.isDebugEnabled(Geonet.OAI_HARVESTER))
             Log.debug(Geonet.OAI_HARVESTER, "OAI cache ::store " + resumptionToken.getKey() + " size: " + map.size());
 
-        if (map.size() == getCachemaxsize()) {
+        // store the token again as the most recent one
+        map.remove(resumptionToken.getKey());
+        while (!map.isEmpty() && map.size() >= getCachemaxsize()) {
             removeLast();
         }
 
@@ -161,6 +159,10 @@ public class ResumptionTokenCache extends Thread {
         map.put(resumptionToken.getKey(), resumptionToken);
     }
 
+    public synchronized void removeResumptionToken(String str) {
+        map.remove(str);
+    }
+
     public void stopRunning() {
         synchronized (stopper) {
             this.running = false;
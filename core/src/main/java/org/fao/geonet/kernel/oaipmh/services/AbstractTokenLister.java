@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2001-2023 Food and Agriculture Organization of the
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
  * United Nations (FAO-UN), United Nations World Food Programme (WFP)
  * and United Nations Environment Programme (UNEP)
  *
@@ -34,7 +34,6 @@ import org.fao.geonet.kernel.setting.SettingManager;
 import org.fao.geonet.kernel.setting.Settings;
 import org.fao.geonet.utils.Log;
 import org.fao.oaipmh.exceptions.BadArgumentException;
-import org.fao.oaipmh.exceptions.BadResumptionTokenException;
 import org.fao.oaipmh.exceptions.NoRecordsMatchException;
 import org.fao.oaipmh.requests.AbstractRequest;
 import org.fao.oaipmh.requests.TokenListRequest;
@@ -114,93 +113,102 @@ public abstract class AbstractTokenLister implements OaiPmhService {
 
         TokenListRequest req = (TokenListRequest) request;
 
-        SearchResult result;
-
         String strToken = req.getResumptionToken();
-        GeonetworkResumptionToken token = null;
-
-
-        int pos = 0;
+        GeonetworkResumptionToken token = new GeonetworkResumptionToken(req);
 
         if (strToken == null) {
             if (Log.isDebugEnabled(Geonet.OAI_HARVESTER))
                 Log.debug(Geonet.OAI_HARVESTER, "OAI " + this.getClass().getSimpleName() + " : new request (no resumptionToken)");
-            Element params = new Element("request");
 
             ISODate from = req.getFrom();
             ISODate until = req.getUntil();
-            String set = req.getSet();
-            String prefix = req.getMetadataPrefix();
-
-            if (from != null) {
-                String sFrom = from.isDateOnly() ? from.getDateAsString() : from.toString();
-                params.addContent(new Element(getDateFrom()).setText(sFrom));
-            }
-
-            if (until != null) {
-                String sTo = until.isDateOnly() ? until.getDateAsString() : until.toString();
-                params.addContent(new Element(getDateUntil()).setText(sTo));
-            }
 
             if (from != null && until != null && from.timeDifferenceInSeconds(until) > 0)
                 throw new BadArgumentException("From is greater than until");
+        } else {
+            // The token carries the search cursor, a token no longer in the cache
+            // (expunged, issued before a restart or by another node) can be resumed as well.
+            if (Log.isDebugEnabled(Geonet.OAI_HARVESTER))
+                Log.debug(Geonet.OAI_HARVESTER, "OAI " + this.getClass().getSimpleName() + " : using ResumptionToken :" + token.getKey()
+                    + (cache.getResumptionToken(token.getKey()) == null ? " (not cached)" : ""));
+        }
 
-            if (set != null)
-                params.addContent(new Element("category").setText(set));
-
-            params.addContent(new Element("_schema").setText(prefix));
+        String prefix = token.getPrefix();
+        Element params = buildSearchParams(token);
 
-            // now do the search
-            result = new SearchResult(prefix);
-            if (schemaMan.existsSchema(prefix)) {
-                result.setIds(Lib.search(context, params));
-            } else {
-                // collect up all the schemas that we can convert to create prefix,
-                // search ids and add to the result set
-                List<String> schemas = getSchemasThatCanConvertTo(prefix);
-                for (String schema : schemas) {
-                    params.removeChild("_schema");
-                    params.addContent(new Element("_schema").setText(schema));
-                    result.addIds(Lib.search(context, (Element) params.clone()));
-                }
-                if (schemas.isEmpty()) result.setIds(new ArrayList<>());
+        // the schema of the prefix and all the schemas that can convert to it
+        List<String> schemas = new ArrayList<>();
+        if (schemaMan.existsSchema(prefix)) {
+            schemas.add(prefix);
+        }
+        for (String schema : getSchemasThatCanConvertTo(prefix)) {
+            if (!schemas.contains(schema)) {
+                schemas.add(schema);
             }
+        }
+        if (schemas.isEmpty()) {
+            throw new NoRecordsMatchException("No results (or no conversion available for prefix '" + prefix + "')");
+        }
 
-            if (result.getIds().isEmpty()) {
-                throw new NoRecordsMatchException("No results (or no conversion available for prefix '" + req.getMetadataPrefix() + "')");
+        // now do the search, page by page until one has records to return
+        int maxRecords = getMaxRecords();
+        int pos = token.getPos();
+        String searchAfter = token.getSearchAfter();
+        SearchResult result;
+        ListResponse res;
+        boolean hasMore;
+        do {
+            result = Lib.search(context, params, schemas, searchAfter, maxRecords);
+            result.setPrefix(prefix);
+
+            if (strToken == null && result.getTotal() == 0) {
+                throw new NoRecordsMatchException("No results (or no conversion available for prefix '" + prefix + "')");
             }
 
-            // we only need a new token if the result set is big enough
-            if (result.getIds().size() > getMaxRecords()) {
-                token = new GeonetworkResumptionToken(req, result);
-                cache.storeResumptionToken(token);
+            res = processRequest(req, 0, result, context);
+            pos = pos + result.getIds().size();
+            if (result.getSearchAfter() != null) {
+                searchAfter = result.getSearchAfter();
             }
+            hasMore = result.getIds().size() == maxRecords && pos < result.getTotal();
+        } while (res.getSize() == 0 && hasMore);
 
-        } else {
-            token = cache.getResumptionToken(GeonetworkResumptionToken.buildKey(req));
-            if (Log.isDebugEnabled(Geonet.OAI_HARVESTER))
-                Log.debug(Geonet.OAI_HARVESTER, "OAI ListRecords : using ResumptionToken :" + GeonetworkResumptionToken.buildKey(req));
+        if (strToken == null && res.getSize() == 0)
+            throw new NoRecordsMatchException("No results");
 
-            if (token == null)
-                throw new BadResumptionTokenException("No session for token : " + GeonetworkResumptionToken.buildKey(req));
+        // we only need a token if the result set is big enough
+        if (strToken != null || hasMore) {
+            token.setupToken(pos, searchAfter, hasMore, result.getTotal());
+            if (hasMore) {
+                cache.storeResumptionToken(token);
+            } else {
+                cache.removeResumptionToken(token.getKey());
+            }
+            res.setResumptionToken(token);
+        }
 
-            result = token.getRes();
+        return res;
 
-            pos = GeonetworkResumptionToken.getPos(req);
-        }
 
-        ListResponse res = processRequest(req, pos, result, context);
-        pos = pos + res.getSize();
+    }
 
-        if (token == null && res.getSize() == 0)
-            throw new NoRecordsMatchException("No results");
+    /**
+     * Build the search parameters from the request arguments kept in the token.
+     */
+    private Element buildSearchParams(GeonetworkResumptionToken token) {
+        Element params = new Element("request");
 
-        if (token != null) token.setupToken(pos);
-        res.setResumptionToken(token);
+        if (!token.getFrom().isEmpty())
+            params.addContent(new Element(getDateFrom()).setText(token.getFrom()));
 
-        return res;
+        if (!token.getUntil().isEmpty())
+            params.addContent(new Element(getDateUntil()).setText(token.getUntil()));
 
+        if (!token.getSet().isEmpty())
+            params.addContent(new Element("category").setText(token.getSet()));
 
+        params.addContent(new Element("_schema").setText(token.getPrefix()));
+        return params;
     }
 
     //---------------------------------------------------------------------------
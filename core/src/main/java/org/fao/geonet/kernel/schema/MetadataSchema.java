@@ -23,6 +23,7 @@
 
 package org.fao.geonet.kernel.schema;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
@@ -30,6 +31,8 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringUtils;
 import org.fao.geonet.api.exception.ResourceNotFoundException;
 import org.fao.geonet.constants.Geonet;
@@ -51,16 +54,21 @@ import org.jdom.Namespace;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -395,6 +403,18 @@ public class MetadataSchema {
     }
 
     public void buildchematronRules(Path basePath) {
+        buildchematronRules(basePath, null);
+    }
+
+    /**
+     * Compile the schematron rules of the schema to XSL.
+     *
+     * @param compiledRulesCacheDir Directory where the compiled rules are kept, by a hash of the content
+     *                              of the schematron directory of the schema and of the schematron
+     *                              compilation stylesheets. An unchanged rule is copied from there instead
+     *                              of being compiled again. If null, rules are always compiled.
+     */
+    public void buildchematronRules(Path basePath, Path compiledRulesCacheDir) {
         Path schematronResourceDir = basePath.resolve("WEB-INF").resolve("classes").resolve(SCHEMATRON_DIR);
         Path schemaSchematronDir = schemaDir.resolve(SCHEMATRON_DIR);
         Path schematronCompilationFile = schematronResourceDir.resolve("iso_svrl_for_xslt2.xsl");
@@ -407,6 +427,18 @@ public class MetadataSchema {
         }
 
         if (Files.exists(schemaSchematronDir)) {
+            String contentHash = null;
+            if (compiledRulesCacheDir != null) {
+                try {
+                    contentHash = getSchematronContentHash(schematronResourceDir, schemaSchematronDir);
+                    Files.createDirectories(compiledRulesCacheDir);
+                } catch (IOException e) {
+                    Log.warning(Geonet.SCHEMA_MANAGER, "     Compiled schematron rules cache not available for schema "
+                        + schemaName + ". Error is " + e.getMessage());
+                    contentHash = null;
+                }
+            }
+
             try (DirectoryStream<Path> paths = Files.newDirectoryStream(schemaSchematronDir, "*.sch")) {
                 for (Path rule : paths) {
                     if (Log.isDebugEnabled(Geonet.SCHEMA_MANAGER)) {
@@ -417,11 +449,29 @@ public class MetadataSchema {
                     final String xslPath = rule.toAbsolutePath().toString().replace(SCH_FILE_EXTENSION, XSL_FILE_EXTENSION);
                     Path schematronXslFilePath = rule.getFileSystem().getPath(xslPath);
 
+                    Path cachedXslFilePath = null;
+                    if (contentHash != null) {
+                        String ruleName = rule.getFileName().toString().replace(SCH_FILE_EXTENSION, "");
+                        cachedXslFilePath = compiledRulesCacheDir.resolve(
+                            schemaName + "-" + ruleName + "-" + contentHash + XSL_FILE_EXTENSION);
+                        if (Files.exists(cachedXslFilePath)) {
+                            try {
+                                Files.copy(cachedXslFilePath, schematronXslFilePath, StandardCopyOption.REPLACE_EXISTING);
+                                continue;
+                            } catch (IOException e) {
+                                Log.warning(Geonet.SCHEMA_MANAGER, "     Failed to copy compiled schematron rule "
+                                    + cachedXslFilePath + ". Error is " + e.getMessage());
+                            }
+                        }
+                    }
+
+                    boolean compiled = false;
                     try (OutputStream schematronXsl = Files.newOutputStream(schematronXslFilePath)) {
                         Element schematronRule = Xml.loadFile(schemaSchematronDir.resolve(rule));
                         // Expand schematron abstract rules
                         Element schematronExpandXml = Xml.transform(schematronRule, schematronExpandFile);
                         Xml.transform(schematronExpandXml, schematronCompilationFile, schematronXsl);
+                        compiled = true;
                     } catch (FileNotFoundException e) {
                         Log.error(Geonet.SCHEMA_MANAGER, "     Schematron rule file not found " + schematronXslFilePath
                             + ". Error is " + e.getMessage(), e);
@@ -430,6 +480,9 @@ public class MetadataSchema {
                             + ". Error is " + e.getMessage(), e);
                     }
 
+                    if (compiled && cachedXslFilePath != null) {
+                        cacheCompiledRule(schematronXslFilePath, cachedXslFilePath);
+                    }
                 }
             } catch (IOException e) {
                 Log.error(Geonet.SCHEMA_MANAGER, "     Schematron rule file not found " + schemaSchematronDir
@@ -438,13 +491,84 @@ public class MetadataSchema {
         }
     }
 
+    /**
+     * @return the SHA-256 of all the files, including subdirectories and XSL helpers, of the
+     * schematron compilation stylesheets and of the schematron directory of the schema, except the
+     * rules compiled in the schema directory.
+     */
+    @VisibleForTesting
+    static String getSchematronContentHash(Path schematronResourceDir, Path schemaSchematronDir) throws IOException {
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        for (Path dir : new Path[]{schematronResourceDir, schemaSchematronDir}) {
+            List<Path> files;
+            try (Stream<Path> paths = Files.walk(dir)) {
+                files = paths
+                    .filter(Files::isRegularFile)
+                    .filter(p -> dir == schematronResourceDir || !isCompiledRule(dir, p))
+                    .sorted()
+                    .collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                digest.update(dir.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                try (InputStream in = Files.newInputStream(file)) {
+                    DigestUtils.updateDigest(digest, in);
+                }
+            }
+        }
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    /**
+     * @return true if the file is the XSL compiled from a rule of the schematron directory.
+     */
+    private static boolean isCompiledRule(Path schemaSchematronDir, Path file) {
+        String fileName = file.getFileName().toString();
+        return file.getParent().equals(schemaSchematronDir)
+            && fileName.endsWith(XSL_FILE_EXTENSION)
+            && Files.exists(file.resolveSibling(
+                fileName.substring(0, fileName.length() - XSL_FILE_EXTENSION.length()) + SCH_FILE_EXTENSION));
+    }
+
+    /**
+     * Copy a compiled rule to the cache and remove the entries of the previous versions of the rule.
+     */
+    private static void cacheCompiledRule(Path compiledRule, Path cachedRule) {
+        String fileName = cachedRule.getFileName().toString();
+        String prefix = fileName.substring(0, fileName.length() - 64 - XSL_FILE_EXTENSION.length());
+        try (DirectoryStream<Path> previous = Files.newDirectoryStream(cachedRule.getParent(),
+            entry -> {
+                String name = entry.getFileName().toString();
+                return name.startsWith(prefix) && name.substring(prefix.length()).matches("[0-9a-f]{64}\\.xsl");
+            })) {
+            for (Path entry : previous) {
+                Files.deleteIfExists(entry);
+            }
+
+            Path tmp = Files.createTempFile(cachedRule.getParent(), prefix, ".tmp");
+            Files.copy(compiledRule, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, cachedRule, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Log.warning(Geonet.SCHEMA_MANAGER, "     Failed to cache compiled schematron rule "
+                + compiledRule + ". Error is " + e.getMessage());
+        }
+    }
+
     /**
      * Compile and register all schematron rules available for current schema. Schematron rules
      * files are in schema schematron directory and start with "schematron-rules" prefix.
      */
     public void loadSchematronRules(Path basePath) {
+        loadSchematronRules(basePath, null);
+    }
+
+    /**
+     * Compile the schematron rules of the schema and register them in the database.
+     *
+     * @param compiledRulesCacheDir See {@link #buildchematronRules(Path, Path)}.
+     */
+    public void loadSchematronRules(Path basePath, Path compiledRulesCacheDir) {
         // Compile schema schematron rules
-        buildchematronRules(basePath);
+        buildchematronRules(basePath, compiledRulesCacheDir);
 
         List<String> saSchemas = Lists.newArrayList();
 
@@ -23,17 +23,24 @@
 
 package org.fao.geonet.kernel.search;
 
+import co.elastic.clients.elasticsearch._helpers.bulk.BulkIngester;
+import co.elastic.clients.elasticsearch._helpers.bulk.BulkListener;
 import co.elastic.clients.elasticsearch._types.ElasticsearchException;
 import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.Refresh;
 import co.elastic.clients.elasticsearch._types.SortOptions;
 import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
 import co.elastic.clients.elasticsearch.core.*;
 import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
 import co.elastic.clients.elasticsearch.core.bulk.UpdateOperation;
 import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
 import co.elastic.clients.elasticsearch.indices.ExistsRequest;
 import co.elastic.clients.elasticsearch.indices.*;
+import co.elastic.clients.json.JsonData;
 import co.elastic.clients.transport.endpoints.BooleanResponse;
+import co.elastic.clients.util.BinaryData;
+import co.elastic.clients.util.ContentType;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -42,6 +49,8 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
+import jeeves.monitor.MonitorManager;
+import jeeves.monitor.timer.IndexingBulkRequestTimer;
 import jeeves.server.UserSession;
 import jeeves.server.context.ServiceContext;
 import org.apache.commons.lang.StringUtils;
@@ -57,6 +66,7 @@ import org.fao.geonet.kernel.search.index.OverviewIndexFieldUpdater;
 import org.fao.geonet.kernel.setting.SettingInfo;
 import org.fao.geonet.repository.SourceRepository;
 import org.fao.geonet.repository.specification.MetadataSpecs;
+import org.fao.geonet.utils.SaxonDocument;
 import org.fao.geonet.utils.Xml;
 import org.jdom.Element;
 import org.slf4j.Logger;
@@ -64,14 +74,26 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
+import javax.annotation.PreDestroy;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 
 import static org.fao.geonet.constants.Geonet.IndexFieldNames.IS_TEMPLATE;
@@ -177,11 +199,60 @@ public class EsSearchManager implements ISearchManager {
     @Autowired
     private OverviewIndexFieldUpdater overviewFieldUpdater;
 
+    @Autowired(required = false)
+    private MonitorManager monitorManager;
+
+    /**
+     * Maximum number of documents in a bulk request.
+     */
+    @Value("${es.index.records.bulk.maxOperations:200}")
     private int commitInterval = 200;
 
-    // public for test, to be private or protected
-    public Map<String, String> listOfDocumentsToIndex =
-        Collections.synchronizedMap(new HashMap<>());
+    /**
+     * Maximum size of a bulk request in bytes.
+     */
+    @Value("${es.index.records.bulk.maxSize:5242880}")
+    private long bulkMaxSize = 5 * 1024 * 1024;
+
+    /**
+     * Maximum number of bulk requests sent to the index at the same time.
+     * With more than one request, a new version of a record waits until
+     * the previous one is indexed so that updates are applied in order.
+     */
+    @Value("${es.index.records.bulk.maxConcurrentRequests:1}")
+    private int bulkMaxConcurrentRequests = 1;
+
+    /**
+     * Number of seconds after which documents waiting in a non full bulk request
+     * are sent. 0 to only send full requests or on {@link #forceIndexChanges()}.
+     */
+    @Value("${es.index.records.bulk.flushInterval:5}")
+    private int bulkFlushInterval = 5;
+
+    /**
+     * Maximum number of documents waiting to be indexed or post processed.
+     * Indexing threads block once it is reached.
+     */
+    @Value("${es.index.records.bulk.queueSize:2000}")
+    private int bulkQueueSize = 2000;
+
+    private BulkIngester<PendingDocument> bulkIngester;
+    private ExecutorService bulkResponseExecutor;
+    private Semaphore bulkQueuePermits;
+    private final AtomicLong documentSequence = new AtomicLong();
+    /**
+     * Sequence numbers of documents sent to the bulk ingester which are not yet indexed.
+     */
+    private final ConcurrentSkipListSet<Long> pendingDocuments = new ConcurrentSkipListSet<>();
+    /**
+     * Last document sent to the bulk ingester for each record.
+     */
+    private final Map<String, PendingDocument> pendingDocumentsById = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingDocumentsCount = new AtomicInteger();
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+    private final Map<Long, Long> bulkRequestStartTimes = new ConcurrentHashMap<>();
+    private volatile long lastBulkRequestDuration = 0;
+
     private Map<String, String> indexList;
 
     private Path getXSLTForIndexing(Path schemaDir, MetadataType metadataType) {
@@ -198,49 +269,28 @@ public class EsSearchManager implements ISearchManager {
         return xsltForIndexing;
     }
 
-    private void addMDFields(Element doc, Path schemaDir,
-                             Element metadata, MetadataType metadataType,
+    private void addMDFields(IndexDocumentBuilder doc, Path schemaDir,
+                             SaxonDocument metadata, MetadataType metadataType,
                              IndexingMode indexingMode) {
         final Path styleSheet = getXSLTForIndexing(schemaDir, metadataType);
         try {
             Map<String, Object> indexParams = new HashMap<>();
             indexParams.put("fastIndexMode", indexingMode.equals(IndexingMode.core));
 
-            Element fields = Xml.transform(metadata, styleSheet, indexParams);
             /* Generates something like that:
             <doc>
               <field name="toto">Contenu</field>
             </doc>*/
-            for (Element field : (List<Element>) fields.getChildren()) {
-                doc.addContent((Element) field.clone());
-            }
+            Xml.transform(metadata, styleSheet, doc.asResult(), indexParams);
         } catch (Exception e) {
             LOGGER.error("Indexing stylesheet contains errors: {} \n  Marking the metadata as _indexingError=1 in index", e.getMessage());
-            doc.addContent(new Element(INDEXING_ERROR_FIELD).setText("true"));
-            doc.addContent(createIndexingErrorMsgElement("indexingErrorMsg-indexingStyleSheetError", "error",
-                Map.of("message", e.getMessage())));
-        }
-    }
-
-    private void addMoreFields(Element doc, Multimap<String, Object> fields) {
-        fields.entries().forEach(e -> doc.addContent(getNewElement(e.getKey(), e.getValue())
-            .setText(String.valueOf(e.getValue()))));
-    }
-
-    /**
-     * Create a new element with the key as name. If the object is a JsonNode, we set the type attribute to object
-     * Added the type as object will cause it to keep the json structure
-     * @param key the name of the element
-     * @param obj object to check if it is a JsonNode
-     * @return new Element with the key as name
-     */
-    // If the object is a JsonNode, we set the type attribute to object
-    private Element getNewElement(String key, Object obj) {
-        Element element =  new Element(key);
-        if (obj instanceof JsonNode) {
-            element.setAttribute("type", "object");
+            // Discard fields produced before the error
+            doc.clear();
+            doc.addField(INDEXING_ERROR_FIELD, false, "true");
+            doc.addField(INDEXING_ERROR_MSG, true,
+                createIndexingErrorMsgObject("indexingErrorMsg-indexingStyleSheetError", "error",
+                    Map.of("message", String.valueOf(e.getMessage()))).toString());
         }
-        return element;
     }
 
     public Element makeField(String name, String value) {
@@ -340,7 +390,18 @@ public class EsSearchManager implements ISearchManager {
     }
 
     @Override
+    @PreDestroy
     public void end() {
+        synchronized (this) {
+            if (bulkIngester != null) {
+                bulkIngester.close();
+                bulkIngester = null;
+            }
+            if (bulkResponseExecutor != null) {
+                bulkResponseExecutor.shutdown();
+                bulkResponseExecutor = null;
+            }
+        }
     }
 
     public UpdateResponse updateFields(String id, Map<String, Object> fields) throws IOException {
@@ -400,6 +461,41 @@ public class EsSearchManager implements ISearchManager {
         return client.getClient().bulk(bulkRequest);
     }
 
+    /**
+     * Run a painless script on a set of existing documents in one bulk request.
+     * Documents are not created if they do not exist anymore (eg. a record deleted
+     * in the meantime): the item fails with a document_missing_exception.
+     *
+     * @param paramsById The script parameters, by document id.
+     */
+    public BulkResponse updateByScript(String scriptSource, Map<String, Map<String, Object>> paramsById) throws IOException {
+        List<BulkOperation> bulkOperationList = new ArrayList<>();
+        paramsById.forEach((id, params) -> {
+            Map<String, JsonData> scriptParams = new HashMap<>();
+            params.forEach((k, v) -> scriptParams.put(k, JsonData.of(v)));
+
+            UpdateOperation updateOperation = UpdateOperation.of(
+                b -> b.id(id)
+                    .index(defaultIndex)
+                    .action(action -> action
+                        .script(script -> script
+                            .source(scriptSource)
+                            .lang("painless")
+                            .params(scriptParams)
+                        )
+                    )
+            );
+            bulkOperationList.add(BulkOperation.of(b -> b.update(updateOperation)));
+        });
+
+        BulkRequest bulkRequest = BulkRequest.of(
+            b -> b.index(defaultIndex)
+                .operations(bulkOperationList)
+        );
+
+        return client.getClient().bulk(bulkRequest);
+    }
+
     public void updateFieldsAsynch(String id, Map<String, Object> fields) {
         fields.put(Geonet.IndexFieldNames.INDEXING_DATE, new Date());
 
@@ -441,29 +537,39 @@ public class EsSearchManager implements ISearchManager {
                       MetadataType metadataType,
                       boolean forceRefreshReaders,
                       IndexingMode indexingMode) throws Exception {
+        index(schemaDir, schemaDir != null ? SaxonDocument.of(metadata) : null, id, dbFields,
+            metadataType, forceRefreshReaders, indexingMode);
+    }
+
+    /**
+     * Indexes a metadata record already parsed in the Saxon tree model, which the index
+     * stylesheet reads without any conversion.
+     *
+     * @see #index(Path, Element, String, Multimap, MetadataType, boolean, IndexingMode)
+     */
+    public void index(Path schemaDir, SaxonDocument metadata, String id,
+                      Multimap<String, Object> dbFields,
+                      MetadataType metadataType,
+                      boolean forceRefreshReaders,
+                      IndexingMode indexingMode) throws Exception {
 
-        Element docs = new Element("doc");
+        IndexDocumentBuilder doc = new IndexDocumentBuilder();
         if (schemaDir != null) {
-            addMDFields(docs, schemaDir, metadata, metadataType, indexingMode);
+            addMDFields(doc, schemaDir, metadata, metadataType, indexingMode);
         }
-        addMoreFields(docs, dbFields);
-
-        ObjectMapper mapper = new ObjectMapper();
-        ObjectNode doc = documentToJson(docs);
+        doc.addFields(dbFields);
 
         // ES does not allow a _source field
-        String catalog = doc.get("source").asText();
-        doc.remove("source");
+        String catalog = doc.removeField("source");
         if (StringUtils.isNotEmpty(catalog)) {
-            doc.put("sourceCatalogue", catalog);
+            doc.setField("sourceCatalogue", catalog);
         }
 
-        JsonNode errors = doc.get(INDEXING_ERROR_MSG);
-        if (errors != null) {
-            doc.put(INDEXING_ERROR_FIELD, "true");
+        if (doc.hasField(INDEXING_ERROR_MSG)) {
+            doc.setField(INDEXING_ERROR_FIELD, "true");
         }
 
-        String jsonDocument = mapper.writeValueAsString(doc);
+        String jsonDocument = doc.toJson();
 
         if (forceRefreshReaders) {
             Map<String, String> document = new HashMap<>();
@@ -472,32 +578,228 @@ public class EsSearchManager implements ISearchManager {
             checkIndexResponse(bulkItemResponses, document);
             overviewFieldUpdater.process(id);
         } else {
-            listOfDocumentsToIndex.put(id, jsonDocument);
-            if (listOfDocumentsToIndex.size() == commitInterval) {
-                sendDocumentsToIndex();
+            addToBulk(id, jsonDocument);
+        }
+    }
+
+    /**
+     * Add a document to the bulk ingester which sends it to the index asynchronously,
+     * when the bulk request is full (by number of documents or size) or
+     * after the flush interval.
+     * <p>
+     * Blocks when the queue of documents waiting to be indexed is full
+     * or when the maximum number of concurrent bulk requests is reached.
+     * When bulk requests are sent concurrently, also blocks until a previous
+     * version of the record is indexed.
+     */
+    private void addToBulk(String id, String jsonDocument) throws IOException, InterruptedException {
+        BulkIngester<PendingDocument> ingester = getBulkIngester();
+        PendingDocument pendingDocument = new PendingDocument(
+            documentSequence.incrementAndGet(), id, jsonDocument);
+        // Registered before waiting for a place in the queue so that
+        // forceIndexChanges also waits for the blocked documents.
+        pendingDocuments.add(pendingDocument.sequence);
+        pendingDocumentsCount.incrementAndGet();
+        try {
+            bulkQueuePermits.acquire();
+        } catch (InterruptedException e) {
+            documentsRemoved(Collections.singletonList(pendingDocument));
+            throw e;
+        }
+        try {
+            PendingDocument previous = pendingDocumentsById.put(id, pendingDocument);
+            if (previous != null && bulkMaxConcurrentRequests > 1) {
+                // The previous version may be in a request still in flight
+                waitForDocuments(ingester, () -> pendingDocuments.contains(previous.sequence));
             }
+            BinaryData data = BinaryData.of(
+                jsonDocument.getBytes(StandardCharsets.UTF_8),
+                ContentType.APPLICATION_JSON);
+            ingester.add(b -> b.index(io -> io
+                .index(defaultIndex)
+                .id(id)
+                .document(data)), pendingDocument);
+        } catch (RuntimeException | InterruptedException e) {
+            documentsProcessed(Collections.singletonList(pendingDocument));
+            throw e;
         }
     }
 
+    private synchronized BulkIngester<PendingDocument> getBulkIngester() throws IOException {
+        if (bulkIngester == null) {
+            if (client.getAsynchClient() == null) {
+                throw new IOException("Index not yet activated.");
+            }
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("IndexBulkResponse-");
+            threadFactory.setDaemon(true);
+            bulkResponseExecutor = Executors.newSingleThreadExecutor(threadFactory);
+            bulkQueuePermits = new Semaphore(Math.max(commitInterval, bulkQueueSize));
+
+            bulkIngester = BulkIngester.of(b -> {
+                b.client(client.getAsynchClient())
+                    .listener(new RecordsBulkListener())
+                    .globalSettings(s -> s.refresh(Refresh.True))
+                    .maxOperations(commitInterval)
+                    .maxSize(bulkMaxSize)
+                    .maxConcurrentRequests(Math.max(1, bulkMaxConcurrentRequests));
+                if (bulkFlushInterval > 0) {
+                    b.flushInterval(bulkFlushInterval, TimeUnit.SECONDS);
+                }
+                return b;
+            });
+        }
+        return bulkIngester;
+    }
+
+    /**
+     * Called once documents of a bulk request are indexed and post processed
+     * (or failed) to release their place in the queue.
+     */
+    private void documentsProcessed(List<PendingDocument> documents) {
+        bulkQueuePermits.release(documents.size());
+        documentsRemoved(documents);
+    }
+
+    private void documentsRemoved(List<PendingDocument> documents) {
+        documents.forEach(d -> {
+            pendingDocuments.remove(d.sequence);
+            pendingDocumentsById.remove(d.id, d);
+        });
+        pendingDocumentsCount.addAndGet(-documents.size());
+        synchronized (pendingDocuments) {
+            pendingDocuments.notifyAll();
+        }
+    }
+
+    /**
+     * A document waiting in the bulk ingester.
+     */
+    private static final class PendingDocument {
+        private final long sequence;
+        private final String id;
+        private final String json;
+
+        private PendingDocument(long sequence, String id, String json) {
+            this.sequence = sequence;
+            this.id = id;
+            this.json = json;
+        }
+    }
+
+    /**
+     * Bulk responses are received on the HTTP client threads. Error reporting
+     * queries the index, so it is delegated to the bulk response executor, which
+     * also queues the indexed records for the overview processing.
+     */
+    private class RecordsBulkListener implements BulkListener<PendingDocument> {
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request, List<PendingDocument> contexts) {
+            inFlightRequests.incrementAndGet();
+            bulkRequestStartTimes.put(executionId, System.nanoTime());
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, List<PendingDocument> contexts, BulkResponse response) {
+            bulkRequestCompleted(executionId);
+            bulkResponseExecutor.execute(() -> {
+                try {
+                    Map<String, String> documents = new HashMap<>(contexts.size());
+                    contexts.forEach(d -> documents.put(d.id, d.json));
+                    checkIndexResponse(response, documents);
+                    documents.keySet().forEach(uuid -> overviewFieldUpdater.process(uuid));
+                } catch (Exception e) {
+                    LOGGER.error(
+                        "An error occurred while processing the index response for {} documents. Error is {}.",
+                        contexts.size(), e.getMessage());
+                } finally {
+                    documentsProcessed(contexts);
+                }
+            });
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, List<PendingDocument> contexts, Throwable failure) {
+            bulkRequestCompleted(executionId);
+            LOGGER.error(
+                "An error occurred while indexing {} documents in current indexing list. Error is {}.",
+                contexts.size(), failure.getMessage());
+            documentsProcessed(contexts);
+        }
+
+        private void bulkRequestCompleted(long executionId) {
+            inFlightRequests.decrementAndGet();
+            Long start = bulkRequestStartTimes.remove(executionId);
+            if (start != null) {
+                long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                lastBulkRequestDuration = duration;
+                if (monitorManager != null) {
+                    monitorManager.getTimer(IndexingBulkRequestTimer.class)
+                        .update(duration, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Send the documents waiting in the bulk ingester and wait until
+     * all documents added before this call are indexed.
+     */
     private void sendDocumentsToIndex() {
-        Map<String, String> documents = new HashMap<>(listOfDocumentsToIndex);
-        listOfDocumentsToIndex.clear();
-        if (!documents.isEmpty()) {
-            try {
-                final BulkResponse bulkItemResponses = client
-                    .bulkRequest(defaultIndex, documents);
-                checkIndexResponse(bulkItemResponses, documents);
-            } catch (Exception e) {
-                LOGGER.error(
-                    "An error occurred while indexing {} documents in current indexing list. Error is {}.",
-                    listOfDocumentsToIndex.size(), e.getMessage());
-            } finally {
-                // TODO: Trigger this async ?
-                documents.keySet().forEach(uuid -> overviewFieldUpdater.process(uuid));
+        BulkIngester<PendingDocument> ingester;
+        synchronized (this) {
+            ingester = bulkIngester;
+        }
+        if (ingester == null) {
+            return;
+        }
+        try {
+            long lastSequence = documentSequence.get();
+            waitForDocuments(ingester, () -> {
+                Long first = pendingDocuments.ceiling(Long.MIN_VALUE);
+                return first != null && first <= lastSequence;
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Flush the ingester and wait while documents are pending. Documents of
+     * threads waiting for a place in the queue are added to the ingester later,
+     * so it is flushed again each time documents are processed.
+     */
+    private void waitForDocuments(BulkIngester<PendingDocument> ingester, BooleanSupplier pending) throws InterruptedException {
+        while (pending.getAsBoolean()) {
+            ingester.flush();
+            synchronized (pendingDocuments) {
+                if (pending.getAsBoolean()) {
+                    pendingDocuments.wait(1000);
+                }
             }
         }
     }
 
+    /**
+     * @return the number of documents waiting to be indexed.
+     */
+    public int getPendingDocuments() {
+        return pendingDocumentsCount.get();
+    }
+
+    /**
+     * @return the number of bulk requests sent to the index and not yet answered.
+     */
+    public int getInFlightRequests() {
+        return inFlightRequests.get();
+    }
+
+    /**
+     * @return the duration in milliseconds of the last bulk request.
+     */
+    public long getLastBulkRequestDuration() {
+        return lastBulkRequestDuration;
+    }
+
     private void checkIndexResponse(BulkResponse bulkItemResponses,
                                     Map<String, String> documents) throws IOException {
         if (bulkItemResponses.errors()) {
@@ -558,9 +860,9 @@ public class EsSearchManager implements ISearchManager {
         }
     }
 
-    private static ImmutableSet<String> booleanFields;
-    private static ImmutableSet<String> arrayFields;
-    private static ImmutableSet<String> booleanValues;
+    private static final ImmutableSet<String> booleanFields;
+    private static final ImmutableSet<String> arrayFields;
+    private static final ImmutableSet<String> booleanValues;
 
     static {
         arrayFields = ImmutableSet.<String>builder()
@@ -677,9 +979,7 @@ public class EsSearchManager implements ISearchManager {
             List<Element> nodeElements = xml.getChildren(name);
 
             boolean isArray = nodeElements.size() > 1
-                || arrayFields.contains(propertyName)
-                || propertyName.endsWith("DateForResource")
-                || propertyName.startsWith("cl_");
+                || isArrayField(propertyName);
 
             if (isArray) {
                 ArrayNode arrayNode = doc.putArray(propertyName);
@@ -726,17 +1026,30 @@ public class EsSearchManager implements ISearchManager {
      * Field starting with _ not supported in Kibana
      * Those are usually GN internal fields
      */
-    private String getPropertyName(String name) {
+    static String getPropertyName(String name) {
         return name.startsWith("_") ? name.substring(1) : name;
     }
 
     /*
      * Normalize various GN boolean value to only true/false allowed in boolean fields in ES
      */
-    private String parseBoolean(String value) {
+    static String parseBoolean(String value) {
         return String.valueOf(booleanValues.contains(value));
     }
 
+    /**
+     * @return true if the property is always an array, even with one value.
+     */
+    static boolean isArrayField(String propertyName) {
+        return arrayFields.contains(propertyName)
+            || propertyName.endsWith("DateForResource")
+            || propertyName.startsWith("cl_");
+    }
+
+    static boolean isBooleanField(String propertyName) {
+        return booleanFields.contains(propertyName);
+    }
+
     @Override
     public void forceIndexChanges() {
         sendDocumentsToIndex();
@@ -816,6 +1129,17 @@ public class EsSearchManager implements ISearchManager {
         return client.query(defaultIndex, luceneQuery, filterQuery, includedFields, scriptedFields, from, size);
     }
 
+    /**
+     * Run a set of queries with the same filter, fields and page in one multi search request.
+     *
+     * @return the responses, in the order of the queries.
+     */
+    public List<ResponseBody<ObjectNode>> multiQuery(List<String> luceneQueries, String filterQuery,
+                                                     Set<String> includedFields, Map<String, String> scriptedFields,
+                                                     int from, int size) throws Exception {
+        return client.multiQuery(defaultIndex, luceneQueries, filterQuery, includedFields, scriptedFields, from, size);
+    }
+
     public SearchResponse query(JsonNode jsonRequest, Set<String> includedFields,
                                 int from, int size, List<SortOptions> sort) throws Exception {
         // TODO: Review postFilterBuilder
@@ -828,6 +1152,16 @@ public class EsSearchManager implements ISearchManager {
         return client.query(defaultIndex, jsonRequest, null, includedFields, from, size);
     }
 
+    /**
+     * Search the page of records following the sort values of the last hit
+     * of the previous page. Unlike from/size paging, the cost of a page does not grow
+     * with its position and is not limited by index.max_result_window.
+     */
+    public SearchResponse query(JsonNode jsonRequest, Set<String> includedFields,
+                                int size, List<SortOptions> sort, List<FieldValue> searchAfter) throws Exception {
+        return client.query(defaultIndex, jsonRequest, includedFields, size, sort, searchAfter);
+    }
+
     public SearchResponse<Void> aggregate(JsonNode jsonQuery, Map<String, Aggregation> aggregations) throws IOException {
         return client.aggregate(defaultIndex, jsonQuery, aggregations);
     }
@@ -948,7 +1282,7 @@ public class EsSearchManager implements ISearchManager {
     }
 
     public boolean isIndexing() {
-        return listOfDocumentsToIndex.size() > 0;
+        return pendingDocumentsCount.get() > 0;
     }
 
     public boolean isIndexWritable(String indexName) throws IOException, ElasticsearchException {
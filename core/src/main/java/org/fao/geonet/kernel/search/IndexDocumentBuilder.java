@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel.search;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.google.common.collect.Multimap;
+import org.apache.commons.lang.StringUtils;
+import org.fao.geonet.constants.Geonet;
+import org.jdom.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.transform.Result;
+import javax.xml.transform.sax.SAXResult;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Build the JSON document sent to the index without an intermediate JDOM tree.
+ * <p>
+ * The index XSLT result is received as SAX events (see {@link #asResult()}), database
+ * fields are added with {@link #addFields(Multimap)} and the document is written with a
+ * Jackson {@link JsonGenerator}. The rules are the ones of {@link EsSearchManager#documentToJson}:
+ * <ul>
+ *     <li>fields with the same name are grouped in the order of their first occurrence,</li>
+ *     <li>fields occurring more than once or declared as array fields are written as arrays,</li>
+ *     <li>boolean fields are normalized to true or false,</li>
+ *     <li>fields with a type="object" attribute contain JSON which is copied as is.</li>
+ * </ul>
+ * <p>
+ * A builder is used for one document by one thread.
+ */
+public class IndexDocumentBuilder extends DefaultHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Geonet.INDEX_ENGINE);
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final Map<String, Field> fields = new LinkedHashMap<>();
+
+    private int depth = 0;
+    private String currentName;
+    private boolean currentIsObject;
+    private final StringBuilder currentText = new StringBuilder();
+
+    /**
+     * Values of the fields with the same element name.
+     */
+    private static final class Field {
+        private final String name;
+        private final boolean isObject;
+        private final List<String> values = new ArrayList<>(1);
+
+        private Field(String name, boolean isObject) {
+            this.name = name;
+            this.isObject = isObject;
+        }
+    }
+
+    /**
+     * @return a result to use as the output of the index XSLT.
+     * Each child of the root element is a field.
+     */
+    public Result asResult() {
+        return new SAXResult(this);
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        depth++;
+        if (depth == 2) {
+            currentName = StringUtils.isEmpty(localName) ? qName : localName;
+            currentIsObject = "object".equals(attributes.getValue("type"));
+            currentText.setLength(0);
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        // Only the text of the field, not the one of its children
+        if (depth == 2) {
+            currentText.append(ch, start, length);
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        if (depth == 2) {
+            addField(currentName, currentIsObject, currentText.toString());
+        }
+        depth--;
+    }
+
+    /**
+     * Add a value to a field.
+     *
+     * @param isObject true if the value is JSON. Only the first value of a field
+     *                 defines if the field is an object.
+     */
+    public IndexDocumentBuilder addField(String name, boolean isObject, String value) {
+        String propertyName = EsSearchManager.getPropertyName(name);
+        Field field = fields.get(propertyName);
+        if (field == null || !field.name.equals(name)) {
+            // Another element with the same property name replaces the previous one.
+            field = new Field(name, isObject);
+            fields.put(propertyName, field);
+        }
+        field.values.add(value);
+        return this;
+    }
+
+    /**
+     * Add fields. {@link JsonNode} values are added as object.
+     */
+    public IndexDocumentBuilder addFields(Multimap<String, Object> values) {
+        values.entries().forEach(e ->
+            addField(e.getKey(), e.getValue() instanceof JsonNode, String.valueOf(e.getValue())));
+        return this;
+    }
+
+    /**
+     * Set the value of a field, replacing existing values.
+     */
+    public IndexDocumentBuilder setField(String name, String value) {
+        String propertyName = EsSearchManager.getPropertyName(name);
+        Field field = new Field(name, false);
+        field.values.add(value);
+        fields.put(propertyName, field);
+        return this;
+    }
+
+    public boolean hasField(String name) {
+        return fields.containsKey(EsSearchManager.getPropertyName(name));
+    }
+
+    /**
+     * Remove a field.
+     *
+     * @return the first value of the field or null if the field does not exist.
+     */
+    public String removeField(String name) {
+        Field field = fields.remove(EsSearchManager.getPropertyName(name));
+        return field == null ? null : field.values.get(0);
+    }
+
+    /**
+     * Remove all fields.
+     */
+    public void clear() {
+        fields.clear();
+        depth = 0;
+    }
+
+    public String toJson() throws IOException {
+        StringWriter writer = new StringWriter(fields.size() * 64);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            write(generator);
+        }
+        return writer.toString();
+    }
+
+    public void write(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        for (Map.Entry<String, Field> entry : fields.entrySet()) {
+            writeField(generator, entry.getKey(), entry.getValue());
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeField(JsonGenerator generator, String propertyName, Field field) throws IOException {
+        boolean isBoolean = EsSearchManager.isBooleanField(propertyName);
+        if (field.values.size() > 1 || EsSearchManager.isArrayField(propertyName)) {
+            generator.writeArrayFieldStart(propertyName);
+            for (String value : field.values) {
+                if (field.isObject) {
+                    TokenBuffer json = parseObject(propertyName, value);
+                    if (json != null) {
+                        json.serialize(generator);
+                    }
+                } else {
+                    generator.writeString(isBoolean ?
+                        EsSearchManager.parseBoolean(Text.normalizeString(value)) :
+                        value);
+                }
+            }
+            generator.writeEndArray();
+        } else if (field.isObject) {
+            TokenBuffer json = parseObject(propertyName, field.values.get(0));
+            if (json != null) {
+                generator.writeFieldName(propertyName);
+                json.serialize(generator);
+            }
+        } else {
+            String value = field.values.get(0);
+            generator.writeStringField(propertyName, isBoolean ?
+                EsSearchManager.parseBoolean(Text.normalizeString(value)) :
+                value);
+        }
+    }
+
+    /**
+     * Read the first JSON value of a field. The value is buffered before being
+     * written so that invalid JSON does not corrupt the document.
+     *
+     * @return the JSON tokens or null if the value is not valid JSON.
+     */
+    private TokenBuffer parseObject(String propertyName, String value) {
+        String json = Text.normalizeString(value);
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            TokenBuffer buffer = new TokenBuffer(parser);
+            if (parser.nextToken() == null) {
+                buffer.writeNull();
+            } else {
+                buffer.copyCurrentStructure(parser);
+            }
+            return buffer;
+        } catch (IOException e) {
+            LOGGER.error("Parsing invalid JSON node {} for property {}. Error is: {}",
+                json, propertyName, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -133,44 +133,21 @@ public class BatchOpsMetadataReindexer extends MetadataIndexerProcessor implemen
     }
 
     private String processAsync(boolean runInCurrentThread) throws Exception {
-        int threadCount = ThreadUtils.getNumberOfThreads();
-
         if (runInCurrentThread) {
             executor = MoreExecutors.newDirectExecutorService();
         } else {
-            executor = Executors.newFixedThreadPool(threadCount);
+            executor = Executors.newSingleThreadExecutor();
         }
 
-        int[] ids = metadata.stream().mapToInt(i -> i).toArray();
-
-        int perThread;
-        if (ids.length < threadCount) perThread = ids.length;
-        else perThread = ids.length / threadCount;
-
-        int index = 0;
+        List<Integer> ids = Lists.newArrayList(metadata);
 
         Log.warning(Geonet.INDEX_ENGINE, String.format(
             "Indexing %d records with %d threads.",
-            ids.length, threadCount));
-
-        List<BatchOpsCallable> jobs = Lists.newArrayList();
-        while (index < ids.length) {
-            int start = index;
-            int count = Math.min(perThread, ids.length - start);
-            // create threads to process this chunk of ids
-            BatchOpsCallable task = new BatchOpsCallable(ids, start, count);
-            jobs.add(task);
-
-            index += count;
-        }
-
-        List<CompletableFuture> submitList = Lists.newArrayList();
-        for (BatchOpsCallable job : jobs) {
-            CompletableFuture completed = CompletableFuture.runAsync(job, executor);
-            submitList.add(completed);
-        }
+            ids.size(), ThreadUtils.getNumberOfThreads()));
 
-        allCompleted = CompletableFuture.allOf(submitList.toArray(new CompletableFuture[submitList.size()]));
+        // The indexing pipeline is in charge of distributing
+        // the records to index among the indexing threads.
+        allCompleted = CompletableFuture.runAsync(new BatchOpsCallable(ids), executor);
         allCompleted.thenRun(this);
         return probeName.toString();
     }
@@ -196,36 +173,37 @@ public class BatchOpsMetadataReindexer extends MetadataIndexerProcessor implemen
     }
 
     private final class BatchOpsCallable implements Runnable {
-        private final int[] ids;
-        private final int beginIndex, count;
+        private final List<Integer> ids;
 
-        BatchOpsCallable(int[] ids, int beginIndex, int count) {
+        BatchOpsCallable(List<Integer> ids) {
             this.ids = ids;
-            this.beginIndex = beginIndex;
-            this.count = count;
         }
 
         @Override
         public void run() {
-            Log.warning(Geonet.INDEX_ENGINE, String.format(
-                "Indexing range [%d-%d]/%d by threads %s.",
-                beginIndex, beginIndex + count, ids.length, Thread.currentThread().getId()));
             long start = System.currentTimeMillis();
-            for (int i = beginIndex; i < beginIndex + count; i++) {
-                try {
-                    dm.indexMetadata(ids[i] + "", false);
-                    processed.incrementAndGet();
-                } catch (Exception e) {
-                    inError.incrementAndGet();
-                }
+            try {
+                dm.indexMetadataInBatch(ids, new BatchIndexingListener() {
+                    @Override
+                    public void onIndexed(String metadataId) {
+                        processed.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onError(String metadataId, Exception e) {
+                        inError.incrementAndGet();
+                    }
+                });
+            } catch (Exception e) {
+                Log.error(Geonet.INDEX_ENGINE, String.format(
+                    "Indexing of %d records failed. Error is: %s", ids.size(), e.getMessage()), e);
             }
             Log.warning(Geonet.INDEX_ENGINE, String.format(
-                "Indexing range [%d-%d]/%d completed in %dms by threads %s.",
-                beginIndex, beginIndex + count, ids.length,
+                "Indexing of %d records completed in %dms by threads %s.",
+                ids.size(),
                 System.currentTimeMillis() - start,
                 Thread.currentThread().getId()));
             esSearchManager.forceIndexChanges();
         }
     }
 }
-
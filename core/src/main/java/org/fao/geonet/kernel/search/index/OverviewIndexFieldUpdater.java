@@ -23,30 +23,171 @@
 
 package org.fao.geonet.kernel.search.index;
 
+import co.elastic.clients.elasticsearch.core.BulkResponse;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.lang.StringUtils;
+import org.fao.geonet.api.records.attachments.Store;
+import org.fao.geonet.constants.Geonet;
 import org.fao.geonet.kernel.search.EsSearchManager;
-import org.fao.geonet.util.XslUtil;
+import org.fao.geonet.kernel.setting.SettingManager;
+import org.fao.geonet.utils.Log;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
- * An operation which takes some time to add information
- * into the index. This action can be run in the background (TODO)
+ * Add the data URL of the overviews of the indexed records into the index.
+ * <p>
+ * Downloading and resizing images takes some time, so records are queued and
+ * processed in the background, in batches of records for which the index is
+ * queried and updated at once. A record already waiting in the queue is not added
+ * again. When the queue is full, records are skipped; their overview data are added
+ * the next time they are indexed.
+ * <p>
+ * The data are only set on the overviews of the indexed documents which still have
+ * the same URL and no data, so a record reindexed or deleted while its overviews
+ * were processed is not overwritten nor recreated.
  */
 public class OverviewIndexFieldUpdater {
     private Integer imageSize = 140;
 
+    /**
+     * Maximum number of records waiting for their overviews to be processed.
+     */
+    @Value("${es.index.records.overview.queueSize:10000}")
+    private int queueSize = 10000;
+
+    /**
+     * Maximum number of records queried and updated at once.
+     */
+    @Value("${es.index.records.overview.batchSize:100}")
+    private int batchSize = 100;
+
+    /**
+     * Number of threads processing the queue.
+     */
+    @Value("${es.index.records.overview.threads:2}")
+    private int threads = 2;
+
+    /**
+     * Maximum number of images in the thumbnail cache.
+     */
+    @Value("${es.index.records.overview.cacheSize:1000}")
+    private int cacheSize = 1000;
+
+    /**
+     * Number of minutes after which a cached image is checked for changes.
+     */
+    @Value("${es.index.records.overview.cacheRefreshMinutes:60}")
+    private int cacheRefreshMinutes = 60;
+
+    /**
+     * Set the data of the overviews with a matching URL. Overviews added, removed
+     * or changed by a new indexing of the record in the meantime are left unchanged.
+     */
+    @VisibleForTesting
+    static final String UPDATE_OVERVIEW_DATA_SCRIPT =
+        "def updated = false;"
+            + "if (ctx._source.overview instanceof List) {"
+            + "  for (def overview : ctx._source.overview) {"
+            + "    if (overview.url != null && overview.data == null && params.data.containsKey(overview.url)) {"
+            + "      overview.data = params.data.get(overview.url);"
+            + "      updated = true;"
+            + "    }"
+            + "  }"
+            + "}"
+            + "if (!updated) { ctx.op = 'noop'; }";
+
     @Autowired
     EsSearchManager searchManager;
 
-    public void process(String uuid) {
-        processOverview(uuid);
-        processOverview(uuid + "-draft");
+    @Autowired
+    SettingManager settingManager;
+
+    @Autowired
+    @Qualifier("filesystemStore")
+    Store filesystemStore;
+
+    private BlockingQueue<String> queue;
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    private ExecutorService executor;
+    private OverviewThumbnailCache thumbnails;
+
+    @PostConstruct
+    public void init() {
+        queue = new LinkedBlockingQueue<>(Math.max(1, queueSize));
+        thumbnails = new OverviewThumbnailCache(settingManager, filesystemStore, cacheSize, cacheRefreshMinutes, imageSize);
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("OverviewIndexFieldUpdater-");
+        threadFactory.setDaemon(true);
+        int threadCount = Math.max(1, threads);
+        executor = Executors.newFixedThreadPool(threadCount, threadFactory);
+        for (int i = 0; i < threadCount; i++) {
+            executor.execute(this::processQueue);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Queue a record for the processing of its overviews and the ones of its draft.
+     */
+    public void process(String id) {
+        if (queued.add(id)) {
+            if (!queue.offer(id)) {
+                queued.remove(id);
+                Log.debug(Geonet.INDEX_ENGINE, String.format(
+                    "Overview queue is full. Overviews of record '%s' are not processed.", id));
+            }
+        }
+    }
+
+    /**
+     * @return the number of records waiting for their overviews to be processed.
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void processQueue() {
+        List<String> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                // The record can be queued again once its processing started
+                batch.forEach(queued::remove);
+                processOverviews(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                Log.error(Geonet.INDEX_ENGINE, String.format(
+                    "Error while processing the overviews of %d records. Error is %s.",
+                    batch.size(), e.getMessage()), e);
+            } finally {
+                batch.clear();
+            }
+        }
     }
 
     private ArrayList<HashMap<String, String>> getHitOverviews(Map<String, Object> fields) {
@@ -57,39 +198,56 @@ public class OverviewIndexFieldUpdater {
         return new ArrayList<>();
     }
 
-    private void processOverview(String id) {
+    @VisibleForTesting
+    void processOverviews(List<String> ids) throws Exception {
         Set<String> source = new HashSet<>();
         source.add("overview");
-        SearchResponse response = null;
-        try {
-            response = searchManager.query(String.format(
-                "+_id:\"%s\" _exists_:overview.url -_exists_:overview.data",
-                id), null, source, 0, 1);
-            ObjectMapper objectMapper = new ObjectMapper();
-            response.hits().hits().forEach(h -> {
-                Hit hit = (Hit) h;
-                AtomicBoolean updates = new AtomicBoolean(false);
-                Map<String, Object> fields = objectMapper.convertValue(hit.source(), Map.class);
-                getHitOverviews(fields)
-                    .stream()
-                    .forEach(overview -> {
-                        String url = (String) ((Map) overview).get("url");
-                        if (StringUtils.isNotEmpty(url)) {
-                            String data = XslUtil.buildDataUrl(url, imageSize);
-                            ((Map) overview).put("data", data);
-                            updates.set(true);
-                        }
-                    });
-                if (updates.get()) {
-                    try {
-                        searchManager.updateFields(id, fields, source);
-                    } catch (Exception e) {
-                        e.printStackTrace();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        ObjectNode query = objectMapper.createObjectNode();
+        ObjectNode bool = query.putObject("bool");
+        ArrayNode filter = bool.putArray("filter");
+        ArrayNode values = filter.addObject().putObject("ids").putArray("values");
+        ids.forEach(id -> {
+            values.add(id);
+            values.add(id + "-draft");
+        });
+        filter.addObject().putObject("exists").put("field", "overview.url");
+        bool.putArray("must_not").addObject().putObject("exists").put("field", "overview.data");
+
+        SearchResponse response = searchManager.query(query, source, 0, values.size());
+
+        Map<String, Map<String, Object>> updates = new HashMap<>();
+        response.hits().hits().forEach(h -> {
+            Hit hit = (Hit) h;
+            Map<String, Object> fields = objectMapper.convertValue(hit.source(), Map.class);
+            Map<String, String> data = new HashMap<>();
+            for (Map<String, String> overview : getHitOverviews(fields)) {
+                String url = overview.get("url");
+                if (StringUtils.isNotEmpty(url)) {
+                    data.put(url, thumbnails.getDataUrl(url));
+                }
+            }
+            if (!data.isEmpty()) {
+                updates.put(hit.id(), Map.of("data", data));
+            }
+        });
+
+        if (!updates.isEmpty()) {
+            BulkResponse bulkResponse = searchManager.updateByScript(UPDATE_OVERVIEW_DATA_SCRIPT, updates);
+            if (bulkResponse.errors()) {
+                List<String> failed = new ArrayList<>();
+                bulkResponse.items().forEach(item -> {
+                    // Records deleted in the meantime are not recreated
+                    if (item.error() != null && !"document_missing_exception".equals(item.error().type())) {
+                        failed.add(item.id());
                     }
+                });
+                if (!failed.isEmpty()) {
+                    Log.warning(Geonet.INDEX_ENGINE, String.format(
+                        "Errors while updating the overviews of records %s.", failed));
                 }
-            });
-        } catch (Exception e) {
-            e.printStackTrace();
+            }
         }
     }
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.kernel.search.index;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.fao.geonet.api.records.attachments.Store;
+import org.fao.geonet.constants.Geonet;
+import org.fao.geonet.domain.MetadataResourceVisibility;
+import org.fao.geonet.kernel.setting.SettingManager;
+import org.fao.geonet.util.XslUtil;
+import org.fao.geonet.utils.Log;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.fao.geonet.Constants.ENCODING;
+
+/**
+ * Data URLs of overview images, by image URL. An image shared by many records (eg. a logo)
+ * is downloaded and resized once. Entries older than the refresh delay are revalidated
+ * the next time they are used: with the ETag returned by the server for remote images
+ * (a not modified response keeps the data URL) and with the last modification date for
+ * the attachments of the catalogue. Images which can not be loaded are cached as an empty
+ * data URL, so a host which is down or slow is not requested for each record.
+ */
+class OverviewThumbnailCache {
+    private final SettingManager settingManager;
+    private final Store store;
+    private final LoadingCache<String, Thumbnail> cache;
+    private final int imageSize;
+
+    /**
+     * @param store The store of the attachments, read directly as the images are
+     *              loaded in background threads without any user session.
+     */
+    OverviewThumbnailCache(SettingManager settingManager, Store store,
+                           int maximumSize, int refreshMinutes, int imageSize) {
+        this(settingManager, store, maximumSize, refreshMinutes, imageSize, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    OverviewThumbnailCache(SettingManager settingManager, Store store,
+                           int maximumSize, int refreshMinutes, int imageSize, Ticker ticker) {
+        this.settingManager = settingManager;
+        this.store = store;
+        this.imageSize = imageSize;
+        this.cache = CacheBuilder.newBuilder()
+            .ticker(ticker)
+            .maximumSize(maximumSize)
+            .refreshAfterWrite(refreshMinutes, TimeUnit.MINUTES)
+            .build(new CacheLoader<String, Thumbnail>() {
+                @Override
+                public Thumbnail load(String url) {
+                    return loadThumbnail(url, null);
+                }
+
+                @Override
+                public ListenableFuture<Thumbnail> reload(String url, Thumbnail previous) {
+                    return Futures.immediateFuture(loadThumbnail(url, previous));
+                }
+            });
+    }
+
+    /**
+     * @return the data URL of the image, or an empty string if it can not be built.
+     */
+    String getDataUrl(String url) {
+        if (!XslUtil.isDataUrlSupported(url)) {
+            Log.info(Geonet.INDEX_ENGINE, String.format(
+                "Image '%s' is not of a supported type and can't be encoded as a data URL.",
+                url));
+            return "";
+        }
+        return cache.getUnchecked(url).dataUrl;
+    }
+
+    long size() {
+        return cache.size();
+    }
+
+    private Thumbnail loadThumbnail(String url, Thumbnail previous) {
+        try {
+            Matcher m = Pattern.compile(Pattern.quote(settingManager.getNodeURL()) + "api/records/(.*)/attachments/(.*)$").matcher(url);
+            if (m.find()) {
+                try (Store.ResourceHolder resourceHolder = store.getResourceInternal(
+                    URLDecoder.decode(m.group(1), ENCODING),
+                    MetadataResourceVisibility.PUBLIC,
+                    URLDecoder.decode(m.group(2), ENCODING), true)) {
+                    Date lastModification = resourceHolder.getMetadata().getLastModification();
+                    String tag = lastModification == null ? null : String.valueOf(lastModification.getTime());
+                    if (previous != null && tag != null && tag.equals(previous.tag)) {
+                        return previous;
+                    }
+                    try (InputStream is = resourceHolder.getResource().getInputStream()) {
+                        return new Thumbnail(tag, toDataUrl(url, ImageIO.read(is)));
+                    }
+                }
+            }
+
+            URLConnection con = new URL(url).openConnection();
+            con.setConnectTimeout(1000);
+            con.setReadTimeout(10000);
+            if (con instanceof HttpURLConnection && previous != null && previous.tag != null) {
+                con.setRequestProperty("If-None-Match", previous.tag);
+                if (((HttpURLConnection) con).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    ((HttpURLConnection) con).disconnect();
+                    return previous;
+                }
+            }
+            try (InputStream in = con.getInputStream()) {
+                return new Thumbnail(con.getHeaderField("ETag"), toDataUrl(url, ImageIO.read(in)));
+            }
+        } catch (Exception e) {
+            Log.info(Geonet.INDEX_ENGINE, String.format(
+                "Image '%s' is not accessible or can't be converted to Data URL. Error is: %s",
+                url, e.getMessage()));
+            // Keep the previous image if the host is temporarily not available
+            return previous != null ? previous : new Thumbnail(null, "");
+        }
+    }
+
+    private String toDataUrl(String url, BufferedImage image) throws Exception {
+        if (image == null) {
+            Log.info(Geonet.INDEX_ENGINE, String.format(
+                "Image '%s' is null and can't be converted to Data URL.",
+                url));
+            return "";
+        }
+        return XslUtil.toDataUrl(image, imageSize);
+    }
+
+    private static final class Thumbnail {
+        /**
+         * ETag of a remote image or last modification time of an attachment.
+         */
+        private final String tag;
+        private final String dataUrl;
+
+        private Thumbnail(String tag, String dataUrl) {
+            this.tag = tag;
+            this.dataUrl = dataUrl;
+        }
+    }
+}
@@ -25,6 +25,7 @@ package org.fao.geonet.kernel.search.keyword;
 
 import java.util.Set;
 
+import org.fao.geonet.kernel.ThesaurusConceptIndex;
 import org.fao.geonet.kernel.rdf.Selectors;
 import org.fao.geonet.kernel.rdf.Where;
 import org.fao.geonet.kernel.rdf.Wheres;
@@ -54,4 +55,14 @@ public class KeywordLabelSearchClause implements SearchClause {
         }
         return where;
     }
+
+    @Override
+    public boolean addTo(ThesaurusConceptIndex.ConceptQuery query) {
+        // In SeRQL * is a wildcard
+        if (keyword.contains("*")) {
+            return false;
+        }
+        query.label(searchType, keyword, ignoreCase);
+        return true;
+    }
 }
@@ -43,6 +43,7 @@ import javax.annotation.Nullable;
 import org.fao.geonet.kernel.AllThesaurus;
 import org.fao.geonet.kernel.KeywordBean;
 import org.fao.geonet.kernel.Thesaurus;
+import org.fao.geonet.kernel.ThesaurusConceptIndex;
 import org.fao.geonet.kernel.ThesaurusFinder;
 import org.fao.geonet.kernel.rdf.Query;
 import org.fao.geonet.kernel.rdf.QueryBuilder;
@@ -57,6 +58,7 @@ import com.google.common.collect.Maps;
 public class KeywordSearchParams {
 
     private final QueryBuilder<KeywordBean> queryBuilder;
+    private final ThesaurusConceptIndex.ConceptQuery conceptQuery;
     private final LinkedHashSet<String> thesauriNames;
     private final String thesauriDomainName;
     private final Comparator<KeywordBean> comparator;
@@ -64,7 +66,17 @@ public class KeywordSearchParams {
 
     public KeywordSearchParams(QueryBuilder<KeywordBean> query, Set<String> thesauriNames, String thesauriDomainName, int maxResults,
                                Comparator<KeywordBean> comparator) {
+        this(query, null, thesauriNames, thesauriDomainName, maxResults, comparator);
+    }
+
+    /**
+     * @param conceptQuery the same search for the thesaurus concept index, null to always run the SeRQL query
+     */
+    public KeywordSearchParams(QueryBuilder<KeywordBean> query, @Nullable ThesaurusConceptIndex.ConceptQuery conceptQuery,
+                               Set<String> thesauriNames, String thesauriDomainName, int maxResults,
+                               Comparator<KeywordBean> comparator) {
         this.queryBuilder = query;
+        this.conceptQuery = conceptQuery;
         this.thesauriNames = new LinkedHashSet<>(thesauriNames);
         this.thesauriDomainName = thesauriDomainName;
         this.maxResults = maxResults;
@@ -182,7 +194,8 @@ public class KeywordSearchParams {
 
 	private AtomicInteger executeQuery(AtomicInteger id, Collection<KeywordBean> results, Thesaurus thesaurus, Query<KeywordBean> query, Integer maxResults)
 			throws IOException, MalformedQueryException, QueryEvaluationException, AccessDeniedException {
-		for (KeywordBean keywordBean : query.execute(thesaurus)) {
+		int limit = maxResults > -1 ? maxResults - results.size() : -1;
+		for (KeywordBean keywordBean : execute(thesaurus, query, limit)) {
 		    if (maxResults > -1 && results.size() >= maxResults) {
 		        break;
 		    }
@@ -192,6 +205,20 @@ public class KeywordSearchParams {
 		return id;
 	}
 
+    /**
+     * Search the concept index of the thesaurus, or run the SeRQL query if the thesaurus cannot answer from its index.
+     */
+    private List<KeywordBean> execute(Thesaurus thesaurus, Query<KeywordBean> query, int limit)
+        throws IOException, MalformedQueryException, QueryEvaluationException, AccessDeniedException {
+        if (conceptQuery != null) {
+            List<KeywordBean> keywords = thesaurus.searchConcepts(conceptQuery, limit);
+            if (keywords != null) {
+                return keywords;
+            }
+        }
+        return query.execute(thesaurus);
+    }
+
     private List<KeywordBean> executeAllSorted(QueryBuilder<KeywordBean> queryBuilder, ThesaurusFinder finder) throws IOException,
         MalformedQueryException, QueryEvaluationException, AccessDeniedException {
         AtomicInteger id = new AtomicInteger();
@@ -26,6 +26,7 @@ package org.fao.geonet.kernel.search.keyword;
 import org.fao.geonet.Util;
 import org.fao.geonet.exceptions.BadInputEx;
 import org.fao.geonet.kernel.KeywordBean;
+import org.fao.geonet.kernel.ThesaurusConceptIndex;
 import org.fao.geonet.kernel.rdf.QueryBuilder;
 import org.fao.geonet.kernel.rdf.Selector;
 import org.fao.geonet.kernel.rdf.Selectors;
@@ -238,7 +239,26 @@ public class KeywordSearchParamsBuilder {
      */
     public KeywordSearchParams build() {
         checkState(false);
-        return new KeywordSearchParams(createQuery(), thesauriNames, thesauriDomainName, maxResults, this.comparator);
+        return new KeywordSearchParams(createQuery(), createConceptQuery(), thesauriNames, thesauriDomainName, maxResults, this.comparator);
+    }
+
+    /**
+     * Create the same search for the thesaurus concept index.
+     *
+     * @return the search or null if the concept index cannot run it
+     */
+    private ThesaurusConceptIndex.ConceptQuery createConceptQuery() {
+        // offsets apply to the unsorted SeRQL results and relationships select columns
+        if (offset > 0 || !selectClauses.isEmpty()) {
+            return null;
+        }
+        ThesaurusConceptIndex.ConceptQuery query = new ThesaurusConceptIndex.ConceptQuery(langs, requireBoundedBy);
+        for (SearchClause clause : searchClauses) {
+            if (!clause.addTo(query)) {
+                return null;
+            }
+        }
+        return query;
     }
 
     private QueryBuilder<KeywordBean> createQuery() {
@@ -29,7 +29,12 @@ import org.fao.geonet.kernel.rdf.Where;
 import org.fao.geonet.kernel.rdf.Wheres;
 
 public enum KeywordSearchType {
-    STARTS_WITH("{0}*"), CONTAINS("*{0}*"), MATCH("{0}");
+    STARTS_WITH("{0}*"), CONTAINS("*{0}*"), MATCH("{0}"),
+    /**
+     * Typo tolerant search, see {@link org.fao.geonet.kernel.ThesaurusConceptIndex}.
+     * Only the thesaurus concept index supports it, SeRQL queries search labels containing the text.
+     */
+    FUZZY("*{0}*");
 
     private String template;
 
@@ -45,6 +50,8 @@ public enum KeywordSearchType {
             return CONTAINS;
         } else if ("2".equals(processed)) {
             return MATCH;
+        } else if ("3".equals(processed)) {
+            return FUZZY;
         } else {
             return valueOf(processed);
         }
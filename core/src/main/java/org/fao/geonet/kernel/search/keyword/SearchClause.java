@@ -25,6 +25,7 @@ package org.fao.geonet.kernel.search.keyword;
 
 import java.util.Set;
 
+import org.fao.geonet.kernel.ThesaurusConceptIndex;
 import org.fao.geonet.kernel.rdf.Where;
 import org.jdom.Element;
 
@@ -47,4 +48,13 @@ public interface SearchClause {
      */
     public void addXmlParams(Element params);
 
+    /**
+     * Add this clause to a search on the thesaurus concept index.
+     *
+     * @return false if the concept index cannot run this clause
+     */
+    public default boolean addTo(ThesaurusConceptIndex.ConceptQuery query) {
+        return false;
+    }
+
 }
@@ -25,6 +25,7 @@ package org.fao.geonet.kernel.search.keyword;
 
 import java.util.Set;
 
+import org.fao.geonet.kernel.ThesaurusConceptIndex;
 import org.fao.geonet.kernel.rdf.Where;
 import org.fao.geonet.kernel.rdf.Wheres;
 import org.jdom.Element;
@@ -59,6 +60,15 @@ public class URISearchClause implements SearchClause {
         }
     }
 
+    @Override
+    public boolean addTo(ThesaurusConceptIndex.ConceptQuery query) {
+        if (this.searchType != null || this.uri.contains("*")) {
+            return false;
+        }
+        query.uri(this.uri);
+        return true;
+    }
+
     @Override
     public void addXmlParams(Element params) {
         params.addContent(new Element(XmlParams.pUri).setText(this.uri));
@@ -1,5 +1,5 @@
 //=============================================================================
-//===	Copyright (C) 2001-2023 Food and Agriculture Organization of the
+//===	Copyright (C) 2001-2026 Food and Agriculture Organization of the
 //===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
 //===	and United Nations Environment Programme (UNEP)
 //===
@@ -33,7 +33,7 @@ import org.fao.geonet.domain.HarvesterSetting;
 import org.fao.geonet.domain.Setting;
 import org.fao.geonet.domain.SettingDataType;
 import org.fao.geonet.domain.Setting_;
-import org.fao.geonet.languages.FeedbackLanguages;
+import org.fao.geonet.events.setting.SettingValuesUpdated;
 import org.fao.geonet.repository.SettingRepository;
 import org.fao.geonet.repository.SortUtils;
 import org.fao.geonet.repository.SourceRepository;
@@ -42,6 +42,9 @@ import org.fao.geonet.web.DefaultLanguage;
 import org.jasypt.encryption.pbe.StandardPBEStringEncryptor;
 import org.jdom.Element;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.Nonnull;
 import javax.annotation.PostConstruct;
@@ -51,12 +54,17 @@ import javax.servlet.ServletContext;
 import java.sql.SQLException;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.google.common.xml.XmlEscapers.xmlContentEscaper;
 import static org.fao.geonet.kernel.setting.Settings.SYSTEM_SITE_NAME_PATH;
@@ -65,6 +73,12 @@ import static org.fao.geonet.kernel.setting.Settings.SYSTEM_SITE_NAME_PATH;
  * A convenience class for updating and accessing settings.  One of the primary needs of this class
  * at the moment is to maintain backwards compatibility so not all code and xsl files that make use
  * of the settings need to be modified.
+ * <p>
+ * Setting values are served from an immutable in-memory snapshot of the settings table, loaded on
+ * first access once the encryptor is initialized. Writes go to the database first and swap in a new
+ * snapshot once the transaction commits, so that reads never lock or hit the database. Until then,
+ * the writing transaction reads its own values. A {@link SettingValuesUpdated} event is published
+ * after the commit for the settings whose value changed.
  */
 public class SettingManager {
 
@@ -96,7 +110,22 @@ public class SettingManager {
     DefaultLanguage defaultLanguage;
 
     @Autowired
-    FeedbackLanguages feedbackLanguages;
+    ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Setting values by name. A setting with a null value is present with a null value, a missing
+     * setting is not present. Null when not loaded yet or invalidated.
+     */
+    private final AtomicReference<Map<String, String>> snapshot = new AtomicReference<>();
+
+    /**
+     * Key of the values written in the current transaction, bound to the transaction until it completes.
+     */
+    private final Object transactionValuesKey = new Object();
+
+    private final LongAdder snapshotHits = new LongAdder();
+
+    private final LongAdder databaseReads = new LongAdder();
 
     @PostConstruct
     private void init() {
@@ -197,29 +226,37 @@ public class SettingManager {
             Log.trace(Geonet.SETTINGS, "Requested setting with name: " + path);
         }
 
-        Optional<Setting> se = repo.findById(path);
-        if (!se.isPresent()) {
-            // TODO : When a settings is not available in the settings table
-            // we end here. It could be relevant to add a list of default
-            // settings and populate the settings table when the settings is
-            // missing (due to bad migration for example).
-            Log.error(Geonet.SETTINGS, "  Requested setting with name: " + path + "  not found. Add it to the settings table.");
-            return null;
-        }
+        Map<String, String> values = getSnapshot();
+        String value;
+        if (values != null) {
+            snapshotHits.increment();
+            if (!values.containsKey(path)) {
+                logSettingNotFound(path);
+                return null;
+            }
+            value = values.get(path);
+        } else {
+            databaseReads.increment();
+            Optional<Setting> se = repo.findById(path);
+            if (!se.isPresent()) {
+                logSettingNotFound(path);
+                return null;
+            }
 
-        String value = se.get().getValue();
-
-        // This case occurs during the application startup, before the encryptor is initialized:
-        // value is null and storedValue has the correct value in this case.
-        // Affects OpenApiConfig and SettingManager PostConstruct that retrieve settings during the startup,
-        // before the encryptor is initialized.
-        // TODO: Improve EncryptorInitializer. For now it depends on GeonetworkDataDirectory
-        //  that requires to be initialised in GeoNetwork start method.
-        if (!encryptor.isInitialized()) {
-            if (!se.get().isEncrypted()) {
-                value = se.get().getStoredValue();
-            } else {
-                throw new IllegalStateException("Encrypted settings can't be accessed before encryptor is initialized");
+            value = se.get().getValue();
+
+            // This case occurs during the application startup, before the encryptor is initialized:
+            // value is null and storedValue has the correct value in this case.
+            // Affects OpenApiConfig and SettingManager PostConstruct that retrieve settings during the startup,
+            // before the encryptor is initialized.
+            // TODO: Improve EncryptorInitializer. For now it depends on GeonetworkDataDirectory
+            //  that requires to be initialised in GeoNetwork start method.
+            if (!encryptor.isInitialized()) {
+                if (!se.get().isEncrypted()) {
+                    value = se.get().getStoredValue();
+                } else {
+                    throw new IllegalStateException("Encrypted settings can't be accessed before encryptor is initialized");
+                }
             }
         }
 
@@ -230,6 +267,149 @@ public class SettingManager {
         return value;
     }
 
+    private void logSettingNotFound(String path) {
+        // TODO : When a settings is not available in the settings table
+        // we end here. It could be relevant to add a list of default
+        // settings and populate the settings table when the settings is
+        // missing (due to bad migration for example).
+        Log.error(Geonet.SETTINGS, "  Requested setting with name: " + path + "  not found. Add it to the settings table.");
+    }
+
+    /**
+     * Return the current settings snapshot, loading it from the database if needed. Returns null
+     * as long as the encryptor is not initialized, as encrypted values can't be read before.
+     */
+    private Map<String, String> getSnapshot() {
+        Map<String, String> values = snapshot.get();
+        if (values == null && encryptor.isInitialized()) {
+            synchronized (snapshot) {
+                values = snapshot.get();
+                if (values == null) {
+                    values = loadSnapshot();
+                    snapshot.set(values);
+                    invalidateSnapshotOnRollback();
+                }
+            }
+        }
+        Map<String, String> transactionValues = getTransactionValues();
+        if (values != null && transactionValues != null) {
+            Map<String, String> merged = new HashMap<>(values);
+            merged.putAll(transactionValues);
+            return merged;
+        }
+        return values;
+    }
+
+    /**
+     * @return the values written in the current transaction, which are not yet in the snapshot.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, String> getTransactionValues() {
+        return (Map<String, String>) TransactionSynchronizationManager.getResource(transactionValuesKey);
+    }
+
+    private Map<String, String> loadSnapshot() {
+        databaseReads.increment();
+        Map<String, String> values = new HashMap<>();
+        for (Setting setting : repo.findAll()) {
+            values.put(setting.getName(), setting.getValue());
+        }
+        return Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * The snapshot may contain values written (or read) in the current transaction. Drop it if that
+     * transaction does not commit, so that the next read loads the committed values.
+     */
+    private void invalidateSnapshotOnRollback() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        snapshot.set(null);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Swap in a new snapshot with the given values, if a snapshot is loaded, and notify listeners
+     * of the settings that changed. In a transaction, this is done once it commits, so that
+     * other threads never see uncommitted values and a concurrent {@link #refresh()} can't
+     * replace them by the values read before the commit.
+     */
+    private void updateSnapshot(Map<String, String> updatedValues, Map<String, String> previousValues) {
+        if (updatedValues.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            applySnapshot(updatedValues, previousValues);
+            return;
+        }
+
+        Map<String, String> transactionValues = getTransactionValues();
+        if (transactionValues == null) {
+            transactionValues = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(transactionValuesKey, transactionValues);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(transactionValuesKey);
+                }
+            });
+        }
+        transactionValues.putAll(updatedValues);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                applySnapshot(updatedValues, previousValues);
+            }
+        });
+    }
+
+    private void applySnapshot(Map<String, String> updatedValues, Map<String, String> previousValues) {
+        synchronized (snapshot) {
+            Map<String, String> values = snapshot.get();
+            if (values != null) {
+                Map<String, String> newSnapshot = new HashMap<>(values);
+                newSnapshot.putAll(updatedValues);
+                snapshot.set(Collections.unmodifiableMap(newSnapshot));
+            }
+        }
+        publishChanges(previousValues, updatedValues);
+    }
+
+    private void publishChanges(Map<String, String> previousValues, Map<String, String> updatedValues) {
+        Map<String, String> oldValues = new LinkedHashMap<>();
+        Map<String, String> newValues = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : updatedValues.entrySet()) {
+            String previous = previousValues.get(entry.getKey());
+            if (!Objects.equals(previous, entry.getValue())) {
+                oldValues.put(entry.getKey(), previous);
+                newValues.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (!newValues.isEmpty() && eventPublisher != null) {
+            eventPublisher.publishEvent(new SettingValuesUpdated(this, oldValues, newValues));
+        }
+    }
+
+    /**
+     * @return the number of setting values served from the in-memory snapshot.
+     */
+    public long getSnapshotHits() {
+        return snapshotHits.sum();
+    }
+
+    /**
+     * @return the number of setting value lookups and snapshot loads that queried the database.
+     */
+    public long getDatabaseReads() {
+        return databaseReads.sum();
+    }
+
     /**
      * Return a set of values
      *
@@ -256,18 +436,27 @@ public class SettingManager {
      */
     public Element getValues(String[] keys) {
         Element env = new Element("settings");
+        Map<String, String> values = getSnapshot();
         for (int i = 0; i < keys.length; i++) {
             String key = keys[i];
-            Optional<Setting> se = repo.findById(key);
-            if (!se.isPresent()) {
-                Log.error(Geonet.SETTINGS, "  Requested setting with name: " + key + " not found. Add it to the settings table.");
+            boolean found;
+            String value;
+            if (values != null) {
+                snapshotHits.increment();
+                found = values.containsKey(key);
+                value = values.get(key);
             } else {
-                String value = se.get().getValue();
-                if (value != null) {
-                    Element setting = new Element("setting");
-                    setting.setAttribute("name", key).setAttribute("value", value);
-                    env.addContent(setting);
-                }
+                databaseReads.increment();
+                Optional<Setting> se = repo.findById(key);
+                found = se.isPresent();
+                value = found ? se.get().getValue() : null;
+            }
+            if (!found) {
+                Log.error(Geonet.SETTINGS, "  Requested setting with name: " + key + " not found. Add it to the settings table.");
+            } else if (value != null) {
+                Element setting = new Element("setting");
+                setting.setAttribute("name", key).setAttribute("value", value);
+                env.addContent(setting);
             }
         }
         return env;
@@ -344,6 +533,14 @@ public class SettingManager {
      * @return true if the types are correct and the setting is found.
      */
     public boolean setValue(String key, String value) {
+        Map<String, String> previousValues = new HashMap<>();
+        Map<String, String> updatedValues = new HashMap<>();
+        saveValue(key, value, previousValues, updatedValues);
+        updateSnapshot(updatedValues, previousValues);
+        return true;
+    }
+
+    private void saveValue(String key, String value, Map<String, String> previousValues, Map<String, String> updatedValues) {
         if (Log.isDebugEnabled(Geonet.SETTINGS)) {
             Log.debug(Geonet.SETTINGS, "Setting with name: " + key + ", value: " + value);
         }
@@ -357,17 +554,11 @@ public class SettingManager {
         Setting setting = settingOpt.get();
 
         setting.getDataType().validate(value);
+        previousValues.put(key, setting.getValue());
         setting.setValue(value);
 
         repo.save(setting);
-
-        if (key.equals("system/feedback/languages")) {
-            feedbackLanguages.updateSupportedLocales();
-        } else if (key.equals("system/feedback/translationFollowsText")) {
-            feedbackLanguages.updateTranslationFollowsText();
-        }
-
-        return true;
+        updatedValues.put(key, setting.getValue());
     }
 
     public boolean setValue(Settings.GNSetting setting, String value) {
@@ -396,22 +587,49 @@ public class SettingManager {
      */
     public final boolean setValues(final Map<String, String> values) {
         boolean success = true;
-        for (Map.Entry<String, String> entry : values.entrySet()) {
-            String key = entry.getKey();
-            String value = entry.getValue();
-            if (StringUtils.isNotEmpty(key)) {
-                 setValue(key, value);
+        Map<String, String> previousValues = new HashMap<>();
+        Map<String, String> updatedValues = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                String key = entry.getKey();
+                String value = entry.getValue();
+                if (StringUtils.isNotEmpty(key)) {
+                    saveValue(key, value, previousValues, updatedValues);
+                }
             }
+        } finally {
+            // Values saved before a failure are in the database
+            updateSnapshot(updatedValues, previousValues);
         }
         return success;
     }
 
     /**
      * Refreshes current settings manager. This has to be used when updating the Settings table
-     * without using this class. For example when using an SQL script.
+     * without using this class. For example when using an SQL script. The settings snapshot is
+     * reloaded and listeners are notified of the values that changed.
      */
     public final boolean refresh() throws SQLException {
         entityManager.getEntityManagerFactory().getCache().evict(HarvesterSetting.class);
+        entityManager.getEntityManagerFactory().getCache().evict(Setting.class);
+
+        Map<String, String> previousValues;
+        Map<String, String> values;
+        synchronized (snapshot) {
+            previousValues = snapshot.getAndSet(null);
+            if (previousValues == null || !encryptor.isInitialized()) {
+                return true;
+            }
+            values = getSnapshot();
+        }
+
+        Map<String, String> updatedValues = new HashMap<>(values);
+        for (String name : previousValues.keySet()) {
+            if (!values.containsKey(name)) {
+                updatedValues.put(name, null);
+            }
+        }
+        publishChanges(previousValues, updatedValues);
         return true;
     }
 
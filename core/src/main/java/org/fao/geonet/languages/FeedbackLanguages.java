@@ -25,18 +25,21 @@ package org.fao.geonet.languages;
 
 import org.apache.commons.lang.StringUtils;
 import org.fao.geonet.constants.Geonet;
+import org.fao.geonet.events.setting.SettingValuesUpdated;
 import org.fao.geonet.kernel.setting.SettingManager;
 import org.fao.geonet.kernel.setting.Settings;
 import org.fao.geonet.utils.Log;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
 
 import javax.annotation.PostConstruct;
 import java.util.*;
 
 /**
  * Represents a utility class for managing supported locales and translation follows text for feedback.
+ * The values are updated when the settings change, once the new setting values can be read.
  */
-public class FeedbackLanguages {
+public class FeedbackLanguages implements ApplicationListener<SettingValuesUpdated> {
     private Locale[] supportedLocales;
     private String translationFollowsText;
 
@@ -52,6 +55,16 @@ public class FeedbackLanguages {
         updateTranslationFollowsText();
     }
 
+    @Override
+    public void onApplicationEvent(SettingValuesUpdated event) {
+        if (event.isChanged(Settings.SYSTEM_FEEDBACK_LANGUAGES)) {
+            updateSupportedLocales();
+        }
+        if (event.isChanged(Settings.SYSTEM_FEEDBACK_TRANSLATION_FOLLOWS_TEXT)) {
+            updateTranslationFollowsText();
+        }
+    }
+
     /**
      * Updates the supported locales based on the system feedback languages setting.
      */
@@ -273,6 +273,7 @@ public final class XslUtil {
         throw new IllegalArgumentException(message);
     }
 
+    private static final String DATA_URL_SUPPORTED_EXTENSIONS = "jpg|jpeg|png|gif|tif|tiff";
     private static final char TS_DEFAULT = ' ';
     private static final char CS_DEFAULT = ',';
     private static final char TS_WKT = ',';
@@ -1284,11 +1285,7 @@ public final class XslUtil {
      * Build data URL like data:image/png;base64, iVBORw...
      */
     public static String buildDataUrl(String url, Integer size) {
-        StringBuilder sb = new StringBuilder("data:");
-        String supportedExtension = "jpg|jpeg|png|gif|tif|tiff";
-
-        String extension = Files.getFileExtension(url).toLowerCase();
-        if (extension.matches(supportedExtension)) {
+        if (isDataUrlSupported(url)) {
 
             InputStream in = null;
             try {
@@ -1314,16 +1311,7 @@ public final class XslUtil {
                 }
 
                 if (image != null) {
-                    BufferedImage resized = ImageUtil.resize(image, size != null ? size : 140);
-                    ByteArrayOutputStream output = new ByteArrayOutputStream();
-                    ImageIO.write(resized, "png", output);
-                    output.flush();
-                    byte[] imagesB = output.toByteArray();
-                    output.close();
-
-                    sb.append("image/png;base64, ");
-                    sb.append(Base64.getEncoder().encodeToString(imagesB));
-                    return sb.toString();
+                    return toDataUrl(image, size);
                 } else {
                     Log.info(Geonet.GEONETWORK, String.format(
                         "Image '%s' is null and can't be converted to Data URL.",
@@ -1339,11 +1327,34 @@ public final class XslUtil {
         } else {
             Log.info(Geonet.GEONETWORK, String.format(
                 "Image '%s' is not of one supported type %s and can't be encoded as a data URL.",
-                url, supportedExtension));
+                url, DATA_URL_SUPPORTED_EXTENSIONS));
         }
         return "";
     }
 
+    /**
+     * @return true if the image of the URL is of a type which can be encoded by {@link #buildDataUrl(String, Integer)}.
+     */
+    public static boolean isDataUrlSupported(String url) {
+        return Files.getFileExtension(url).toLowerCase().matches(DATA_URL_SUPPORTED_EXTENSIONS);
+    }
+
+    /**
+     * Resize an image and encode it as a PNG data URL.
+     *
+     * @param size The width of the resized image (140 if null).
+     */
+    public static String toDataUrl(BufferedImage image, Integer size) throws IOException {
+        BufferedImage resized = ImageUtil.resize(image, size != null ? size : 140);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(resized, "png", output);
+        output.flush();
+        byte[] imagesB = output.toByteArray();
+        output.close();
+
+        return "data:image/png;base64, " + Base64.getEncoder().encodeToString(imagesB);
+    }
+
     public static String encodeForJavaScript(String str) {
         return DefaultEncoder.getInstance().encodeForJavaScript(str);
     }
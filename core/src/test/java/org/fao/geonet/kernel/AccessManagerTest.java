@@ -22,13 +22,23 @@
  */
 package org.fao.geonet.kernel;
 
+import jeeves.server.UserSession;
 import org.fao.geonet.AbstractCoreIntegrationTest;
+import org.fao.geonet.domain.Group;
+import org.fao.geonet.domain.Profile;
+import org.fao.geonet.domain.User;
+import org.fao.geonet.domain.UserGroup;
 import org.fao.geonet.kernel.setting.SettingManager;
 import org.fao.geonet.kernel.setting.Settings;
+import org.fao.geonet.repository.GroupRepositoryTest;
+import org.fao.geonet.repository.UserRepositoryTest;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -102,4 +112,25 @@ public class AccessManagerTest extends AbstractCoreIntegrationTest {
         assertFalse(accessManager.isIntranet("192.168.1.0"));
         assertFalse(accessManager.isIntranet("194.168.1.0"));
     }
+
+    @Test
+    public void testSessionGroupsFollowMembershipChanges() throws Exception {
+        AtomicInteger inc = new AtomicInteger();
+        User user = _userRepo.save(UserRepositoryTest.newUser(inc).setProfile(Profile.Editor));
+        Group editingGroup = _groupRepo.save(GroupRepositoryTest.newGroup(inc));
+        _userGroupRepo.save(new UserGroup().setUser(user).setGroup(editingGroup).setProfile(Profile.Editor));
+
+        UserSession session = new UserSession();
+        session.loginAs(user);
+
+        assertTrue(accessManager.getUserGroups(session, null, true).contains(editingGroup.getId()));
+        assertSame(accessManager.getSessionGroups(session), accessManager.getSessionGroups(session));
+
+        Group reviewingGroup = _groupRepo.save(GroupRepositoryTest.newGroup(inc));
+        _userGroupRepo.save(new UserGroup().setUser(user).setGroup(reviewingGroup).setProfile(Profile.Reviewer));
+
+        assertTrue(accessManager.getUserGroups(session, null, false).contains(reviewingGroup.getId()));
+        assertFalse(accessManager.getUserGroups(session, null, true).contains(reviewingGroup.getId()));
+        assertTrue(accessManager.getReviewerGroups(session).contains(reviewingGroup.getId()));
+    }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.kernel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Loading of the schema plugins on startup, in the order of their dependencies.
+ */
+public class SchemaManagerTest {
+    private ExecutorService executor;
+    private final List<String> events = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSchemasLoadedAfterTheirDependencies() throws Exception {
+        Map<String, List<String>> dependencies = new LinkedHashMap<>();
+        dependencies.put("iso19139.profile", List.of("iso19139"));
+        dependencies.put("iso19139", List.of("iso19115-3"));
+        dependencies.put("iso19115-3", Collections.emptyList());
+        dependencies.put("dublin-core", Collections.emptyList());
+
+        Map<String, CompletableFuture<String>> loading = SchemaManager.scheduleLoading(dependencies, this::load, executor);
+
+        assertEquals(dependencies.keySet(), loading.keySet());
+        for (Map.Entry<String, CompletableFuture<String>> schema : loading.entrySet()) {
+            assertEquals(schema.getKey(), schema.getValue().get(5, TimeUnit.SECONDS));
+        }
+        assertTrue(events.indexOf("loaded iso19115-3") < events.indexOf("loading iso19139"));
+        assertTrue(events.indexOf("loaded iso19139") < events.indexOf("loading iso19139.profile"));
+    }
+
+    @Test
+    public void testDependencyCycleDoesNotBlockLoading() throws Exception {
+        Map<String, List<String>> dependencies = new LinkedHashMap<>();
+        dependencies.put("a", List.of("b"));
+        dependencies.put("b", List.of("c"));
+        dependencies.put("c", List.of("a"));
+
+        Map<String, CompletableFuture<String>> loading = SchemaManager.scheduleLoading(dependencies, this::load, executor);
+
+        for (String schemaName : dependencies.keySet()) {
+            assertEquals(schemaName, loading.get(schemaName).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(6, events.size());
+    }
+
+    @Test
+    public void testMissingDependencyIgnored() throws Exception {
+        Map<String, List<String>> dependencies = new LinkedHashMap<>();
+        dependencies.put("iso19139.profile", List.of("iso19139"));
+
+        Map<String, CompletableFuture<String>> loading = SchemaManager.scheduleLoading(dependencies, this::load, executor);
+
+        assertEquals("iso19139.profile", loading.get("iso19139.profile").get(5, TimeUnit.SECONDS));
+        assertFalse(loading.containsKey("iso19139"));
+    }
+
+    @Test
+    public void testSchemaNotLoadedWhenDependencyFails() throws Exception {
+        Map<String, List<String>> dependencies = new LinkedHashMap<>();
+        dependencies.put("iso19139.profile", List.of("iso19139"));
+        dependencies.put("iso19139", Collections.emptyList());
+
+        Map<String, CompletableFuture<String>> loading = SchemaManager.scheduleLoading(dependencies, schemaName -> {
+            if (schemaName.equals("iso19139")) {
+                throw new IllegalStateException("Invalid XSD");
+            }
+            return load(schemaName);
+        }, executor);
+
+        for (String schemaName : dependencies.keySet()) {
+            try {
+                loading.get(schemaName).get(5, TimeUnit.SECONDS);
+                fail("Loading of " + schemaName + " should fail");
+            } catch (ExecutionException e) {
+                assertEquals("Invalid XSD", e.getCause().getMessage());
+            }
+        }
+        assertTrue(events.isEmpty());
+    }
+
+    private String load(String schemaName) throws InterruptedException {
+        events.add("loading " + schemaName);
+        Thread.sleep(20);
+        events.add("loaded " + schemaName);
+        return schemaName;
+    }
+}
@@ -31,11 +31,13 @@ import org.fao.geonet.kernel.rdf.Selectors;
 import org.fao.geonet.kernel.rdf.Where;
 import org.fao.geonet.kernel.rdf.Wheres;
 import org.fao.geonet.kernel.search.keyword.KeywordRelation;
+import org.fao.geonet.kernel.search.keyword.KeywordSearchType;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.openrdf.model.GraphException;
+import org.openrdf.sesame.Sesame;
 import org.openrdf.sesame.config.AccessDeniedException;
 import org.openrdf.sesame.config.ConfigurationException;
 import org.openrdf.sesame.query.MalformedQueryException;
@@ -43,7 +45,15 @@ import org.openrdf.sesame.query.QueryEvaluationException;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -386,6 +396,42 @@ public class ThesaurusTest extends AbstractThesaurusBasedTest {
         assertFalse(result);
     }
 
+    @Test
+    public void testConcurrentReadsDuringUpdates() throws Exception {
+        addKeywordToWritableThesaurus(TEST_KEYWORD + "0");
+        final int updates = 30;
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                readers.add(executor.submit(() -> {
+                    int lastCount = 0;
+                    for (int j = 0; j < 50; j++) {
+                        assertTrue(writableThesaurus.hasKeyword(TEST_KEYWORD + "0"));
+                        int count = QueryBuilder.keywordQueryBuilder(isoLangMapper, "eng").build()
+                            .execute(writableThesaurus).size();
+                        // Changes are applied atomically and in order
+                        assertTrue(count >= lastCount);
+                        lastCount = count;
+                    }
+                    return lastCount;
+                }));
+            }
+            for (int i = 1; i <= updates; i++) {
+                addKeywordToWritableThesaurus(TEST_KEYWORD + i);
+            }
+            for (Future<Integer> reader : readers) {
+                assertTrue(reader.get(1, TimeUnit.MINUTES) <= updates + 1);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(updates + 1, QueryBuilder.keywordQueryBuilder(isoLangMapper, "eng").build()
+            .execute(writableThesaurus).size());
+    }
+
     private void addKeywordToWritableThesaurus(String uri)
         throws IOException, AccessDeniedException, GraphException {
         KeywordBean keyword = new KeywordBean(isoLangMapper);
@@ -403,4 +449,140 @@ public class ThesaurusTest extends AbstractThesaurusBasedTest {
         assertEquals(1, hierarchy.size());
         assertEquals("140_testValue_eng", hierarchy.get(0));
     }
+
+    @Test
+    public void testConceptIndexSearchMatchesQuery() throws Exception {
+        String[][] searches = {
+            {"STARTS_WITH", "12_"}, {"CONTAINS", "2_testvalue_fr"}, {"MATCH", createExampleLabel(12, "eng")}};
+        for (String[] search : searches) {
+            KeywordSearchType type = KeywordSearchType.valueOf(search[0]);
+            Where where = type.toWhere("eng" + Selectors.LABEL_POSTFIX, search[1], true)
+                .or(type.toWhere("fre" + Selectors.LABEL_POSTFIX, search[1], true));
+            Set<String> expected = new HashSet<>();
+            for (KeywordBean keyword : QueryBuilder.keywordQueryBuilder(isoLangMapper, "eng", "fre").where(where).build().execute(thesaurus)) {
+                expected.add(keyword.getUriCode());
+            }
+
+            List<KeywordBean> found = thesaurus.searchConcepts(
+                new ThesaurusConceptIndex.ConceptQuery(Arrays.asList("eng", "fre"), false).label(type, search[1], true), -1);
+            Set<String> foundUris = new HashSet<>();
+            for (KeywordBean keyword : found) {
+                foundUris.add(keyword.getUriCode());
+                assertEquals(thesaurus.getKey(), keyword.getThesaurusKey());
+            }
+            assertFalse(expected.isEmpty());
+            assertEquals(search[0], expected, foundUris);
+        }
+
+        KeywordBean keyword = thesaurus.searchConcepts(new ThesaurusConceptIndex.ConceptQuery(Arrays.asList("eng", "ger"), true)
+            .label(KeywordSearchType.MATCH, createExampleLabel(12, "eng"), false), -1).get(0);
+        assertEquals(createExampleLabel(12, "ger"), keyword.getValues().get("ger"));
+        assertEquals(createExampleNote(12, "eng"), keyword.getDefinitions().get("eng"));
+        assertEquals("0", keyword.getCoordEast());
+        assertEquals("10", keyword.getCoordWest());
+        assertEquals("5", keyword.getCoordSouth());
+        assertEquals("15", keyword.getCoordNorth());
+
+        List<KeywordBean> fuzzy = thesaurus.searchConcepts(new ThesaurusConceptIndex.ConceptQuery(Arrays.asList("eng"), false)
+            .label(KeywordSearchType.FUZZY, "12_tesValue_eng", true), -1);
+        assertTrue(fuzzy.stream().anyMatch(k -> k.getUriCode().equals(THESAURUS_KEYWORD_NS + 12)));
+    }
+
+    @Test
+    public void testConceptIndexFollowsUpdates() throws Exception {
+        ThesaurusConceptIndex.ConceptQuery zebra = new ThesaurusConceptIndex.ConceptQuery(Arrays.asList("eng"), false)
+            .label(KeywordSearchType.STARTS_WITH, "zeb", true);
+        ThesaurusConceptIndex.ConceptQuery quagga = new ThesaurusConceptIndex.ConceptQuery(Arrays.asList("eng"), false)
+            .label(KeywordSearchType.STARTS_WITH, "quag", true);
+        assertTrue(writableThesaurus.searchConcepts(zebra, -1).isEmpty());
+
+        writableThesaurus.addElement(new KeywordBean(isoLangMapper).setUriCode(TEST_KEYWORD + "1").setValue("Zebra", "eng"));
+        writableThesaurus.addElement(new KeywordBean(isoLangMapper).setUriCode(TEST_KEYWORD + "2").setValue("Equus", "eng"));
+        assertEquals(1, writableThesaurus.searchConcepts(zebra, -1).size());
+
+        writableThesaurus.updateElement(new KeywordBean(isoLangMapper).setUriCode(TEST_KEYWORD + "1").setValue("Quagga", "eng"), true);
+        assertTrue(writableThesaurus.searchConcepts(zebra, -1).isEmpty());
+        assertEquals("Quagga", writableThesaurus.searchConcepts(quagga, -1).get(0).getValues().get("eng"));
+
+        writableThesaurus.addRelation(TEST_KEYWORD + "2", KeywordRelation.NARROWER, TEST_KEYWORD + "1");
+        assertEquals(TEST_KEYWORD + "2", writableThesaurus.getBroader(TEST_KEYWORD + "1", "eng").get(0).getUriCode());
+        assertEquals(TEST_KEYWORD + "1", writableThesaurus.getNarrower(TEST_KEYWORD + "2", "eng").get(0).getUriCode());
+
+        writableThesaurus.removeElement(TEST_KEYWORD + "1");
+        assertTrue(writableThesaurus.searchConcepts(quagga, -1).isEmpty());
+        assertFalse(writableThesaurus.hasKeyword(TEST_KEYWORD + "1"));
+    }
+
+    @Test
+    public void testLoadFromSnapshot() throws Exception {
+        thesaurus.writeSnapshot();
+        assertTrue(thesaurus.hasUpToDateSnapshot());
+
+        Thesaurus fromSnapshot = new Thesaurus(isoLangMapper, thesaurusFile.getFileName().toString(), "test", "snapshot",
+            thesaurusFile, "http://concept", 0);
+        fromSnapshot.setRepository(Sesame.getService().createRepository(fromSnapshot.buildRepositoryConfig(true)), true);
+        try {
+            assertEquals(QueryBuilder.keywordQueryBuilder(isoLangMapper, "eng").build().execute(thesaurus).size(),
+                QueryBuilder.keywordQueryBuilder(isoLangMapper, "eng").build().execute(fromSnapshot).size());
+
+            // Edits are written to the RDF file and the snapshot stays in sync
+            fromSnapshot.addElement(new KeywordBean(isoLangMapper).setUriCode(TEST_KEYWORD).setValue("Snapshot", "eng"));
+            assertTrue(fromSnapshot.hasUpToDateSnapshot());
+        } finally {
+            fromSnapshot.getRepository().shutDown();
+        }
+
+        Thesaurus fromFile = new Thesaurus(isoLangMapper, thesaurusFile.getFileName().toString(), "test", "file",
+            thesaurusFile, "http://concept", 0);
+        fromFile.initRepository();
+        try {
+            assertTrue(fromFile.hasKeyword(TEST_KEYWORD));
+        } finally {
+            fromFile.getRepository().shutDown();
+        }
+    }
+
+    @Test
+    public void testConcurrentEditsOfSnapshotAreWrittenToFile() throws Exception {
+        thesaurus.writeSnapshot();
+        Thesaurus fromSnapshot = new Thesaurus(isoLangMapper, thesaurusFile.getFileName().toString(), "test", "snapshot",
+            thesaurusFile, "http://concept", 0);
+        fromSnapshot.setRepository(Sesame.getService().createRepository(fromSnapshot.buildRepositoryConfig(true)), true);
+        final int threads = 4;
+        final int edits = 5;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                final int thread = i;
+                writers.add(executor.submit(() -> {
+                    for (int j = 0; j < edits; j++) {
+                        fromSnapshot.addElement(new KeywordBean(isoLangMapper)
+                            .setUriCode(TEST_KEYWORD + thread + "_" + j).setValue("Snapshot", "eng"));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(1, TimeUnit.MINUTES);
+            }
+            assertTrue(fromSnapshot.hasUpToDateSnapshot());
+        } finally {
+            executor.shutdownNow();
+            fromSnapshot.getRepository().shutDown();
+        }
+
+        Thesaurus fromFile = new Thesaurus(isoLangMapper, thesaurusFile.getFileName().toString(), "test", "file",
+            thesaurusFile, "http://concept", 0);
+        fromFile.initRepository();
+        try {
+            for (int i = 0; i < threads; i++) {
+                for (int j = 0; j < edits; j++) {
+                    assertTrue(fromFile.hasKeyword(TEST_KEYWORD + i + "_" + j));
+                }
+            }
+        } finally {
+            fromFile.getRepository().shutDown();
+        }
+    }
 }
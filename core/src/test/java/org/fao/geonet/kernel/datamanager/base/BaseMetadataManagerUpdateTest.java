@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel.datamanager.base;
+
+import jeeves.server.context.ServiceContext;
+import org.fao.geonet.domain.AbstractMetadata;
+import org.fao.geonet.domain.Metadata;
+import org.fao.geonet.domain.MetadataType;
+import org.fao.geonet.kernel.EditLib;
+import org.fao.geonet.kernel.SchemaManager;
+import org.fao.geonet.kernel.XmlSerializer;
+import org.fao.geonet.kernel.datamanager.IMetadataIndexer;
+import org.fao.geonet.kernel.datamanager.IMetadataSchemaUtils;
+import org.fao.geonet.kernel.datamanager.IMetadataUtils;
+import org.fao.geonet.kernel.datamanager.IMetadataValidator;
+import org.fao.geonet.kernel.datamanager.MetadataLocks;
+import org.fao.geonet.kernel.schema.MetadataSchema;
+import org.fao.geonet.kernel.search.IndexingMode;
+import org.jdom.Element;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests the record lock and the editing version check of {@link BaseMetadataManager#updateMetadata}.
+ */
+public class BaseMetadataManagerUpdateTest {
+    private static final String SCHEMA = "iso19139";
+
+    private BaseMetadataManager metadataManager;
+    private XmlSerializer xmlSerializer;
+    private EditLib editLib;
+    private ServiceContext context;
+
+    @Before
+    public void setUp() throws Exception {
+        IMetadataUtils metadataUtils = Mockito.mock(IMetadataUtils.class);
+        Metadata record = new Metadata();
+        record.getDataInfo().setSchemaId(SCHEMA).setType(MetadataType.METADATA);
+        Mockito.when(metadataUtils.findOne(anyString())).thenReturn(record);
+        Mockito.when(metadataUtils.extractUUID(anyString(), any(Element.class))).thenReturn("uuid");
+
+        IMetadataSchemaUtils metadataSchemaUtils = Mockito.mock(IMetadataSchemaUtils.class);
+        Mockito.when(metadataSchemaUtils.getMetadataSchema(anyString())).thenReturn(SCHEMA);
+        MetadataSchema schema = Mockito.mock(MetadataSchema.class);
+        Mockito.when(schema.isReadwriteUUID()).thenReturn(true);
+        SchemaManager schemaManager = Mockito.mock(SchemaManager.class);
+        Mockito.when(schemaManager.getSchema(SCHEMA)).thenReturn(schema);
+
+        xmlSerializer = Mockito.mock(XmlSerializer.class);
+
+        metadataManager = new BaseMetadataManager();
+        ReflectionTestUtils.setField(metadataManager, "metadataUtils", metadataUtils);
+        ReflectionTestUtils.setField(metadataManager, "metadataSchemaUtils", metadataSchemaUtils);
+        ReflectionTestUtils.setField(metadataManager, "schemaManager", schemaManager);
+        ReflectionTestUtils.setField(metadataManager, "metadataValidator", Mockito.mock(IMetadataValidator.class));
+        ReflectionTestUtils.setField(metadataManager, "metadataIndexer", Mockito.mock(IMetadataIndexer.class));
+        ReflectionTestUtils.setField(metadataManager, "xmlSerializer", xmlSerializer);
+        metadataManager.init();
+        editLib = (EditLib) ReflectionTestUtils.getField(metadataManager, "editLib");
+
+        context = Mockito.mock(ServiceContext.class);
+    }
+
+    @Test
+    public void testCurrentVersionIsSaved() throws Exception {
+        String version = editLib.getNewVersion("1");
+
+        assertNotNull(update("1", version));
+        verify(xmlSerializer).update(eq("1"), any(Element.class), any(), anyBoolean(), eq("uuid"), eq(context));
+    }
+
+    @Test
+    public void testStaleVersionIsNotSaved() throws Exception {
+        String version = editLib.getNewVersion("2");
+        // The record is opened for editing again before the save
+        editLib.getNewVersion("2");
+
+        assertNull(update("2", version));
+        verify(xmlSerializer, never()).update(anyString(), any(Element.class), any(), anyBoolean(), any(), any());
+    }
+
+    @Test
+    public void testUpdatesOfOneRecordAreSerialized() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Lock lock = MetadataLocks.get(3);
+            CompletableFuture<AbstractMetadata> sameRecord;
+            lock.lock();
+            try {
+                sameRecord = CompletableFuture.supplyAsync(() -> updateUnchecked("3"), executor);
+                try {
+                    sameRecord.get(200, TimeUnit.MILLISECONDS);
+                    fail("The record is being updated by another thread");
+                } catch (TimeoutException e) {
+                    // Waits for the lock
+                }
+
+                // Other records are not blocked, as long as they do not share the lock
+                String otherRecord = MetadataLocks.get(4) == lock ? "5" : "4";
+                assertNotNull(update(otherRecord, null));
+            } finally {
+                lock.unlock();
+            }
+            assertNotNull(sameRecord.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private AbstractMetadata update(String id, String expectedVersion) throws Exception {
+        return metadataManager.updateMetadata(context, id, new Element("MD_Metadata"), false, false, "eng",
+            null, false, IndexingMode.none, expectedVersion);
+    }
+
+    private AbstractMetadata updateUnchecked(String id) {
+        try {
+            return update(id, null);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.kernel.datamanager.base;
+
+import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.core.Timer;
+import com.yammer.metrics.core.TimerContext;
+import jeeves.monitor.MonitorManager;
+import org.fao.geonet.domain.AbstractMetadata;
+import org.fao.geonet.domain.Metadata;
+import org.fao.geonet.kernel.search.IndexingMode;
+import org.fao.geonet.kernel.search.index.BatchIndexingListener;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+
+public class MetadataIndexingPipelineTest {
+    private BaseMetadataIndexer indexer;
+    private List<List<Integer>> loadedChunks;
+    private Set<Thread> transformThreads;
+    private List<String> indexed;
+    private List<String> errors;
+    private BatchIndexingListener listener;
+
+    @Before
+    public void setUp() throws Exception {
+        indexer = Mockito.mock(BaseMetadataIndexer.class);
+        indexer.monitorManager = Mockito.mock(MonitorManager.class);
+        Timer timer = Mockito.mock(Timer.class);
+        Mockito.when(timer.time()).thenReturn(Mockito.mock(TimerContext.class));
+        Mockito.when(indexer.monitorManager.getTimer(any())).thenReturn(timer);
+        Mockito.when(indexer.monitorManager.getMeter(any())).thenReturn(Mockito.mock(Meter.class));
+
+        loadedChunks = new CopyOnWriteArrayList<>();
+        Mockito.when(indexer.loadBatch(anyCollection())).thenAnswer(invocation -> {
+            Collection<Integer> ids = invocation.getArgument(0);
+            loadedChunks.add(new ArrayList<>(ids));
+            IndexingBatch batch = new IndexingBatch();
+            for (Integer id : ids) {
+                // Record 13 was removed after the list of records to index was built
+                if (id != 13) {
+                    batch.metadata.put(id, new Metadata().setId(id));
+                }
+            }
+            return batch;
+        });
+        Mockito.when(indexer.prepareRecord(any(AbstractMetadata.class), any(IndexingBatch.class))).thenAnswer(invocation ->
+            new BaseMetadataIndexer.PreparedRecord(invocation.getArgument(0), "key", null, true));
+
+        transformThreads = ConcurrentHashMap.newKeySet();
+        Mockito.doAnswer(invocation -> {
+            BaseMetadataIndexer.PreparedRecord record = invocation.getArgument(0);
+            transformThreads.add(Thread.currentThread());
+            if (record.metadata.getId() == 12) {
+                throw new IllegalStateException("Invalid record");
+            }
+            return null;
+        }).when(indexer).indexPreparedRecord(any(BaseMetadataIndexer.PreparedRecord.class), anyBoolean(), any(IndexingMode.class));
+
+        indexed = new CopyOnWriteArrayList<>();
+        errors = new CopyOnWriteArrayList<>();
+        listener = new BatchIndexingListener() {
+            @Override
+            public void onIndexed(String metadataId) {
+                indexed.add(metadataId);
+            }
+
+            @Override
+            public void onError(String metadataId, Exception e) {
+                errors.add(metadataId);
+            }
+        };
+    }
+
+    @Test
+    public void testAllRecordsAreIndexedOnce() throws Exception {
+        List<Integer> ids = IntStream.rangeClosed(20, 119).boxed().collect(Collectors.toList());
+
+        new MetadataIndexingPipeline(indexer, null, 7, 4, 2).run(ids, IndexingMode.full, listener);
+
+        assertEquals(100, indexed.size());
+        assertEquals(ids.stream().map(String::valueOf).collect(Collectors.toSet()), new HashSet<>(indexed));
+        assertTrue(errors.isEmpty());
+        // The database stage loads chunks of batchSize records, in the calling thread
+        assertEquals(15, loadedChunks.size());
+        assertEquals(ids.subList(0, 7), loadedChunks.get(0));
+        assertEquals(ids.subList(98, 100), loadedChunks.get(14));
+        assertFalse(transformThreads.isEmpty());
+        assertTrue(transformThreads.size() <= 4);
+        assertFalse(transformThreads.contains(Thread.currentThread()));
+        Mockito.verify(indexer, Mockito.times(100)).publishIndexCompleted(any(AbstractMetadata.class));
+    }
+
+    @Test
+    public void testErrorsAreReportedAndDoNotStopTheBatch() throws Exception {
+        List<Object> ids = Arrays.asList(11, "12", "not-an-id", 13, 14);
+
+        new MetadataIndexingPipeline(indexer, null, 2, 2, 1).run(ids, IndexingMode.full, listener);
+
+        assertEquals(Arrays.asList("11", "14"), sorted(indexed));
+        assertEquals(Arrays.asList("12", "13", "not-an-id"), sorted(errors));
+    }
+
+    @Test
+    public void testChunkLoadErrorSkipsTheChunk() throws Exception {
+        Mockito.doThrow(new IllegalStateException("Database down"))
+            .doAnswer(invocation -> {
+                IndexingBatch batch = new IndexingBatch();
+                for (Integer id : invocation.<Collection<Integer>>getArgument(0)) {
+                    batch.metadata.put(id, new Metadata().setId(id));
+                }
+                return batch;
+            })
+            .when(indexer).loadBatch(anyCollection());
+
+        new MetadataIndexingPipeline(indexer, null, 2, 2, 1).run(Arrays.asList(1, 2, 3, 4), IndexingMode.full, listener);
+
+        assertEquals(Arrays.asList("3", "4"), sorted(indexed));
+        assertEquals(Arrays.asList("1", "2"), sorted(errors));
+    }
+
+    private static List<String> sorted(List<String> values) {
+        return values.stream().sorted().collect(Collectors.toList());
+    }
+}
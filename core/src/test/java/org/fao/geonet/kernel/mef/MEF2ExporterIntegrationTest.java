@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.kernel.mef;
+
+import jeeves.server.context.ServiceContext;
+import org.fao.geonet.AbstractCoreIntegrationTest;
+import org.fao.geonet.constants.Geonet;
+import org.fao.geonet.kernel.GeonetworkDataDirectory;
+import org.fao.geonet.kernel.datamanager.IMetadataManager;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MEF2ExporterIntegrationTest extends AbstractCoreIntegrationTest {
+    private static final String FIRST_UUID = "da165110-88fd-11da-a88f-000d939bc5d8";
+    private static final String SECOND_UUID = "0e1943d6-64e8-4430-827c-b465c3e9e55c";
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private IMetadataManager metadataManager;
+
+    @Test
+    public void testStreamedExport() throws Exception {
+        ServiceContext context = createServiceContext();
+        loginAsAdmin(context);
+
+        // The record folders are built by other threads, which only see committed records
+        List<String> ids = inNewTransaction(() -> {
+            MEFLibIntegrationTest.ImportMetadata importMetadata = new MEFLibIntegrationTest.ImportMetadata(this, context);
+            importMetadata.getMefFilesToLoad().clear();
+            importMetadata.getMefFilesToLoad().add("mef2-example-2md.zip");
+            return importMetadata.invoke().getMetadataIds();
+        });
+        try {
+            Set<String> uuids = new LinkedHashSet<>(List.of(SECOND_UUID, FIRST_UUID));
+            Path stylePath = context.getBean(GeonetworkDataDirectory.class).getWebappDir().resolve(Geonet.Path.SCHEMAS);
+            boolean[] closed = new boolean[1];
+            ByteArrayOutputStream output = new ByteArrayOutputStream() {
+                @Override
+                public void close() {
+                    closed[0] = true;
+                }
+            };
+
+            MEF2Exporter.doExport(context, uuids, MEFLib.Format.FULL, false, stylePath, false, false,
+                false, true, false, true, 1, output);
+
+            assertFalse("The output stream is left open", closed[0]);
+            List<String> entries = new ArrayList<>();
+            try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+                for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                    entries.add(entry.getName());
+                }
+            }
+            // The folders are in the order of the selection, followed by the indexes
+            int second = entries.indexOf(SECOND_UUID + "/metadata/metadata.xml");
+            int first = entries.indexOf(FIRST_UUID + "/metadata/metadata.xml");
+            assertTrue(entries.toString(), second >= 0 && first > second);
+            assertTrue(entries.contains(FIRST_UUID + "/info.xml"));
+            assertTrue(entries.contains(FIRST_UUID + "/private/basins.zip"));
+            assertTrue(entries.contains(FIRST_UUID + "/public/thumbnail.gif"));
+            assertTrue(entries.contains(SECOND_UUID + "/info.xml"));
+            assertEquals(List.of("index.csv", "index.html"), entries.subList(entries.size() - 2, entries.size()));
+
+            // The export threads do not keep the service context
+            ServiceContext.clearAsThreadLocal();
+            List<Future<Boolean>> leftovers = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                leftovers.add(MEF2Exporter.EXECUTOR.submit(() -> ServiceContext.get() == null));
+            }
+            for (Future<Boolean> leftover : leftovers) {
+                assertTrue(leftover.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            context.setAsThreadLocal();
+            inNewTransaction(() -> {
+                for (String id : ids) {
+                    metadataManager.deleteMetadata(context, id);
+                }
+                return null;
+            });
+        }
+    }
+
+    private <T> T inNewTransaction(Callable<T> action) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template.execute(status -> {
+            try {
+                return action.call();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel.oaipmh;
+
+import org.fao.geonet.domain.ISODate;
+import org.fao.geonet.utils.GeonetHttpRequestFactory;
+import org.fao.oaipmh.exceptions.BadResumptionTokenException;
+import org.fao.oaipmh.requests.ListRecordsRequest;
+import org.fao.oaipmh.responses.GeonetworkResumptionToken;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GeonetworkResumptionTokenTest {
+
+    @Test
+    public void testTokenCarriesSearchCursor() throws Exception {
+        ListRecordsRequest req = new ListRecordsRequest(new GeonetHttpRequestFactory());
+        req.setMetadataPrefix("iso19139");
+        req.setSet("maps");
+        req.setFrom(new ISODate("2020-01-01"));
+
+        GeonetworkResumptionToken token = new GeonetworkResumptionToken(req);
+        assertEquals(0, token.getPos());
+        assertEquals("", token.getSearchAfter());
+
+        token.setupToken(50, "1234", true, 120);
+        assertEquals(Integer.valueOf(0), token.getCursor());
+        assertEquals(Integer.valueOf(120), token.getListSize());
+
+        ListRecordsRequest next = new ListRecordsRequest(new GeonetHttpRequestFactory());
+        next.setResumptionToken(token.getToken());
+        GeonetworkResumptionToken resumed = new GeonetworkResumptionToken(next);
+
+        assertEquals(token.getKey(), resumed.getKey());
+        assertEquals(50, resumed.getPos());
+        assertEquals("1234", resumed.getSearchAfter());
+        assertEquals("maps", resumed.getSet());
+        assertEquals("iso19139", resumed.getPrefix());
+        assertEquals("2020-01-01", resumed.getFrom());
+        assertEquals("", resumed.getUntil());
+
+        resumed.setupToken(100, "5678", false, 120);
+        assertEquals(Integer.valueOf(50), resumed.getCursor());
+        assertTrue(resumed.isTokenEmpty());
+        assertEquals("", resumed.getToken());
+    }
+
+    @Test(expected = BadResumptionTokenException.class)
+    public void testBadPosition() throws Exception {
+        ListRecordsRequest req = new ListRecordsRequest(new GeonetHttpRequestFactory());
+        req.setResumptionToken("/-/iso19139/-//-//-/abc/-/notanumber/-/12");
+        new GeonetworkResumptionToken(req);
+    }
+}
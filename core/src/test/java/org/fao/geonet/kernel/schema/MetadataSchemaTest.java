@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.kernel.schema;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetadataSchemaTest {
+    private static final String CACHED = "<cached/>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path basePath;
+    private Path schematronDir;
+    private Path cacheDir;
+    private MetadataSchema schema;
+
+    @Before
+    public void setUp() throws Exception {
+        basePath = folder.newFolder("webapp").toPath();
+        Path resourceDir = Files.createDirectories(basePath.resolve("WEB-INF/classes/schematron"));
+        write(resourceDir.resolve("iso_abstract_expand.xsl"),
+            "<xsl:stylesheet version=\"2.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+                + "<xsl:template match=\"/\"><xsl:copy-of select=\".\"/></xsl:template>"
+                + "</xsl:stylesheet>");
+        write(resourceDir.resolve("iso_svrl_for_xslt2.xsl"),
+            "<xsl:stylesheet version=\"2.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+                + "<xsl:template match=\"/\"><compiled/></xsl:template>"
+                + "</xsl:stylesheet>");
+
+        Path schemaDir = folder.newFolder("test-schema").toPath();
+        schematronDir = Files.createDirectories(schemaDir.resolve(MetadataSchema.SCHEMATRON_DIR));
+        write(schematronDir.resolve("schematron-rules-test.sch"),
+            "<sch:schema xmlns:sch=\"http://purl.oclc.org/dsdl/schematron\"/>");
+        write(Files.createDirectories(schematronDir.resolve("include")).resolve("helper.xsl"), "<helper/>");
+        cacheDir = folder.getRoot().toPath().resolve("cache");
+
+        schema = new MetadataSchema(null, null);
+        schema.setName("test-schema");
+        schema.setSchemaDir(schemaDir);
+    }
+
+    @Test
+    public void testCompiledRuleReusedWhileUnchanged() throws Exception {
+        schema.buildchematronRules(basePath, cacheDir);
+        Path compiledRule = schematronDir.resolve("schematron-rules-test.xsl");
+        assertTrue(read(compiledRule).contains("<compiled"));
+
+        write(getCacheEntry(), CACHED);
+        schema.buildchematronRules(basePath, cacheDir);
+
+        assertEquals(CACHED, read(compiledRule));
+    }
+
+    @Test
+    public void testRuleCompiledAgainWhenHelperChanges() throws Exception {
+        schema.buildchematronRules(basePath, cacheDir);
+        Path previous = getCacheEntry();
+        write(previous, CACHED);
+
+        write(schematronDir.resolve("include/helper.xsl"), "<helper version=\"2\"/>");
+        schema.buildchematronRules(basePath, cacheDir);
+
+        assertTrue(read(schematronDir.resolve("schematron-rules-test.xsl")).contains("<compiled"));
+        // The entry of the previous version is replaced
+        assertNotEquals(previous, getCacheEntry());
+    }
+
+    @Test
+    public void testContentHash() throws Exception {
+        Path resourceDir = basePath.resolve("WEB-INF/classes/schematron");
+        String hash = MetadataSchema.getSchematronContentHash(resourceDir, schematronDir);
+
+        // Compiled rules are not part of the hash
+        schema.buildchematronRules(basePath, null);
+        assertEquals(hash, MetadataSchema.getSchematronContentHash(resourceDir, schematronDir));
+
+        write(schematronDir.resolve("utility.xsl"), "<utility/>");
+        String withHelper = MetadataSchema.getSchematronContentHash(resourceDir, schematronDir);
+        assertNotEquals(hash, withHelper);
+
+        write(schematronDir.resolve("include/helper.xsl"), "<helper version=\"2\"/>");
+        assertNotEquals(withHelper, MetadataSchema.getSchematronContentHash(resourceDir, schematronDir));
+    }
+
+    private Path getCacheEntry() throws Exception {
+        try (Stream<Path> entries = Files.list(cacheDir)) {
+            List<Path> files = entries.collect(Collectors.toList());
+            assertEquals(1, files.size());
+            return files.get(0);
+        }
+    }
+
+    private static void write(Path file, String content) throws Exception {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(Path file) throws Exception {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+}
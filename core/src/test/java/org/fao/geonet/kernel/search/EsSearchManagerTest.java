@@ -1,29 +1,47 @@
 package org.fao.geonet.kernel.search;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.elasticsearch._types.aggregations.*;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.bulk.IndexOperation;
+import co.elastic.clients.elasticsearch.core.bulk.UpdateOperation;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.util.BinaryData;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
+import org.fao.geonet.domain.MetadataType;
 import org.fao.geonet.index.es.EsRestClient;
+import org.fao.geonet.kernel.search.index.OverviewIndexFieldUpdater;
 import org.mockito.ArgumentCaptor;
 import org.jdom.Element;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
 
 public class EsSearchManagerTest {
 
@@ -228,6 +246,187 @@ public class EsSearchManagerTest {
         assertTrue("Query should contain draft filter with 'n'", queryString.contains("\"n\""));
     }
 
+    @Test
+    public void forceIndexChangesReturnsWhenNothingToIndex() {
+        EsSearchManager manager = new EsSearchManager();
+        manager.setClient(mock(EsRestClient.class));
+
+        manager.forceIndexChanges();
+
+        assertFalse(manager.isIndexing());
+        assertEquals(0, manager.getPendingDocuments());
+        assertEquals(0, manager.getInFlightRequests());
+    }
+
+    @Test
+    public void indexFailsWhenIndexIsNotActivated() {
+        EsSearchManager manager = new EsSearchManager();
+        manager.setClient(mock(EsRestClient.class));
+        Multimap<String, Object> fields = ArrayListMultimap.create();
+        fields.put("source", "catalogue");
+
+        assertThrows(IOException.class, () -> manager.index(null, new Element("metadata"), "1",
+            fields, MetadataType.METADATA, false, IndexingMode.full));
+        assertFalse(manager.isIndexing());
+    }
+
+    @Test
+    public void bulkKeepsUpdatesOfARecordInOrder() throws Exception {
+        List<BulkRequest> requests = new CopyOnWriteArrayList<>();
+        List<CompletableFuture<BulkResponse>> responses = new CopyOnWriteArrayList<>();
+        EsSearchManager manager = bulkManager(requests, responses, 1, 2, 10);
+        try {
+            index(manager, "1", "first");
+            waitUntil(() -> requests.size() == 1);
+
+            Thread update = new Thread(() -> index(manager, "1", "second"));
+            update.start();
+            index(manager, "2", "other");
+            waitUntil(() -> requests.size() == 2);
+            assertEquals("2", indexOperation(requests.get(1)).id());
+
+            // The second version of record 1 is not sent while the first one is in flight
+            Thread.sleep(200);
+            assertEquals(2, requests.size());
+            assertTrue(update.isAlive());
+
+            responses.get(0).complete(okResponse());
+            waitUntil(() -> requests.size() == 3);
+            IndexOperation<?> operation = indexOperation(requests.get(2));
+            assertEquals("1", operation.id());
+            assertTrue(document(operation).contains("second"));
+
+            responses.forEach(r -> r.complete(okResponse()));
+            update.join(5000);
+            manager.forceIndexChanges();
+            assertEquals(0, manager.getPendingDocuments());
+        } finally {
+            manager.end();
+        }
+    }
+
+    @Test
+    public void forceIndexChangesWaitsForDocumentsBlockedOnAFullQueue() throws Exception {
+        List<BulkRequest> requests = new CopyOnWriteArrayList<>();
+        List<CompletableFuture<BulkResponse>> responses = new CopyOnWriteArrayList<>();
+        // Only one document can wait to be indexed
+        EsSearchManager manager = bulkManager(requests, responses, 1, 1, 1);
+        try {
+            index(manager, "1", "first");
+            waitUntil(() -> requests.size() == 1);
+
+            Thread blocked = new Thread(() -> index(manager, "2", "second"));
+            blocked.start();
+            waitUntil(() -> manager.getPendingDocuments() == 2);
+
+            Thread flush = new Thread(manager::forceIndexChanges);
+            flush.start();
+            Thread.sleep(200);
+            assertTrue(flush.isAlive());
+
+            responses.get(0).complete(okResponse());
+            waitUntil(() -> requests.size() == 2);
+            assertEquals("2", indexOperation(requests.get(1)).id());
+            assertTrue(flush.isAlive());
+
+            responses.get(1).complete(okResponse());
+            flush.join(5000);
+            assertFalse(flush.isAlive());
+            assertEquals(0, manager.getPendingDocuments());
+            assertFalse(manager.isIndexing());
+        } finally {
+            manager.end();
+        }
+    }
+
+    @Test
+    public void updateByScriptDoesNotCreateMissingDocuments() throws IOException {
+        EsRestClient mockEsRestClient = mock(EsRestClient.class);
+        ElasticsearchClient mockElasticsearchClient = mock(ElasticsearchClient.class);
+        when(mockEsRestClient.getClient()).thenReturn(mockElasticsearchClient);
+        when(mockElasticsearchClient.bulk(any(BulkRequest.class))).thenReturn(okResponse());
+
+        EsSearchManager manager = new EsSearchManager();
+        manager.setClient(mockEsRestClient);
+        manager.setDefaultIndex("gn-records");
+
+        Map<String, Map<String, Object>> params = new LinkedHashMap<>();
+        params.put("1", Map.of("data", Map.of("http://a/logo.png", "data:image/png;base64, AA")));
+        params.put("1-draft", Map.of("data", Map.of("http://a/logo.png", "data:image/png;base64, AA")));
+        manager.updateByScript("ctx.op = 'noop';", params);
+
+        ArgumentCaptor<BulkRequest> request = ArgumentCaptor.forClass(BulkRequest.class);
+        verify(mockElasticsearchClient).bulk(request.capture());
+        assertEquals(2, request.getValue().operations().size());
+        UpdateOperation<?, ?> update = request.getValue().operations().get(0).update();
+        assertEquals("1", update.id());
+        assertEquals("gn-records", update.index());
+        assertEquals(null, update.action().upsert());
+        assertFalse(Boolean.TRUE.equals(update.action().scriptedUpsert()));
+        assertEquals("ctx.op = 'noop';", update.action().script().source());
+        assertEquals(Map.of("http://a/logo.png", "data:image/png;base64, AA"),
+            update.action().script().params().get("data").to(Map.class));
+    }
+
+    private static EsSearchManager bulkManager(List<BulkRequest> requests,
+                                               List<CompletableFuture<BulkResponse>> responses,
+                                               int maxOperations, int maxConcurrentRequests, int queueSize) {
+        ElasticsearchAsyncClient asyncClient = mock(ElasticsearchAsyncClient.class);
+        when(asyncClient._jsonpMapper()).thenReturn(new JacksonJsonpMapper());
+        when(asyncClient.bulk(any(BulkRequest.class))).thenAnswer(invocation -> {
+            CompletableFuture<BulkResponse> response = new CompletableFuture<>();
+            responses.add(response);
+            requests.add(invocation.getArgument(0));
+            return response;
+        });
+        EsRestClient esRestClient = mock(EsRestClient.class);
+        when(esRestClient.getAsynchClient()).thenReturn(asyncClient);
+
+        EsSearchManager manager = new EsSearchManager();
+        manager.setClient(esRestClient);
+        manager.setDefaultIndex("gn-records");
+        ReflectionTestUtils.setField(manager, "overviewFieldUpdater", mock(OverviewIndexFieldUpdater.class));
+        ReflectionTestUtils.setField(manager, "commitInterval", maxOperations);
+        ReflectionTestUtils.setField(manager, "bulkMaxConcurrentRequests", maxConcurrentRequests);
+        ReflectionTestUtils.setField(manager, "bulkFlushInterval", 0);
+        ReflectionTestUtils.setField(manager, "bulkQueueSize", queueSize);
+        return manager;
+    }
+
+    private static void index(EsSearchManager manager, String id, String title) {
+        Multimap<String, Object> fields = ArrayListMultimap.create();
+        fields.put("resourceTitle", title);
+        try {
+            manager.index(null, new Element("metadata"), id,
+                fields, MetadataType.METADATA, false, IndexingMode.full);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static IndexOperation<?> indexOperation(BulkRequest request) {
+        assertEquals(1, request.operations().size());
+        return request.operations().get(0).index();
+    }
+
+    private static String document(IndexOperation<?> operation) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((BinaryData) operation.document()).writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static BulkResponse okResponse() {
+        return BulkResponse.of(b -> b.errors(false).took(1).items(Collections.emptyList()));
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Condition not met in time", System.currentTimeMillis() < timeout);
+            Thread.sleep(10);
+        }
+    }
+
     private static Aggregate sumAgg(double value) {
         return Aggregate.of(a -> a.sum(s -> s.value(value)));
     }
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.output.SAXOutputter;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IndexDocumentBuilderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void sameDocumentAsDocumentToJson() throws Exception {
+        Element input = new Element("doc");
+        input.addContent(new Element("resourceTitleObject").setAttribute("type", "object")
+            .setText("{\"default\": \"Title\",   \"langeng\": \"Title\"}"));
+        input.addContent(new Element("tag").setText("first"));
+        input.addContent(new Element("keyword").setText("single keyword"));
+        input.addContent(new Element("isHarvested").setText("y"));
+        input.addContent(new Element("hasOverview").setText(" 0 "));
+        input.addContent(new Element("_id").setText("12"));
+        input.addContent(new Element("cl_status").setText("completed"));
+        input.addContent(new Element("tag").setText("second"));
+        input.addContent(new Element("contact").setAttribute("type", "object")
+            .setText("{\"organisation\": \"ACME\"}"));
+        input.addContent(new Element("abstract").setText("  Text with spaces  ")
+            .addContent(new Element("nested").setText("ignored")));
+        input.addContent(new Element("invalidObject").setAttribute("type", "object")
+            .setText("{invalid"));
+
+        JsonNode expected = new EsSearchManager().documentToJson((Element) input.clone());
+
+        IndexDocumentBuilder builder = new IndexDocumentBuilder();
+        new SAXOutputter(builder).output(new Document(input));
+
+        assertEquals(expected, objectMapper.readTree(builder.toJson()));
+    }
+
+    @Test
+    public void addSetAndRemoveFields() throws Exception {
+        Multimap<String, Object> fields = ArrayListMultimap.create();
+        fields.put("source", "catalogue");
+        fields.put("isPublishedToAll", "true");
+        fields.put("privileges", objectMapper.readTree("{\"view\": [1, 2]}"));
+
+        IndexDocumentBuilder builder = new IndexDocumentBuilder()
+            .addField("uuid", false, "abc")
+            .addFields(fields);
+
+        assertEquals("catalogue", builder.removeField("source"));
+        assertNull(builder.removeField("source"));
+        assertFalse(builder.hasField("source"));
+
+        builder.setField("sourceCatalogue", "catalogue");
+        builder.setField("uuid", "def");
+        assertTrue(builder.hasField("uuid"));
+
+        assertEquals(
+            objectMapper.readTree("{\"uuid\":\"def\",\"isPublishedToAll\":\"true\","
+                + "\"privileges\":{\"view\":[1,2]},\"sourceCatalogue\":\"catalogue\"}"),
+            objectMapper.readTree(builder.toJson()));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.kernel.search.index;
+
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.HitsMetadata;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.fao.geonet.kernel.search.EsSearchManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OverviewIndexFieldUpdaterTest {
+    private static final String LOGO = "http://localhost/logo.png";
+    private static final String QUICKLOOK = "http://localhost/quicklook.png";
+
+    private OverviewIndexFieldUpdater updater;
+    private EsSearchManager searchManager;
+    private OverviewThumbnailCache thumbnails;
+
+    @Before
+    public void setUp() throws Exception {
+        searchManager = mock(EsSearchManager.class);
+        thumbnails = mock(OverviewThumbnailCache.class);
+        when(thumbnails.getDataUrl(LOGO)).thenReturn("data:logo");
+        when(thumbnails.getDataUrl(QUICKLOOK)).thenReturn("data:quicklook");
+        when(searchManager.updateByScript(anyString(), anyMap()))
+            .thenReturn(BulkResponse.of(b -> b.errors(false).took(1).items(Collections.emptyList())));
+
+        updater = new OverviewIndexFieldUpdater();
+        updater.searchManager = searchManager;
+        ReflectionTestUtils.setField(updater, "thumbnails", thumbnails);
+    }
+
+    @Test
+    public void testOnlyDataOfMatchingUrlsSent() throws Exception {
+        mockHits(Map.of(
+            "1", List.of(Map.of("url", LOGO), Map.of("url", QUICKLOOK)),
+            "2-draft", List.of(Map.of("url", LOGO))));
+
+        updater.processOverviews(List.of("1", "2"));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Map<String, Object>>> updates = ArgumentCaptor.forClass(Map.class);
+        verify(searchManager).updateByScript(eq(OverviewIndexFieldUpdater.UPDATE_OVERVIEW_DATA_SCRIPT), updates.capture());
+        // Only the data are sent, the overview array of the document is not replaced
+        assertEquals(Map.of(
+                "1", Map.of("data", Map.of(LOGO, "data:logo", QUICKLOOK, "data:quicklook")),
+                "2-draft", Map.of("data", Map.of(LOGO, "data:logo"))),
+            updates.getValue());
+    }
+
+    @Test
+    public void testNoUpdateWithoutOverviews() throws Exception {
+        mockHits(Collections.emptyMap());
+
+        updater.processOverviews(List.of("1"));
+
+        verify(searchManager, never()).updateByScript(anyString(), anyMap());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void mockHits(Map<String, List<Map<String, String>>> overviews) throws Exception {
+        List<Hit<Object>> hits = new ArrayList<>();
+        for (Map.Entry<String, List<Map<String, String>>> e : overviews.entrySet()) {
+            Hit<Object> hit = mock(Hit.class);
+            when(hit.id()).thenReturn(e.getKey());
+            when(hit.source()).thenReturn(Map.of("overview", e.getValue()));
+            hits.add(hit);
+        }
+        HitsMetadata<Object> hitsMetadata = mock(HitsMetadata.class);
+        when(hitsMetadata.hits()).thenReturn(hits);
+        SearchResponse<Object> response = mock(SearchResponse.class);
+        when(response.hits()).thenReturn(hitsMetadata);
+        when(searchManager.query(any(JsonNode.class), any(Set.class), anyInt(), anyInt())).thenReturn(response);
+    }
+}
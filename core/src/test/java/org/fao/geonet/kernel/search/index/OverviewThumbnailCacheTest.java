@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.kernel.search.index;
+
+import com.google.common.base.Ticker;
+import com.sun.net.httpserver.HttpServer;
+import org.fao.geonet.api.records.attachments.Store;
+import org.fao.geonet.domain.MetadataResource;
+import org.fao.geonet.domain.MetadataResourceVisibility;
+import org.fao.geonet.kernel.setting.SettingManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OverviewThumbnailCacheTest {
+    private static final String ETAG = "\"v1\"";
+
+    private static final String NODE_URL = "http://localhost:8080/geonetwork/srv/";
+
+    private final AtomicInteger downloads = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private final AtomicLong time = new AtomicLong();
+    private final Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return time.get();
+        }
+    };
+
+    private HttpServer server;
+    private byte[] data;
+    private SettingManager settingManager;
+    private Store store;
+
+    @Before
+    public void setUp() throws Exception {
+        BufferedImage image = new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        data = png.toByteArray();
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/logo.png", exchange -> {
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                downloads.incrementAndGet();
+                exchange.getResponseHeaders().add("ETag", ETAG);
+                exchange.sendResponseHeaders(200, data.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(data);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+
+        settingManager = mock(SettingManager.class);
+        when(settingManager.getNodeURL()).thenReturn(NODE_URL);
+        store = mock(Store.class);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testImageDownloadedOnce() {
+        OverviewThumbnailCache cache = new OverviewThumbnailCache(settingManager, store, 10, 60, 140, ticker);
+        String url = getUrl();
+
+        String dataUrl = cache.getDataUrl(url);
+        assertTrue(dataUrl.startsWith("data:image/png;base64, "));
+        assertEquals(dataUrl, cache.getDataUrl(url));
+        assertEquals(1, downloads.get());
+    }
+
+    @Test
+    public void testImageRevalidatedWithETag() {
+        OverviewThumbnailCache cache = new OverviewThumbnailCache(settingManager, store, 10, 60, 140, ticker);
+        String url = getUrl();
+
+        String dataUrl = cache.getDataUrl(url);
+        time.addAndGet(TimeUnit.MINUTES.toNanos(61));
+
+        assertEquals(dataUrl, cache.getDataUrl(url));
+        assertEquals(1, downloads.get());
+        assertEquals(1, notModified.get());
+    }
+
+    @Test
+    public void testNotAccessibleImageCached() {
+        OverviewThumbnailCache cache = new OverviewThumbnailCache(settingManager, store, 10, 60, 140, ticker);
+        String url = getUrl().replace("logo.png", "missing.png");
+
+        assertEquals("", cache.getDataUrl(url));
+        assertEquals("", cache.getDataUrl(url));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testAttachmentReadFromStore() throws Exception {
+        Date lastModification = new Date();
+        when(store.getResourceInternal("uuid-1", MetadataResourceVisibility.PUBLIC, "logo.png", true))
+            .thenAnswer(invocation -> getResourceHolder(lastModification));
+        OverviewThumbnailCache cache = new OverviewThumbnailCache(settingManager, store, 10, 60, 140, ticker);
+        String url = NODE_URL + "api/records/uuid-1/attachments/logo.png";
+
+        String dataUrl = cache.getDataUrl(url);
+        assertTrue(dataUrl.startsWith("data:image/png;base64, "));
+        time.addAndGet(TimeUnit.MINUTES.toNanos(61));
+
+        // Not modified, revalidated with the last modification date
+        assertEquals(dataUrl, cache.getDataUrl(url));
+        verify(store, times(2)).getResourceInternal(eq("uuid-1"), eq(MetadataResourceVisibility.PUBLIC), eq("logo.png"), eq(true));
+        assertEquals(0, downloads.get());
+    }
+
+    private Store.ResourceHolder getResourceHolder(Date lastModification) {
+        MetadataResource metadata = mock(MetadataResource.class);
+        when(metadata.getLastModification()).thenReturn(lastModification);
+        Store.ResourceHolder resourceHolder = mock(Store.ResourceHolder.class);
+        when(resourceHolder.getMetadata()).thenReturn(metadata);
+        when(resourceHolder.getResource()).thenReturn(new ByteArrayResource(data));
+        return resourceHolder;
+    }
+
+    private String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/logo.png";
+    }
+}
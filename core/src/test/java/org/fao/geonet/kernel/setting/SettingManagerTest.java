@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel.setting;
+
+import org.fao.geonet.AbstractCoreIntegrationTest;
+import org.fao.geonet.constants.Geonet;
+import org.fao.geonet.events.setting.SettingValuesUpdated;
+import org.fao.geonet.languages.FeedbackLanguages;
+import org.jasypt.encryption.pbe.StandardPBEStringEncryptor;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ApplicationEventMulticaster;
+import org.springframework.context.support.AbstractApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link SettingManager}.
+ */
+public class SettingManagerTest extends AbstractCoreIntegrationTest {
+    @Autowired
+    private SettingManager settingManager;
+    @Autowired
+    private StandardPBEStringEncryptor encryptor;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private FeedbackLanguages feedbackLanguages;
+
+    @Before
+    public void initEncryptor() {
+        // The settings snapshot is only used once encrypted values can be read
+        encryptor.initialize();
+    }
+
+    @Test
+    public void testValuesAreServedFromSnapshot() {
+        settingManager.setValue(Settings.SYSTEM_SITE_NAME_PATH, "Snapshot");
+        settingManager.getValue(Settings.SYSTEM_SITE_NAME_PATH);
+
+        long databaseReads = settingManager.getDatabaseReads();
+        long snapshotHits = settingManager.getSnapshotHits();
+        for (int i = 0; i < 10; i++) {
+            assertEquals("Snapshot", settingManager.getValue(Settings.SYSTEM_SITE_NAME_PATH));
+        }
+        assertNull(settingManager.getValue("system/does/not/exist"));
+
+        assertEquals(databaseReads, settingManager.getDatabaseReads());
+        assertEquals(snapshotHits + 11, settingManager.getSnapshotHits());
+
+        settingManager.setValue(Settings.SYSTEM_SITE_NAME_PATH, "Updated");
+        assertEquals("Updated", settingManager.getValue(Settings.SYSTEM_SITE_NAME_PATH));
+        assertEquals(databaseReads, settingManager.getDatabaseReads());
+    }
+
+    @Test
+    public void testChangedValuesArePublishedAfterCommit() throws Exception {
+        String siteName = settingManager.getValue(Settings.SYSTEM_SITE_NAME_PATH);
+        String organization = settingManager.getValue(Settings.SYSTEM_SITE_ORGANIZATION);
+        inNewTransaction(true, () -> {
+            settingManager.setValue(Settings.SYSTEM_SITE_NAME_PATH, "Before");
+            settingManager.setValue(Settings.SYSTEM_SITE_ORGANIZATION, "Organization");
+        });
+
+        final List<SettingValuesUpdated> events = new ArrayList<>();
+        ApplicationListener<SettingValuesUpdated> listener = events::add;
+        ApplicationEventMulticaster multicaster = _applicationContext.getBean(
+            AbstractApplicationContext.APPLICATION_EVENT_MULTICASTER_BEAN_NAME, ApplicationEventMulticaster.class);
+        multicaster.addApplicationListener(listener);
+        try {
+            inNewTransaction(true, () -> {
+                Map<String, String> values = new HashMap<>();
+                values.put(Settings.SYSTEM_SITE_NAME_PATH, "After");
+                values.put(Settings.SYSTEM_SITE_ORGANIZATION, "Organization");
+                settingManager.setValues(values);
+                assertTrue(events.isEmpty());
+            });
+        } finally {
+            multicaster.removeApplicationListener(listener);
+            inNewTransaction(true, () -> {
+                settingManager.setValue(Settings.SYSTEM_SITE_NAME_PATH, siteName);
+                settingManager.setValue(Settings.SYSTEM_SITE_ORGANIZATION, organization);
+            });
+        }
+
+        assertEquals(1, events.size());
+        SettingValuesUpdated event = events.get(0);
+        assertEquals(1, event.getNames().size());
+        assertTrue(event.isChanged(Settings.SYSTEM_SITE_NAME_PATH));
+        assertEquals("Before", event.getOldValues().get(Settings.SYSTEM_SITE_NAME_PATH));
+        assertEquals("After", event.getNewValues().get(Settings.SYSTEM_SITE_NAME_PATH));
+    }
+
+    @Test
+    public void testCommittedValueIsNotOverwrittenByConcurrentRefresh() throws Exception {
+        String siteName = settingManager.getValue(Settings.SYSTEM_SITE_NAME_PATH);
+        try {
+            inNewTransaction(true, () -> {
+                settingManager.setValue(Settings.SYSTEM_SITE_NAME_PATH, "Committed");
+                // Reads the values committed before this transaction
+                runInOtherThread(() -> {
+                    try {
+                        settingManager.refresh();
+                    } catch (SQLException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+            });
+            assertEquals("Committed", settingManager.getValue(Settings.SYSTEM_SITE_NAME_PATH));
+        } finally {
+            inNewTransaction(true, () -> settingManager.setValue(Settings.SYSTEM_SITE_NAME_PATH, siteName));
+        }
+    }
+
+    @Test
+    public void testRolledBackValuesAreNotPublished() throws Exception {
+        String siteName = settingManager.getValue(Settings.SYSTEM_SITE_NAME_PATH);
+
+        final List<SettingValuesUpdated> events = new ArrayList<>();
+        ApplicationListener<SettingValuesUpdated> listener = events::add;
+        ApplicationEventMulticaster multicaster = _applicationContext.getBean(
+            AbstractApplicationContext.APPLICATION_EVENT_MULTICASTER_BEAN_NAME, ApplicationEventMulticaster.class);
+        multicaster.addApplicationListener(listener);
+        try {
+            inNewTransaction(false, () -> {
+                settingManager.setValue(Settings.SYSTEM_SITE_NAME_PATH, "Rolled back");
+                // The transaction reads its own value, other threads the committed one
+                assertEquals("Rolled back", settingManager.getValue(Settings.SYSTEM_SITE_NAME_PATH));
+                AtomicReference<String> otherThreadValue = new AtomicReference<>();
+                runInOtherThread(() -> otherThreadValue.set(settingManager.getValue(Settings.SYSTEM_SITE_NAME_PATH)));
+                assertEquals(siteName, otherThreadValue.get());
+            });
+        } finally {
+            multicaster.removeApplicationListener(listener);
+        }
+
+        assertEquals(siteName, settingManager.getValue(Settings.SYSTEM_SITE_NAME_PATH));
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void testFeedbackLanguagesAreUpdatedWithoutTransaction() {
+        String languages = settingManager.getValue(Settings.SYSTEM_FEEDBACK_LANGUAGES);
+        String translationFollowsText = settingManager.getValue(Settings.SYSTEM_FEEDBACK_TRANSLATION_FOLLOWS_TEXT);
+        try {
+            // Outside of the test transaction, like the settings saved from the admin console
+            runInOtherThread(() -> {
+                Map<String, String> values = new HashMap<>();
+                values.put(Settings.SYSTEM_FEEDBACK_LANGUAGES, Geonet.DEFAULT_LANGUAGE);
+                values.put(Settings.SYSTEM_FEEDBACK_TRANSLATION_FOLLOWS_TEXT, "Translation follows");
+                settingManager.setValues(values);
+            });
+
+            assertArrayEquals(new Locale[]{new Locale(Geonet.DEFAULT_LANGUAGE)},
+                feedbackLanguages.getLocales(Locale.FRENCH));
+            assertEquals("Translation follows", feedbackLanguages.getTranslationFollowsText());
+        } finally {
+            runInOtherThread(() -> {
+                settingManager.setValue(Settings.SYSTEM_FEEDBACK_LANGUAGES, languages);
+                settingManager.setValue(Settings.SYSTEM_FEEDBACK_TRANSLATION_FOLLOWS_TEXT, translationFollowsText);
+            });
+        }
+    }
+
+    private void inNewTransaction(boolean commit, Runnable action) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        template.executeWithoutResult(status -> {
+            action.run();
+            if (!commit) {
+                status.setRollbackOnly();
+            }
+        });
+    }
+
+    private static void runInOtherThread(Runnable action) {
+        Thread thread = new Thread(action);
+        thread.start();
+        try {
+            thread.join(10000);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
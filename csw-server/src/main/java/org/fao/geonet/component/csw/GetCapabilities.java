@@ -81,6 +81,8 @@ public class GetCapabilities extends AbstractOperation implements CatalogService
     @Autowired
     private FieldMapper _fieldMapper;
     @Autowired
+    private GetDomain getDomain;
+    @Autowired
     private SchemaManager _schemaManager;
     @Autowired
     private NodeInfo nodeinfo;
@@ -458,7 +460,7 @@ public class GetCapabilities extends AbstractOperation implements CatalogService
         List<Element> values;
         String[] properties = {"keyword"};
         try {
-            values = GetDomain.handlePropertyName(_catalogConfig, properties, context, true, _catalogConfig.getMaxNumberOfRecordsForKeywords());
+            values = getDomain.handlePropertyName(properties, context, true, _catalogConfig.getMaxNumberOfRecordsForKeywords());
         } catch (Exception e) {
             Log.error(Geonet.CSW, "Error getting domain value for specified PropertyName : " + e);
             // If GetDomain operation failed, just add nothing to the capabilities document template.
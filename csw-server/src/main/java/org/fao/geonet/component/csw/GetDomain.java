@@ -23,10 +23,19 @@
 
 package org.fao.geonet.component.csw;
 
-import bak.pcj.map.ObjectKeyIntOpenHashMap;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.LongTermsBucket;
+import co.elastic.clients.elasticsearch._types.aggregations.SingleMetricAggregateBase;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
+import co.elastic.clients.elasticsearch.core.FieldCapsResponse;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.field_caps.FieldCapability;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import jeeves.server.context.ServiceContext;
-import org.apache.commons.lang.NotImplementedException;
-import org.fao.geonet.GeonetContext;
+import org.fao.geonet.NodeInfo;
 import org.fao.geonet.constants.Geonet;
 import org.fao.geonet.csw.common.Csw;
 import org.fao.geonet.csw.common.exceptions.CatalogException;
@@ -35,234 +44,248 @@ import org.fao.geonet.csw.common.exceptions.OperationNotSupportedEx;
 import org.fao.geonet.kernel.csw.CatalogConfiguration;
 import org.fao.geonet.kernel.csw.CatalogService;
 import org.fao.geonet.kernel.csw.services.AbstractOperation;
+import org.fao.geonet.kernel.csw.services.getrecords.FieldMapper;
+import org.fao.geonet.kernel.search.EsFilterBuilder;
 import org.fao.geonet.kernel.search.EsSearchManager;
 import org.fao.geonet.utils.Log;
 import org.jdom.Element;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
-
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Returns the values of queryables computed with aggregations on the records visible to the user:
+ * the distinct values (or their frequency) or, for range fields, the minimum and maximum value.
+ * <p>
+ * The values are cached for each set of properties and permission filter (ie. user groups and
+ * portal) for a short time, so that changes to the records show up once the cached values expire.
+ */
 @Component(CatalogService.BEAN_PREFIX + GetDomain.NAME)
 public class GetDomain extends AbstractOperation implements CatalogService {
 
     static final String NAME = "GetDomain";
 
+    private static final String AGGREGATION_PREFIX = "p";
+
     @Autowired
     private ApplicationContext springAppContext;
     @Autowired
     private CatalogConfiguration _catalogConfig;
+    @Autowired
+    private FieldMapper fieldMapper;
+    @Autowired
+    private EsSearchManager searchManager;
+    @Autowired
+    private NodeInfo node;
+
+    /**
+     * Time in seconds the values are cached.
+     */
+    @Value("${csw.getDomain.cacheSeconds:60}")
+    private int cacheSeconds;
 
-    public static List<Element> handlePropertyName(CatalogConfiguration catalogConfig, String[] propertyNames,
-                                                   ServiceContext context, boolean freq, int maxRecords) throws Exception {
+    private Cache<String, List<Element>> domainValuesCache;
 
-        List<Element> domainValuesList = new ArrayList<Element>();
+    @PostConstruct
+    public void init() {
+        domainValuesCache = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(cacheSeconds, TimeUnit.SECONDS)
+            .build();
+    }
 
+    /**
+     * @param propertyNames the queryables, mapped to index fields with the {@link FieldMapper}
+     * @param freq          if true, return the values ordered by frequency with their count
+     * @param maxValues     the maximum number of values returned for a property
+     */
+    public List<Element> handlePropertyName(String[] propertyNames, ServiceContext context, boolean freq,
+                                            int maxValues) throws Exception {
         if (Log.isDebugEnabled(Geonet.CSW))
-            Log.debug(Geonet.CSW, "Handling property names '" + Arrays.toString(propertyNames) + "' with max records of " + maxRecords);
+            Log.debug(Geonet.CSW, "Handling property names '" + Arrays.toString(propertyNames) + "' with max values of " + maxValues);
 
-        for (int i = 0; i < propertyNames.length; i++) {
+        String filter = EsFilterBuilder.build(context, "metadata", false, node);
+        String cacheKey = String.join("|", Arrays.toString(propertyNames), String.valueOf(freq),
+            String.valueOf(maxValues), filter);
 
+        List<Element> domainValuesList = domainValuesCache.get(cacheKey,
+            () -> computeDomainValues(propertyNames, filter, freq, maxValues));
+        return domainValuesList.stream().map(Element::clone).map(Element.class::cast).collect(Collectors.toList());
+    }
 
-            // Initialize list of values element.
-            Element listOfValues = null;
+    private List<Element> computeDomainValues(String[] propertyNames, String filter, boolean freq,
+                                              int maxValues) throws Exception {
+        Map<String, String> indexFields = new LinkedHashMap<>();
+        for (String propertyName : propertyNames) {
+            String property = propertyName.trim();
+            indexFields.put(property, fieldMapper.map(property));
+        }
+        Map<String, String> aggregatableFields = getAggregatableFields(indexFields.values());
+
+        // All properties are computed with one search
+        Map<String, Aggregation> aggregations = new HashMap<>();
+        int i = 0;
+        for (String indexField : indexFields.values()) {
+            String field = aggregatableFields.get(indexField);
+            if (field != null) {
+                if (_catalogConfig.getGetRecordsRangeFields().contains(indexField)) {
+                    aggregations.put(AGGREGATION_PREFIX + i + "min", Aggregation.of(a -> a.min(m -> m.field(field))));
+                    aggregations.put(AGGREGATION_PREFIX + i + "max", Aggregation.of(a -> a.max(m -> m.field(field))));
+                } else {
+                    aggregations.put(AGGREGATION_PREFIX + i, Aggregation.of(a -> a.terms(t -> t.field(field).size(maxValues))));
+                }
+            }
+            i++;
+        }
 
+        Map<String, Aggregate> results = new HashMap<>();
+        if (!aggregations.isEmpty()) {
+            String query = String.format("{\"bool\": {\"filter\": {\"query_string\": {\"query\": \"%s\"}}}}", filter);
+            SearchResponse<Void> response = searchManager.aggregate(new ObjectMapper().readTree(query), aggregations);
+            results = response.aggregations();
+        }
+
+        List<Element> domainValuesList = new ArrayList<>();
+        i = 0;
+        for (Map.Entry<String, String> property : indexFields.entrySet()) {
             // Generate DomainValues element
             Element domainValues = new Element("DomainValues", Csw.NAMESPACE_CSW);
 
             // FIXME what should be the type ???
             domainValues.setAttribute("type", "csw:Record");
 
-            String property = propertyNames[i].trim();
-
             // Set propertyName in any case.
             Element pn = new Element("PropertyName", Csw.NAMESPACE_CSW);
-            domainValues.addContent(pn.setText(property));
-
-            GeonetContext gc = (GeonetContext) context.getHandlerContext(Geonet.CONTEXT_NAME);
-
-            EsSearchManager sm = gc.getBean(EsSearchManager.class);
-            throw new NotImplementedException("CSW GetDomain operation not implemented in ES");
-
-//            IndexAndTaxonomy indexAndTaxonomy = sm.getNewIndexReader(null);
-//            try {
-//                GeonetworkMultiReader reader = indexAndTaxonomy.indexReader;
-//                BooleanQuery groupsQuery = (BooleanQuery) CatalogSearcher.getGroupsQuery(context);
-//                BooleanQuery query = null;
-//
-//                // Apply CSW service specific constraint
-//                if (StringUtils.isNotEmpty(cswServiceSpecificConstraint)) {
-//                    Query constraintQuery = parseLuceneQuery(cswServiceSpecificConstraint, luceneConfig);
-//
-//                    query = new BooleanQuery();
-//
-//                    BooleanClause.Occur occur = LuceneUtils
-//                        .convertRequiredAndProhibitedToOccur(true, false);
-//
-//                    query.add(groupsQuery, occur);
-//                    query.add(constraintQuery, occur);
-//
-//                } else {
-//                    query = groupsQuery;
-//                }
-//
-//                List<Pair<String, Boolean>> sortFields = Collections.singletonList(Pair.read(Geonet.SearchResult.SortBy.RELEVANCE, true));
-//                Sort sort = LuceneSearcher.makeSort(sortFields, context.getLanguage(), false);
-//                CachingWrapperFilter filter = null;
-//
-//                Pair<TopDocs, Element> searchResults = LuceneSearcher.doSearchAndMakeSummary(
-//                    maxRecords, 0, maxRecords, context.getLanguage(),
-//                    null, luceneConfig, reader,
-//                    query, filter, sort, null, false
-//                );
-//                TopDocs hits = searchResults.one();
-//
-//                try {
-//                    // Get mapped lucene field in CSW configuration
-//                    String indexField = catalogConfig.getFieldMapping().get(
-//                        property.toLowerCase());
-//                    if (indexField != null)
-//                        property = indexField;
-//
-//                    // check if params asked is in the index using getFieldNames ?
-//                    @SuppressWarnings("resource")
-//                    FieldInfos fi = SlowCompositeReaderWrapper.wrap(reader).getFieldInfos();
-//                    if (fi.fieldInfo(property) == null)
-//                        continue;
-//
-//                    boolean isRange = false;
-//                    if (catalogConfig.getGetRecordsRangeFields().contains(
-//                        property))
-//                        isRange = true;
-//
-//                    if (isRange)
-//                        listOfValues = new Element("RangeOfValues", Csw.NAMESPACE_CSW);
-//                    else
-//                        listOfValues = new Element("ListOfValues", Csw.NAMESPACE_CSW);
-//
-//                    Set<String> fields = new HashSet<String>();
-//                    fields.add(property);
-//                    fields.add("_isTemplate");
-//
-//
-//                    // parse each document in the index
-//                    String[] fieldValues;
-//                    Collator stringCollator = Collator.getInstance();
-//                    stringCollator.setStrength(Collator.PRIMARY);
-//                    SortedSet<String> sortedValues = new TreeSet<String>(stringCollator);
-//                    ObjectKeyIntOpenHashMap duplicateValues = new ObjectKeyIntOpenHashMap();
-//                    for (int j = 0; j < hits.scoreDocs.length; j++) {
-//                        DocumentStoredFieldVisitor selector = new DocumentStoredFieldVisitor(fields);
-//                        reader.document(hits.scoreDocs[j].doc, selector);
-//                        Document doc = selector.getDocument();
-//
-//                        // Skip templates and subTemplates
-//                        String[] isTemplate = doc.getValues("_isTemplate");
-//                        if (isTemplate[0] != null && !isTemplate[0].equals("n"))
-//                            continue;
-//
-//                        // Get doc values for specified property
-//                        fieldValues = doc.getValues(property);
-//                        if (fieldValues == null)
-//                            continue;
-//
-//                        addtoSortedSet(sortedValues, fieldValues, duplicateValues);
-//                    }
-//
-//                    SummaryComparator valuesComparator = new SummaryComparator(SortOption.FREQUENCY, Type.STRING, context.getLanguage(), null);
-//                    TreeSet<SummaryComparator.SummaryElement> sortedValuesFrequency = new TreeSet<SummaryComparator.SummaryElement>(valuesComparator);
-//                    ObjectKeyIntMapIterator entries = duplicateValues.entries();
-//
-//                    while (entries.hasNext()) {
-//                        entries.next();
-//                        sortedValuesFrequency.add(new SummaryComparator.SummaryElement(entries));
-//                    }
-//
-//                    if (freq)
-//                        return createValuesByFrequency(sortedValuesFrequency);
-//                    else
-//                        listOfValues.addContent(createValuesElement(sortedValues, isRange));
-//
-//                } finally {
-//                    // any children means that the catalog was unable to determine
-//                    // anything about the specified parameter
-//                    if (listOfValues != null && listOfValues.getChildren().size() != 0)
-//                        domainValues.addContent(listOfValues);
-//
-//                    // Add current DomainValues to the list
-//                    domainValuesList.add(domainValues);
-//                }
-//            } finally {
-//                sm.releaseIndexReader(indexAndTaxonomy);
-//            }
+            domainValues.addContent(pn.setText(property.getKey()));
+
+            List<Element> values;
+            Element listOfValues;
+            if (_catalogConfig.getGetRecordsRangeFields().contains(property.getValue())) {
+                listOfValues = new Element("RangeOfValues", Csw.NAMESPACE_CSW);
+                values = createRangeElements(results.get(AGGREGATION_PREFIX + i + "min"),
+                    results.get(AGGREGATION_PREFIX + i + "max"));
+            } else {
+                listOfValues = new Element("ListOfValues", Csw.NAMESPACE_CSW);
+                values = createValuesElements(results.get(AGGREGATION_PREFIX + i), freq);
+            }
+
+            if (freq) {
+                // The values are returned without the list element
+                domainValuesList.addAll(values);
+            } else {
+                // no values means that the catalog was unable to determine
+                // anything about the specified parameter
+                if (!values.isEmpty()) {
+                    domainValues.addContent(listOfValues.addContent(values));
+                }
+                // Add current DomainValues to the list
+                domainValuesList.add(domainValues);
+            }
+            i++;
         }
         return domainValuesList;
-
     }
 
-    //---------------------------------------------------------------------------
-
     /**
-     * @param sortedValues
-     * @param fieldValues
-     * @param duplicateValues
+     * Get the field to aggregate on for each index field. Multilingual fields (eg. tag.*) use the
+     * default language keyword field. Fields not in the index or not aggregatable are ignored.
      */
-    private static void addtoSortedSet(SortedSet<String> sortedValues,
-                                       String[] fieldValues, ObjectKeyIntOpenHashMap duplicateValues) {
-        for (String value : fieldValues) {
-            sortedValues.add(value);
-            if (duplicateValues.containsKey(value)) {
-                int nb = duplicateValues.get(value);
-                duplicateValues.remove(value);
-                duplicateValues.put(value, nb + 1);
-            } else
-                duplicateValues.put(value, 1);
+    private Map<String, String> getAggregatableFields(Iterable<String> indexFields) throws Exception {
+        Map<String, List<String>> candidates = new HashMap<>();
+        for (String indexField : indexFields) {
+            if (indexField.endsWith(".*")) {
+                String base = indexField.substring(0, indexField.length() - 2);
+                candidates.put(indexField, Arrays.asList(base + ".default.keyword", base + ".default"));
+            } else {
+                candidates.put(indexField, Arrays.asList(indexField, indexField + ".keyword"));
+            }
         }
+
+        List<String> fields = candidates.values().stream().flatMap(List::stream).distinct().collect(Collectors.toList());
+        FieldCapsResponse fieldCaps = searchManager.getClient().getClient()
+            .fieldCaps(f -> f.index(searchManager.getDefaultIndex()).fields(fields));
+
+        Map<String, String> aggregatableFields = new HashMap<>();
+        candidates.forEach((indexField, fieldCandidates) -> fieldCandidates.stream()
+            .filter(field -> isAggregatable(fieldCaps.fields().get(field)))
+            .findFirst()
+            .ifPresent(field -> aggregatableFields.put(indexField, field)));
+        return aggregatableFields;
     }
 
-    //---------------------------------------------------------------------------
+    private static boolean isAggregatable(Map<String, FieldCapability> capabilities) {
+        return capabilities != null && !capabilities.isEmpty()
+            && capabilities.values().stream().allMatch(FieldCapability::aggregatable);
+    }
 
     /**
-     * Create value element for each item of the string array
+     * Create value element for each term, sorted alphabetically or by frequency with the count.
      */
-    private static List<Element> createValuesElement(SortedSet<String> sortedValues, boolean isRange) {
-        List<Element> valuesList = new ArrayList<Element>();
-        if (!isRange) {
+    private static List<Element> createValuesElements(Aggregate terms, boolean freq) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        if (terms != null && terms.isSterms()) {
+            for (StringTermsBucket bucket : terms.sterms().buckets().array()) {
+                counts.put(bucket.key().stringValue(), bucket.docCount());
+            }
+        } else if (terms != null && terms.isLterms()) {
+            for (LongTermsBucket bucket : terms.lterms().buckets().array()) {
+                counts.put(bucket.keyAsString() != null ? bucket.keyAsString() : String.valueOf(bucket.key()), bucket.docCount());
+            }
+        }
+
+        List<Element> valuesList = new ArrayList<>();
+        if (freq) {
+            // Buckets are ordered by frequency
+            counts.forEach((value, count) -> valuesList.add(new Element("Value", Csw.NAMESPACE_CSW)
+                .setAttribute("count", Long.toString(count))
+                .setText(value)));
+        } else {
+            Collator stringCollator = Collator.getInstance();
+            stringCollator.setStrength(Collator.PRIMARY);
+            SortedSet<String> sortedValues = new TreeSet<>(stringCollator);
+            sortedValues.addAll(counts.keySet());
             for (String value : sortedValues) {
                 valuesList.add(new Element("Value", Csw.NAMESPACE_CSW).setText(value));
             }
-        } else {
-            valuesList.add(new Element("MinValue", Csw.NAMESPACE_CSW).setText(sortedValues.first()));
-            valuesList.add(new Element("MaxValue", Csw.NAMESPACE_CSW).setText(sortedValues.last()));
         }
         return valuesList;
     }
 
-    //---------------------------------------------------------------------------
+    private static List<Element> createRangeElements(Aggregate min, Aggregate max) {
+        String minValue = min == null ? null : getValue(min.isMin() ? min.min() : null);
+        String maxValue = max == null ? null : getValue(max.isMax() ? max.max() : null);
+        List<Element> valuesList = new ArrayList<>();
+        if (minValue != null && maxValue != null) {
+            valuesList.add(new Element("MinValue", Csw.NAMESPACE_CSW).setText(minValue));
+            valuesList.add(new Element("MaxValue", Csw.NAMESPACE_CSW).setText(maxValue));
+        }
+        return valuesList;
+    }
 
-    /**
-     * @param sortedValuesFrequency
-     * @return
-     */
-//    private static List<Element> createValuesByFrequency(TreeSet<SummaryComparator.SummaryElement> sortedValuesFrequency) {
-//
-//        List<Element> values = new ArrayList<Element>();
-//        Element value;
-//
-//        for (SummaryComparator.SummaryElement element : sortedValuesFrequency) {
-//            value = new Element("Value", Csw.NAMESPACE_CSW);
-//            value.setAttribute("count", Integer.toString(element.count));
-//            value.setText(element.name);
-//
-//            values.add(value);
-//        }
-//        return values;
-//    }
+    private static String getValue(SingleMetricAggregateBase aggregate) {
+        if (aggregate == null) {
+            return null;
+        }
+        if (aggregate.valueAsString() != null) {
+            return aggregate.valueAsString();
+        }
+        Double value = aggregate.value();
+        return value == null || value.isInfinite() || value.isNaN() ? null : String.valueOf(value);
+    }
 
     //---------------------------------------------------------------------------
 
@@ -290,7 +313,7 @@ public class GetDomain extends AbstractOperation implements CatalogService {
             List<Element> domainValues;
             try {
                 final int maxNumberOfRecordsForPropertyNames = _catalogConfig.getMaxNumberOfRecordsForPropertyNames();
-                domainValues = handlePropertyName(_catalogConfig, propertyNames, context, false, maxNumberOfRecordsForPropertyNames);
+                domainValues = handlePropertyName(propertyNames, context, false, maxNumberOfRecordsForPropertyNames);
             } catch (Exception e) {
                 Log.error(Geonet.CSW, "Error getting domain value for specified PropertyName : " + e);
                 throw new NoApplicableCodeEx(
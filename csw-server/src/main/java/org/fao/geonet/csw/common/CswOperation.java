@@ -57,6 +57,11 @@ public class CswOperation {
      */
     private List<String> constraintLanguage = new ArrayList<String>();
 
+    /**
+     * The ElementSetNames as advertised in the CSW server's GetCapabilities response.
+     */
+    private List<String> elementSetNameList = new ArrayList<String>();
+
     /**
      * The preferred OutputSchema from the above.
      */
@@ -136,6 +141,10 @@ public class CswOperation {
         return constraintLanguage;
     }
 
+    public List<String> getElementSetNameList() {
+        return elementSetNameList;
+    }
+
     public String getPreferredOutputFormat() {
         return preferredOutputFormat;
     }
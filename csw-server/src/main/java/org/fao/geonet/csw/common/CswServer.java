@@ -133,6 +133,7 @@ public class CswServer {
         List<Element> typeNames = null;
         List<Element> outputFormats = null;
         List<Element> constraintLanguages = null;
+        List<Element> elementSetNames = null;
 
         for (Element parameter : parameters) {
             String parameterName = parameter.getAttributeValue("name");
@@ -172,6 +173,13 @@ public class CswServer {
                 constraintLanguages = tmp;
                 log("Found " + constraintLanguages.size() + " constraintLanguage for operation: " + name);
             }
+
+            if (parameterName != null && parameterName.equalsIgnoreCase("ElementSetName")) {
+                @SuppressWarnings("unchecked")
+                List<Element> tmp = parameter.getChildren("Value", Csw.NAMESPACE_OWS);
+                elementSetNames = tmp;
+                log("Found " + elementSetNames.size() + " elementSetNames for operation: " + name);
+            }
         }
 
         if (outputSchemas != null) {
@@ -199,6 +207,12 @@ public class CswServer {
             log("No constraintLanguage for operation: " + name);
         }
 
+        if (elementSetNames != null) {
+            for (Element elementSetName : elementSetNames) {
+                op.getElementSetNameList().add(elementSetName.getValue().trim().toLowerCase());
+            }
+        }
+
         if (typeNames != null) {
             for (Element typeName : typeNames) {
                 String typeNameValue = typeName.getValue();
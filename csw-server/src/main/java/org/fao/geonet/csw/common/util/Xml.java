@@ -45,6 +45,7 @@ import org.fao.geonet.csw.common.ElementSetName;
 import org.fao.geonet.csw.common.ResultType;
 import org.fao.geonet.csw.common.exceptions.InvalidParameterValueEx;
 import org.fao.geonet.kernel.SchemaManager;
+import org.fao.geonet.utils.SaxonDocument;
 
 import static org.fao.geonet.utils.Xml.getSAXBuilder;
 
@@ -123,6 +124,41 @@ public class Xml {
     public static Element applyElementSetName(ServiceContext context, SchemaManager schemaManager, String schema,
                                                Element result, String outputSchema, ElementSetName elementSetName,
                                                ResultType resultType, String id, String displayLanguage) throws InvalidParameterValueEx {
+        Path xslFile = getElementSetNameStyleSheet(schemaManager, schema, outputSchema, elementSetName, id);
+        Map<String, Object> params = new HashMap<>();
+        params.put("lang", displayLanguage);
+
+        try {
+            result = org.fao.geonet.utils.Xml.transform(result, xslFile, params);
+        } catch (Exception e) {
+            throw transformationError(context, id, xslFile, e);
+        }
+        return result;
+    }
+
+    /**
+     * Applies stylesheet according to ElementSetName and schema to a record in the Saxon tree
+     * model. The result stays in that model so that it can be transformed again without any
+     * conversion.
+     *
+     * @see #applyElementSetName(ServiceContext, SchemaManager, String, Element, String, ElementSetName, ResultType, String, String)
+     */
+    public static SaxonDocument applyElementSetName(ServiceContext context, SchemaManager schemaManager, String schema,
+                                                    SaxonDocument result, String outputSchema, ElementSetName elementSetName,
+                                                    ResultType resultType, String id, String displayLanguage) throws InvalidParameterValueEx {
+        Path xslFile = getElementSetNameStyleSheet(schemaManager, schema, outputSchema, elementSetName, id);
+        Map<String, Object> params = new HashMap<>();
+        params.put("lang", displayLanguage);
+
+        try {
+            return org.fao.geonet.utils.Xml.transformToDocument(result, xslFile, params);
+        } catch (Exception e) {
+            throw transformationError(context, id, xslFile, e);
+        }
+    }
+
+    private static Path getElementSetNameStyleSheet(SchemaManager schemaManager, String schema, String outputSchema,
+                                                    ElementSetName elementSetName, String id) throws InvalidParameterValueEx {
         Path schemaDir = schemaManager.getSchemaCSWPresentDir(schema);
         Path styleSheet = schemaDir.resolve(outputSchema + "-" + elementSetName + ".xsl");
         Path styleSheetWithoutElementSet = schemaDir.resolve(outputSchema + ".xsl");
@@ -132,23 +168,17 @@ public class Xml {
                 String.format(
                     "OutputSchema '%s' not supported for metadata with '%s' (%s).\nCorresponding XSL transformation '%s' (or '%s') does not exist for this schema.\nThe record will not be returned in response.",
                     outputSchema, id, schema, styleSheet.getFileName(), styleSheetWithoutElementSet.getFileName()));
-        } else {
-            Map<String, Object> params = new HashMap<>();
-            params.put("lang", displayLanguage);
-
-            Path xslFile = Files.exists(styleSheet) ? styleSheet : styleSheetWithoutElementSet;
-            try {
-                result = org.fao.geonet.utils.Xml.transform(result, xslFile, params);
-            } catch (Exception e) {
-                String msg = String.format(
-                    "Error occurred while transforming metadata with id '%s' using '%s'.",
-                    id, xslFile.getFileName());
-                context.error(msg);
-                context.error("  (C) StackTrace:\n" + Util.getStackTrace(e));
-                throw new InvalidParameterValueEx("OutputSchema", msg);
-            }
-            return result;
         }
+        return Files.exists(styleSheet) ? styleSheet : styleSheetWithoutElementSet;
+    }
+
+    private static InvalidParameterValueEx transformationError(ServiceContext context, String id, Path xslFile, Exception e) {
+        String msg = String.format(
+            "Error occurred while transforming metadata with id '%s' using '%s'.",
+            id, xslFile.getFileName());
+        context.error(msg);
+        context.error("  (C) StackTrace:\n" + Util.getStackTrace(e));
+        return new InvalidParameterValueEx("OutputSchema", msg);
     }
 
 }
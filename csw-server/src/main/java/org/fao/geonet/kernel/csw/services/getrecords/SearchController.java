@@ -29,7 +29,9 @@ import co.elastic.clients.elasticsearch.core.search.Hit;
 import co.elastic.clients.elasticsearch.core.search.TotalHits;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
 import jeeves.server.context.ServiceContext;
+import jeeves.server.dispatchers.ServiceManager;
 import org.apache.commons.lang.StringUtils;
 import org.fao.geonet.ApplicationContextHolder;
 import org.fao.geonet.GeonetContext;
@@ -47,6 +49,7 @@ import org.fao.geonet.domain.AbstractMetadata;
 import org.fao.geonet.kernel.DataManager;
 import org.fao.geonet.kernel.SchemaManager;
 import org.fao.geonet.kernel.csw.services.getrecords.es.CswFilter2Es;
+import org.fao.geonet.kernel.datamanager.IMetadataManager;
 import org.fao.geonet.kernel.datamanager.IMetadataUtils;
 import org.fao.geonet.kernel.schema.MetadataSchema;
 import org.fao.geonet.kernel.search.EsFilterBuilder;
@@ -54,6 +57,7 @@ import org.fao.geonet.kernel.search.EsSearchManager;
 import org.fao.geonet.kernel.setting.SettingManager;
 import org.fao.geonet.kernel.setting.Settings;
 import org.fao.geonet.utils.Log;
+import org.fao.geonet.utils.SaxonDocument;
 import org.fao.geonet.utils.Xml;
 import org.jdom.Attribute;
 import org.jdom.Comment;
@@ -61,10 +65,19 @@ import org.jdom.Content;
 import org.jdom.Element;
 import org.jdom.Namespace;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextCallable;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 public class SearchController {
@@ -90,6 +103,31 @@ public class SearchController {
     @Autowired
     private SchemaManager schemaManager;
 
+    @Autowired
+    private IMetadataManager metadataManager;
+
+    /**
+     * Number of records of a GetRecords page converted at the same time.
+     */
+    @Value("${csw.getRecords.threads:4}")
+    private int threads;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("CswGetRecords-");
+        threadFactory.setDaemon(true);
+        executor = Executors.newFixedThreadPool(threads, threadFactory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * Retrieves metadata from the database. Conversion between metadata record and output schema
      * are defined in xml/csw/schemas/ directory.
@@ -119,15 +157,56 @@ public class SearchController {
             }
         }
 
+        AbstractMetadata metadata;
         try {
             //--- get metadata from DB
-            GeonetContext gc = (GeonetContext) context.getHandlerContext(Geonet.CONTEXT_NAME);
-            boolean forEditing = false, withValidationErrors = false, keepXlinkAttributes = false;
-            Element res = gc.getBean(DataManager.class).getMetadata(context, id, forEditing, withValidationErrors, keepXlinkAttributes);
-            SchemaManager scm = gc.getBean(SchemaManager.class);
-            if (res == null) {
-                return null;
-            }
+            metadata = metadataUtils.findOne(id);
+        } catch (Exception e) {
+            context.error("Error while getting metadata with id : " + id);
+            context.error("  (C) StackTrace:\n" + Util.getStackTrace(e));
+            throw new NoApplicableCodeEx("Raised exception while getting metadata :" + e);
+        }
+        if (metadata == null) {
+            return null;
+        }
+        return retrieveMetadata(context, metadata, setName, outSchema, elemNames, typeName, resultType, strategy, displayLanguage);
+    }
+
+    /**
+     * Converts a metadata already loaded from the database, see
+     * {@link #retrieveMetadata(ServiceContext, String, ElementSetName, String, Set, String, ResultType, String, String, boolean)}.
+     */
+    private Element retrieveMetadata(ServiceContext context, AbstractMetadata metadata, ElementSetName setName,
+                                     String outSchema, Set<String> elemNames, String typeName, ResultType resultType,
+                                     String strategy, String displayLanguage) throws CatalogException {
+        String id = String.valueOf(metadata.getId());
+        return convertMetadata(context, id, getMetadata(context, metadata), setName, outSchema, elemNames,
+            typeName, resultType, strategy, displayLanguage);
+    }
+
+    /**
+     * Builds the XML of a metadata loaded from the database, with its information element.
+     */
+    private Element getMetadata(ServiceContext context, AbstractMetadata metadata) throws CatalogException {
+        try {
+            boolean keepXlinkAttributes = false;
+            return metadataManager.getMetadata(context, metadata, keepXlinkAttributes);
+        } catch (Exception e) {
+            context.error("Error while getting metadata with id : " + metadata.getId());
+            context.error("  (C) StackTrace:\n" + Util.getStackTrace(e));
+            throw new NoApplicableCodeEx("Raised exception while getting metadata :" + e);
+        }
+    }
+
+    /**
+     * Converts the XML of a metadata, with its information element, to the output schema. Does not
+     * access the database so that it can run outside of the request thread.
+     */
+    private Element convertMetadata(ServiceContext context, String id, Element res, ElementSetName setName,
+                                    String outSchema, Set<String> elemNames, String typeName, ResultType resultType,
+                                    String strategy, String displayLanguage) throws CatalogException {
+        try {
+            SchemaManager scm = schemaManager;
             Element info = res.getChild(Edit.RootChild.INFO, Edit.NAMESPACE);
             String schema = info.getChildText(Edit.Info.Elem.SCHEMA);
 
@@ -152,14 +231,27 @@ public class SearchController {
             // OGC 07-045 :
             // Because for this application profile it is not possible that a query includes more than one
             // typename, any value(s) of the typeNames attribute of the elementSetName element are ignored.
-            res = org.fao.geonet.csw.common.util.Xml.applyElementSetName(context, scm, schema, res, outSchema, setName, resultType, id, displayLanguage);
+            Path postProcessingStyleSheet = getPostProcessingStyleSheet(context, scm, schema, outSchema);
+            if (elemNames == null && postProcessingStyleSheet != null) {
+                // Both stylesheets read the record in the Saxon tree model, a JDOM tree
+                // is only built for the post-processing result.
+                SaxonDocument document = org.fao.geonet.csw.common.util.Xml.applyElementSetName(context, scm, schema,
+                    SaxonDocument.of(res), outSchema, setName, resultType, id, displayLanguage);
 
-            res = applyElementNames(context, elemNames, typeName, scm, schema, res, resultType, info, strategy);
+                if (Log.isDebugEnabled(Geonet.CSW_SEARCH))
+                    Log.debug(Geonet.CSW_SEARCH, "SearchController:retrieveMetadata: before applying postprocessing on metadata Element for id " + id);
 
-            if (Log.isDebugEnabled(Geonet.CSW_SEARCH))
-                Log.debug(Geonet.CSW_SEARCH, "SearchController:retrieveMetadata: before applying postprocessing on metadata Element for id " + id);
+                res = applyPostProcessing(context, postProcessingStyleSheet, document, id, displayLanguage);
+            } else {
+                res = org.fao.geonet.csw.common.util.Xml.applyElementSetName(context, scm, schema, res, outSchema, setName, resultType, id, displayLanguage);
+
+                res = applyElementNames(context, elemNames, typeName, scm, schema, res, resultType, info, strategy);
+
+                if (Log.isDebugEnabled(Geonet.CSW_SEARCH))
+                    Log.debug(Geonet.CSW_SEARCH, "SearchController:retrieveMetadata: before applying postprocessing on metadata Element for id " + id);
 
-            res = applyPostProcessing(context, scm, schema, res, outSchema, setName, resultType, id, displayLanguage);
+                res = applyPostProcessing(context, postProcessingStyleSheet, res, id, displayLanguage);
+            }
 
             if (Log.isDebugEnabled(Geonet.CSW_SEARCH))
                 Log.debug(Geonet.CSW_SEARCH, "SearchController:retrieveMetadata: All processing is complete on metadata Element for id " + id);
@@ -464,7 +556,8 @@ public class SearchController {
             SettingManager sm = context.getBean(SettingManager.class);
             boolean ignoreMetadataNotSupported = sm.getValueAsBool(Settings.SYSTEM_CSW_GETRECORDS_IGNORE_METADATA_NOT_SUPPORTED, true);
 
-            SearchResponse result = searchManager.query(esJsonQuery, new HashSet<>(), startPos - 1, maxRecords, sort);
+            SearchResponse result = searchManager.query(esJsonQuery, Collections.singleton(Geonet.IndexFieldNames.ID),
+                startPos - 1, maxRecords, sort);
 
             List<Hit> hits = result.hits().hits();
 
@@ -481,32 +574,55 @@ public class SearchController {
             int counter = 0;
 
             ObjectMapper objectMapper = new ObjectMapper();
-
+            List<Integer> ids = new ArrayList<>(hits.size());
             for (Hit hit : hits) {
-                int mdId = Integer.parseInt((String) objectMapper.convertValue(hit.source(), Map.class).get("id"));
+                ids.add(Integer.parseInt((String) objectMapper.convertValue(hit.source(), Map.class).get(Geonet.IndexFieldNames.ID)));
+            }
 
-                AbstractMetadata metadata = metadataUtils.findOne(mdId);
+            // Load the records of the page at once and convert them in parallel, keeping the order of the hits.
+            // The XML of the records is built in this thread, the conversions do not use the database entities.
+            Map<Integer, AbstractMetadata> records = new HashMap<>();
+            for (AbstractMetadata metadata : metadataUtils.findAll(new HashSet<>(ids))) {
+                records.put(metadata.getId(), metadata);
+            }
+            Map<String, Element> recordsXml = new LinkedHashMap<>();
+            for (Integer id : ids) {
+                AbstractMetadata metadata = records.get(id);
+                if (metadata == null) {
+                    // Deleted since it was indexed
+                    continue;
+                }
+                recordsXml.put(String.valueOf(id), getMetadata(context, metadata));
+            }
 
-                String displayLanguage = context.getLanguage();
-                try {
-                    // The query to retrieve GetRecords, filters by portal. No need to re-check again when retrieving each metadata.
-                    Element resultMD = retrieveMetadata(context, metadata.getId() + "",
-                        setName, outSchema, elemNames, typeName, resultType, strategy, displayLanguage, false);
+            String displayLanguage = context.getLanguage();
+            // The query to retrieve GetRecords, filters by portal. No need to re-check again when retrieving each metadata.
+            List<Future<Element>> conversions = submitConversions(context, recordsXml, (conversionContext, id, metadata) ->
+                convertMetadata(conversionContext, id, metadata, setName, outSchema, elemNames, typeName, resultType,
+                    strategy, displayLanguage));
 
-                    if (resultMD != null) {
-                        if (resultType == ResultType.RESULTS) {
-                            results.addContent(resultMD);
-                        }
+            try {
+                for (Future<Element> conversion : conversions) {
+                    try {
+                        Element resultMD = getConversionResult(conversion);
 
-                        counter++;
-                    }
-                } catch (InvalidParameterValueEx e) {
-                    if (ignoreMetadataNotSupported) {
-                        results.addContent(new Comment(e.getMessage()));
-                    } else {
-                        throw e;
+                        if (resultMD != null) {
+                            if (resultType == ResultType.RESULTS) {
+                                results.addContent(resultMD);
+                            }
+
+                            counter++;
+                        }
+                    } catch (InvalidParameterValueEx e) {
+                        if (ignoreMetadataNotSupported) {
+                            results.addContent(new Comment(e.getMessage()));
+                        } else {
+                            throw e;
+                        }
                     }
                 }
+            } finally {
+                conversions.forEach(conversion -> conversion.cancel(true));
             }
 
             results.setAttribute("numberOfRecordsMatched", Long.toString(numMatches));
@@ -529,6 +645,52 @@ public class SearchController {
     }
 
 
+    /**
+     * Converts records on the executor and returns the conversions in the order of the records.
+     * Each conversion runs with its own copy of the service context and with the security context
+     * of the caller, both removed from the thread of the executor once the record is converted.
+     */
+    @VisibleForTesting
+    List<Future<Element>> submitConversions(ServiceContext context, Map<String, Element> records,
+                                            RecordConversion conversion) {
+        List<Future<Element>> conversions = new ArrayList<>(records.size());
+        records.forEach((id, metadata) -> {
+            ServiceContext conversionContext = createConversionContext(context);
+            // The security context holds the user the privileges are checked for
+            conversions.add(executor.submit(new DelegatingSecurityContextCallable<>(() -> {
+                conversionContext.setAsThreadLocal();
+                try {
+                    return conversion.convert(conversionContext, id, metadata);
+                } finally {
+                    ServiceContext.clearAsThreadLocal();
+                }
+            })));
+        });
+        return conversions;
+    }
+
+    private static ServiceContext createConversionContext(ServiceContext context) {
+        ServiceContext conversionContext = context.getBean(ServiceManager.class)
+            .createServiceContext(context.getService(), context.getApplicationContext());
+        conversionContext.setLanguage(context.getLanguage());
+        conversionContext.setUserSession(context.getUserSession());
+        conversionContext.setIpAddress(context.getIpAddress());
+        return conversionContext;
+    }
+
+    @VisibleForTesting
+    interface RecordConversion {
+        Element convert(ServiceContext context, String id, Element metadata) throws CatalogException;
+    }
+
+    private static Element getConversionResult(Future<Element> conversion) throws Exception {
+        try {
+            return conversion.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
     /**
      * Applies stylesheet according to ElementSetName and schema.
      *
@@ -576,7 +738,52 @@ public class SearchController {
 
     /**
      * Applies postprocessing stylesheet if available.
-     * <p>
+     *
+     * @param context         Service context
+     * @param styleSheet      postprocessing stylesheet, see {@link #getPostProcessingStyleSheet}, or null
+     * @param result          result
+     * @param id              metadata id
+     * @param displayLanguage language to use in response
+     * @return metadata
+     */
+    private static Element applyPostProcessing(ServiceContext context, Path styleSheet, Element result,
+                                               String id, String displayLanguage) {
+        if (styleSheet != null) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("lang", displayLanguage);
+
+            try {
+                result = Xml.transform(result, styleSheet, params);
+            } catch (Exception e) {
+                context.error("Error while transforming metadata with id : " + id + " using " + styleSheet);
+                context.error("  (C) StackTrace:\n" + Util.getStackTrace(e));
+                return null;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Applies the postprocessing stylesheet to a record in the Saxon tree model.
+     *
+     * @return the metadata, or null if the transformation failed.
+     */
+    private static Element applyPostProcessing(ServiceContext context, Path styleSheet, SaxonDocument document,
+                                               String id, String displayLanguage) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("lang", displayLanguage);
+
+        try {
+            return Xml.transform(document, styleSheet, params);
+        } catch (Exception e) {
+            context.error("Error while transforming metadata with id : " + id + " using " + styleSheet);
+            context.error("  (C) StackTrace:\n" + Util.getStackTrace(e));
+            return null;
+        }
+    }
+
+    /**
      * Postprocessing files should be in the present/csw folder of the schema and have this naming:
      * <p>
      * For default CSW service
@@ -589,21 +796,10 @@ public class SearchController {
      * 1) gmd-inspire-postprocessing.xsl : Postprocessing xsl applied for custom inspire sub-portal when requesting iso output
      * 2) csw-inspire-postprocessing.xsl : Postprocessing xsl applied for custom inspire sub-portal when requesting ogc (csw) output
      *
-     * @param context         Service context
-     * @param schemaManager   schemamanager
-     * @param schema          schema
-     * @param result          result
-     * @param outputSchema    requested OutputSchema
-     * @param elementSetName  requested ElementSetName
-     * @param resultType      requested ResultTYpe
-     * @param id              metadata id
-     * @param displayLanguage language to use in response
-     * @return metadata
-     * @throws InvalidParameterValueEx hmm
+     * @return the postprocessing stylesheet for the service, or null if the schema does not define one.
      */
-    private static Element applyPostProcessing(ServiceContext context, SchemaManager schemaManager, String schema,
-                                               Element result, String outputSchema, ElementSetName elementSetName,
-                                               ResultType resultType, String id, String displayLanguage) throws InvalidParameterValueEx {
+    private static Path getPostProcessingStyleSheet(ServiceContext context, SchemaManager schemaManager, String schema,
+                                                    String outputSchema) {
         Path schemaDir = schemaManager.getSchemaCSWPresentDir(schema);
         final NodeInfo nodeInfo = ApplicationContextHolder.get().getBean(NodeInfo.class);
 
@@ -612,19 +808,6 @@ public class SearchController {
             + (context.getService().equals("csw") ? nodeInfo.getId() : context.getService())
             + "-postprocessing.xsl");
 
-        if (Files.exists(styleSheet)) {
-            Map<String, Object> params = new HashMap<>();
-            params.put("lang", displayLanguage);
-
-            try {
-                result = Xml.transform(result, styleSheet, params);
-            } catch (Exception e) {
-                context.error("Error while transforming metadata with id : " + id + " using " + styleSheet);
-                context.error("  (C) StackTrace:\n" + Util.getStackTrace(e));
-                return null;
-            }
-        }
-
-        return result;
+        return Files.exists(styleSheet) ? styleSheet : null;
     }
 }
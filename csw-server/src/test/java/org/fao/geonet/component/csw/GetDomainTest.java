@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.component.csw;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
+import co.elastic.clients.elasticsearch.core.FieldCapsResponse;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.field_caps.FieldCapability;
+import com.fasterxml.jackson.databind.JsonNode;
+import jeeves.server.UserSession;
+import jeeves.server.context.ServiceContext;
+import org.fao.geonet.NodeInfo;
+import org.fao.geonet.csw.common.Csw;
+import org.fao.geonet.index.es.EsRestClient;
+import org.fao.geonet.kernel.csw.CatalogConfiguration;
+import org.fao.geonet.kernel.csw.services.getrecords.FieldMapper;
+import org.fao.geonet.kernel.search.EsFilterBuilder;
+import org.fao.geonet.kernel.search.EsSearchManager;
+import org.jdom.Element;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GetDomainTest {
+    private GetDomain getDomain;
+    private EsSearchManager searchManager;
+    private MockedStatic<EsFilterBuilder> filterBuilder;
+
+    @Before
+    public void setUp() throws Exception {
+        CatalogConfiguration catalogConfig = mock(CatalogConfiguration.class);
+        when(catalogConfig.getGetRecordsRangeFields()).thenReturn(Set.of("createDate"));
+        FieldMapper fieldMapper = mock(FieldMapper.class);
+        when(fieldMapper.map("keyword")).thenReturn("tag.*");
+        when(fieldMapper.map("CreationDate")).thenReturn("createDate");
+
+        FieldCapability aggregatable = mock(FieldCapability.class);
+        when(aggregatable.aggregatable()).thenReturn(true);
+        FieldCapsResponse fieldCaps = mock(FieldCapsResponse.class);
+        when(fieldCaps.fields()).thenReturn(Map.of(
+            "tag.default.keyword", Map.of("keyword", aggregatable),
+            "createDate", Map.of("date", aggregatable)));
+        ElasticsearchClient client = mock(ElasticsearchClient.class);
+        when(client.fieldCaps(any(Function.class))).thenReturn(fieldCaps);
+        EsRestClient restClient = mock(EsRestClient.class);
+        when(restClient.getClient()).thenReturn(client);
+
+        SearchResponse<Void> response = mock(SearchResponse.class);
+        when(response.aggregations()).thenReturn(Map.of(
+            "p0", Aggregate.of(a -> a.sterms(t -> t.buckets(b -> b.array(List.of(
+                termsBucket("water", 5), termsBucket("Air", 2)))))),
+            "p1min", Aggregate.of(a -> a.min(m -> m.value(1.0).valueAsString("2020-01-01"))),
+            "p1max", Aggregate.of(a -> a.max(m -> m.value(2.0).valueAsString("2024-12-31")))));
+        searchManager = mock(EsSearchManager.class);
+        when(searchManager.getClient()).thenReturn(restClient);
+        when(searchManager.getDefaultIndex()).thenReturn("gn-records");
+        when(searchManager.aggregate(any(JsonNode.class), any())).thenReturn(response);
+
+        getDomain = new GetDomain();
+        ReflectionTestUtils.setField(getDomain, "_catalogConfig", catalogConfig);
+        ReflectionTestUtils.setField(getDomain, "fieldMapper", fieldMapper);
+        ReflectionTestUtils.setField(getDomain, "searchManager", searchManager);
+        ReflectionTestUtils.setField(getDomain, "node", mock(NodeInfo.class));
+        ReflectionTestUtils.setField(getDomain, "cacheSeconds", 60);
+        getDomain.init();
+
+        // The permission filter depends on the user
+        filterBuilder = mockStatic(EsFilterBuilder.class);
+        filterBuilder.when(() -> EsFilterBuilder.build(any(ServiceContext.class), anyString(), anyBoolean(), any()))
+            .thenAnswer(invocation -> "owner:" + invocation.getArgument(0, ServiceContext.class).getUserSession().getUserIdAsInt());
+    }
+
+    @After
+    public void tearDown() {
+        filterBuilder.close();
+    }
+
+    @Test
+    public void testValuesComputedWithAggregations() throws Exception {
+        List<Element> domainValues = getDomain.handlePropertyName(new String[]{"keyword", "CreationDate"},
+            contextFor(1), false, 10);
+
+        assertEquals(2, domainValues.size());
+        Element keywords = domainValues.get(0);
+        assertEquals("keyword", keywords.getChildText("PropertyName", Csw.NAMESPACE_CSW));
+        List<?> values = keywords.getChild("ListOfValues", Csw.NAMESPACE_CSW).getChildren("Value", Csw.NAMESPACE_CSW);
+        assertEquals(2, values.size());
+        assertEquals("Air", ((Element) values.get(0)).getText());
+        assertEquals("water", ((Element) values.get(1)).getText());
+
+        Element range = domainValues.get(1).getChild("RangeOfValues", Csw.NAMESPACE_CSW);
+        assertEquals("2020-01-01", range.getChildText("MinValue", Csw.NAMESPACE_CSW));
+        assertEquals("2024-12-31", range.getChildText("MaxValue", Csw.NAMESPACE_CSW));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Aggregation>> aggregations = ArgumentCaptor.forClass(Map.class);
+        ArgumentCaptor<JsonNode> query = ArgumentCaptor.forClass(JsonNode.class);
+        verify(searchManager).aggregate(query.capture(), aggregations.capture());
+        assertEquals("tag.default.keyword", aggregations.getValue().get("p0").terms().field());
+        assertEquals(10, (int) aggregations.getValue().get("p0").terms().size());
+        assertEquals("createDate", aggregations.getValue().get("p1min").min().field());
+        assertEquals("createDate", aggregations.getValue().get("p1max").max().field());
+        assertTrue(query.getValue().toString().contains("owner:1"));
+    }
+
+    @Test
+    public void testValuesWithFrequency() throws Exception {
+        List<Element> values = getDomain.handlePropertyName(new String[]{"keyword"}, contextFor(1), true, 10);
+
+        assertEquals(2, values.size());
+        assertEquals("water", values.get(0).getText());
+        assertEquals("5", values.get(0).getAttributeValue("count"));
+        assertEquals("Air", values.get(1).getText());
+        assertEquals("2", values.get(1).getAttributeValue("count"));
+    }
+
+    @Test
+    public void testValuesCachedForEachPermissionFilter() throws Exception {
+        String[] properties = {"keyword"};
+        List<Element> first = getDomain.handlePropertyName(properties, contextFor(1), false, 10);
+        // Callers get their own copy of the cached values
+        first.get(0).detach().removeContent();
+
+        List<Element> cached = getDomain.handlePropertyName(properties, contextFor(1), false, 10);
+        verify(searchManager, times(1)).aggregate(any(JsonNode.class), any());
+        assertEquals(2, cached.get(0).getChild("ListOfValues", Csw.NAMESPACE_CSW).getChildren().size());
+
+        getDomain.handlePropertyName(properties, contextFor(2), false, 10);
+        ArgumentCaptor<JsonNode> queries = ArgumentCaptor.forClass(JsonNode.class);
+        verify(searchManager, times(2)).aggregate(queries.capture(), any());
+        assertTrue(queries.getAllValues().get(1).toString().contains("owner:2"));
+
+        getDomain.handlePropertyName(properties, contextFor(2), false, 10);
+        verify(searchManager, times(2)).aggregate(any(JsonNode.class), any());
+    }
+
+    private static StringTermsBucket termsBucket(String value, long count) {
+        return StringTermsBucket.of(b -> b.key(FieldValue.of(value)).docCount(count));
+    }
+
+    private static ServiceContext contextFor(int userId) {
+        UserSession userSession = mock(UserSession.class);
+        when(userSession.getUserIdAsInt()).thenReturn(userId);
+        ServiceContext context = mock(ServiceContext.class);
+        when(context.getUserSession()).thenReturn(userSession);
+        return context;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.kernel.csw.services.getrecords;
+
+import jeeves.server.UserSession;
+import jeeves.server.context.ServiceContext;
+import jeeves.server.dispatchers.ServiceManager;
+import org.jdom.Element;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SearchControllerTest {
+    private SearchController searchController;
+    private ServiceContext context;
+
+    @Before
+    public void setUp() {
+        ConfigurableApplicationContext applicationContext = mock(ConfigurableApplicationContext.class);
+        ServiceManager serviceManager = mock(ServiceManager.class);
+        when(applicationContext.getBean(ServiceManager.class)).thenReturn(serviceManager);
+        when(serviceManager.createServiceContext("csw", applicationContext)).thenAnswer(invocation ->
+            new ServiceContext("csw", applicationContext, new HashMap<>(), null));
+
+        context = new ServiceContext("csw", applicationContext, new HashMap<>(), null);
+        context.setLanguage("fre");
+        context.setUserSession(new UserSession());
+
+        searchController = new SearchController();
+        ReflectionTestUtils.setField(searchController, "threads", 4);
+        searchController.init();
+    }
+
+    @After
+    public void tearDown() {
+        searchController.shutdown();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testConversionsKeepTheOrderOfTheRecords() throws Exception {
+        Map<String, Element> records = new LinkedHashMap<>();
+        for (int i = 1; i <= 8; i++) {
+            records.put(String.valueOf(i), new Element("record").setText(String.valueOf(i)));
+        }
+
+        List<Future<Element>> conversions = searchController.submitConversions(context, records, (conversionContext, id, metadata) -> {
+            // The first records take the longest to convert
+            Thread.sleep(10L * (10 - Integer.parseInt(id)));
+            return new Element("converted").setText(metadata.getText());
+        });
+
+        List<String> converted = new ArrayList<>();
+        for (Future<Element> conversion : conversions) {
+            converted.add(conversion.get(10, TimeUnit.SECONDS).getText());
+        }
+        assertEquals(List.of("1", "2", "3", "4", "5", "6", "7", "8"), converted);
+    }
+
+    @Test
+    public void testConversionsRunWithTheirOwnContextAndTheCallerSecurityContext() throws Exception {
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken("editor", "");
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+
+        Map<String, Element> records = new LinkedHashMap<>();
+        records.put("1", new Element("record"));
+        records.put("2", new Element("record"));
+        List<ServiceContext> conversionContexts = new CopyOnWriteArrayList<>();
+        List<Object> authentications = new CopyOnWriteArrayList<>();
+
+        List<Future<Element>> conversions = searchController.submitConversions(context, records, (conversionContext, id, metadata) -> {
+            assertSame(conversionContext, ServiceContext.get());
+            conversionContexts.add(conversionContext);
+            authentications.add(SecurityContextHolder.getContext().getAuthentication());
+            return metadata;
+        });
+        for (Future<Element> conversion : conversions) {
+            conversion.get(10, TimeUnit.SECONDS);
+        }
+
+        assertEquals(2, conversionContexts.size());
+        assertNotSame(conversionContexts.get(0), conversionContexts.get(1));
+        for (ServiceContext conversionContext : conversionContexts) {
+            assertNotSame(context, conversionContext);
+            assertEquals("fre", conversionContext.getLanguage());
+            assertSame(context.getUserSession(), conversionContext.getUserSession());
+        }
+        assertEquals(List.of(authentication, authentication), authentications);
+
+        SecurityContextHolder.clearContext();
+        // Nothing is left on the threads of the executor once the records are converted
+        ExecutorService executor = (ExecutorService) ReflectionTestUtils.getField(searchController, "executor");
+        List<Future<Boolean>> leftovers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            leftovers.add(executor.submit(() ->
+                ServiceContext.get() != null || SecurityContextHolder.getContext().getAuthentication() != null));
+        }
+        for (Future<Boolean> leftover : leftovers) {
+            assertFalse(leftover.get(10, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -23,6 +23,8 @@
 
 package org.fao.geonet.repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import javax.annotation.Nonnull;
@@ -87,6 +89,36 @@ public class MetadataStatusRepositoryCustomImpl implements MetadataStatusReposit
         return _entityManager.createQuery(query).getResultList();
     }
 
+    @Nonnull
+    @Override
+    public List<MetadataStatus> findAllByMetadataIdInAndByType(Collection<Integer> metadataIds, StatusValueType type, Sort sort) {
+        if (metadataIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        CriteriaBuilder cb = _entityManager.getCriteriaBuilder();
+        CriteriaQuery<MetadataStatus> query = cb.createQuery(MetadataStatus.class);
+        Root<MetadataStatus> metadataStatusRoot = query.from(MetadataStatus.class);
+        Root<StatusValue> statusValueRoot = query.from(StatusValue.class);
+
+        query.select(metadataStatusRoot);
+
+        Predicate metadataIdInPredicate = metadataStatusRoot.get(MetadataStatus_.metadataId).in(metadataIds);
+
+        Predicate mdIdEquals = cb.equal(metadataStatusRoot.get(MetadataStatus_.statusValue),
+                statusValueRoot.get(StatusValue_.id));
+
+        Predicate statusTypePredicate = cb.equal(statusValueRoot.get(StatusValue_.type), type);
+
+        query.where(mdIdEquals, metadataIdInPredicate, statusTypePredicate);
+
+        if (sort != null) {
+            List<Order> orders = SortUtils.sortToJpaOrders(cb, sort, metadataStatusRoot);
+            query.orderBy(orders);
+        }
+
+        return _entityManager.createQuery(query).getResultList();
+    }
+
     /**
      * Search status.
      *
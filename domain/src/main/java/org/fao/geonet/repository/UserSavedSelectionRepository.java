@@ -29,6 +29,9 @@ import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Data Access object for accessing {@link UserSavedSelection} entities.
  */
@@ -39,4 +42,12 @@ public interface UserSavedSelectionRepository extends
 
     @Query("SELECT COUNT(DISTINCT u.user.id) FROM UserSavedSelection u WHERE u.metadataUuid = (:uuid) and u.selection.id = (:selectionId)")
     int countTimesUserSavedMetadata(@Param("uuid") String metadataUuid, @Param("selectionId") int selectionId);
+
+    /**
+     * Same as {@link #countTimesUserSavedMetadata(String, int)} for a set of records.
+     *
+     * @return a list of [metadata uuid, number of users] pairs. Records not saved by any user are not returned.
+     */
+    @Query("SELECT u.metadataUuid, COUNT(DISTINCT u.user.id) FROM UserSavedSelection u WHERE u.metadataUuid IN (:uuids) and u.selection.id = (:selectionId) GROUP BY u.metadataUuid")
+    List<Object[]> countTimesUserSavedMetadata(@Param("uuids") Collection<String> metadataUuids, @Param("selectionId") int selectionId);
 }
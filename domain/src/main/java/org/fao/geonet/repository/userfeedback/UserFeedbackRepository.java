@@ -22,6 +22,7 @@
  */
 package org.fao.geonet.repository.userfeedback;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -32,6 +33,7 @@ import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -110,4 +112,13 @@ public interface UserFeedbackRepository extends JpaRepository<UserFeedback, UUID
      * @return the user feedback
      */
     UserFeedback findByUuidAndStatus(String uuid, UserRatingStatus status);
+
+    /**
+     * Count the feedbacks of a set of metadata.
+     *
+     * @param metadataUuids the metadata uuids
+     * @return a list of [metadata uuid, number of feedbacks] pairs. Metadata with no feedback are not returned.
+     */
+    @Query("SELECT uf.metadata.uuid, COUNT(uf) FROM GUF_UserFeedback uf WHERE uf.metadata.uuid IN (:uuids) GROUP BY uf.metadata.uuid")
+    List<Object[]> countByMetadataUuidIn(@Param("uuids") Collection<String> metadataUuids);
 }
@@ -29,6 +29,8 @@ import static junit.framework.Assert.assertNull;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.UUID;
@@ -38,6 +40,7 @@ import org.fao.geonet.domain.ISODate;
 import org.fao.geonet.domain.MetadataStatus;
 import org.fao.geonet.domain.MetadataStatus_;
 import org.fao.geonet.domain.StatusValue;
+import org.fao.geonet.domain.StatusValueType;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
@@ -118,6 +121,30 @@ public class MetadataStatusRepositoryTest extends AbstractSpringDataTest {
         assertEquals(1, _repo.findAllByMetadataId(status1.getMetadataId(), sort).size());
     }
 
+    @Test
+    public void testFindAllByMetadataIdInAndByType() {
+        MetadataStatus status = _repo.save(newMetadataStatus());
+        MetadataStatus status2 = newMetadataStatus();
+        status2.setMetadataId(status.getMetadataId());
+        status2 = _repo.save(status2);
+        MetadataStatus status1 = _repo.save(newMetadataStatus());
+        MetadataStatus status3 = newMetadataStatus();
+        status3.getStatusValue().setType(StatusValueType.task);
+        _statusRepo.save(status3.getStatusValue());
+        status3.setMetadataId(status1.getMetadataId());
+        _repo.save(status3);
+        _repo.save(newMetadataStatus());
+
+        final Sort sort = SortUtils.createSort(MetadataStatus_.metadataId);
+        List<MetadataStatus> found = _repo.findAllByMetadataIdInAndByType(
+            Arrays.asList(status.getMetadataId(), status1.getMetadataId()), StatusValueType.workflow, sort);
+        assertEquals(3, found.size());
+        assertEquals(1, _repo.findAllByMetadataIdInAndByType(
+            Arrays.asList(status1.getMetadataId()), StatusValueType.task, sort).size());
+        assertEquals(0, _repo.findAllByMetadataIdInAndByType(
+            Collections.emptyList(), StatusValueType.workflow, sort).size());
+    }
+
     private MetadataStatus newMetadataStatus() {
 
         return newMetadataStatus(_inc, _statusRepo);
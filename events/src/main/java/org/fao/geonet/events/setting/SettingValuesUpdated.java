@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+package org.fao.geonet.events.setting;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published by the setting manager once a set of setting values has been changed, either through
+ * the setting manager or detected when the settings are refreshed from the database. Only the
+ * settings whose value actually changed are included.
+ */
+public class SettingValuesUpdated extends ApplicationEvent {
+    private final Map<String, String> oldValues;
+    private final Map<String, String> newValues;
+
+    /**
+     * @param source    the setting manager.
+     * @param oldValues the previous values of the changed settings, by setting name.
+     * @param newValues the new values of the changed settings, by setting name.
+     */
+    public SettingValuesUpdated(Object source, Map<String, String> oldValues, Map<String, String> newValues) {
+        super(source);
+        this.oldValues = Collections.unmodifiableMap(oldValues);
+        this.newValues = Collections.unmodifiableMap(newValues);
+    }
+
+    public Set<String> getNames() {
+        return newValues.keySet();
+    }
+
+    public boolean isChanged(String name) {
+        return newValues.containsKey(name);
+    }
+
+    public Map<String, String> getOldValues() {
+        return oldValues;
+    }
+
+    public Map<String, String> getNewValues() {
+        return newValues;
+    }
+}
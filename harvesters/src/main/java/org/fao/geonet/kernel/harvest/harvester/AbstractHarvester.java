@@ -25,6 +25,7 @@ package org.fao.geonet.kernel.harvest.harvester;
 
 import jeeves.server.UserSession;
 import jeeves.server.context.ServiceContext;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringUtils;
 import org.fao.geonet.Logger;
 import org.fao.geonet.constants.Geonet;
@@ -61,6 +62,7 @@ import org.fao.geonet.services.harvesting.notifier.SendNotification;
 import org.fao.geonet.util.LogUtil;
 import org.fao.geonet.utils.Log;
 import org.fao.geonet.utils.QuartzSchedulerUtils;
+import org.fao.geonet.utils.Xml;
 import org.jdom.Element;
 import org.jdom.JDOMException;
 import org.quartz.CronTrigger;
@@ -69,6 +71,7 @@ import org.quartz.JobKey;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
 import org.quartz.Trigger;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -137,6 +140,32 @@ public abstract class AbstractHarvester<T extends HarvestResult, P extends Abstr
     protected IMetadataSchemaUtils metadataSchemaUtils;
     protected IMetadataIndexer metadataIndexer;
 
+    /**
+     * Number of harvested records committed and indexed together, see {@link HarvestSession}.
+     * 0 to save and index each record on its own.
+     */
+    @Value("${harvester.session.chunkSize:100}")
+    private int sessionChunkSize = 100;
+
+    /**
+     * Maximum number of requests sent at the same time to the remote server by harvesters
+     * downloading records one by one, see {@link RecordFetcher}.
+     */
+    @Value("${harvester.fetch.threads:4}")
+    private int fetchThreads = 4;
+
+    /**
+     * Minimum time between the start of two requests to the remote server.
+     */
+    @Value("${harvester.fetch.minIntervalMillis:0}")
+    private long fetchMinIntervalMillis = 0;
+
+    /**
+     * Harvesters reading files skip the files not changed since their last run, see {@link HarvestManifest}.
+     */
+    @Value("${harvester.manifest.enabled:true}")
+    private boolean manifestEnabled = true;
+
     protected P params;
     protected T result;
 
@@ -664,7 +693,17 @@ public abstract class AbstractHarvester<T extends HarvestResult, P extends Abstr
                         logger.info("Started harvesting from node : " + nodeName);
                         HarvestWithIndexProcessor h = new HarvestWithIndexProcessor(dataMan, logger);
                         // todo check (was: processwithfastindexing)
-                        h.process(settingManager.getSiteId());
+                        if (sessionChunkSize > 0) {
+                            HarvestSession session = HarvestSession.open(context, sessionChunkSize);
+                            try {
+                                h.process(settingManager.getSiteId());
+                            } finally {
+                                session.close();
+                                session.updateResult(result);
+                            }
+                        } else {
+                            h.process(settingManager.getSiteId());
+                        }
                         logger.info("Ended harvesting from node : " + nodeName);
 
                         if (getParams().isOneRunOnly()) {
@@ -811,6 +850,39 @@ public abstract class AbstractHarvester<T extends HarvestResult, P extends Abstr
         return params;
     }
 
+    protected RecordFetcher.Limits getFetchLimits() {
+        return new RecordFetcher.Limits(fetchThreads, fetchMinIntervalMillis);
+    }
+
+    /**
+     * @param fingerprint anything else than the harvester settings the harvested records depend
+     *                    on, eg. the date of a conversion stylesheet.
+     * @return the files harvested by the last run, or null if manifests are disabled.
+     */
+    protected HarvestManifest loadManifest(String fingerprint) throws IOException {
+        if (!manifestEnabled) {
+            return null;
+        }
+        return HarvestManifest.load(HarvestManifest.getFile(context, getParams().getUuid()),
+            getSettingsFingerprint() + fingerprint);
+    }
+
+    /**
+     * @return a hash of the harvester settings, except its run information. The settings are
+     * stored again when the harvester is updated, so the hash changes on each update.
+     */
+    protected String getSettingsFingerprint() {
+        Element node = harvesterSettingsManager.get("harvesting/id:" + id, -1);
+        if (node == null) {
+            return "";
+        }
+        Element children = node.getChild("children");
+        if (children != null) {
+            children.removeChildren("info");
+        }
+        return DigestUtils.sha256Hex(Xml.getString(node));
+    }
+
     private void doInit(Element node) throws BadInputEx {
         setParams(createParams());
         params.create(node);
@@ -820,6 +892,11 @@ public abstract class AbstractHarvester<T extends HarvestResult, P extends Abstr
         removeIcon(resources, getParams().getUuid());
 
         context.getBean(SourceRepository.class).deleteById(getParams().getUuid());
+        try {
+            HarvestManifest.delete(HarvestManifest.getFile(context, getParams().getUuid()));
+        } catch (IOException e) {
+            Log.warning(Geonet.HARVESTER + "." + getType(), "Unable to delete manifest: " + getParams().getUuid(), e);
+        }
         // FIXME: Should also delete the categories we have created for servers
     }
 
@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.kernel.harvest.harvester;
+
+import jeeves.server.context.ServiceContext;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.fao.geonet.kernel.GeonetworkDataDirectory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The files harvested by the last run of a harvester reading files, eg. in a directory or in a
+ * web accessible folder. For each file, it keeps its size, last modification date and content
+ * hash, and the uuids of the records harvested from it.
+ * <p>
+ * A file with the same size and modification date, or else with the same content, as in the
+ * last run does not need to be read again as long as its records are still in the catalogue.
+ * Each run builds a new manifest with the files it harvested, see {@link #put}, which is
+ * saved once their records are committed. The manifest of the last run is ignored when the
+ * harvester configuration changed.
+ * <p>
+ * The manifest is a text file in the harvester folder of the data directory, with a line
+ * per file.
+ */
+public class HarvestManifest {
+    private static final String HEADER = "#manifest-1\t";
+    private static final String SEPARATOR = "\t";
+    private static final String UUID_SEPARATOR = ",";
+    private static final String NONE = "-";
+
+    private final Path file;
+    private final String fingerprint;
+    private final Map<String, Entry> previous;
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+    private final Map<String, String> keysByRecordId = new ConcurrentHashMap<>();
+
+    private HarvestManifest(Path file, String fingerprint, Map<String, Entry> previous) {
+        this.file = file;
+        this.fingerprint = fingerprint;
+        this.previous = previous;
+    }
+
+    /**
+     * @return the manifest file of a harvester.
+     */
+    public static Path getFile(ServiceContext context, String harvesterUuid) {
+        return context.getBean(GeonetworkDataDirectory.class).getSystemDataDir()
+            .resolve("harvester").resolve(harvesterUuid + ".manifest");
+    }
+
+    /**
+     * Loads the manifest of the last run.
+     *
+     * @param fingerprint the harvester configuration, see {@link AbstractHarvester#getSettingsFingerprint()}.
+     *                    The last run is ignored if it was harvested with another configuration.
+     */
+    public static HarvestManifest load(Path file, String fingerprint) throws IOException {
+        Map<String, Entry> entries = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if ((HEADER + fingerprint).equals(line)) {
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split(SEPARATOR, 5);
+                    if (fields.length == 5) {
+                        try {
+                            entries.put(fields[4], new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                                NONE.equals(fields[2]) ? null : fields[2],
+                                Arrays.asList(StringUtils.split(fields[3], UUID_SEPARATOR))));
+                        } catch (NumberFormatException e) {
+                            // Not a file harvested by the last run
+                        }
+                    }
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // First run
+        }
+        return new HarvestManifest(file, fingerprint, entries);
+    }
+
+    /**
+     * Deletes the manifest of a harvester, eg. when the harvester is removed.
+     */
+    public static void delete(Path file) throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    public static String hash(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return DigestUtils.sha256Hex(in);
+        }
+    }
+
+    public static String hash(byte[] content) {
+        return DigestUtils.sha256Hex(content);
+    }
+
+    /**
+     * @return a digest to hash a file while it is read, see {@link #hash(MessageDigest)}.
+     */
+    public static MessageDigest newDigest() {
+        return DigestUtils.getSha256Digest();
+    }
+
+    /**
+     * @return the hash of the content fed to a digest created by {@link #newDigest()}, the same
+     * as {@link #hash(Path)} for the same content.
+     */
+    public static String hash(MessageDigest digest) {
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    /**
+     * @return the file as harvested by the last run, or null if it was not.
+     */
+    @Nullable
+    public Entry get(String key) {
+        return previous.get(key);
+    }
+
+    /**
+     * Adds a file harvested by this run.
+     *
+     * @param key       the path or the URL of the file.
+     * @param recordIds the ids of the records of the file. The file is left out of the manifest
+     *                  if one of them cannot be committed.
+     */
+    public void put(String key, Entry entry, Collection<String> recordIds) {
+        current.put(key, entry);
+        for (String id : recordIds) {
+            keysByRecordId.put(id, key);
+        }
+    }
+
+    /**
+     * Saves the files harvested by this run, which will be the last run.
+     *
+     * @param rejectedIds the ids of the records which were not committed.
+     */
+    public void save(Set<String> rejectedIds) throws IOException {
+        Map<String, Entry> entries = new HashMap<>(current);
+        for (String id : rejectedIds) {
+            String key = keysByRecordId.get(id);
+            if (key != null) {
+                entries.remove(key);
+            }
+        }
+
+        Files.createDirectories(file.getParent());
+        Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                writer.write(HEADER + fingerprint);
+                writer.newLine();
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    if (e.getValue().isStorable(e.getKey())) {
+                        writer.write(e.getValue().toLine(e.getKey()));
+                        writer.newLine();
+                    }
+                }
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * A harvested file.
+     */
+    public static class Entry {
+        private final long size;
+        private final long lastModified;
+        private final String hash;
+        private final List<String> uuids;
+
+        /**
+         * @param size         the size of the file, -1 if unknown.
+         * @param lastModified the modification date of the file in milliseconds, -1 if unknown.
+         * @param hash         the hash of the content of the file, or any other tag which changes
+         *                     with its content, eg. an HTTP ETag. null if unknown.
+         * @param uuids        the uuids of the records harvested from the file.
+         */
+        public Entry(long size, long lastModified, @Nullable String hash, List<String> uuids) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.uuids = Collections.unmodifiableList(uuids);
+        }
+
+        /**
+         * @return true if the size and the modification date are known and have not changed.
+         */
+        public boolean isSameFile(long size, long lastModified) {
+            return size >= 0 && lastModified >= 0 && this.size == size && this.lastModified == lastModified;
+        }
+
+        /**
+         * @return true if the content hash is known and has not changed.
+         */
+        public boolean isSameContent(@Nullable String hash) {
+            return hash != null && hash.equals(this.hash);
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public List<String> getUuids() {
+            return uuids;
+        }
+
+        private boolean isStorable(String key) {
+            return StringUtils.containsNone(key, "\t\r\n")
+                && uuids.stream().allMatch(uuid -> StringUtils.containsNone(uuid, ",\t\r\n"));
+        }
+
+        private String toLine(String key) {
+            return size + SEPARATOR + lastModified + SEPARATOR + (hash == null ? NONE : hash) + SEPARATOR
+                + String.join(UUID_SEPARATOR, uuids) + SEPARATOR + key;
+        }
+    }
+}
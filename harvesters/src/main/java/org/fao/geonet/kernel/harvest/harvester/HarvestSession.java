@@ -0,0 +1,381 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.kernel.harvest.harvester;
+
+import com.google.common.annotations.VisibleForTesting;
+import jeeves.server.context.ServiceContext;
+import org.fao.geonet.constants.Geonet;
+import org.fao.geonet.kernel.datamanager.IMetadataIndexer;
+import org.fao.geonet.kernel.datamanager.IMetadataManager;
+import org.fao.geonet.kernel.datamanager.IMetadataUtils;
+import org.fao.geonet.kernel.search.IndexingMode;
+import org.fao.geonet.kernel.search.index.BatchIndexingListener;
+import org.fao.geonet.utils.Log;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind mode of a harvest run.
+ * <p>
+ * The database changes of the harvest are committed together instead of one transaction
+ * per save, and the records added or updated are indexed in batch once committed. The
+ * index changes are sent once, when the session is closed.
+ * <p>
+ * The session is bound to the harvesting thread. Harvesters report the records they saved
+ * with {@link #indexRecord(ServiceContext, String)}, delete records with
+ * {@link #deleteRecord(ServiceContext, String)} and run their requests to the remote
+ * server with {@link #fetch(Callable)}, so that the transaction is only open around the
+ * database writes: it is committed before each request and after chunk size records. The
+ * entities loaded before a request are detached after it.
+ * <p>
+ * When a record fails with a database error, the transaction can only be rolled back: the
+ * other changes of the transaction are lost, logged, and harvested again by the next run.
+ * The records deleted in the transaction are indexed again, and
+ * {@link #updateResult(HarvestResult)} removes the lost changes from the harvest result.
+ */
+public class HarvestSession implements AutoCloseable {
+    private static final ThreadLocal<HarvestSession> CURRENT = new ThreadLocal<>();
+
+    private final PlatformTransactionManager transactionManager;
+    private final IMetadataIndexer metadataIndexer;
+    private final IMetadataUtils metadataUtils;
+    private final int chunkSize;
+    /**
+     * Records added or updated, and records deleted, in the current transaction.
+     */
+    private final Set<String> changedIds = new LinkedHashSet<>();
+    private final Set<String> deletedIds = new LinkedHashSet<>();
+    /**
+     * Records committed and not indexed yet.
+     */
+    private final Set<String> committedIds = new LinkedHashSet<>();
+    private final Set<String> rejectedIds = new HashSet<>();
+    private final List<Consumer<Set<String>>> afterCommitTasks = new ArrayList<>();
+    private TransactionStatus transaction;
+    /**
+     * Number of harvests running in the session. A harvest started in a thread which already
+     * has a session joins it.
+     */
+    private int depth = 0;
+    private int indexedRecords = 0;
+    private int rolledBackAdded = 0;
+    private int rolledBackUpdated = 0;
+    private int rolledBackRemoved = 0;
+
+    @VisibleForTesting
+    HarvestSession(PlatformTransactionManager transactionManager, IMetadataIndexer metadataIndexer,
+                   IMetadataUtils metadataUtils, int chunkSize) {
+        this.transactionManager = transactionManager;
+        this.metadataIndexer = metadataIndexer;
+        this.metadataUtils = metadataUtils;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Opens a session for the current thread, or joins the session already open in the thread.
+     *
+     * @param chunkSize number of records committed and indexed together.
+     */
+    public static HarvestSession open(ServiceContext context, int chunkSize) {
+        HarvestSession session = current();
+        if (session != null) {
+            session.depth++;
+            return session;
+        }
+        session = new HarvestSession(context.getBean(PlatformTransactionManager.class),
+            context.getBean(IMetadataIndexer.class), context.getBean(IMetadataUtils.class), chunkSize);
+        session.begin();
+        CURRENT.set(session);
+        return session;
+    }
+
+    /**
+     * @return the session of the current thread, if any.
+     */
+    @Nullable
+    public static HarvestSession current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Indexes a record added or updated by the harvest. In a session the record is indexed
+     * with the other records of its chunk once they are committed. Otherwise the changes are
+     * flushed and the record is indexed right away.
+     */
+    public static void indexRecord(ServiceContext context, String id) throws Exception {
+        indexRecord(context, id, true);
+    }
+
+    /**
+     * @param forceRefresh without session, send the record to the index right away.
+     * @see #indexRecord(ServiceContext, String)
+     */
+    public static void indexRecord(ServiceContext context, String id, boolean forceRefresh) throws Exception {
+        HarvestSession session = current();
+        if (session != null) {
+            session.recordChanged(id);
+        } else {
+            context.getBean(IMetadataManager.class).flush();
+            context.getBean(IMetadataIndexer.class).indexMetadata(id, forceRefresh, IndexingMode.full);
+        }
+    }
+
+    /**
+     * Indexes records added or updated by the harvest. In a session they are indexed with
+     * their chunk, otherwise they are indexed in the indexing thread pool.
+     */
+    public static void indexRecords(ServiceContext context, List<?> ids) {
+        HarvestSession session = current();
+        if (session != null) {
+            ids.stream().filter(Objects::nonNull).forEach(id -> session.recordChanged(id.toString()));
+        } else {
+            context.getBean(IMetadataIndexer.class).batchIndexInThreadPool(context, ids);
+        }
+    }
+
+    /**
+     * Deletes a record removed from the remote server. The record is removed from the index
+     * right away; in a session, it is indexed again if the transaction is rolled back.
+     */
+    public static void deleteRecord(ServiceContext context, String id) throws Exception {
+        context.getBean(IMetadataManager.class).deleteMetadata(context, id);
+        HarvestSession session = current();
+        if (session != null) {
+            session.deletedIds.add(id);
+        }
+    }
+
+    /**
+     * Runs a request to the remote server. In a session, the changes made so far are
+     * committed first and the request runs without transaction.
+     * <p>
+     * Committing closes the persistence context of the transaction: the entities loaded
+     * before the request are detached once it returns. Their lazy associations can't be
+     * loaded and changing them has no effect, so harvesters keep the ids of the records
+     * across the request and load the entities again afterwards.
+     */
+    public static <T> T fetch(Callable<T> request) throws Exception {
+        HarvestSession session = current();
+        if (session == null) {
+            return request.call();
+        }
+        session.endTransaction();
+        try {
+            return request.call();
+        } finally {
+            session.begin();
+        }
+    }
+
+    /**
+     * Runs a task once the records saved so far by the harvest are committed: when the session
+     * is closed, or right away without session. The task gets the ids of the records which
+     * could not be saved.
+     */
+    public static void afterCommit(Consumer<Set<String>> task) {
+        HarvestSession session = current();
+        if (session != null) {
+            session.afterCommitTasks.add(task);
+        } else {
+            task.accept(Collections.emptySet());
+        }
+    }
+
+    /**
+     * Registers a record added or updated by the harvest. The transaction is committed once
+     * it has chunk size records, or as soon as it can only be rolled back. Committed records
+     * are indexed by chunk size.
+     */
+    public void recordChanged(String id) {
+        changedIds.add(id);
+        if (transaction == null || changedIds.size() >= chunkSize || transaction.isRollbackOnly()) {
+            endTransaction();
+            begin();
+        }
+    }
+
+    public int getIndexedRecords() {
+        return indexedRecords;
+    }
+
+    /**
+     * Removes the records lost by the rolled back transactions from the counters of the harvest.
+     * The records added or updated are counted as not inserted.
+     */
+    public void updateResult(@Nullable HarvestResult result) {
+        if (result == null || depth > 0) {
+            return;
+        }
+        result.addedMetadata = Math.max(0, result.addedMetadata - rolledBackAdded);
+        result.updatedMetadata = Math.max(0, result.updatedMetadata - rolledBackUpdated);
+        result.locallyRemoved = Math.max(0, result.locallyRemoved - rolledBackRemoved);
+        result.couldNotInsert += rolledBackAdded + rolledBackUpdated;
+    }
+
+    /**
+     * Commits the last changes, indexes their records and sends the pending index changes.
+     * The session of a joined harvest stays open.
+     */
+    @Override
+    public void close() {
+        if (depth > 0) {
+            depth--;
+            return;
+        }
+        CURRENT.remove();
+        try {
+            endTransaction();
+            indexCommitted();
+        } finally {
+            try {
+                metadataIndexer.forceIndexChanges();
+            } catch (IOException e) {
+                Log.error(Geonet.HARVESTER, "Error sending the index changes of the harvest: " + e.getMessage(), e);
+            }
+            for (Consumer<Set<String>> task : afterCommitTasks) {
+                try {
+                    task.accept(Collections.unmodifiableSet(rejectedIds));
+                } catch (RuntimeException e) {
+                    Log.error(Geonet.HARVESTER, "Error after committing the harvest: " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private void begin() {
+        DefaultTransactionDefinition definition =
+            new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        definition.setName("Harvest session");
+        transaction = transactionManager.getTransaction(definition);
+    }
+
+    /**
+     * Commits or rolls back the current transaction. The committed records are indexed
+     * once there are chunk size of them.
+     */
+    private void endTransaction() {
+        List<String> ids = new ArrayList<>(changedIds);
+        List<String> deleted = new ArrayList<>(deletedIds);
+        changedIds.clear();
+        deletedIds.clear();
+        TransactionStatus currentTransaction = transaction;
+        transaction = null;
+        if (currentTransaction == null) {
+            return;
+        }
+
+        try {
+            if (currentTransaction.isRollbackOnly()) {
+                transactionManager.rollback(currentTransaction);
+                Log.error(Geonet.HARVESTER, String.format(
+                    "Harvest changes rolled back after a database error. %d record(s) not saved: %s", ids.size(), ids));
+                rolledBack(ids, deleted);
+                return;
+            }
+            transactionManager.commit(currentTransaction);
+        } catch (TransactionException e) {
+            Log.error(Geonet.HARVESTER, String.format(
+                "Error committing harvest changes. %d record(s) not saved: %s. Error is: %s", ids.size(), ids, e.getMessage()), e);
+            rolledBack(ids, deleted);
+            return;
+        }
+
+        committedIds.addAll(ids);
+        if (committedIds.size() >= chunkSize) {
+            indexCommitted();
+        }
+    }
+
+    /**
+     * Records the changes lost by a rollback. Records which still exist were updated and keep
+     * their indexed version, the others were added and were not indexed yet. Deleted records
+     * are back in the database and are indexed again.
+     */
+    private void rolledBack(List<String> ids, List<String> deleted) {
+        rejectedIds.addAll(ids);
+        for (String id : ids) {
+            if (exists(id)) {
+                rolledBackUpdated++;
+            } else {
+                rolledBackAdded++;
+            }
+        }
+
+        List<String> restored = new ArrayList<>();
+        for (String id : deleted) {
+            if (exists(id)) {
+                restored.add(id);
+            }
+        }
+        rolledBackRemoved += restored.size();
+        if (!restored.isEmpty()) {
+            try {
+                metadataIndexer.indexMetadataInBatch(restored, IndexingMode.full, BatchIndexingListener.NONE);
+            } catch (Exception e) {
+                Log.error(Geonet.HARVESTER, String.format(
+                    "Error indexing again the records %s whose deletion was rolled back: %s", restored, e.getMessage()), e);
+            }
+        }
+    }
+
+    private boolean exists(String id) {
+        try {
+            return metadataUtils.existsMetadata(Integer.parseInt(id));
+        } catch (Exception e) {
+            Log.warning(Geonet.HARVESTER, String.format(
+                "Can't check if record %s exists: %s", id, e.getMessage()));
+            return false;
+        }
+    }
+
+    private void indexCommitted() {
+        List<String> ids = new ArrayList<>(committedIds);
+        committedIds.clear();
+        if (!ids.isEmpty()) {
+            try {
+                metadataIndexer.indexMetadataInBatch(ids, IndexingMode.full, BatchIndexingListener.NONE);
+                indexedRecords += ids.size();
+            } catch (Exception e) {
+                Log.error(Geonet.HARVESTER, String.format(
+                    "Error indexing harvested records %s: %s", ids, e.getMessage()), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.kernel.harvest.harvester;
+
+import jeeves.server.context.ServiceContext;
+import org.fao.geonet.constants.Geonet;
+import org.fao.geonet.utils.GeonetHttpRequestFactory;
+import org.fao.geonet.utils.Log;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Downloads the remote records of a harvest ahead of their alignment.
+ * <p>
+ * The aligner registers, in order, the uuids of the records it is going to retrieve with
+ * {@link #prefetch(Collection)} and takes each record with {@link #get(String)} when it gets
+ * to it. At most {@link Limits#getThreads()} requests run at the same time and at most twice as
+ * many records are downloaded ahead, so the records are still saved on the harvesting thread
+ * and in the same order. Records which were not registered are downloaded when they are taken.
+ * Registered records which are not taken before a record registered after them are discarded.
+ * <p>
+ * With one thread, all records are downloaded when they are taken. With more, the HTTP
+ * connection pool allows as many connections to the remote server until the fetcher is closed.
+ *
+ * @param <V> the downloaded record, eg. an XML document or a MEF file.
+ */
+public class RecordFetcher<V> implements AutoCloseable {
+    private final ServiceContext context;
+    private final Fetch<V> fetch;
+    private final Consumer<V> discard;
+    private final Limits limits;
+    private final String host;
+    private final GeonetHttpRequestFactory requestFactory;
+    private final ExecutorService executor;
+    private final int window;
+    private final LinkedHashSet<String> queued = new LinkedHashSet<>();
+    private final Map<String, Future<V>> pending = new LinkedHashMap<>();
+    private final List<Future<V>> skipped = new ArrayList<>();
+    private final Object turnLock = new Object();
+    private long nextRequestTime = 0;
+    private volatile boolean closed = false;
+
+    /**
+     * @param name    name of the harvester, used for the download thread names.
+     * @param host    name of the remote server host, allowed as many connections as threads.
+     * @param fetch   downloads one record.
+     * @param discard releases a record which was downloaded but not taken, eg. deletes a
+     *                temporary file.
+     */
+    public RecordFetcher(ServiceContext context, String name, @Nullable String host, Limits limits,
+                         Fetch<V> fetch, Consumer<V> discard) {
+        this.context = context;
+        this.fetch = fetch;
+        this.discard = discard;
+        this.limits = limits;
+        this.host = host;
+        if (limits.getThreads() > 1) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("harvest-fetch-" + name + "-");
+            threadFactory.setDaemon(true);
+            this.executor = Executors.newFixedThreadPool(limits.getThreads(), threadFactory);
+            this.window = limits.getThreads() * 2;
+            if (host != null) {
+                this.requestFactory = context.getBean(GeonetHttpRequestFactory.class);
+                this.requestFactory.allowConnectionsPerHost(host, limits.getThreads());
+            } else {
+                this.requestFactory = null;
+            }
+        } else {
+            this.executor = null;
+            this.window = 0;
+            this.requestFactory = null;
+        }
+    }
+
+    /**
+     * Registers records which are going to be taken, in the order they are going to be taken.
+     */
+    public void prefetch(Collection<String> uuids) {
+        if (executor == null) {
+            return;
+        }
+        for (String uuid : uuids) {
+            if (!pending.containsKey(uuid)) {
+                queued.add(uuid);
+            }
+        }
+        submitNext();
+    }
+
+    /**
+     * Returns a record, waiting for its download if it is in progress.
+     *
+     * @throws Exception the error raised by the download of the record.
+     */
+    public V get(String uuid) throws Exception {
+        Future<V> future = null;
+        if (pending.containsKey(uuid)) {
+            Iterator<Map.Entry<String, Future<V>>> iterator = pending.entrySet().iterator();
+            while (future == null) {
+                Map.Entry<String, Future<V>> entry = iterator.next();
+                iterator.remove();
+                if (entry.getKey().equals(uuid)) {
+                    future = entry.getValue();
+                } else {
+                    skipped.add(entry.getValue());
+                }
+            }
+        } else if (queued.contains(uuid)) {
+            Iterator<String> iterator = queued.iterator();
+            while (!iterator.next().equals(uuid)) {
+                iterator.remove();
+            }
+            iterator.remove();
+        }
+        discardSkipped();
+        submitNext();
+
+        if (future == null) {
+            waitForTurn();
+            return fetch.fetch(uuid);
+        }
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Stops the downloads in progress and discards the records which were not taken.
+     */
+    @Override
+    public void close() {
+        if (executor == null) {
+            return;
+        }
+        closed = true;
+        queued.clear();
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                Log.warning(Geonet.HARVESTER, "Record downloads still running after the end of the harvest.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (requestFactory != null) {
+                requestFactory.releaseConnectionsPerHost(host, limits.getThreads());
+            }
+        }
+        skipped.addAll(pending.values());
+        pending.clear();
+        discardSkipped();
+    }
+
+    private void submitNext() {
+        Iterator<String> iterator = queued.iterator();
+        while (pending.size() < window && iterator.hasNext()) {
+            String uuid = iterator.next();
+            iterator.remove();
+            pending.put(uuid, executor.submit(() -> {
+                context.setAsThreadLocal();
+                try {
+                    waitForTurn();
+                    V value = fetch.fetch(uuid);
+                    if (closed) {
+                        discard(value);
+                        return null;
+                    }
+                    return value;
+                } finally {
+                    ServiceContext.clearAsThreadLocal();
+                }
+            }));
+        }
+    }
+
+    /**
+     * Discards the records downloaded but not taken.
+     */
+    private void discardSkipped() {
+        Iterator<Future<V>> iterator = skipped.iterator();
+        while (iterator.hasNext()) {
+            Future<V> future = iterator.next();
+            if (future.isDone()) {
+                iterator.remove();
+                if (!future.isCancelled()) {
+                    try {
+                        discard(future.get());
+                    } catch (Exception e) {
+                        // Failed download, nothing to discard
+                    }
+                }
+            }
+        }
+    }
+
+    private void discard(V value) {
+        if (value != null && discard != null) {
+            discard.accept(value);
+        }
+    }
+
+    /**
+     * Waits until the minimum interval since the previous request is over.
+     */
+    private void waitForTurn() throws InterruptedException {
+        if (limits.getMinIntervalMillis() <= 0) {
+            return;
+        }
+        long wait;
+        synchronized (turnLock) {
+            long now = System.currentTimeMillis();
+            long start = Math.max(now, nextRequestTime);
+            nextRequestTime = start + limits.getMinIntervalMillis();
+            wait = start - now;
+        }
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+    }
+
+    /**
+     * Downloads one record.
+     */
+    @FunctionalInterface
+    public interface Fetch<V> {
+        V fetch(String uuid) throws Exception;
+    }
+
+    /**
+     * Limits of the requests sent to a remote server by a harvester.
+     */
+    public static class Limits {
+        public static final Limits SEQUENTIAL = new Limits(1, 0);
+
+        private final int threads;
+        private final long minIntervalMillis;
+
+        /**
+         * @param threads           maximum number of requests running at the same time.
+         * @param minIntervalMillis minimum time between the start of two requests.
+         */
+        public Limits(int threads, long minIntervalMillis) {
+            this.threads = Math.max(1, threads);
+            this.minIntervalMillis = Math.max(0, minIntervalMillis);
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public long getMinIntervalMillis() {
+            return minIntervalMillis;
+        }
+    }
+}
@@ -41,6 +41,7 @@ import org.fao.geonet.kernel.harvest.harvester.AbstractHarvester;
 import org.fao.geonet.kernel.harvest.harvester.CategoryMapper;
 import org.fao.geonet.kernel.harvest.harvester.GroupMapper;
 import org.fao.geonet.kernel.harvest.harvester.HarvestResult;
+import org.fao.geonet.kernel.harvest.harvester.HarvestSession;
 import org.fao.geonet.kernel.search.IndexingMode;
 import org.fao.geonet.repository.MetadataRepository;
 import org.fao.geonet.repository.OperationAllowedRepository;
@@ -314,7 +315,7 @@ public class ArcSDEHarvester extends AbstractHarvester<HarvestResult, ArcSDEPara
             }
             if (!idsResultHs.contains(existingId)) {
                 log.debug("  Removing: " + existingId);
-                metadataManager.deleteMetadata(context, existingId.toString());
+                HarvestSession.deleteRecord(context, existingId.toString());
                 result.locallyRemoved++;
             }
         }
@@ -350,9 +351,7 @@ public class ArcSDEHarvester extends AbstractHarvester<HarvestResult, ArcSDEPara
         metadata.getCategories().clear();
         aligner.addCategories(metadata, params.getCategories(), localCateg, context, null, true);
 
-        metadataManager.flush();
-
-        dataMan.indexMetadata(id, true);
+        HarvestSession.indexRecord(context, id);
     }
 
     /**
@@ -402,7 +401,7 @@ public class ArcSDEHarvester extends AbstractHarvester<HarvestResult, ArcSDEPara
 
         aligner.addPrivileges(id, params.getPrivileges(), localGroups, context);
 
-        dataMan.indexMetadata(id, true);
+        HarvestSession.indexRecord(context, id);
 
         return id;
     }
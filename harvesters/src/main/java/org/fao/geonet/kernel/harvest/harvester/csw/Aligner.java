@@ -43,15 +43,17 @@ import org.fao.geonet.domain.MetadataType;
 import org.fao.geonet.domain.Pair;
 import org.fao.geonet.exceptions.OperationAbortedEx;
 import org.fao.geonet.kernel.*;
-import org.fao.geonet.kernel.datamanager.IMetadataIndexer;
 import org.fao.geonet.kernel.datamanager.IMetadataManager;
 import org.fao.geonet.kernel.datamanager.IMetadataUtils;
 import org.fao.geonet.kernel.harvest.BaseAligner;
+import org.fao.geonet.kernel.harvest.harvester.AbstractParams;
 import org.fao.geonet.kernel.harvest.harvester.CategoryMapper;
 import org.fao.geonet.kernel.harvest.harvester.GroupMapper;
 import org.fao.geonet.kernel.harvest.harvester.HarvestError;
 import org.fao.geonet.kernel.harvest.harvester.HarvestResult;
+import org.fao.geonet.kernel.harvest.harvester.HarvestSession;
 import org.fao.geonet.kernel.harvest.harvester.HarvesterUtil;
+import org.fao.geonet.kernel.harvest.harvester.RecordFetcher;
 import org.fao.geonet.kernel.harvest.harvester.RecordInfo;
 import org.fao.geonet.kernel.harvest.harvester.UUIDMapper;
 import org.fao.geonet.kernel.schema.MetadataSchema;
@@ -77,7 +79,7 @@ import static org.fao.geonet.utils.AbstractHttpRequest.Method.POST;
 
 
 
-public class Aligner extends BaseAligner<CswParams> {
+public class Aligner extends BaseAligner<CswParams> implements AutoCloseable {
 
     private ServiceContext context;
     private DataManager dataMan;
@@ -87,18 +89,21 @@ public class Aligner extends BaseAligner<CswParams> {
 
     private IMetadataUtils metadataUtils;
     private IMetadataManager metadataManager;
-    private IMetadataIndexer metadataIndexer;
 
     private HarvestResult result;
-    private GetRecordByIdRequest request;
+    private CswServer server;
+    private RecordFetcher<Element> fetcher;
+    private Map<String, Element> pageRecords = new HashMap<>();
     private String processName;
     private Map<String, Object> processParams = new HashMap<>();
     private Logger log;
     private EsSearchManager searchManager;
 
-    public Aligner(AtomicBoolean cancelMonitor, ServiceContext sc, CswServer server, CswParams params, Logger log) throws OperationAbortedEx {
+    public Aligner(AtomicBoolean cancelMonitor, ServiceContext sc, CswServer server, CswParams params, Logger log,
+                   RecordFetcher.Limits fetchLimits) throws OperationAbortedEx {
         super(cancelMonitor);
         this.context = sc;
+        this.server = server;
         this.params = params;
         this.log = log;
 
@@ -106,7 +111,6 @@ public class Aligner extends BaseAligner<CswParams> {
         dataMan = gc.getBean(DataManager.class);
         metadataUtils = gc.getBean(IMetadataUtils.class);
         metadataManager = gc.getBean(IMetadataManager.class);
-        metadataIndexer = gc.getBean(IMetadataIndexer.class);
         searchManager = gc.getBean(EsSearchManager.class);
         result = new HarvestResult();
         result.unretrievable = 0;
@@ -114,9 +118,15 @@ public class Aligner extends BaseAligner<CswParams> {
         result.couldNotInsert = 0;
         result.xpathFilterExcluded = 0;
 
-        //--- setup get-record-by-id request
+        //--- check the get-record-by-id request can be set up
 
-        request = new GetRecordByIdRequest(sc);
+        String host = createGetRecordByIdRequest().getHost();
+
+        fetcher = new RecordFetcher<>(context, params.getName(), host, fetchLimits, this::fetchRecord, null);
+    }
+
+    private GetRecordByIdRequest createGetRecordByIdRequest() throws OperationAbortedEx {
+        GetRecordByIdRequest request = new GetRecordByIdRequest(context);
         request.setElementSetName(ElementSetName.FULL);
 
         CswOperation oper = server.getOperation(CswServer.GET_RECORD_BY_ID);
@@ -154,9 +164,24 @@ public class Aligner extends BaseAligner<CswParams> {
             request.setCredentials(params.getUsername(), params.getPassword());
         }
 
+        return request;
+    }
+
+    /**
+     * Stops the downloads of records in progress.
+     */
+    @Override
+    public void close() {
+        fetcher.close();
     }
 
-    public HarvestResult align(Collection<RecordInfo> records, Collection<HarvestError> errors) throws Exception {
+    /**
+     * @param records     the records of a search page.
+     * @param pageRecords the full records returned by the search, by uuid, if any. The other
+     *                    records are retrieved with GetRecordById requests.
+     */
+    public HarvestResult align(Collection<RecordInfo> records, Map<String, Element> pageRecords,
+                               Collection<HarvestError> errors) throws Exception {
         if (cancelMonitor.get()) {
             return result;
         }
@@ -175,6 +200,15 @@ public class Aligner extends BaseAligner<CswParams> {
         processName = filter.one();
         processParams = filter.two();
 
+        this.pageRecords = new HashMap<>(pageRecords);
+        List<String> uuidsToFetch = new ArrayList<>();
+        for (RecordInfo ri : records) {
+            if (!this.pageRecords.containsKey(ri.uuid) && isRetrieved(ri)) {
+                uuidsToFetch.add(ri.uuid);
+            }
+        }
+        fetcher.prefetch(uuidsToFetch);
+
         insertOrUpdate(records, errors);
         log.debug("End of alignment for : " + params.getName());
 
@@ -241,6 +275,24 @@ public class Aligner extends BaseAligner<CswParams> {
         }
     }
 
+    /**
+     * Checks if the record is going to be retrieved by {@link #insertOrUpdate(Collection, Collection)},
+     * ie. it is added, overridden or more recent than the harvested copy.
+     */
+    private boolean isRetrieved(RecordInfo ri) {
+        try {
+            if (metadataUtils.getMetadataId(ri.uuid) == null) {
+                return true;
+            } else if (localUuids.getID(ri.uuid) == null) {
+                return params.getOverrideUuid() != AbstractParams.OverrideUuid.SKIP;
+            }
+            String date = localUuids.getChangeDate(ri.uuid);
+            return date != null && ri.isMoreRecentThan(date);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
     /**
      * Remove records no longer on the remote CSW server
      *
@@ -258,7 +310,7 @@ public class Aligner extends BaseAligner<CswParams> {
             if (!records.contains(uuid)) {
                 String id = localUuids.getID(uuid);
                 log.debug("  - Removing old metadata with local id:" + id);
-                metadataManager.deleteMetadata(context, id);
+                HarvestSession.deleteRecord(context, id);
                 result.locallyRemoved++;
             }
         }
@@ -369,7 +421,7 @@ public class Aligner extends BaseAligner<CswParams> {
 
         addPrivileges(id, params.getPrivileges(), localGroups, context);
 
-        metadataIndexer.indexMetadata(id, true, IndexingMode.full);
+        HarvestSession.indexRecord(context, id);
         result.addedMetadata++;
     }
 
@@ -433,7 +485,7 @@ public class Aligner extends BaseAligner<CswParams> {
             } else {
                 log.debug("  - Updating local metadata for uuid:" + ri.uuid);
                 if (updatingLocalMetadata(ri, id, force)) {
-                    metadataIndexer.indexMetadata(id, true, IndexingMode.full);
+                    HarvestSession.indexRecord(context, id);
                     result.updatedMetadata++;
                 }
             }
@@ -507,7 +559,8 @@ public class Aligner extends BaseAligner<CswParams> {
     }
 
     /**
-     * Does CSW GetRecordById request. Returns null on error conditions:
+     * Gets the record from the search page or does CSW GetRecordById request. Returns null on
+     * error conditions:
      *  - If validation is requested and the metadata does not validate.
      *  - No metadata is retrieved.
      *  - If metadata resource is duplicated.
@@ -517,30 +570,19 @@ public class Aligner extends BaseAligner<CswParams> {
      * @return metadata the metadata
      */
     private Element retrieveMetadata(String uuid) {
-        request.clearIds();
-        request.addId(uuid);
-
         try {
-            log.debug("Getting record from : " + request.getHost() + " (uuid:" + uuid + ")");
-
-            Element response = request.execute();
-            if (log.isDebugEnabled()) {
-                log.debug("Record got: " + Xml.getString(response) + "\n");
+            Element response = pageRecords.remove(uuid);
+            if (response == null) {
+                response = HarvestSession.fetch(() -> fetcher.get(uuid));
             }
 
-            @SuppressWarnings("unchecked")
-            List<Element> list = response.getChildren();
-
             //--- maybe the metadata has been removed
 
-            if (list.isEmpty()) {
+            if (response == null) {
                 result.unretrievable++;
                 return null;
             }
 
-            response = list.get(0);
-            response = (Element) response.detach();
-
 
             try {
                 Integer groupIdVal = null;
@@ -572,6 +614,30 @@ public class Aligner extends BaseAligner<CswParams> {
         }
     }
 
+    /**
+     * Does CSW GetRecordById request. Runs in the threads of the {@link RecordFetcher}.
+     *
+     * @return the record or null if the server did not return it.
+     */
+    private Element fetchRecord(String uuid) throws Exception {
+        GetRecordByIdRequest request = createGetRecordByIdRequest();
+        request.addId(uuid);
+
+        log.debug("Getting record from : " + request.getHost() + " (uuid:" + uuid + ")");
+
+        Element response = request.execute();
+        if (log.isDebugEnabled()) {
+            log.debug("Record got: " + Xml.getString(response) + "\n");
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Element> list = response.getChildren();
+        if (list.isEmpty()) {
+            return null;
+        }
+        return (Element) list.get(0).detach();
+    }
+
     /**
      * Check for metadata in the catalog having the same resource identifier as the harvested
      * record.
@@ -91,7 +91,7 @@ public class CswHarvester extends AbstractHarvester<HarvestResult, CswParams> {
      * @throws Exception
      */
     public void doHarvest(Logger log) throws Exception {
-        Harvester h = new Harvester(cancelMonitor, log, context, params, errors);
+        Harvester h = new Harvester(cancelMonitor, log, context, params, errors, getFetchLimits());
         result = h.harvest(log);
     }
 }
@@ -50,6 +50,7 @@ import org.fao.geonet.kernel.DataManager;
 import org.fao.geonet.kernel.harvest.harvester.HarvestError;
 import org.fao.geonet.kernel.harvest.harvester.HarvestResult;
 import org.fao.geonet.kernel.harvest.harvester.IHarvester;
+import org.fao.geonet.kernel.harvest.harvester.RecordFetcher;
 import org.fao.geonet.kernel.harvest.harvester.RecordInfo;
 import org.fao.geonet.lib.Lib;
 import org.fao.geonet.utils.AbstractHttpRequest;
@@ -89,13 +90,17 @@ class Harvester implements IHarvester<HarvestResult> {
      */
     private final List<HarvestError> errors;
 
+    private final RecordFetcher.Limits fetchLimits;
 
-    public Harvester(AtomicBoolean cancelMonitor, Logger log, ServiceContext context, CswParams params, List<HarvestError> errors) {
+
+    public Harvester(AtomicBoolean cancelMonitor, Logger log, ServiceContext context, CswParams params, List<HarvestError> errors,
+                     RecordFetcher.Limits fetchLimits) {
         this.cancelMonitor = cancelMonitor;
         this.log = log;
         this.context = context;
         this.params = params;
         this.errors = errors;
+        this.fetchLimits = fetchLimits;
     }
 
     public HarvestResult harvest(Logger log) throws Exception {
@@ -112,8 +117,7 @@ class Harvester implements IHarvester<HarvestResult> {
         boolean error = false;
         HarvestResult result = new HarvestResult();
     	Set<String> uuids = new HashSet<String>();
-        try {
-            Aligner aligner = new Aligner(cancelMonitor, context, server, params, log);
+        try (Aligner aligner = new Aligner(cancelMonitor, context, server, params, log, fetchLimits)) {
             searchAndAlign(server, uuids, aligner, errors);
             result = aligner.cleanupRemovedRecords(uuids);
         } catch (Exception t) {
@@ -213,6 +217,14 @@ class Harvester implements IHarvester<HarvestResult> {
         Aligner aligner, List<HarvestError> harvesterErrors) throws Exception {
         int start = 1;
 
+        // The full records are requested in the search pages when the server advertises it,
+        // instead of one GetRecordById request per record.
+        boolean fullRecords = server.getOperation(CswServer.GET_RECORDS).getElementSetNameList()
+            .contains(ElementSetName.FULL.toString());
+        if (fullRecords) {
+            log.info("Requesting full records in GetRecords responses.");
+        }
+
         GetRecordsRequest request = new GetRecordsRequest(context);
 
         request.setResultType(ResultType.RESULTS);
@@ -220,7 +232,7 @@ class Harvester implements IHarvester<HarvestResult> {
         if (StringUtils.isNotEmpty(params.sortBy)) {
             request.addSortBy(params.sortBy);
         }
-        request.setElementSetName(ElementSetName.SUMMARY);
+        request.setElementSetName(fullRecords ? ElementSetName.FULL : ElementSetName.SUMMARY);
         request.setMaxRecords(GETRECORDS_REQUEST_MAXRECORDS);
         request.setDistribSearch(params.queryScope.equalsIgnoreCase("distributed"));
         request.setHopCount(params.hopCount);
@@ -288,15 +300,24 @@ class Harvester implements IHarvester<HarvestResult> {
             List<Element> list = results.getChildren();
             int foundCnt = 0;
 
+            // Some servers may ignore the requested element set
+            boolean pageWithFullRecords = fullRecords
+                && ElementSetName.FULL.toString().equals(results.getAttributeValue("elementSet", ElementSetName.FULL.toString()));
+
             log.debug("Extracting all elements in the csw harvesting response");
             Set<RecordInfo> records = new LinkedHashSet<RecordInfo>();
+            Map<String, Element> pageRecords = new HashMap<>();
             for (Element record : list) {
                 try {
-                    RecordInfo recInfo = getRecordInfo((Element) record.clone());
+                    Element recordCopy = (Element) record.clone();
+                    RecordInfo recInfo = getRecordInfo(recordCopy);
 
                     if (recInfo != null) {
                         records.add(recInfo);
                         uuids.add(recInfo.uuid);
+                        if (pageWithFullRecords) {
+                            pageRecords.put(recInfo.uuid, recordCopy);
+                        }
                     }
 
                 } catch (Exception ex) {
@@ -310,7 +331,7 @@ class Harvester implements IHarvester<HarvestResult> {
 
             foundCnt += records.size();
             //Align here to keep memory clean
-            aligner.align(records, harvesterErrors);
+            aligner.align(records, pageRecords, harvesterErrors);
 
             //--- check to see if we have to perform other searches
             int matchedCount = getSearchResultAttribute(results, ATTRIB_SEARCHRESULT_MATCHED);
@@ -32,7 +32,6 @@ import org.fao.geonet.domain.*;
 import org.fao.geonet.exceptions.NoSchemaMatchesException;
 import org.fao.geonet.kernel.DataManager;
 import org.fao.geonet.kernel.UpdateDatestamp;
-import org.fao.geonet.kernel.datamanager.IMetadataIndexer;
 import org.fao.geonet.kernel.datamanager.IMetadataManager;
 import org.fao.geonet.kernel.datamanager.IMetadataSchemaUtils;
 import org.fao.geonet.kernel.datamanager.IMetadataUtils;
@@ -57,7 +56,6 @@ class DatabaseHarvesterAligner extends BaseAligner<DatabaseHarvesterParams> impl
     private final DataManager dataMan;
     private final IMetadataManager metadataManager;
     private final IMetadataUtils metadataUtils;
-    private final IMetadataIndexer metadataIndexer;
     private final IMetadataSchemaUtils metadataSchemaUtils;
     private final MetadataRepository metadataRepository;
     private HarvestResult result;
@@ -87,7 +85,6 @@ class DatabaseHarvesterAligner extends BaseAligner<DatabaseHarvesterParams> impl
         metadataManager = gc.getBean(IMetadataManager.class);
         metadataSchemaUtils = gc.getBean(IMetadataSchemaUtils.class);
         metadataUtils = gc.getBean(IMetadataUtils.class);
-        metadataIndexer = gc.getBean(IMetadataIndexer.class);
         metadataRepository = gc.getBean(MetadataRepository.class);
     }
 
@@ -171,7 +168,7 @@ class DatabaseHarvesterAligner extends BaseAligner<DatabaseHarvesterParams> impl
 
             if (!idsResultHs.contains(existingId)) {
                 log.debug("  Removing: " + existingId);
-                metadataManager.deleteMetadata(context, existingId.toString());
+                HarvestSession.deleteRecord(context, existingId.toString());
                 result.locallyRemoved++;
             }
         }
@@ -328,8 +325,7 @@ class DatabaseHarvesterAligner extends BaseAligner<DatabaseHarvesterParams> impl
         metadata.getCategories().clear();
         addCategories(metadata, params.getCategories(), localCateg, context, null, true);
 
-        metadataManager.flush();
-        metadataIndexer.indexMetadata(id, true, IndexingMode.full);
+        HarvestSession.indexRecord(context, id);
     }
 
     /**
@@ -397,7 +393,7 @@ class DatabaseHarvesterAligner extends BaseAligner<DatabaseHarvesterParams> impl
 
         addPrivileges(id, params.getPrivileges(), localGroups, context);
 
-        metadataIndexer.indexMetadata(id, true, IndexingMode.full);
+        HarvestSession.indexRecord(context, id);
 
         return id;
     }
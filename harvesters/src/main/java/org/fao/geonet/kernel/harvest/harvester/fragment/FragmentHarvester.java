@@ -50,6 +50,7 @@ import org.fao.geonet.kernel.datamanager.IMetadataUtils;
 import org.fao.geonet.kernel.harvest.BaseAligner;
 import org.fao.geonet.kernel.harvest.harvester.CategoryMapper;
 import org.fao.geonet.kernel.harvest.harvester.GroupMapper;
+import org.fao.geonet.kernel.harvest.harvester.HarvestSession;
 import org.fao.geonet.kernel.harvest.harvester.Privileges;
 import org.fao.geonet.kernel.search.IndexingMode;
 import org.fao.geonet.kernel.setting.SettingInfo;
@@ -410,9 +411,7 @@ public class FragmentHarvester extends BaseAligner {
         // Note: we use fragmentAllPrivs here because subtemplates need to be
         // visible/accessible to all
         addPrivileges(id, fragmentAllPrivs, localGroups, context);
-        dataMan.indexMetadata(id, true);
-
-        metadataManager.flush();
+        HarvestSession.indexRecord(context, id);
 
         harvestSummary.fragmentsAdded++;
     }
@@ -594,9 +593,7 @@ public class FragmentHarvester extends BaseAligner {
         }
         dataMan.setHarvestedExt(iId, params.uuid, Optional.of(harvestUri));
 
-        dataMan.indexMetadata(id, true);
-
-        metadataManager.flush();
+        HarvestSession.indexRecord(context, id);
     }
 
     /**
@@ -643,13 +640,11 @@ public class FragmentHarvester extends BaseAligner {
         }
         addPrivileges(id, params.privileges, localGroups, context);
 
-        dataMan.indexMetadata(id, true);
-
         if (log.isDebugEnabled()) {
             log.debug("	- Commit " + id);
         }
 
-        metadataManager.flush();
+        HarvestSession.indexRecord(context, id);
 
         harvestSummary.recordsBuilt++;
     }
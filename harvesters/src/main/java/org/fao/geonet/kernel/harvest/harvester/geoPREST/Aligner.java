@@ -48,6 +48,7 @@ import org.fao.geonet.kernel.harvest.harvester.CategoryMapper;
 import org.fao.geonet.kernel.harvest.harvester.GroupMapper;
 import org.fao.geonet.kernel.harvest.harvester.HarvestError;
 import org.fao.geonet.kernel.harvest.harvester.HarvestResult;
+import org.fao.geonet.kernel.harvest.harvester.HarvestSession;
 import org.fao.geonet.kernel.harvest.harvester.RecordInfo;
 import org.fao.geonet.kernel.harvest.harvester.UUIDMapper;
 import org.fao.geonet.kernel.search.IndexingMode;
@@ -115,7 +116,7 @@ public class Aligner extends BaseAligner<GeoPRESTParams> {
 
                 if (log.isDebugEnabled())
                     log.debug("  - Removing old metadata with local id:" + id);
-                metadataManager.deleteMetadata(context, id);
+                HarvestSession.deleteRecord(context, id);
 
                 metadataManager.flush();
 
@@ -197,7 +198,7 @@ public class Aligner extends BaseAligner<GeoPRESTParams> {
 
         addPrivileges(id, params.getPrivileges(), localGroups, context);
 
-        dataMan.indexMetadata(id, Math.random() < 0.01);
+        HarvestSession.indexRecord(context, id, false);
         result.addedMetadata++;
     }
 
@@ -239,9 +240,7 @@ public class Aligner extends BaseAligner<GeoPRESTParams> {
 
                 metadata.getCategories().clear();
                 addCategories(metadata, params.getCategories(), localCateg, context, null, true);
-                metadataManager.flush();
-
-                dataMan.indexMetadata(id, Math.random() < 0.01);
+                HarvestSession.indexRecord(context, id, false);
                 result.updatedMetadata++;
             }
         }
@@ -276,7 +275,7 @@ public class Aligner extends BaseAligner<GeoPRESTParams> {
             }
             Element response = null;
             try {
-                response = request.execute();
+                response = HarvestSession.fetch(request::execute);
             } catch (Exception e) {
                 log.error("Getting record from GeoPortal REST raised exception: " + e.getMessage());
                 log.error("Sent request " + request.getSentData());
@@ -25,7 +25,9 @@ package org.fao.geonet.kernel.harvest.harvester.geonet;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.MalformedURLException;
 import java.net.URISyntaxException;
+import java.net.URL;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -39,6 +41,7 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 import jeeves.server.ServiceConfig;
 import jeeves.server.context.ServiceContext;
 import org.apache.commons.io.FileUtils;
@@ -67,11 +70,14 @@ import org.fao.geonet.kernel.datamanager.IMetadataOperations;
 import org.fao.geonet.kernel.datamanager.IMetadataSchemaUtils;
 import org.fao.geonet.kernel.datamanager.IMetadataUtils;
 import org.fao.geonet.kernel.harvest.BaseAligner;
+import org.fao.geonet.kernel.harvest.harvester.AbstractParams;
 import org.fao.geonet.kernel.harvest.harvester.CategoryMapper;
 import org.fao.geonet.kernel.harvest.harvester.GroupMapper;
 import org.fao.geonet.kernel.harvest.harvester.HarvestError;
 import org.fao.geonet.kernel.harvest.harvester.HarvestResult;
+import org.fao.geonet.kernel.harvest.harvester.HarvestSession;
 import org.fao.geonet.kernel.harvest.harvester.HarvesterUtil;
+import org.fao.geonet.kernel.harvest.harvester.RecordFetcher;
 import org.fao.geonet.kernel.harvest.harvester.RecordInfo;
 import org.fao.geonet.kernel.harvest.harvester.UUIDMapper;
 import org.fao.geonet.kernel.mef.IMEFVisitor;
@@ -125,6 +131,8 @@ public abstract class BaseGeoNetworkAligner<P extends BaseGeonetParams> extends
     protected Map<String, Object> processParams = new HashMap<>();
     protected HarvestResult result;
     protected Map<String, Map<String, String>> hmRemoteGroups = new HashMap<>();
+    protected RecordFetcher.Limits fetchLimits = RecordFetcher.Limits.SEQUENTIAL;
+    private RecordFetcher<Path> mefFetcher;
 
     /**
      * Constructs an instance of BaseGeoNetworkAligner, initializing required dependencies and settings
@@ -191,7 +199,7 @@ public abstract class BaseGeoNetworkAligner<P extends BaseGeonetParams> extends
                     String id = localUuids.getID(uuid);
 
                     if (log.isDebugEnabled()) log.debug("  - Removing old metadata with id:" + id);
-                    metadataManager.deleteMetadata(context, id);
+                    HarvestSession.deleteRecord(context, id);
 
                     result.locallyRemoved++;
                 }
@@ -209,81 +217,90 @@ public abstract class BaseGeoNetworkAligner<P extends BaseGeonetParams> extends
             preferredSchema = "iso19139";
         }
 
-        for (RecordInfo ri : records) {
-            if (cancelMonitor.get()) {
-                return this.result;
-            }
+        // Remote records are downloaded ahead, saved in order on this thread
+        try (RecordFetcher<Path> fetcher = new RecordFetcher<>(context, params.getName(), getRemoteHost(), fetchLimits,
+            this::retrieveMEF, mefFile -> FileUtils.deleteQuietly(mefFile.toFile()))) {
+            mefFetcher = fetcher;
+            fetcher.prefetch(records.stream().filter(this::isRetrieved).map(RecordInfo::getUuid).collect(Collectors.toList()));
 
-            try {
-                result.totalMetadata++;
-
-                // MEF full format provides ISO19139 records in both the profile
-                // and ISO19139, so we could be able to import them as far as
-                // ISO19139 schema is installed by default.
-                if (!metadataSchemaUtils.existsSchema(ri.schema) && !ri.schema.startsWith("iso19139.")) {
-                    log.info("  - Metadata skipped due to unknown schema. uuid:" + ri.uuid
-                        + ", schema:" + ri.schema);
-                    result.unknownSchema++;
-                } else {
-                    String id = metadataUtils.getMetadataId(ri.uuid);
-
-                    // look up the value of localrating/enable
-                    String localRating = settingManager.getValue(Settings.SYSTEM_LOCALRATING_ENABLE);
-
-                    if (id == null) {
-                        //record doesn't exist (so it doesn't belong to this harvester)
-                        log.debug("Adding record with uuid " + ri.uuid);
-                        addMetadata(ri, localRating.equals(RatingsSetting.BASIC), ri.uuid);
-                    } else if (localUuids.getID(ri.uuid) == null) {
-                        //record doesn't belong to this harvester but exists
-                        result.datasetUuidExist++;
-
-                        switch (params.getOverrideUuid()) {
-                            case OVERRIDE:
-                                updateMetadata(ri,
-                                    id,
-                                    localRating.equals(RatingsSetting.BASIC),
-                                    params.useChangeDateForUpdate(),
-                                    localUuids.getChangeDate(ri.uuid), true);
-                                log.info("Overriding record with uuid " + ri.uuid);
-                                result.updatedMetadata++;
-
-                                if (params.isIfRecordExistAppendPrivileges()) {
-                                    addPrivileges(id, params.getPrivileges(), localGroups, context);
-                                    result.privilegesAppendedOnExistingRecord++;
-                                }
-                                break;
-                            case RANDOM:
-                                log.info("Generating random uuid for remote record with uuid " + ri.uuid);
-                                addMetadata(ri, localRating.equals(RatingsSetting.BASIC), UUID.randomUUID().toString());
-                                break;
-                            case SKIP:
-                                log.info("Skipping record with uuid " + ri.uuid);
-                                result.uuidSkipped++;
-                                break;
-                            default:
-                                break;
-                        }
+            for (RecordInfo ri : records) {
+                if (cancelMonitor.get()) {
+                    return this.result;
+                }
+
+                try {
+                    result.totalMetadata++;
+
+                    // MEF full format provides ISO19139 records in both the profile
+                    // and ISO19139, so we could be able to import them as far as
+                    // ISO19139 schema is installed by default.
+                    if (!metadataSchemaUtils.existsSchema(ri.schema) && !ri.schema.startsWith("iso19139.")) {
+                        log.info("  - Metadata skipped due to unknown schema. uuid:" + ri.uuid
+                            + ", schema:" + ri.schema);
+                        result.unknownSchema++;
                     } else {
-                        //record exists and belongs to this harvester
-                        log.debug("Updating record with uuid " + ri.uuid);
-                        updateMetadata(ri, id,
-                            localRating.equals(RatingsSetting.BASIC),
-                            params.useChangeDateForUpdate(),
-                            localUuids.getChangeDate(ri.uuid), false);
-
-                        if (params.isIfRecordExistAppendPrivileges()) {
-                            addPrivileges(id, params.getPrivileges(), localGroups, context);
-                            result.privilegesAppendedOnExistingRecord++;
+                        String id = metadataUtils.getMetadataId(ri.uuid);
+
+                        // look up the value of localrating/enable
+                        String localRating = settingManager.getValue(Settings.SYSTEM_LOCALRATING_ENABLE);
+
+                        if (id == null) {
+                            //record doesn't exist (so it doesn't belong to this harvester)
+                            log.debug("Adding record with uuid " + ri.uuid);
+                            addMetadata(ri, localRating.equals(RatingsSetting.BASIC), ri.uuid);
+                        } else if (localUuids.getID(ri.uuid) == null) {
+                            //record doesn't belong to this harvester but exists
+                            result.datasetUuidExist++;
+
+                            switch (params.getOverrideUuid()) {
+                                case OVERRIDE:
+                                    updateMetadata(ri,
+                                        id,
+                                        localRating.equals(RatingsSetting.BASIC),
+                                        params.useChangeDateForUpdate(),
+                                        localUuids.getChangeDate(ri.uuid), true);
+                                    log.info("Overriding record with uuid " + ri.uuid);
+                                    result.updatedMetadata++;
+
+                                    if (params.isIfRecordExistAppendPrivileges()) {
+                                        addPrivileges(id, params.getPrivileges(), localGroups, context);
+                                        result.privilegesAppendedOnExistingRecord++;
+                                    }
+                                    break;
+                                case RANDOM:
+                                    log.info("Generating random uuid for remote record with uuid " + ri.uuid);
+                                    addMetadata(ri, localRating.equals(RatingsSetting.BASIC), UUID.randomUUID().toString());
+                                    break;
+                                case SKIP:
+                                    log.info("Skipping record with uuid " + ri.uuid);
+                                    result.uuidSkipped++;
+                                    break;
+                                default:
+                                    break;
+                            }
+                        } else {
+                            //record exists and belongs to this harvester
+                            log.debug("Updating record with uuid " + ri.uuid);
+                            updateMetadata(ri, id,
+                                localRating.equals(RatingsSetting.BASIC),
+                                params.useChangeDateForUpdate(),
+                                localUuids.getChangeDate(ri.uuid), false);
+
+                            if (params.isIfRecordExistAppendPrivileges()) {
+                                addPrivileges(id, params.getPrivileges(), localGroups, context);
+                                result.privilegesAppendedOnExistingRecord++;
+                            }
                         }
-                    }
 
+                    }
+                } catch (Throwable t) {
+                    log.error("Couldn't insert or update metadata with uuid " + ri.uuid);
+                    log.error(t);
+                    result.unchangedMetadata++;
                 }
-            } catch (Throwable t) {
-                log.error("Couldn't insert or update metadata with uuid " + ri.uuid);
-                log.error(t);
-                result.unchangedMetadata++;
             }
+        } finally {
+            mefFetcher = null;
         }
 
         metadataIndexer.forceIndexChanges();
@@ -293,6 +310,36 @@ public abstract class BaseGeoNetworkAligner<P extends BaseGeonetParams> extends
         return result;
     }
 
+    /**
+     * Sets the limits of the MEF downloads. By default the MEF files are downloaded one by one.
+     *
+     * @param fetchLimits the maximum number of MEF files downloaded at the same time and the
+     *                    minimum interval between two requests.
+     */
+    public void setFetchLimits(RecordFetcher.Limits fetchLimits) {
+        this.fetchLimits = fetchLimits;
+    }
+
+    /**
+     * Checks if the MEF file of a record is going to be retrieved during the alignment, ie. the
+     * record is added, overridden or more recent than the harvested copy.
+     */
+    private boolean isRetrieved(RecordInfo ri) {
+        try {
+            if (!metadataSchemaUtils.existsSchema(ri.schema) && !ri.schema.startsWith("iso19139.")) {
+                return false;
+            } else if (metadataUtils.getMetadataId(ri.uuid) == null) {
+                return true;
+            } else if (localUuids.getID(ri.uuid) == null) {
+                // Records added with a random uuid are retrieved with that uuid
+                return params.getOverrideUuid() == AbstractParams.OverrideUuid.OVERRIDE;
+            }
+            return !params.useChangeDateForUpdate() || ri.isMoreRecentThan(localUuids.getChangeDate(ri.uuid));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
     /**
      * Updates the record in the database. The `force` parameter allows you to force an update even if the date
      * is not more recent, ensuring that transformations and attributes assigned by the harvester are applied.
@@ -323,7 +370,7 @@ public abstract class BaseGeoNetworkAligner<P extends BaseGeonetParams> extends
                 Path mefFile = null;
 
                 try {
-                    mefFile = retrieveMEF(ri.uuid);
+                    mefFile = fetchMEF(ri.uuid);
 
                     String fileType = "mef";
                     MEFLib.Version version = MEFLib.getMEFVersion(mefFile);
@@ -371,7 +418,7 @@ public abstract class BaseGeoNetworkAligner<P extends BaseGeonetParams> extends
                         }
 
                         public void indexMetadata(int index) throws Exception {
-                            metadataIndexer.indexMetadata(id, true, IndexingMode.full);
+                            HarvestSession.indexRecord(context, id);
                         }
                     });
                 } catch (Exception e) {
@@ -513,7 +560,7 @@ public abstract class BaseGeoNetworkAligner<P extends BaseGeonetParams> extends
 
         metadataManager.save(metadata);
 
-        metadataIndexer.indexMetadata(id, true, IndexingMode.full);
+        HarvestSession.indexRecord(context, id);
     }
 
     /**
@@ -809,6 +856,24 @@ public abstract class BaseGeoNetworkAligner<P extends BaseGeonetParams> extends
      */
     protected abstract Path retrieveMEF(String uuid) throws URISyntaxException, IOException;
 
+    /**
+     * @return the host name of the remote node, or null if its URL is not valid.
+     */
+    private String getRemoteHost() {
+        try {
+            return new URL(params.host).getHost();
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the MEF file of a record, downloaded ahead during the alignment.
+     */
+    private Path fetchMEF(String uuid) throws Exception {
+        return HarvestSession.fetch(() -> mefFetcher != null ? mefFetcher.get(uuid) : retrieveMEF(uuid));
+    }
+
 
     /**
      * Adds metadata to the system by processing a metadata exchange format (MEF) file.
@@ -830,7 +895,7 @@ public abstract class BaseGeoNetworkAligner<P extends BaseGeonetParams> extends
         Path mefFile = null;
 
         try {
-            mefFile = retrieveMEF(uuid);
+            mefFile = fetchMEF(uuid);
             String fileType = "mef";
             MEFLib.Version version = MEFLib.getMEFVersion(mefFile);
             if (version != null && version.equals(MEFLib.Version.V2)) {
@@ -898,7 +963,7 @@ public abstract class BaseGeoNetworkAligner<P extends BaseGeonetParams> extends
                 }
 
                 public void indexMetadata(int index) throws Exception {
-                    metadataIndexer.indexMetadata(id[index], true, IndexingMode.full);
+                    HarvestSession.indexRecord(context, id[index]);
                 }
             });
         } catch (Exception e) {
@@ -1026,7 +1091,7 @@ public abstract class BaseGeoNetworkAligner<P extends BaseGeonetParams> extends
         }
         context.getBean(IMetadataManager.class).save(metadata);
 
-        metadataIndexer.indexMetadata(id, true, IndexingMode.full);
+        HarvestSession.indexRecord(context, id);
         result.addedMetadata++;
 
         return id;
@@ -40,6 +40,7 @@ import org.fao.geonet.kernel.datamanager.IMetadataUtils;
 import org.fao.geonet.kernel.harvest.AbstractAligner;
 import org.fao.geonet.kernel.harvest.harvester.CategoryMapper;
 import org.fao.geonet.kernel.harvest.harvester.HarvestResult;
+import org.fao.geonet.kernel.harvest.harvester.HarvestSession;
 import org.fao.geonet.kernel.harvest.harvester.UUIDMapper;
 import org.fao.geonet.kernel.search.IndexingMode;
 import org.fao.geonet.repository.MetadataCategoryRepository;
@@ -113,7 +114,7 @@ public class Aligner extends AbstractAligner<GeonetParams> {
                 String id = localUuids.getID(uuid);
 
                 if (log.isDebugEnabled()) log.debug("  - Removing old metadata with id=" + id);
-                metadataManager.deleteMetadata(context, id);
+                HarvestSession.deleteRecord(context, id);
 
                 metadataManager.flush();
                 this.result.locallyRemoved++;
@@ -151,13 +152,10 @@ public class Aligner extends AbstractAligner<GeonetParams> {
                     updateMetadata(siteId, info, id);
                 }
 
-                metadataManager.flush();
-
-
                 //--- maybe the metadata was unretrievable
 
                 if (id != null) {
-                    dataMan.indexMetadata(id, true);
+                    HarvestSession.indexRecord(context, id);
                 }
             }
         }
@@ -360,7 +358,7 @@ public class Aligner extends AbstractAligner<GeonetParams> {
         req.addParam("id", id);
 
         try {
-            Element md = req.execute();
+            Element md = HarvestSession.fetch(req::execute);
             Element info = md.getChild("info", Edit.NAMESPACE);
 
             if (info != null)
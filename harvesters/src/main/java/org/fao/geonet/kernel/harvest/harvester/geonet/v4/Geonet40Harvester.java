@@ -96,7 +96,7 @@ public class Geonet40Harvester extends AbstractHarvester<HarvestResult, GeonetPa
     }
 
     public void doHarvest(Logger log) throws Exception {
-        Harvester h = new Harvester(cancelMonitor, log, context, params, errors);
+        Harvester h = new Harvester(cancelMonitor, log, context, params, errors, getFetchLimits());
         result = h.harvest(log);
     }
 }
@@ -44,6 +44,7 @@ import org.fao.geonet.exceptions.OperationAbortedEx;
 import org.fao.geonet.kernel.harvest.harvester.HarvestError;
 import org.fao.geonet.kernel.harvest.harvester.HarvestResult;
 import org.fao.geonet.kernel.harvest.harvester.IHarvester;
+import org.fao.geonet.kernel.harvest.harvester.RecordFetcher;
 import org.fao.geonet.kernel.harvest.harvester.RecordInfo;
 import org.fao.geonet.kernel.harvest.harvester.geonet.BaseGeoNetworkHarvester;
 import org.fao.geonet.kernel.harvest.harvester.geonet.v4.client.GeoNetwork4ApiClient;
@@ -76,9 +77,13 @@ import org.fao.geonet.kernel.harvest.harvester.geonet.v4.client.SearchResponseHi
 class Harvester extends BaseGeoNetworkHarvester<GeonetParams> implements IHarvester<HarvestResult> {
     private GeoNetwork4ApiClient geoNetworkApiClient;
 
+    private final RecordFetcher.Limits fetchLimits;
 
-    public Harvester(AtomicBoolean cancelMonitor, Logger log, ServiceContext context, GeonetParams params, List<HarvestError> errors) {
+
+    public Harvester(AtomicBoolean cancelMonitor, Logger log, ServiceContext context, GeonetParams params, List<HarvestError> errors,
+                     RecordFetcher.Limits fetchLimits) {
         super(cancelMonitor, log, context, params, errors);
+        this.fetchLimits = fetchLimits;
     }
 
     /**
@@ -183,6 +188,7 @@ class Harvester extends BaseGeoNetworkHarvester<GeonetParams> implements IHarves
         if (!error) {
             try {
                 Aligner aligner = new Aligner(cancelMonitor, log, context, params, groupList);
+                aligner.setFetchLimits(fetchLimits);
                 result = aligner.align(records, errors);
 
                 updateSources(records, sources);
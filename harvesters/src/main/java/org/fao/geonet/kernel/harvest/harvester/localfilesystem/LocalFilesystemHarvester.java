@@ -23,12 +23,14 @@
 package org.fao.geonet.kernel.harvest.harvester.localfilesystem;
 
 import java.io.IOException;
-import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
@@ -37,17 +39,21 @@ import org.fao.geonet.domain.AbstractMetadata;
 import org.fao.geonet.domain.ISODate;
 import org.fao.geonet.domain.Metadata;
 import org.fao.geonet.domain.MetadataType;
+import org.fao.geonet.kernel.GeonetworkDataDirectory;
 import org.fao.geonet.kernel.UpdateDatestamp;
 import org.fao.geonet.kernel.harvest.BaseAligner;
 import org.fao.geonet.kernel.harvest.harvester.AbstractHarvester;
 import org.fao.geonet.kernel.harvest.harvester.CategoryMapper;
 import org.fao.geonet.kernel.harvest.harvester.GroupMapper;
+import org.fao.geonet.kernel.harvest.harvester.HarvestManifest;
 import org.fao.geonet.kernel.harvest.harvester.HarvestResult;
+import org.fao.geonet.kernel.harvest.harvester.HarvestSession;
 import org.fao.geonet.kernel.search.IndexingMode;
 import org.fao.geonet.repository.MetadataRepository;
 import org.fao.geonet.repository.specification.MetadataSpecs;
 import org.fao.geonet.utils.IO;
 import org.jdom.Element;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.jpa.domain.Specification;
 
 import com.google.common.collect.Lists;
@@ -62,6 +68,12 @@ import java.util.*;
  */
 public class LocalFilesystemHarvester extends AbstractHarvester<HarvestResult, LocalFilesystemParams> {
 
+    /**
+     * Number of directories listed at the same time.
+     */
+    @Value("${harvester.filesystem.scanThreads:4}")
+    private int scanThreads = 4;
+
     @Override
     protected void storeNodeExtra(LocalFilesystemParams params, String path, String siteId, String optionsId) throws SQLException {
         setParams(params);
@@ -85,21 +97,20 @@ public class LocalFilesystemHarvester extends AbstractHarvester<HarvestResult, L
      * files removed from the harvesting source are NOT removed from the database. Also, no checks
      * on modification date are done; the result gets inserted or replaced if the result appears to
      * be in a supported schema.
+     * <p>
+     * Files which did not change since the last run, according to the {@link HarvestManifest},
+     * are not read again.
      *
      * @param root the directory to visit
      */
     private HarvestResult align(Path root) throws Exception {
         log.debug("Start of alignment for : " + params.getName());
-        final LocalFsHarvesterFileVisitor visitor = new LocalFsHarvesterFileVisitor(cancelMonitor, context, params, this);
-        if (params.recurse) {
-            Files.walkFileTree(root, visitor);
-        } else {
-            try (DirectoryStream<Path> paths = Files.newDirectoryStream(root)) {
-                for (Path path : paths) {
-                    if (path != null && Files.isRegularFile(path)) {
-                        visitor.visitFile(path, Files.readAttributes(path, BasicFileAttributes.class));
-                    }
-                }
+        final HarvestManifest manifest = loadManifest(getImportXsltFingerprint());
+        final LocalFsHarvesterFileVisitor visitor = new LocalFsHarvesterFileVisitor(cancelMonitor, context, params, this, manifest);
+        NavigableMap<Path, BasicFileAttributes> files = new LocalFsDirectoryScanner(cancelMonitor, params.recurse, scanThreads).scan(root);
+        for (Map.Entry<Path, BasicFileAttributes> file : files.entrySet()) {
+            if (visitor.visitFile(file.getKey(), file.getValue()) == FileVisitResult.TERMINATE) {
+                break;
             }
         }
         result = visitor.getResult();
@@ -119,7 +130,7 @@ public class LocalFilesystemHarvester extends AbstractHarvester<HarvestResult, L
                 }
                 if (!idsResultHs.contains(existingId)) {
                     log.debug("  Removing: " + existingId);
-                    metadataManager.deleteMetadata(context, existingId.toString());
+                    HarvestSession.deleteRecord(context, existingId.toString());
                     result.locallyRemoved++;
                 }
             }
@@ -131,12 +142,34 @@ public class LocalFilesystemHarvester extends AbstractHarvester<HarvestResult, L
         log.debug(String.format(
             "Starting indexing in batch thread pool of %d updated records ...",
             listOfRecordsToIndex.size()));
-        dataMan.batchIndexInThreadPool(context, listOfRecordsToIndex);
+        HarvestSession.indexRecords(context, listOfRecordsToIndex);
+
+        if (manifest != null && !cancelMonitor.get()) {
+            HarvestSession.afterCommit(rejectedIds -> {
+                try {
+                    manifest.save(rejectedIds);
+                } catch (IOException e) {
+                    log.error("Error saving the harvested files manifest: " + e.getMessage());
+                }
+            });
+        }
 
         log.debug("End of alignment for : " + params.getName());
         return result;
     }
 
+    /**
+     * @return the modification date of the import stylesheet, so that files are harvested
+     * again when it changes.
+     */
+    private String getImportXsltFingerprint() throws IOException {
+        if (params.getImportXslt().equals("none")) {
+            return "";
+        }
+        Path xslt = context.getBean(GeonetworkDataDirectory.class).getXsltConversion(params.getImportXslt());
+        return Files.exists(xslt) ? String.valueOf(Files.getLastModifiedTime(xslt).toMillis()) : "";
+    }
+
     void updateMetadata(Element xml, final String id, GroupMapper localGroups, final CategoryMapper localCateg,
         String changeDate, BaseAligner<LocalFilesystemParams> aligner,
         boolean force) throws Exception {
@@ -168,9 +201,7 @@ public class LocalFilesystemHarvester extends AbstractHarvester<HarvestResult, L
         metadata.getCategories().clear();
         aligner.addCategories(metadata, params.getCategories(), localCateg, context, null, true);
 
-        metadataManager.flush();
-
-        dataMan.indexMetadata(id, true);
+        HarvestSession.indexRecord(context, id);
     }
 
     String addMetadata(Element xml, String uuid, String schema, GroupMapper localGroups, final CategoryMapper localCateg,
@@ -224,10 +255,10 @@ public class LocalFilesystemHarvester extends AbstractHarvester<HarvestResult, L
 
         aligner.addPrivileges(id, params.getPrivileges(), localGroups, context);
 
-        metadataManager.flush();
-
         if (index) {
-            dataMan.indexMetadata(id, true);
+            HarvestSession.indexRecord(context, id);
+        } else {
+            metadataManager.flush();
         }
         return id;
     }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.kernel.harvest.harvester.localfilesystem;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lists the files to harvest in a directory and, if recursive, in its sub directories. Sub
+ * directories are listed in parallel, which matters when most files have not changed since
+ * the last run and the harvest is mostly reading directories.
+ * <p>
+ * Symbolic links to files are harvested, symbolic links to directories are not followed.
+ */
+class LocalFsDirectoryScanner {
+    private final AtomicBoolean cancelMonitor;
+    private final boolean recurse;
+    private final int threads;
+
+    LocalFsDirectoryScanner(AtomicBoolean cancelMonitor, boolean recurse, int threads) {
+        this.cancelMonitor = cancelMonitor;
+        this.recurse = recurse;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * @return the files to harvest, sorted by path, with their attributes.
+     */
+    NavigableMap<Path, BasicFileAttributes> scan(Path root) throws IOException {
+        NavigableMap<Path, BasicFileAttributes> files = new ConcurrentSkipListMap<>();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new ScanDirectory(root, files));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+        return files;
+    }
+
+    private class ScanDirectory extends RecursiveAction {
+        private final Path directory;
+        private final NavigableMap<Path, BasicFileAttributes> files;
+
+        ScanDirectory(Path directory, NavigableMap<Path, BasicFileAttributes> files) {
+            this.directory = directory;
+            this.files = files;
+        }
+
+        @Override
+        protected void compute() {
+            List<ScanDirectory> subDirectories = new ArrayList<>();
+            try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+                for (Path path : paths) {
+                    if (cancelMonitor.get()) {
+                        return;
+                    }
+                    BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isDirectory()) {
+                        if (recurse) {
+                            subDirectories.add(new ScanDirectory(path, files));
+                        }
+                    } else if (LocalFsHarvesterFileVisitor.isHarvestable(path)) {
+                        if (attrs.isSymbolicLink()) {
+                            try {
+                                attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                            } catch (IOException e) {
+                                // Broken link
+                                continue;
+                            }
+                        }
+                        if (attrs.isRegularFile()) {
+                            files.put(path, attrs);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            invokeAll(subDirectories);
+        }
+    }
+}
@@ -42,7 +42,9 @@ import org.fao.geonet.kernel.datamanager.IMetadataUtils;
 import org.fao.geonet.kernel.harvest.BaseAligner;
 import org.fao.geonet.kernel.harvest.harvester.CategoryMapper;
 import org.fao.geonet.kernel.harvest.harvester.GroupMapper;
+import org.fao.geonet.kernel.harvest.harvester.HarvestManifest;
 import org.fao.geonet.kernel.harvest.harvester.HarvestResult;
+import org.fao.geonet.kernel.harvest.harvester.UUIDMapper;
 import org.fao.geonet.kernel.harvest.harvester.csw.Aligner;
 import org.fao.geonet.kernel.mef.MEFLib;
 import org.fao.geonet.repository.MetadataRepository;
@@ -62,6 +64,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -86,11 +89,18 @@ class LocalFsHarvesterFileVisitor extends SimpleFileVisitor<Path> {
     private final GroupMapper localGroups;
     private final Set<Integer> listOfRecords = Sets.newHashSet();
     private final Set<Integer> listOfRecordsToIndex = Sets.newHashSet();
+    private final HarvestManifest manifest;
+    private UUIDMapper localUuids;
     private boolean transformIt = false;
     private Path thisXslt;
     private long startTime;
 
-    public LocalFsHarvesterFileVisitor(AtomicBoolean cancelMonitor, ServiceContext context, LocalFilesystemParams params, LocalFilesystemHarvester harvester) throws Exception {
+    /**
+     * @param manifest the files harvested by the last run, which are skipped if they did not
+     *                 change. null to harvest all files.
+     */
+    public LocalFsHarvesterFileVisitor(AtomicBoolean cancelMonitor, ServiceContext context, LocalFilesystemParams params,
+                                       LocalFilesystemHarvester harvester, HarvestManifest manifest) throws Exception {
         this.aligner = new LocalFileSytemAligner(cancelMonitor, params);
         this.cancelMonitor = cancelMonitor;
         this.context = context;
@@ -105,6 +115,10 @@ class LocalFsHarvesterFileVisitor extends SimpleFileVisitor<Path> {
         this.dataMan = context.getBean(DataManager.class);
         this.harvester = harvester;
         this.repo = context.getBean(IMetadataUtils.class);
+        this.manifest = manifest;
+        if (manifest != null) {
+            this.localUuids = new UUIDMapper(repo, params.getUuid());
+        }
         this.startTime = System.currentTimeMillis();
 
         harvester.getLogger().debug(String.format("Start visiting files at %s.", this.startTime));
@@ -120,13 +134,11 @@ class LocalFsHarvesterFileVisitor extends SimpleFileVisitor<Path> {
             return FileVisitResult.CONTINUE;
         }
 
-        boolean isMef = MEFLib.isValidArchiveExtensionForMEF(file.getFileName().toString());
-        boolean isXml = file.getFileName().toString().endsWith(".xml");
-        boolean isJson = file.getFileName().toString().endsWith(".json");
-
-        if (!isMef && !isXml && !isJson) {
+        if (!isHarvestable(file)) {
             return FileVisitResult.CONTINUE;
         }
+        boolean isMef = MEFLib.isValidArchiveExtensionForMEF(file.getFileName().toString());
+        boolean isJson = file.getFileName().toString().endsWith(".json");
 
         try {
             result.totalMetadata++;
@@ -136,15 +148,51 @@ class LocalFsHarvesterFileVisitor extends SimpleFileVisitor<Path> {
                 harvester.getLogger().debug("{} records inserted in {} s ({} records/s).", new Object[] {
                     result.totalMetadata,
                     elapsedTime,
-                    result.totalMetadata / elapsedTime});
+                    result.totalMetadata / Math.max(1, elapsedTime)});
+            }
+
+            String key = file.toAbsolutePath().normalize().toString();
+            long size = attrs.size();
+            long lastModified = attrs.lastModifiedTime().toMillis();
+            HarvestManifest.Entry entry = null;
+            List<String> ids = null;
+            if (manifest != null) {
+                entry = manifest.get(key);
+                ids = entry == null ? null : getHarvestedIds(entry);
+                if (ids != null && entry.isSameFile(size, lastModified)) {
+                    keepUnchanged(key, entry, ids);
+                    return FileVisitResult.CONTINUE;
+                }
             }
 
-            if(isMef) {
-                processMef(file);
-            } else if(isJson) {
-                processJson(file);
+            Element xml = null;
+            String hash = null;
+            if (isMef) {
+                // MEF archives are imported from their path, so they are hashed beforehand
+                if (manifest != null) {
+                    hash = HarvestManifest.hash(file);
+                }
             } else {
-                processXml(file);
+                // Hash the file while it is read
+                MessageDigest digest = manifest == null ? null : HarvestManifest.newDigest();
+                xml = isJson ? loadJson(file, digest) : loadXml(file, digest);
+                if (xml == null) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (digest != null) {
+                    hash = HarvestManifest.hash(digest);
+                }
+            }
+            if (ids != null && entry.isSameContent(hash)) {
+                keepUnchanged(key, new HarvestManifest.Entry(size, lastModified, hash, entry.getUuids()), ids);
+                return FileVisitResult.CONTINUE;
+            }
+
+            Map<String, String> records = isMef ? processMef(file) : processXmlData(file, xml);
+
+            if (manifest != null && records != null && !records.isEmpty()) {
+                manifest.put(key, new HarvestManifest.Entry(size, lastModified, hash, new ArrayList<>(records.keySet())),
+                    records.values());
             }
         } catch (Exception e) {
             harvester.getLogger().error("An error occurred while harvesting file {}. Error is: {}.",
@@ -154,10 +202,46 @@ class LocalFsHarvesterFileVisitor extends SimpleFileVisitor<Path> {
     }
 
 
+    static boolean isHarvestable(Path file) {
+        if (file == null || file.getFileName() == null) {
+            return false;
+        }
+        String name = file.getFileName().toString();
+        return MEFLib.isValidArchiveExtensionForMEF(name) || name.endsWith(".xml") || name.endsWith(".json");
+    }
+
+    /**
+     * @return the ids of the records of a file harvested by the last run, or null if one of
+     * them is no longer in the catalogue or no longer belongs to this harvester.
+     */
+    private List<String> getHarvestedIds(HarvestManifest.Entry entry) {
+        if (entry.getUuids().isEmpty()) {
+            return null;
+        }
+        List<String> ids = new ArrayList<>(entry.getUuids().size());
+        for (String uuid : entry.getUuids()) {
+            String id = localUuids.getID(uuid);
+            if (id == null) {
+                return null;
+            }
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private void keepUnchanged(String key, HarvestManifest.Entry entry, List<String> ids) {
+        harvester.getLogger().debug("  File {} not changed since the last run.", key);
+        for (String id : ids) {
+            listOfRecords.add(Integer.valueOf(id));
+        }
+        manifest.put(key, entry, ids);
+        result.unchangedMetadata++;
+    }
+
     // Reads a JSON file, transform it to XML and use the same workflow as for XML files
     // inspired by:
     // https://github.com/geonetwork/core-geonetwork/blob/c57f5de06e5e456af1ee55178eca437235b1d499/harvesters/src/main/java/org/fao/geonet/kernel/harvest/harvester/simpleUrl/Harvester.java#L239
-    private void processJson(Path file) throws Exception {
+    private Element loadJson(Path file, MessageDigest digest) {
         Path filePath = file.toAbsolutePath().normalize();
 
         ObjectMapper objectMapper = new ObjectMapper();
@@ -165,7 +249,11 @@ class LocalFsHarvesterFileVisitor extends SimpleFileVisitor<Path> {
         try {
             harvester.getLogger().debug("reading file: {}", filePath);
             String uuid = com.google.common.io.Files.getNameWithoutExtension(file.getFileName().toString());
-            String recordAsJson = objectMapper.readTree(filePath.toFile()).toString();
+            byte[] content = Files.readAllBytes(filePath);
+            if (digest != null) {
+                digest.update(content);
+            }
+            String recordAsJson = objectMapper.readTree(content).toString();
             JSONObject sanitizedJson = sanitize(new JSONObject(recordAsJson));
             String recordAsXml = XML.toString(sanitizedJson,"record")
                 .replace("<@", "<")
@@ -178,20 +266,20 @@ class LocalFsHarvesterFileVisitor extends SimpleFileVisitor<Path> {
             harvester.getLogger().error("Error processing JSON from file {}, ignoring", filePath);
             harvester.getLogger().error("full stack", e);
             result.badFormat++;
-            return;
+            return null;
         } catch (JDOMException e) {
             harvester.getLogger().error("Error transforming JSON into XML from file {}, ignoring", filePath);
             harvester.getLogger().error("full stack", e);
             result.badFormat++;
-            return;
+            return null;
         } catch (Exception e) {
             harvester.getLogger().error("Error retrieving JSON from file {}, ignoring", filePath);
             harvester.getLogger().error("full stack", e);
             result.unretrievable++;
-            return;
+            return null;
         }
 
-        processXmlData(file, recordAsElement);
+        return recordAsElement;
     }
 
     /**
@@ -231,29 +319,32 @@ class LocalFsHarvesterFileVisitor extends SimpleFileVisitor<Path> {
         return array;
     }
 
-    private void processXml(Path file) throws Exception {
+    private Element loadXml(Path file, MessageDigest digest) {
         Path filePath = file.toAbsolutePath().normalize();
 
         Element xml;
         try {
             harvester.getLogger().debug(String.format("reading file: %s", filePath));
-            xml = Xml.loadFile(file);
+            xml = Xml.loadFile(file, digest);
         } catch (JDOMException e) {
             harvester.getLogger().error("Error loading XML from file {}, ignoring", filePath);
             harvester.getLogger().error("full stack", e);
             result.badFormat++;
-            return;
+            return null;
         } catch (Exception e) {
             harvester.getLogger().error("Error retrieving XML from file {}, ignoring", filePath);
             harvester.getLogger().error("full stack", e);
             result.unretrievable++;
-            return;
+            return null;
         }
 
-        processXmlData(file, xml);
+        return xml;
     }
 
-    private void processXmlData(Path file, Element rawXml) throws Exception {
+    /**
+     * @return the uuid and id of the record harvested from the file, or null if it was not.
+     */
+    private Map<String, String> processXmlData(Path file, Element rawXml) throws Exception {
         Path filePath = file.toAbsolutePath().normalize();
 
         Element xml = rawXml;
@@ -263,7 +354,7 @@ class LocalFsHarvesterFileVisitor extends SimpleFileVisitor<Path> {
             } catch (Exception e) {
                 harvester.getLogger().error("Cannot transform XML from file {}, ignoring. Error was: {}", filePath, e.getMessage());
                 result.badFormat++;
-                return;
+                return null;
             }
         }
 
@@ -272,7 +363,7 @@ class LocalFsHarvesterFileVisitor extends SimpleFileVisitor<Path> {
             schema = dataMan.autodetectSchema(xml, null);
         } catch (Exception e) {
             result.unknownSchema++;
-            return;
+            return null;
         }
 
         try {
@@ -285,13 +376,13 @@ class LocalFsHarvesterFileVisitor extends SimpleFileVisitor<Path> {
         } catch (Exception e) {
             harvester.getLogger().error("Cannot validate XML from file {}, ignoring. Error was: {}", filePath, e.getMessage());
             result.doesNotValidate++;
-            return;
+            return null;
         }
 
         String uuid = getUuidFromFile(xml, filePath, schema);
         if (StringUtils.isEmpty(uuid)) {
             result.badFormat++;
-            return;
+            return null;
         }
 
         Aligner.applyBatchEdits(uuid, xml, schema, params.getBatchEdits(), context, null);
@@ -312,19 +403,20 @@ class LocalFsHarvesterFileVisitor extends SimpleFileVisitor<Path> {
                     case RANDOM:
                         harvester.getLogger().debug("Generating random uuid for remote record with uuid " + metadata.getUuid());
                         String createDate = getCreateDate(file, xml, schema, uuid);
-                        String newUuid = UUID.randomUUID().toString();
-                        id = addMetadata(xml, schema, newUuid, createDate);
+                        uuid = UUID.randomUUID().toString();
+                        id = addMetadata(xml, schema, uuid, createDate);
 
                         break;
                     case SKIP:
                         harvester.getLogger().info("Skipping record with uuid " + metadata.getUuid());
                         result.uuidSkipped++;
                         result.unchangedMetadata++;
-
-                        break;
+                        listOfRecords.add(Integer.valueOf(id));
+                        return null;
                     default:
                         // Do nothing
-                        break;
+                        listOfRecords.add(Integer.valueOf(id));
+                        return null;
                 }
             } else {
                 //record exists and belongs to this harvester
@@ -333,6 +425,7 @@ class LocalFsHarvesterFileVisitor extends SimpleFileVisitor<Path> {
 
         }
         listOfRecords.add(Integer.valueOf(id));
+        return Collections.singletonMap(uuid, id);
     }
 
     private String getCreateDate(Path file, Element xml, String schema, String uuid) throws IOException {
@@ -398,7 +491,10 @@ class LocalFsHarvesterFileVisitor extends SimpleFileVisitor<Path> {
         }
     }
 
-    private void processMef(Path file) {
+    /**
+     * @return the uuids and ids of the records imported from the MEF file, or null if it could not be imported.
+     */
+    private Map<String, String> processMef(Path file) {
         Path filePath = file.toAbsolutePath().normalize();
 
         harvester.getLogger().debug(String.format("reading file: %s", filePath));
@@ -433,6 +529,7 @@ class LocalFsHarvesterFileVisitor extends SimpleFileVisitor<Path> {
                 params.getOwnerIdGroup(),
                 params.getValidate() != NOVALIDATION,
                 false, context, file);
+            Map<String, String> records = new LinkedHashMap<>();
             for (String id : ids) {
                 harvester.getLogger().debug(String.format("Metadata imported from MEF: %s", id));
                 context.getBean(MetadataRepository.class).update(Integer.valueOf(id), new Updater<Metadata>() {
@@ -446,12 +543,15 @@ class LocalFsHarvesterFileVisitor extends SimpleFileVisitor<Path> {
                 aligner.addPrivileges(id, params.getPrivileges(), localGroups, context);
                 listOfRecordsToIndex.add(Integer.valueOf(id));
                 listOfRecords.add(Integer.valueOf(id));
+                records.put(repo.getMetadataUuid(id), id);
                 result.addedMetadata++;
             }
+            return records;
         } catch (Exception e) {
             harvester.getLogger().error("Error retrieving MEF from file {}, ignoring", filePath);
             harvester.getLogger().error("Error: ",  e);
             result.unretrievable++;
+            return null;
         }
     }
 
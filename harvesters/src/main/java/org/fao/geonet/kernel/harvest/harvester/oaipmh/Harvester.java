@@ -48,7 +48,6 @@ import org.fao.geonet.domain.Pair;
 import org.fao.geonet.exceptions.OperationAbortedEx;
 import org.fao.geonet.kernel.DataManager;
 import org.fao.geonet.kernel.UpdateDatestamp;
-import org.fao.geonet.kernel.datamanager.IMetadataIndexer;
 import org.fao.geonet.kernel.datamanager.IMetadataManager;
 import org.fao.geonet.kernel.datamanager.IMetadataUtils;
 import org.fao.geonet.kernel.harvest.BaseAligner;
@@ -56,6 +55,7 @@ import org.fao.geonet.kernel.harvest.harvester.CategoryMapper;
 import org.fao.geonet.kernel.harvest.harvester.GroupMapper;
 import org.fao.geonet.kernel.harvest.harvester.HarvestError;
 import org.fao.geonet.kernel.harvest.harvester.HarvestResult;
+import org.fao.geonet.kernel.harvest.harvester.HarvestSession;
 import org.fao.geonet.kernel.harvest.harvester.HarvesterUtil;
 import org.fao.geonet.kernel.harvest.harvester.IHarvester;
 import org.fao.geonet.kernel.harvest.harvester.UUIDMapper;
@@ -89,7 +89,6 @@ class Harvester extends BaseAligner<OaiPmhParams> implements IHarvester<HarvestR
     private ServiceContext context;
     private DataManager dataMan;
     private IMetadataManager metadataManager;
-    private IMetadataIndexer metadataIndexer;
     private IMetadataUtils metadataUtils;
     private CategoryMapper localCateg;
     private GroupMapper localGroups;
@@ -112,7 +111,6 @@ class Harvester extends BaseAligner<OaiPmhParams> implements IHarvester<HarvestR
         GeonetContext gc = (GeonetContext) context.getHandlerContext(Geonet.CONTEXT_NAME);
         dataMan = gc.getBean(DataManager.class);
         metadataManager = gc.getBean(IMetadataManager.class);
-        metadataIndexer = gc.getBean(IMetadataIndexer.class);
         metadataUtils = gc.getBean(IMetadataUtils.class);
     }
 
@@ -314,7 +312,7 @@ class Harvester extends BaseAligner<OaiPmhParams> implements IHarvester<HarvestR
                     switch (params.getOverrideUuid()) {
                         case OVERRIDE:
                             processParams.put("mdChangeDate", ri.changeDate);
-                            updateMetadata(t, ri, metadataUtils.findOneByUuid(ri.id),
+                            updateMetadata(t, ri, databaseId,
                                 processName, processParams, true);
                             result.updatedMetadata++;
                             break;
@@ -337,7 +335,7 @@ class Harvester extends BaseAligner<OaiPmhParams> implements IHarvester<HarvestR
                     //record exists and belongs to this harvester
                     String id = localUuids.getID(ri.id);
                     processParams.put("mdChangeDate", ri.changeDate);
-                    updateMetadata(t, ri, metadataUtils.findOne(id), processName, processParams, false);
+                    updateMetadata(t, ri, id, processName, processParams, false);
                 }
                 result.totalMetadata++;
             } catch (Throwable tr) {
@@ -435,9 +433,7 @@ class Harvester extends BaseAligner<OaiPmhParams> implements IHarvester<HarvestR
 
         addPrivileges(id, params.getPrivileges(), localGroups, context);
 
-        metadataManager.flush();
-
-        dataMan.indexMetadata(id, Math.random() < 0.01);
+        HarvestSession.indexRecord(context, id, false);
         result.addedMetadata++;
     }
 
@@ -451,7 +447,7 @@ class Harvester extends BaseAligner<OaiPmhParams> implements IHarvester<HarvestR
             req.setIdentifier(ri.id);
             req.setMetadataPrefix(ri.prefix);
 
-            GetRecordResponse res = req.execute();
+            GetRecordResponse res = HarvestSession.fetch(req::execute);
 
             Element md = res.getRecord().getMetadata();
 
@@ -531,8 +527,7 @@ class Harvester extends BaseAligner<OaiPmhParams> implements IHarvester<HarvestR
         }
     }
 
-    private void updateMetadata(XmlRequest t, RecordInfo ri, AbstractMetadata originalMetadata, String processName, Map<String, Object> processParams, boolean force) throws Exception {
-        String id = Integer.toString(originalMetadata.getId());
+    private void updateMetadata(XmlRequest t, RecordInfo ri, String id, String processName, Map<String, Object> processParams, boolean force) throws Exception {
         String date = localUuids.getChangeDate(ri.id);
 
         if (!force && !ri.isMoreRecentThan(date)) {
@@ -564,6 +559,8 @@ class Harvester extends BaseAligner<OaiPmhParams> implements IHarvester<HarvestR
                 schema = dataMan.autodetectSchema(md);
                 updateSchema = true;
             } else {
+                // Loaded after the request to the remote server which detaches the entities of the harvest session
+                AbstractMetadata originalMetadata = metadataUtils.findOne(id);
                 if (!originalMetadata.getDataInfo().getSchemaId().equals(schema)) {
                     log.warning("  - Detected schema '" + schema + "' is different from the one of the metadata in the catalog '" + originalMetadata.getDataInfo().getSchemaId() + "'. Using the detected one.");
                     updateSchema = true;
@@ -613,10 +610,7 @@ class Harvester extends BaseAligner<OaiPmhParams> implements IHarvester<HarvestR
             metadata.getCategories().clear();
             addCategories(metadata, params.getCategories(), localCateg, context, null, true);
 
-            metadataManager.flush();
-            dataMan.indexMetadata(id, Math.random() < 0.01);
-            result.updatedMetadata++;
-            metadataIndexer.indexMetadata(id, true, IndexingMode.full);
+            HarvestSession.indexRecord(context, id, false);
             result.updatedMetadata++;
         }
     }
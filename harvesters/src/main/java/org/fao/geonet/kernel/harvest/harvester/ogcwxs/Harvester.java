@@ -242,7 +242,7 @@ class Harvester extends BaseAligner<OgcWxSParams> implements IHarvester<HarvestR
             }
         });
 
-        dataMan.batchIndexInThreadPool(context, ids);
+        HarvestSession.indexRecords(context, ids);
 
         result.totalMetadata = result.addedMetadata + result.updatedMetadata;
         Store store = context.getBean("resourceStore", Store.class);
@@ -265,7 +265,7 @@ class Harvester extends BaseAligner<OgcWxSParams> implements IHarvester<HarvestR
                 store.delResources(context, uuid);
 
                 // Remove metadata
-                metadataManager.deleteMetadata(context, id);
+                HarvestSession.deleteRecord(context, id);
 
                 result.locallyRemoved++;
             }
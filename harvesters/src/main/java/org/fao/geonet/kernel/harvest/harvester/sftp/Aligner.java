@@ -34,7 +34,6 @@ import org.fao.geonet.exceptions.NoSchemaMatchesException;
 import org.fao.geonet.exceptions.SchemaMatchConflictException;
 import org.fao.geonet.kernel.DataManager;
 import org.fao.geonet.kernel.UpdateDatestamp;
-import org.fao.geonet.kernel.datamanager.IMetadataIndexer;
 import org.fao.geonet.kernel.datamanager.IMetadataManager;
 import org.fao.geonet.kernel.datamanager.IMetadataSchemaUtils;
 import org.fao.geonet.kernel.datamanager.IMetadataUtils;
@@ -43,6 +42,7 @@ import org.fao.geonet.kernel.harvest.harvester.CategoryMapper;
 import org.fao.geonet.kernel.harvest.harvester.GroupMapper;
 import org.fao.geonet.kernel.harvest.harvester.HarvestError;
 import org.fao.geonet.kernel.harvest.harvester.HarvestResult;
+import org.fao.geonet.kernel.harvest.harvester.HarvestSession;
 import org.fao.geonet.kernel.harvest.harvester.HarvesterUtil;
 import org.fao.geonet.kernel.harvest.harvester.RecordInfo;
 import org.fao.geonet.kernel.harvest.harvester.UUIDMapper;
@@ -71,7 +71,6 @@ public class Aligner extends BaseAligner<SftpParams> {
     private final ServiceContext context;
     private final IMetadataUtils metadataUtils;
     private final IMetadataManager metadataManager;
-    private final IMetadataIndexer metadataIndexer;
     private final IMetadataSchemaUtils metadataSchemaUtils;
     private final Logger log;
 
@@ -89,7 +88,6 @@ public class Aligner extends BaseAligner<SftpParams> {
 
         metadataUtils = sc.getBean(IMetadataUtils.class);
         metadataManager = sc.getBean(IMetadataManager.class);
-        metadataIndexer = sc.getBean(IMetadataIndexer.class);
         metadataSchemaUtils = sc.getBean(IMetadataSchemaUtils.class);
         this.context = sc;
         this.params = params;
@@ -182,7 +180,7 @@ public class Aligner extends BaseAligner<SftpParams> {
             }
             if (!idsForHarvestingResult.contains(existingId)) {
                 log.debug("  Removing: " + existingId);
-                metadataManager.deleteMetadata(context, existingId.toString());
+                HarvestSession.deleteRecord(context, existingId.toString());
                 result.locallyRemoved++;
             }
         }
@@ -326,7 +324,7 @@ public class Aligner extends BaseAligner<SftpParams> {
 
         addPrivileges(id, params.getPrivileges(), localGroups, context);
 
-        metadataIndexer.indexMetadata(id, true, IndexingMode.full);
+        HarvestSession.indexRecord(context, id);
         result.addedMetadata++;
         idsForHarvestingResult.add(metadata.getId());
     }
@@ -343,7 +341,7 @@ public class Aligner extends BaseAligner<SftpParams> {
             } else {
                 log.debug("  - Updating local metadata for uuid:" + ri.uuid);
                 if (updatingLocalMetadata(ri, id, md, force)) {
-                    metadataIndexer.indexMetadata(id, true, IndexingMode.full);
+                    HarvestSession.indexRecord(context, id);
                     result.updatedMetadata++;
                 }
             }
@@ -34,7 +34,6 @@ import org.fao.geonet.domain.MetadataType;
 import org.fao.geonet.exceptions.OperationAbortedEx;
 import org.fao.geonet.kernel.DataManager;
 import org.fao.geonet.kernel.UpdateDatestamp;
-import org.fao.geonet.kernel.datamanager.IMetadataIndexer;
 import org.fao.geonet.kernel.datamanager.IMetadataManager;
 import org.fao.geonet.kernel.datamanager.IMetadataUtils;
 import org.fao.geonet.kernel.harvest.BaseAligner;
@@ -42,6 +41,7 @@ import org.fao.geonet.kernel.harvest.harvester.CategoryMapper;
 import org.fao.geonet.kernel.harvest.harvester.GroupMapper;
 import org.fao.geonet.kernel.harvest.harvester.HarvestError;
 import org.fao.geonet.kernel.harvest.harvester.HarvestResult;
+import org.fao.geonet.kernel.harvest.harvester.HarvestSession;
 import org.fao.geonet.kernel.harvest.harvester.UUIDMapper;
 import org.fao.geonet.kernel.search.IndexingMode;
 import org.fao.geonet.repository.OperationAllowedRepository;
@@ -67,7 +67,6 @@ public class Aligner extends BaseAligner<SimpleUrlParams> {
 
     private IMetadataUtils metadataUtils;
     private IMetadataManager metadataManager;
-    private IMetadataIndexer metadataIndexer;
 
     private HarvestResult result;
 
@@ -87,7 +86,6 @@ public class Aligner extends BaseAligner<SimpleUrlParams> {
         dataMan = gc.getBean(DataManager.class);
         metadataUtils = gc.getBean(IMetadataUtils.class);
         metadataManager = gc.getBean(IMetadataManager.class);
-        metadataIndexer = gc.getBean(IMetadataIndexer.class);
         result = new HarvestResult();
         result.unretrievable = 0;
         result.uuidSkipped = 0;
@@ -182,7 +180,7 @@ public class Aligner extends BaseAligner<SimpleUrlParams> {
             if (!records.contains(uuid)) {
                 String id = localUuids.getID(uuid);
                 log.debug("  - Removing old metadata with local id:" + id);
-                metadataManager.deleteMetadata(context, id);
+                HarvestSession.deleteRecord(context, id);
                 result.locallyRemoved ++;
             }
         }
@@ -255,7 +253,7 @@ public class Aligner extends BaseAligner<SimpleUrlParams> {
 
         addPrivileges(id, params.getPrivileges(), localGroups, context);
 
-        metadataIndexer.indexMetadata(id, true, IndexingMode.full);
+        HarvestSession.indexRecord(context, id);
         result.addedMetadata++;
     }
 
@@ -300,7 +298,7 @@ public class Aligner extends BaseAligner<SimpleUrlParams> {
         metadata.getCategories().clear();
         addCategories(metadata, params.getCategories(), localCateg, context, null, true);
 
-        metadataIndexer.indexMetadata(id, true, IndexingMode.full);
+        HarvestSession.indexRecord(context, id);
         result.updatedMetadata++;
         return true;
     }
@@ -43,7 +43,6 @@ import org.fao.geonet.kernel.DataManager;
 import org.fao.geonet.kernel.GeonetworkDataDirectory;
 import org.fao.geonet.kernel.SchemaManager;
 import org.fao.geonet.kernel.UpdateDatestamp;
-import org.fao.geonet.kernel.datamanager.IMetadataIndexer;
 import org.fao.geonet.kernel.datamanager.IMetadataManager;
 import org.fao.geonet.kernel.datamanager.IMetadataOperations;
 import org.fao.geonet.kernel.datamanager.IMetadataSchemaUtils;
@@ -52,6 +51,7 @@ import org.fao.geonet.kernel.harvest.harvester.CategoryMapper;
 import org.fao.geonet.kernel.harvest.harvester.GroupMapper;
 import org.fao.geonet.kernel.harvest.harvester.HarvestError;
 import org.fao.geonet.kernel.harvest.harvester.HarvestResult;
+import org.fao.geonet.kernel.harvest.harvester.HarvestSession;
 import org.fao.geonet.kernel.harvest.harvester.IHarvester;
 import org.fao.geonet.kernel.harvest.harvester.RecordInfo;
 import org.fao.geonet.kernel.harvest.harvester.UriMapper;
@@ -207,7 +207,6 @@ class Harvester extends BaseAligner<ThreddsParams> implements IHarvester<Harvest
     private IMetadataManager mdManager;
     private IMetadataSchemaUtils mdSchemaUtils;
     private IMetadataOperations mdOperations;
-    private IMetadataIndexer mdIndexer;
     private DataManager dataMan;
 
     private GeonetworkDataDirectory dataDirectory;
@@ -245,7 +244,6 @@ class Harvester extends BaseAligner<ThreddsParams> implements IHarvester<Harvest
         mdManager = gc.getBean(IMetadataManager.class);
         mdSchemaUtils = gc.getBean(IMetadataSchemaUtils.class);
         mdOperations = gc.getBean(IMetadataOperations.class);
-        mdIndexer = gc.getBean(IMetadataIndexer.class);
         dataMan = gc.getBean(DataManager.class);
         dataDirectory = gc.getBean(GeonetworkDataDirectory.class);
 
@@ -302,7 +300,7 @@ class Harvester extends BaseAligner<ThreddsParams> implements IHarvester<Harvest
 
                     if (log.isDebugEnabled())
                         log.debug("  - Removing deleted metadata with id: " + record.id);
-                    mdManager.deleteMetadata(context, record.id);
+                    HarvestSession.deleteRecord(context, record.id);
 
                     if (record.isTemplate.equals("s")) {
                         //--- Uncache xlinks if a subtemplate
@@ -574,9 +572,7 @@ class Harvester extends BaseAligner<ThreddsParams> implements IHarvester<Harvest
 
         addPrivileges(id, params.getPrivileges(), localGroups, context);
 
-        mdIndexer.indexMetadata(id, true, IndexingMode.full);
-
-        mdManager.flush();
+        HarvestSession.indexRecord(context, id);
     }
 
     /**
@@ -781,7 +777,7 @@ class Harvester extends BaseAligner<ThreddsParams> implements IHarvester<Harvest
         if (localRecords == null) return;
 
         for (RecordInfo record : localRecords) {
-            mdManager.deleteMetadata(context, record.id);
+            HarvestSession.deleteRecord(context, record.id);
 
             if (record.isTemplate.equals("s")) {
                 //--- Uncache xlinks if a subtemplate
@@ -22,9 +22,11 @@
 //==============================================================================
 package org.fao.geonet.kernel.harvest.harvester.webdav;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.lang.StringUtils;
 import org.fao.geonet.GeonetContext;
 import org.fao.geonet.Logger;
@@ -64,6 +66,22 @@ interface RemoteFile {
 
     ISODate getChangeDate();
 
+    /**
+     * @return the size of the file listed by the server, -1 if unknown.
+     */
+    long getSize();
+
+    /**
+     * @return the modification date of the file listed by the server in milliseconds, -1 if unknown.
+     */
+    long getLastModified();
+
+    /**
+     * @return a hash of the content or a tag changing with the content, null if unknown. The
+     * file may be downloaded to compute it.
+     */
+    String getContentHash() throws Exception;
+
     Element getMetadata(SchemaManager schemaMan) throws Exception;
 
     boolean isMoreRecentThan(String localDate);
@@ -86,13 +104,20 @@ class Harvester extends BaseAligner<WebDavParams> implements IHarvester<HarvestR
     private List<HarvestError> errors;
     private String processName;
     private Map<String, Object> processParams = new HashMap<>();
+    private final HarvestManifest manifest;
 
-    public Harvester(AtomicBoolean cancelMonitor, Logger log, ServiceContext context, WebDavParams params, List<HarvestError> errors) {
+    /**
+     * @param manifest the files harvested by the last run, which are skipped if they did not
+     *                 change. null to check all files.
+     */
+    public Harvester(AtomicBoolean cancelMonitor, Logger log, ServiceContext context, WebDavParams params,
+                     List<HarvestError> errors, HarvestManifest manifest) {
         super(cancelMonitor);
         this.log = log;
         this.context = context;
         this.params = params;
         this.errors = errors;
+        this.manifest = manifest;
 
         result = new HarvestResult();
         result.addedMetadata = 0;
@@ -137,7 +162,8 @@ class Harvester extends BaseAligner<WebDavParams> implements IHarvester<HarvestR
         return result;
     }
 
-    private void align(final List<RemoteFile> files) throws Exception {
+    @VisibleForTesting
+    void align(final List<RemoteFile> files) throws Exception {
         log.info("Start of alignment for : " + params.getName());
         //-----------------------------------------------------------------------
         //--- retrieve all local categories and groups
@@ -185,14 +211,55 @@ class Harvester extends BaseAligner<WebDavParams> implements IHarvester<HarvestR
             List<RecordInfo> records = localUris.getRecords(rf.getPath());
             if (records == null) {
                 addMetadata(rf);
-            } else {
+            } else if (manifest == null) {
                 // only one metadata record created per uri by this harvester
                 updateMetadata(rf, records.get(0), false);
+            } else {
+                alignRecord(rf, records.get(0));
             }
         }
+
+        if (manifest != null) {
+            HarvestSession.afterCommit(rejectedIds -> {
+                try {
+                    manifest.save(rejectedIds);
+                } catch (IOException e) {
+                    log.error("Error saving the harvested files manifest: " + e.getMessage());
+                }
+            });
+        }
         log.info("End of alignment for : " + params.getName());
     }
 
+    /**
+     * Updates the record of a file harvested by the last run, unless the size and date of the
+     * file, or else its content, did not change.
+     */
+    private void alignRecord(RemoteFile rf, RecordInfo recordInfo) throws Exception {
+        List<String> uuids = Collections.singletonList(recordInfo.uuid);
+        HarvestManifest.Entry entry = manifest.get(rf.getPath());
+        boolean harvested = entry != null && entry.getUuids().equals(uuids);
+        if (harvested && entry.isSameFile(rf.getSize(), rf.getLastModified())) {
+            keepUnchanged(rf, entry, recordInfo);
+            return;
+        }
+
+        String hash = rf.getContentHash();
+        HarvestManifest.Entry newEntry = new HarvestManifest.Entry(rf.getSize(), rf.getLastModified(), hash, uuids);
+        if (harvested && entry.isSameContent(hash)) {
+            keepUnchanged(rf, newEntry, recordInfo);
+        } else if (updateMetadata(rf, recordInfo, false)) {
+            manifest.put(rf.getPath(), newEntry, Collections.singletonList(recordInfo.id));
+        }
+    }
+
+    private void keepUnchanged(RemoteFile rf, HarvestManifest.Entry entry, RecordInfo recordInfo) {
+        if (log.isDebugEnabled())
+            log.debug("  - File not changed since the last run : " + rf.getPath());
+        manifest.put(rf.getPath(), entry, Collections.singletonList(recordInfo.id));
+        result.unchangedMetadata++;
+    }
+
     /**
      * Returns true if the uri is present in the remote folder
      */
@@ -346,16 +413,20 @@ class Harvester extends BaseAligner<WebDavParams> implements IHarvester<HarvestR
 
         addPrivileges(id, params.getPrivileges(), localGroups, context);
 
-        metadataManager.flush();
-
-        dataMan.indexMetadata(id, true);
+        HarvestSession.indexRecord(context, id);
         result.addedMetadata++;
+
+        if (manifest != null) {
+            // The file was just read, a WAF file is not downloaded again to hash it
+            manifest.put(rf.getPath(), new HarvestManifest.Entry(rf.getSize(), rf.getLastModified(), rf.getContentHash(),
+                Collections.singletonList(uuid)), Collections.singletonList(id));
+        }
     }
 
     private Element retrieveMetadata(RemoteFile rf) {
         try {
             if (log.isDebugEnabled()) log.debug("Getting remote file : " + rf.getPath());
-            Element md = rf.getMetadata(schemaMan);
+            Element md = HarvestSession.fetch(() -> rf.getMetadata(schemaMan));
             if (log.isDebugEnabled()) {
                 log.debug("Record got:\n" + Xml.getString(md));
             }
@@ -396,9 +467,10 @@ class Harvester extends BaseAligner<WebDavParams> implements IHarvester<HarvestR
         * @param rf
         * @param recordInfo
         * @param force
+        * @return false if the file could not be harvested
         * @throws Exception
      */
-    private void updateMetadata(RemoteFile rf, RecordInfo recordInfo, boolean force) throws Exception {
+    private boolean updateMetadata(RemoteFile rf, RecordInfo recordInfo, boolean force) throws Exception {
         Element md = null;
 
         // Get the change date from the metadata content. If not possible, get it from the file change date if available
@@ -412,7 +484,7 @@ class Harvester extends BaseAligner<WebDavParams> implements IHarvester<HarvestR
             md = retrieveMetadata(rf);
 
             if (md == null) {
-                return;
+                return false;
             }
 
             try {
@@ -425,7 +497,7 @@ class Harvester extends BaseAligner<WebDavParams> implements IHarvester<HarvestR
                 }
             } catch (Exception e) {
                 log.error("  - Failed to set uuid for metadata with remote path : " + rf.getPath());
-                return;
+                return false;
             }
 
 
@@ -455,7 +527,7 @@ class Harvester extends BaseAligner<WebDavParams> implements IHarvester<HarvestR
                 md = retrieveMetadata(rf);
 
                 if (md == null) {
-                    return;
+                    return false;
                 }
 
                 try {
@@ -468,7 +540,7 @@ class Harvester extends BaseAligner<WebDavParams> implements IHarvester<HarvestR
                     }
                 } catch (Exception e) {
                     log.error("  - Failed to set uuid for metadata with remote path : " + rf.getPath());
-                    return;
+                    return false;
                 }
 
 
@@ -536,10 +608,9 @@ class Harvester extends BaseAligner<WebDavParams> implements IHarvester<HarvestR
             metadata.getCategories().clear();
             addCategories(metadata, params.getCategories(), localCateg, context, null, true);
 
-            dataMan.flush();
-
-            dataMan.indexMetadata(recordInfo.id, true);
+            HarvestSession.indexRecord(context, recordInfo.id);
         }
+        return true;
     }
 }
 
@@ -23,14 +23,17 @@
 
 package org.fao.geonet.kernel.harvest.harvester.webdav;
 
+import org.apache.commons.io.IOUtils;
 import org.fao.geonet.constants.Geonet;
 import org.fao.geonet.domain.ISODate;
 import org.fao.geonet.kernel.SchemaManager;
+import org.fao.geonet.kernel.harvest.harvester.HarvestManifest;
 import org.fao.geonet.util.Sha1Encoder;
 import org.fao.geonet.utils.DateUtil;
 import org.fao.geonet.utils.Xml;
 import org.jdom.Element;
 
+import java.io.ByteArrayInputStream;
 import java.net.URL;
 import java.nio.file.Path;
 import java.util.HashMap;
@@ -49,6 +52,8 @@ class WAFRemoteFile implements RemoteFile {
     //---------------------------------------------------------------------------
     private String path;
     private ISODate changeDate;
+    private byte[] content;
+    private String contentHash;
 
     //---------------------------------------------------------------------------
     //---
@@ -72,18 +77,49 @@ class WAFRemoteFile implements RemoteFile {
         if (type.equals(WAFRetriever.type_GetCapabilities))
             return getMdFromService(path, schemaMan);
         else if (type.equals(WAFRetriever.type_xml))
-            return Xml.loadFile(new URL(path));
+            return loadContent();
         else
             return null;
     }
 
+    /**
+     * The folder listing has no size nor date, the file is downloaded to hash its content
+     * and the content is kept for {@link #getMetadata(SchemaManager)}.
+     */
+    public String getContentHash() throws Exception {
+        if (contentHash == null) {
+            download();
+        }
+        return contentHash;
+    }
+
+    /**
+     * Downloads the file and hashes its content, so that a file read by
+     * {@link #getMetadata(SchemaManager)} is not downloaded again by {@link #getContentHash()}.
+     */
+    private void download() throws Exception {
+        content = IOUtils.toByteArray(new URL(path));
+        contentHash = HarvestManifest.hash(content);
+    }
+
+    private Element loadContent() throws Exception {
+        if (content == null) {
+            download();
+        }
+        try {
+            return Xml.loadStream(new ByteArrayInputStream(content));
+        } finally {
+            content = null;
+        }
+    }
+
     private Element getMdFromService(String url, SchemaManager schemaMan) throws Exception {
         Element el = null;
         Path styleSheet = getStyleSheet(url, schemaMan);
         if (styleSheet == null) {
             return null;
         }
-        Element xml = Xml.loadFile(new URL(url));
+        Element xml = loadContent();
 
         // md5 the full capabilities URL
         String uuid = Sha1Encoder.encodeString(url); // is the service identifier
@@ -149,6 +185,15 @@ class WAFRemoteFile implements RemoteFile {
     public ISODate getChangeDate() {
         return changeDate;
     }
+
+    public long getSize() {
+        return -1;
+    }
+
+    public long getLastModified() {
+        return -1;
+    }
+
     public void setChangeDate(String date) {
         try {
             changeDate = new ISODate(DateUtil.parseBasicOrFullDateTime(date).toInstant().toEpochMilli());
@@ -47,7 +47,7 @@ public class WebDavHarvester extends AbstractHarvester<HarvestResult, WebDavPara
 
     public void doHarvest(Logger log) throws Exception {
         log.info("WebDav doHarvest start");
-        Harvester h = new Harvester(cancelMonitor, log, context, params, errors);
+        Harvester h = new Harvester(cancelMonitor, log, context, params, errors, loadManifest(""));
         result = h.harvest(log);
         log.info("WebDav doHarvest end");
     }
@@ -44,12 +44,19 @@ class WebDavRemoteFile implements RemoteFile {
 
     private String path;
     private ISODate changeDate;
+    private long size;
+    private long lastModified;
+    private String etag;
 
 
     public WebDavRemoteFile(Sardine sardine, String baseURL, DavResource davResource) {
         this.sardine = sardine;
         path = baseURL + UrlEscapers.urlFragmentEscaper().escape(davResource.getPath());
         Date modifiedDate = davResource.getModified();
+        Long contentLength = davResource.getContentLength();
+        size = contentLength == null ? -1 : contentLength;
+        lastModified = modifiedDate == null ? -1 : modifiedDate.getTime();
+        etag = davResource.getEtag();
         if (modifiedDate == null) {
             modifiedDate = Calendar.getInstance().getTime();
         }
@@ -70,6 +77,18 @@ class WebDavRemoteFile implements RemoteFile {
         return changeDate;
     }
 
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public String getContentHash() {
+        return etag;
+    }
+
     //---------------------------------------------------------------------------
 
     public Element getMetadata(SchemaManager schemaMan) throws Exception {
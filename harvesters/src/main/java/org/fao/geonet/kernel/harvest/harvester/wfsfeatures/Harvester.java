@@ -39,6 +39,7 @@ import org.fao.geonet.kernel.datamanager.IMetadataManager;
 import org.fao.geonet.kernel.datamanager.IMetadataUtils;
 import org.fao.geonet.kernel.harvest.harvester.HarvestError;
 import org.fao.geonet.kernel.harvest.harvester.HarvestResult;
+import org.fao.geonet.kernel.harvest.harvester.HarvestSession;
 import org.fao.geonet.kernel.harvest.harvester.IHarvester;
 import org.fao.geonet.kernel.harvest.harvester.UUIDMapper;
 import org.fao.geonet.kernel.harvest.harvester.fragment.FragmentHarvester;
@@ -345,7 +346,7 @@ class Harvester implements IHarvester<HarvestResult> {
 
                 if (!updatedMetadata.contains(uuid)) {
                     String id = localUuids.getID(uuid);
-                    metadataManager.deleteMetadata(context, id);
+                    HarvestSession.deleteRecord(context, id);
 
                     if (isTemplate.equals("s")) {
                         result.subtemplatesRemoved++;
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.kernel.harvest.harvester;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HarvestManifestTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("harvester").resolve("test.manifest");
+        HarvestManifest manifest = HarvestManifest.load(file, "config");
+        assertNull(manifest.get("/data/a.xml"));
+
+        manifest.put("/data/a.xml", new HarvestManifest.Entry(10, 1000, "abc", Collections.singletonList("uuid-a")),
+            Collections.singletonList("1"));
+        manifest.put("/data/b.zip", new HarvestManifest.Entry(20, 2000, null, Arrays.asList("uuid-b", "uuid-c")),
+            Arrays.asList("2", "3"));
+        manifest.put("/data/c.xml", new HarvestManifest.Entry(30, 3000, "def", Collections.singletonList("uuid-d")),
+            Collections.singletonList("4"));
+        manifest.save(Collections.singleton("4"));
+
+        HarvestManifest lastRun = HarvestManifest.load(file, "config");
+        HarvestManifest.Entry a = lastRun.get("/data/a.xml");
+        assertTrue(a.isSameFile(10, 1000));
+        assertFalse(a.isSameFile(10, 1001));
+        assertTrue(a.isSameContent("abc"));
+        assertEquals(Collections.singletonList("uuid-a"), a.getUuids());
+
+        HarvestManifest.Entry b = lastRun.get("/data/b.zip");
+        assertFalse(b.isSameContent(null));
+        assertEquals(Arrays.asList("uuid-b", "uuid-c"), b.getUuids());
+
+        // The record of c.xml was not committed
+        assertNull(lastRun.get("/data/c.xml"));
+
+        // The files harvested with another configuration are not used
+        assertNull(HarvestManifest.load(file, "other config").get("/data/a.xml"));
+    }
+
+    @Test
+    public void testUnknownSizeAndDate() {
+        HarvestManifest.Entry entry = new HarvestManifest.Entry(-1, -1, "abc", Collections.singletonList("uuid"));
+        assertFalse(entry.isSameFile(-1, -1));
+        assertTrue(entry.isSameContent("abc"));
+    }
+}
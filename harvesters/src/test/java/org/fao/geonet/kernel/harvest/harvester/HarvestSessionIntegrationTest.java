@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.kernel.harvest.harvester;
+
+import jeeves.server.context.ServiceContext;
+import org.fao.geonet.AbstractCoreIntegrationTest;
+import org.fao.geonet.domain.Metadata;
+import org.fao.geonet.kernel.datamanager.IMetadataIndexer;
+import org.fao.geonet.kernel.datamanager.IMetadataUtils;
+import org.fao.geonet.repository.MetadataRepository;
+import org.fao.geonet.repository.MetadataRepositoryTest;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Entities of a harvest session with the transactions of the database.
+ */
+public class HarvestSessionIntegrationTest extends AbstractCoreIntegrationTest {
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private MetadataRepository metadataRepository;
+    @Autowired
+    private IMetadataUtils metadataUtils;
+
+    private ServiceContext context;
+
+    @Before
+    public void setUpContext() {
+        context = mock(ServiceContext.class);
+        when(context.getBean(PlatformTransactionManager.class)).thenReturn(transactionManager);
+        when(context.getBean(IMetadataIndexer.class)).thenReturn(mock(IMetadataIndexer.class));
+        when(context.getBean(IMetadataUtils.class)).thenReturn(metadataUtils);
+    }
+
+    @Test
+    public void testEntityHeldAcrossFetchIsDetached() throws Exception {
+        int id;
+        try (HarvestSession session = HarvestSession.open(context, 10)) {
+            Metadata metadata = metadataRepository.save(MetadataRepositoryTest.newMetadata(new AtomicInteger()));
+            id = metadata.getId();
+            assertTrue(_entityManager.contains(metadata));
+
+            HarvestSession.fetch(() -> "record");
+
+            // The transaction which loaded the entity is committed before the request
+            assertFalse(_entityManager.contains(metadata));
+
+            // Loaded again by id, the entity is attached to the transaction of the next changes
+            Metadata reloaded = metadataRepository.findById(id).get();
+            assertTrue(_entityManager.contains(reloaded));
+            assertEquals(metadata.getUuid(), reloaded.getUuid());
+
+            metadataRepository.delete(reloaded);
+        }
+        assertFalse(metadataRepository.existsById(id));
+    }
+}
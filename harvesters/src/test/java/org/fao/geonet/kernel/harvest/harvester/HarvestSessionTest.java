@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.kernel.harvest.harvester;
+
+import jeeves.server.context.ServiceContext;
+import org.fao.geonet.kernel.datamanager.IMetadataIndexer;
+import org.fao.geonet.kernel.datamanager.IMetadataManager;
+import org.fao.geonet.kernel.datamanager.IMetadataUtils;
+import org.fao.geonet.kernel.search.IndexingMode;
+import org.fao.geonet.kernel.search.index.BatchIndexingListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class HarvestSessionTest {
+    private final List<SimpleTransactionStatus> transactions = new ArrayList<>();
+    private ServiceContext context;
+    private PlatformTransactionManager transactionManager;
+    private IMetadataIndexer metadataIndexer;
+    private IMetadataManager metadataManager;
+    private IMetadataUtils metadataUtils;
+
+    @Before
+    public void setUp() {
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any(TransactionDefinition.class))).thenAnswer(invocation -> {
+            SimpleTransactionStatus transaction = new SimpleTransactionStatus();
+            transactions.add(transaction);
+            return transaction;
+        });
+        metadataIndexer = mock(IMetadataIndexer.class);
+        metadataManager = mock(IMetadataManager.class);
+        metadataUtils = mock(IMetadataUtils.class);
+
+        context = mock(ServiceContext.class);
+        when(context.getBean(PlatformTransactionManager.class)).thenReturn(transactionManager);
+        when(context.getBean(IMetadataIndexer.class)).thenReturn(metadataIndexer);
+        when(context.getBean(IMetadataManager.class)).thenReturn(metadataManager);
+        when(context.getBean(IMetadataUtils.class)).thenReturn(metadataUtils);
+    }
+
+    @After
+    public void tearDown() {
+        while (HarvestSession.current() != null) {
+            HarvestSession.current().close();
+        }
+    }
+
+    @Test
+    public void testChunksCommittedAndIndexed() throws Exception {
+        HarvestSession session = HarvestSession.open(context, 2);
+        HarvestSession.indexRecord(context, "1");
+        HarvestSession.indexRecord(context, "2");
+
+        verify(transactionManager).commit(transactions.get(0));
+        verify(metadataIndexer).indexMetadataInBatch(List.of("1", "2"), IndexingMode.full, BatchIndexingListener.NONE);
+
+        HarvestSession.indexRecord(context, "3");
+        session.close();
+
+        verify(transactionManager).commit(transactions.get(1));
+        verify(metadataIndexer).indexMetadataInBatch(List.of("3"), IndexingMode.full, BatchIndexingListener.NONE);
+        verify(metadataIndexer).forceIndexChanges();
+        verify(transactionManager, never()).rollback(any());
+        assertEquals(3, session.getIndexedRecords());
+        assertNull(HarvestSession.current());
+    }
+
+    @Test
+    public void testRemoteRequestRunsOutsideTransaction() throws Exception {
+        HarvestSession session = HarvestSession.open(context, 10);
+        HarvestSession.indexRecord(context, "1");
+
+        String record = HarvestSession.fetch(() -> {
+            // The changes made before the request are committed
+            verify(transactionManager).commit(transactions.get(0));
+            assertEquals(1, transactions.size());
+            return "record";
+        });
+
+        assertEquals("record", record);
+        assertEquals(2, transactions.size());
+        // Indexed with the next records of the chunk
+        verify(metadataIndexer, never()).indexMetadataInBatch(anyList(), any(), any());
+
+        HarvestSession.indexRecord(context, "2");
+        session.close();
+        verify(metadataIndexer).indexMetadataInBatch(List.of("1", "2"), IndexingMode.full, BatchIndexingListener.NONE);
+    }
+
+    @Test
+    public void testRolledBackChangesCorrectedAndDeletionsIndexedAgain() throws Exception {
+        // 1 was updated, 2 added and 3 deleted in the transaction rolled back
+        when(metadataUtils.existsMetadata(1)).thenReturn(true);
+        when(metadataUtils.existsMetadata(2)).thenReturn(false);
+        when(metadataUtils.existsMetadata(3)).thenReturn(true);
+        HarvestResult result = new HarvestResult();
+        result.updatedMetadata = 1;
+        result.addedMetadata = 1;
+        result.locallyRemoved = 1;
+        Set<String> rejected = new HashSet<>();
+
+        HarvestSession session = HarvestSession.open(context, 10);
+        HarvestSession.afterCommit(rejected::addAll);
+        HarvestSession.deleteRecord(context, "3");
+        HarvestSession.indexRecord(context, "1");
+        HarvestSession.indexRecord(context, "2");
+        transactions.get(0).setRollbackOnly();
+        session.close();
+        session.updateResult(result);
+
+        verify(metadataManager).deleteMetadata(context, "3");
+        verify(transactionManager).rollback(transactions.get(0));
+        verify(transactionManager, never()).commit(transactions.get(0));
+        verify(metadataIndexer).indexMetadataInBatch(List.of("3"), IndexingMode.full, BatchIndexingListener.NONE);
+        verify(metadataIndexer, times(1)).indexMetadataInBatch(anyList(), any(), any());
+        assertEquals(Set.of("1", "2"), rejected);
+        assertEquals(0, result.addedMetadata);
+        assertEquals(0, result.updatedMetadata);
+        assertEquals(0, result.locallyRemoved);
+        assertEquals(2, result.couldNotInsert);
+    }
+
+    @Test
+    public void testNestedSessionJoinsOuterSession() throws Exception {
+        HarvestSession outer = HarvestSession.open(context, 10);
+        HarvestSession inner = HarvestSession.open(context, 10);
+        assertSame(outer, inner);
+
+        HarvestSession.indexRecord(context, "1");
+        inner.close();
+
+        assertSame(outer, HarvestSession.current());
+        verify(transactionManager, never()).commit(any());
+        verify(metadataIndexer, never()).forceIndexChanges();
+
+        outer.close();
+        assertNull(HarvestSession.current());
+        InOrder inOrder = inOrder(transactionManager, metadataIndexer);
+        inOrder.verify(transactionManager).commit(transactions.get(0));
+        inOrder.verify(metadataIndexer).indexMetadataInBatch(List.of("1"), IndexingMode.full, BatchIndexingListener.NONE);
+        inOrder.verify(metadataIndexer).forceIndexChanges();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.kernel.harvest.harvester;
+
+import jeeves.server.context.ServiceContext;
+import org.fao.geonet.utils.GeonetHttpRequestFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RecordFetcherTest {
+    private static final RecordFetcher.Limits TWO_THREADS = new RecordFetcher.Limits(2, 0);
+
+    private ServiceContext context;
+    private GeonetHttpRequestFactory requestFactory;
+    private final List<String> fetched = new CopyOnWriteArrayList<>();
+    private final Set<String> discarded = ConcurrentHashMap.newKeySet();
+
+    @Before
+    public void setUp() {
+        requestFactory = mock(GeonetHttpRequestFactory.class);
+        context = mock(ServiceContext.class);
+        when(context.getBean(GeonetHttpRequestFactory.class)).thenReturn(requestFactory);
+    }
+
+    @Test
+    public void testRecordsTakenInOrder() throws Exception {
+        List<String> uuids = List.of("a", "b", "c", "d", "e", "f");
+        List<String> records = new ArrayList<>();
+        try (RecordFetcher<String> fetcher = new RecordFetcher<>(context, "test", "csw.example.org", TWO_THREADS,
+            this::fetch, discarded::add)) {
+            fetcher.prefetch(uuids);
+            for (String uuid : uuids) {
+                records.add(fetcher.get(uuid));
+            }
+        }
+
+        assertEquals(List.of("record-a", "record-b", "record-c", "record-d", "record-e", "record-f"), records);
+        assertEquals(uuids.size(), fetched.size());
+        assertTrue(discarded.isEmpty());
+    }
+
+    @Test
+    public void testRecordNotRegisteredFetchedWhenTaken() throws Exception {
+        try (RecordFetcher<String> fetcher = new RecordFetcher<>(context, "test", null, RecordFetcher.Limits.SEQUENTIAL,
+            this::fetch, discarded::add)) {
+            fetcher.prefetch(List.of("a"));
+            assertTrue(fetched.isEmpty());
+            assertEquals("record-a", fetcher.get("a"));
+        }
+        verify(context, never()).getBean(GeonetHttpRequestFactory.class);
+    }
+
+    @Test
+    public void testSkippedRecordsDiscarded() throws Exception {
+        RecordFetcher<String> fetcher = new RecordFetcher<>(context, "test", "csw.example.org", TWO_THREADS,
+            this::fetch, discarded::add);
+        fetcher.prefetch(List.of("a", "b", "c"));
+        // a and b are not used anymore, eg. skipped after a change of the local record
+        assertEquals("record-c", fetcher.get("c"));
+        fetcher.close();
+
+        assertEquals(Set.of("record-a", "record-b"), discarded);
+    }
+
+    @Test
+    public void testDownloadErrorRaisedWhenTaken() throws Exception {
+        try (RecordFetcher<String> fetcher = new RecordFetcher<>(context, "test", "csw.example.org", TWO_THREADS,
+            uuid -> {
+                if (uuid.equals("b")) {
+                    throw new IOException("Server error");
+                }
+                return fetch(uuid);
+            }, discarded::add)) {
+            fetcher.prefetch(List.of("a", "b", "c"));
+            assertEquals("record-a", fetcher.get("a"));
+            try {
+                fetcher.get("b");
+                fail("The download error should be raised");
+            } catch (IOException e) {
+                assertEquals("Server error", e.getMessage());
+            }
+            assertEquals("record-c", fetcher.get("c"));
+        }
+    }
+
+    @Test
+    public void testDownloadsInProgressDiscardedOnClose() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        RecordFetcher<String> fetcher = new RecordFetcher<>(context, "test", "csw.example.org", TWO_THREADS,
+            uuid -> {
+                started.countDown();
+                try {
+                    // A download which completes after the harvest is cancelled
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    // Interrupted by close
+                }
+                return fetch(uuid);
+            }, discarded::add);
+        fetcher.prefetch(List.of("a", "b", "c", "d"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        fetcher.close();
+
+        assertEquals(Set.of("record-a", "record-b"), discarded);
+        // Not started
+        assertEquals(List.of("a", "b"), fetched.stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testConnectionsToHostAllowedUntilClosed() {
+        RecordFetcher<String> fetcher = new RecordFetcher<>(context, "test", "csw.example.org", TWO_THREADS,
+            this::fetch, discarded::add);
+        verify(requestFactory).allowConnectionsPerHost("csw.example.org", 2);
+        verify(requestFactory, never()).releaseConnectionsPerHost("csw.example.org", 2);
+
+        fetcher.close();
+        verify(requestFactory).releaseConnectionsPerHost("csw.example.org", 2);
+    }
+
+    private String fetch(String uuid) {
+        fetched.add(uuid);
+        return "record-" + uuid;
+    }
+}
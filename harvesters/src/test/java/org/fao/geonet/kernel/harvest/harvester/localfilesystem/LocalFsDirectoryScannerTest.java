@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel.harvest.harvester.localfilesystem;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class LocalFsDirectoryScannerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFilesInPathOrder() throws Exception {
+        Path root = folder.getRoot().toPath();
+        write(root.resolve("c.xml"));
+        write(root.resolve("b").resolve("d").resolve("x.xml"));
+        write(root.resolve("b").resolve("readme.txt"));
+        write(root.resolve("a").resolve("z.json"));
+        write(root.resolve("a").resolve("y.zip"));
+
+        NavigableMap<Path, BasicFileAttributes> files = new LocalFsDirectoryScanner(new AtomicBoolean(), true, 4).scan(root);
+
+        assertEquals(Arrays.asList(
+            root.resolve("a").resolve("y.zip"),
+            root.resolve("a").resolve("z.json"),
+            root.resolve("b").resolve("d").resolve("x.xml"),
+            root.resolve("c.xml")), new ArrayList<>(files.keySet()));
+        assertEquals(Files.size(root.resolve("c.xml")), files.get(root.resolve("c.xml")).size());
+    }
+
+    @Test
+    public void testNotRecursive() throws Exception {
+        Path root = folder.getRoot().toPath();
+        write(root.resolve("c.xml"));
+        write(root.resolve("b").resolve("x.xml"));
+
+        NavigableMap<Path, BasicFileAttributes> files = new LocalFsDirectoryScanner(new AtomicBoolean(), false, 4).scan(root);
+
+        assertEquals(Collections.singletonList(root.resolve("c.xml")), new ArrayList<>(files.keySet()));
+    }
+
+    @Test
+    public void testSymbolicLinks() throws Exception {
+        Path root = folder.newFolder("data").toPath();
+        Path other = folder.newFolder("other").toPath();
+        write(root.resolve("a.xml"));
+        write(other.resolve("b.xml"));
+        try {
+            Files.createSymbolicLink(root.resolve("linked-dir"), other);
+            Files.createSymbolicLink(root.resolve("linked-file.xml"), other.resolve("b.xml"));
+            Files.createSymbolicLink(root.resolve("broken.xml"), other.resolve("missing.xml"));
+        } catch (UnsupportedOperationException | IOException e) {
+            assumeTrue("Symbolic links are not supported", false);
+        }
+
+        NavigableMap<Path, BasicFileAttributes> files = new LocalFsDirectoryScanner(new AtomicBoolean(), true, 4).scan(root);
+
+        // Links to files are harvested, links to directories are not followed
+        assertEquals(Arrays.asList(root.resolve("a.xml"), root.resolve("linked-file.xml")), new ArrayList<>(files.keySet()));
+        assertTrue(files.get(root.resolve("linked-file.xml")).isRegularFile());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        Path root = folder.getRoot().toPath();
+        write(root.resolve("c.xml"));
+        write(root.resolve("b").resolve("x.xml"));
+
+        NavigableMap<Path, BasicFileAttributes> files = new LocalFsDirectoryScanner(new AtomicBoolean(true), true, 4).scan(root);
+
+        assertTrue(files.isEmpty());
+    }
+
+    private static void write(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, "<root/>".getBytes(StandardCharsets.UTF_8));
+    }
+}
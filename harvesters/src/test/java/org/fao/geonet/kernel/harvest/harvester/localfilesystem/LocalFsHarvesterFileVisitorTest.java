@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel.harvest.harvester.localfilesystem;
+
+import jeeves.server.context.ServiceContext;
+import org.fao.geonet.Logger;
+import org.fao.geonet.domain.ISODate;
+import org.fao.geonet.domain.Metadata;
+import org.fao.geonet.kernel.DataManager;
+import org.fao.geonet.kernel.HarvestValidationEnum;
+import org.fao.geonet.kernel.datamanager.IMetadataUtils;
+import org.fao.geonet.kernel.harvest.harvester.HarvestManifest;
+import org.fao.geonet.repository.GroupRepository;
+import org.fao.geonet.repository.MetadataCategoryRepository;
+import org.fao.geonet.repository.SimpleMetadata;
+import org.jdom.Element;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LocalFsHarvesterFileVisitorTest {
+    private static final String HARVESTER_UUID = "harvester-uuid";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ServiceContext context;
+    private DataManager dataManager;
+    private LocalFilesystemHarvester harvester;
+    private LocalFilesystemParams params;
+    private Path file;
+    private String key;
+    private Path manifestFile;
+    private HarvestManifest manifest;
+
+    @Before
+    public void setUp() throws Exception {
+        dataManager = mock(DataManager.class);
+        IMetadataUtils metadataUtils = mock(IMetadataUtils.class);
+        context = mock(ServiceContext.class);
+        when(context.getBean(DataManager.class)).thenReturn(dataManager);
+        when(context.getBean(IMetadataUtils.class)).thenReturn(metadataUtils);
+        when(context.getBean(MetadataCategoryRepository.class)).thenReturn(mock(MetadataCategoryRepository.class));
+        when(context.getBean(GroupRepository.class)).thenReturn(mock(GroupRepository.class));
+        when(metadataUtils.findAllSimple(HARVESTER_UUID)).thenReturn(Collections.singletonList(
+            new SimpleMetadata(1, "uuid-a", new ISODate(), 'n')));
+        Metadata metadata = new Metadata();
+        metadata.getHarvestInfo().setUuid(HARVESTER_UUID);
+        when(metadataUtils.findOne("1")).thenReturn(metadata);
+
+        harvester = mock(LocalFilesystemHarvester.class);
+        when(harvester.getLogger()).thenReturn(mock(Logger.class));
+
+        params = new LocalFilesystemParams(dataManager);
+        params.setUuid(HARVESTER_UUID);
+        params.setImportXslt("none");
+        params.setValidate(HarvestValidationEnum.NOVALIDATION);
+
+        file = folder.newFile("a.xml").toPath();
+        Files.write(file, "<record><id>uuid-a</id></record>".getBytes(StandardCharsets.UTF_8));
+        key = file.toAbsolutePath().normalize().toString();
+        manifestFile = folder.getRoot().toPath().resolve("test.manifest");
+    }
+
+    @Test
+    public void testSkipFileWithSameSizeAndDate() throws Exception {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        LocalFsHarvesterFileVisitor visitor = createVisitor(
+            new HarvestManifest.Entry(attrs.size(), attrs.lastModifiedTime().toMillis(), "other content",
+                Collections.singletonList("uuid-a")));
+
+        visitor.visitFile(file, attrs);
+
+        assertEquals(1, visitor.getResult().unchangedMetadata);
+        assertEquals(Collections.singleton(1), visitor.getListOfRecords());
+        verify(dataManager, never()).autodetectSchema(any(Element.class), any());
+    }
+
+    @Test
+    public void testSkipFileWithSameContent() throws Exception {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000));
+        LocalFsHarvesterFileVisitor visitor = createVisitor(
+            new HarvestManifest.Entry(Files.size(file), 2000, HarvestManifest.hash(file),
+                Collections.singletonList("uuid-a")));
+
+        visitor.visitFile(file, Files.readAttributes(file, BasicFileAttributes.class));
+
+        assertEquals(1, visitor.getResult().unchangedMetadata);
+        assertEquals(Collections.singleton(1), visitor.getListOfRecords());
+        verify(dataManager, never()).autodetectSchema(any(Element.class), any());
+
+        // The new date is kept for the next run
+        HarvestManifest.Entry entry = saveAndReload().get(key);
+        assertTrue(entry.isSameFile(Files.size(file), 1000));
+    }
+
+    @Test
+    public void testHarvestChangedFile() throws Exception {
+        when(dataManager.autodetectSchema(any(Element.class), isNull())).thenReturn("iso19139");
+        when(dataManager.extractUUID(anyString(), any(Element.class))).thenReturn("uuid-a");
+        when(dataManager.getMetadataId("uuid-a")).thenReturn("1");
+        LocalFsHarvesterFileVisitor visitor = createVisitor(
+            new HarvestManifest.Entry(1, 2000, "other content", Collections.singletonList("uuid-a")));
+
+        visitor.visitFile(file, Files.readAttributes(file, BasicFileAttributes.class));
+
+        assertEquals(0, visitor.getResult().unchangedMetadata);
+        assertEquals(1, visitor.getResult().updatedMetadata);
+        assertEquals(Collections.singleton(1), visitor.getListOfRecordsToIndex());
+
+        // The file is hashed while it is parsed
+        HarvestManifest.Entry entry = saveAndReload().get(key);
+        assertTrue(entry.isSameContent(HarvestManifest.hash(file)));
+        assertEquals(Collections.singletonList("uuid-a"), entry.getUuids());
+    }
+
+    private LocalFsHarvesterFileVisitor createVisitor(HarvestManifest.Entry lastRun) throws Exception {
+        HarvestManifest previous = HarvestManifest.load(manifestFile, "config");
+        previous.put(key, lastRun, Collections.singletonList("1"));
+        previous.save(Collections.emptySet());
+        manifest = HarvestManifest.load(manifestFile, "config");
+        return new LocalFsHarvesterFileVisitor(new AtomicBoolean(), context, params, harvester, manifest);
+    }
+
+    private HarvestManifest saveAndReload() throws Exception {
+        manifest.save(Collections.emptySet());
+        return HarvestManifest.load(manifestFile, "config");
+    }
+}
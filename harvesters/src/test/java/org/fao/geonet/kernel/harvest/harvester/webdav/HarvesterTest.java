@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel.harvest.harvester.webdav;
+
+import jeeves.server.context.ServiceContext;
+import org.fao.geonet.GeonetContext;
+import org.fao.geonet.Logger;
+import org.fao.geonet.constants.Geonet;
+import org.fao.geonet.domain.AbstractMetadata;
+import org.fao.geonet.domain.ISODate;
+import org.fao.geonet.domain.Metadata;
+import org.fao.geonet.domain.MetadataType;
+import org.fao.geonet.kernel.DataManager;
+import org.fao.geonet.kernel.HarvestValidationEnum;
+import org.fao.geonet.kernel.SchemaManager;
+import org.fao.geonet.kernel.datamanager.IMetadataIndexer;
+import org.fao.geonet.kernel.datamanager.IMetadataManager;
+import org.fao.geonet.kernel.datamanager.IMetadataUtils;
+import org.fao.geonet.kernel.harvest.harvester.AbstractParams;
+import org.fao.geonet.kernel.harvest.harvester.HarvestManifest;
+import org.fao.geonet.kernel.harvest.harvester.HarvestResult;
+import org.fao.geonet.repository.GroupRepository;
+import org.fao.geonet.repository.MetadataCategoryRepository;
+import org.fao.geonet.repository.MetadataRepository;
+import org.fao.geonet.repository.OperationAllowedRepository;
+import org.jdom.Element;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the files skipped by {@link Harvester} thanks to the {@link HarvestManifest} of the last run.
+ */
+public class HarvesterTest {
+    private static final String HARVESTER_UUID = "harvester-uuid";
+    private static final String PATH_A = "http://server/waf/a.xml";
+    private static final String PATH_B = "http://server/waf/b.xml";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ServiceContext context;
+    private DataManager dataManager;
+    private IMetadataManager metadataManager;
+    private WebDavParams params;
+    private Path manifestFile;
+    private final List<AbstractMetadata> harvestedRecords = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        dataManager = mock(DataManager.class);
+        metadataManager = mock(IMetadataManager.class);
+        IMetadataUtils metadataUtils = mock(IMetadataUtils.class);
+        doReturn(harvestedRecords).when(metadataUtils).findAll(any(Specification.class));
+
+        GeonetContext geonetContext = mock(GeonetContext.class);
+        when(geonetContext.getBean(DataManager.class)).thenReturn(dataManager);
+        when(geonetContext.getBean(IMetadataManager.class)).thenReturn(metadataManager);
+        when(geonetContext.getBean(SchemaManager.class)).thenReturn(mock(SchemaManager.class));
+        when(geonetContext.getBean(MetadataRepository.class)).thenReturn(mock(MetadataRepository.class));
+
+        context = mock(ServiceContext.class);
+        when(context.getHandlerContext(Geonet.CONTEXT_NAME)).thenReturn(geonetContext);
+        when(context.getBean(DataManager.class)).thenReturn(dataManager);
+        when(context.getBean(IMetadataManager.class)).thenReturn(metadataManager);
+        when(context.getBean(IMetadataUtils.class)).thenReturn(metadataUtils);
+        when(context.getBean(IMetadataIndexer.class)).thenReturn(mock(IMetadataIndexer.class));
+        when(context.getBean(MetadataCategoryRepository.class)).thenReturn(mock(MetadataCategoryRepository.class));
+        when(context.getBean(GroupRepository.class)).thenReturn(mock(GroupRepository.class));
+        when(context.getBean(OperationAllowedRepository.class)).thenReturn(mock(OperationAllowedRepository.class));
+
+        params = new WebDavParams(dataManager);
+        params.setUuid(HARVESTER_UUID);
+        params.setOwnerId("1");
+        params.setValidate(HarvestValidationEnum.NOVALIDATION);
+        params.setOverrideUuid(AbstractParams.OverrideUuid.SKIP);
+        params.xslfilter = "";
+
+        manifestFile = folder.getRoot().toPath().resolve("test.manifest");
+    }
+
+    @Test
+    public void testSkipFileWithSameSizeAndDate() throws Exception {
+        addHarvestedRecord(1, "uuid-a", PATH_A);
+        saveLastRun(PATH_A, new HarvestManifest.Entry(10, 1000, "etag-a", Collections.singletonList("uuid-a")), "1");
+        RemoteFile file = mockFile(PATH_A, 10, 1000, "etag-b");
+
+        HarvestResult result = align(file);
+
+        assertEquals(1, result.unchangedMetadata);
+        verify(file, never()).getMetadata(any());
+        verify(file, never()).getContentHash();
+        assertTrue(lastRun().get(PATH_A).isSameFile(10, 1000));
+    }
+
+    @Test
+    public void testSkipFileWithSameContent() throws Exception {
+        addHarvestedRecord(1, "uuid-a", PATH_A);
+        saveLastRun(PATH_A, new HarvestManifest.Entry(-1, -1, "hash-a", Collections.singletonList("uuid-a")), "1");
+        RemoteFile file = mockFile(PATH_A, -1, -1, "hash-a");
+
+        HarvestResult result = align(file);
+
+        assertEquals(1, result.unchangedMetadata);
+        verify(file, never()).getMetadata(any());
+        assertTrue(lastRun().get(PATH_A).isSameContent("hash-a"));
+    }
+
+    @Test
+    public void testNewFileIsAddedToTheManifest() throws Exception {
+        RemoteFile file = mockFile(PATH_B, -1, -1, "hash-b");
+        when(file.getMetadata(any())).thenReturn(new Element("record"));
+        when(dataManager.autodetectSchema(any(Element.class))).thenReturn("iso19139");
+        when(dataManager.extractUUID(anyString(), any(Element.class))).thenReturn("uuid-b");
+        when(dataManager.extractDateModified(anyString(), any(Element.class))).thenReturn("2024-01-01T00:00:00");
+        when(metadataManager.insertMetadata(any(), any(), any(), any(), anyBoolean(), any(), anyBoolean(), anyBoolean()))
+            .thenAnswer(invocation -> ((AbstractMetadata) invocation.getArgument(1)).setId(2));
+
+        HarvestResult result = align(file);
+
+        assertEquals(1, result.addedMetadata);
+        HarvestManifest.Entry entry = lastRun().get(PATH_B);
+        assertTrue(entry.isSameContent("hash-b"));
+        assertEquals(Collections.singletonList("uuid-b"), entry.getUuids());
+    }
+
+    private HarvestResult align(RemoteFile file) throws Exception {
+        Harvester harvester = new Harvester(new AtomicBoolean(), mock(Logger.class), context, params, new ArrayList<>(),
+            HarvestManifest.load(manifestFile, "config"));
+        // Without harvest session, the manifest is saved at the end of the alignment
+        harvester.align(Collections.singletonList(file));
+        return (HarvestResult) ReflectionTestUtils.getField(harvester, "result");
+    }
+
+    private void addHarvestedRecord(int id, String uuid, String path) {
+        Metadata metadata = new Metadata();
+        metadata.setId(id);
+        metadata.setUuid(uuid);
+        metadata.getDataInfo().setType(MetadataType.METADATA).setChangeDate(new ISODate());
+        metadata.getHarvestInfo().setHarvested(true).setUuid(HARVESTER_UUID).setUri(path);
+        harvestedRecords.add(metadata);
+    }
+
+    private void saveLastRun(String path, HarvestManifest.Entry entry, String id) throws Exception {
+        HarvestManifest manifest = HarvestManifest.load(manifestFile, "config");
+        manifest.put(path, entry, Collections.singletonList(id));
+        manifest.save(Collections.emptySet());
+    }
+
+    private HarvestManifest lastRun() throws Exception {
+        return HarvestManifest.load(manifestFile, "config");
+    }
+
+    private static RemoteFile mockFile(String path, long size, long lastModified, String hash) throws Exception {
+        RemoteFile file = mock(RemoteFile.class);
+        when(file.getPath()).thenReturn(path);
+        when(file.getSize()).thenReturn(size);
+        when(file.getLastModified()).thenReturn(lastModified);
+        when(file.getContentHash()).thenReturn(hash);
+        return file;
+    }
+}
@@ -32,6 +32,9 @@ import co.elastic.clients.elasticsearch._types.query_dsl.QueryStringQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.WrapperQuery;
 import co.elastic.clients.elasticsearch.cluster.HealthResponse;
 import co.elastic.clients.elasticsearch.core.*;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchResponseItem;
+import co.elastic.clients.elasticsearch.core.msearch.MultisearchBody;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
 import co.elastic.clients.elasticsearch.indices.AnalyzeRequest;
 import co.elastic.clients.elasticsearch.indices.AnalyzeResponse;
 import co.elastic.clients.elasticsearch.indices.IndicesStatsRequest;
@@ -56,6 +59,9 @@ import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.TrustStrategy;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.SystemDefaultRoutePlanner;
 import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
 import org.apache.http.nio.conn.SchemeIOSessionStrategy;
 import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
@@ -63,6 +69,7 @@ import org.apache.http.ssl.SSLContextBuilder;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
 import org.fao.geonet.utils.Log;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Value;
 
@@ -71,15 +78,18 @@ import javax.net.ssl.SSLContext;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.net.ProxySelector;
+import java.nio.charset.StandardCharsets;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 
 /**
  * Client to connect to Elasticsearch
  */
-public class EsRestClient implements InitializingBean {
+public class EsRestClient implements InitializingBean, DisposableBean {
     private static EsRestClient instance;
 
     private ElasticsearchClient client;
@@ -104,8 +114,15 @@ public class EsRestClient implements InitializingBean {
     @Value("${es.password}")
     private String password;
 
+    @Value("${es.proxy.maxConnections:50}")
+    private int proxyMaxConnections;
+
     private boolean activated = false;
 
+    private CloseableHttpClient httpClient;
+
+    private String authorizationHeader;
+
     public static EsRestClient get() {
         return instance;
     }
@@ -118,6 +135,22 @@ public class EsRestClient implements InitializingBean {
         return asyncClient;
     }
 
+    /**
+     * A pooled HTTP client keeping the connections to the Elasticsearch server alive, used
+     * to forward raw requests (eg. by the search proxy). Responses are not decompressed.
+     */
+    public CloseableHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * @return the Basic authorization header value for the Elasticsearch server or null if
+     * no credentials are configured.
+     */
+    public String getAuthorizationHeader() {
+        return authorizationHeader;
+    }
+
     public String getDashboardAppUrl() {
         return dashboardAppUrl;
     }
@@ -141,6 +174,18 @@ public class EsRestClient implements InitializingBean {
         //build server URL
         serverUrl = serverProtocol + "://" + serverHost + ":" + serverPort;
         if (StringUtils.isNotEmpty(serverUrl)) {
+            HttpClientBuilder httpClientBuilder = HttpClientBuilder.create()
+                .setRoutePlanner(new SystemDefaultRoutePlanner(ProxySelector.getDefault()))
+                .setMaxConnTotal(proxyMaxConnections)
+                .setMaxConnPerRoute(proxyMaxConnections)
+                .evictIdleConnections(30, TimeUnit.SECONDS)
+                .disableContentCompression()
+                .disableCookieManagement();
+            if (StringUtils.isNotEmpty(username) && StringUtils.isNotEmpty(password)) {
+                authorizationHeader = "Basic " + Base64.getEncoder().encodeToString(
+                    (username + ":" + password).getBytes(StandardCharsets.UTF_8));
+            }
+
             RestClientBuilder builder = RestClient.builder(new HttpHost(serverHost, Integer.parseInt(serverPort), serverProtocol));
 
             if (serverProtocol.startsWith("https")) {
@@ -154,6 +199,7 @@ public class EsRestClient implements InitializingBean {
                 HostnameVerifier hostnameVerifier = NoopHostnameVerifier.INSTANCE;
                 SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(sslContext, hostnameVerifier);
                 SchemeIOSessionStrategy httpsIOSessionStrategy = new SSLIOSessionStrategy(sslContext, hostnameVerifier);
+                httpClientBuilder.setSSLSocketFactory(sslSocketFactory);
 
                 if (StringUtils.isNotEmpty(username) && StringUtils.isNotEmpty(password)) {
                     final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
@@ -177,6 +223,7 @@ public class EsRestClient implements InitializingBean {
             }
 
             RestClient restClient = builder.build();
+            httpClient = httpClientBuilder.build();
 
             ElasticsearchTransport transport = new RestClientTransport(restClient, new JacksonJsonpMapper());
 
@@ -195,6 +242,13 @@ public class EsRestClient implements InitializingBean {
         }
     }
 
+    @Override
+    public void destroy() throws Exception {
+        if (httpClient != null) {
+            httpClient.close();
+        }
+    }
+
     public String getServerUrl() {
         return serverUrl;
     }
@@ -312,9 +366,34 @@ public class EsRestClient implements InitializingBean {
         return query(index, query, postFilterBuilder, includedFields, scriptedFields, from, size, sort);
     }
 
+    /**
+     * Query using JSON elastic query and return the page following the sort values
+     * of the last hit of the previous page (search_after). The sort must be
+     * a total order (eg. ending with a unique field) for pages to not overlap.
+     *
+     * @param searchAfter   The sort values of the last hit of the previous page, or null for the first page.
+     */
+    public SearchResponse query(String index, JsonNode jsonQuery, Set<String> includedFields,
+                                int size, List<SortOptions> sort, List<FieldValue> searchAfter) throws Exception {
+        final Query.Builder query = new Query.Builder();
+
+        WrapperQuery.Builder wrapperQueryBuilder = new WrapperQuery.Builder();
+        wrapperQueryBuilder.query(Base64.getEncoder().encodeToString(String.valueOf(jsonQuery).getBytes()));
+        query.wrapper(wrapperQueryBuilder.build());
+
+        return query(index, query, null, includedFields, new HashMap<>(), 0, size, sort, searchAfter);
+    }
+
     public SearchResponse query(String index, Query.Builder queryBuilder, Query.Builder postFilterBuilder,
                                 Set<String> includedFields, Map<String, String> scriptedFields,
                                 int from, int size, List<SortOptions> sort) throws Exception {
+        return query(index, queryBuilder, postFilterBuilder, includedFields, scriptedFields, from, size, sort, null);
+    }
+
+    public SearchResponse query(String index, Query.Builder queryBuilder, Query.Builder postFilterBuilder,
+                                Set<String> includedFields, Map<String, String> scriptedFields,
+                                int from, int size, List<SortOptions> sort,
+                                List<FieldValue> searchAfter) throws Exception {
         if (!activated) {
             return null;
         }
@@ -347,6 +426,10 @@ public class EsRestClient implements InitializingBean {
             searchRequestBuilder.sort(sort);
         }
 
+        if (searchAfter != null && !searchAfter.isEmpty()) {
+            searchRequestBuilder.searchAfter(searchAfter);
+        }
+
         SearchRequest searchRequest = searchRequestBuilder.build();
 
         try {
@@ -359,6 +442,63 @@ public class EsRestClient implements InitializingBean {
         }
     }
 
+    /**
+     * Run a set of query string queries sharing the same filter, fields and page in one
+     * multi search request. The responses are returned in the order of the queries.
+     */
+    public List<ResponseBody<ObjectNode>> multiQuery(String index, List<String> luceneQueries, String filterQuery,
+                                                     Set<String> includedFields, Map<String, String> scriptedFields,
+                                                     int from, int size) throws Exception {
+        if (!activated) {
+            return null;
+        }
+        if (luceneQueries.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Query filter = StringUtils.isNotEmpty(filterQuery)
+            ? new Query.Builder().queryString(new QueryStringQuery.Builder().query(filterQuery).build()).build()
+            : null;
+
+        MsearchRequest.Builder msearchRequestBuilder = new MsearchRequest.Builder().index(index);
+        for (String luceneQuery : luceneQueries) {
+            MultisearchBody.Builder body = new MultisearchBody.Builder()
+                .from(from)
+                .size(size)
+                .query(new Query.Builder().queryString(new QueryStringQuery.Builder().query(luceneQuery).build()).build())
+                .trackTotalHits(th -> th.enabled(true))
+                .source(sc -> sc.filter(f -> f.includes(new ArrayList<>(includedFields))));
+            if (filter != null) {
+                body.postFilter(filter);
+            }
+            if (MapUtils.isNotEmpty(scriptedFields)) {
+                for (Map.Entry<String, String> scriptedField : scriptedFields.entrySet()) {
+                    body.scriptFields(scriptedField.getKey(),
+                        ScriptField.of(b -> b.script(sb -> sb.source(scriptedField.getValue()))));
+                }
+            }
+            MultisearchBody searchBody = body.build();
+            msearchRequestBuilder.searches(item -> item.header(h -> h.index(index)).body(searchBody));
+        }
+
+        try {
+            MsearchResponse<ObjectNode> response = client.msearch(msearchRequestBuilder.build(), ObjectNode.class);
+            List<ResponseBody<ObjectNode>> results = new ArrayList<>(luceneQueries.size());
+            for (MultiSearchResponseItem<ObjectNode> item : response.responses()) {
+                if (item.isFailure()) {
+                    throw new IOException(String.format(
+                        "Error during multi search query. %s", item.failure().error().toString()));
+                }
+                results.add(item.result());
+            }
+            return results;
+        } catch (ElasticsearchException esException) {
+            Log.error("geonetwork.index", String.format(
+                "Error during querying index. %s", esException.error().toString()));
+            throw esException;
+        }
+    }
+
     /**
      * Executes a search query to compute aggregations and returns the aggregation results.
      * This method does not return any search hits as the query size is set to 0.
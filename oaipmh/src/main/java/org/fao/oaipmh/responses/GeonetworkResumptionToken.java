@@ -27,7 +27,6 @@ import java.math.BigInteger;
 import java.security.SecureRandom;
 
 import org.fao.geonet.domain.ISODate;
-import org.fao.oaipmh.util.SearchResult;
 import org.fao.oaipmh.OaiPmh;
 import org.fao.oaipmh.exceptions.BadResumptionTokenException;
 import org.fao.oaipmh.requests.TokenListRequest;
@@ -35,20 +34,25 @@ import org.jdom.Element;
 
 //=============================================================================
 
-
+/**
+ * Resumption token carrying the search cursor of a list request: the request arguments,
+ * the number of hits already read and the sort value of the last one. The next page is
+ * searched after that value, so the token does not hold the result ids and can be resumed
+ * on any node, or after a restart.
+ */
 public class GeonetworkResumptionToken extends ResumptionToken {
 
     public static final String SEPARATOR = "/-/";
     private Integer listSize;
     private Integer cursor;
-    private Integer pos;
+    private Integer pos = 0;
     private String set = "";
     private String from = "";
     private String until = "";
     private String prefix = "";
     private Boolean isReset = false;
     private String randomid;
-    private SearchResult res;
+    private String searchAfter = "";
     private SecureRandom random = new SecureRandom();
 
     /**
@@ -68,9 +72,9 @@ public class GeonetworkResumptionToken extends ResumptionToken {
         if (strToken == null) {
 
             if (req.getFrom() != null)
-                from = req.getFrom().toString();
+                from = toQueryDate(req.getFrom());
             if (req.getUntil() != null)
-                until = req.getUntil().toString();
+                until = toQueryDate(req.getUntil());
             if (req.getSet() != null)
                 set = req.getSet();
             prefix = req.getMetadataPrefix();
@@ -84,14 +88,6 @@ public class GeonetworkResumptionToken extends ResumptionToken {
         }
     }
 
-    /**
-     * Default constructor. Builds a GeonetworkResumptionToken.
-     */
-    public GeonetworkResumptionToken(TokenListRequest req, SearchResult res) throws BadResumptionTokenException {
-        this(req);
-        this.res = res;
-    }
-
     public static String buildKey(TokenListRequest req) throws BadResumptionTokenException {
         GeonetworkResumptionToken temp = new GeonetworkResumptionToken(req);
         return temp.getKey();
@@ -111,7 +107,7 @@ public class GeonetworkResumptionToken extends ResumptionToken {
     public String getToken() {
         if (isReset)
             return ""; // we are at the last chunk
-        return getKey() + SEPARATOR + pos;
+        return getKey() + SEPARATOR + pos + SEPARATOR + searchAfter;
     }
 
     public void setToken(String token) {
@@ -140,12 +136,41 @@ public class GeonetworkResumptionToken extends ResumptionToken {
             + SEPARATOR + randomid;
     }
 
-    public SearchResult getRes() {
-        return res;
+    public String getSet() {
+        return set;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return the from date, formatted for the search
+     */
+    public String getFrom() {
+        return from;
+    }
+
+    /**
+     * @return the until date, formatted for the search
+     */
+    public String getUntil() {
+        return until;
+    }
+
+    /**
+     * @return the sort value of the last hit returned, empty before the first page
+     */
+    public String getSearchAfter() {
+        return searchAfter;
+    }
+
+    public Integer getListSize() {
+        return listSize;
     }
 
-    public void setRes(SearchResult res) {
-        this.res = res;
+    public Integer getCursor() {
+        return cursor;
     }
 
     public void reset() {
@@ -154,14 +179,32 @@ public class GeonetworkResumptionToken extends ResumptionToken {
 
     //---------------------------------------------------------------------------
 
-    public void setupToken(int newpos) {
-        if (newpos < res.getIds().size()) // update token so that it refers to the next chunk
+    /**
+     * Move the token after the page just returned.
+     *
+     * @param newpos         number of hits read so far
+     * @param newSearchAfter sort value of the last hit read
+     * @param hasMore        false if the page was the last chunk
+     * @param total          number of records matching the request
+     */
+    public void setupToken(int newpos, String newSearchAfter, boolean hasMore, long total) {
+        cursor = pos;
+        listSize = (int) total;
+        if (hasMore) { // update token so that it refers to the next chunk
             setPos(newpos);
-        else {
+            searchAfter = newSearchAfter;
+        } else {
             reset();    // reset token to indicate last chunk
         }
     }
 
+    /**
+     * Format a request date as expected by the search.
+     */
+    public static String toQueryDate(ISODate date) {
+        return date.isDateOnly() ? date.getDateAsString() : date.toString();
+    }
+
     //---------------------------------------------------------------------------
     //---
     //--- Private methods
@@ -203,9 +246,9 @@ public class GeonetworkResumptionToken extends ResumptionToken {
 
     private void parseToken(String strToken) throws BadResumptionTokenException {
 
-        String[] temp = strToken.split(SEPARATOR);
+        String[] temp = strToken.split(SEPARATOR, -1);
 
-        if (temp.length != 6)
+        if (temp.length != 7)
             throw new BadResumptionTokenException("unknown resumptionToken format: " + strToken);
 
         set = temp[0];
@@ -214,7 +257,12 @@ public class GeonetworkResumptionToken extends ResumptionToken {
         until = temp[3];
         randomid = temp[4];
 
-        pos = Integer.parseInt(temp[5]);
+        try {
+            pos = Integer.parseInt(temp[5]);
+        } catch (NumberFormatException e) {
+            throw new BadResumptionTokenException("unknown resumptionToken format: " + strToken);
+        }
+        searchAfter = temp[6];
     }
 
     public String generateRandomString() {
@@ -41,6 +41,16 @@ public class SearchResult {
 
     private String token;
 
+    /**
+     * Sort value of the last hit, to resume the search after it.
+     */
+    private String searchAfter;
+
+    /**
+     * Number of records matching the search, of which ids is a page.
+     */
+    private long total;
+
 
     //---------------------------------------------------------------------------
     //---
@@ -126,6 +136,34 @@ public class SearchResult {
     }
 
 
+    /**
+     * @return the sort value of the last hit, or null if the page is empty
+     */
+    public String getSearchAfter() {
+        return searchAfter;
+    }
+
+    /**
+     * @param searchAfter the sort value of the last hit
+     */
+    public void setSearchAfter(String searchAfter) {
+        this.searchAfter = searchAfter;
+    }
+
+    /**
+     * @return the number of records matching the search
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @param total the number of records matching the search
+     */
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
     //---------------------------------------------------------------------------
 
 /*
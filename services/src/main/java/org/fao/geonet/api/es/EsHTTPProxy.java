@@ -26,7 +26,6 @@ package org.fao.geonet.api.es;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -34,9 +33,12 @@ import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.Sets;
+import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.PathNotFoundException;
+import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
 import io.swagger.v3.oas.annotations.Hidden;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -49,7 +51,17 @@ import jeeves.server.UserSession;
 import jeeves.server.context.ServiceContext;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
-import org.fao.geonet.Constants;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.entity.EntityTemplate;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.util.EntityUtils;
 import org.fao.geonet.NodeInfo;
 import org.fao.geonet.api.ApiUtils;
 import org.fao.geonet.api.records.MetadataUtils;
@@ -62,11 +74,12 @@ import org.fao.geonet.index.es.EsRestClient;
 import org.fao.geonet.kernel.AccessManager;
 import org.fao.geonet.kernel.SchemaManager;
 import org.fao.geonet.kernel.SelectionManager;
-import org.fao.geonet.kernel.datamanager.IMetadataUtils;
 import org.fao.geonet.kernel.schema.MetadataOperationFilterType;
 import org.fao.geonet.kernel.schema.MetadataSchema;
 import org.fao.geonet.kernel.schema.MetadataSchemaOperationFilter;
 import org.fao.geonet.kernel.search.EsFilterBuilder;
+import org.fao.geonet.kernel.setting.SettingManager;
+import org.fao.geonet.kernel.setting.Settings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -83,15 +96,12 @@ import javax.servlet.http.HttpSession;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.sql.SQLException;
 import java.util.*;
-import java.util.zip.DeflaterInputStream;
-import java.util.zip.DeflaterOutputStream;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
 
 
 /**
@@ -120,6 +130,14 @@ public class EsHTTPProxy {
         "       \t}\n" +
         "}";
 
+    /**
+     * JSON path configuration working directly on the Jackson tree of the search hits.
+     */
+    private static final Configuration JSON_PATH_CONFIGURATION = Configuration.builder()
+        .jsonProvider(new JacksonJsonNodeJsonProvider())
+        .mappingProvider(new JacksonMappingProvider())
+        .build();
+
     private static final String SEARCH_ENDPOINT = "_search";
     private static final String MULTISEARCH_ENDPOINT = "_msearch";
 
@@ -129,19 +147,21 @@ public class EsHTTPProxy {
     @Value("${es.index.records:gn-records}")
     private String defaultIndex;
 
-    @Value("${es.username}")
-    private String username;
-
-    @Value("${es.password}")
-    private String password;
-
     @Value("${es.proxy.headers:content-type,content-encoding,transfer-encoding}")
     private String[] proxyHeadersAllowedList;
 
     /**
      * Ignore list of headers handled by proxy implementation directly.
      */
-    private final String[] proxyHeadersIgnoreList =  {"Content-Length"};
+    private final String[] proxyHeadersIgnoreList =  {"Content-Length", "Vary"};
+    private final String[] proxyHeadersIgnoreListWhenRewritten =  {"Content-Length", "Content-Encoding", "Vary"};
+
+    /**
+     * Client request headers not forwarded to the final host.
+     */
+    private final String[] hopByHopHeaders = {
+        HttpHeaders.CONTENT_LENGTH, HttpHeaders.TRANSFER_ENCODING, HttpHeaders.CONNECTION, "Keep-Alive"
+    };
 
     @Autowired
     private EsRestClient client;
@@ -149,6 +169,11 @@ public class EsHTTPProxy {
     @Autowired
     private SchemaManager schemaManager;
 
+    /**
+     * The JSON path of the metadata schema operation filters, compiled once.
+     */
+    private final Map<String, JsonPath> compiledJsonPaths = new ConcurrentHashMap<>();
+
     public EsHTTPProxy() {
     }
 
@@ -177,40 +202,124 @@ public class EsHTTPProxy {
         doc.put(Edit.Info.Elem.SELECTED, selections.contains(uuid));
     }
 
-    private static void addRelatedTypes(ObjectNode doc,
+    /**
+     * Add the related records to a page of search hits. The links of the records are read from
+     * the hits and their related records searched for the whole page at once.
+     */
+    private static void addRelatedTypes(List<ObjectNode> docs,
                                         RelatedItemType[] relatedTypes,
                                         ServiceContext context) {
-        Map<RelatedItemType, List<AssociatedRecord>> related = null;
+        Map<Integer, Map<RelatedItemType, List<AssociatedRecord>>> related = Collections.emptyMap();
         try {
-            related = MetadataUtils.getAssociated(
-                context,
-                context.getBean(IMetadataUtils.class)
-                    .findOne(doc.get("_source").get("id").asText()),
-                relatedTypes, 0, 1000);
+            related = MetadataUtils.getAssociatedOfHits(context, docs, relatedTypes, 0, 1000);
         } catch (Exception e) {
-            LOGGER.warn("Failed to load related types for {}. Error is: {}",
-                getSourceString(doc, Geonet.IndexFieldNames.UUID),
+            LOGGER.warn("Failed to load related types for {} records. Error is: {}",
+                docs.size(),
                 e.getMessage()
             );
         }
-        doc.putPOJO("related", related);
+        for (ObjectNode doc : docs) {
+            Integer id = doc.has("_source") ? getSourceInteger(doc, Geonet.IndexFieldNames.ID) : null;
+            doc.putPOJO("related", id != null ? related.get(id) : null);
+        }
+    }
+
+    /**
+     * The groups and profile of the current user, resolved once and used to compute the
+     * permissions on all the hits of a search response without querying the database.
+     */
+    public static final class UserPermissions {
+        private final boolean authenticated;
+        private final int userId;
+        private final Profile profile;
+        private final Set<Integer> groups;
+        private final Set<Integer> editingGroups;
+        private final Set<Integer> reviewerGroups;
+        private final boolean reviewerOfGroupOwnerOnly;
+
+        UserPermissions(boolean authenticated, int userId, Profile profile,
+                        Set<Integer> groups, Set<Integer> editingGroups, Set<Integer> reviewerGroups,
+                        boolean reviewerOfGroupOwnerOnly) {
+            this.authenticated = authenticated;
+            this.userId = userId;
+            this.profile = profile;
+            this.groups = groups;
+            this.editingGroups = editingGroups;
+            this.reviewerGroups = reviewerGroups;
+            this.reviewerOfGroupOwnerOnly = reviewerOfGroupOwnerOnly;
+        }
+
+        private UserPermissions(ServiceContext context) throws Exception {
+            final AccessManager accessManager = context.getBean(AccessManager.class);
+            final UserSession session = context.getUserSession();
+            authenticated = session != null && session.isAuthenticated();
+            userId = authenticated ? session.getUserIdAsInt() : -1;
+            profile = authenticated ? session.getProfile() : null;
+            groups = accessManager.getUserGroups(session, context.getIpAddress(), false);
+            editingGroups = accessManager.getUserGroups(session, context.getIpAddress(), true);
+            reviewerGroups = accessManager.getReviewerGroups(session);
+            reviewerOfGroupOwnerOnly = context.getBean(SettingManager.class)
+                .getValueAsBool(Settings.SYSTEM_METADATAPRIVS_PUBLICATIONBYGROUPOWNERONLY, true);
+        }
+
+        public static UserPermissions of(ServiceContext context) throws Exception {
+            return new UserPermissions(context);
+        }
+
+        /**
+         * See {@link AccessManager#isOwner(ServiceContext, MetadataSourceInfo)}.
+         */
+        private boolean isOwner(Integer owner, Integer groupOwner) {
+            if (!authenticated) {
+                return false;
+            }
+            if (profile == Profile.Administrator) {
+                return true;
+            }
+            if (owner != null && userId == owner) {
+                return true;
+            }
+            if (profile != Profile.Reviewer && profile != Profile.UserAdmin) {
+                return false;
+            }
+            return groupOwner != null && reviewerGroups.contains(groupOwner);
+        }
+
+        /**
+         * See {@link AccessManager#hasReviewPermission(ServiceContext, AbstractMetadata)}, using
+         * the editing privileges of the index document.
+         */
+        private boolean canReview(Integer groupOwner, Collection<Integer> editingGroupsOfRecord) {
+            if (!authenticated) {
+                return false;
+            }
+            if (profile == Profile.Administrator) {
+                return true;
+            }
+            boolean userIsReviewerOfOwnerGroup = groupOwner != null && reviewerGroups.contains(groupOwner);
+            if (reviewerOfGroupOwnerOnly || userIsReviewerOfOwnerGroup) {
+                return userIsReviewerOfOwnerGroup;
+            }
+            return editingGroupsOfRecord.stream().anyMatch(reviewerGroups::contains);
+        }
     }
 
     public static void addUserInfo(ObjectNode doc, ServiceContext context) throws Exception {
+        addUserInfo(doc, UserPermissions.of(context));
+    }
+
+    /**
+     * Add the permissions of the user to a search hit. The user permissions are resolved once
+     * for all the hits of a response.
+     */
+    public static void addUserInfo(ObjectNode doc, UserPermissions permissions) {
         final Integer owner = getSourceInteger(doc, Geonet.IndexFieldNames.OWNER);
         final Integer groupOwner = getSourceInteger(doc, Geonet.IndexFieldNames.GROUP_OWNER);
         final String id = getSourceString(doc, Geonet.IndexFieldNames.ID);
 
-        ObjectMapper objectMapper = new ObjectMapper();
-
-        final MetadataSourceInfo sourceInfo = new MetadataSourceInfo();
-        sourceInfo.setOwner(owner);
-        if (groupOwner != null) {
-            sourceInfo.setGroupOwner(groupOwner);
-        }
-        final AccessManager accessManager = context.getBean(AccessManager.class);
-        final boolean isOwner = accessManager.isOwner(context, sourceInfo);
+        final boolean isOwner = permissions.isOwner(owner, groupOwner);
         final HashSet<ReservedOperation> operations;
+        final List<Integer> editingGroupsOfRecord = getOperationGroups(doc, ReservedOperation.editing);
         boolean canEdit = false;
         if (isOwner) {
             operations = Sets.newHashSet(Arrays.asList(ReservedOperation.values()));
@@ -218,35 +327,24 @@ public class EsHTTPProxy {
                 doc.put("ownerId", owner.intValue());
             }
         } else {
-            final Collection<Integer> groups =
-                accessManager.getUserGroups(context.getUserSession(), context.getIpAddress(), false);
-            final Collection<Integer> editingGroups =
-                accessManager.getUserGroups(context.getUserSession(), context.getIpAddress(), true);
             operations = Sets.newHashSet();
             for (ReservedOperation operation : ReservedOperation.values()) {
-                final JsonNode operationNodes = doc.get("_source").get(Geonet.IndexFieldNames.OP_PREFIX + operation.getId());
-                if (operationNodes != null) {
-                    ArrayNode opFields = operationNodes.isArray() ? (ArrayNode) operationNodes : objectMapper.createArrayNode().add(operationNodes);
-                    if (opFields != null) {
-                        for (JsonNode field : opFields) {
-                            final int groupId = field.asInt();
-                            if (operation == ReservedOperation.editing
-                                && !canEdit
-                                && editingGroups.contains(groupId)) {
-                                canEdit = true;
-                            }
+                for (int groupId : getOperationGroups(doc, operation)) {
+                    if (operation == ReservedOperation.editing
+                        && !canEdit
+                        && permissions.editingGroups.contains(groupId)) {
+                        canEdit = true;
+                    }
 
-                            if (groups.contains(groupId)) {
-                                operations.add(operation);
-                            }
-                        }
+                    if (permissions.groups.contains(groupId)) {
+                        operations.add(operation);
                     }
                 }
             }
         }
         doc.put(Edit.Info.Elem.EDIT, isOwner || canEdit);
         doc.put(Edit.Info.Elem.REVIEW,
-            id != null && accessManager.hasReviewPermission(context, id));
+            id != null && permissions.canReview(groupOwner, editingGroupsOfRecord));
         doc.put(Edit.Info.Elem.OWNER, isOwner);
         doc.put(Edit.Info.Elem.IS_PUBLISHED_TO_ALL, hasOperation(doc, ReservedGroup.all, ReservedOperation.view));
         addReservedOperation(doc, operations, ReservedOperation.view);
@@ -260,32 +358,39 @@ public class EsHTTPProxy {
         }
     }
 
+    private static List<Integer> getOperationGroups(ObjectNode doc, ReservedOperation operation) {
+        final JsonNode operationNodes = doc.get("_source").get(Geonet.IndexFieldNames.OP_PREFIX + operation.getId());
+        if (operationNodes == null) {
+            return Collections.emptyList();
+        }
+        List<Integer> groupIds = new ArrayList<>();
+        if (operationNodes.isArray()) {
+            for (JsonNode field : operationNodes) {
+                groupIds.add(field.asInt());
+            }
+        } else {
+            groupIds.add(operationNodes.asInt());
+        }
+        return groupIds;
+    }
+
     private static void addReservedOperation(ObjectNode doc, HashSet<ReservedOperation> operations,
                                              ReservedOperation kind) {
         doc.put(kind.name(), operations.contains(kind));
     }
 
     private static boolean hasOperation(ObjectNode doc, ReservedGroup group, ReservedOperation operation) {
-        ObjectMapper objectMapper = new ObjectMapper();
-        int groupId = group.getId();
-        final JsonNode operationNodes = doc.get("_source").get(Geonet.IndexFieldNames.OP_PREFIX + operation.getId());
-        if (operationNodes != null) {
-            ArrayNode opFields = operationNodes.isArray() ? (ArrayNode) operationNodes : objectMapper.createArrayNode().add(operationNodes);
-            if (opFields != null) {
-                for (JsonNode field : opFields) {
-                    if (groupId == field.asInt()) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+        return getOperationGroups(doc, operation).contains(group.getId());
     }
 
 
     @io.swagger.v3.oas.annotations.Operation(
         summary = "Execute a search query and get back search hits that match the query.",
-        description = "The search API execute a search query with a JSON request body. For more information see https://www.elastic.co/guide/en/elasticsearch/reference/current/search-search.html for search parameters, and https://www.elastic.co/guide/en/elasticsearch/reference/current/query-dsl.html JSON Query DSL.")
+        description = "The search API execute a search query with a JSON request body. For more information see https://www.elastic.co/guide/en/elasticsearch/reference/current/search-search.html for search parameters, and https://www.elastic.co/guide/en/elasticsearch/reference/current/query-dsl.html JSON Query DSL.",
+        requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "JSON request based on Elasticsearch API.",
+            content = @Content(examples = {
+                @ExampleObject(value = "{\"query\":{\"match\":{\"_id\":\"catalogue_uuid\"}}}")
+            })))
     @RequestMapping(value = "/search/records/_search",
         method = RequestMethod.POST,
         produces = MediaType.APPLICATION_JSON_VALUE,
@@ -307,21 +412,19 @@ public class EsHTTPProxy {
         @Parameter(hidden = true)
         HttpServletRequest request,
         @Parameter(hidden = true)
-        HttpServletResponse response,
-        @RequestBody
-        @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "JSON request based on Elasticsearch API.",
-            content = @Content(examples = {
-                @ExampleObject(value = "{\"query\":{\"match\":{\"_id\":\"catalogue_uuid\"}}}")
-            }))
-        String body) throws Exception {
+        HttpServletResponse response) throws Exception {
         ServiceContext context = ApiUtils.createServiceContext(request);
-        call(context, httpSession, request, response, SEARCH_ENDPOINT, body, bucket, relatedTypes);
+        call(context, httpSession, request, response, SEARCH_ENDPOINT, request.getInputStream(), bucket, relatedTypes);
     }
 
 
     @io.swagger.v3.oas.annotations.Operation(
         summary = "Executes several searches with a Elasticsearch API request.",
-        description = "The multi search API executes several searches from a single API request. See https://www.elastic.co/guide/en/elasticsearch/reference/current/search-multi-search.html for search parameters, and https://www.elastic.co/guide/en/elasticsearch/reference/current/query-dsl.html Query DSL.")
+        description = "The multi search API executes several searches from a single API request. See https://www.elastic.co/guide/en/elasticsearch/reference/current/search-multi-search.html for search parameters, and https://www.elastic.co/guide/en/elasticsearch/reference/current/query-dsl.html Query DSL.",
+        requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "JSON request based on Elasticsearch API.",
+            content = @Content(examples = {
+                @ExampleObject(value = "{\"query\":{\"match\":{\"_id\":\"catalogue_uuid\"}}}")
+            })))
     @RequestMapping(value = "/search/records/_msearch",
         method = RequestMethod.POST,
         produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
@@ -347,15 +450,9 @@ public class EsHTTPProxy {
         @Parameter(hidden = true)
         HttpServletRequest request,
         @Parameter(hidden = true)
-        HttpServletResponse response,
-        @RequestBody
-        @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "JSON request based on Elasticsearch API.",
-            content = @Content(examples = {
-                @ExampleObject(value = "{\"query\":{\"match\":{\"_id\":\"catalogue_uuid\"}}}")
-            }))
-        String body) throws Exception {
+        HttpServletResponse response) throws Exception {
         ServiceContext context = ApiUtils.createServiceContext(request);
-        call(context, httpSession, request, response, MULTISEARCH_ENDPOINT, body, bucket, relatedTypes);
+        call(context, httpSession, request, response, MULTISEARCH_ENDPOINT, request.getInputStream(), bucket, relatedTypes);
     }
 
 
@@ -364,7 +461,11 @@ public class EsHTTPProxy {
         summary = "Elasticsearch proxy endpoint",
         description = "Endpoint to allow access to more ES API" +
             " only allowed to Administrator. Currently not" +
-            " used by the user interface. Needs improvements in the proxy call.")
+            " used by the user interface. Needs improvements in the proxy call.",
+        requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "JSON request based on Elasticsearch API.",
+            content = @Content(examples = {
+                @ExampleObject(value = "{\"query\":{\"match\":{\"_id\":\"catalogue_uuid\"}}}")
+            })))
     @RequestMapping(value = "/search/records/{endPoint}",
         method = {
             RequestMethod.POST, RequestMethod.GET
@@ -388,21 +489,19 @@ public class EsHTTPProxy {
         @Parameter(hidden = true)
         HttpServletRequest request,
         @Parameter(hidden = true)
-        HttpServletResponse response,
-        @RequestBody
-        @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "JSON request based on Elasticsearch API.",
-            content = @Content(examples = {
-                @ExampleObject(value = "{\"query\":{\"match\":{\"_id\":\"catalogue_uuid\"}}}")
-            }))
-        String body) throws Exception {
+        HttpServletResponse response) throws Exception {
 
         ServiceContext context = ApiUtils.createServiceContext(request);
-        call(context, httpSession, request, response, endPoint, body, bucket, null);
+        call(context, httpSession, request, response, endPoint, request.getInputStream(), bucket, null);
     }
 
+    /**
+     * The request body is read from the servlet request and not bound to a String by Spring,
+     * so that it is streamed to the final host.
+     */
     private void call(ServiceContext context, HttpSession httpSession, HttpServletRequest request,
                       HttpServletResponse response,
-                      String endPoint, String body,
+                      String endPoint, InputStream body,
                       String selectionBucket,
                       RelatedItemType[] relatedTypes) throws Exception {
         final String url = client.getServerUrl() + "/" + defaultIndex + "/" + endPoint + "?";
@@ -414,7 +513,7 @@ public class EsHTTPProxy {
 
             // multisearch support
             final MappingIterator<Object> mappingIterator = objectMapper.readerFor(JsonNode.class).readValues(body);
-            StringBuilder requestBody = new StringBuilder();
+            final List<JsonNode> requestNodes = new ArrayList<>();
             while (mappingIterator.hasNextValue()) {
                 JsonNode node = (JsonNode) mappingIterator.nextValue();
                 final JsonNode indexNode = node.get("index");
@@ -428,37 +527,52 @@ public class EsHTTPProxy {
                         session.setProperty(Geonet.Session.SEARCH_REQUEST + selectionBucket, node);
                     }
                     final JsonNode sourceNode = node.get("_source");
+                    final boolean addRelated = relatedTypes != null && relatedTypes.length > 0;
                     if (sourceNode != null) {
                         if (sourceNode.isArray()) {
-                            addRequiredField((ArrayNode) sourceNode);
+                            addRequiredField((ArrayNode) sourceNode, addRelated);
                         } else {
                             final JsonNode sourceIncludes = sourceNode.get("includes");
                             if (sourceIncludes != null && sourceIncludes.isArray()) {
-                                addRequiredField((ArrayNode) sourceIncludes);
+                                addRequiredField((ArrayNode) sourceIncludes, addRelated);
                             }
                         }
                     }
                 }
-                requestBody.append(node).append(System.lineSeparator());
+                requestNodes.add(node);
             }
+            // Write the updated request directly to the connection to Elasticsearch
+            final EntityTemplate requestBody = new EntityTemplate(out -> {
+                for (JsonNode node : requestNodes) {
+                    out.write(objectMapper.writeValueAsBytes(node));
+                    out.write('\n');
+                }
+            });
             handleRequest(context, httpSession, request, response, url, endPoint,
-                requestBody.toString(), true, selectionBucket, relatedTypes);
+                requestBody, true, selectionBucket, relatedTypes);
         } else {
+            // Other requests are not rewritten, the body is streamed to the final host
             handleRequest(context, httpSession, request, response, url, endPoint,
-                body, true, selectionBucket, relatedTypes);
+                new InputStreamEntity(body, request.getContentLengthLong()), true, selectionBucket, relatedTypes);
         }
     }
 
     /**
      * {@link #addUserInfo(ObjectNode, ServiceContext)}
+     * and {@link #addRelatedTypes(List, RelatedItemType[], ServiceContext)}
      * rely on fields from the index. Add them to the source.
      */
-    private void addRequiredField(ArrayNode source) {
+    private void addRequiredField(ArrayNode source, boolean addRelated) {
         source.add("op*");
         source.add(Geonet.IndexFieldNames.SCHEMA);
         source.add(Geonet.IndexFieldNames.GROUP_OWNER);
         source.add(Geonet.IndexFieldNames.OWNER);
         source.add(Geonet.IndexFieldNames.ID);
+        if (addRelated) {
+            source.add(Geonet.IndexFieldNames.UUID);
+            source.add("recordLink");
+            source.add("parentUuid");
+        }
     }
 
     private void addFilterToQuery(ServiceContext context,
@@ -598,57 +712,50 @@ public class EsHTTPProxy {
                                HttpServletResponse response,
                                String sUrl,
                                String endPoint,
-                               String requestBody,
+                               HttpEntity requestBody,
                                boolean addPermissions,
                                String selectionBucket,
                                RelatedItemType[] relatedTypes) throws Exception {
         try {
-            URL url = new URL(sUrl);
-
-            // open communication between proxy and final host
-            // all actions before the connection can be taken now
-            HttpURLConnection connectionWithFinalHost = (HttpURLConnection) url.openConnection();
-            try {
-                connectionWithFinalHost.setRequestMethod(request.getMethod());
-
-                // copy headers from client's request to request that will be send to the final host
-                copyHeadersToConnection(request, connectionWithFinalHost);
-                if (StringUtils.isNotEmpty(username) && StringUtils.isNotEmpty(password)) {
-                    String auth = username + ":" + password;
-                    byte[] encodedAuth = Base64.getEncoder().encode(
-                        auth.getBytes(StandardCharsets.UTF_8));
-                    String authHeaderValue = "Basic " + new String(encodedAuth);
-                    connectionWithFinalHost.setRequestProperty("Authorization", authHeaderValue);
-                }
-
-                connectionWithFinalHost.setDoOutput(true);
-                connectionWithFinalHost.getOutputStream().write(requestBody.getBytes(Constants.ENCODING));
+            HttpUriRequest requestToFinalHost = RequestBuilder.create(request.getMethod())
+                .setUri(sUrl)
+                .setEntity(requestBody)
+                .build();
+
+            // copy headers from client's request to request that will be send to the final host.
+            // When the response is rewritten, it is requested uncompressed to not decompress it here.
+            copyHeadersToConnection(request, requestToFinalHost, addPermissions);
+            if (client.getAuthorizationHeader() != null) {
+                requestToFinalHost.setHeader(HttpHeaders.AUTHORIZATION, client.getAuthorizationHeader());
+            }
 
-                // connect to remote host
-                // interactions with the resource are enabled now
-                connectionWithFinalHost.connect();
+            // send the request using one of the pooled connections to the final host
+            try (CloseableHttpResponse responseFromFinalHost = client.getHttpClient().execute(requestToFinalHost)) {
+                final HttpEntity entity = responseFromFinalHost.getEntity();
 
                 // send remote host's response to client
-                String contentEncoding = getContentEncoding(connectionWithFinalHost.getHeaderFields());
+                String contentEncoding = getContentEncoding(responseFromFinalHost);
 
-                int code = connectionWithFinalHost.getResponseCode();
+                int code = responseFromFinalHost.getStatusLine().getStatusCode();
                 if (code != 200) {
-                    InputStream errorDetails = "gzip".equalsIgnoreCase(contentEncoding) ?
-                        new GZIPInputStream(connectionWithFinalHost.getErrorStream()) :
-                        connectionWithFinalHost.getErrorStream();
+                    InputStream errorDetails = entity == null ? null :
+                        "gzip".equalsIgnoreCase(contentEncoding) ?
+                        new GZIPInputStream(entity.getContent()) :
+                        entity.getContent();
 
                     response.sendError(code,
                         String.format(
                             "Error is: %s.\nRequest:\n%s.\nError:\n%s.",
-                            connectionWithFinalHost.getResponseMessage(),
-                            requestBody,
-                            IOUtils.toString(errorDetails, StandardCharsets.UTF_8)
+                            responseFromFinalHost.getStatusLine().getReasonPhrase(),
+                            requestBody.isRepeatable() ? EntityUtils.toString(requestBody, StandardCharsets.UTF_8) : "",
+                            errorDetails == null ? "" : IOUtils.toString(errorDetails, StandardCharsets.UTF_8)
                         ));
                     return;
                 }
 
                 // get content type
-                String contentType = connectionWithFinalHost.getContentType();
+                String contentType = entity == null || entity.getContentType() == null ?
+                    null : entity.getContentType().getValue();
                 if (contentType == null) {
                     response.sendError(HttpServletResponse.SC_FORBIDDEN,
                         "Host url has been validated by proxy but content type given by remote host is null");
@@ -657,8 +764,8 @@ public class EsHTTPProxy {
 
                 // content type has to be valid
                 if (!isContentTypeValid(contentType)) {
-                    if (connectionWithFinalHost.getResponseMessage() != null) {
-                        if (connectionWithFinalHost.getResponseMessage().equalsIgnoreCase("Not Found")) {
+                    if (responseFromFinalHost.getStatusLine().getReasonPhrase() != null) {
+                        if (responseFromFinalHost.getStatusLine().getReasonPhrase().equalsIgnoreCase("Not Found")) {
                             // content type was not valid because it was a not found page (text/html)
                             response.sendError(HttpServletResponse.SC_NOT_FOUND, "Remote host not found");
                             return;
@@ -671,34 +778,49 @@ public class EsHTTPProxy {
                     return;
                 }
 
-                // copy headers from the remote server's response to the response to send to the client
-                copyHeadersFromConnectionToResponse(response, connectionWithFinalHost, proxyHeadersIgnoreList);
-
                 if (!contentType.split(";")[0].equals("application/json")) {
                     addPermissions = false;
                 }
 
-                final InputStream streamFromServer;
-                final OutputStream streamToClient;
+                // the encoding of the response depends on the client's Accept-Encoding,
+                // either forwarded to the final host or used to compress the rewritten response.
+                response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
 
-                if (contentEncoding == null || !addPermissions) {
-                    // A simple stream can do the job for data that is not in content encoded
-                    // but also for data content encoded with a known charset
-                    streamFromServer = connectionWithFinalHost.getInputStream();
-                    streamToClient = response.getOutputStream();
+                if (!addPermissions) {
+                    // Nothing to add to the response, the bytes are sent as they are,
+                    // compressed or not.
+                    copyHeadersFromConnectionToResponse(response, responseFromFinalHost, proxyHeadersIgnoreList);
+                    try (InputStream streamFromServer = entity.getContent()) {
+                        IOUtils.copy(streamFromServer, response.getOutputStream());
+                    }
+                    response.getOutputStream().flush();
+                    return;
+                }
+
+                // copy headers from the remote server's response to the response to send to the client,
+                // the content encoding is the one of the rewritten response.
+                copyHeadersFromConnectionToResponse(response, responseFromFinalHost, proxyHeadersIgnoreListWhenRewritten);
+
+                final InputStream streamFromServer;
+                if (contentEncoding == null) {
+                    streamFromServer = entity.getContent();
                 } else if ("gzip".equalsIgnoreCase(contentEncoding)) {
-                    // the charset is unknown and the data are compressed in gzip
-                    // we add the gzip wrapper to be able to read/write the stream content
-                    streamFromServer = new GZIPInputStream(connectionWithFinalHost.getInputStream());
-                    streamToClient = new GZIPOutputStream(response.getOutputStream());
+                    // the server may not have honoured the request for an uncompressed response
+                    streamFromServer = new GZIPInputStream(entity.getContent());
                 } else if ("deflate".equalsIgnoreCase(contentEncoding)) {
-                    // same but with deflate
-                    streamFromServer = new DeflaterInputStream(connectionWithFinalHost.getInputStream());
-                    streamToClient = new DeflaterOutputStream(response.getOutputStream());
+                    streamFromServer = new InflaterInputStream(entity.getContent());
                 } else {
                     throw new UnsupportedOperationException("Please handle the stream when it is encoded in " + contentEncoding);
                 }
 
+                final OutputStream streamToClient;
+                if (acceptsGzip(request)) {
+                    response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+                    streamToClient = new GZIPOutputStream(response.getOutputStream());
+                } else {
+                    streamToClient = response.getOutputStream();
+                }
+
                 try {
                     processResponse(context, httpSession, streamFromServer, streamToClient, endPoint, selectionBucket, addPermissions, relatedTypes);
                     streamToClient.flush();
@@ -707,8 +829,6 @@ public class EsHTTPProxy {
                 }
             } catch (Exception ex) {
                 LOGGER.error("Error processing request", ex);
-            } finally {
-                connectionWithFinalHost.disconnect();
             }
         } catch (IOException e) {
             // connection problem with the host
@@ -734,60 +854,69 @@ public class EsHTTPProxy {
 
         final Set<String> selections = (addPermissions ?
             SelectionManager.getManager(ApiUtils.getUserSession(httpSession)).getSelection(bucket) : new HashSet<>());
+        final UserPermissions permissions = UserPermissions.of(context);
+        final boolean addRelated = (relatedTypes != null) && (relatedTypes.length > 0);
 
         if (endPoint.equals(SEARCH_ENDPOINT)) {
-            JsonStreamUtils.addInfoToDocs(parser, generator, doc -> {
-                if (addPermissions) {
-                    addUserInfo(doc, context);
-                    addSelectionInfo(doc, selections);
+            JsonStreamUtils.addInfoToPages(parser, generator, docs -> {
+                for (ObjectNode doc : docs) {
+                    if (addPermissions) {
+                        addUserInfo(doc, permissions);
+                        addSelectionInfo(doc, selections);
+                    }
                 }
 
-                if ((relatedTypes != null ) && (relatedTypes.length > 0)) {
-                    addRelatedTypes(doc, relatedTypes, context);
+                if (addRelated) {
+                    addRelatedTypes(docs, relatedTypes, context);
                 }
 
-                if (doc.has("_source")) {
-                    ObjectNode sourceNode = (ObjectNode) doc.get("_source");
-
-                    if (sourceNode.has(Geonet.IndexFieldNames.SCHEMA)) {
-                        String metadataSchema = sourceNode.get(Geonet.IndexFieldNames.SCHEMA).asText();
-                        try {
-                            MetadataSchema mds = schemaManager.getSchema(metadataSchema);
-
-                            // Apply metadata schema filters to remove non-allowed fields
-                            processMetadataSchemaFilters(context, mds, doc);
-                        } catch (IllegalArgumentException e) {
-                            LOGGER.error("Failed to load metadata schema for {}. Error is: {}",
-                                getSourceString(doc, Geonet.IndexFieldNames.UUID),
-                                e.getMessage()
-                            );
+                for (ObjectNode doc : docs) {
+                    if (doc.has("_source")) {
+                        ObjectNode sourceNode = (ObjectNode) doc.get("_source");
+
+                        if (sourceNode.has(Geonet.IndexFieldNames.SCHEMA)) {
+                            String metadataSchema = sourceNode.get(Geonet.IndexFieldNames.SCHEMA).asText();
+                            try {
+                                MetadataSchema mds = schemaManager.getSchema(metadataSchema);
+
+                                // Apply metadata schema filters to remove non-allowed fields
+                                processMetadataSchemaFilters(permissions, mds, doc);
+                            } catch (IllegalArgumentException e) {
+                                LOGGER.error("Failed to load metadata schema for {}. Error is: {}",
+                                    getSourceString(doc, Geonet.IndexFieldNames.UUID),
+                                    e.getMessage()
+                                );
+                            }
                         }
-                    }
 
-                    // Remove fields with privileges info
-                    for (ReservedOperation o : ReservedOperation.values()) {
-                        sourceNode.remove("op" + o.getId());
+                        // Remove fields with privileges info
+                        for (ReservedOperation o : ReservedOperation.values()) {
+                            sourceNode.remove("op" + o.getId());
+                        }
                     }
-
                 }
             });
         } else {
-            JsonStreamUtils.addInfoToDocsMSearch(parser, generator, doc -> {
-                if (addPermissions) {
-                    addUserInfo(doc, context);
-                    addSelectionInfo(doc, selections);
+            JsonStreamUtils.addInfoToPagesMSearch(parser, generator, docs -> {
+                for (ObjectNode doc : docs) {
+                    if (addPermissions) {
+                        addUserInfo(doc, permissions);
+                        addSelectionInfo(doc, selections);
+                    }
                 }
 
-                if ((relatedTypes != null ) && (relatedTypes.length > 0)) {
-                    addRelatedTypes(doc, relatedTypes, context);
+                if (addRelated) {
+                    addRelatedTypes(docs, relatedTypes, context);
                 }
 
                 // Remove fields with privileges info
-                if (doc.has("_source")) {
-                    ObjectNode sourceNode = (ObjectNode) doc.get("_source");
+                for (ObjectNode doc : docs) {
+                    if (doc.has("_source")) {
+                        ObjectNode sourceNode = (ObjectNode) doc.get("_source");
 
-                    for (ReservedOperation o : ReservedOperation.values()) {
-                        sourceNode.remove("op" + o.getId());
+                        for (ReservedOperation o : ReservedOperation.values()) {
+                            sourceNode.remove("op" + o.getId());
+                        }
                     }
                 }
             });
@@ -801,36 +930,43 @@ public class EsHTTPProxy {
      * Gets the encoding of the content sent by the remote host: extracts the
      * content-encoding header
      *
-     * @param headerFields headers of the HttpURLConnection
+     * @param response the response of the remote host
      * @return null if not exists otherwise name of the encoding (gzip, deflate...)
      */
-    private String getContentEncoding(Map<String, List<String>> headerFields) {
-        for (String headerName : headerFields.keySet()) {
-            if (headerName != null) {
-                if ("Content-Encoding".equalsIgnoreCase(headerName)) {
-                    List<String> valuesList = headerFields.get(headerName);
-                    StringBuilder sBuilder = new StringBuilder();
-                    valuesList.forEach(sBuilder::append);
-                    return sBuilder.toString().toLowerCase();
-                }
+    private String getContentEncoding(HttpResponse response) {
+        final Header[] headers = response.getHeaders(HttpHeaders.CONTENT_ENCODING);
+        if (headers.length == 0) {
+            return null;
+        }
+        StringBuilder sBuilder = new StringBuilder();
+        for (Header header : headers) {
+            sBuilder.append(header.getValue());
+        }
+        return sBuilder.toString().toLowerCase();
+    }
+
+    private boolean acceptsGzip(HttpServletRequest request) {
+        for (Enumeration<String> values = request.getHeaders(HttpHeaders.ACCEPT_ENCODING); values.hasMoreElements(); ) {
+            if (values.nextElement().toLowerCase().contains("gzip")) {
+                return true;
             }
         }
-        return null;
+        return false;
     }
 
     /**
-     * Copy headers from the connection to the response
+     * Copy headers from the remote host response to the response
      *
      * @param response   to copy headers in
      * @param uc         contains headers to copy
      * @param ignoreList list of headers that mustn't be copied
      */
-    private void copyHeadersFromConnectionToResponse(HttpServletResponse response, HttpURLConnection uc, String... ignoreList) {
-        Map<String, List<String>> map = uc.getHeaderFields();
+    private void copyHeadersFromConnectionToResponse(HttpServletResponse response, HttpResponse uc, String... ignoreList) {
+        Map<String, List<String>> map = new LinkedHashMap<>();
+        for (Header header : uc.getAllHeaders()) {
+            map.computeIfAbsent(header.getName(), k -> new ArrayList<>()).add(header.getValue());
+        }
         for (String headerName : map.keySet()) {
-            if (headerName == null) {
-                continue;
-            }
             if (Arrays.stream(ignoreList).anyMatch(headerName::equalsIgnoreCase)) {
                 // Ignore list reflects headers that are handled by ESHTTPProxy directly
                 continue;
@@ -857,10 +993,12 @@ public class EsHTTPProxy {
     /**
      * Copy client's headers in the request to send to the final host.
      * Trick the host by hiding the proxy indirection and keep useful headers information.
+     * Headers describing the client connection and the request body are set by the HTTP client.
      *
      * @param uc Contains now headers from client request except Host
+     * @param uncompressed true to not accept a compressed response from the final host
      */
-    protected void copyHeadersToConnection(HttpServletRequest request, HttpURLConnection uc) {
+    protected void copyHeadersToConnection(HttpServletRequest request, HttpRequest uc, boolean uncompressed) {
 
         for (Enumeration enumHeader = request.getHeaderNames(); enumHeader.hasMoreElements(); ) {
             String headerName = (String) enumHeader.nextElement();
@@ -869,8 +1007,10 @@ public class EsHTTPProxy {
             // copy every header except host
             if (!"host".equalsIgnoreCase(headerName) &&
                 !"X-XSRF-TOKEN".equalsIgnoreCase(headerName) &&
-                !"Cookie".equalsIgnoreCase(headerName)) {
-                uc.setRequestProperty(headerName, headerValue);
+                !"Cookie".equalsIgnoreCase(headerName) &&
+                Arrays.stream(hopByHopHeaders).noneMatch(headerName::equalsIgnoreCase) &&
+                !(uncompressed && HttpHeaders.ACCEPT_ENCODING.equalsIgnoreCase(headerName))) {
+                uc.setHeader(headerName, headerValue);
             }
         }
     }
@@ -920,33 +1060,34 @@ public class EsHTTPProxy {
      *         ,"nilReason": "withheld"
      *        </xsl:if>
      *
+     * @param permissions the permissions of the current user
      * @param mds
      * @param doc
-     * @throws JsonProcessingException
      */
-    private void processMetadataSchemaFilters(ServiceContext context, MetadataSchema mds, ObjectNode doc) throws JsonProcessingException, SQLException {
+    private void processMetadataSchemaFilters(UserPermissions permissions, MetadataSchema mds, ObjectNode doc) {
         if (!doc.has("_source")) {
             return;
         }
 
-        ObjectMapper mapper = new ObjectMapper();
         ObjectNode sourceNode = (ObjectNode) doc.get("_source");
 
         MetadataSchemaOperationFilter authenticatedFilter = mds.getOperationFilter(MetadataOperationFilterType.authenticated.name());
 
         List<String> jsonpathFilters = new ArrayList<>();
 
-        if (authenticatedFilter != null && !context.getUserSession().isAuthenticated()) {
+        if (authenticatedFilter != null && !permissions.authenticated) {
             jsonpathFilters.add(authenticatedFilter.getJsonpath());
         }
         //do the same for groupOwner
         MetadataSchemaOperationFilter groupOwnerFilter = mds.getOperationFilter(MetadataOperationFilterType.groupOwner.name());
 
         if (groupOwnerFilter != null) {
-            if (context.getUserSession().getProfile() != Profile.Administrator) {
-                List<Integer> userGroups = AccessManager.getGroups(context.getUserSession(), Profile.Editor);
+            if (permissions.profile != Profile.Administrator) {
                 Integer groupOwner = getSourceInteger(doc, Geonet.IndexFieldNames.GROUP_OWNER);
-                boolean isGroupOwner = groupOwner != null && userGroups.contains(groupOwner);
+                // The editing groups include the reserved groups (all, intranet and guest)
+                boolean isGroupOwner = groupOwner != null
+                    && !ReservedGroup.isReserved(groupOwner)
+                    && permissions.editingGroups.contains(groupOwner);
 
                 if (!isGroupOwner) {
                     jsonpathFilters.add(groupOwnerFilter.getJsonpath());
@@ -982,24 +1123,27 @@ public class EsHTTPProxy {
             }
         }
 
-        JsonNode actualObj = filterResponseElements(mapper, sourceNode, jsonpathFilters);
-        if (actualObj != null) {
-            doc.set("_source", actualObj);
-        }
+        filterResponseElements(sourceNode, jsonpathFilters);
     }
-    private JsonNode filterResponseElements(ObjectMapper mapper, ObjectNode sourceNode, List<String> jsonPathFilters) throws JsonProcessingException {
-        DocumentContext jsonContext = JsonPath.parse(sourceNode.toPrettyString());
+
+    /**
+     * Remove the elements matching the JSON paths from the document, in place. The paths are
+     * compiled once and reused for all the search hits.
+     */
+    private void filterResponseElements(ObjectNode sourceNode, List<String> jsonPathFilters) {
+        if (jsonPathFilters.isEmpty()) {
+            return;
+        }
+        DocumentContext jsonContext = JsonPath.using(JSON_PATH_CONFIGURATION).parse(sourceNode);
 
         for(String jsonPath : jsonPathFilters) {
             if (StringUtils.isNotBlank(jsonPath)) {
                 try {
-                    jsonContext = jsonContext.delete(jsonPath);
+                    jsonContext.delete(compiledJsonPaths.computeIfAbsent(jsonPath, JsonPath::compile));
                 } catch (PathNotFoundException ex) {
                     // The node to remove is not returned in the response, ignore the error
                 }
             }
         }
-
-        return mapper.readTree(jsonContext.jsonString());
     }
 }
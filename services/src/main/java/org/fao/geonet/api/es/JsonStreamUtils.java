@@ -32,6 +32,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -97,20 +98,51 @@ public class JsonStreamUtils {
     }
 
     public static void addInfoToDocs(JsonParser parser, JsonGenerator generator, TreeFilter callback) throws Exception {
-        /* ES response for hits
-            hits
-              hits
-         */
-        JsonPathItem hitsItem =  JsonPathItem.create("hits").addSubitem("hits");
-
         JsonStreamUtils.filterObjectInPath(parser, generator,
             (par, gen) ->
                 JsonStreamUtils.filterArrayElements(par, gen, (par1, gen1) ->
                     filterTree(parser, generator, callback)),
-            Collections.singletonList(hitsItem));
+            Collections.singletonList(hitsPath()));
+    }
+
+    /**
+     * Same as {@link #addInfoToDocs(JsonParser, JsonGenerator, TreeFilter)} but the docs of
+     * a hits array are read first and the callback is applied once to the whole page,
+     * so that information for all the docs can be retrieved at once.
+     */
+    public static void addInfoToPages(JsonParser parser, JsonGenerator generator, PageFilter callback) throws Exception {
+        JsonStreamUtils.filterObjectInPath(parser, generator,
+            (par, gen) -> filterPage(par, gen, callback),
+            Collections.singletonList(hitsPath()));
     }
 
     public static void addInfoToDocsMSearch(JsonParser parser, JsonGenerator generator, TreeFilter callback) throws Exception {
+        JsonStreamUtils.filterObjectInPath(parser, generator,
+            (par, gen) ->
+                JsonStreamUtils.filterArrayElements(par, gen, (par1, gen1) ->
+                    filterTree(parser, generator, callback)),
+            Collections.singletonList(msearchHitsPath()));
+    }
+
+    /**
+     * Same as {@link #addInfoToDocsMSearch(JsonParser, JsonGenerator, TreeFilter)} but the
+     * callback is applied once per hits array.
+     */
+    public static void addInfoToPagesMSearch(JsonParser parser, JsonGenerator generator, PageFilter callback) throws Exception {
+        JsonStreamUtils.filterObjectInPath(parser, generator,
+            (par, gen) -> filterPage(par, gen, callback),
+            Collections.singletonList(msearchHitsPath()));
+    }
+
+    private static JsonPathItem hitsPath() {
+        /* ES response for hits
+            hits
+              hits
+         */
+        return JsonPathItem.create("hits").addSubitem("hits");
+    }
+
+    private static JsonPathItem msearchHitsPath() {
         /* ES response for hits and agreggation hits
          *  responses
          *    hits
@@ -130,13 +162,28 @@ public class JsonStreamUtils {
         aggregationChildrenItem.getSubitem("buckets").addSubitem("docs");
         aggregationChildrenItem.getSubitem("buckets").getSubitem("docs").addSubitem("hits");
         aggregationChildrenItem.getSubitem("buckets").getSubitem("docs").getSubitem("hits").addSubitem("hits");
+        return responsesItem;
+    }
 
-
-        JsonStreamUtils.filterObjectInPath(parser, generator,
-            (par, gen) ->
-                JsonStreamUtils.filterArrayElements(par, gen, (par1, gen1) ->
-                    filterTree(parser, generator, callback)),
-            Collections.singletonList(responsesItem));
+    private static void filterPage(JsonParser parser, JsonGenerator generator, PageFilter callback) throws Exception {
+        if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+            throw new RuntimeException("Expecting an array");
+        }
+        List<ObjectNode> docs = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+                throw new RuntimeException("Expecting an object");
+            }
+            docs.add((ObjectNode) parser.readValueAsTree());
+        }
+        if (!docs.isEmpty()) {
+            callback.apply(docs);
+        }
+        generator.writeStartArray();
+        for (ObjectNode doc : docs) {
+            generator.writeTree(doc);
+        }
+        generator.writeEndArray();
     }
 
     private static void filterTree(JsonParser parser, JsonGenerator generator, TreeFilter callback) throws Exception {
@@ -155,4 +202,8 @@ public class JsonStreamUtils {
     public interface TreeFilter {
         void apply(ObjectNode doc) throws Exception;
     }
+
+    public interface PageFilter {
+        void apply(List<ObjectNode> docs) throws Exception;
+    }
 }
@@ -38,7 +38,6 @@ import jeeves.xlink.Processor;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.csv.QuoteMode;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.text.StrSubstitutor;
 import org.fao.geonet.api.API;
@@ -65,6 +64,7 @@ import org.fao.geonet.web.DefaultLanguage;
 import org.jdom.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.support.ResourceBundleMessageSource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -75,7 +75,6 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.*;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -145,6 +144,9 @@ public class CatalogApi {
     @Qualifier("apiMessages")
     private ResourceBundleMessageSource messages;
 
+    @Value("${mef.export.threads:4}")
+    private int mefExportThreads;
+
     @io.swagger.v3.oas.annotations.Operation(
         summary = "Get a set of metadata records as ZIP",
         description = "Metadata Exchange Format (MEF) is returned. MEF is a ZIP file containing " +
@@ -231,7 +233,6 @@ public class CatalogApi {
         Locale locale = languageUtils.parseAcceptLanguage(request.getLocales());
 
         // Get parameters
-        Path file = null;
         Path stylePath = dataDirectory.getWebappDir().resolve(Geonet.Path.SCHEMAS);
 
         final UserSession session = ApiUtils.getUserSession(httpSession);
@@ -294,11 +295,6 @@ public class CatalogApi {
             Log.info(Geonet.MEF, "Building MEF2 file with " + uuidList.size()
                 + " records.");
             try {
-                file = MEFLib.doMEF2Export(context, allowedUuid, format.toString(),
-                    false, stylePath,
-                    withXLinksResolved, withXLinkAttribute,
-                    false, addSchemaLocation, approved, includeAttachments);
-
                 DateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HHmmss");
                 String suffix = includeAttachments ? "" : "-" + messages.getMessage("api.metadata.export.filename.withoutAttachmentsSuffix", null, locale);
                 String fileName = String.format("%s%s-%s.zip",
@@ -310,16 +306,16 @@ public class CatalogApi {
                     "inline; filename=\"%s\"",
                     fileName
                 ));
-                response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(Files.size(file)));
                 response.setContentType(MEFLib.Version.Constants.MEF_V2_ACCEPT_TYPE);
-                FileUtils.copyFile(file.toFile(), response.getOutputStream());
+                // The ZIP is streamed as the records are exported, so its length is not known
+                MEFLib.doMEF2Export(context, allowedUuid, format.toString(),
+                    false, stylePath,
+                    withXLinksResolved, withXLinkAttribute,
+                    false, addSchemaLocation, approved, includeAttachments,
+                    mefExportThreads, response.getOutputStream());
             } finally {
                 // -- Reset selection manager
                 selectionManger.close(SelectionManager.SELECTION_METADATA);
-                // Delete the temporary file
-                if (file != null) {
-                    FileUtils.deleteQuietly(file.toFile());
-                }
             }
         }
     }
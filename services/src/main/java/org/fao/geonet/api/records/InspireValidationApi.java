@@ -37,6 +37,7 @@ import org.fao.geonet.NodeInfo;
 import org.fao.geonet.api.ApiParams;
 import org.fao.geonet.api.ApiUtils;
 import org.fao.geonet.api.exception.ResourceNotFoundException;
+import org.fao.geonet.api.records.editing.EditorStateStore;
 import org.fao.geonet.inspire.validator.InspireValidationRunnable;
 import org.fao.geonet.inspire.validator.InspireValidatorUtils;
 import org.fao.geonet.api.records.formatters.FormatType;
@@ -44,7 +45,6 @@ import org.fao.geonet.api.records.formatters.FormatterApi;
 import org.fao.geonet.api.records.formatters.FormatterWidth;
 import org.fao.geonet.api.records.formatters.cache.Key;
 import org.fao.geonet.api.tools.i18n.LanguageUtils;
-import org.fao.geonet.constants.Geonet;
 import org.fao.geonet.domain.AbstractMetadata;
 import org.fao.geonet.domain.Source;
 import org.fao.geonet.events.history.RecordValidationTriggeredEvent;
@@ -127,6 +127,9 @@ public class InspireValidationApi {
     @Autowired
     private ThreadPool threadPool;
 
+    @Autowired
+    private EditorStateStore editorStateStore;
+
     @Value("#{validatorAdditionalConfig['processing']}")
     public String processing;
 
@@ -226,7 +229,7 @@ public class InspireValidationApi {
         String getRecordByIdUrl = null;
         String testId = null;
 
-        Element md = (Element) ApiUtils.getUserSession(session).getProperty(Geonet.Session.METADATA_EDITING + id);
+        Element md = editorStateStore.get(ApiUtils.getUserSession(session), id);
         if (md == null) {
             response.setStatus(HttpStatus.SC_NOT_FOUND);
             return String.format("Metadata with id '%s' not found in session. To be validated, the record must be in edition session.", id);
@@ -62,6 +62,7 @@ import org.jdom.Attribute;
 import org.jdom.Element;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.ResourceBundleMessageSource;
 import org.springframework.http.*;
@@ -119,6 +120,9 @@ public class MetadataApi {
     @Autowired
     EsSearchManager esSearchManager;
 
+    @Value("${mef.export.threads:4}")
+    private int mefExportThreads;
+
     public static RelatedResponse getRelatedResources(
         String language, ServiceContext context,
         AbstractMetadata md, RelatedItemType[] type, int start, int rows) throws Exception {
@@ -577,6 +581,9 @@ public class MetadataApi {
                     skipUUID, withXLinksResolved, withXLinkAttribute, addSchemaLocation, includeAttachments
                 );
                 response.setContentType(MEFLib.Version.Constants.MEF_V1_ACCEPT_TYPE);
+                setExportFilename(response, metadata, includeAttachments, locale);
+                response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(Files.size(file)));
+                FileUtils.copyFile(file.toFile(), response.getOutputStream());
             } else {
                 Set<String> uuidsToExport = new HashSet<>();
                 uuidsToExport.add(metadataUuid);
@@ -600,16 +607,12 @@ public class MetadataApi {
                 Log.info(Geonet.MEF, "Building MEF2 file with " + uuidsToExport.size()
                     + " records.");
 
-                file = MEFLib.doMEF2Export(serviceContext, uuidsToExport, format.toString(), false, stylePath, withXLinksResolved, withXLinkAttribute, false, addSchemaLocation, approved, includeAttachments);
-
                 response.setContentType(MEFLib.Version.Constants.MEF_V2_ACCEPT_TYPE);
+                setExportFilename(response, metadata, includeAttachments, locale);
+                // The ZIP is streamed as the records are exported, so its length is not known
+                MEFLib.doMEF2Export(serviceContext, uuidsToExport, format.toString(), false, stylePath, withXLinksResolved, withXLinkAttribute, false, addSchemaLocation, approved, includeAttachments,
+                    mefExportThreads, response.getOutputStream());
             }
-            String suffix = includeAttachments ? "" : "-" + messages.getMessage("api.metadata.export.filename.withoutAttachmentsSuffix", null, locale);
-            String filename = metadata.getUuid() + suffix + ".zip";
-            ContentDisposition contentDisposition = ContentDisposition.inline().filename(filename).build();
-            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition.toString());
-            response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(Files.size(file)));
-            FileUtils.copyFile(file.toFile(), response.getOutputStream());
         } finally {
             if (file != null) {
                 FileUtils.deleteQuietly(file.toFile());
@@ -617,6 +620,14 @@ public class MetadataApi {
         }
     }
 
+    private void setExportFilename(HttpServletResponse response, AbstractMetadata metadata,
+                                   boolean includeAttachments, Locale locale) {
+        String suffix = includeAttachments ? "" : "-" + messages.getMessage("api.metadata.export.filename.withoutAttachmentsSuffix", null, locale);
+        String filename = metadata.getUuid() + suffix + ".zip";
+        ContentDisposition contentDisposition = ContentDisposition.inline().filename(filename).build();
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition.toString());
+    }
+
     private List<String> getUuidsOfAssociatedRecords(IListOnlyClassToArray associatedRecords) {
         return Optional.ofNullable(associatedRecords)
             .map(r -> ((List<RelatedMetadataItem>) r.getItem()).stream())
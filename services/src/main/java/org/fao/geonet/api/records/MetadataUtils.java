@@ -25,6 +25,7 @@ package org.fao.geonet.api.records;
 
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
 import co.elastic.clients.json.JsonData;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -196,20 +197,183 @@ public class MetadataUtils {
         ServiceContext context,
         AbstractMetadata md, RelatedItemType[] types, int start, int size)
         throws Exception  {
+        Map<Integer, Map<RelatedItemType, RelatedTypeDetails>> queries = new HashMap<>();
+        queries.put(md.getId(), buildRelatedQueries(context, md, types));
+        return searchAssociated(context, queries, start, size).get(md.getId());
+    }
+
+    /**
+     * Get the associated records of a page of search hits. The links of each record are read
+     * from the index fields of the hit (recordLink and parentUuid), the records are not loaded
+     * from the database. The related records of all the hits are searched in one multi search
+     * request.
+     *
+     * @param hits the search hits, with the id, uuid, recordLink and parentUuid fields in their _source.
+     * @return the associated records by record id.
+     */
+    public static Map<Integer, Map<RelatedItemType, List<AssociatedRecord>>> getAssociatedOfHits(
+        ServiceContext context,
+        List<? extends JsonNode> hits, RelatedItemType[] types, int start, int size)
+        throws Exception {
+        Map<Integer, Map<RelatedItemType, RelatedTypeDetails>> queries = new LinkedHashMap<>();
+        for (JsonNode hit : hits) {
+            JsonNode source = hit.get("_source");
+            if (source == null || !source.hasNonNull(Geonet.IndexFieldNames.ID)
+                || !source.hasNonNull(Geonet.IndexFieldNames.UUID)) {
+                continue;
+            }
+            queries.put(source.get(Geonet.IndexFieldNames.ID).asInt(),
+                buildRelatedQueries(context, source.get(Geonet.IndexFieldNames.UUID).asText(),
+                    new IndexRelatedLinks(source), types));
+        }
+        return searchAssociated(context, queries, start, size);
+    }
+
+    /**
+     * Types of relations which are read from the record XML.
+     */
+    private static final Set<RelatedItemType> RELATED_TYPES_FROM_XML = EnumSet.of(
+        RelatedItemType.siblings, RelatedItemType.parent, RelatedItemType.fcats,
+        RelatedItemType.datasets, RelatedItemType.sources,
+        RelatedItemType.brothersAndSisters, RelatedItemType.children);
+
+    /**
+     * The resources a record links to.
+     */
+    private interface RelatedLinks {
+        /**
+         * @param type siblings, parent, fcats, datasets or sources.
+         */
+        Set<AssociatedResource> get(RelatedItemType type);
+
+        Set<String> getParentUuids();
+    }
+
+    /**
+     * Links read from the record XML by the schema plugin.
+     */
+    private static final class XmlRelatedLinks implements RelatedLinks {
+        private final AssociatedResourcesSchemaPlugin schemaPlugin;
+        private final Element xml;
+
+        private XmlRelatedLinks(AssociatedResourcesSchemaPlugin schemaPlugin, Element xml) {
+            this.schemaPlugin = schemaPlugin;
+            this.xml = xml;
+        }
+
+        @Override
+        public Set<AssociatedResource> get(RelatedItemType type) {
+            switch (type) {
+                case siblings:
+                    return schemaPlugin.getAssociatedResourcesUUIDs(xml);
+                case sources:
+                    return schemaPlugin.getAssociatedSources(xml);
+                case datasets:
+                    return schemaPlugin.getAssociatedDatasets(xml);
+                case parent:
+                    return schemaPlugin.getAssociatedParents(xml);
+                case fcats:
+                    return schemaPlugin.getAssociatedFeatureCatalogues(xml);
+                default:
+                    return new HashSet<>();
+            }
+        }
+
+        @Override
+        public Set<String> getParentUuids() {
+            return schemaPlugin.getAssociatedParentUUIDs(xml);
+        }
+    }
+
+    /**
+     * Links read from the index document of the record. The index stylesheets store the links
+     * found by the schema plugins as recordLink objects, with the relation type, the uuid of the
+     * linked record (to), its url, title and the properties of the association.
+     */
+    private static final class IndexRelatedLinks implements RelatedLinks {
+        private final JsonNode source;
+
+        private IndexRelatedLinks(JsonNode source) {
+            this.source = source;
+        }
+
+        @Override
+        public Set<AssociatedResource> get(RelatedItemType type) {
+            Set<AssociatedResource> resources = new HashSet<>();
+            for (JsonNode link : values(source.get("recordLink"))) {
+                if (type.value().equals(link.path("type").asText())
+                    && StringUtils.isNotEmpty(link.path("to").asText())) {
+                    resources.add(new AssociatedResource(
+                        link.path("to").asText(),
+                        link.path("initiativeType").asText(""),
+                        link.path("associationType").asText(""),
+                        link.path("url").asText(""),
+                        link.path("title").asText("")));
+                }
+            }
+            return resources;
+        }
+
+        @Override
+        public Set<String> getParentUuids() {
+            Set<String> uuids = new HashSet<>();
+            for (JsonNode uuid : values(source.get("parentUuid"))) {
+                uuids.add(uuid.asText());
+            }
+            return uuids;
+        }
+
+        /**
+         * A field with one value is not an array in the index document.
+         */
+        private static Iterable<JsonNode> values(JsonNode field) {
+            if (field == null || field.isNull()) {
+                return Collections.emptyList();
+            }
+            return field.isArray() ? field : Collections.singletonList(field);
+        }
+    }
+
+    /**
+     * For each type, build the query and expected list of uuids of the related records.
+     */
+    private static Map<RelatedItemType, RelatedTypeDetails> buildRelatedQueries(
+        ServiceContext context,
+        AbstractMetadata md, RelatedItemType[] types)
+        throws Exception {
 
         GeonetContext gc = (GeonetContext) context.getHandlerContext(Geonet.CONTEXT_NAME);
         DataManager dm = gc.getBean(DataManager.class);
-        SettingManager settingManager = gc.getBean(SettingManager.class);
-        EsSearchManager searchMan = gc.getBean(EsSearchManager.class);
-
-        Element xml = dm.getMetadata(context, md.getId() + "",
-            FOR_EDITING, WITH_VALIDATION_ERRORS, KEEP_XLINK_ATTRIBUTES);
 
         SchemaPlugin instance = SchemaManager.getSchemaPlugin(md.getDataInfo().getSchemaId());
         final AssociatedResourcesSchemaPlugin schemaPlugin =
                 instance instanceof AssociatedResourcesSchemaPlugin
                 ? (AssociatedResourcesSchemaPlugin) instance : null;
 
+        // The record is only loaded when some relations are read from it
+        final Element xml = schemaPlugin != null
+            && Arrays.stream(types).anyMatch(RELATED_TYPES_FROM_XML::contains)
+            ? dm.getMetadata(context, md.getId() + "",
+                FOR_EDITING, WITH_VALIDATION_ERRORS, KEEP_XLINK_ATTRIBUTES)
+            : null;
+
+        return buildRelatedQueries(context, md.getUuid(),
+            schemaPlugin != null ? new XmlRelatedLinks(schemaPlugin, xml) : null, types);
+    }
+
+    /**
+     * For each type, build the query and expected list of uuids of the related records.
+     *
+     * @param links the links of the record, or null if they are not known (the relations
+     *              which are read from the record are then skipped).
+     */
+    private static Map<RelatedItemType, RelatedTypeDetails> buildRelatedQueries(
+        ServiceContext context,
+        String uuid, RelatedLinks links, RelatedItemType[] types) {
+
+        GeonetContext gc = (GeonetContext) context.getHandlerContext(Geonet.CONTEXT_NAME);
+        SettingManager settingManager = gc.getBean(SettingManager.class);
+
         // For each type, store a query and expected list of uuids.
         Map<RelatedItemType, RelatedTypeDetails> queries = new HashMap<>();
         Set<String> allSearchedUuids = new HashSet<>();
@@ -235,26 +399,15 @@ public class MetadataUtils {
                 queries.put(type,
                     new RelatedTypeDetails(
                         String.format("+%s:\"%s\"",
-                            RELATED_INDEX_FIELDS.get(type.value()), md.getUuid())
+                            RELATED_INDEX_FIELDS.get(type.value()), uuid)
                     ));
-            } else if (schemaPlugin != null
+            } else if (links != null
                 && (type == RelatedItemType.siblings
                 || type == RelatedItemType.parent
                 || type == RelatedItemType.fcats
                 || type == RelatedItemType.datasets
                 || type == RelatedItemType.sources)) {
-                Set<AssociatedResource> listOfAssociatedResources = new HashSet<>();
-                if (type == RelatedItemType.siblings) {
-                    listOfAssociatedResources = schemaPlugin.getAssociatedResourcesUUIDs(xml);
-                } else if (type == RelatedItemType.sources) {
-                    listOfAssociatedResources = schemaPlugin.getAssociatedSources(xml);
-                } else if (type == RelatedItemType.datasets) {
-                    listOfAssociatedResources = schemaPlugin.getAssociatedDatasets(xml);
-                } else if (type == RelatedItemType.parent) {
-                    listOfAssociatedResources = schemaPlugin.getAssociatedParents(xml);
-                } else if (type == RelatedItemType.fcats) {
-                    listOfAssociatedResources = schemaPlugin.getAssociatedFeatureCatalogues(xml);
-                }
+                Set<AssociatedResource> listOfAssociatedResources = links.get(type);
 
 
                 Set<String> remoteRecords = new HashSet<>();
@@ -282,7 +435,7 @@ public class MetadataUtils {
                             listOfUUIDs.stream()
                                 .collect(Collectors.joining("\" OR \"", "\"", "\"")),
                                 type == RelatedItemType.parent
-                                    ? " OR childUuid:" + "\"" + md.getUuid() + "\""
+                                    ? " OR childUuid:" + "\"" + uuid + "\""
                                     : ""),
                             listOfUUIDs,
                             recordsProperties,
@@ -290,9 +443,9 @@ public class MetadataUtils {
                         ));
                     allSearchedUuids.addAll(listOfUUIDs);
                 }
-            } else if (schemaPlugin != null && type == RelatedItemType.brothersAndSisters) {
+            } else if (links != null && type == RelatedItemType.brothersAndSisters) {
                 // Get parents
-                Set<String> listOfUUIDs = schemaPlugin.getAssociatedParentUUIDs(xml);
+                Set<String> listOfUUIDs = links.getParentUuids();
                 // and search for records associated to them
                 queries.put(type,
                     new RelatedTypeDetails(
@@ -300,13 +453,13 @@ public class MetadataUtils {
                         RELATED_INDEX_FIELDS.get(type.value()),
                         listOfUUIDs.stream()
                             .collect(Collectors.joining("\" OR \"", "\"", "\"")),
-                        md.getUuid()),
+                        uuid),
                         listOfUUIDs
                     ));
                 allSearchedUuids.addAll(listOfUUIDs);
-            } else if (schemaPlugin != null && type == RelatedItemType.children) {
+            } else if (links != null && type == RelatedItemType.children) {
                 // Get associated with isComposedOf
-                Set<AssociatedResource> listOfAssociated = schemaPlugin.getAssociatedResourcesUUIDs(xml);
+                Set<AssociatedResource> listOfAssociated = links.get(RelatedItemType.siblings);
                 Set<String> isComposedOfList = listOfAssociated.stream()
                     .filter(e -> "isComposedOf".equals(e.getAssociationType()))
                     .map(AssociatedResource::getUuid)
@@ -317,7 +470,7 @@ public class MetadataUtils {
                     new RelatedTypeDetails(
                         String.format("(%s:\"%s\" OR uuid:(%s)) AND (draft:\"n\" OR draft:\"e\")",
                             RELATED_INDEX_FIELDS.get(type.value()),
-                            md.getUuid(),
+                            uuid,
                             isComposedOfList.stream()
                                 .collect(Collectors.joining("\" OR \"", "\"", "\""))
                             ),
@@ -328,28 +481,66 @@ public class MetadataUtils {
         });
 
 
-        Map<RelatedItemType, List<AssociatedRecord>> associated =
-            new HashMap<>();
+        return queries;
+    }
+
+    /**
+     * Search the related records of all the records in one multi search request.
+     */
+    private static Map<Integer, Map<RelatedItemType, List<AssociatedRecord>>> searchAssociated(
+        ServiceContext context,
+        Map<Integer, Map<RelatedItemType, RelatedTypeDetails>> queriesByRecord, int start, int size)
+        throws Exception {
+        GeonetContext gc = (GeonetContext) context.getHandlerContext(Geonet.CONTEXT_NAME);
+        EsSearchManager searchMan = gc.getBean(EsSearchManager.class);
+
+        Map<Integer, Map<RelatedItemType, List<AssociatedRecord>>> associatedByRecord = new LinkedHashMap<>();
+        List<Map<RelatedItemType, List<AssociatedRecord>>> allAssociated = new ArrayList<>();
+        // One query per record and type, and where to store its results
+        List<String> luceneQueries = new ArrayList<>();
+        List<Map.Entry<RelatedItemType, RelatedTypeDetails>> queryDetails = new ArrayList<>();
+        List<Map<RelatedItemType, List<AssociatedRecord>>> queryTargets = new ArrayList<>();
+        for (Map.Entry<Integer, Map<RelatedItemType, RelatedTypeDetails>> record : queriesByRecord.entrySet()) {
+            Map<RelatedItemType, List<AssociatedRecord>> associated = new HashMap<>();
+            associatedByRecord.put(record.getKey(), associated);
+            allAssociated.add(associated);
+            for (Map.Entry<RelatedItemType, RelatedTypeDetails> entry : record.getValue().entrySet()) {
+                luceneQueries.add(entry.getValue().getQuery());
+                queryDetails.add(entry);
+                queryTargets.add(associated);
+            }
+        }
+        if (luceneQueries.isEmpty()) {
+            return associatedByRecord;
+        }
+
         Set<String> allCatalogueUuids = new HashSet<>();
 
         String privilegesFilter = buildPermissionsFilter(context);
         ObjectMapper mapper = new ObjectMapper();
+        EsHTTPProxy.UserPermissions permissions = EsHTTPProxy.UserPermissions.of(context);
+
+        final List<ResponseBody<ObjectNode>> results = searchMan.multiQuery(
+            luceneQueries,
+            privilegesFilter,
+            FIELDLIST_RELATED,
+            FIELDLIST_RELATED_SCRIPTED,
+            start, size);
+        if (results == null || results.isEmpty()) {
+            return associatedByRecord;
+        }
 
-        for (Map.Entry<RelatedItemType,RelatedTypeDetails> entry : queries.entrySet()) {
-            // TODO: Use msearch ?
+        for (int i = 0; i < Math.min(results.size(), queryDetails.size()); i++) {
+            Map.Entry<RelatedItemType, RelatedTypeDetails> entry = queryDetails.get(i);
+            Map<RelatedItemType, List<AssociatedRecord>> associated = queryTargets.get(i);
             RelatedTypeDetails relatedTypeDetails = entry.getValue();
-            final SearchResponse result = searchMan.query(
-                relatedTypeDetails.getQuery(),
-                privilegesFilter,
-                FIELDLIST_RELATED,
-                FIELDLIST_RELATED_SCRIPTED,
-                start, size);
+            final ResponseBody<ObjectNode> result = results.get(i);
             Set<String> expectedUuids = relatedTypeDetails.getExpectedRecords();
             Set<String> remoteRecords = relatedTypeDetails.getRemoteRecords();
 
             List<AssociatedRecord> records = new ArrayList<>();
-            if (!result.hits().hits().isEmpty()) {
-                for (Hit e : (List<Hit>) result.hits().hits()) {
+            if (result != null && result.hits() != null && !result.hits().hits().isEmpty()) {
+                for (Hit<ObjectNode> e : result.hits().hits()) {
                     allCatalogueUuids.add(e.id());
                     AssociatedRecord associatedRecord = new AssociatedRecord();
                     associatedRecord.setUuid(e.id());
@@ -373,7 +564,7 @@ public class MetadataUtils {
                     JsonNode source = mapper.convertValue(e.source(), JsonNode.class);
                     ObjectNode doc = mapper.createObjectNode();
                     doc.set("_source", source);
-                    EsHTTPProxy.addUserInfo(doc, context);
+                    EsHTTPProxy.addUserInfo(doc, permissions);
                     Iterator<String> fieldNames = doc.fieldNames();
                     while (fieldNames.hasNext()) {
                         String field = fieldNames.next();
@@ -398,10 +589,11 @@ public class MetadataUtils {
             associated.put(entry.getKey(), records);
         }
 
-        assignPortalOrigin(start, size, searchMan, associated, allCatalogueUuids);
+        // All the related records of the page are checked at once
+        assignPortalOrigin(0, Math.max(size, allCatalogueUuids.size()), searchMan, allAssociated, allCatalogueUuids);
 
         // TODO: Editable relation
-        return associated;
+        return associatedByRecord;
     }
 
     private static void buildRemoteRecords(ObjectMapper mapper,
@@ -418,7 +610,7 @@ public class MetadataUtils {
         }
     }
 
-    private static void assignPortalOrigin(int start, int size, EsSearchManager searchMan, Map<RelatedItemType, List<AssociatedRecord>> associated, Set<String> allCatalogueUuids) throws Exception {
+    private static void assignPortalOrigin(int start, int size, EsSearchManager searchMan, List<Map<RelatedItemType, List<AssociatedRecord>>> allAssociated, Set<String> allCatalogueUuids) throws Exception {
         String portalFilter;
         SourceRepository sourceRepository = ApplicationContextHolder.get().getBean(SourceRepository.class);
         NodeInfo node = ApplicationContextHolder.get().getBean(NodeInfo.class);
@@ -443,9 +635,9 @@ public class MetadataUtils {
                 }
 
                 if (!allPortalUuids.isEmpty()) {
-                    associated.forEach((t, records) -> records.stream()
+                    allAssociated.forEach(associated -> associated.forEach((t, records) -> records.stream()
                         .filter(r -> allPortalUuids.contains(r.getUuid()))
-                        .forEach(r -> r.setOrigin(RelatedItemOrigin.portal.name())));
+                        .forEach(r -> r.setOrigin(RelatedItemOrigin.portal.name()))));
                 }
             }
         }
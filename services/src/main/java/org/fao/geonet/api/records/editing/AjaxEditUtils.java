@@ -35,6 +35,7 @@ import org.fao.geonet.kernel.AddElemValue;
 import org.fao.geonet.kernel.EditLib;
 import org.fao.geonet.kernel.SchemaManager;
 import org.fao.geonet.kernel.UpdateDatestamp;
+import org.fao.geonet.kernel.datamanager.MetadataLocks;
 import org.fao.geonet.kernel.schema.MetadataSchema;
 import org.fao.geonet.kernel.schema.MultilingualSchemaPlugin;
 import org.fao.geonet.kernel.schema.SchemaPlugin;
@@ -45,30 +46,49 @@ import org.jdom.*;
 import org.jdom.filter.ElementFilter;
 import org.jdom.filter.Filter;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Embedded Metadata Update API for AJAX Editor support
  */
 public class AjaxEditUtils extends EditUtils {
 
+    private final EditorStateStore editorStateStore;
+
     public AjaxEditUtils(ServiceContext context) {
         super(context);
+        this.editorStateStore = gc.getBean(EditorStateStore.class);
     }
 
     /**
-     * TODO javadoc.
+     * Returns the working copy of the record in the session, with the refs of the elements but
+     * without the other editing information.
      */
-    protected static Element getMetadataFromSession(UserSession session, String id) throws ResourceNotFoundException {
+    protected Element getMetadataFromSession(UserSession session, String id) throws Exception {
         if (Log.isDebugEnabled(Geonet.EDITOR))
             Log.debug(Geonet.EDITOR, "Retrieving metadata from session " + session.getUserId());
-        Element md = (Element) session.getProperty(Geonet.Session.METADATA_EDITING + id);
+        return checkInSession(editorStateStore.get(session, id), id);
+    }
+
+    /**
+     * Returns the working copy of the record in the session, expanded with the editing
+     * information.
+     */
+    private Element getExpandedMetadataFromSession(UserSession session, String id, EditLib editLib,
+                                                   MetadataSchema schema) throws Exception {
+        if (Log.isDebugEnabled(Geonet.EDITOR))
+            Log.debug(Geonet.EDITOR, "Retrieving expanded metadata from session " + session.getUserId());
+        return checkInSession(editorStateStore.get(session, id, editLib, schema), id);
+    }
+
+    private static Element checkInSession(Element md, String id) throws ResourceNotFoundException {
         if (md == null) {
             throw new ResourceNotFoundException(String.format(
                 "Requested metadata with id '%s' is not available in current session. " +
                     "Open an editing session on this record first.", id));
         }
-        md.detach();
         return md;
     }
 
@@ -260,7 +280,7 @@ public class AjaxEditUtils extends EditUtils {
             editLib.addElementOrFragmentFromXpaths(md, xmlAndXpathInputs, metadataSchema, true);
         }
 
-        setMetadataIntoSession(session, (Element) md.clone(), id);
+        setMetadataIntoSession(session, md, id);
 
         // --- remove editing info
         editLib.removeEditingInfo(md);
@@ -310,12 +330,12 @@ public class AjaxEditUtils extends EditUtils {
     }
 
     /**
-     * TODO javadoc.
+     * Stores the working copy of the record in the session. The element is not changed.
      */
-    private void setMetadataIntoSession(UserSession session, Element md, String id) {
+    private void setMetadataIntoSession(UserSession session, Element md, String id) throws IOException {
         if (Log.isDebugEnabled(Geonet.EDITOR))
             Log.debug(Geonet.EDITOR, "Storing metadata in session " + session.getUserId());
-        session.setProperty(Geonet.Session.METADATA_EDITING + id, md);
+        editorStateStore.put(session, id, md);
     }
 
     /**
@@ -324,7 +344,7 @@ public class AjaxEditUtils extends EditUtils {
     public void removeMetadataEmbedded(UserSession session, String id) {
         if (Log.isDebugEnabled(Geonet.EDITOR))
             Log.debug(Geonet.EDITOR, "Removing metadata from session " + session.getUserId());
-        session.removeProperty(Geonet.Session.METADATA_EDITING + id);
+        editorStateStore.remove(session, id);
     }
 
     /**
@@ -349,14 +369,25 @@ public class AjaxEditUtils extends EditUtils {
      * @return
      * @throws Exception
      */
-    public synchronized List<Element> addElementEmbedded(UserSession session, String id, String ref, String name, String childName) throws Exception {
+    public List<Element> addElementEmbedded(UserSession session, String id, String ref, String name, String childName) throws Exception {
+        Lock lock = MetadataLocks.get(id);
+        lock.lock();
+        try {
+            return doAddElementEmbedded(session, id, ref, name, childName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Element> doAddElementEmbedded(UserSession session, String id, String ref, String name, String childName) throws Exception {
         Lib.resource.checkEditPrivilege(context, id);
         String schema = dataManager.getMetadataSchema(id);
+        MetadataSchema mds = dataManager.getSchema(schema);
+        EditLib editLib = dataManager.getEditLib();
         //--- get metadata from session
-        Element md = getMetadataFromSession(session, id);
+        Element md = getExpandedMetadataFromSession(session, id, editLib, mds);
 
         //--- ref is parent element so find it
-        EditLib editLib = dataManager.getEditLib();
         Element el = editLib.findElement(md, ref);
         if (el == null)
             throw new IllegalStateException(EditLib.MSG_ELEMENT_NOT_FOUND_AT_REF + ref);
@@ -371,7 +402,6 @@ public class AjaxEditUtils extends EditUtils {
         }
 
         List<Element> children = new ArrayList<>();
-        MetadataSchema mds = dataManager.getSchema(schema);
 
         if (childName != null) {
             if (childName.equals("geonet:attribute")) {
@@ -478,7 +508,7 @@ public class AjaxEditUtils extends EditUtils {
         }
 
         //--- store the metadata in the session again
-        setMetadataIntoSession(session, (Element) md.clone(), id);
+        setMetadataIntoSession(session, md, id);
 
         // Return element added
         return children;
@@ -487,20 +517,30 @@ public class AjaxEditUtils extends EditUtils {
     /**
      * For Ajax Editing : removes an element from a metadata ([del] link).
      */
-    public synchronized Element deleteElementEmbedded(UserSession session, String id, String ref, String parentRef) throws Exception {
+    public Element deleteElementEmbedded(UserSession session, String id, String ref, String parentRef) throws Exception {
+        Lock lock = MetadataLocks.get(id);
+        lock.lock();
+        try {
+            return doDeleteElementEmbedded(session, id, ref, parentRef);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Element doDeleteElementEmbedded(UserSession session, String id, String ref, String parentRef) throws Exception {
         Lib.resource.checkEditPrivilege(context, id);
 
         String schema = dataManager.getMetadataSchema(id);
+        EditLib editLib = dataManager.getEditLib();
 
         //--- get metadata from session
-        Element md = getMetadataFromSession(session, id);
+        Element md = getExpandedMetadataFromSession(session, id, editLib, dataManager.getSchema(schema));
 
         //--- locate the geonet:info element and clone for later re-use
         Element info = (Element) (md.getChild(Edit.RootChild.INFO, Edit.NAMESPACE)).clone();
         md.removeChild(Edit.RootChild.INFO, Edit.NAMESPACE);
 
         //--- get element to remove
-        EditLib editLib = dataManager.getEditLib();
         Element el = editLib.findElement(md, ref);
 
         if (el == null)
@@ -562,7 +602,7 @@ public class AjaxEditUtils extends EditUtils {
         md.addContent((Element) info.clone());
 
         //--- store the metadata in the session again
-        setMetadataIntoSession(session, (Element) md.clone(), id);
+        setMetadataIntoSession(session, md, id);
 
         return result;
     }
@@ -572,7 +612,17 @@ public class AjaxEditUtils extends EditUtils {
      *
      * @param ref Attribute identifier (eg. _169_uom).
      */
-    public synchronized Element deleteAttributeEmbedded(UserSession session, String id, String ref) throws Exception {
+    public Element deleteAttributeEmbedded(UserSession session, String id, String ref) throws Exception {
+        Lock lock = MetadataLocks.get(id);
+        lock.lock();
+        try {
+            return doDeleteAttributeEmbedded(session, id, ref);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Element doDeleteAttributeEmbedded(UserSession session, String id, String ref) throws Exception {
         Lib.resource.checkEditPrivilege(context, id);
 
         String[] token = ref.split("_");
@@ -593,7 +643,7 @@ public class AjaxEditUtils extends EditUtils {
         }
 
         //--- store the metadata in the session again
-        setMetadataIntoSession(session, (Element) md.clone(), id);
+        setMetadataIntoSession(session, md, id);
 
         return result;
     }
@@ -618,7 +668,17 @@ public class AjaxEditUtils extends EditUtils {
     /**
      * For Ajax Editing : swap element with sibling ([up] and [down] links).
      */
-    public synchronized void swapElementEmbedded(UserSession session, String id, String ref, boolean down) throws Exception {
+    public void swapElementEmbedded(UserSession session, String id, String ref, boolean down) throws Exception {
+        Lock lock = MetadataLocks.get(id);
+        lock.lock();
+        try {
+            doSwapElementEmbedded(session, id, ref, down);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void doSwapElementEmbedded(UserSession session, String id, String ref, boolean down) throws Exception {
         Lib.resource.checkEditPrivilege(context, id);
 
         //--- get metadata from session
@@ -669,7 +729,7 @@ public class AjaxEditUtils extends EditUtils {
         }
 
         //--- store the metadata in the session again
-        setMetadataIntoSession(session, (Element) md.clone(), id);
+        setMetadataIntoSession(session, md, id);
     }
 
     /**
@@ -721,9 +781,8 @@ public class AjaxEditUtils extends EditUtils {
     public Element validateMetadataEmbedded(UserSession session, String id, String lang) throws Exception {
         String schema = dataManager.getMetadataSchema(id);
 
-        //--- get metadata from session and clone it for validation
-        Element realMd = getMetadataFromSession(session, id);
-        Element md = (Element) realMd.clone();
+        //--- get metadata from session
+        Element md = getMetadataFromSession(session, id);
 
         //--- remove editing info
         EditLib editLib = dataManager.getEditLib();
@@ -742,7 +801,17 @@ public class AjaxEditUtils extends EditUtils {
      * For Editing : adds an attribute from a metadata ([add] link). FIXME: Modify and use within
      * Ajax controls
      */
-    public synchronized boolean addAttribute(String id, String ref, String name, String currVersion) throws Exception {
+    public boolean addAttribute(String id, String ref, String name, String currVersion) throws Exception {
+        Lock lock = MetadataLocks.get(id);
+        lock.lock();
+        try {
+            return doAddAttribute(id, ref, name, currVersion);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean doAddAttribute(String id, String ref, String name, String currVersion) throws Exception {
         Lib.resource.checkEditPrivilege(context, id);
 
         Element md = xmlSerializer.select(context, id);
@@ -789,7 +858,17 @@ public class AjaxEditUtils extends EditUtils {
      * For Editing : removes an attribute from a metadata ([del] link). FIXME: Modify and use within
      * Ajax controls
      */
-    public synchronized boolean deleteAttribute(String id, String ref, String name, String currVersion) throws Exception {
+    public boolean deleteAttribute(String id, String ref, String name, String currVersion) throws Exception {
+        Lock lock = MetadataLocks.get(id);
+        lock.lock();
+        try {
+            return doDeleteAttribute(id, ref, name, currVersion);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean doDeleteAttribute(String id, String ref, String name, String currVersion) throws Exception {
         Lib.resource.checkEditPrivilege(context, id);
 
         Element md = xmlSerializer.select(context, id);
@@ -36,6 +36,7 @@ import org.fao.geonet.exceptions.BadParameterEx;
 import org.fao.geonet.exceptions.ConcurrentUpdateEx;
 import org.fao.geonet.kernel.*;
 import org.fao.geonet.kernel.datamanager.IMetadataValidator;
+import org.fao.geonet.kernel.datamanager.MetadataLocks;
 import org.fao.geonet.kernel.schema.MultilingualSchemaPlugin;
 import org.fao.geonet.kernel.schema.SchemaPlugin;
 import org.fao.geonet.kernel.search.IndexingMode;
@@ -48,6 +49,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.Lock;
 
 
 /**
@@ -176,16 +178,24 @@ class EditUtils {
 
         boolean updateDateStamp = !minor.equals("true");
         String changeDate = null;
-        if (embedded) {
-            Element updatedMetada = new AjaxEditUtils(context).applyChangesEmbedded(id, htChanges, version);
-            if (updatedMetada != null) {
-                result = dataManager.updateMetadata(context, id, updatedMetada, false, ufo, context.getLanguage(), changeDate, updateDateStamp, indexingMode);
-            }
-        } else {
-            Element updatedMetada = applyChanges(id, htChanges, version);
-            if (updatedMetada != null) {
-                result = dataManager.updateMetadata(context, id, updatedMetada, validate, ufo, context.getLanguage(), changeDate, updateDateStamp, indexingMode);
+        // The working copy is changed and saved under the record lock, so that no other editing
+        // operation on the record runs in between
+        Lock lock = MetadataLocks.get(id);
+        lock.lock();
+        try {
+            if (embedded) {
+                Element updatedMetada = new AjaxEditUtils(context).applyChangesEmbedded(id, htChanges, version);
+                if (updatedMetada != null) {
+                    result = dataManager.updateMetadata(context, id, updatedMetada, false, ufo, context.getLanguage(), changeDate, updateDateStamp, indexingMode, version);
+                }
+            } else {
+                Element updatedMetada = applyChanges(id, htChanges, version);
+                if (updatedMetada != null) {
+                    result = dataManager.updateMetadata(context, id, updatedMetada, validate, ufo, context.getLanguage(), changeDate, updateDateStamp, indexingMode, version);
+                }
             }
+        } finally {
+            lock.unlock();
         }
         if (result == null) {
             throw new ConcurrentUpdateEx(id);
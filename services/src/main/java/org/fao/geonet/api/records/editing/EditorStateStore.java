@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.api.records.editing;
+
+import jeeves.server.UserSession;
+import org.fao.geonet.constants.Edit;
+import org.fao.geonet.constants.Geonet;
+import org.fao.geonet.kernel.EditLib;
+import org.fao.geonet.kernel.schema.MetadataSchema;
+import org.fao.geonet.utils.Log;
+import org.fao.geonet.utils.Xml;
+import org.jdom.Element;
+import org.jdom.output.Format;
+import org.jdom.output.XMLOutputter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.ref.Cleaner;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Working copies of the records being edited, kept in the user session by record id.
+ * <p>
+ * A working copy is stored as gzipped XML instead of a JDOM tree. The editing information added by
+ * {@link EditLib#expandTree(MetadataSchema, Element)} is not stored: only the refs of the
+ * geonet:element enumeration are kept, and the tree is expanded again when it is read by an
+ * operation which needs it. Copies larger than {@code editor.session.spillThreshold} compressed
+ * bytes are written to a temporary file and only the file name is kept in the session. The file
+ * is deleted when the copy is replaced or removed, or when the session is garbage collected. When
+ * the session is serialized (eg. replicated or passivated) a spilled copy is written inline, so
+ * the restored session does not depend on the file.
+ * <p>
+ * The store does not lock the records, callers hold the record lock while they read, change and
+ * store a copy.
+ */
+@Component
+public class EditorStateStore {
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    @Value("${editor.session.spillThreshold:65536}")
+    private int spillThreshold;
+
+    private Path spillDir;
+
+    /**
+     * Stores the working copy of a record in the session, replacing the previous one. The given
+     * element is not changed.
+     */
+    public void put(UserSession session, String id, Element md) throws IOException {
+        boolean compact = isEnumerated(md);
+        Element copy = md;
+        if (compact) {
+            copy = (Element) md.clone();
+            removeExpandedInfo(copy);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            new XMLOutputter(Format.getRawFormat()).output(copy, out);
+        }
+
+        State state;
+        if (spillThreshold >= 0 && bytes.size() > spillThreshold) {
+            Path file = Files.createTempFile(getSpillDir(), "md-" + id + "-", ".xml.gz");
+            Files.write(file, bytes.toByteArray());
+            state = new State(compact, null, file);
+        } else {
+            state = new State(compact, bytes.toByteArray(), null);
+        }
+        release(session.getProperty(Geonet.Session.METADATA_EDITING + id));
+        session.setProperty(Geonet.Session.METADATA_EDITING + id, state);
+    }
+
+    /**
+     * Returns the working copy of a record as stored, or null if the record is not edited in this
+     * session. The refs can be looked up but the editing information added by the expansion is
+     * only present if some elements were not enumerated. Each call returns a new tree.
+     */
+    public Element get(UserSession session, String id) throws Exception {
+        State state = getState(session, id);
+        return state == null ? null : state.load();
+    }
+
+    /**
+     * Returns the working copy of a record with the editing information, or null if the record
+     * is not edited in this session. Each call returns a new tree.
+     */
+    public Element get(UserSession session, String id, EditLib editLib, MetadataSchema schema) throws Exception {
+        State state = getState(session, id);
+        if (state == null) {
+            return null;
+        }
+        Element md = state.load();
+        if (state.compact) {
+            editLib.expandTree(schema, md);
+        }
+        return md;
+    }
+
+    /**
+     * Removes the working copy of a record from the session.
+     */
+    public void remove(UserSession session, String id) {
+        release(session.getProperty(Geonet.Session.METADATA_EDITING + id));
+        session.removeProperty(Geonet.Session.METADATA_EDITING + id);
+    }
+
+    private State getState(UserSession session, String id) {
+        Object state = session.getProperty(Geonet.Session.METADATA_EDITING + id);
+        return state instanceof State ? (State) state : null;
+    }
+
+    private void release(Object state) {
+        if (state instanceof State) {
+            ((State) state).delete();
+        }
+    }
+
+    private synchronized Path getSpillDir() throws IOException {
+        if (spillDir == null || !Files.isDirectory(spillDir)) {
+            spillDir = Files.createTempDirectory("gn-editor");
+        }
+        return spillDir;
+    }
+
+    /**
+     * True if all the elements of the record have a geonet:element child, ie. the expansion can
+     * be computed again from the stored refs. Fragments inserted as XML are not enumerated until
+     * the record is saved and loaded again.
+     */
+    private static boolean isEnumerated(Element md) {
+        if (md.getChild(Edit.RootChild.ELEMENT, Edit.NAMESPACE) == null) {
+            return false;
+        }
+        for (Object o : md.getChildren()) {
+            Element child = (Element) o;
+            if (!Edit.NAMESPACE.getPrefix().equals(child.getNamespacePrefix()) && !isEnumerated(child)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the information added by {@link EditLib#expandElement(MetadataSchema, Element)}
+     * and keeps the geonet:element refs and the other geonet elements (eg. geonet:info).
+     */
+    private static void removeExpandedInfo(Element md) {
+        for (Object o : new ArrayList<Object>(md.getChildren())) {
+            Element child = (Element) o;
+            if (!Edit.NAMESPACE.getPrefix().equals(child.getNamespacePrefix())) {
+                removeExpandedInfo(child);
+            } else if (Edit.RootChild.CHILD.equals(child.getName())
+                || Edit.RootChild.ATTRIBUTE.equals(child.getName())) {
+                child.detach();
+            } else if (Edit.RootChild.ELEMENT.equals(child.getName())) {
+                child.removeAttribute(Edit.Element.Attr.MIN);
+                child.removeAttribute(Edit.Element.Attr.MAX);
+                child.removeAttribute(Edit.Element.Attr.ADD);
+                child.removeAttribute(Edit.Element.Attr.DEL);
+                child.removeAttribute(Edit.Element.Attr.UP);
+                child.removeAttribute(Edit.Element.Attr.DOWN);
+                child.removeChildren(Edit.Element.Child.TEXT, Edit.NAMESPACE);
+            }
+        }
+    }
+
+    private static final class State implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean compact;
+        private final byte[] data;
+        private final String file;
+        private final transient Cleaner.Cleanable cleanable;
+
+        private State(boolean compact, byte[] data, Path file) {
+            this.compact = compact;
+            this.data = data;
+            this.file = file == null ? null : file.toString();
+            this.cleanable = file == null ? null : CLEANER.register(this, new DeleteFile(file));
+        }
+
+        private Element load() throws Exception {
+            try (InputStream in = new GZIPInputStream(data != null
+                ? new ByteArrayInputStream(data) : Files.newInputStream(Paths.get(file)))) {
+                return Xml.loadStream(in);
+            }
+        }
+
+        /**
+         * Serializes a spilled copy with its content instead of the file name, the file belongs to
+         * this instance and is deleted with it.
+         */
+        private Object writeReplace() throws IOException {
+            return data != null ? this : new State(compact, Files.readAllBytes(Paths.get(file)), null);
+        }
+
+        private void delete() {
+            if (cleanable != null) {
+                cleanable.clean();
+            }
+        }
+    }
+
+    /**
+     * Deletes a spilled copy. Does not reference the {@link State} so that it can be collected.
+     */
+    private static final class DeleteFile implements Runnable {
+        private final Path file;
+
+        private DeleteFile(Path file) {
+            this.file = file;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                Log.warning(Geonet.EDITOR, "Failed to delete editor working copy " + file + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -30,6 +30,7 @@ import org.fao.geonet.kernel.GeonetworkDataDirectory;
 import org.fao.geonet.lib.Lib;
 import org.fao.geonet.utils.IO;
 import org.fao.geonet.utils.Log;
+import org.h2.jdbcx.JdbcConnectionPool;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.annotation.Nonnull;
@@ -38,10 +39,13 @@ import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.sql.*;
 import java.util.UUID;
@@ -52,6 +56,11 @@ import static org.fao.geonet.constants.Params.Access.PUBLIC;
 /**
  * A {@link org.fao.geonet.api.records.formatters.cache.PersistentStore} that saves the files to
  * disk.
+ * <p/>
+ * The index of the files is kept in an H2 database accessed through a connection pool. Reads do not
+ * lock so that cache hits are served in parallel, writes are serialized to keep the size of the
+ * cache consistent. Files are written to a temporary file and moved in place so that a concurrent
+ * read never sees a partially written file.
  *
  * @author Jesse on 3/5/2015.
  */
@@ -77,7 +86,7 @@ public class FilesystemStore implements PersistentStore {
     private static final String QUERY_CLEAR_INFO = "DELETE FROM " + INFO_TABLE;
     private static final String QUERY_CLEAR_STATS = "DELETE FROM " + STATS_TABLE;
     @VisibleForTesting
-    Connection metadataDb;
+    JdbcConnectionPool metadataDb;
     @Autowired
     private GeonetworkDataDirectory geonetworkDataDir;
     private boolean testing = false;
@@ -85,8 +94,14 @@ public class FilesystemStore implements PersistentStore {
     private volatile long currentSize = 0;
     private volatile boolean initialized = false;
 
-    private synchronized void init() throws SQLException {
-        if (!initialized) {
+    private void init() throws SQLException {
+        if (initialized) {
+            return;
+        }
+        synchronized (this) {
+            if (initialized) {
+                return;
+            }
             // using a h2 database and not normal geonetwork DB to ensure that the accesses are always on localhost and therefore
             // hopefully quick.
             try {
@@ -104,10 +119,12 @@ public class FilesystemStore implements PersistentStore {
             };
             String init = ";INIT=" + Joiner.on("\\;").join(initSql) + ";DB_CLOSE_DELAY=-1";
             String dbPath = testing ? "mem:" + UUID.randomUUID() : getBaseCacheDir().resolve("info-store").toString();
-            metadataDb = DriverManager.getConnection("jdbc:h2:" + dbPath + init, "fsStore", "");
+            metadataDb = JdbcConnectionPool.create("jdbc:h2:" + dbPath + init, "fsStore", "");
+            metadataDb.setMaxConnections(Math.max(10, 2 * Runtime.getRuntime().availableProcessors()));
 
             try (
-                Statement statement = metadataDb.createStatement();
+                Connection connection = metadataDb.getConnection();
+                Statement statement = connection.createStatement();
                 ResultSet rs = statement.executeQuery(QUERY_GETCURRENT_SIZE)) {
                 if (rs.next()) {
                     this.currentSize = Long.parseLong(rs.getString(1));
@@ -132,25 +149,31 @@ public class FilesystemStore implements PersistentStore {
     synchronized void close() throws ClassNotFoundException, SQLException {
         Log.info(Geonet.FORMATTER, "Stopping the FileSystemStore");
         if (metadataDb != null) {
-            metadataDb.close();
+            metadataDb.dispose();
         }
     }
 
     @Override
-    public synchronized StoreInfoAndData get(@Nonnull Key key) throws IOException, SQLException {
+    public StoreInfoAndData get(@Nonnull Key key) throws IOException, SQLException {
         init();
         StoreInfo info = getInfo(key);
         if (info == null) {
             return null;
         }
-        byte[] data = Files.readAllBytes(getPrivatePath(key));
-        return new StoreInfoAndData(info, data);
+        try {
+            byte[] data = Files.readAllBytes(getPrivatePath(key));
+            return new StoreInfoAndData(info, data);
+        } catch (NoSuchFileException e) {
+            // Removed since the info was read
+            return null;
+        }
     }
 
     @Override
-    public synchronized StoreInfo getInfo(@Nonnull Key key) throws SQLException {
+    public StoreInfo getInfo(@Nonnull Key key) throws SQLException {
         init();
-        try (PreparedStatement statement = this.metadataDb.prepareStatement(QUERY_GET_INFO)) {
+        try (Connection connection = this.metadataDb.getConnection();
+             PreparedStatement statement = connection.prepareStatement(QUERY_GET_INFO)) {
             statement.setInt(1, key.hashCode());
             try (ResultSet resultSet = statement.executeQuery()) {
                 if (resultSet.next()) {
@@ -167,7 +190,13 @@ public class FilesystemStore implements PersistentStore {
     @Override
     public synchronized void put(@Nonnull Key key, @Nonnull StoreInfoAndData data) throws IOException, SQLException {
         init();
-        resizeIfRequired(key, data);
+        try (Connection connection = this.metadataDb.getConnection()) {
+            doPut(connection, key, data);
+        }
+    }
+
+    private void doPut(Connection connection, Key key, StoreInfoAndData data) throws IOException, SQLException {
+        resizeIfRequired(connection, key, data);
         final Path privatePath = getPrivatePath(key);
 
         if (Files.exists(privatePath)) {
@@ -175,10 +204,10 @@ public class FilesystemStore implements PersistentStore {
         }
 
         Files.createDirectories(privatePath.getParent());
-        Files.write(privatePath, data.data);
+        write(privatePath, data.data);
         currentSize += data.data.length;
 
-        updateDbCurrentSize();
+        updateDbCurrentSize(connection);
 
         Path publicPath = getPublicPath(key);
         Files.deleteIfExists(publicPath);
@@ -192,7 +221,7 @@ public class FilesystemStore implements PersistentStore {
                 Files.copy(privatePath, publicPath);
             }
         }
-        try (PreparedStatement statement = this.metadataDb.prepareStatement(QUERY_PUT)) {
+        try (PreparedStatement statement = connection.prepareStatement(QUERY_PUT)) {
             statement.setInt(1, key.hashCode());
             statement.setLong(2, data.getChangeDate());
             statement.setBoolean(3, data.isPublished());
@@ -201,38 +230,55 @@ public class FilesystemStore implements PersistentStore {
         }
     }
 
-    private void updateDbCurrentSize() throws SQLException {
-        try (PreparedStatement statement = this.metadataDb.prepareStatement(QUERY_SETCURRENT_SIZE)) {
+    /**
+     * Writes the file next to its final location and moves it in place.
+     */
+    private void write(Path path, byte[] data) throws IOException {
+        Path tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, data);
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private void updateDbCurrentSize(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(QUERY_SETCURRENT_SIZE)) {
             statement.setString(1, String.valueOf(currentSize));
             statement.execute();
         }
     }
 
-    private void resizeIfRequired(Key key, StoreInfoAndData data) throws IOException, SQLException {
+    private void resizeIfRequired(Connection connection, Key key, StoreInfoAndData data) throws IOException, SQLException {
         if (this.currentSize + data.data.length > this.maxSizeB) {
             final Path privatePath = getPrivatePath(key);
             if (Files.exists(privatePath)) {
                 long fileSize = Files.size(privatePath);
                 if (currentSize - fileSize + data.data.length > this.maxSizeB) {
-                    resize();
+                    resize(connection);
                 }
             } else {
-                resize();
+                resize(connection);
             }
         }
     }
 
-    private void resize() throws SQLException, IOException {
+    private void resize(Connection connection) throws SQLException, IOException {
         int targetSize = (int) (maxSizeB / 2);
         Log.warning(Geonet.FORMATTER, "Resizing Formatter cache.  Required to reduce size by " + targetSize);
         long startTime = System.currentTimeMillis();
         try (
-            Statement statement = metadataDb.createStatement();
+            Statement statement = connection.createStatement();
             ResultSet resultSet = statement.executeQuery(QUERY_GET_INFO_FOR_RESIZE)
         ) {
             while (currentSize > targetSize && resultSet.next()) {
                 Path path = IO.toPath(new URI(resultSet.getString(PATH)));
-                doRemove(path, resultSet.getInt(KEY), false);
+                doRemove(connection, path, resultSet.getInt(KEY), false);
             }
         } catch (URISyntaxException e) {
             throw new Error(e);
@@ -261,11 +307,13 @@ public class FilesystemStore implements PersistentStore {
         init();
         final Path path = getPrivatePath(key);
         final int keyHashCode = key.hashCode();
-        doRemove(path, keyHashCode, true);
+        try (Connection connection = this.metadataDb.getConnection()) {
+            doRemove(connection, path, keyHashCode, true);
+        }
     }
 
     @Override
-    public void setPublished(int metadataId, final boolean published) throws IOException {
+    public synchronized void setPublished(int metadataId, final boolean published) throws IOException {
 
         final Path metadataDir = Lib.resource.getMetadataDir(getBaseCacheDir().resolve(PRIVATE), String.valueOf(metadataId));
         if (Files.exists(metadataDir)) {
@@ -298,9 +346,10 @@ public class FilesystemStore implements PersistentStore {
     }
 
     @Override
-    public void clear() throws SQLException, IOException {
+    public synchronized void clear() throws SQLException, IOException {
         init();
-        try (Statement statement = this.metadataDb.createStatement()) {
+        try (Connection connection = this.metadataDb.getConnection();
+             Statement statement = connection.createStatement()) {
             statement.execute(QUERY_CLEAR_INFO);
             statement.execute(QUERY_CLEAR_STATS);
             currentSize = 0;
@@ -328,7 +377,7 @@ public class FilesystemStore implements PersistentStore {
         }
     }
 
-    private void doRemove(Path privatePath, int keyHashCode, boolean updateDbCurrentSize) throws IOException, SQLException {
+    private void doRemove(Connection connection, Path privatePath, int keyHashCode, boolean updateDbCurrentSize) throws IOException, SQLException {
         try {
             if (Files.exists(privatePath)) {
                 currentSize -= Files.size(privatePath);
@@ -339,12 +388,12 @@ public class FilesystemStore implements PersistentStore {
                 final Path publicPath = toPublicPath(privatePath);
                 Files.deleteIfExists(publicPath);
             } finally {
-                try (PreparedStatement statement = metadataDb.prepareStatement(QUERY_REMOVE)) {
+                try (PreparedStatement statement = connection.prepareStatement(QUERY_REMOVE)) {
                     statement.setInt(1, keyHashCode);
                     statement.execute();
                 } finally {
                     if (updateDbCurrentSize) {
-                        updateDbCurrentSize();
+                        updateDbCurrentSize(connection);
                     }
                 }
             }
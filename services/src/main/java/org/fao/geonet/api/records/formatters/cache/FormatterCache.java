@@ -26,10 +26,6 @@ package org.fao.geonet.api.records.formatters.cache;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.RemovalListener;
-import com.google.common.cache.RemovalNotification;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
 import org.fao.geonet.domain.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
@@ -38,8 +34,9 @@ import javax.annotation.Nullable;
 import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.sql.SQLException;
-import java.util.Collection;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -57,15 +54,35 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * the values to the persistent cache.  This allows the value to be written to the request in
  * parallel with writing to the cache.
  * <p/>
+ * Lookups do not lock. When a value has to be loaded, concurrent requests for the same key wait
+ * for the first request to load it instead of loading it again, while values for other keys are
+ * loaded in parallel. A value loaded while values are removed from the cache is returned but not
+ * cached, as it may have been rendered from the metadata before the change which removed them.
+ * <p/>
  * Note: The Persistent cache used can be configured.
  *
  * @author Jesse on 3/5/2015.
  */
 public class FormatterCache {
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
     private final PersistentStore persistentStore;
     private final Cache<Key, StoreInfoAndData> memoryCache;
-    private final Multimap<Integer, Pair<Key, StoreInfoAndData>> mdIdIndex = ArrayListMultimap.create();
+    /**
+     * The keys cached for each metadata id.
+     */
+    private final ConcurrentMap<Integer, Set<Key>> mdIdIndex = new ConcurrentHashMap<>();
+    /**
+     * The values being loaded, so that a value is loaded once when requested by several threads.
+     */
+    private final ConcurrentMap<Key, CompletableFuture<StoreInfoAndDataLoadResult>> loading = new ConcurrentHashMap<>();
+    /**
+     * Incremented each time values are removed from the cache. A load which started in an older
+     * generation does not cache its value.
+     */
+    private final AtomicLong generation = new AtomicLong();
+    /**
+     * Loaded values are cached under the read lock, values are removed under the write lock.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
     private final ExecutorService executor;
     private final BlockingQueue<Pair<Key, StoreInfoAndDataLoadResult>> storeRequests;
     @Autowired
@@ -79,7 +96,6 @@ public class FormatterCache {
                           CacheConfig cacheConfig, ExecutorService executor) {
         this.persistentStore = persistentStore;
         this.memoryCache = CacheBuilder.newBuilder().
-            removalListener(new RemoveFromIndexListener()).
             maximumSize(memoryCacheSize).build();
         this.cacheConfig = cacheConfig;
         this.storeRequests = new ArrayBlockingQueue<>(maxStoreRequests);
@@ -112,8 +128,10 @@ public class FormatterCache {
 
     public void remove(Key key) throws IOException, SQLException {
         final Lock writeLock = lock.writeLock();
+        writeLock.lock();
         try {
-            writeLock.lock();
+            this.generation.incrementAndGet();
+            this.storeRequests.removeIf(request -> request.one().equals(key));
             this.memoryCache.invalidate(key);
             this.persistentStore.remove(key);
         } finally {
@@ -123,7 +141,8 @@ public class FormatterCache {
 
     /**
      * Get a value from the cache, or if it is not in the cache, load it with the loader and add it
-     * to the cache.
+     * to the cache. If the value is already being loaded by another thread, wait for it instead of
+     * loading it again.
      *
      * @param key                         the lookup/store key
      * @param validator                   a strategy for checking if the value should be reloaded
@@ -138,52 +157,62 @@ public class FormatterCache {
     @Nullable
     public byte[] get(Key key, Validator validator, Callable<StoreInfoAndDataLoadResult> loader,
                       boolean writeToStoreInCurrentThread) throws Exception {
-        final Lock readLock = lock.readLock();
-        StoreInfoAndData cached;
-        try {
-            readLock.lock();
-            if (!cacheConfig.allowCaching(key)) {
-                return loader.call().data;
-            }
+        if (!cacheConfig.allowCaching(key)) {
+            return loader.call().data;
+        }
 
-            cached = memoryCache.getIfPresent(key);
-            boolean invalid = false;
-            if (cached != null && !validator.isCacheVersionValid(cached)) {
-                cached = null;
-                invalid = true;
+        StoreInfoAndData cached = memoryCache.getIfPresent(key);
+        if (cached != null) {
+            if (validator.isCacheVersionValid(cached)) {
+                return cached.data;
             }
-
-            if (!invalid && cached == null) {
-                cached = loadFromPersistentCache(key, validator);
+        } else {
+            cached = loadFromPersistentCache(key, validator);
+            if (cached != null) {
+                return cached.data;
             }
-
-        } finally {
-            readLock.unlock();
         }
-        final Lock writeLock = lock.writeLock();
-        if (cached == null) {
+
+        return load(key, loader, writeToStoreInCurrentThread).data;
+    }
+
+    private StoreInfoAndDataLoadResult load(Key key, Callable<StoreInfoAndDataLoadResult> loader,
+                                            boolean writeToStoreInCurrentThread) throws Exception {
+        CompletableFuture<StoreInfoAndDataLoadResult> future = new CompletableFuture<>();
+        CompletableFuture<StoreInfoAndDataLoadResult> inFlight = loading.putIfAbsent(key, future);
+        if (inFlight != null) {
             try {
-                writeLock.lock();
-                StoreInfoAndDataLoadResult loaded = loader.call();
-                cached = loaded;
-                push(key, loaded, writeToStoreInCurrentThread);
-            } finally {
-                writeLock.unlock();
+                return inFlight.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
             }
         }
 
-        return cached.data;
-
+        try {
+            final long loadGeneration = generation.get();
+            StoreInfoAndDataLoadResult loaded = loader.call();
+            push(key, loaded, loadGeneration, writeToStoreInCurrentThread);
+            future.complete(loaded);
+            return loaded;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
     }
 
-    private void push(Key key, StoreInfoAndDataLoadResult cached,
+    private void push(Key key, StoreInfoAndDataLoadResult cached, long loadGeneration,
                       boolean writeToStoreInCurrentThread) throws IOException, SQLException {
-        final Lock writeLock = lock.writeLock();
+        final Lock readLock = lock.readLock();
+        readLock.lock();
         try {
-            writeLock.lock();
-
+            if (this.generation.get() != loadGeneration) {
+                // values were removed while loading, this one may be out of date
+                return;
+            }
             this.memoryCache.put(key, cached);
-            this.mdIdIndex.put(key.mdId, Pair.read(key, cached));
+            this.mdIdIndex.computeIfAbsent(key.mdId, id -> ConcurrentHashMap.newKeySet()).add(key);
             if (writeToStoreInCurrentThread) {
                 createPersistentStoreRunnable(storeRequests, persistentStore).processStoreRequest(Pair.read(key, cached));
             } else {
@@ -194,20 +223,14 @@ public class FormatterCache {
         } catch (InterruptedException e) {
             // return
         } finally {
-            writeLock.unlock();
+            readLock.unlock();
         }
     }
 
     private StoreInfoAndData loadFromPersistentCache(Key key, Validator validator) throws IOException, SQLException {
-        final Lock readLock = lock.readLock();
-        try {
-            readLock.lock();
-            final StoreInfo info = persistentStore.getInfo(key);
-            if (info != null && validator.isCacheVersionValid(info)) {
-                return persistentStore.get(key);
-            }
-        } finally {
-            readLock.unlock();
+        final StoreInfo info = persistentStore.getInfo(key);
+        if (info != null && validator.isCacheVersionValid(info)) {
+            return persistentStore.get(key);
         }
         return null;
     }
@@ -226,13 +249,7 @@ public class FormatterCache {
      */
     @Nullable
     public byte[] getPublished(Key key) throws IOException, SQLException {
-        final Lock readLock = lock.readLock();
-        try {
-            readLock.lock();
-            return this.persistentStore.getPublished(key);
-        } finally {
-            readLock.unlock();
-        }
+        return this.persistentStore.getPublished(key);
     }
 
     /**
@@ -242,27 +259,24 @@ public class FormatterCache {
      * @param published  mark all cached values for this metadata
      */
     void setPublished(int metadataId, boolean published) throws IOException {
-        final Lock writeLock = lock.writeLock();
-        try {
-            writeLock.lock();
-            this.persistentStore.setPublished(metadataId, published);
-        } finally {
-            writeLock.unlock();
-        }
+        this.persistentStore.setPublished(metadataId, published);
     }
 
     /**
      * Remove all cached values related to the metadataId.
      */
-    public synchronized void removeAll(int metadataId) throws IOException, SQLException {
+    public void removeAll(int metadataId) throws IOException, SQLException {
         final Lock writeLock = lock.writeLock();
+        writeLock.lock();
         try {
-            writeLock.lock();
-            Collection<Pair<Key, StoreInfoAndData>> storeInfoAndDatas = this.mdIdIndex.removeAll(metadataId);
-            for (Pair<Key, StoreInfoAndData> storeInfoAndData : storeInfoAndDatas) {
-                final Key key = storeInfoAndData.one();
-                this.memoryCache.invalidate(key);
-                this.persistentStore.remove(key);
+            this.generation.incrementAndGet();
+            this.storeRequests.removeIf(request -> request.one().mdId == metadataId);
+            Set<Key> keys = this.mdIdIndex.remove(metadataId);
+            if (keys != null) {
+                for (Key key : keys) {
+                    this.memoryCache.invalidate(key);
+                    this.persistentStore.remove(key);
+                }
             }
         } finally {
             writeLock.unlock();
@@ -274,19 +288,15 @@ public class FormatterCache {
      */
     public void clear() throws IOException, SQLException {
         final Lock writeLock = lock.writeLock();
+        writeLock.lock();
         try {
-            writeLock.lock();
+            this.generation.incrementAndGet();
+            this.storeRequests.clear();
             this.memoryCache.invalidateAll();
+            this.mdIdIndex.clear();
             this.persistentStore.clear();
         } finally {
             writeLock.unlock();
         }
     }
-
-    private class RemoveFromIndexListener implements RemovalListener<Key, StoreInfoAndData> {
-        @Override
-        public void onRemoval(RemovalNotification<Key, StoreInfoAndData> notification) {
-            mdIdIndex.remove(notification.getKey().mdId, notification.getValue());
-        }
-    }
 }
@@ -41,13 +41,16 @@ import static org.springframework.data.jpa.domain.Specification.where;
 
 /**
  * This class is responsible for listening for metadata index events and updating the cache's
- * publication values so that it stays in sync with the actual metadata.
+ * publication values so that it stays in sync with the actual metadata. Public records are queued
+ * for the {@link FormatterCacheWarmer} so that their formatted output is cached before it is requested.
  *
  * @author Jesse on 3/6/2015.
  */
 public class FormatterCachePublishListener implements ApplicationListener<MetadataIndexCompleted> {
     @Autowired
     private FormatterCache formatterCache;
+    @Autowired
+    private FormatterCacheWarmer formatterCacheWarmer;
 
     @Override
     public synchronized void onApplicationEvent(MetadataIndexCompleted event) {
@@ -61,6 +64,8 @@ public class FormatterCachePublishListener implements ApplicationListener<Metada
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-
+        if (one.isPresent()) {
+            formatterCacheWarmer.warmUp(metadataId);
+        }
     }
 }
@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.api.records.formatters.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import jeeves.server.UserSession;
+import jeeves.server.context.ServiceContext;
+import jeeves.server.dispatchers.ServiceManager;
+import org.fao.geonet.api.records.formatters.FormatType;
+import org.fao.geonet.api.records.formatters.FormatterApi;
+import org.fao.geonet.api.records.formatters.FormatterWidth;
+import org.fao.geonet.constants.Geonet;
+import org.fao.geonet.domain.AbstractMetadata;
+import org.fao.geonet.domain.ISODate;
+import org.fao.geonet.domain.MetadataType;
+import org.fao.geonet.domain.OperationAllowedId_;
+import org.fao.geonet.domain.ReservedOperation;
+import org.fao.geonet.kernel.datamanager.IMetadataUtils;
+import org.fao.geonet.kernel.setting.SettingManager;
+import org.fao.geonet.repository.OperationAllowedRepository;
+import org.fao.geonet.repository.specification.OperationAllowedSpecs;
+import org.fao.geonet.utils.Log;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jmx.export.MBeanExporter;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.ObjectName;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders the formatters of public records in the background so that the first requests for a
+ * landing page (for example by a crawler after a restart or a reindex) are served from the
+ * formatter cache.
+ * <p/>
+ * Records are queued when they are published or reindexed (see {@link FormatterCachePublishListener})
+ * and, if an interval is configured, all public records are queued shortly after startup and then
+ * periodically. A record is queued at most once at a time and is rendered by a small pool of
+ * threads for each of the configured formatters and languages, as seen by an anonymous user. Records already in the cache with the
+ * same change date are not rendered again.
+ * <p/>
+ * Progress is available over JMX.
+ */
+@ManagedResource()
+public class FormatterCacheWarmer {
+    @Autowired
+    private ConfigurableApplicationContext applicationContext;
+    @Autowired
+    private FormatterCache formatterCache;
+
+    private boolean enabled = false;
+    private List<String> formatters = Collections.emptyList();
+    private List<String> languages = Collections.singletonList(Geonet.DEFAULT_LANGUAGE);
+    private int threads = 1;
+    private long intervalMinutes = 0;
+
+    private final Set<Integer> queued = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger rendered = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled || formatters.isEmpty()) {
+            return;
+        }
+        start();
+
+        try {
+            MBeanExporter exporter = applicationContext.getBean(MBeanExporter.class);
+            exporter.registerManagedResource(this, new ObjectName(String.format(
+                "geonetwork-%s:name=formatter-cache-warmup",
+                applicationContext.getBean(SettingManager.class).getSiteId())));
+        } catch (Exception e) {
+            Log.error(Geonet.FORMATTER, "Error registering the formatter cache warm-up", e);
+        }
+    }
+
+    @VisibleForTesting
+    void start() {
+        executor = Executors.newFixedThreadPool(threads, threadFactory("FormatterCacheWarmer-"));
+        if (intervalMinutes > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory("FormatterCacheWarmerSchedule-"));
+            scheduler.scheduleWithFixedDelay(this::warmUpAll, 1, intervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static CustomizableThreadFactory threadFactory(String prefix) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(prefix);
+        threadFactory.setDaemon(true);
+        threadFactory.setThreadPriority(Thread.MIN_PRIORITY);
+        return threadFactory;
+    }
+
+    /**
+     * Queue a public record to be rendered. Does nothing if the record is already waiting to be
+     * rendered.
+     */
+    public void warmUp(int metadataId) {
+        if (executor == null || executor.isShutdown() || !queued.add(metadataId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                queued.remove(metadataId);
+                warmUpRecord(metadataId);
+            });
+        } catch (RejectedExecutionException e) {
+            queued.remove(metadataId);
+        }
+    }
+
+    /**
+     * Queue all public records to be rendered.
+     */
+    @ManagedOperation
+    public void warmUpAll() {
+        try {
+            List<Integer> publicIds = applicationContext.getBean(OperationAllowedRepository.class).findAllIds(
+                OperationAllowedSpecs.isPublic(ReservedOperation.view), OperationAllowedId_.metadataId);
+            Log.info(Geonet.FORMATTER, String.format("Formatter cache warm-up of %d public records", publicIds.size()));
+            publicIds.forEach(this::warmUp);
+        } catch (Exception e) {
+            Log.error(Geonet.FORMATTER, "Error listing the public records for the formatter cache warm-up", e);
+        }
+    }
+
+    @VisibleForTesting
+    void warmUpRecord(int metadataId) {
+        try {
+            AbstractMetadata metadata = applicationContext.getBean(IMetadataUtils.class).findOne(metadataId);
+            ISODate changeDate = metadata == null ? null : metadata.getDataInfo().getChangeDate();
+            if (changeDate == null || metadata.getDataInfo().getType() != MetadataType.METADATA) {
+                skipped.incrementAndGet();
+                return;
+            }
+            Validator validator = new ChangeDateValidator(changeDate.toDate().getTime());
+            CacheConfig cacheConfig = applicationContext.getBean(CacheConfig.class);
+
+            for (String language : languages) {
+                ServiceContext context = applicationContext.getBean(ServiceManager.class)
+                    .createServiceContext("formatter.warmup", applicationContext);
+                context.setLanguage(language);
+                context.setUserSession(new UserSession());
+                context.setAsThreadLocal();
+                try {
+                    for (String formatterId : formatters) {
+                        FormatType formatType = FormatType.findByFormatterKey(formatterId);
+                        Key key = new Key(metadataId, language, formatType == null ? FormatType.html : formatType,
+                            formatterId, true, FormatterWidth._100);
+                        if (!cacheConfig.allowCaching(key)) {
+                            skipped.incrementAndGet();
+                            continue;
+                        }
+                        Callable<StoreInfoAndDataLoadResult> loader = createLoader(context, key);
+                        formatterCache.get(key, validator, () -> {
+                            rendered.incrementAndGet();
+                            return loader.call();
+                        }, false);
+                    }
+                } finally {
+                    ServiceContext.clearAsThreadLocal();
+                }
+            }
+            processed.incrementAndGet();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            Log.warning(Geonet.FORMATTER, String.format(
+                "Formatter cache warm-up failed for record %d: %s", metadataId, e.getMessage()), e);
+        }
+    }
+
+    @VisibleForTesting
+    Callable<StoreInfoAndDataLoadResult> createLoader(ServiceContext context, Key key) {
+        return applicationContext.getBean(FormatterApi.class).new FormatMetadata(context, key, null);
+    }
+
+    @ManagedAttribute
+    public int getQueued() {
+        return queued.size();
+    }
+
+    @ManagedAttribute
+    public int getProcessed() {
+        return processed.intValue();
+    }
+
+    @ManagedAttribute
+    public int getRendered() {
+        return rendered.intValue();
+    }
+
+    @ManagedAttribute
+    public int getFailed() {
+        return failed.intValue();
+    }
+
+    @ManagedAttribute
+    public int getSkipped() {
+        return skipped.intValue();
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setFormatters(List<String> formatters) {
+        this.formatters = formatters;
+    }
+
+    public void setLanguages(List<String> languages) {
+        this.languages = languages;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setIntervalMinutes(long intervalMinutes) {
+        this.intervalMinutes = intervalMinutes;
+    }
+}
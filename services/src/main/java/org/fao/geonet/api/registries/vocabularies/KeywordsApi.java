@@ -226,7 +226,7 @@ public class KeywordsApi {
 //        )
 //            String thesauriDomainName,
         @Parameter(
-            description = "Type of search"
+            description = "Type of search. FUZZY tolerates typos in the query."
         )
         @RequestParam(
             defaultValue = "CONTAINS"
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.api.es;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+import jeeves.constants.Jeeves;
+import jeeves.server.UserSession;
+import jeeves.server.context.ServiceContext;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.fao.geonet.ApplicationContextHolder;
+import org.fao.geonet.api.records.model.related.RelatedItemType;
+import org.fao.geonet.domain.Profile;
+import org.fao.geonet.index.es.EsRestClient;
+import org.fao.geonet.kernel.AccessManager;
+import org.fao.geonet.kernel.setting.SettingManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+/**
+ * Forwarding of the search proxy requests to a stub Elasticsearch server.
+ */
+public class EsHTTPProxyForwardingTest {
+    private static final String SEARCH_RESPONSE = "{\"took\":1,\"hits\":{\"total\":{\"value\":1},\"hits\":["
+        + "{\"_id\":\"uuid1\",\"_source\":{\"id\":\"10\",\"uuid\":\"uuid1\",\"owner\":\"1\",\"op0\":[\"1\"]}}]}}";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private HttpServer server;
+    private CloseableHttpClient httpClient;
+    private EsHTTPProxy proxy;
+    private ConfigurableApplicationContext applicationContext;
+
+    private volatile String receivedPath;
+    private volatile Headers receivedHeaders;
+    private volatile byte[] receivedBody;
+    private final Map<String, String> responseHeaders = new LinkedHashMap<>();
+    private volatile byte[] responseBody;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            receivedPath = exchange.getRequestURI().getPath();
+            receivedHeaders = exchange.getRequestHeaders();
+            receivedBody = IOUtils.toByteArray(exchange.getRequestBody());
+            responseHeaders.forEach((name, value) -> exchange.getResponseHeaders().add(name, value));
+            exchange.sendResponseHeaders(200, responseBody.length);
+            exchange.getResponseBody().write(responseBody);
+            exchange.close();
+        });
+        server.start();
+
+        // Same options as the pooled client of EsRestClient
+        httpClient = HttpClients.custom()
+            .disableContentCompression()
+            .disableCookieManagement()
+            .build();
+        EsRestClient client = mock(EsRestClient.class);
+        when(client.getServerUrl()).thenReturn("http://localhost:" + server.getAddress().getPort());
+        when(client.getHttpClient()).thenReturn(httpClient);
+
+        proxy = new EsHTTPProxy();
+        ReflectionTestUtils.setField(proxy, "client", client);
+        ReflectionTestUtils.setField(proxy, "defaultIndex", "gn-records");
+        ReflectionTestUtils.setField(proxy, "proxyHeadersAllowedList",
+            new String[]{"content-type", "content-encoding", "transfer-encoding"});
+
+        applicationContext = mock(ConfigurableApplicationContext.class);
+        when(applicationContext.getBean(AccessManager.class)).thenReturn(mock(AccessManager.class));
+        when(applicationContext.getBean(SettingManager.class)).thenReturn(mock(SettingManager.class));
+        ApplicationContextHolder.set(applicationContext);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.stop(0);
+        httpClient.close();
+        ApplicationContextHolder.clear();
+    }
+
+    @Test
+    public void testResponseNotRewrittenIsPassedThrough() throws Exception {
+        byte[] compressed = gzip("green open gn-records");
+        responseHeaders.put("Content-Type", "text/plain; charset=UTF-8");
+        responseHeaders.put("Content-Encoding", "gzip");
+        responseBody = compressed;
+
+        byte[] body = "{\"index\":{\"number_of_replicas\":0}}".getBytes(StandardCharsets.UTF_8);
+        MockHttpServletRequest request = request(body);
+        request.addHeader("Accept-Encoding", "gzip");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        call(request, response, "_settings", null);
+
+        assertEquals("/gn-records/_settings", receivedPath);
+        // The body is streamed as is
+        assertArrayEquals(body, receivedBody);
+        // Compressed bytes are passed through untouched
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        assertArrayEquals(compressed, response.getContentAsByteArray());
+    }
+
+    @Test
+    public void testHopByHopHeadersAreNotForwarded() throws Exception {
+        responseHeaders.put("Content-Type", "text/plain");
+        responseBody = "ok".getBytes(StandardCharsets.UTF_8);
+
+        MockHttpServletRequest request = request("{}".getBytes(StandardCharsets.UTF_8));
+        request.addHeader("Connection", "Upgrade");
+        request.addHeader("Keep-Alive", "timeout=99");
+        request.addHeader("Cookie", "JSESSIONID=secret");
+        request.addHeader("X-XSRF-TOKEN", "token");
+        request.addHeader("X-Opaque-Id", "request-1");
+
+        call(request, new MockHttpServletResponse(), "_settings", null);
+
+        assertEquals("request-1", receivedHeaders.getFirst("X-Opaque-Id"));
+        assertNotEquals("Upgrade", receivedHeaders.getFirst("Connection"));
+        assertNull(receivedHeaders.getFirst("Keep-Alive"));
+        assertNull(receivedHeaders.getFirst("Cookie"));
+        assertNull(receivedHeaders.getFirst("X-XSRF-TOKEN"));
+    }
+
+    @Test
+    public void testSearchResponseIsRewrittenAndCompressedByTheProxy() throws Exception {
+        responseHeaders.put("Content-Type", "application/json; charset=UTF-8");
+        responseBody = SEARCH_RESPONSE.getBytes(StandardCharsets.UTF_8);
+
+        MockHttpServletRequest request = request("{\"query\":{\"match_all\":{}}}".getBytes(StandardCharsets.UTF_8));
+        request.addHeader("Accept-Encoding", "gzip, deflate");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        call(request, response, "_search", new RelatedItemType[0]);
+
+        // The search is rewritten with the privileges filter and
+        // requested uncompressed as the proxy rewrites the response
+        assertEquals("/gn-records/_search", receivedPath);
+        JsonNode search = mapper.readTree(receivedBody);
+        assertTrue(search.path("query").path("bool").has("filter"));
+        assertNull(receivedHeaders.getFirst("Accept-Encoding"));
+
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        JsonNode hit = mapper.readTree(gunzip(response.getContentAsByteArray())).get("hits").get("hits").get(0);
+        assertTrue(hit.get("edit").asBoolean());
+        assertFalse(hit.get("selected").asBoolean());
+        assertFalse(hit.get("_source").has("op0"));
+    }
+
+    @Test
+    public void testCompressedSearchResponseIsDecompressedBeforeRewriting() throws Exception {
+        // Elasticsearch may compress the response even if not requested
+        responseHeaders.put("Content-Type", "application/json; charset=UTF-8");
+        responseHeaders.put("Content-Encoding", "gzip");
+        responseBody = gzip(SEARCH_RESPONSE);
+
+        MockHttpServletRequest request = request("{\"query\":{\"match_all\":{}}}".getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        call(request, response, "_search", new RelatedItemType[0]);
+
+        assertNull(response.getHeader("Content-Encoding"));
+        // Not compressed because the client does not accept it, caches must know
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        JsonNode hit = mapper.readTree(response.getContentAsByteArray()).get("hits").get("hits").get(0);
+        assertTrue(hit.get("edit").asBoolean());
+        assertFalse(hit.get("_source").has("op0"));
+    }
+
+    private MockHttpServletRequest request(byte[] body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/srv/api/search/records/_search");
+        request.setContentType("application/json");
+        request.setContent(body);
+        return request;
+    }
+
+    private void call(MockHttpServletRequest request, MockHttpServletResponse response,
+                      String endPoint, RelatedItemType[] relatedTypes) throws Exception {
+        UserSession userSession = spy(new UserSession());
+        // Administrator profile short-circuits the privileges filter and permissions
+        when(userSession.getProfile()).thenReturn(Profile.Administrator);
+        when(userSession.isAuthenticated()).thenReturn(true);
+        when(userSession.getUserIdAsInt()).thenReturn(1);
+        ServiceContext context = new ServiceContext("default", applicationContext, new HashMap<>(), null);
+        context.setUserSession(userSession);
+        MockHttpSession httpSession = new MockHttpSession();
+        httpSession.setAttribute(Jeeves.Elem.SESSION, userSession);
+
+        Method method = EsHTTPProxy.class.getDeclaredMethod("call", ServiceContext.class,
+            javax.servlet.http.HttpSession.class, javax.servlet.http.HttpServletRequest.class,
+            javax.servlet.http.HttpServletResponse.class, String.class, InputStream.class,
+            String.class, RelatedItemType[].class);
+        method.setAccessible(true);
+        method.invoke(proxy, context, httpSession, request, response, endPoint,
+            request.getInputStream(), "metadata", relatedTypes);
+    }
+
+    private static byte[] gzip(String content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] content) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(content))) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+}
@@ -41,11 +41,10 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.context.ConfigurableApplicationContext;
-import org.springframework.data.jpa.domain.Specification;
 
 import java.lang.reflect.Method;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -71,12 +70,9 @@ public class EsHTTPProxyTest {
     @Test
     public void testProcessMetadataSchemaFiltersGroupOwner() throws Exception {
         // 1. Setup
-        ServiceContext context = new ServiceContext("default", applicationContext, new HashMap<>(), null);
-        UserSession userSession = spy(new UserSession());
-        when(userSession.isAuthenticated()).thenReturn(true);
-        when(userSession.getUserIdAsInt()).thenReturn(42);
-
-        context.setUserSession(userSession);
+        // User is an editor in group 1
+        EsHTTPProxy.UserPermissions permissions = new EsHTTPProxy.UserPermissions(
+            true, 42, Profile.Editor, Set.of(1), Set.of(1), Set.of(), true);
 
         ObjectMapper mapper = new ObjectMapper();
         ObjectNode doc = mapper.createObjectNode();
@@ -93,21 +89,18 @@ public class EsHTTPProxyTest {
         MetadataSchemaOperationFilter groupOwnerFilter = new MetadataSchemaOperationFilter(null, "$.someField", null);
         when(mds.getOperationFilter(MetadataOperationFilterType.groupOwner.name())).thenReturn(groupOwnerFilter);
 
-        // Mock AccessManager.getGroups via UserGroupRepository
-        // When user is in group 1
-        when(userGroupRepository.findGroupIds(any(Specification.class))).thenReturn(List.of(1));
-
         // 2. Call a private method using reflection
-        Method method = EsHTTPProxy.class.getDeclaredMethod("processMetadataSchemaFilters", ServiceContext.class, MetadataSchema.class, ObjectNode.class);
+        Method method = EsHTTPProxy.class.getDeclaredMethod("processMetadataSchemaFilters", EsHTTPProxy.UserPermissions.class, MetadataSchema.class, ObjectNode.class);
         method.setAccessible(true);
-        method.invoke(esHTTPProxy, context, mds, doc);
+        method.invoke(esHTTPProxy, permissions, mds, doc);
 
         // 3. Assertions for user in a group
         assertTrue("someField should exist when user is in groupOwner", doc.get("_source").has("someField"));
 
         // --- Test case where the user is NOT in a group ---
         // When the user is NOT in group 1 (e.g. in group 2)
-        when(userGroupRepository.findGroupIds(any(Specification.class))).thenReturn(List.of(2));
+        permissions = new EsHTTPProxy.UserPermissions(
+            true, 42, Profile.Editor, Set.of(2), Set.of(2), Set.of(), true);
 
         // re-create doc
         doc = mapper.createObjectNode();
@@ -119,11 +112,76 @@ public class EsHTTPProxyTest {
         doc.put("download", false);
         doc.put("dynamic", false);
 
-        method.invoke(esHTTPProxy, context, mds, doc);
+        method.invoke(esHTTPProxy, permissions, mds, doc);
 
         assertFalse("someField should be filtered when user is not in groupOwner", doc.get("_source").has("someField"));
     }
 
+    @Test
+    public void testProcessMetadataSchemaFiltersReservedGroupOwner() throws Exception {
+        // The editing groups of a user contain the reserved groups all (1), intranet (0) and guest (-1)
+        EsHTTPProxy.UserPermissions permissions = new EsHTTPProxy.UserPermissions(
+            true, 42, Profile.Editor, Set.of(1, 0, -1, 2), Set.of(1, 0, -1, 2), Set.of(), true);
+
+        MetadataSchema mds = mock(MetadataSchema.class);
+        MetadataSchemaOperationFilter groupOwnerFilter = new MetadataSchemaOperationFilter(null, "$.someField", null);
+        when(mds.getOperationFilter(MetadataOperationFilterType.groupOwner.name())).thenReturn(groupOwnerFilter);
+
+        Method method = EsHTTPProxy.class.getDeclaredMethod("processMetadataSchemaFilters", EsHTTPProxy.UserPermissions.class, MetadataSchema.class, ObjectNode.class);
+        method.setAccessible(true);
+
+        ObjectMapper mapper = new ObjectMapper();
+        for (int reservedGroup : new int[]{1, 0, -1}) {
+            ObjectNode doc = mapper.createObjectNode();
+            ObjectNode source = mapper.createObjectNode();
+            source.put(Geonet.IndexFieldNames.GROUP_OWNER, reservedGroup);
+            source.put("someField", "someValue");
+            doc.set("_source", source);
+            doc.put("edit", false);
+            doc.put("download", false);
+            doc.put("dynamic", false);
+
+            method.invoke(esHTTPProxy, permissions, mds, doc);
+
+            assertFalse("someField should be filtered when the group owner is the reserved group " + reservedGroup,
+                doc.get("_source").has("someField"));
+        }
+    }
+
+    @Test
+    public void testAddUserInfoUsesPermissionsResolvedOnce() throws Exception {
+        // Editor in group 2, member of group 3
+        EsHTTPProxy.UserPermissions permissions = new EsHTTPProxy.UserPermissions(
+            true, 42, Profile.Editor, Set.of(1, -1, 2, 3), Set.of(1, -1, 2), Set.of(), true);
+
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode editable = (ObjectNode) mapper.readTree(
+            "{\"_source\":{\"id\":\"10\",\"owner\":\"7\",\"groupOwner\":\"2\",\"op0\":[\"1\",\"2\"],\"op2\":[\"2\"]}}");
+        ObjectNode viewable = (ObjectNode) mapper.readTree(
+            "{\"_source\":{\"id\":\"11\",\"owner\":\"7\",\"groupOwner\":\"3\",\"op0\":\"3\",\"op1\":\"-1\"}}");
+        ObjectNode owned = (ObjectNode) mapper.readTree(
+            "{\"_source\":{\"id\":\"12\",\"owner\":\"42\",\"groupOwner\":\"4\"}}");
+
+        for (ObjectNode doc : new ObjectNode[]{editable, viewable, owned}) {
+            EsHTTPProxy.addUserInfo(doc, permissions);
+        }
+
+        assertTrue(editable.get("edit").asBoolean());
+        assertTrue(editable.get("view").asBoolean());
+        assertTrue(editable.get("isPublishedToAll").asBoolean());
+        assertFalse(editable.get("owner").asBoolean());
+
+        assertFalse(viewable.get("edit").asBoolean());
+        assertTrue(viewable.get("view").asBoolean());
+        // Download is granted to the guest group, which includes the authenticated users
+        assertTrue(viewable.get("download").asBoolean());
+        assertFalse(viewable.get("isPublishedToAll").asBoolean());
+
+        assertTrue(owned.get("edit").asBoolean());
+        assertTrue(owned.get("owner").asBoolean());
+        assertEquals(42, owned.get("ownerId").asInt());
+    }
+
     /**
      * When the search body omits the "query" field, addFilterToQuery must still inject the ACL filter into a
      * freshly synthesised bool query so that authorization is enforced.
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.api.es;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class JsonStreamUtilsTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testAddInfoToPagesCallsTheCallbackOncePerPage() throws Exception {
+        String response = "{\"took\":1,\"hits\":{\"total\":{\"value\":3},\"hits\":["
+            + "{\"_id\":\"a\",\"_source\":{\"id\":\"1\"}},"
+            + "{\"_id\":\"b\",\"_source\":{\"id\":\"2\"}},"
+            + "{\"_id\":\"c\",\"_source\":{\"id\":\"3\"}}]},"
+            + "\"aggregations\":{\"hits\":{\"hits\":[{\"_id\":\"agg\"}]}}}";
+
+        List<List<String>> pages = new ArrayList<>();
+        JsonNode result = filter(response, false, pages);
+
+        assertEquals(1, pages.size());
+        assertEquals(List.of("a", "b", "c"), pages.get(0));
+        JsonNode hits = result.get("hits").get("hits");
+        assertEquals(3, hits.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, hits.get(i).get("position").asInt());
+            assertEquals(String.valueOf(i + 1), hits.get(i).get("_source").get("id").asText());
+        }
+        // Content outside of the hits is copied as is
+        assertEquals(1, result.get("took").asInt());
+        assertEquals(3, result.get("hits").get("total").get("value").asInt());
+        assertEquals(mapper.readTree("{\"hits\":{\"hits\":[{\"_id\":\"agg\"}]}}"), result.get("aggregations"));
+    }
+
+    @Test
+    public void testAddInfoToPagesSkipsEmptyPages() throws Exception {
+        List<List<String>> pages = new ArrayList<>();
+        JsonNode result = filter("{\"hits\":{\"hits\":[]}}", false, pages);
+
+        assertEquals(0, pages.size());
+        assertEquals(0, result.get("hits").get("hits").size());
+    }
+
+    @Test
+    public void testAddInfoToPagesMSearchCallsTheCallbackForEachHitsArray() throws Exception {
+        String response = "{\"responses\":["
+            + "{\"hits\":{\"hits\":[{\"_id\":\"a\"},{\"_id\":\"b\"}]},"
+            + "\"aggregations\":{\"byType\":{\"buckets\":["
+            + "{\"key\":\"dataset\",\"docs\":{\"hits\":{\"hits\":[{\"_id\":\"c\"}]}}},"
+            + "{\"key\":\"service\",\"docs\":{\"hits\":{\"hits\":[{\"_id\":\"d\"},{\"_id\":\"e\"}]}}}]}}},"
+            + "{\"hits\":{\"hits\":[{\"_id\":\"f\"}]}}]}";
+
+        List<List<String>> pages = new ArrayList<>();
+        JsonNode result = filter(response, true, pages);
+
+        assertEquals(List.of(List.of("a", "b"), List.of("c"), List.of("d", "e"), List.of("f")), pages);
+        JsonNode buckets = result.get("responses").get(0).get("aggregations").get("byType").get("buckets");
+        assertEquals("service", buckets.get(1).get("key").asText());
+        assertEquals(1, buckets.get(1).get("docs").get("hits").get("hits").get(1).get("position").asInt());
+        assertEquals(0, result.get("responses").get(1).get("hits").get("hits").get(0).get("position").asInt());
+    }
+
+    /**
+     * Filter the response, recording the ids of the docs of each page and
+     * adding the position of each doc in its page.
+     */
+    private JsonNode filter(String response, boolean msearch, List<List<String>> pages) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonParser parser = JsonStreamUtils.jsonFactory.createParser(response);
+             JsonGenerator generator = JsonStreamUtils.jsonFactory.createGenerator(out)) {
+            parser.nextToken();
+            JsonStreamUtils.PageFilter callback = docs -> {
+                pages.add(docs.stream().map(d -> d.get("_id").asText()).collect(Collectors.toList()));
+                for (int i = 0; i < docs.size(); i++) {
+                    ObjectNode doc = docs.get(i);
+                    doc.put("position", i);
+                }
+            };
+            if (msearch) {
+                JsonStreamUtils.addInfoToPagesMSearch(parser, generator, callback);
+            } else {
+                JsonStreamUtils.addInfoToPages(parser, generator, callback);
+            }
+        }
+        return mapper.readTree(out.toByteArray());
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.api.records;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jeeves.server.UserSession;
+import jeeves.server.context.ServiceContext;
+import org.fao.geonet.ApplicationContextHolder;
+import org.fao.geonet.GeonetContext;
+import org.fao.geonet.api.records.model.related.AssociatedRecord;
+import org.fao.geonet.api.records.model.related.RelatedItemType;
+import org.fao.geonet.constants.Geonet;
+import org.fao.geonet.domain.Profile;
+import org.fao.geonet.kernel.AccessManager;
+import org.fao.geonet.kernel.DataManager;
+import org.fao.geonet.kernel.search.EsSearchManager;
+import org.fao.geonet.kernel.setting.SettingManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MetadataUtilsTest {
+    private ServiceContext context;
+    private GeonetContext geonetContext;
+    private EsSearchManager searchManager;
+
+    @Before
+    public void setUp() {
+        searchManager = Mockito.mock(EsSearchManager.class);
+        SettingManager settingManager = Mockito.mock(SettingManager.class);
+        when(settingManager.getBaseURL()).thenReturn("http://localhost:8080/geonetwork/");
+        geonetContext = Mockito.mock(GeonetContext.class);
+        when(geonetContext.getBean(EsSearchManager.class)).thenReturn(searchManager);
+        when(geonetContext.getBean(SettingManager.class)).thenReturn(settingManager);
+
+        UserSession session = Mockito.mock(UserSession.class);
+        when(session.getProfile()).thenReturn(Profile.Administrator);
+        context = Mockito.mock(ServiceContext.class);
+        when(context.getHandlerContext(Geonet.CONTEXT_NAME)).thenReturn(geonetContext);
+        when(context.getUserSession()).thenReturn(session);
+        when(context.getBean(AccessManager.class)).thenReturn(Mockito.mock(AccessManager.class));
+        when(context.getBean(SettingManager.class)).thenReturn(settingManager);
+    }
+
+    @Test
+    public void testRelatedQueriesAreBuiltFromHits() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode hit = (ObjectNode) mapper.readTree("{\"_source\": {"
+            + "\"id\": \"1\", \"uuid\": \"record\", \"parentUuid\": \"parent\","
+            + "\"recordLink\": ["
+            + "{\"type\": \"parent\", \"to\": \"parent\", \"url\": \"\", \"title\": \"Parent\"},"
+            + "{\"type\": \"siblings\", \"associationType\": \"isComposedOf\", \"to\": \"part\", \"url\": \"\", \"title\": \"Part\"}"
+            + "]}}");
+
+        Map<Integer, Map<RelatedItemType, List<AssociatedRecord>>> associated;
+        try (MockedStatic<ApplicationContextHolder> holder = Mockito.mockStatic(ApplicationContextHolder.class)) {
+            holder.when(ApplicationContextHolder::get).thenReturn(Mockito.mock(ConfigurableApplicationContext.class));
+            associated = MetadataUtils.getAssociatedOfHits(context, Collections.singletonList(hit),
+                new RelatedItemType[]{RelatedItemType.parent, RelatedItemType.brothersAndSisters, RelatedItemType.children},
+                0, 100);
+        }
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<String>> queries = ArgumentCaptor.forClass(List.class);
+        verify(searchManager).multiQuery(queries.capture(), anyString(), anySet(), anyMap(), anyInt(), anyInt());
+        assertEquals(3, queries.getValue().size());
+        assertTrue(queries.getValue().contains(
+            "(uuid:(\"parent\") OR childUuid:\"record\") AND (draft:\"n\" OR draft:\"e\")"));
+        assertTrue(queries.getValue().contains(
+            "+parentUuid:(\"parent\") -uuid:\"record\" AND (draft:\"n\" OR draft:\"e\")"));
+        assertTrue(queries.getValue().contains(
+            "(parentUuid:\"record\" OR uuid:(\"part\")) AND (draft:\"n\" OR draft:\"e\")"));
+
+        // The records are not loaded from the database
+        verify(geonetContext, never()).getBean(DataManager.class);
+        // No search results
+        assertTrue(associated.get(1).isEmpty());
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.api.records.editing;
+
+import jeeves.server.context.ServiceContext;
+import org.fao.geonet.GeonetContext;
+import org.fao.geonet.constants.Geonet;
+import org.fao.geonet.constants.Params;
+import org.fao.geonet.domain.Metadata;
+import org.fao.geonet.exceptions.ConcurrentUpdateEx;
+import org.fao.geonet.kernel.AccessManager;
+import org.fao.geonet.kernel.DataManager;
+import org.fao.geonet.kernel.EditLib;
+import org.fao.geonet.kernel.XmlSerializer;
+import org.fao.geonet.kernel.datamanager.IMetadataValidator;
+import org.fao.geonet.kernel.search.IndexingMode;
+import org.jdom.Element;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EditUtilsTest {
+    private ServiceContext context;
+    private DataManager dataManager;
+
+    @Before
+    public void setUp() throws Exception {
+        dataManager = Mockito.mock(DataManager.class);
+        EditLib editLib = Mockito.mock(EditLib.class);
+        when(dataManager.getEditLib()).thenReturn(editLib);
+        when(dataManager.getMetadataSchema("1")).thenReturn("iso19139");
+        when(editLib.getVersion("1")).thenReturn("2");
+
+        XmlSerializer xmlSerializer = Mockito.mock(XmlSerializer.class);
+        AccessManager accessManager = Mockito.mock(AccessManager.class);
+        GeonetContext geonetContext = Mockito.mock(GeonetContext.class);
+        when(geonetContext.getBean(DataManager.class)).thenReturn(dataManager);
+        when(geonetContext.getBean(XmlSerializer.class)).thenReturn(xmlSerializer);
+        when(geonetContext.getBean(AccessManager.class)).thenReturn(accessManager);
+        when(geonetContext.getBean(IMetadataValidator.class)).thenReturn(Mockito.mock(IMetadataValidator.class));
+
+        context = Mockito.mock(ServiceContext.class);
+        when(context.getHandlerContext(Geonet.CONTEXT_NAME)).thenReturn(geonetContext);
+        when(xmlSerializer.select(context, "1")).thenReturn(new Element("MD_Metadata"));
+        when(accessManager.canEdit(context, "1")).thenReturn(true);
+    }
+
+    @Test
+    public void testCurrentVersionIsSaved() throws Exception {
+        when(dataManager.updateMetadata(eq(context), eq("1"), any(Element.class), anyBoolean(), anyBoolean(), any(), any(),
+            anyBoolean(), eq(IndexingMode.full), eq("2"))).thenReturn(new Metadata());
+
+        new EditUtils(context).updateContent(request("1", "2"), false);
+    }
+
+    @Test
+    public void testStaleVersionIsNotSaved() throws Exception {
+        // The record was opened for editing again after the changes were applied: the manager
+        // finds another version under the record lock and does not save it
+        when(dataManager.updateMetadata(eq(context), eq("1"), any(Element.class), anyBoolean(), anyBoolean(), any(), any(),
+            anyBoolean(), eq(IndexingMode.full), eq("2"))).thenReturn(null);
+
+        try {
+            new EditUtils(context).updateContent(request("1", "2"), false);
+            fail("A stale version must not be saved");
+        } catch (ConcurrentUpdateEx e) {
+            // Expected
+        }
+        verify(dataManager).updateMetadata(eq(context), eq("1"), any(Element.class), anyBoolean(), anyBoolean(), any(), any(),
+            anyBoolean(), eq(IndexingMode.full), eq("2"));
+    }
+
+    private static Element request(String id, String version) {
+        return new Element("request")
+            .addContent(new Element(Params.ID).setText(id))
+            .addContent(new Element(Params.VERSION).setText(version));
+    }
+}
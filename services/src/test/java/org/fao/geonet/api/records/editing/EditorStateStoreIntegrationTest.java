@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.api.records.editing;
+
+import jeeves.server.UserSession;
+import org.fao.geonet.constants.Edit;
+import org.fao.geonet.kernel.EditLib;
+import org.fao.geonet.kernel.SchemaManager;
+import org.fao.geonet.kernel.schema.MetadataSchema;
+import org.fao.geonet.services.AbstractServiceIntegrationTest;
+import org.jdom.Attribute;
+import org.jdom.Element;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a compact working copy expanded again with a real schema has the same editing
+ * information as the copy which was stored.
+ */
+public class EditorStateStoreIntegrationTest extends AbstractServiceIntegrationTest {
+    @Autowired
+    private SchemaManager schemaManager;
+
+    @Test
+    public void testCompactCopyIsExpandedAgain() throws Exception {
+        MetadataSchema schema = schemaManager.getSchema("iso19139");
+        EditLib editLib = new EditLib(schemaManager);
+
+        Element md = getSampleISO19139MetadataXml();
+        editLib.enumerateTree(md);
+        editLib.expandTree(schema, md);
+
+        EditorStateStore store = new EditorStateStore();
+        ReflectionTestUtils.setField(store, "spillThreshold", 65536);
+        UserSession session = new UserSession();
+        store.put(session, "1", md);
+
+        // The expanded information is not stored
+        Element stored = store.get(session, "1");
+        assertEquals(0, describe(stored, Edit.RootChild.CHILD).size());
+        assertEquals(0, describe(stored, Edit.RootChild.ATTRIBUTE).size());
+
+        Element expanded = store.get(session, "1", editLib, schema);
+        List<String> children = describe(md, Edit.RootChild.CHILD);
+        assertTrue(children.size() > 0);
+        assertEquals(children, describe(expanded, Edit.RootChild.CHILD));
+        assertEquals(describe(md, Edit.RootChild.ATTRIBUTE), describe(expanded, Edit.RootChild.ATTRIBUTE));
+        assertEquals(describe(md, Edit.RootChild.ELEMENT), describe(expanded, Edit.RootChild.ELEMENT));
+    }
+
+    /**
+     * Lists the geonet elements with the given name in document order, with the name of their
+     * parent and their attributes except the uuids, which are generated on each expansion.
+     */
+    private static List<String> describe(Element md, String name) {
+        List<String> result = new ArrayList<>();
+        Iterator<?> it = md.getDescendants();
+        while (it.hasNext()) {
+            Object o = it.next();
+            if (!(o instanceof Element)) {
+                continue;
+            }
+            Element elem = (Element) o;
+            if (!Edit.NAMESPACE.getURI().equals(elem.getNamespaceURI()) || !name.equals(elem.getName())) {
+                continue;
+            }
+            TreeMap<String, String> attributes = new TreeMap<>();
+            for (Object a : elem.getAttributes()) {
+                Attribute attribute = (Attribute) a;
+                if (!Edit.Element.Attr.UUID.equals(attribute.getName())) {
+                    attributes.put(attribute.getQualifiedName(), attribute.getValue());
+                }
+            }
+            result.add(elem.getParentElement().getQualifiedName() + " " + attributes);
+        }
+        return result;
+    }
+}
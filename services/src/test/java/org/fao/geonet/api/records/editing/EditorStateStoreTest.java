@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.api.records.editing;
+
+import jeeves.server.UserSession;
+import org.fao.geonet.constants.Edit;
+import org.fao.geonet.constants.Geonet;
+import org.jdom.Element;
+import org.jdom.Namespace;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class EditorStateStoreTest {
+    private static final Namespace GMD = Namespace.getNamespace("gmd", "http://www.isotc211.org/2005/gmd");
+
+    private EditorStateStore store;
+    private UserSession session;
+
+    @Before
+    public void setUp() {
+        store = new EditorStateStore();
+        ReflectionTestUtils.setField(store, "spillThreshold", 65536);
+        session = new UserSession();
+    }
+
+    @Test
+    public void testExpandedInfoIsNotStored() throws Exception {
+        Element md = expandedRecord();
+        store.put(session, "1", md);
+
+        Element stored = store.get(session, "1");
+        assertNotNull(stored);
+        assertEquals(1, stored.getChildren(Edit.RootChild.INFO, Edit.NAMESPACE).size());
+        assertEquals(0, stored.getChildren(Edit.RootChild.CHILD, Edit.NAMESPACE).size());
+        assertEquals(0, stored.getChildren(Edit.RootChild.ATTRIBUTE, Edit.NAMESPACE).size());
+
+        Element contact = stored.getChild("contact", GMD);
+        Element element = contact.getChild(Edit.RootChild.ELEMENT, Edit.NAMESPACE);
+        assertEquals("2", element.getAttributeValue(Edit.Element.Attr.REF));
+        assertEquals("1", element.getAttributeValue(Edit.Element.Attr.PARENT));
+        assertNull(element.getAttributeValue(Edit.Element.Attr.MIN));
+        assertNull(element.getAttributeValue(Edit.Element.Attr.DEL));
+        assertEquals(0, element.getChildren(Edit.Element.Child.TEXT, Edit.NAMESPACE).size());
+        assertEquals("Contact", contact.getText());
+
+        // The given record is not changed
+        assertEquals(1, md.getChildren(Edit.RootChild.CHILD, Edit.NAMESPACE).size());
+    }
+
+    @Test
+    public void testNotEnumeratedRecordIsStoredAsIs() throws Exception {
+        Element md = expandedRecord();
+        md.addContent(new Element("language", GMD).setText("eng"));
+        store.put(session, "1", md);
+
+        Element stored = store.get(session, "1");
+        assertEquals(1, stored.getChildren(Edit.RootChild.CHILD, Edit.NAMESPACE).size());
+        assertEquals(1, stored.getChildren(Edit.RootChild.ATTRIBUTE, Edit.NAMESPACE).size());
+    }
+
+    @Test
+    public void testSpilledCopyIsDeletedOnRemove() throws Exception {
+        ReflectionTestUtils.setField(store, "spillThreshold", 0);
+        store.put(session, "1", expandedRecord());
+        Path spillDir = (Path) ReflectionTestUtils.getField(store, "spillDir");
+        assertEquals(1, countFiles(spillDir));
+
+        store.put(session, "1", expandedRecord());
+        assertEquals(1, countFiles(spillDir));
+        assertEquals("Contact", store.get(session, "1").getChild("contact", GMD).getText());
+
+        store.remove(session, "1");
+        assertEquals(0, countFiles(spillDir));
+        assertNull(store.get(session, "1"));
+    }
+
+    @Test
+    public void testSerializedSpilledCopyIsInline() throws Exception {
+        ReflectionTestUtils.setField(store, "spillThreshold", 0);
+        store.put(session, "1", expandedRecord());
+        Object state = session.getProperty(Geonet.Session.METADATA_EDITING + "1");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(state);
+        }
+        store.remove(session, "1");
+        Path spillDir = (Path) ReflectionTestUtils.getField(store, "spillDir");
+        assertEquals(0, countFiles(spillDir));
+
+        UserSession restored = new UserSession();
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            restored.setProperty(Geonet.Session.METADATA_EDITING + "1", in.readObject());
+        }
+        assertEquals("Contact", store.get(restored, "1").getChild("contact", GMD).getText());
+    }
+
+    @Test
+    public void testMissingCopy() throws Exception {
+        assertNull(store.get(session, "2"));
+    }
+
+    private static long countFiles(Path dir) throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    private static Element expandedRecord() {
+        Element md = new Element("MD_Metadata", GMD);
+        md.addNamespaceDeclaration(Edit.NAMESPACE);
+
+        Element contact = new Element("contact", GMD).setText("Contact");
+        contact.addContent(new Element(Edit.RootChild.ELEMENT, Edit.NAMESPACE)
+            .setAttribute(Edit.Element.Attr.REF, "2")
+            .setAttribute(Edit.Element.Attr.PARENT, "1")
+            .setAttribute(Edit.Element.Attr.MIN, "1")
+            .setAttribute(Edit.Element.Attr.MAX, "10000")
+            .setAttribute(Edit.Element.Attr.DEL, "true")
+            .addContent(new Element(Edit.Element.Child.TEXT, Edit.NAMESPACE).setAttribute("value", "a")));
+        md.addContent(contact);
+        md.addContent(new Element(Edit.RootChild.CHILD, Edit.NAMESPACE)
+            .setAttribute("name", "contact").setAttribute("prefix", "gmd"));
+        md.addContent(new Element(Edit.RootChild.ATTRIBUTE, Edit.NAMESPACE)
+            .setAttribute("name", "id").setAttribute(Edit.Attribute.Attr.ADD, "true"));
+        md.addContent(new Element(Edit.RootChild.ELEMENT, Edit.NAMESPACE)
+            .setAttribute(Edit.Element.Attr.REF, "1")
+            .setAttribute(Edit.Element.Attr.PARENT, "0"));
+        md.addContent(new Element(Edit.RootChild.INFO, Edit.NAMESPACE)
+            .addContent(new Element("id", Edit.NAMESPACE).setText("1")));
+        return md;
+    }
+}
@@ -105,6 +105,7 @@ public class AlternateLogoForPdfExportTest extends AbstractServiceIntegrationTes
         MockHttpSession mockHttpSession = loginAsAdmin();
         Optional<Setting> se = settingRepository.findById("metadata/pdfReport/headerLogoFileName");
         se.ifPresent(settingRepository::delete);
+        settingManager.refresh();
         String siteId = settingManager.getValue("system/site/siteId");
 
         String url = "/srv/api/records/" + metadata.getUuid() + "/formatters/xsl-view?output=pdf&language=fre";
@@ -43,6 +43,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -182,7 +183,8 @@ public class FilesystemStoreTest {
         store.put(keys[2], new StoreInfoAndData(new byte[200], 2, false));
         assertStoreContains(keys, keys[0], keys[1], keys[2], keys[3], keys[4]);
         try (
-            Statement statement = store.metadataDb.createStatement();
+            Connection connection = store.metadataDb.getConnection();
+            Statement statement = connection.createStatement();
             ResultSet rs = statement.executeQuery(FilesystemStore.QUERY_GETCURRENT_SIZE)) {
             assertTrue(rs.next());
             assertEquals(1000L, Long.parseLong(rs.getString(1)));
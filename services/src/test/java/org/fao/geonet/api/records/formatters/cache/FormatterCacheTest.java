@@ -42,7 +42,13 @@ import java.sql.SQLException;
 import java.util.Date;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -51,6 +57,7 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class FormatterCacheTest {
 
@@ -282,4 +289,74 @@ public class FormatterCacheTest {
         assertNotNull(persistentStore.get(key));
     }
 
+    @Test(timeout = 5000L)
+    public void testConcurrentLoadsOfSameKeyLoadOnce() throws Exception {
+        final MemoryPersistentStore persistentStore = new MemoryPersistentStore();
+        this.formatterCache = new FormatterCache(persistentStore, 100, 5000);
+
+        final long changeDate = new Date().getTime();
+        final Key key = new Key(1, "eng", FormatType.html, "full_view", true, FormatterWidth._100);
+        final Key otherKey = new Key(2, "eng", FormatType.html, "full_view", true, FormatterWidth._100);
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch allowLoad = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Callable<String> slowGet = () -> getAsString(key, changeDate, () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                allowLoad.await();
+                return new TestLoader("result", changeDate, false).call();
+            });
+            Future<String> first = executor.submit(slowGet);
+            assertTrue(loading.await(2, TimeUnit.SECONDS));
+            Future<String> second = executor.submit(slowGet);
+            Future<String> third = executor.submit(slowGet);
+
+            // Another key is loaded while the first one is still loading
+            assertEquals("other", getAsString(otherKey, changeDate, new TestLoader("other", changeDate, false)));
+
+            allowLoad.countDown();
+            assertEquals("result", first.get());
+            assertEquals("result", second.get());
+            assertEquals("result", third.get());
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 5000L)
+    public void testValueLoadedDuringRemovalIsNotCached() throws Exception {
+        final MemoryPersistentStore persistentStore = new MemoryPersistentStore();
+        this.formatterCache = new FormatterCache(persistentStore, 100, 5000);
+
+        final long changeDate = new Date().getTime();
+        final Key key = new Key(1, "eng", FormatType.html, "full_view", true, FormatterWidth._100);
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch allowLoad = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> staleGet = executor.submit(() -> getAsString(key, changeDate, () -> {
+                loading.countDown();
+                allowLoad.await();
+                return new TestLoader("stale", changeDate, false).call();
+            }));
+            assertTrue(loading.await(2, TimeUnit.SECONDS));
+
+            // The metadata is changed while its formatter output is rendered
+            formatterCache.removeAll(key.mdId);
+            allowLoad.countDown();
+
+            // The request which started before the change gets its value, which is not cached
+            assertEquals("stale", staleGet.get());
+            assertNull(persistentStore.get(key));
+            assertEquals("result", getAsString(key, changeDate, new TestLoader("result", changeDate, false)));
+            assertEquals("result", persistentStore.get(key).getDataAsString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
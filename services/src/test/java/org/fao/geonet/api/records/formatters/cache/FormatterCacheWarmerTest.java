@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2001-2026 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+
+package org.fao.geonet.api.records.formatters.cache;
+
+import jeeves.server.context.ServiceContext;
+import jeeves.server.dispatchers.ServiceManager;
+import org.fao.geonet.ApplicationContextHolder;
+import org.fao.geonet.api.records.formatters.FormatType;
+import org.fao.geonet.api.records.formatters.FormatterWidth;
+import org.fao.geonet.domain.ISODate;
+import org.fao.geonet.domain.Metadata;
+import org.fao.geonet.domain.MetadataType;
+import org.fao.geonet.kernel.datamanager.IMetadataUtils;
+import org.fao.geonet.repository.OperationAllowedRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FormatterCacheWarmerTest {
+    private final List<Integer> warmedUp = new CopyOnWriteArrayList<>();
+    private final CountDownLatch firstStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFirst = new CountDownLatch(1);
+    private final CountDownLatch done = new CountDownLatch(2);
+    private FormatterCacheWarmer warmer;
+
+    @Before
+    public void setUp() {
+        warmer = new FormatterCacheWarmer() {
+            @Override
+            void warmUpRecord(int metadataId) {
+                try {
+                    if (metadataId == 1) {
+                        firstStarted.countDown();
+                        releaseFirst.await(10, TimeUnit.SECONDS);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                warmedUp.add(metadataId);
+                done.countDown();
+            }
+        };
+        warmer.setFormatters(Collections.singletonList("xsl-view"));
+        warmer.setThreads(1);
+    }
+
+    @After
+    public void tearDown() {
+        warmer.shutdown();
+    }
+
+    @Test
+    public void testRecordQueuedOnce() throws Exception {
+        warmer.start();
+        warmer.warmUp(1);
+        assertTrue(firstStarted.await(10, TimeUnit.SECONDS));
+
+        warmer.warmUp(2);
+        warmer.warmUp(2);
+        warmer.warmUp(2);
+        assertEquals(1, warmer.getQueued());
+
+        releaseFirst.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        warmer.shutdown();
+        assertEquals(List.of(1, 2), warmedUp);
+        assertEquals(0, warmer.getQueued());
+    }
+
+    @Test
+    public void testNothingQueuedWhenNotStarted() {
+        warmer.warmUp(1);
+        assertEquals(0, warmer.getQueued());
+        assertTrue(warmedUp.isEmpty());
+    }
+
+    @Test
+    public void testWarmUpAllRendersAndStoresPublicRecords() throws Exception {
+        PersistentStore store = mock(PersistentStore.class);
+        FormatterCache formatterCache = new FormatterCache(store, 100, 100, key -> true);
+        List<ServiceContext> renderContexts = new CopyOnWriteArrayList<>();
+        FormatterCacheWarmer renderingWarmer = createRenderingWarmer(formatterCache, renderContexts, List.of(1, 2));
+        try {
+            renderingWarmer.start();
+            renderingWarmer.warmUpAll();
+
+            Key key1 = new Key(1, "eng", FormatType.html, "xsl-view", true, FormatterWidth._100);
+            Key key2 = new Key(2, "eng", FormatType.html, "xsl-view", true, FormatterWidth._100);
+            verify(store, timeout(10000)).put(eq(key1), any(StoreInfoAndData.class));
+            verify(store, timeout(10000)).put(eq(key2), any(StoreInfoAndData.class));
+            assertEquals(2, renderingWarmer.getRendered());
+            assertEquals(2, renderingWarmer.getProcessed());
+            assertEquals(0, renderingWarmer.getFailed());
+            assertEquals("<div>2</div>", new String(formatterCache.get(key2, info -> true, () -> {
+                throw new AssertionError("Should be served from the cache");
+            }, true), "UTF-8"));
+        } finally {
+            renderingWarmer.shutdown();
+            formatterCache.shutdown();
+        }
+    }
+
+    @Test
+    public void testThreadContextClearedAfterRecord() throws Exception {
+        PersistentStore store = mock(PersistentStore.class);
+        FormatterCache formatterCache = new FormatterCache(store, 100, 100, key -> true);
+        List<ServiceContext> renderContexts = new CopyOnWriteArrayList<>();
+        FormatterCacheWarmer renderingWarmer = createRenderingWarmer(formatterCache, renderContexts, List.of(1));
+        try {
+            renderingWarmer.warmUpRecord(1);
+
+            assertEquals(1, renderContexts.size());
+            assertEquals("eng", renderContexts.get(0).getLanguage());
+            assertNull(ServiceContext.get());
+        } finally {
+            ApplicationContextHolder.clear();
+            formatterCache.shutdown();
+        }
+    }
+
+    private FormatterCacheWarmer createRenderingWarmer(FormatterCache formatterCache,
+                                                       List<ServiceContext> renderContexts,
+                                                       List<Integer> publicIds) {
+        ConfigurableApplicationContext applicationContext = mock(ConfigurableApplicationContext.class);
+        IMetadataUtils metadataUtils = mock(IMetadataUtils.class);
+        when(metadataUtils.findOne(anyInt())).thenAnswer(invocation -> {
+            Metadata metadata = new Metadata();
+            metadata.setId(invocation.getArgument(0));
+            metadata.getDataInfo().setType(MetadataType.METADATA).setChangeDate(new ISODate());
+            return metadata;
+        });
+        OperationAllowedRepository operationAllowedRepository = mock(OperationAllowedRepository.class);
+        when(operationAllowedRepository.findAllIds(any(), any())).thenReturn(publicIds);
+        ServiceManager serviceManager = mock(ServiceManager.class);
+        when(serviceManager.createServiceContext("formatter.warmup", applicationContext)).thenAnswer(invocation ->
+            new ServiceContext("formatter.warmup", applicationContext, new HashMap<>(), null));
+        when(applicationContext.getBean(IMetadataUtils.class)).thenReturn(metadataUtils);
+        when(applicationContext.getBean(OperationAllowedRepository.class)).thenReturn(operationAllowedRepository);
+        when(applicationContext.getBean(ServiceManager.class)).thenReturn(serviceManager);
+        when(applicationContext.getBean(CacheConfig.class)).thenReturn(key -> true);
+
+        FormatterCacheWarmer renderingWarmer = new FormatterCacheWarmer() {
+            @Override
+            Callable<StoreInfoAndDataLoadResult> createLoader(ServiceContext context, Key key) {
+                return () -> {
+                    assertSame(context, ServiceContext.get());
+                    renderContexts.add(context);
+                    return new StoreInfoAndDataLoadResult("<div>" + key.mdId + "</div>", 1, true, null, null);
+                };
+            }
+        };
+        ReflectionTestUtils.setField(renderingWarmer, "applicationContext", applicationContext);
+        ReflectionTestUtils.setField(renderingWarmer, "formatterCache", formatterCache);
+        renderingWarmer.setFormatters(Collections.singletonList("xsl-view"));
+        return renderingWarmer;
+    }
+}
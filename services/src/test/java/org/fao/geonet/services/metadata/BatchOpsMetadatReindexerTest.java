@@ -4,6 +4,7 @@ import org.fao.geonet.ApplicationContextHolder;
 import org.fao.geonet.kernel.DataManager;
 import org.fao.geonet.kernel.search.EsSearchManager;
 import org.fao.geonet.kernel.search.ISearchManager;
+import org.fao.geonet.kernel.search.index.BatchIndexingListener;
 import org.fao.geonet.kernel.search.index.BatchOpsMetadataReindexer;
 import org.fao.geonet.util.ThreadUtils;
 import org.junit.Before;
@@ -18,6 +19,7 @@ import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.jmx.export.MBeanExporter;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.stream.Collectors;
@@ -59,8 +61,8 @@ public class BatchOpsMetadatReindexerTest {
             BatchOpsMetadataReindexer toTest = new BatchOpsMetadataReindexer(mockDataMan, toIndex);
             toTest.process("siteId", false);
 
-            ArgumentCaptor<String> metadataIdCaptor = captureIndexationLaunched(mockDataMan);
-            assertEquals("1-2-3-4", metadataIdCaptor.getAllValues().stream().collect(Collectors.joining("-")));
+            List<String> metadataIds = captureIndexationLaunched(mockDataMan);
+            assertEquals("1-2-3-4", metadataIds.stream().collect(Collectors.joining("-")));
             assertEquals(1, usedTread.size());
             assertNotSame(Thread.currentThread(), usedTread.iterator().next());
         }
@@ -83,9 +85,10 @@ public class BatchOpsMetadatReindexerTest {
             BatchOpsMetadataReindexer toTest = new BatchOpsMetadataReindexer(mockDataMan, toIndex);
             toTest.process("siteId", false);
 
-            ArgumentCaptor<String> metadataIdCaptor = captureIndexationLaunched(mockDataMan);
-            assertEquals("1-2-3-4", metadataIdCaptor.getAllValues().stream().sorted().collect(Collectors.joining("-")));
-            assertEquals(4, usedTread.size());
+            List<String> metadataIds = captureIndexationLaunched(mockDataMan);
+            assertEquals("1-2-3-4", metadataIds.stream().sorted().collect(Collectors.joining("-")));
+            assertEquals(1, usedTread.size());
+            assertNotSame(Thread.currentThread(), usedTread.iterator().next());
         }
     }
 
@@ -107,8 +110,8 @@ public class BatchOpsMetadatReindexerTest {
             BatchOpsMetadataReindexer toTest = new BatchOpsMetadataReindexer(mockDataMan, toIndex);
             toTest.process("siteId", true);
 
-            ArgumentCaptor<String> metadataIdCaptor = captureIndexationLaunched(mockDataMan);
-            assertEquals("1-2-3-4", metadataIdCaptor.getAllValues().stream().sorted().collect(Collectors.joining("-")));
+            List<String> metadataIds = captureIndexationLaunched(mockDataMan);
+            assertEquals("1-2-3-4", metadataIds.stream().sorted().collect(Collectors.joining("-")));
             assertEquals(1, usedTread.size());
             assertEquals(Thread.currentThread(), usedTread.iterator().next());
         }
@@ -140,8 +143,8 @@ public class BatchOpsMetadatReindexerTest {
             Thread.sleep(500);
 
             assertEquals(4, toTest.getProcessed());
-            ArgumentCaptor<String> metadataIdCaptor = captureIndexationLaunched(mockDataMan);
-            assertEquals("1-2-3-4", metadataIdCaptor.getAllValues().stream().collect(Collectors.joining("-")));
+            List<String> metadataIds = captureIndexationLaunched(mockDataMan);
+            assertEquals("1-2-3-4", metadataIds.stream().collect(Collectors.joining("-")));
             assertEquals(1, usedTread.size());
             assertNotSame(Thread.currentThread(), usedTread.iterator().next());
         }
@@ -173,9 +176,10 @@ public class BatchOpsMetadatReindexerTest {
             Thread.sleep(500);
 
             assertEquals(4, toTest.getProcessed());
-            ArgumentCaptor<String> metadataIdCaptor = captureIndexationLaunched(mockDataMan);
-            assertEquals("1-2-3-4", metadataIdCaptor.getAllValues().stream().sorted().collect(Collectors.joining("-")));
-            assertEquals(4, usedTread.size());
+            List<String> metadataIds = captureIndexationLaunched(mockDataMan);
+            assertEquals("1-2-3-4", metadataIds.stream().sorted().collect(Collectors.joining("-")));
+            assertEquals(1, usedTread.size());
+            assertNotSame(Thread.currentThread(), usedTread.iterator().next());
         }
     }
 
@@ -217,8 +221,8 @@ public class BatchOpsMetadatReindexerTest {
             Thread.sleep(500);
 
             assertEquals(4, toTest.getProcessed());
-            ArgumentCaptor<String> metadataIdCaptor = captureIndexationLaunched(mockDataMan);
-            assertEquals("1-2-3-4", metadataIdCaptor.getAllValues().stream().sorted().collect(Collectors.joining("-")));
+            List<String> metadataIds = captureIndexationLaunched(mockDataMan);
+            assertEquals("1-2-3-4", metadataIds.stream().sorted().collect(Collectors.joining("-")));
             assertEquals(1, usedTread.size());
             assertEquals(currentThread, usedTread.iterator().next());
         }
@@ -231,9 +235,10 @@ public class BatchOpsMetadatReindexerTest {
             @Override
             public Void answer(InvocationOnMock invocationOnMock) throws Throwable {
                 usedTread.add(Thread.currentThread());
+                notifyIndexed(invocationOnMock);
                 return null;
             }
-        }).when(mockDataMan).indexMetadata(Mockito.anyString(), Mockito.anyBoolean());
+        }).when(mockDataMan).indexMetadataInBatch(Mockito.anyList(), Mockito.any(BatchIndexingListener.class));
         return mockDataMan;
     }
 
@@ -245,12 +250,19 @@ public class BatchOpsMetadatReindexerTest {
             public Void answer(InvocationOnMock invocationOnMock) throws Throwable {
                 usedTread.add(Thread.currentThread());
                 latch.await();
+                notifyIndexed(invocationOnMock);
                 return null;
             }
-        }).when(mockDataMan).indexMetadata(Mockito.anyString(), Mockito.anyBoolean());
+        }).when(mockDataMan).indexMetadataInBatch(Mockito.anyList(), Mockito.any(BatchIndexingListener.class));
         return mockDataMan;
     }
 
+    private void notifyIndexed(InvocationOnMock invocationOnMock) {
+        List<?> ids = invocationOnMock.getArgument(0);
+        BatchIndexingListener listener = invocationOnMock.getArgument(1);
+        ids.forEach(id -> listener.onIndexed(String.valueOf(id)));
+    }
+
     private Set<Integer> createMetadataToIndex() {
         Set<Integer> toIndex = new HashSet<>();
         toIndex.add(1);
@@ -260,12 +272,10 @@ public class BatchOpsMetadatReindexerTest {
         return toIndex;
     }
 
-    private ArgumentCaptor<String> captureIndexationLaunched(DataManager mockDataMan) throws Exception {
-        ArgumentCaptor<String> metadataIdCaptor = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<Boolean> forceRefreshCaptor = ArgumentCaptor.forClass(Boolean.class);
-        ArgumentCaptor<ISearchManager> isearchManagerCaptor = ArgumentCaptor.forClass(ISearchManager.class);
+    private List<String> captureIndexationLaunched(DataManager mockDataMan) throws Exception {
+        ArgumentCaptor<List> metadataIdsCaptor = ArgumentCaptor.forClass(List.class);
 
-        Mockito.verify(mockDataMan, Mockito.times(4)).indexMetadata(metadataIdCaptor.capture(), forceRefreshCaptor.capture());
-        return metadataIdCaptor;
+        Mockito.verify(mockDataMan, Mockito.times(1)).indexMetadataInBatch(metadataIdsCaptor.capture(), Mockito.any(BatchIndexingListener.class));
+        return ((List<?>) metadataIdsCaptor.getValue()).stream().map(String::valueOf).collect(Collectors.toList());
     }
 }
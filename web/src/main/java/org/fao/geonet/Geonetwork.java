@@ -451,8 +451,10 @@ public class Geonetwork implements ApplicationHandler {
                         }
                     }
                 }
+                SettingManager settingManager = context.getBean(SettingManager.class);
+                settingManager.refresh();
                 String siteUuid = UUID.randomUUID().toString();
-                context.getBean(SettingManager.class).setSiteUuid(siteUuid);
+                settingManager.setSiteUuid(siteUuid);
 
             } catch (Throwable t) {
                 Log.error(Geonet.DB, "Error occurred while trying to execute SQL", t);